@@ -238,12 +238,21 @@ public class SOCDisplaylessPlayerClient implements Runnable
         {
             while (connected)
             {
-                String s;
+                SOCMessage mes;
                 if (sLocal == null)
-                    s = in.readUTF();
+                {
+                    mes = SOCMessage.toMsg(in.readUTF());
+                }
                 else
-                    s = sLocal.readNext();
-                treat((SOCMessage) SOCMessage.toMsg(s));
+                {
+                    // local server may hand us the message itself, skipping toCmd and toMsg
+                    Object obj = sLocal.readNextObject();
+                    if (obj instanceof SOCMessage)
+                        mes = (SOCMessage) obj;
+                    else
+                        mes = SOCMessage.toMsg((String) obj);
+                }
+                treat(mes);
             
                 if(Thread.currentThread().isInterrupted())
                     break;//exit if the thread is interrupted
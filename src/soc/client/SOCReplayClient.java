@@ -61,9 +61,7 @@ import soc.robot.SOCRobotDMImpl;
 import soc.robot.stac.StacRobotBrainRandom;
 import soc.robot.stac.StacRobotDummyBrain;
 import soc.robot.stac.StacRobotType;
-import soc.server.database.stac.ExtGameStateRow;
-import soc.server.database.stac.GameActionRow;
-import soc.server.database.stac.ObsGameStateRow;
+import soc.server.database.stac.GameStateCapture;
 import soc.server.database.stac.StacDBHelper;
 import soc.server.genericServer.StringConnection;
 import soc.util.CappedQueue;
@@ -316,15 +314,11 @@ public class SOCReplayClient extends SOCPlayerClient {
      */
 	protected static class FileToQueue implements Runnable {
 		//variables required for moving all the game data from the logs into a db
-		private int idCounter = 0; //states and actions IDs
-		private int[][] tradesCounter = new int[4][4];
-		private int[][] tempTradesCounter = new int[4][4]; //temp value as the counter is modified before the correct number of trades is passed to the egsr
-		private int[][] pbpCounter = new int[4][6];
+		private final GameStateCapture capture = new GameStateCapture();
 		private int[] playersIDs;
+		//the names of the players in the players table, looked up once per game
+		private String[] playersNames;
 		private int gameID;
-		//information that will be selected from the games table
-		private Integer[][] totalPbps;
-		private Integer[][] totalTrades;
 		
 		//instance to help with the db interface
 		private StacDBHelper dbh = new StacDBHelper();
@@ -353,9 +347,6 @@ public class SOCReplayClient extends SOCPlayerClient {
 		public FileToQueue(SOCReplayClient cl, LogParser lp) {				
 			this.lp = lp; 		
 			this.cl = cl;
-			//initialise the counters to 0
-			Arrays.fill(tradesCounter[0],0);Arrays.fill(tradesCounter[1],0);Arrays.fill(tradesCounter[2],0);Arrays.fill(tradesCounter[3],0);
-			Arrays.fill(pbpCounter[0],0);Arrays.fill(pbpCounter[1],0);Arrays.fill(pbpCounter[2],0);Arrays.fill(pbpCounter[3],0);
 		}
 		
 		@Override
@@ -400,54 +391,16 @@ public class SOCReplayClient extends SOCPlayerClient {
 									//  the replay to pause
 									isPlayerText = true;									
 								}		
-								else if (gtm.getText().contains("traded")) {
-									// Echo trade messages in the chat interface as well as the game interface.  Much easier to follow.
-									SOCGameTextMsg chatMsg = new SOCGameTextMsg(gtm.getGame(), "Trade", gtm.getText());
-									cl.treat(chatMsg, true);
-									isPlayerText = true;
-									
+								else {
 									if (gtm.getText().contains("traded")) {
-	                                    lp.writeAugLog("Game State after Trade Action: ");
-	                                    //we need to know who has the player traded with and update the counters here
-	                        			SOCPlayerInterface pi = (SOCPlayerInterface) cl.playerInterfaces.get(gtm.getGame());
-	                                    SOCGame ga = pi.getGame();
-	                                  //keep a reference to the old trade numbers
-	                                    for(int i = 0; i < 4; i++)
-	                                    	System.arraycopy(tradesCounter[i], 0, tempTradesCounter[i], 0, tradesCounter[i].length); 
-	                        	        if(gtm.getText().contains("from the bank") || gtm.getText().contains("from a port")){
-	                        		        tradesCounter[ga.getCurrentPlayerNumber()][ga.getCurrentPlayerNumber()]++;
-	                        	        }else{
-	                        	        	String[] text = gtm.getText().split("from ");
-	                        	        	text[1] = text[1].substring(0, text[1].length()-1);//remove the "."
-	                        	        	// uncomment for fix for the corrupted log file of game pilot20
-//	                        	        	if(ga.getPlayer(text[1]) != null)
-	                        	        		tradesCounter[ga.getCurrentPlayerNumber()][ga.getPlayer(text[1]).getPlayerNumber()]++;
-//	                        	        	else
-//	                        	        		tradesCounter[ga.getCurrentPlayerNumber()][ga.getPlayer("dummy").getPlayerNumber()]++;
-	                        	        }
-										writeGameState(gtm.getGame(), new double[]{GameActionRow.TRADE});
-	                                }
-								}else if(gtm.getText().contains("gets")){
-									lp.writeAugLog("Game State after Roll Dice action: ");
-									writeGameState(gtm.getGame(),new double[]{GameActionRow.ROLL}); //capture the roll dice result
-								}else if(gtm.getText().contains("will move the robber")){
-									lp.writeAugLog("Game State after Discard or Roll Dice or Play Soldier actions (exclusive or): ");
-									writeGameState(gtm.getGame(),new double[]{GameActionRow.ROLL,GameActionRow.DISCARD,GameActionRow.PLAYKNIGHT}); //capture the discard/roll/play knight action result
-								}else if(gtm.getText().contains("stole a resource")){
-									lp.writeAugLog("Game State after both Move Robber and Choose Player actions (or just Choose Player): ");
-									writeGameState(gtm.getGame(),new double[]{GameActionRow.CHOOSEPLAYER});
-								}else if(gtm.getText().contains("You monopolized")){
-									lp.writeAugLog("Game State after Play Monopoly Action: ");
-									writeGameState(gtm.getGame(),new double[]{GameActionRow.PLAYMONO});
-								}else if(gtm.getText().contains("received")){
-									lp.writeAugLog("Game State after Play Discovery Action: ");
-									writeGameState(gtm.getGame(),new double[]{GameActionRow.PLAYDISC});
-								}else if(gtm.getText().contains("bought a development card")){
-									lp.writeAugLog("Game State after Buy Dev Card Action: ");
-									writeGameState(gtm.getGame(),new double[]{GameActionRow.BUYDEVCARD});
-								}else if(gtm.getText().contains("has won the game")){
-									lp.writeAugLog("Final game state: ");
-									writeGameState(gtm.getGame(),new double[]{GameActionRow.WIN});
+										// Echo trade messages in the chat interface as well as the game interface.  Much easier to follow.
+										SOCGameTextMsg chatMsg = new SOCGameTextMsg(gtm.getGame(), "Trade", gtm.getText());
+										cl.treat(chatMsg, true);
+										isPlayerText = true;
+									}
+									//capture the result of the action the server reports, if any; a trade is counted here
+									SOCPlayerInterface pi = (SOCPlayerInterface) cl.playerInterfaces.get(gtm.getGame());
+									writeGameState(gtm.getGame(), capture.onServerText((pi != null) ? pi.getGame() : null, gtm.getText()));
 								}
 								
 								if (state == TO_BREAK) {
@@ -467,15 +420,9 @@ public class SOCReplayClient extends SOCPlayerClient {
 									// This is in case the player doesn't actually steal resources, 
 									//  either voluntarily, or because nobody has any.
 									ignoreNextN = 0;
-								}else if (sm.getState() == SOCGame.WAITING_FOR_DISCARDS){
-									lp.writeAugLog("Game State only after Rolling a 7(roll Dice) Action: ");
-									writeGameState(sm.getGame(),new double[]{GameActionRow.ROLL}); //capture the rolled a seven result just before having to discard
-								}else if (sm.getState() == SOCGame.PLACING_FREE_ROAD1){
-									lp.writeAugLog("Game State only after Play Road Building Card Action: ");
-									writeGameState(sm.getGame(),new double[]{GameActionRow.PLAYROAD}); //capture the play road building card result
-								}else if (sm.getState() == SOCGame.WAITING_FOR_CHOICE){
-									lp.writeAugLog("Game State only after Moving The Robber Action: ");
-									writeGameState(sm.getGame(),new double[]{GameActionRow.MOVEROBBER}); //capture the move robber result
+								}else{
+									//capture the result of rolling a seven, playing a road building card or moving the robber
+									writeGameState(sm.getGame(), GameStateCapture.onGameState(sm.getState()));
 								}
 							}							
 							if (m != null) {
@@ -485,19 +432,21 @@ public class SOCReplayClient extends SOCPlayerClient {
                                     SOCGame ga = pi.getGame();
 									dummy = new StacRobotDummyBrain(new SOCRobotClient(null, "replay", "replayAgent", "", null),
 											new SOCRobotParameters(300, 500, 0f, 0f, 0f, 0f, 0f, SOCRobotDMImpl.FAST_STRATEGY, 0),
-											(SOCGame)DeepCopy.copy(ga),new CappedQueue(),0);//need to update the playerNumber based on who is on the board
+											ga.copy(),new CappedQueue(),0);//need to update the playerNumber based on who is on the board
 									boardInitialized = true;
 									//get the game and the players IDs here
 									if(dbh.isConnected()){
 										gameID = dbh.getIDfromGameName(((SOCBoardLayout) m).getGame());
 										if(gameID != -1){ //if we can find the game
 											playersIDs = dbh.getPlayersIDsFromGame(gameID);
+											playersNames = new String[playersIDs.length];
+											for (int pn = 0; pn < playersIDs.length; pn++)
+												playersNames[pn] = dbh.getPlayerNameByID(playersIDs[pn]);
 											//at the beginning of the game we want to decide what we can collect
 											if(dbh.areAnyTotalNumbersCollected(gameID)){//and data exists in games table
 												canExtract = true;
 												//get it here
-												totalPbps = dbh.getTotalPBPs(gameID);
-												totalTrades = dbh.getTotalTrades(gameID);
+												capture.setTotals(dbh.getTotalPBPs(gameID), dbh.getTotalTrades(gameID));
 											}else{
 												//we shouldn't extract or collect observable until overall stats are collected
 												canExtract = false;
@@ -524,26 +473,16 @@ public class SOCReplayClient extends SOCPlayerClient {
 									//  which results in doubling of score or doubling an action
 									if (repeatedMsg) {
 										cl.treat(m, true);
-										lp.writeAugLog("Game State after Put Piece Action: ");
-										//decide what type of piece we built
-										double at;
-										if(((SOCPutPiece) m).getPieceType() == SOCPlayingPiece.ROAD)
-											at = GameActionRow.BUILDROAD;
-										else if(((SOCPutPiece) m).getPieceType() == SOCPlayingPiece.SETTLEMENT)
-											at = GameActionRow.BUILDSETT;
-										else
-											at = GameActionRow.BUILDCITY;
 										//in here update the game object in the brain and update trackers and this should be it
 	                        			SOCPlayerInterface pi = (SOCPlayerInterface) cl.playerInterfaces.get(((SOCPutPiece) m).getGame());
 	                                    SOCGame ga = pi.getGame();
-										dummy.setGame((SOCGame)DeepCopy.copy(ga));
+										dummy.setGame(ga.copy());
 										dummy.handlePUTPIECE_updateTrackers((SOCPutPiece)m);
-										writeGameState(((SOCPutPiece) m).getGame(),new double[]{at}); //capture the result of buying and building actions
+										writeGameState(((SOCPutPiece) m).getGame(), GameStateCapture.onPutPiece(((SOCPutPiece) m).getPieceType())); //capture the result of buying and building actions
 									}
 								}else if (m instanceof SOCTurn){
 									cl.treat(m, true);
-									lp.writeAugLog("Game State after End Turn Action: ");
-									writeGameState(((SOCTurn) m).getGame(),new double[]{GameActionRow.ENDTURN}); //need to capture the result of the end turn action
+									writeGameState(((SOCTurn) m).getGame(), GameStateCapture.ENDTURN); //need to capture the result of the end turn action
                                                                         if (state == TO_TURN) {
                                                                             state = PAUSE;
                                                                         }
@@ -618,7 +557,10 @@ public class SOCReplayClient extends SOCPlayerClient {
 		}
 		
 		// Output the game-state to the augmented log file
-		private void writeGameState(String gameName, double[] actionTypes) {        
+		private void writeGameState(String gameName, GameStateCapture.Trigger trigger) {
+			if (trigger == null)
+				return; //this message doesn't end an action
+			lp.writeAugLog(trigger.label);
 			SOCPlayerInterface pi = (SOCPlayerInterface) cl.playerInterfaces.get(gameName);
             SOCGame ga = pi.getGame();
             
@@ -628,75 +570,18 @@ public class SOCReplayClient extends SOCPlayerClient {
             int[] numbers = board.getNumberLayout();
             int robber = board.getRobberHex();   
 	        
-            //increment idcounter first as id=0 is only the state before starting the game which purpose is to aid in tracking the start game action	        
-	        idCounter++;
-	        lp.writeAugLog("|Action from stateID:" + (idCounter-1) + " to stateID:" + idCounter);
-	        
-            //create instance for observable features table
-	        ObsGameStateRow ogsr = ga.turnCurrentStateIntoOGSR();
-	        ogsr.setID(idCounter);
-            //create instance for game actions table
-	        GameActionRow gar = new GameActionRow(idCounter);
-	        //create instance for extracted features table
-	        ExtGameStateRow egsr = dummy.turnStateIntoEGSR();
-	        egsr.setID(idCounter);
+            //capture the rows and count the action; id=0 is only the state before starting the game which purpose is to aid in tracking the start game action
+	        GameStateCapture.Rows rows = capture.capture(ga, dummy, trigger.actionTypes);
+	        final int id = capture.getLastID();
+	        lp.writeAugLog("|Action from stateID:" + (id-1) + " to stateID:" + id);
 	        
 	        //print action type
-	        double actionType = 0;
-	        if(actionTypes.length > 0){
-	        	if(actionTypes.length == 1)
-		        	actionType = actionTypes[0];
-	        	else{ //there is only one case(just before moving the robber) when it is difficult to determine what the previous action was
-	        		if(ga.getOldGameState()==SOCGame.PLAY){
-		        		if(ga.getCurrentDice() == 7)
-		        			actionType = GameActionRow.ROLL;
-		        		else//if dice result is 0
-		        			actionType = GameActionRow.PLAYKNIGHT;
-		        	}else if(ga.getOldGameState()==SOCGame.WAITING_FOR_DISCARDS)
-		        		actionType = GameActionRow.DISCARD;
-		        	else if(ga.getOldGameState()==SOCGame.PLAY1)
-		        		actionType = GameActionRow.PLAYKNIGHT;
-	        	}
-	        	lp.writeAugLog("|ActionType:" + actionType);
-	        }//if == 0 doesn't print anything, but it needs to be initialised at least
-	        
-	        //add the pastBpps to the egsr before incrementing them
-	        egsr.setPastPBPs(StacDBHelper.transformToIntegerArr2(pbpCounter));
-	        //add the past trades
-	        egsr.setPastTrades(StacDBHelper.transformToIntegerArr2(tempTradesCounter));
-	        //calculate the futureBpp by subtracting the current from the total
-	        if(canExtract){
-		        int[][] tempBpp = new int[4][6];
-		        for(int i = 0; i < 4; i++)
-		        	for(int j = 0; j < 6; j++)
-		        		tempBpp[i][j] = totalPbps[i][j] - pbpCounter[i][j];
-		        egsr.setFuturePBPs(StacDBHelper.transformToIntegerArr2(tempBpp));
-		        int[][] tempTrades = new int[4][4];
-		        for(int i = 0; i < 4; i++)
-		        	for(int j = 0; j < 4; j++)
-		        		tempTrades[i][j] = totalTrades[i][j] - tempTradesCounter[i][j];
-		        egsr.setFutureTrades(StacDBHelper.transformToIntegerArr2(tempTrades));
-	        }else{
-	        	//to avoid a nullpointer when printing out
-	        	egsr.setFuturePBPs(StacDBHelper.transformToIntegerArr2(pbpCounter));
-	        	egsr.setFutureTrades(StacDBHelper.transformToIntegerArr2(tempTradesCounter));
-	        }
-	        
-	        //increment bpps counter (the order is the same as in StacPossibleBuildPlan)
-	        int cpn = ga.getCurrentPlayerNumber();
-	        if(actionType == GameActionRow.BUILDROAD){
-	        	pbpCounter[cpn][0]++;
-	        	pbpCounter[cpn][4]++; //if a player builds a road we assume is or will be going for the longest road
-	        }else if(actionType == GameActionRow.BUILDSETT){
-	        	pbpCounter[cpn][1]++;
-	        }else if(actionType == GameActionRow.BUILDCITY)
-	        	pbpCounter[cpn][2]++;
-	        else if(actionType == GameActionRow.BUYDEVCARD){
-	        	pbpCounter[cpn][3]++;
-	        }else if(actionType == GameActionRow.PLAYKNIGHT)
-	        	pbpCounter[cpn][5]++; //if a player plays a knight we assume is going for the largest army 
+	        if(trigger.actionTypes.length > 0)
+	        	lp.writeAugLog("|ActionType:" + rows.actionType);
 	        
 	        //output the counter values for bpp and trades :) 
+	        int[][] pbpCounter = capture.getPbpCounter();
+	        int[][] tradesCounter = capture.getTradesCounter();
 	        lp.writeAugLog("|bpp counter player 0: " + Arrays.toString(pbpCounter[0]));
 	        lp.writeAugLog("|bpp counter player 1: " + Arrays.toString(pbpCounter[1]));
 	        lp.writeAugLog("|bpp counter player 2: " + Arrays.toString(pbpCounter[2]));
@@ -707,10 +592,11 @@ public class SOCReplayClient extends SOCPlayerClient {
 	        lp.writeAugLog("|trades counter player 2: " + Arrays.toString(tradesCounter[2]));
 	        lp.writeAugLog("|trades counter player 3: " + Arrays.toString(tradesCounter[3]));
 	        
-	        //add the info to the instances as it is printed to the aug_log file;
-	        gar.setType(actionType);
-	        gar.setAfterState(idCounter);
-	        gar.setBeforeState(idCounter - 1);
+	        int cpn = ga.getCurrentPlayerNumber();
+	        
+	        //check the players ids against the db (for players inexistent in the db, -1); this allows me to check for inconsistencies
+	        if(dbh.isConnected())
+	        	GameStateCapture.setPlayerIDs(rows.ogsr, ga, playersIDs, playersNames);
             
 	        //print board layout
 	        lp.writeAugLog("|" + (new SOCBoardLayout(ga.getName(), hexes, numbers, robber)).toString());
@@ -738,20 +624,6 @@ public class SOCReplayClient extends SOCPlayerClient {
 	            String pName = p.getName();
 	            int pn = p.getPlayerNumber();
 	            
-	            //in here check the players ids by finding them again in the db? (for players inexistent in the db, just add -1 for now); this allows me to check for inconsistencies
-	            if(dbh.isConnected())
-	            if(pName!=null){
-	            	if(pName.equals(dbh.getPlayerNameByID(playersIDs[pn]))){ 
-	            		//what this says is that if the name is the same as the one we have in the database than it is ok
-	            		ogsr.setPlayerID(pn, playersIDs[pn]);
-	            	}else if(dbh.getPlayerNameByID(playersIDs[pn]).equals("Dummy")){ //placeholder for players that have only played 1 game in total;(we won't be doing any modelling on just one game)
-	            		ogsr.setPlayerID(pn, 0);
-	            	}else{
-	            		ogsr.setPlayerID(pn, -1);//there is an inconsistency so leave it -1 so it will stand out when I check
-	            	}
-	            }else
-	            	ogsr.setPlayerID(pn, -1);//also null players have id of -1...
-	            
 	            String logMsg;
 	            Iterator i;
 	            // Cities
@@ -874,24 +746,14 @@ public class SOCReplayClient extends SOCPlayerClient {
 	        }
 	        
 	        //debug to check that values are the same
-            lp.writeAugLog(gar.toString());
-            lp.writeAugLog(ogsr.toString());
-            lp.writeAugLog(egsr.toString());
+            lp.writeAugLog(rows.gar.toString());
+            lp.writeAugLog(rows.ogsr.toString());
+            lp.writeAugLog(rows.egsr.toString());
             
-	        //then commit to the db the obs and action rows
-            if(dbh.isConnected()){
-            	if((!extractOnly) && canExtract){
-		        dbh.insertRawState(gameID, ogsr);
-		        dbh.insertAction(gameID, gar);
-            	}else if(canExtract && extractOnly){
-    		        dbh.insertExtractedState(gameID, egsr);
-            	}
-            	//otherwise do not insert either, but always update the total bpp and total trades if connected and are collecting. 
-		        if(actionType == GameActionRow.WIN && collect){
-		        	dbh.updateTotalPBP(gameID, pbpCounter);
-		        	dbh.updateTotalTrades(gameID, tradesCounter);
-		        }
-            }
+	        //then commit to the db the obs and action rows (we're only connected if collecting);
+            //the total bpp and total trades are always updated at the end of the game
+            if(dbh.isConnected())
+            	capture.store(dbh, gameID, rows, extractOnly);
 		}
 		
 		public String getGameName() {
@@ -20,14 +20,18 @@
  **/
 package soc.game;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.Hashtable;
 import java.util.List;
-import java.util.Random;
+import java.util.Map;
 import java.util.Vector;
 
+import soc.util.CopyableRandom;
+
 
 /**
  * This is a representation of the board in Settlers of Catan.
@@ -607,7 +611,7 @@ public class SOCBoard implements Serializable, Cloneable
     /**
      * random number generator
      */
-    private Random rand = new Random();
+    private CopyableRandom rand = new CopyableRandom();
 
     /**
      * a list of nodes on the land of the board; key is node's Integer coordinate, value is Boolean.
@@ -617,6 +621,165 @@ public class SOCBoard implements Serializable, Cloneable
      */
     public Hashtable nodesOnBoard;
 
+    /**
+     * True if this board's layout arrays ({@link #hexLayout}, {@link #portsLayout}, {@link #numberLayout},
+     * {@link #nodeIDtoPortType} and {@link #ports}) may be shared with another board,
+     * because one was made from the other by {@link #SOCBoard(SOCBoard, boolean)}.
+     * Methods which change the layout call {@link #unshareLayout()} first.
+     * Not serialized, since a deserialized board always has its own arrays.
+     */
+    private transient boolean layoutShared;
+
+    /**
+     * The settlement or city at each node coordinate, or null; kept up to date by
+     * {@link #putPiece(SOCPlayingPiece)} and {@link #removePiece(SOCPlayingPiece)}
+     * so that {@link #settlementAtNode(int)} needn't search {@link #pieces}.
+     * Indexed from 0 to {@link #MAXNODE}.
+     */
+    private SOCPlayingPiece[] nodePieces = new SOCPlayingPiece[MAXNODEPLUSONE];
+
+    /**
+     * The road at each edge coordinate, or null; kept up to date like {@link #nodePieces},
+     * for {@link #roadAtEdge(int)}.  Indexed from 0 to {@link #MAXEDGE_V1};
+     * edge -1 (edge 0x00 in the 6-player encoding) is at index 0.
+     */
+    private SOCPlayingPiece[] edgeRoads = new SOCPlayingPiece[MAXEDGE_V1 + 1];
+
+    /**
+     * Adjacency tables for this board's coordinate ranges; see {@link #getAdjacency()}.
+     * Not serialized, since the tables are shared by all boards with the same ranges.
+     */
+    private transient Adjacency adjacency;
+
+    /**
+     * {@link Integer} objects for coordinates 0 to 0xFF, so the Vector-returning
+     * adjacency methods don't box a new Integer for each coordinate.
+     */
+    private static final Integer[] COORD_INTEGERS = new Integer[0x100];
+    static
+    {
+        for (int i = 0; i < COORD_INTEGERS.length; ++i)
+            COORD_INTEGERS[i] = Integer.valueOf(i);
+    }
+
+    /**
+     * Hexes adjacent to each node coordinate from 0 to 0xFF, 3 per node, in the order of
+     * {@link #calcAdjacentHexesToNode(int)}; unused elements are -9.
+     * Used by {@link #getAdjacentHexesToNode(int)}.
+     */
+    private static final int[] NODE_TO_HEXES = new int[0x100 * 3];
+    static
+    {
+        for (int node = 0; node < 0x100; ++node)
+            toTable(calcAdjacentHexesToNode(node), NODE_TO_HEXES, node, 3);
+    }
+
+    /**
+     * Adjacency tables, one per board coordinate range; see {@link #getAdjacency()}.
+     * Indexed by {@link #BOARD_ENCODING_ORIGINAL} or {@link #BOARD_ENCODING_6PLAYER}.
+     */
+    private static final Adjacency[] ADJACENCIES = new Adjacency[MAX_BOARD_ENCODING + 1];
+
+    /**
+     * Adjacent nodes, edges and hexes for each coordinate of a board's coordinate range,
+     * computed once per range by the methods that used to be called for each lookup.
+     * Each table is a flat array indexed by (coordinate * width + direction),
+     * with -9 for directions that have nothing adjacent, as in {@link #getAdjacentNodeToNode(int, int)}.
+     * The tables are never changed once made.
+     */
+    private static final class Adjacency
+    {
+        /** Nodes adjacent to each node from 0 to {@link SOCBoard#MAXNODE}: 3 per node, by direction */
+        final int[] nodeToNodes = new int[MAXNODEPLUSONE * 3];
+
+        /** Edges adjacent to each node from 0 to {@link SOCBoard#MAXNODE}: 3 per node, by direction */
+        final int[] nodeToEdges = new int[MAXNODEPLUSONE * 3];
+
+        /** Edges adjacent to each edge from 0 to {@link SOCBoard#MAXEDGE_V1}: 4 per edge */
+        final int[] edgeToEdges = new int[(MAXEDGE_V1 + 1) * 4];
+
+        /** Land and water hexes adjacent to each hex from 0 to {@link SOCBoard#MAXHEX}: 6 per hex */
+        final int[] hexToHexes = new int[(MAXHEX + 1) * 6];
+
+        Adjacency(SOCBoard board)
+        {
+            for (int node = 0; node <= MAXNODE; ++node)
+            {
+                for (int dir = 0; dir < 3; ++dir)
+                {
+                    nodeToNodes[node * 3 + dir] = board.calcAdjacentNodeToNode(node, dir);
+                    nodeToEdges[node * 3 + dir] = board.calcAdjacentEdgeToNode(node, dir);
+                }
+            }
+            for (int edge = 0; edge <= MAXEDGE_V1; ++edge)
+                toTable(board.calcAdjacentEdgesToEdge(edge), edgeToEdges, edge, 4);
+            for (int hex = 0; hex <= MAXHEX; ++hex)
+                toTable(board.calcAdjacentHexesToHex(hex, true), hexToHexes, hex, 6);
+        }
+    }
+
+    /**
+     * Copy a Vector of Integer coordinates into row <tt>row</tt> of a flat table,
+     * filling the rest of the row with -9.
+     *
+     * @param coords  the coordinates, or null if none
+     */
+    private static void toTable(Vector coords, int[] table, final int row, final int width)
+    {
+        final int n = (coords != null) ? coords.size() : 0;
+        for (int i = 0; i < width; ++i)
+            table[row * width + i] = (i < n) ? ((Integer) coords.elementAt(i)).intValue() : -9;
+    }
+
+    /**
+     * Make a Vector of Integer coordinates from row <tt>row</tt> of a flat table, skipping -9 entries.
+     */
+    private static Vector fromTable(final int[] table, final int row, final int width)
+    {
+        Vector coords = new Vector(width);
+        for (int i = row * width, end = i + width; i < end; ++i)
+        {
+            final int c = table[i];
+            if (c != -9)
+                coords.addElement(coordInteger(c));
+        }
+        return coords;
+    }
+
+    /**
+     * @return an Integer for this coordinate, shared if it's in the usual range
+     */
+    private static Integer coordInteger(final int coord)
+    {
+        if ((coord >= 0) && (coord < COORD_INTEGERS.length))
+            return COORD_INTEGERS[coord];
+        return Integer.valueOf(coord);
+    }
+
+    /**
+     * Get the adjacency tables for this board's coordinate ranges,
+     * which were set in the constructor, computing them if no board with the same ranges has yet.
+     */
+    private final Adjacency getAdjacency()
+    {
+        Adjacency adj = adjacency;
+        if (adj != null)
+            return adj;
+
+        final int fmt = (minNode == MINNODE_V1) ? BOARD_ENCODING_ORIGINAL : BOARD_ENCODING_6PLAYER;
+        synchronized (ADJACENCIES)
+        {
+            adj = ADJACENCIES[fmt];
+            if (adj == null)
+            {
+                adj = new Adjacency(this);
+                ADJACENCIES[fmt] = adj;
+            }
+        }
+        adjacency = adj;
+        return adj;
+    }
+
     /**
      * Create a new Settlers of Catan Board based on <tt>gameOpts</tt>; this is a factory method.
      * @param gameOpts  if game has options, hashtable of {@link SOCGameOption}; otherwise null.
@@ -766,6 +929,165 @@ public class SOCBoard implements Serializable, Cloneable
         }
     }
 
+    /**
+     * Make a copy of a board, without its pieces.
+     * The copy's pieces are added by {@link #copyPieces(SOCBoard, Map)} once its players' pieces exist.
+     *<P>
+     * {@link #numToHexID}, {@link #hexIDtoNum} and {@link #nodesOnBoard} are never changed after
+     * construction, so they are always shared with <tt>board</tt>.
+     * If <tt>shareLayout</tt> is true, the rest of the layout is also shared until either board
+     * changes it: see {@link #unshareLayout()}.  The layout rarely changes once a game
+     * has begun, so this saves copying it for each game copy made by robots and simulations.
+     *
+     * @param board  the board to copy
+     * @param shareLayout  if true, share the layout arrays copy-on-write instead of copying them now
+     * @see SOCGame#copy(boolean)
+     */
+    public SOCBoard(SOCBoard board, final boolean shareLayout)
+    {
+        boardWidth = board.boardWidth;
+        boardHeight = board.boardHeight;
+        minNode = board.minNode;
+        minEdge = board.minEdge;
+        maxEdge = board.maxEdge;
+        boardEncodingFormat = board.boardEncodingFormat;
+        robberHex = board.robberHex;
+        prevRobberHex = board.prevRobberHex;
+        rand = SOCGame.copyRandom(board.rand);
+
+        numToHexID = board.numToHexID;
+        hexIDtoNum = board.hexIDtoNum;
+        nodesOnBoard = board.nodesOnBoard;
+        adjacency = board.adjacency;
+
+        hexLayout = board.hexLayout;
+        portsLayout = board.portsLayout;
+        numberLayout = board.numberLayout;
+        nodeIDtoPortType = board.nodeIDtoPortType;
+        ports = board.ports;
+        layoutShared = true;
+        if (shareLayout)
+            board.layoutShared = true;
+        else
+            unshareLayout();
+
+        pieces = new Vector(96);
+        roads = new Vector(60);
+        settlements = new Vector(20);
+        cities = new Vector(16);
+    }
+
+    /**
+     * Give this board its own copy of the layout arrays, if they may be shared
+     * with another board; see {@link #layoutShared}.
+     * Called before changing the contents of any of them.
+     */
+    private final void unshareLayout()
+    {
+        if (! layoutShared)
+            return;
+
+        hexLayout = hexLayout.clone();
+        if (portsLayout != null)
+            portsLayout = portsLayout.clone();
+        numberLayout = numberLayout.clone();
+        if (nodeIDtoPortType != null)
+            nodeIDtoPortType = nodeIDtoPortType.clone();
+
+        Vector[] pv = new Vector[ports.length];
+        for (int i = 0; i < ports.length; ++i)
+            pv[i] = (Vector) ports[i].clone();
+        ports = pv;
+
+        layoutShared = false;
+    }
+
+    /**
+     * Fill this board's empty piece vectors from those of the board it was copied from,
+     * using the copied pieces already made for its players.
+     * Keeps the order of each of <tt>board</tt>'s vectors.
+     *
+     * @param board  the board this one was copied from by {@link #SOCBoard(SOCBoard, boolean)}
+     * @param pieceCopies  map from each of <tt>board</tt>'s pieces to its copy
+     */
+    void copyPieces(SOCBoard board, Map<SOCPlayingPiece, SOCPlayingPiece> pieceCopies)
+    {
+        copyPieces(board.pieces, pieces, pieceCopies);
+        copyPieces(board.roads, roads, pieceCopies);
+        copyPieces(board.settlements, settlements, pieceCopies);
+        copyPieces(board.cities, cities, pieceCopies);
+        indexPieces();
+    }
+
+    /**
+     * Fill {@link #nodePieces} and {@link #edgeRoads} from the current contents of {@link #pieces}.
+     */
+    private void indexPieces()
+    {
+        nodePieces = new SOCPlayingPiece[MAXNODEPLUSONE];
+        edgeRoads = new SOCPlayingPiece[MAXEDGE_V1 + 1];
+        for (int i = 0; i < pieces.size(); ++i)
+            indexPiece((SOCPlayingPiece) pieces.elementAt(i));
+    }
+
+    /**
+     * Add a piece to {@link #nodePieces} or {@link #edgeRoads}, if its coordinate is within their range.
+     */
+    private final void indexPiece(SOCPlayingPiece pp)
+    {
+        int coord = pp.getCoordinates();
+        if (pp.getType() == SOCPlayingPiece.ROAD)
+        {
+            if (coord == -1)
+                coord = 0;
+            if ((coord >= 0) && (coord < edgeRoads.length))
+                edgeRoads[coord] = pp;
+        }
+        else if ((coord >= 0) && (coord < nodePieces.length))
+        {
+            nodePieces[coord] = pp;
+        }
+    }
+
+    /**
+     * Remove a piece from {@link #nodePieces} or {@link #edgeRoads}, if it's there.
+     * A city replacing a settlement is put on the board before the settlement is removed,
+     * so only clear the slot if it still holds <tt>pp</tt>.
+     */
+    private final void unindexPiece(SOCPlayingPiece pp)
+    {
+        int coord = pp.getCoordinates();
+        if (pp.getType() == SOCPlayingPiece.ROAD)
+        {
+            if (coord == -1)
+                coord = 0;
+            if ((coord >= 0) && (coord < edgeRoads.length) && (edgeRoads[coord] == pp))
+                edgeRoads[coord] = null;
+        }
+        else if ((coord >= 0) && (coord < nodePieces.length) && (nodePieces[coord] == pp))
+        {
+            nodePieces[coord] = null;
+        }
+    }
+
+    /**
+     * Rebuild the piece index if reading a board saved before it was added.
+     */
+    private void readObject(ObjectInputStream in)
+        throws IOException, ClassNotFoundException
+    {
+        in.defaultReadObject();
+        if ((nodePieces == null) || (edgeRoads == null))
+            indexPieces();
+    }
+
+    private static void copyPieces(Vector from, Vector to, Map<SOCPlayingPiece, SOCPlayingPiece> pieceCopies)
+    {
+        to.ensureCapacity(from.size());
+        for (int i = 0; i < from.size(); ++i)
+            to.addElement(pieceCopies.get(from.elementAt(i)));
+    }
+
     /**
      * Auxiliary method for initializing part of the hexIDtoNum array.
      * Between begin and end, increment coord by 0x22, which moves 1 hex to the east.
@@ -797,6 +1119,8 @@ public class SOCBoard implements Serializable, Cloneable
      */
     public void makeNewBoard(Hashtable opts, boolean defaultPorts)
     {
+        unshareLayout();
+
         final boolean is6player = (boardEncodingFormat == BOARD_ENCODING_6PLAYER);
 
         final int[] landHex_v1 = { 0, 1, 1, 1, 2, 2, 2, 3, 3, 3, 3, 4, 4, 4, 4, 5, 5, 5, 5 };
@@ -1543,6 +1867,7 @@ public class SOCBoard implements Serializable, Cloneable
      */
     public void setHexLayout(int[] hl)
     {
+        unshareLayout();
         hexLayout = hl;
 
         if (hl[0] == 6)
@@ -1600,6 +1925,7 @@ public class SOCBoard implements Serializable, Cloneable
      */
     public void setPortsLayout(int[] portTypes)
     {
+        unshareLayout();
         portsLayout = portTypes;
         if (nodeIDtoPortType == null)
         {
@@ -1855,6 +2181,7 @@ public class SOCBoard implements Serializable, Cloneable
     public void putPiece(SOCPlayingPiece pp)
     {
         pieces.addElement(pp);
+        indexPiece(pp);
 
         switch (pp.getType())
         {
@@ -1889,6 +2216,7 @@ public class SOCBoard implements Serializable, Cloneable
             if ((piece.getType() == p.getType()) && (piece.getCoordinates() == p.getCoordinates()))
             {
                 pieces.removeElement(p);
+                unindexPiece(p);
 
                 switch (piece.getType())
                 {
@@ -2017,9 +2345,9 @@ public class SOCBoard implements Serializable, Cloneable
         Vector nodes = new Vector(2);
         final int[] narr = getAdjacentNodesToEdge_arr(coord);
         if ((narr[0] >= minNode) && (narr[0] <= MAXNODE))
-            nodes.addElement(Integer.valueOf(narr[0]));
+            nodes.addElement(coordInteger(narr[0]));
         if ((narr[1] >= minNode) && (narr[1] <= MAXNODE))
-            nodes.addElement(Integer.valueOf(narr[1]));
+            nodes.addElement(coordInteger(narr[1]));
         return nodes;
     }
 
@@ -2433,8 +2761,42 @@ public class SOCBoard implements Serializable, Cloneable
     /**
      * @param coord  Edge coordinate; for the 6-player encoding, use 0, not -1, for edge 0x00.
      * @return the adjacent edges to this edge, as a Vector of Integer coordinates
+     * @see #getAdjacentEdgeToEdge(int, int)
      */
     public Vector getAdjacentEdgesToEdge(int coord)
+    {
+        if ((coord < 0) || (coord > MAXEDGE_V1))
+            return calcAdjacentEdgesToEdge(coord);
+        return fromTable(getAdjacency().edgeToEdges, coord, 4);
+    }
+
+    /**
+     * Get one of the edges adjacent to this edge, without making a Vector.
+     * Returns the same edges, in the same order, as {@link #getAdjacentEdgesToEdge(int)}.
+     *
+     * @param coord  Edge coordinate; for the 6-player encoding, use 0, not -1, for edge 0x00.
+     * @param i  Index of the adjacent edge, 0 to 3
+     * @return  The adjacent edge, or -9 if this edge has fewer than <tt>i</tt> + 1 adjacent edges
+     * @throws IllegalArgumentException if <tt>i</tt> is less than 0 or greater than 3
+     */
+    public int getAdjacentEdgeToEdge(final int coord, final int i)
+        throws IllegalArgumentException
+    {
+        if ((i < 0) || (i > 3))
+            throw new IllegalArgumentException("i out of range: " + i);
+        if ((coord < 0) || (coord > MAXEDGE_V1))
+        {
+            Vector edges = calcAdjacentEdgesToEdge(coord);
+            return (i < edges.size()) ? ((Integer) edges.elementAt(i)).intValue() : -9;
+        }
+        return getAdjacency().edgeToEdges[coord * 4 + i];
+    }
+
+    /**
+     * Calculate the edges adjacent to an edge, for {@link #getAdjacentEdgesToEdge(int)}
+     * and its {@link Adjacency} table.
+     */
+    private Vector calcAdjacentEdgesToEdge(int coord)
     {
         Vector edges = new Vector(4);
         int tmp;
@@ -2550,6 +2912,17 @@ public class SOCBoard implements Serializable, Cloneable
      * @return the coordinates (Integers) of the 1 to 3 hexes touching this node
      */
     public static Vector getAdjacentHexesToNode(int coord)
+    {
+        if ((coord < 0) || (coord > 0xFF))
+            return calcAdjacentHexesToNode(coord);
+        return fromTable(NODE_TO_HEXES, coord, 3);
+    }
+
+    /**
+     * Calculate the hexes touching a node, for {@link #getAdjacentHexesToNode(int)}
+     * and its table {@link #NODE_TO_HEXES}.
+     */
+    private static Vector calcAdjacentHexesToNode(int coord)
     {
         Vector hexes = new Vector(3);
         int tmp;
@@ -2620,10 +2993,12 @@ public class SOCBoard implements Serializable, Cloneable
     public Vector getAdjacentEdgesToNode(final int coord)
     {
         Vector edges = new Vector(3);
-        int[] edgea = getAdjacentEdgesToNode_arr(coord);
-        for (int i = edgea.length - 1; i>=0; --i)
-            if (edgea[i] != -9)
-                edges.addElement(Integer.valueOf(edgea[i]));
+        for (int i = 2; i >= 0; --i)
+        {
+            final int edge = getAdjacentEdgeToNode(coord, i);
+            if (edge != -9)
+                edges.addElement(coordInteger(edge));
+        }
         return edges;
     }
 
@@ -2667,6 +3042,20 @@ public class SOCBoard implements Serializable, Cloneable
      */
     public int getAdjacentEdgeToNode(final int nodeCoord, final int nodeDir)
         throws IllegalArgumentException
+    {
+        if ((nodeDir < 0) || (nodeDir > 2))
+            throw new IllegalArgumentException("nodeDir out of range: " + nodeDir);
+        if ((nodeCoord < 0) || (nodeCoord > MAXNODE))
+            return calcAdjacentEdgeToNode(nodeCoord, nodeDir);
+        return getAdjacency().nodeToEdges[nodeCoord * 3 + nodeDir];
+    }
+
+    /**
+     * Calculate the adjacent edge to a node, for {@link #getAdjacentEdgeToNode(int, int)}
+     * and its {@link Adjacency} table.
+     */
+    private int calcAdjacentEdgeToNode(final int nodeCoord, final int nodeDir)
+        throws IllegalArgumentException
     {
         // See RST dissertation figures A.2 (nodes), A.3 (edges),
         // and A.8 and A.10 (computing adjacent edges to a node).
@@ -2854,10 +3243,12 @@ public class SOCBoard implements Serializable, Cloneable
     public Vector getAdjacentNodesToNode(final int coord)
     {
         Vector nodes = new Vector(3);
-        int[] nodea = getAdjacentNodesToNode_arr(coord);
-        for (int i = nodea.length - 1; i>=0; --i)
-            if (nodea[i] != -9)
-                nodes.addElement(Integer.valueOf(nodea[i]));
+        for (int i = 2; i >= 0; --i)
+        {
+            final int node = getAdjacentNodeToNode(coord, i);
+            if (node != -9)
+                nodes.addElement(coordInteger(node));
+        }
         return nodes;
     }
 
@@ -2991,6 +3382,20 @@ public class SOCBoard implements Serializable, Cloneable
      */
     public int getAdjacentNodeToNode(final int nodeCoord, final int nodeDir)
         throws IllegalArgumentException
+    {
+        if ((nodeDir < 0) || (nodeDir > 2))
+            throw new IllegalArgumentException("nodeDir out of range: " + nodeDir);
+        if ((nodeCoord < 0) || (nodeCoord > MAXNODE))
+            return calcAdjacentNodeToNode(nodeCoord, nodeDir);
+        return getAdjacency().nodeToNodes[nodeCoord * 3 + nodeDir];
+    }
+
+    /**
+     * Calculate the adjacent node to a node, for {@link #getAdjacentNodeToNode(int, int)}
+     * and its {@link Adjacency} table.
+     */
+    private int calcAdjacentNodeToNode(final int nodeCoord, final int nodeDir)
+        throws IllegalArgumentException
     {
         // See RST dissertation figures A.2 (nodes)
         // and A.7 and A.9 (computing adjacent nodes to a node).
@@ -3207,6 +3612,31 @@ public class SOCBoard implements Serializable, Cloneable
      * @since 1.1.07
      */
     public Vector getAdjacentHexesToHex(final int hexCoord, final boolean includeWater)
+    {
+        if ((hexCoord < 0) || (hexCoord > MAXHEX))
+            return calcAdjacentHexesToHex(hexCoord, includeWater);
+
+        final int[] table = getAdjacency().hexToHexes;
+        Vector hexes = new Vector(6);
+        for (int i = hexCoord * 6, end = i + 6; i < end; ++i)
+        {
+            final int hex = table[i];
+            if ((hex != -9)
+                && (includeWater || hexLayout[hexIDtoNum[hex]] <= MAX_LAND_HEX))
+                hexes.addElement(coordInteger(hex));
+        }
+
+        if (hexes.size() > 0)
+            return hexes;
+        else
+            return null;
+    }
+
+    /**
+     * Calculate the hexes adjacent to a hex, for {@link #getAdjacentHexesToHex(int, boolean)}
+     * and its {@link Adjacency} table.
+     */
+    private Vector calcAdjacentHexesToHex(final int hexCoord, final boolean includeWater)
     {
         Vector hexes = new Vector();
 
@@ -3409,6 +3839,9 @@ public class SOCBoard implements Serializable, Cloneable
      */
     public SOCPlayingPiece settlementAtNode(int nodeCoord)
     {
+        if ((nodeCoord >= 0) && (nodeCoord < nodePieces.length))
+            return nodePieces[nodeCoord];  // <-- Early return: indexed ---
+
         Enumeration pEnum = pieces.elements();
 
         while (pEnum.hasMoreElements())
@@ -3434,6 +3867,10 @@ public class SOCBoard implements Serializable, Cloneable
      */
     public SOCPlayingPiece roadAtEdge(int edgeCoord)
     {
+        final int idx = (edgeCoord == -1) ? 0 : edgeCoord;
+        if ((idx >= 0) && (idx < edgeRoads.length))
+            return edgeRoads[idx];  // <-- Early return: indexed ---
+
         Enumeration pEnum = roads.elements();
 
         while (pEnum.hasMoreElements())
@@ -3673,5 +4110,7 @@ public class SOCBoard implements Serializable, Cloneable
         roads = new Vector(60);
         settlements = new Vector(20);
         cities = new Vector(16);
+        nodePieces = new SOCPlayingPiece[MAXNODEPLUSONE];
+        edgeRoads = new SOCPlayingPiece[MAXEDGE_V1 + 1];
     }
 }
@@ -23,6 +23,7 @@ package soc.game;
 import soc.disableDebug.D;
 import soc.message.SOCMessage;
 import soc.server.database.stac.ObsGameStateRow;
+import soc.util.CopyableRandom;
 import soc.util.DeepCopy;
 import soc.util.IntPair;
 import soc.util.SOCGameBoardReset;
@@ -35,7 +36,9 @@ import java.util.Arrays;
 import java.util.Date;
 import java.util.Enumeration;
 import java.util.Hashtable;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Random;
 import java.util.Stack;
 import java.util.Vector;
@@ -572,9 +575,9 @@ public class SOCGame implements Serializable, Cloneable
     private int[] playedDevCards;
     
     /**
-     * used to generate random numbers
+     * used to generate random numbers; copyable, see {@link #copyRandom(CopyableRandom)}
      */
-    private Random rand = new Random();
+    private CopyableRandom rand = new CopyableRandom();
 
     /**
      * used to track if there were any player subs
@@ -802,6 +805,130 @@ public class SOCGame implements Serializable, Cloneable
         Arrays.fill(playedDevCards, 0);
     }
 
+    /**
+     * Make a copy of a game, for {@link #copy(boolean)}.
+     * The board is copied first, then each player with their pieces, then the board's pieces.
+     *
+     * @param ga  the game to copy
+     * @param shareLayout  if true, the board layout is shared copy-on-write;
+     *     see {@link SOCBoard#SOCBoard(SOCBoard, boolean)}
+     */
+    private SOCGame(SOCGame ga, final boolean shareLayout)
+    {
+        name = ga.name;
+        ownerName = ga.ownerName;
+        active = ga.active;
+        inUse = ga.inUse;
+        vpWinner = ga.vpWinner;
+        isTrainingGame = ga.isTrainingGame;
+        finishTurn = ga.finishTurn;
+        isPractice = ga.isPractice;
+        hasOldClients = ga.hasOldClients;
+        clientVersionLowest = ga.clientVersionLowest;
+        clientVersionHighest = ga.clientVersionHighest;
+        clientVersionMinRequired = ga.clientVersionMinRequired;
+        debugFreePlacement = ga.debugFreePlacement;
+        debugFreePlacementStartPlaced = ga.debugFreePlacementStartPlaced;
+        isFromBoardReset = ga.isFromBoardReset;
+        boardResetVoteRequester = ga.boardResetVoteRequester;
+        boardResetVotes = ga.boardResetVotes.clone();
+        boardResetVotesWaiting = ga.boardResetVotesWaiting;
+        opts = SOCGameOption.cloneOptions(ga.opts);
+        maxPlayers = ga.maxPlayers;
+
+        board = new SOCBoard(ga.board, shareLayout);
+        players = new SOCPlayer[maxPlayers];
+        Map<SOCPlayingPiece, SOCPlayingPiece> pieceCopies = new IdentityHashMap<SOCPlayingPiece, SOCPlayingPiece>(128);
+        for (int i = 0; i < maxPlayers; i++)
+            players[i] = new SOCPlayer(ga.players[i], this, pieceCopies);
+        for (Enumeration e = ga.board.getPieces().elements(); e.hasMoreElements(); )
+        {
+            final SOCPlayingPiece pp = (SOCPlayingPiece) e.nextElement();
+            if (! pieceCopies.containsKey(pp))
+                pieceCopies.put(pp, pp.copy(players[pp.getPlayer().getPlayerNumber()], board));
+        }
+        board.copyPieces(ga.board, pieceCopies);
+
+        seats = ga.seats.clone();
+        seatLocks = ga.seatLocks.clone();
+        currentPlayerNumber = ga.currentPlayerNumber;
+        firstPlayerNumber = ga.firstPlayerNumber;
+        lastPlayerNumber = ga.lastPlayerNumber;
+        currentDice = ga.currentDice;
+        gameState = ga.gameState;
+        oldGameState = ga.oldGameState;
+        placingRobberForKnightCard = ga.placingRobberForKnightCard;
+        forcingEndTurn = ga.forcingEndTurn;
+        askedSpecialBuildPhase = ga.askedSpecialBuildPhase;
+        specialBuildPhase_afterPlayerNumber = ga.specialBuildPhase_afterPlayerNumber;
+        playerWithLargestArmy = ga.playerWithLargestArmy;
+        oldPlayerWithLargestArmy = ga.oldPlayerWithLargestArmy;
+        playerWithLongestRoad = ga.playerWithLongestRoad;
+        oldPlayerWithLongestRoad = new Stack();
+        for (int i = 0; i < ga.oldPlayerWithLongestRoad.size(); i++)
+            oldPlayerWithLongestRoad.push
+                (new SOCOldLRStats((SOCOldLRStats) ga.oldPlayerWithLongestRoad.elementAt(i), this));
+        playerWithWin = ga.playerWithWin;
+
+        numDevCards = ga.numDevCards;
+        devCardDeck = (ga.devCardDeck != null) ? ga.devCardDeck.clone() : null;
+        playedDevCards = ga.playedDevCards.clone();
+        rand = copyRandom(ga.rand);
+
+        allOriginalPlayers = ga.allOriginalPlayers;
+        startTime = (ga.startTime != null) ? (Date) ga.startTime.clone() : null;
+        expiration = ga.expiration;
+        lastActionTime = ga.lastActionTime;
+        lastActionWasBankTrade = ga.lastActionWasBankTrade;
+        turnCount = ga.turnCount;
+        roundCount = ga.roundCount;
+        speakingQueue = new ArrayList<String>(ga.speakingQueue);
+        currentSpeaker = ga.currentSpeaker;
+        sevenHasBeenRolled = ga.sevenHasBeenRolled;
+    }
+
+    /**
+     * Make a deep copy of this game, with the board layout shared copy-on-write.
+     * Gives the same result as copying with {@link DeepCopy#copy(Object)}, which serializes
+     * the whole game, but much faster and with far fewer allocations.
+     * Like serialization, leaves out the transient {@link #boardResetOngoingInfo}.
+     *
+     * @return a copy of this game, sharing no changeable state with it
+     * @see #copy(boolean)
+     */
+    public SOCGame copy()
+    {
+        return new SOCGame(this, true);
+    }
+
+    /**
+     * Make a deep copy of this game.
+     *
+     * @param shareLayout  if true, the copy shares the board's layout arrays with this game
+     *     until either board changes its layout, which is rare once a game has begun.
+     *     If false, the layout is copied now.
+     * @return a copy of this game, sharing no changeable state with it
+     * @see #copy()
+     */
+    public SOCGame copy(final boolean shareLayout)
+    {
+        return new SOCGame(this, shareLayout);
+    }
+
+    /**
+     * Copy a random number generator, including its current seed,
+     * so a copied game or board continues the same sequence as the original.
+     *
+     * @param r  the generator to copy, or null
+     * @return a copy of <tt>r</tt>, or null
+     */
+    static CopyableRandom copyRandom(CopyableRandom r)
+    {
+        if (r == null)
+            return null;
+        return new CopyableRandom(r);
+    }
+
     /**
      * update the tracking of dev cards based on the one just played;
      * @param type the dev card type which has been played/observed
@@ -5042,6 +5169,15 @@ public class SOCGame implements Serializable, Cloneable
     public void resetRandom(){
     	rand.setSeed(System.currentTimeMillis());
     }
+
+    /**
+     * reseeds the random number generator with a given seed, for when many copies of a game are played
+     * within the same millisecond and each must roll its own dice.
+     * @param seed the new seed
+     */
+    public void resetRandom(long seed){
+    	rand.setSeed(seed);
+    }
     /**
      * Method for transforming the observable game state into a feature vector containing the same information as a row inside the observable states
      * table in the DB.
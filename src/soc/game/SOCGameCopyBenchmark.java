@@ -0,0 +1,119 @@
+package soc.game;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import soc.util.DeepCopy;
+
+/**
+ * Compares the time and memory taken to copy games in progress with {@link DeepCopy#copy(Object)},
+ * which serializes and deserializes the game, and with {@link SOCGame#copy(boolean)},
+ * with and without sharing the board layout.
+ * The games are played to various stages with random moves by {@link SOCGameCopyCheck}.
+ *<P>
+ * Reports copies per second and, if the JVM can measure it, bytes allocated per copy.
+ *<P>
+ * Usage: SOCGameCopyBenchmark [copiesPerRound] [rounds]
+ */
+public class SOCGameCopyBenchmark
+{
+    /** Number of game actions played in each of the games copied: from initial placement to late game */
+    private static final int[] STAGES = { 4, 40, 150, 400, 1000 };
+
+    private static final int DEEPCOPY = 0, COPY = 1, COPY_SHARED = 2;
+
+    private static final String[] NAMES = { "DeepCopy", "copy(false)", "copy(true)" };
+
+    /**
+     * @return the bytes allocated so far by the current thread, or -1 if the JVM can't tell
+     */
+    private static long allocatedBytes()
+    {
+        final ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+        if (! (mx instanceof com.sun.management.ThreadMXBean))
+            return -1;
+        return ((com.sun.management.ThreadMXBean) mx).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Copy each of the games in turn, <tt>copies</tt> times in all.
+     *
+     * @param stats  set to { copies per second, bytes allocated per copy or -1 }
+     */
+    private static void measure(final int how, final List<SOCGame> games, final int copies, double[] stats)
+    {
+        int sum = 0;
+        final long bytes = allocatedBytes();
+        final long start = System.nanoTime();
+        for (int i = 0; i < copies; i++)
+        {
+            final SOCGame ga = games.get(i % games.size());
+            final SOCGame copy;
+            switch (how)
+            {
+            case DEEPCOPY:
+                copy = (SOCGame) DeepCopy.copy(ga);  break;
+            case COPY:
+                copy = ga.copy(false);  break;
+            default:
+                copy = ga.copy(true);
+            }
+            sum += copy.getCurrentPlayerNumber();  // keep the copy live
+        }
+        final long elapsed = System.nanoTime() - start;
+
+        stats[0] = copies / (elapsed / 1e9);
+        stats[1] = (bytes == -1) ? -1 : ((double) (allocatedBytes() - bytes)) / copies;
+        if (sum == 42)
+            System.out.print("");
+    }
+
+    public static void main(String[] args)
+    {
+        final int copies = (args.length > 0) ? Integer.parseInt(args[0]) : 2000;
+        final int rounds = (args.length > 1) ? Integer.parseInt(args[1]) : 5;
+
+        final Random r = new Random(42);
+        List<SOCGame> games = new ArrayList<SOCGame>();
+        for (int s = 0; s < STAGES.length; s++)
+        {
+            SOCGame ga;
+            int step;
+            do
+            {
+                // start again if the random game ends before this stage
+                ga = SOCGameCopyCheck.newGame("copybench~" + s, r);
+                for (step = 0; step < STAGES[s]; step++)
+                    if (! SOCGameCopyCheck.playStep(ga, r))
+                        break;
+            } while (step < STAGES[s]);
+            games.add(ga);
+        }
+
+        System.out.println("Games: " + games.size() + " at " + STAGES.length + " stages, copies per round: " + copies);
+        final double[] stats = new double[2];
+        final double[] rate = new double[NAMES.length];
+        // the first round warms up the JIT and is not reported
+        for (int rnd = 0; rnd <= rounds; rnd++)
+        {
+            StringBuilder sb = new StringBuilder("Round " + rnd + ":");
+            for (int how = 0; how < NAMES.length; how++)
+            {
+                measure(how, games, copies, stats);
+                rate[how] = stats[0];
+                sb.append(String.format(" %s %.0f copies/s", NAMES[how], stats[0]));
+                if (stats[1] >= 0)
+                    sb.append(String.format(" (%.0f KB each)", stats[1] / 1024));
+                sb.append(',');
+            }
+            if (rnd == 0)
+                continue;
+            sb.append(String.format(" copy(true) x%.1f", rate[COPY_SHARED] / rate[DEEPCOPY]));
+            System.out.println(sb);
+        }
+    }
+
+}
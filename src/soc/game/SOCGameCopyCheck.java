@@ -0,0 +1,504 @@
+package soc.game;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import soc.util.CopyableRandom;
+import soc.util.DeepCopy;
+
+/**
+ * Checks that {@link SOCGame#copy(boolean)} gives the same result as copying with {@link DeepCopy#copy(Object)}.
+ * Plays random games with 4 players, and at intervals copies the game both ways and compares the copies
+ * field by field, including which objects are shared between fields (such as a piece in both a player's
+ * and the board's piece lists).  Also checks the copy shares no changeable objects with the original,
+ * and that the copies stay the same as play continues in each of them.
+ *<P>
+ * Prints each difference found and exits with status 1 if there were any.
+ *<P>
+ * Usage: SOCGameCopyCheck [games] [seed]
+ */
+public class SOCGameCopyCheck
+{
+    /** Game actions between copies */
+    private static final int COPY_INTERVAL = 25;
+
+    /** Game actions to play in both copies before comparing them again */
+    private static final int CONTINUE_STEPS = 40;
+
+    /** Most game actions to play in each game: random moves without trading can take a long time to win */
+    private static final int MAX_STEPS = 2000;
+
+    /**
+     * Fields which may refer to the same object in the original and in a copy,
+     * because they are never changed once made; see the copy constructors.
+     */
+    private static final Set<String> SHARED_FIELDS = new HashSet<String>();
+    static
+    {
+        SHARED_FIELDS.add("numToHexID");
+        SHARED_FIELDS.add("hexIDtoNum");
+        SHARED_FIELDS.add("nodesOnBoard");
+        SHARED_FIELDS.add("landHexCoords");
+        SHARED_FIELDS.add("lrPaths[]");
+        SHARED_FIELDS.add("numberAndResourceForHex[][]");
+    }
+
+    /** Fields which may differ between copies that played on separately: set from the clock */
+    private static final Set<String> CLOCK_FIELDS = new HashSet<String>();
+    static
+    {
+        CLOCK_FIELDS.add("lastActionTime");
+    }
+
+    private static final Map<Class<?>, List<Field>> fieldsCache = new HashMap<Class<?>, List<Field>>();
+
+    private final List<String> problems = new ArrayList<String>();
+
+    /**
+     * Create a game with 4 seated players and a new board, ready for initial placement.
+     *
+     * @param name  the game name
+     * @param r  chooses the first player
+     */
+    public static SOCGame newGame(String name, Random r)
+    {
+        SOCGame ga = new SOCGame(name);
+        for (int pn = 0; pn < 4; pn++)
+            ga.addPlayer("player" + pn, pn);
+        ga.startGame(r.nextInt(4), false);
+        return ga;
+    }
+
+    /**
+     * Make one random legal move for whoever has to act, as the server would after the client's request.
+     *
+     * @param ga  the game
+     * @param r  chooses the move
+     * @return false if the game is over, or if no move could be found
+     */
+    public static boolean playStep(SOCGame ga, Random r)
+    {
+        final int pn = ga.getCurrentPlayerNumber();
+        final SOCPlayer pl = ga.getPlayer(pn);
+        final SOCBoard board = ga.getBoard();
+
+        switch (ga.getGameState())
+        {
+        case SOCGame.START1A:
+        case SOCGame.START2A:
+            {
+                final int node = pickNode(pl, board, r, false);
+                if (node == -1)
+                    return false;
+                ga.putPiece(new SOCSettlement(pl, node, board));
+            }
+            return true;
+
+        case SOCGame.START1B:
+        case SOCGame.START2B:
+            {
+                final int edge = pickEdge(pl, board, r);
+                if (edge == -1)
+                    return false;
+                ga.putPiece(new SOCRoad(pl, edge, board));
+            }
+            return true;
+
+        case SOCGame.PLAY:
+            if (! ga.canRollDice(pn))
+                return false;
+            ga.rollDice();
+            return true;
+
+        case SOCGame.WAITING_FOR_DISCARDS:
+            for (int i = 0; i < ga.maxPlayers; i++)
+            {
+                final SOCPlayer dp = ga.getPlayer(i);
+                if (! dp.getNeedToDiscard())
+                    continue;
+                SOCResourceSet rs = new SOCResourceSet();
+                SOCResourceSet hand = dp.getResources().copy();
+                for (int n = hand.getTotal() / 2; n > 0; n--)
+                {
+                    int rtype;
+                    do
+                        rtype = SOCResourceConstants.CLAY + r.nextInt(5);
+                    while (hand.getAmount(rtype) == 0);
+                    hand.subtract(1, rtype);
+                    rs.add(1, rtype);
+                }
+                ga.discard(i, rs);
+                return true;
+            }
+            return false;
+
+        case SOCGame.PLACING_ROBBER:
+            {
+                final int[] hexes = SOCBoard.HEXCOORDS_LAND_V1;
+                for (int tries = 0; tries < 100; tries++)
+                {
+                    final int hex = hexes[r.nextInt(hexes.length)];
+                    if (ga.canMoveRobber(pn, hex))
+                    {
+                        ga.moveRobber(pn, hex);
+                        return true;
+                    }
+                }
+            }
+            return false;
+
+        case SOCGame.WAITING_FOR_CHOICE:
+            {
+                final List<?> victims = ga.getPossibleVictims();
+                if (victims.isEmpty())
+                    return false;
+                ga.stealFromPlayer(((SOCPlayer) victims.get(r.nextInt(victims.size()))).getPlayerNumber());
+            }
+            return true;
+
+        case SOCGame.PLAY1:
+            if (ga.couldBuildCity(pn) && r.nextBoolean())
+            {
+                final int node = pickNode(pl, board, r, true);
+                if (node != -1)
+                {
+                    ga.buyCity(pn);
+                    ga.putPiece(new SOCCity(pl, node, board));
+                    return true;
+                }
+            }
+            if (ga.couldBuildSettlement(pn) && r.nextBoolean())
+            {
+                final int node = pickNode(pl, board, r, false);
+                if (node != -1)
+                {
+                    ga.buySettlement(pn);
+                    ga.putPiece(new SOCSettlement(pl, node, board));
+                    return true;
+                }
+            }
+            if (ga.couldBuildRoad(pn) && r.nextBoolean())
+            {
+                final int edge = pickEdge(pl, board, r);
+                if (edge != -1)
+                {
+                    ga.buyRoad(pn);
+                    ga.putPiece(new SOCRoad(pl, edge, board));
+                    return true;
+                }
+            }
+            if (! ga.canEndTurn(pn))
+                return false;
+            ga.endTurn();
+            return ga.getGameState() < SOCGame.OVER;
+
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * @param city  if true, pick a potential city instead of a potential settlement
+     * @return a random potential settlement or city node for <tt>pl</tt>, or -1 if none
+     */
+    private static int pickNode(SOCPlayer pl, SOCBoard board, Random r, boolean city)
+    {
+        List<Integer> nodes = new ArrayList<Integer>();
+        for (int node = board.getMinNode(); node <= SOCBoard.MAXNODE; node++)
+            if (city ? pl.isPotentialCity(node) : pl.isPotentialSettlement(node))
+                nodes.add(Integer.valueOf(node));
+        return nodes.isEmpty() ? -1 : nodes.get(r.nextInt(nodes.size())).intValue();
+    }
+
+    /**
+     * @return a random potential road edge for <tt>pl</tt>, or -1 if none
+     */
+    private static int pickEdge(SOCPlayer pl, SOCBoard board, Random r)
+    {
+        List<Integer> edges = new ArrayList<Integer>();
+        for (int edge = board.getMinEdge(); edge <= SOCBoard.MAXEDGE_V1; edge++)
+            if (pl.isPotentialRoad(edge))
+                edges.add(Integer.valueOf(edge));
+        return edges.isEmpty() ? -1 : edges.get(r.nextInt(edges.size())).intValue();
+    }
+
+    /**
+     * @return the fields compared for objects of class <tt>c</tt>: all non-static, non-transient
+     *     fields, including those of its superclasses
+     */
+    private static List<Field> fields(Class<?> c)
+    {
+        List<Field> fl = fieldsCache.get(c);
+        if (fl != null)
+            return fl;
+
+        fl = new ArrayList<Field>();
+        for (Class<?> k = c; k != null && k != Object.class; k = k.getSuperclass())
+        {
+            for (Field f : k.getDeclaredFields())
+            {
+                final int mod = f.getModifiers();
+                if (Modifier.isStatic(mod) || Modifier.isTransient(mod))
+                    continue;
+                f.setAccessible(true);
+                fl.add(f);
+            }
+        }
+        fieldsCache.put(c, fl);
+        return fl;
+    }
+
+    /**
+     * @return true for classes whose objects can't be changed, so may be shared and are compared with equals
+     */
+    private static boolean isValue(Object o)
+    {
+        return (o instanceof String) || (o instanceof Number) || (o instanceof Boolean)
+            || (o instanceof Character) || (o instanceof Enum);
+    }
+
+    /**
+     * Compare two object graphs: same classes, same values, and the same objects shared between fields.
+     *
+     * @param a  object from the first graph
+     * @param b  corresponding object from the second graph
+     * @param path  where <tt>a</tt> is, for reporting differences
+     * @param pairs  objects of the first graph already compared, with their counterparts in the second
+     * @param skip  names of fields to leave out
+     */
+    private void compare(Object a, Object b, String path, Map<Object, Object> pairs, Set<String> skip)
+        throws IllegalAccessException
+    {
+        if ((a == null) || (b == null))
+        {
+            if (a != b)
+                problems.add(path + ": " + a + " != " + b);
+            return;
+        }
+        if (a.getClass() != b.getClass())
+        {
+            problems.add(path + ": class " + a.getClass().getName() + " != " + b.getClass().getName());
+            return;
+        }
+        if (isValue(a))
+        {
+            if (! a.equals(b))
+                problems.add(path + ": " + a + " != " + b);
+            return;
+        }
+
+        final Object prev = pairs.get(a);
+        if (prev != null)
+        {
+            if (prev != b)
+                problems.add(path + ": not the same object as elsewhere in the copy");
+            return;
+        }
+        pairs.put(a, b);
+
+        final Class<?> c = a.getClass();
+        if (c.isArray())
+        {
+            final int len = Array.getLength(a);
+            if (len != Array.getLength(b))
+            {
+                problems.add(path + ": length " + len + " != " + Array.getLength(b));
+                return;
+            }
+            for (int i = 0; i < len; i++)
+                compare(Array.get(a, i), Array.get(b, i), path + "[" + i + "]", pairs, skip);
+        }
+        else if (a instanceof List)
+        {
+            final List<?> la = (List<?>) a, lb = (List<?>) b;
+            if (la.size() != lb.size())
+            {
+                problems.add(path + ": size " + la.size() + " != " + lb.size());
+                return;
+            }
+            for (int i = 0; i < la.size(); i++)
+                compare(la.get(i), lb.get(i), path + "[" + i + "]", pairs, skip);
+        }
+        else if (a instanceof Map)
+        {
+            final Map<?, ?> ma = (Map<?, ?>) a, mb = (Map<?, ?>) b;
+            if (ma.size() != mb.size())
+            {
+                problems.add(path + ": size " + ma.size() + " != " + mb.size());
+                return;
+            }
+            for (Iterator<?> it = ma.keySet().iterator(); it.hasNext(); )
+            {
+                final Object key = it.next();
+                compare(ma.get(key), mb.get(key), path + "{" + key + "}", pairs, skip);
+            }
+        }
+        else if (a instanceof CopyableRandom)
+        {
+            // compare by the numbers they give next, without changing them
+            final Random ra = new CopyableRandom((CopyableRandom) a), rb = new CopyableRandom((CopyableRandom) b);
+            for (int i = 0; i < 4; i++)
+                if (ra.nextLong() != rb.nextLong())
+                {
+                    problems.add(path + ": different random sequence");
+                    return;
+                }
+        }
+        else if ((a instanceof Date) || (a instanceof Collection))
+        {
+            if (! a.equals(b))
+                problems.add(path + ": " + a + " != " + b);
+        }
+        else
+        {
+            for (Field f : fields(c))
+                if (! skip.contains(f.getName()))
+                    compare(f.get(a), f.get(b), path + "." + f.getName(), pairs, skip);
+        }
+    }
+
+    /**
+     * Report any changeable object of <tt>copy</tt> which is also part of <tt>orig</tt>,
+     * except those in {@link #SHARED_FIELDS}.
+     */
+    private void checkNotShared(SOCGame orig, SOCGame copy)
+        throws IllegalAccessException
+    {
+        Map<Object, String> origObjs = new IdentityHashMap<Object, String>();
+        collect(orig, "game", null, origObjs);
+        Map<Object, String> copyObjs = new IdentityHashMap<Object, String>();
+        collect(copy, "game", null, copyObjs);
+        for (Map.Entry<Object, String> e : copyObjs.entrySet())
+            if (origObjs.containsKey(e.getKey()))
+                problems.add(e.getValue() + ": shared with the original game");
+    }
+
+    /**
+     * Gather the changeable objects reachable from <tt>o</tt>, with their paths.
+     * Objects under a field in {@link #SHARED_FIELDS} are left out.
+     *
+     * @param field  name of the field holding <tt>o</tt>, with [] for each array or list level; null at the top
+     */
+    private static void collect(Object o, String path, String field, Map<Object, String> objs)
+        throws IllegalAccessException
+    {
+        if ((o == null) || isValue(o) || objs.containsKey(o))
+            return;
+        if ((field != null) && SHARED_FIELDS.contains(field))
+            return;
+        objs.put(o, path);
+
+        final Class<?> c = o.getClass();
+        if (c.isArray())
+        {
+            if (! c.getComponentType().isPrimitive())
+                for (int i = 0; i < Array.getLength(o); i++)
+                    collect(Array.get(o, i), path + "[" + i + "]", field + "[]", objs);
+        }
+        else if (o instanceof List)
+        {
+            final List<?> l = (List<?>) o;
+            for (int i = 0; i < l.size(); i++)
+                collect(l.get(i), path + "[" + i + "]", field + "[]", objs);
+        }
+        else if (o instanceof Map)
+        {
+            for (Iterator<? extends Map.Entry<?, ?>> it = ((Map<?, ?>) o).entrySet().iterator(); it.hasNext(); )
+            {
+                final Map.Entry<?, ?> e = it.next();
+                collect(e.getValue(), path + "{" + e.getKey() + "}", field + "{}", objs);
+            }
+        }
+        else if (c.getName().startsWith("soc.") && ! (o instanceof Random))
+        {
+            // a CopyableRandom holds only primitives, and Random's own fields may not be readable
+            for (Field f : fields(c))
+                collect(f.get(o), path + "." + f.getName(), f.getName(), objs);
+        }
+    }
+
+    /**
+     * Compare a fast copy of <tt>ga</tt> with a serialized copy, then play both on and compare again.
+     *
+     * @param ga  the game to copy; not changed
+     * @param shareLayout  passed to {@link SOCGame#copy(boolean)}
+     * @param seed  seed for the moves played in both copies
+     */
+    private void check(SOCGame ga, boolean shareLayout, long seed, String where)
+        throws IllegalAccessException
+    {
+        final int before = problems.size();
+        final SOCGame fast = ga.copy(shareLayout);
+        final SOCGame deep = (SOCGame) DeepCopy.copy(ga);
+
+        compare(fast, deep, "game", new IdentityHashMap<Object, Object>(), new HashSet<String>());
+        if (! shareLayout)
+            checkNotShared(ga, fast);
+
+        final Random rf = new Random(seed), rd = new Random(seed);
+        for (int i = 0; i < CONTINUE_STEPS; i++)
+        {
+            final boolean more = playStep(fast, rf);
+            if (more != playStep(deep, rd))
+            {
+                problems.add("game: copies played on differently at step " + i);
+                break;
+            }
+            if (! more)
+                break;
+        }
+        compare(fast, deep, "game", new IdentityHashMap<Object, Object>(), CLOCK_FIELDS);
+
+        for (int i = before; i < problems.size(); i++)
+            problems.set(i, where + (shareLayout ? " (shared layout) " : " ") + problems.get(i));
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        final int games = (args.length > 0) ? Integer.parseInt(args[0]) : 5;
+        final long seed = (args.length > 1) ? Long.parseLong(args[1]) : 42;
+
+        SOCGameCopyCheck checker = new SOCGameCopyCheck();
+        final Random r = new Random(seed);
+        int copies = 0;
+        for (int g = 0; g < games; g++)
+        {
+            SOCGame ga = newGame("copycheck~" + g, r);
+            int step = 0;
+            boolean more = true;
+            while (more && (step < MAX_STEPS))
+            {
+                if (step % COPY_INTERVAL == 0)
+                {
+                    final String where = "game " + g + " step " + step + ":";
+                    checker.check(ga, false, r.nextLong(), where);
+                    checker.check(ga, true, r.nextLong(), where);
+                    copies += 2;
+                }
+                more = playStep(ga, r);
+                step++;
+            }
+            System.out.println("Game " + g + ": " + step + " steps, state " + ga.getGameState()
+                + ", " + ga.getBoard().getPieces().size() + " pieces");
+        }
+
+        for (String p : checker.problems)
+            System.out.println(p);
+        System.out.println(copies + " copies checked, " + checker.problems.size() + " differences");
+        if (! checker.problems.isEmpty())
+            System.exit(1);
+    }
+
+}
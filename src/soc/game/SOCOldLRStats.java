@@ -61,6 +61,18 @@ public class SOCOldLRStats
         }
     }
 
+    /**
+     * copy stats for a copied game
+     *
+     * @param  stats  the stats to copy
+     * @param  ga  the copied game; its player with the same number replaces {@link #playerWithLR}
+     */
+    SOCOldLRStats(SOCOldLRStats stats, SOCGame ga)
+    {
+        lrLengths = stats.lrLengths.clone();
+        playerWithLR = (stats.playerWithLR == null) ? null : ga.getPlayer(stats.playerWithLR.getPlayerNumber());
+    }
+
     /**
      * restore the old stats
      *
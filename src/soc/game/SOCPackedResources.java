@@ -0,0 +1,195 @@
+package soc.game;
+
+/**
+ * Resource sets packed into a long, for the loops of the robots which would otherwise
+ * make and copy thousands of {@link SOCResourceSet}s.  A packed set is a value:
+ * the operations here return a new long rather than changing anything,
+ * so it can be copied by assignment.
+ *<P>
+ * Each resource type, from {@link SOCResourceConstants#CLAY} to {@link SOCResourceConstants#UNKNOWN},
+ * has 8 bits, clay lowest.  Amounts must be from 0 to {@link #MAX_AMOUNT}: the top bit of each
+ * type is kept clear, so that all the types can be compared or subtracted at once without
+ * one borrowing from the next.  Use {@link #canPack(SOCResourceSet)} when a set could hold
+ * more, or a negative amount.
+ *<P>
+ * {@link SOCResourceSet} remains the type passed between classes; sets are packed and
+ * unpacked at the edges of the code which works on packed ones.
+ */
+public final class SOCPackedResources
+{
+    /** The largest amount of a resource type in a packed set */
+    public static final int MAX_AMOUNT = 127;
+
+    /** The empty set */
+    public static final long EMPTY = 0L;
+
+    /** Bits per resource type */
+    private static final int WIDTH = 8;
+
+    /** The lowest bit of each resource type */
+    private static final long LOW = 0x010101010101L;
+
+    /** The top bit of each resource type, which a valid set leaves clear */
+    private static final long HIGH = LOW << (WIDTH - 1);
+
+    private SOCPackedResources() {}
+
+    private static int shift(int rtype)
+    {
+        return (rtype - SOCResourceConstants.CLAY) * WIDTH;
+    }
+
+    /**
+     * @return true if every amount in the set, unknown included, is from 0 to {@link #MAX_AMOUNT}
+     */
+    public static boolean canPack(SOCResourceSet set)
+    {
+        for (int rtype = SOCResourceConstants.CLAY; rtype <= SOCResourceConstants.UNKNOWN; rtype++)
+        {
+            final int amt = set.getAmount(rtype);
+            if ((amt < 0) || (amt > MAX_AMOUNT))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * @param set  the set to pack
+     * @return the packed set
+     * @throws IllegalArgumentException if the set can't be packed; see {@link #canPack(SOCResourceSet)}
+     */
+    public static long pack(SOCResourceSet set)
+    {
+        if (! canPack(set))
+            throw new IllegalArgumentException("Can't pack " + set);
+        long p = EMPTY;
+        for (int rtype = SOCResourceConstants.CLAY; rtype <= SOCResourceConstants.UNKNOWN; rtype++)
+            p |= ((long) set.getAmount(rtype)) << shift(rtype);
+        return p;
+    }
+
+    /**
+     * Pack the amounts, which must be from 0 to {@link #MAX_AMOUNT}, in the order of
+     * {@link SOCResourceSet#SOCResourceSet(int, int, int, int, int, int)}.
+     */
+    public static long pack(int cl, int or, int sh, int wh, int wo, int uk)
+    {
+        return of(cl, SOCResourceConstants.CLAY) | of(or, SOCResourceConstants.ORE)
+            | of(sh, SOCResourceConstants.SHEEP) | of(wh, SOCResourceConstants.WHEAT)
+            | of(wo, SOCResourceConstants.WOOD) | of(uk, SOCResourceConstants.UNKNOWN);
+    }
+
+    /**
+     * @param amt   the amount, from 0 to {@link #MAX_AMOUNT}
+     * @param rtype the type of resource, like {@link SOCResourceConstants#CLAY}
+     * @return a set holding just that amount of that resource
+     */
+    public static long of(int amt, int rtype)
+    {
+        if ((amt < 0) || (amt > MAX_AMOUNT))
+            throw new IllegalArgumentException("Can't pack " + amt + " of resource " + rtype);
+        return ((long) amt) << shift(rtype);
+    }
+
+    /**
+     * @return a new {@link SOCResourceSet} with the packed amounts
+     */
+    public static SOCResourceSet toResourceSet(long p)
+    {
+        return new SOCResourceSet(getAmount(p, SOCResourceConstants.CLAY), getAmount(p, SOCResourceConstants.ORE),
+            getAmount(p, SOCResourceConstants.SHEEP), getAmount(p, SOCResourceConstants.WHEAT),
+            getAmount(p, SOCResourceConstants.WOOD), getAmount(p, SOCResourceConstants.UNKNOWN));
+    }
+
+    /**
+     * @param rtype the type of resource, like {@link SOCResourceConstants#CLAY}
+     * @return the amount of that resource in the set
+     */
+    public static int getAmount(long p, int rtype)
+    {
+        return (int) (p >>> shift(rtype)) & MAX_AMOUNT;
+    }
+
+    /**
+     * @return the total number of resources, unknown included
+     */
+    public static int getTotal(long p)
+    {
+        int total = 0;
+        for (; p != 0; p >>>= WIDTH)
+            total += (int) p & MAX_AMOUNT;
+        return total;
+    }
+
+    /**
+     * Add an amount of a resource; as with {@link SOCResourceSet#add(int, int)}, a negative
+     * amount subtracts.  The caller sees to it that the result is from 0 to {@link #MAX_AMOUNT}.
+     *
+     * @param amt   the amount
+     * @param rtype the type of resource, like {@link SOCResourceConstants#CLAY}
+     * @return the new set
+     */
+    public static long add(long p, int amt, int rtype)
+    {
+        return p + (((long) amt) << shift(rtype));
+    }
+
+    /**
+     * Add two sets, as {@link SOCResourceSet#add(SOCResourceSet)} does.
+     * The caller sees to it that no amount goes above {@link #MAX_AMOUNT}.
+     */
+    public static long add(long a, long b)
+    {
+        return a + b;
+    }
+
+    /**
+     * Subtract a set, as {@link SOCResourceSet#subtract(SOCResourceSet)} does:
+     * any type's amount which would go below 0 is 0 instead.
+     */
+    public static long subtract(long a, long b)
+    {
+        // Setting each type's top bit in a keeps the subtractions from borrowing across types,
+        // and leaves the bit set in those types where a's amount was at least b's
+        final long diff = (a | HIGH) - b;
+        final long enough = diff & HIGH;
+        return diff & (enough - (enough >>> (WIDTH - 1)));
+    }
+
+    /**
+     * @return true if every amount in a is at least the amount in b, as with {@link SOCResourceSet#contains(SOCResourceSet)}
+     */
+    public static boolean contains(long a, long b)
+    {
+        return (((a | HIGH) - b) & HIGH) == HIGH;
+    }
+
+    /**
+     * @return true if no type of resource is in both sets, as with {@link SOCResourceSet#disjoint(SOCResourceSet)}
+     */
+    public static boolean disjoint(long a, long b)
+    {
+        return (nonZero(a) & nonZero(b)) == 0;
+    }
+
+    /**
+     * @return the top bit of each type set where the set has some of it
+     */
+    private static long nonZero(long p)
+    {
+        return (p + (LOW * MAX_AMOUNT)) & HIGH;
+    }
+
+    /**
+     * @return the set in the same format as {@link SOCResourceSet#toString()}
+     */
+    public static String toString(long p)
+    {
+        return "clay=" + getAmount(p, SOCResourceConstants.CLAY)
+            + "|ore=" + getAmount(p, SOCResourceConstants.ORE)
+            + "|sheep=" + getAmount(p, SOCResourceConstants.SHEEP)
+            + "|wheat=" + getAmount(p, SOCResourceConstants.WHEAT)
+            + "|wood=" + getAmount(p, SOCResourceConstants.WOOD)
+            + "|unknown=" + getAmount(p, SOCResourceConstants.UNKNOWN);
+    }
+}
@@ -25,6 +25,7 @@ import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
 import java.util.Vector;
@@ -412,6 +413,107 @@ public class SOCPlayer implements SOCDevCardConstants, Serializable, Cloneable
         }
     }
 
+    /**
+     * Make a full copy of the player for a copied game, as {@link SOCGame#copy()} does.
+     * Unlike {@link #SOCPlayer(SOCPlayer)}, the copy's pieces are also copies,
+     * owned by the new player and placed on <tt>ga</tt>'s board.
+     *<P>
+     * The {@link SOCLRPathData} in {@link #getLRPaths()} and the {@link IntPair}s in {@link #ourNumbers}
+     * are not changed once made, so they are shared with <tt>player</tt>.
+     *
+     * @param player  the player to copy
+     * @param ga  the copied game, whose board has already been copied
+     * @param pieceCopies  each piece copied here is added to this map, keyed by the original piece,
+     *     so the board's piece vectors can refer to the same copies
+     */
+    SOCPlayer(SOCPlayer player, SOCGame ga, Map<SOCPlayingPiece, SOCPlayingPiece> pieceCopies)
+    {
+        final SOCBoard board = ga.getBoard();
+
+        name = player.name;
+        playerNumber = player.playerNumber;
+        game = ga;
+        numPieces = player.numPieces.clone();
+
+        pieces = new Vector(Math.max(24, player.pieces.size()));
+        for (int i = 0; i < player.pieces.size(); ++i)
+        {
+            final SOCPlayingPiece pp = (SOCPlayingPiece) player.pieces.elementAt(i);
+            final SOCPlayingPiece copy = pp.copy(this, board);
+            pieceCopies.put(pp, copy);
+            pieces.addElement(copy);
+        }
+        roads = copyPieceVector(player.roads, 15, pieceCopies, board);
+        settlements = copyPieceVector(player.settlements, 5, pieceCopies, board);
+        cities = copyPieceVector(player.cities, 4, pieceCopies, board);
+
+        lastSettlementCoord = player.lastSettlementCoord;
+        lastRoadCoord = player.lastRoadCoord;
+        longestRoadLength = player.longestRoadLength;
+        lrPaths = (Vector) player.lrPaths.clone();
+        resources = player.resources.copy();
+        if (player.lastActionBankTrade_give != null)
+            lastActionBankTrade_give = player.lastActionBankTrade_give.copy();
+        if (player.lastActionBankTrade_get != null)
+            lastActionBankTrade_get = player.lastActionBankTrade_get.copy();
+        resourceStats = player.resourceStats.clone();
+        devCards = new SOCDevCardSet(player.devCards);
+        numKnights = player.numKnights;
+        numRBCards = player.numRBCards;
+        numDISCCards = player.numDISCCards;
+        numMONOCards = player.numMONOCards;
+        buildingVP = player.buildingVP;
+        finalTotalVP = player.finalTotalVP;
+        needToDiscard = player.needToDiscard;
+        roadNodes = (Vector) player.roadNodes.clone();
+
+        roadNodeGraph = new boolean[player.roadNodeGraph.length][];
+        for (int i = 0; i < roadNodeGraph.length; ++i)
+            roadNodeGraph[i] = player.roadNodeGraph[i].clone();
+
+        legalRoads = player.legalRoads.clone();
+        legalSettlements = player.legalSettlements.clone();
+        if (player.legalSettlementsList != null)
+            legalSettlementsList = new ArrayList<Integer>(player.legalSettlementsList);
+        potentialRoads = player.potentialRoads.clone();
+        potentialSettlements = player.potentialSettlements.clone();
+        potentialCities = player.potentialCities.clone();
+        ports = player.ports.clone();
+        if (player.currentOffer != null)
+            currentOffer = player.currentOffer.copy();
+
+        playedDevCard = player.playedDevCard;
+        boardResetAskedThisTurn = player.boardResetAskedThisTurn;
+        askedSpecialBuild = player.askedSpecialBuild;
+        hasSpecialBuiltThisTurn = player.hasSpecialBuiltThisTurn;
+        robotFlag = player.robotFlag;
+        builtInRobotFlag = player.builtInRobotFlag;
+        faceId = player.faceId;
+        ourNumbers = new SOCPlayerNumbers(player.ourNumbers);
+    }
+
+    /**
+     * Copy one of a player's piece vectors for {@link #SOCPlayer(SOCPlayer, SOCGame, Map)},
+     * reusing the piece copies already made for {@link #pieces}.
+     */
+    private Vector copyPieceVector
+        (Vector from, final int capacity, Map<SOCPlayingPiece, SOCPlayingPiece> pieceCopies, SOCBoard board)
+    {
+        Vector to = new Vector(Math.max(capacity, from.size()));
+        for (int i = 0; i < from.size(); ++i)
+        {
+            final SOCPlayingPiece pp = (SOCPlayingPiece) from.elementAt(i);
+            SOCPlayingPiece copy = pieceCopies.get(pp);
+            if (copy == null)
+            {
+                copy = pp.copy(this, board);
+                pieceCopies.put(pp, copy);
+            }
+            to.addElement(copy);
+        }
+        return to;
+    }
+
     /**
      * create a new player
      *
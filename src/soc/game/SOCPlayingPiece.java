@@ -140,6 +140,29 @@ public abstract class SOCPlayingPiece implements Serializable, Cloneable
         return coord;
     }
 
+    /**
+     * Make a copy of this piece for a copied game.
+     *
+     * @param pl  the copy of this piece's owner
+     * @param pboard  the copied game's board
+     * @return a piece of the same type and coordinates, owned by <tt>pl</tt>
+     * @see SOCGame#copy()
+     */
+    SOCPlayingPiece copy(SOCPlayer pl, SOCBoard pboard)
+    {
+        try
+        {
+            SOCPlayingPiece pp = (SOCPlayingPiece) clone();
+            pp.player = pl;
+            pp.board = pboard;
+            return pp;
+        }
+        catch (CloneNotSupportedException e)
+        {
+            throw new IllegalStateException(e.toString());  // won't happen: class is Cloneable
+        }
+    }
+
     /**
      * @return a human readable form of this object
      */
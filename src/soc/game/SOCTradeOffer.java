@@ -76,6 +76,15 @@ public class SOCTradeOffer implements Serializable, Cloneable
         get = offer.get.copy();
     }
 
+    /**
+     * @return a copy of this offer, of the same class
+     * @see #SOCTradeOffer(SOCTradeOffer)
+     */
+    public SOCTradeOffer copy()
+    {
+        return new SOCTradeOffer(this);
+    }
+
     /**
      * @return the name of the game
      */
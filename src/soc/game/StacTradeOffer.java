@@ -57,6 +57,15 @@ public class StacTradeOffer extends SOCTradeOffer{
         this(offer.getGame(), offer.getFrom(), Arrays.copyOf(offer.getTo(), offer.getTo().length),
                 offer.getGiveSet().copy(), false, offer.getGetSet().copy(), false);
     }
+    /**
+     * @return a copy of this offer, including its disjunctive flags
+     */
+    @Override
+    public StacTradeOffer copy() {
+        return new StacTradeOffer(game, from, Arrays.copyOf(to, to.length),
+                give.copy(), disjunctiveGive, get.copy(), disjunctiveGet);
+    }
+
     /**
      * @return whether the offer's give set is disjunctive
      */
@@ -21,8 +21,11 @@ package soc.message;
 import java.io.Serializable;
 //import java.io.StringWriter;
 import java.lang.reflect.Method;
+import java.util.Arrays;
 import java.util.Enumeration;
+import java.util.HashSet;
 import java.util.NoSuchElementException;
+import java.util.Set;
 import java.util.StringTokenizer;
 //import javax.xml.parsers.DocumentBuilder;
 //import javax.xml.parsers.DocumentBuilderFactory;
@@ -262,10 +265,9 @@ public abstract class SOCMessage implements Serializable, Cloneable
 
     /**
      * Parse a message from a log file (assume date is stripped).
-     * Use reflection to call the appropriate parseDataStr method (this isn't 
+     * Calls the appropriate stripAttribNames and parseDataStr methods (these aren't 
      *  guaranteed to be there by the abstract class (impossible to do without parameterization,
-     *  which isn't in original JSettlers).
-     * Also call a function to treat the  
+     *  which isn't in original JSettlers), through the handles {@link SOCMessageRegistry} keeps for each class.
      * @param message
      * @return
      */
@@ -279,13 +281,27 @@ public abstract class SOCMessage implements Serializable, Cloneable
             int colonIdx = message.indexOf(':');
             String className = message.substring(0, colonIdx);
             String msgBody = message.substring(colonIdx+1);
-                    
-    		Class<SOCMessage> c = (Class<SOCMessage>) Class.forName("soc.message." + className);
-    		Method m = c.getMethod("stripAttribNames", String.class);
-    		String treatedAttribs = (String) m.invoke(null,  msgBody);
-    				
-    		m = c.getMethod("parseDataStr", String.class);    		
-    		Object o = m.invoke(null, treatedAttribs);
+
+            SOCMessageRegistry.Decoder d = SOCMessageRegistry.forClassName(className);
+            if (d == null || !d.canDecode())
+                return null;
+            return parseMsgStr(d, message, msgBody);
+        }
+    	catch (Exception ex) {
+    		return null;
+    	}
+    }
+
+    /**
+     * Parse a message from a log file, whose class has already been looked up.
+     * @param d  the decoder of the message's class
+     * @param message  the whole message, for reporting
+     * @param msgBody  the message after its class name and colon
+     * @return the message, or null if it can't be parsed
+     */
+    public static SOCMessage parseMsgStr(SOCMessageRegistry.Decoder d, String message, String msgBody) {
+    	try {
+    		Object o = d.decode(msgBody);
     		if (o == null) {
     			// This occurs when a message can't be parsed.  Likely means stripAttribNames 
     			//  needs to be overridden.  Doesn't seem to happen for any replay-relevant messages.
@@ -295,7 +311,8 @@ public abstract class SOCMessage implements Serializable, Cloneable
     		}
     		return (SOCMessage) o;
     	}
-    	catch (Exception ex) {
+    	catch (RuntimeException ex) {
+    		// Malformed fields make parseDataStr throw; Errors such as running out of memory aren't the line's fault, so they aren't caught.
     		// This seems to only happen with GAME-TEXT-MESSAGE, which we could handle as a special case,
     		// but is a client generated message and so unimportant during replay.
     		//if(message.contains("GAME-TEXT-MESSAGE")){
@@ -394,6 +411,69 @@ public abstract class SOCMessage implements Serializable, Cloneable
     
     /** Simple human-readable representation, used for debug purposes. */
     public abstract String toString();
+
+    /**
+     * Message classes which can be handed as-is to local peers; see {@link #isShareable()}.
+     * Their instances are not changed after construction, and hold only primitives and Strings.
+     * Subclasses of these classes aren't included; add each class explicitly after checking it.
+     * Read-only after class init.
+     */
+    private static final Set<Class<? extends SOCMessage>> SHAREABLE_CLASSES = new HashSet<Class<? extends SOCMessage>>(Arrays.asList(
+        SOCAcceptOffer.class, SOCChangeFace.class, SOCChoosePlayer.class, SOCClearOffer.class,
+        SOCClearTradeMsg.class, SOCCollectData.class, SOCDeleteGame.class, SOCDevCardCount.class,
+        SOCDiceResult.class, SOCDiscardRequest.class, SOCFirstPlayer.class, SOCGameCopy.class,
+        SOCGameState.class, SOCGameTextMsg.class, SOCJoinGame.class, SOCJoinGameAuth.class,
+        SOCLargestArmy.class, SOCLastSettlement.class, SOCLeaveGame.class, SOCLoadGame.class,
+        SOCLongestRoad.class, SOCMoveRobber.class, SOCNewGame.class, SOCParseResult.class,
+        SOCPlayerElement.class, SOCPlayerStartsTrading.class, SOCPutPiece.class, SOCRejectOffer.class,
+        SOCResetBoardReject.class, SOCResetBoardVoteRequest.class, SOCResourceCount.class, SOCRobotDismiss.class,
+        SOCRollDicePrompt.class, SOCSetPlayedDevCard.class, SOCSetSeatLock.class, SOCSetTurn.class,
+        SOCSitDown.class, SOCStartGame.class, SOCTurn.class,
+        StacConfirmTradeAnswer.class, StacConfirmTradeRequest.class));
+
+    /**
+     * Cached {@link #toString()} for loggers, if {@link #isShareable()}; see {@link #toLogString()}.
+     * Not serialized, so a message read back from a stream computes it again.
+     */
+    private transient volatile String logString;
+
+    /**
+     * Can this message object be handed as-is to a local peer, instead of being
+     * encoded with {@link #toCmd()} and parsed again with {@link #toMsg(String)}?
+     * The same instance may then be seen by the server and by every member of the game,
+     * so it must not change after it is sent.
+     *<P>
+     * True only for the message classes listed in {@link #SHAREABLE_CLASSES}: game messages
+     * sent by the server whose fields are all primitives or Strings, and which have no
+     * <tt>set</tt> methods (unlike {@link SOCDevCard#setCardType(int)}).
+     *
+     * @return true if this message can be shared between the sender and its recipients
+     */
+    public boolean isShareable()
+    {
+        return SHAREABLE_CLASSES.contains(getClass());
+    }
+
+    /**
+     * The {@link #toString()} form of this message, for loggers.
+     * Several loggers may write the same message; for {@link #isShareable() shareable} messages,
+     * which don't change after construction, the string is computed once and then reused.
+     * Other messages are formatted on each call, since they may have changed since the last one.
+     *
+     * @return this message's {@link #toString()}
+     */
+    public String toLogString()
+    {
+        if (! isShareable())
+            return toString();
+        String s = logString;
+        if (s == null)
+        {
+            s = toString();
+            logString = s;
+        }
+        return s;
+    }
     
     /**
      * For use in toString: Append int array contents to stringbuffer,
@@ -0,0 +1,281 @@
+package soc.message;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Finds how to decode each kind of message from its log form, once, instead of by reflection on every line:
+ * maps message class names (as at the start of a logged message) and message type IDs to
+ * handles on the class's <tt>stripAttribNames(String)</tt> and <tt>parseDataStr(String)</tt>.
+ * The message types {@link SOCMessage#toMsg(String)} knows are registered up front;
+ * any other class of <tt>soc.message</tt> is looked up the first time its name is seen, and remembered,
+ * as are names which aren't message classes.
+ *<P>
+ * Used by {@link SOCMessage#parseMsgStr(String)} and {@link soc.util.LogParser}.
+ */
+public class SOCMessageRegistry
+{
+    /**
+     * How to decode one class of message.
+     */
+    public static final class Decoder
+    {
+        /** The class name, without the package */
+        public final String className;
+
+        /** The message type, or 0 for classes not registered up front */
+        public final int type;
+
+        /** stripAttribNames(String), or null if the class doesn't have it */
+        private final MethodHandle strip;
+
+        /** parseDataStr(String), returning SOCMessage, or null if the class doesn't have it */
+        private final MethodHandle parse;
+
+        private Decoder(String className, int type, MethodHandle strip, MethodHandle parse)
+        {
+            this.className = className;
+            this.type = type;
+            this.strip = strip;
+            this.parse = parse;
+        }
+
+        /**
+         * @return true if messages of this class can be decoded from their log form
+         */
+        public boolean canDecode()
+        {
+            return (strip != null) && (parse != null);
+        }
+
+        /**
+         * Decode a message from its log form, as {@link SOCMessage#parseMsgStr(String)} does.
+         *
+         * @param body  the logged message after <tt>className:</tt>
+         * @return the message, or null if it can't be decoded
+         * @throws RuntimeException  anything stripAttribNames or parseDataStr throws when the body is malformed;
+         *     they declare no checked exceptions
+         */
+        public SOCMessage decode(String body)
+        {
+            if (! canDecode())
+                return null;
+
+            try
+            {
+                final String treatedAttribs = (String) strip.invokeExact(body);
+                return (SOCMessage) parse.invokeExact(treatedAttribs);
+            }
+            catch (RuntimeException e)
+            {
+                throw e;
+            }
+            catch (Error e)
+            {
+                throw e;
+            }
+            catch (Throwable t)
+            {
+                throw new UndeclaredThrowableException(t);
+            }
+        }
+    }
+
+    /** Stands for names which aren't message classes, so they aren't looked up again */
+    private static final Decoder NONE = new Decoder(null, 0, null, null);
+
+    /** The most names which aren't message classes to remember, in case of garbled logs */
+    private static final int MAX_NAMES = 4096;
+
+    private static final MethodType STRIP_TYPE = MethodType.methodType(String.class, String.class);
+
+    private static final MethodType PARSE_TYPE = MethodType.methodType(SOCMessage.class, String.class);
+
+    /** Decoders by class name; the registered ones, then any others looked up */
+    private static final ConcurrentHashMap<String, Decoder> byName = new ConcurrentHashMap<String, Decoder>();
+
+    /** Decoders of the registered classes by message type */
+    private static final HashMap<Integer, Decoder> byType = new HashMap<Integer, Decoder>();
+
+    static
+    {
+        register(SOCMessage.NEWCHANNEL, SOCNewChannel.class);
+        register(SOCMessage.MEMBERS, SOCMembers.class);
+        register(SOCMessage.CHANNELS, SOCChannels.class);
+        register(SOCMessage.JOIN, SOCJoin.class);
+        register(SOCMessage.TEXTMSG, SOCTextMsg.class);
+        register(SOCMessage.LEAVE, SOCLeave.class);
+        register(SOCMessage.DELETECHANNEL, SOCDeleteChannel.class);
+        register(SOCMessage.LEAVEALL, SOCLeaveAll.class);
+        register(SOCMessage.PUTPIECE, SOCPutPiece.class);
+        register(SOCMessage.GAMETEXTMSG, SOCGameTextMsg.class);
+        register(SOCMessage.LEAVEGAME, SOCLeaveGame.class);
+        register(SOCMessage.SITDOWN, SOCSitDown.class);
+        register(SOCMessage.JOINGAME, SOCJoinGame.class);
+        register(SOCMessage.BOARDLAYOUT, SOCBoardLayout.class);
+        register(SOCMessage.GAMES, SOCGames.class);
+        register(SOCMessage.DELETEGAME, SOCDeleteGame.class);
+        register(SOCMessage.NEWGAME, SOCNewGame.class);
+        register(SOCMessage.GAMEMEMBERS, SOCGameMembers.class);
+        register(SOCMessage.STARTGAME, SOCStartGame.class);
+        register(SOCMessage.JOINAUTH, SOCJoinAuth.class);
+        register(SOCMessage.JOINGAMEAUTH, SOCJoinGameAuth.class);
+        register(SOCMessage.IMAROBOT, SOCImARobot.class);
+        register(SOCMessage.JOINGAMEREQUEST, SOCJoinGameRequest.class);
+        register(SOCMessage.PLAYERELEMENT, SOCPlayerElement.class);
+        register(SOCMessage.GAMESTATE, SOCGameState.class);
+        register(SOCMessage.TURN, SOCTurn.class);
+        register(SOCMessage.SETUPDONE, SOCSetupDone.class);
+        register(SOCMessage.DICERESULT, SOCDiceResult.class);
+        register(SOCMessage.DISCARDREQUEST, SOCDiscardRequest.class);
+        register(SOCMessage.ROLLDICEREQUEST, SOCRollDiceRequest.class);
+        register(SOCMessage.ROLLDICE, SOCRollDice.class);
+        register(SOCMessage.ENDTURN, SOCEndTurn.class);
+        register(SOCMessage.DISCARD, SOCDiscard.class);
+        register(SOCMessage.MOVEROBBER, SOCMoveRobber.class);
+        register(SOCMessage.CHOOSEPLAYER, SOCChoosePlayer.class);
+        register(SOCMessage.CHOOSEPLAYERREQUEST, SOCChoosePlayerRequest.class);
+        register(SOCMessage.REJECTOFFER, SOCRejectOffer.class);
+        register(SOCMessage.CLEAROFFER, SOCClearOffer.class);
+        register(SOCMessage.ACCEPTOFFER, SOCAcceptOffer.class);
+        register(SOCMessage.BANKTRADE, SOCBankTrade.class);
+        register(SOCMessage.MAKEOFFER, SOCMakeOffer.class);
+        register(SOCMessage.CLEARTRADEMSG, SOCClearTradeMsg.class);
+        register(SOCMessage.BUILDREQUEST, SOCBuildRequest.class);
+        register(SOCMessage.CANCELBUILDREQUEST, SOCCancelBuildRequest.class);
+        register(SOCMessage.BUYCARDREQUEST, SOCBuyCardRequest.class);
+        register(SOCMessage.DEVCARD, SOCDevCard.class);
+        register(SOCMessage.DEVCARDCOUNT, SOCDevCardCount.class);
+        register(SOCMessage.SETPLAYEDDEVCARD, SOCSetPlayedDevCard.class);
+        register(SOCMessage.PLAYDEVCARDREQUEST, SOCPlayDevCardRequest.class);
+        register(SOCMessage.DISCOVERYPICK, SOCDiscoveryPick.class);
+        register(SOCMessage.MONOPOLYPICK, SOCMonopolyPick.class);
+        register(SOCMessage.FIRSTPLAYER, SOCFirstPlayer.class);
+        register(SOCMessage.SETTURN, SOCSetTurn.class);
+        register(SOCMessage.ROBOTDISMISS, SOCRobotDismiss.class);
+        register(SOCMessage.POTENTIALSETTLEMENTS, SOCPotentialSettlements.class);
+        register(SOCMessage.CHANGEFACE, SOCChangeFace.class);
+        register(SOCMessage.REJECTCONNECTION, SOCRejectConnection.class);
+        register(SOCMessage.LASTSETTLEMENT, SOCLastSettlement.class);
+        register(SOCMessage.GAMESTATS, SOCGameStats.class);
+        register(SOCMessage.BCASTTEXTMSG, SOCBCastTextMsg.class);
+        register(SOCMessage.RESOURCECOUNT, SOCResourceCount.class);
+        register(SOCMessage.ADMINPING, SOCAdminPing.class);
+        register(SOCMessage.ADMINRESET, SOCAdminReset.class);
+        register(SOCMessage.LONGESTROAD, SOCLongestRoad.class);
+        register(SOCMessage.LARGESTARMY, SOCLargestArmy.class);
+        register(SOCMessage.SETSEATLOCK, SOCSetSeatLock.class);
+        register(SOCMessage.STATUSMESSAGE, SOCStatusMessage.class);
+        register(SOCMessage.CREATEACCOUNT, SOCCreateAccount.class);
+        register(SOCMessage.UPDATEROBOTPARAMS, SOCUpdateRobotParams.class);
+        register(SOCMessage.SERVERPING, SOCServerPing.class);
+        register(SOCMessage.ROLLDICEPROMPT, SOCRollDicePrompt.class);
+        register(SOCMessage.RESETBOARDREQUEST, SOCResetBoardRequest.class);
+        register(SOCMessage.RESETBOARDAUTH, SOCResetBoardAuth.class);
+        register(SOCMessage.RESETBOARDVOTEREQUEST, SOCResetBoardVoteRequest.class);
+        register(SOCMessage.RESETBOARDVOTE, SOCResetBoardVote.class);
+        register(SOCMessage.RESETBOARDREJECT, SOCResetBoardReject.class);
+        register(SOCMessage.VERSION, SOCVersion.class);
+        register(SOCMessage.NEWGAMEWITHOPTIONS, SOCNewGameWithOptions.class);
+        register(SOCMessage.NEWGAMEWITHOPTIONSREQUEST, SOCNewGameWithOptionsRequest.class);
+        register(SOCMessage.GAMEOPTIONGETDEFAULTS, SOCGameOptionGetDefaults.class);
+        register(SOCMessage.GAMEOPTIONGETINFOS, SOCGameOptionGetInfos.class);
+        register(SOCMessage.GAMEOPTIONINFO, SOCGameOptionInfo.class);
+        register(SOCMessage.GAMESWITHOPTIONS, SOCGamesWithOptions.class);
+        register(SOCMessage.BOARDLAYOUT2, SOCBoardLayout2.class);
+        register(SOCMessage.PLAYERSTATS, SOCPlayerStats.class);
+        register(SOCMessage.PLAYERELEMENTS, SOCPlayerElements.class);
+        register(SOCMessage.DEBUGFREEPLACE, SOCDebugFreePlace.class);
+        register(SOCMessage.REQUESTTOSPEAK, SOCRequestToSpeak.class);
+        register(SOCMessage.PERMISSIONTOSPEAK, SOCPermissionToSpeak.class);
+        register(SOCMessage.SPEAKINGQUEUECHANGED, SOCSpeakingQueueChanged.class);
+        register(SOCMessage.PLAYERSTARTSTRADING, SOCPlayerStartsTrading.class);
+        register(SOCMessage.CLEARGAMEHISTORY, SOCClearGameHistory.class);
+        register(SOCMessage.GAMECOPY, SOCGameCopy.class);
+        register(SOCMessage.LOADGAME, SOCLoadGame.class);
+        register(SOCMessage.ROBOTFLAGCHANGE, SOCRobotFlag.class);
+        register(SOCMessage.PARSERESULT, SOCParseResult.class);
+        register(SOCMessage.COLLECTDATA, SOCCollectData.class);
+        register(SOCMessage.CONFIRMTRADETREQUEST, StacConfirmTradeRequest.class);
+        register(SOCMessage.CONFIRMTRADEANSWER, StacConfirmTradeAnswer.class);
+    }
+
+    private static void register(int type, Class<? extends SOCMessage> c)
+    {
+        final Decoder d = makeDecoder(c, type);
+        byName.put(d.className, d);
+        byType.put(Integer.valueOf(type), d);
+    }
+
+    /**
+     * @param c  a message class
+     * @param type  its message type, or 0 if not known
+     * @return its decoder, whose handles are null where the class lacks the methods or they aren't accessible
+     */
+    private static Decoder makeDecoder(Class<?> c, int type)
+    {
+        final MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+        MethodHandle strip = null, parse = null;
+        try
+        {
+            final Method m = c.getMethod("stripAttribNames", String.class);
+            strip = lookup.unreflect(m).asType(STRIP_TYPE);
+        }
+        catch (Exception e) {}
+        try
+        {
+            final Method m = c.getMethod("parseDataStr", String.class);
+            parse = lookup.unreflect(m).asType(PARSE_TYPE);
+        }
+        catch (Exception e) {}
+
+        return new Decoder(c.getSimpleName(), type, strip, parse);
+    }
+
+    /**
+     * Get the decoder for a class of message.
+     *
+     * @param className  the class name without the package, as at the start of a logged message
+     * @return its decoder, or null if there's no such message class
+     */
+    public static Decoder forClassName(String className)
+    {
+        Decoder d = byName.get(className);
+        if (d == null)
+        {
+            d = NONE;
+            try
+            {
+                final Class<?> c = Class.forName("soc.message." + className);
+                if (SOCMessage.class.isAssignableFrom(c))
+                    d = makeDecoder(c, 0);
+            }
+            catch (Throwable e) {}  // not a class, or can't be loaded
+            if ((d != NONE) || (byName.size() < MAX_NAMES))
+            {
+                final Decoder prev = byName.putIfAbsent(className, d);
+                if (prev != null)
+                    d = prev;
+            }
+        }
+
+        return (d == NONE) ? null : d;
+    }
+
+    /**
+     * Get the decoder for a message type.
+     *
+     * @param type  the message type, such as {@link SOCMessage#DICERESULT}
+     * @return its decoder, or null if the type isn't one {@link SOCMessage#toMsg(String)} knows
+     */
+    public static Decoder forType(int type)
+    {
+        return byType.get(Integer.valueOf(type));
+    }
+
+}
@@ -0,0 +1,154 @@
+package soc.robot;
+
+import java.util.Arrays;
+
+/**
+ * A fixed-size memo of {@link SOCBuildingSpeedMemo} results, meant to be shared by
+ * all the estimators one robot brain makes: the player trackers, decision maker and
+ * negotiator ask the same questions (same rolls per resource, resources, target and ports)
+ * over and over.
+ *<P>
+ * Each question is packed into two longs; see {@link SOCBuildingSpeedMemo}.
+ * The table is direct-mapped: a new answer replaces whatever was in its slot,
+ * so the cache never grows past the size it was made with.
+ *<P>
+ * Not thread-safe; like the rest of a brain's state it is used only by the brain's thread.
+ */
+public class SOCBuildingSpeedCache
+{
+    /** Default number of entries */
+    public static final int DEFAULT_SIZE = 4096;
+
+    /** {@link #rolls} for an answer that the target isn't reached within {@link #resources} rolls */
+    static final int EXCEEDED = -1;
+
+    private final int mask;
+
+    /** The two halves of each entry's key; {@link #key1} is -1 for an empty slot */
+    private final long[] key1, key2;
+
+    /**
+     * The rolls to reach the target, or {@link #EXCEEDED};
+     * if exceeded, {@link #resources} holds the cutoff that was exceeded
+     */
+    private final int[] rolls;
+
+    /** The packed resources on reaching the target, 12 bits per type from clay up */
+    private final long[] resources;
+
+    private int hits, misses;
+
+    /**
+     * Make a cache with {@link #DEFAULT_SIZE} entries.
+     */
+    public SOCBuildingSpeedCache()
+    {
+        this(DEFAULT_SIZE);
+    }
+
+    /**
+     * @param size  the number of entries, rounded up to a power of 2
+     */
+    public SOCBuildingSpeedCache(int size)
+    {
+        int n = 1;
+        while (n < size)
+            n <<= 1;
+        mask = n - 1;
+        key1 = new long[n];
+        key2 = new long[n];
+        rolls = new int[n];
+        resources = new long[n];
+        Arrays.fill(key1, -1L);
+    }
+
+    private int slot(final long k1, final long k2)
+    {
+        long h = (k1 * 0x9E3779B97F4A7C15L) ^ (k2 * 0xC2B2AE3D27D4EB4FL);
+        h ^= (h >>> 29);
+        return (int) h & mask;
+    }
+
+    /**
+     * Look up an answer.
+     *
+     * @param k1  first half of the key
+     * @param k2  second half of the key
+     * @param cutoff  the question's cutoff
+     * @param res  if the answer is found and within the cutoff, set to the packed resources on reaching the target
+     * @return the rolls, {@link SOCBuildingSpeedEstimate#CUTOFF_EXCEEDED} if known to be over the cutoff,
+     *     or {@link Integer#MIN_VALUE} if not known
+     */
+    int get(final long k1, final long k2, final int cutoff, final long[] res)
+    {
+        final int i = slot(k1, k2);
+        if ((key1[i] != k1) || (key2[i] != k2))
+        {
+            ++misses;
+            return Integer.MIN_VALUE;
+        }
+
+        final int r = rolls[i];
+        if (r == EXCEEDED)
+        {
+            // only tells us about cutoffs no higher than the one exceeded
+            if (cutoff > resources[i])
+            {
+                ++misses;
+                return Integer.MIN_VALUE;
+            }
+            ++hits;
+            return SOCBuildingSpeedEstimate.CUTOFF_EXCEEDED;
+        }
+
+        ++hits;
+        if ((r > 0) && (r > cutoff))
+            return SOCBuildingSpeedEstimate.CUTOFF_EXCEEDED;
+        res[0] = resources[i];
+        return r;
+    }
+
+    /**
+     * Remember an answer.
+     *
+     * @param k1  first half of the key
+     * @param k2  second half of the key
+     * @param r  the rolls, or {@link #EXCEEDED}
+     * @param res  the packed resources on reaching the target, or if <tt>r</tt> is {@link #EXCEEDED}, the cutoff
+     */
+    void put(final long k1, final long k2, final int r, final long res)
+    {
+        final int i = slot(k1, k2);
+        key1[i] = k1;
+        key2[i] = k2;
+        rolls[i] = r;
+        resources[i] = res;
+    }
+
+    /**
+     * @return the number of lookups that found their answer
+     */
+    public int getHits()
+    {
+        return hits;
+    }
+
+    /**
+     * @return the number of lookups that had to be worked out
+     */
+    public int getMisses()
+    {
+        return misses;
+    }
+
+    /**
+     * Forget all answers.
+     */
+    public void clear()
+    {
+        Arrays.fill(key1, -1L);
+        hits = 0;
+        misses = 0;
+    }
+
+}
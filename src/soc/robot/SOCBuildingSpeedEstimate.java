@@ -52,6 +52,12 @@ public abstract class SOCBuildingSpeedEstimate
     public static final int MIN = 0;
     public static final int MAXPLUSONE = 4;
     public static final int DEFAULT_ROLL_LIMIT = 40;
+
+    /**
+     * returned by {@link #calculateRolls(SOCResourceSet, SOCResourceSet, int, boolean[])}
+     * when the target can't be reached within the cutoff
+     */
+    public static final int CUTOFF_EXCEEDED = -1;
     protected static boolean recalc;
     int[] estimatesFromNothing;
     int[] estimatesFromNow;
@@ -93,22 +99,7 @@ public abstract class SOCBuildingSpeedEstimate
     {
         if (recalc)
         {
-            estimatesFromNothing[ROAD] = DEFAULT_ROLL_LIMIT;
-            estimatesFromNothing[SETTLEMENT] = DEFAULT_ROLL_LIMIT;
-            estimatesFromNothing[CITY] = DEFAULT_ROLL_LIMIT;
-            estimatesFromNothing[CARD] = DEFAULT_ROLL_LIMIT;
-
-            try
-            {
-                estimatesFromNothing[ROAD] = calculateRollsFast(SOCResourceSet.EMPTY_SET, SOCGame.ROAD_SET, DEFAULT_ROLL_LIMIT, ports).getRolls();
-                estimatesFromNothing[SETTLEMENT] = calculateRollsFast(SOCResourceSet.EMPTY_SET, SOCGame.SETTLEMENT_SET, DEFAULT_ROLL_LIMIT, ports).getRolls();
-                estimatesFromNothing[CITY] = calculateRollsFast(SOCResourceSet.EMPTY_SET, SOCGame.CITY_SET, DEFAULT_ROLL_LIMIT, ports).getRolls();
-                estimatesFromNothing[CARD] = calculateRollsFast(SOCResourceSet.EMPTY_SET, SOCGame.CARD_SET, DEFAULT_ROLL_LIMIT, ports).getRolls();
-            }
-            catch (CutoffExceededException e)
-            {
-                ;
-            }
+            calculateEstimates(SOCResourceSet.EMPTY_SET, DEFAULT_ROLL_LIMIT, ports, estimatesFromNothing);
         }
 
         return estimatesFromNothing;
@@ -123,22 +114,7 @@ public abstract class SOCBuildingSpeedEstimate
     {
         if (recalc)
         {
-            estimatesFromNothing[ROAD] = limit;
-            estimatesFromNothing[SETTLEMENT] = limit;
-            estimatesFromNothing[CITY] = limit;
-            estimatesFromNothing[CARD] = limit;
-
-            try
-            {
-                estimatesFromNothing[ROAD] = calculateRollsFast(SOCResourceSet.EMPTY_SET, SOCGame.ROAD_SET, limit, ports).getRolls();
-                estimatesFromNothing[SETTLEMENT] = calculateRollsFast(SOCResourceSet.EMPTY_SET, SOCGame.SETTLEMENT_SET, limit, ports).getRolls();
-                estimatesFromNothing[CITY] = calculateRollsFast(SOCResourceSet.EMPTY_SET, SOCGame.CITY_SET, limit, ports).getRolls();
-                estimatesFromNothing[CARD] = calculateRollsFast(SOCResourceSet.EMPTY_SET, SOCGame.CARD_SET, limit, ports).getRolls();
-            }
-            catch (CutoffExceededException e)
-            {
-                ;
-            }
+            calculateEstimates(SOCResourceSet.EMPTY_SET, limit, ports, estimatesFromNothing);
         }
 
         return estimatesFromNothing;
@@ -152,26 +128,45 @@ public abstract class SOCBuildingSpeedEstimate
      */
     public int[] getEstimatesFromNowFast(SOCResourceSet resources, boolean[] ports)
     {
-        estimatesFromNow[ROAD] = DEFAULT_ROLL_LIMIT;
-        estimatesFromNow[SETTLEMENT] = DEFAULT_ROLL_LIMIT;
-        estimatesFromNow[CITY] = DEFAULT_ROLL_LIMIT;
-        estimatesFromNow[CARD] = DEFAULT_ROLL_LIMIT;
-
-        try
-        {
-            estimatesFromNow[ROAD] = calculateRollsFast(resources, SOCGame.ROAD_SET, DEFAULT_ROLL_LIMIT, ports).getRolls();
-            estimatesFromNow[SETTLEMENT] = calculateRollsFast(resources, SOCGame.SETTLEMENT_SET, DEFAULT_ROLL_LIMIT, ports).getRolls();
-            estimatesFromNow[CITY] = calculateRollsFast(resources, SOCGame.CITY_SET, DEFAULT_ROLL_LIMIT, ports).getRolls();
-            estimatesFromNow[CARD] = calculateRollsFast(resources, SOCGame.CARD_SET, DEFAULT_ROLL_LIMIT, ports).getRolls();
-        }
-        catch (CutoffExceededException e)
-        {
-            ;
-        }
+        calculateEstimates(resources, DEFAULT_ROLL_LIMIT, ports, estimatesFromNow);
 
         return estimatesFromNow;
     }
 
+    /**
+     * fill in the rolls to build each piece type, stopping at the first one
+     * that can't be built within the limit; it and the rest are set to the limit
+     *
+     * @param resources  the starting resources
+     * @param limit      the cutoff
+     * @param ports      the player's port flags
+     * @param estimates  the estimates to fill in, indexed by {@link #ROAD} etc
+     */
+    private void calculateEstimates(SOCResourceSet resources, int limit, boolean[] ports, int[] estimates)
+    {
+        estimates[ROAD] = limit;
+        estimates[SETTLEMENT] = limit;
+        estimates[CITY] = limit;
+        estimates[CARD] = limit;
+
+        int rolls = calculateRolls(resources, SOCGame.ROAD_SET, limit, ports);
+        if (rolls == CUTOFF_EXCEEDED)
+            return;
+        estimates[ROAD] = rolls;
+        rolls = calculateRolls(resources, SOCGame.SETTLEMENT_SET, limit, ports);
+        if (rolls == CUTOFF_EXCEEDED)
+            return;
+        estimates[SETTLEMENT] = rolls;
+        rolls = calculateRolls(resources, SOCGame.CITY_SET, limit, ports);
+        if (rolls == CUTOFF_EXCEEDED)
+            return;
+        estimates[CITY] = rolls;
+        rolls = calculateRolls(resources, SOCGame.CARD_SET, limit, ports);
+        if (rolls == CUTOFF_EXCEEDED)
+            return;
+        estimates[CARD] = rolls;
+    }
+
     /**
      * recalculate both rollsPerResource and resourcesPerRoll
      */
@@ -390,4 +385,28 @@ public abstract class SOCBuildingSpeedEstimate
      */
     public abstract SOCResSetBuildTimePair calculateRollsFast(SOCResourceSet startingResources, SOCResourceSet targetResources, int cutoff, boolean[] ports) throws CutoffExceededException;
 
+    /**
+     * Like {@link #calculateRollsFast(SOCResourceSet, SOCResourceSet, int, boolean[])}
+     * but only for the number of rolls, and reporting the cutoff by the return value
+     * instead of an exception.  Implementations which can do this more cheaply override it.
+     *
+     * @param startingResources   the starting resources
+     * @param targetResources     the target resources
+     * @param cutoff              the most rolls to consider
+     * @param ports               a list of port flags
+     *
+     * @return the number of rolls, or {@link #CUTOFF_EXCEEDED}
+     */
+    public int calculateRolls(SOCResourceSet startingResources, SOCResourceSet targetResources, int cutoff, boolean[] ports)
+    {
+        try
+        {
+            return calculateRollsFast(startingResources, targetResources, cutoff, ports).getRolls();
+        }
+        catch (CutoffExceededException e)
+        {
+            return CUTOFF_EXCEEDED;
+        }
+    }
+
 }
@@ -1,6 +1,7 @@
 package soc.robot;
 
 import soc.game.SOCBoard;
+import soc.game.SOCPackedResources;
 import soc.game.SOCPlayerNumbers;
 import soc.game.SOCResourceConstants;
 import soc.game.SOCResourceSet;
@@ -31,6 +32,9 @@ import soc.util.CutoffExceededException;
  *    case, Sheep is effectively irrelevant to the gathering of the wood.
  *    This may explain some of the observed sub-optimal build decisions.
  * 
+ * The resources are kept packed in a long (see {@link SOCPackedResources}) while
+ *  the rolls are simulated, rather than in a copy of the starting set.
+ * 
  * @author KHO
  *
  */
@@ -48,6 +52,155 @@ public class SOCBuildingSpeedFast extends SOCBuildingSpeedEstimate {
     public SOCResSetBuildTimePair calculateRollsFast(
             SOCResourceSet startingResources, SOCResourceSet targetResources,
             int cutoff, boolean[] ports) throws CutoffExceededException 
+    {
+        if (! canPack(startingResources, targetResources))
+        {
+            return calculateRollsOnSets(startingResources, targetResources, cutoff, ports);
+        }
+
+        final long target = SOCPackedResources.pack(targetResources);
+        long ourResources = SOCPackedResources.pack(startingResources);
+        int rolls = 0;
+
+        if (! SOCPackedResources.contains(ourResources, target))
+        {
+            ourResources = tradeWithBank(ourResources, target, ports);
+        }
+
+        while (! SOCPackedResources.contains(ourResources, target))
+        {
+            rolls++;
+
+            if (rolls > cutoff)
+            {
+                throw new CutoffExceededException();
+            }
+
+            for (int resource = SOCResourceConstants.CLAY;
+                    resource <= SOCResourceConstants.WOOD; resource++)
+            {
+                /**
+                 * get our resources for the roll
+                 */
+                if ((rollsPerResource[resource] == 0) || ((rolls % rollsPerResource[resource]) == 0))
+                {
+                    ourResources = SOCPackedResources.add(ourResources, 1, resource);
+                }
+            }
+
+            if (! SOCPackedResources.contains(ourResources, target))
+            {
+                ourResources = tradeWithBank(ourResources, target, ports);
+            }
+        }
+
+        return (new SOCResSetBuildTimePair(SOCPackedResources.toResourceSet(ourResources), rolls));
+    }
+
+    /**
+     * Whether the estimate can be worked out on packed sets (see {@link SOCPackedResources}).
+     * Trading with the bank leaves less than a trade's worth (4) of each resource above the target,
+     * and a roll brings in at most one more, so amounts stay below the larger of the starting
+     * amount and the target's plus 5.  The unknown amount never changes, so a target with more of
+     * those than we start with is never reached; left to the sets, it runs to the cutoff.
+     */
+    private static boolean canPack(SOCResourceSet startingResources, SOCResourceSet targetResources)
+    {
+        if (! (SOCPackedResources.canPack(startingResources) && SOCPackedResources.canPack(targetResources)))
+            return false;
+        for (int resource = SOCResourceConstants.CLAY;
+                resource <= SOCResourceConstants.WOOD; resource++)
+        {
+            if (targetResources.getAmount(resource) + 5 > SOCPackedResources.MAX_AMOUNT)
+                return false;
+        }
+        return targetResources.getAmount(SOCResourceConstants.UNKNOWN) <= startingResources.getAmount(SOCResourceConstants.UNKNOWN);
+    }
+
+    /**
+     * Do any possible trading with the bank/ports, as {@link #calculateRollsOnSets} does.
+     *
+     * @return our resources after the trades
+     */
+    private long tradeWithBank(long ourResources, final long target, boolean[] ports)
+    {
+        for (int giveResource = SOCResourceConstants.CLAY;
+                giveResource <= SOCResourceConstants.WOOD;
+                giveResource++)
+        {
+            /**
+             * find the ratio at which we can trade
+             */
+            int tradeRatio;
+
+            if (ports[giveResource])
+            {
+                tradeRatio = 2;
+            }
+            else if (ports[SOCBoard.MISC_PORT])
+            {
+                tradeRatio = 3;
+            }
+            else
+            {
+                tradeRatio = 4;
+            }
+
+            int numTrades = (SOCPackedResources.getAmount(ourResources, giveResource) - SOCPackedResources.getAmount(target, giveResource)) / tradeRatio;
+
+            for (int trades = 0; trades < numTrades; trades++)
+            {
+                /**
+                 * find the most needed resource by looking at
+                 * which of the resources we still need takes the
+                 * longest to aquire
+                 */
+                int mostNeededResource = -1;
+
+                for (int resource = SOCResourceConstants.CLAY;
+                        resource <= SOCResourceConstants.WOOD;
+                        resource++)
+                {
+                    if (SOCPackedResources.getAmount(ourResources, resource) < SOCPackedResources.getAmount(target, resource))
+                    {
+                        if ((mostNeededResource < 0) || (rollsPerResource[resource] > rollsPerResource[mostNeededResource]))
+                        {
+                            mostNeededResource = resource;
+                        }
+                    }
+                }
+
+                /**
+                 * make the trade
+                 */
+                if ((mostNeededResource != -1) && (SOCPackedResources.getAmount(ourResources, giveResource) >= tradeRatio))
+                {
+                    ourResources = SOCPackedResources.add(ourResources, 1, mostNeededResource);
+                    ourResources = SOCPackedResources.add(ourResources, -tradeRatio, giveResource);
+                }
+
+                if (SOCPackedResources.contains(ourResources, target))
+                {
+                    break;
+                }
+            }
+
+            if (SOCPackedResources.contains(ourResources, target))
+            {
+                break;
+            }
+        }
+
+        return ourResources;
+    }
+
+    /**
+     * The estimate worked out on {@link SOCResourceSet}s, for the questions
+     * {@link #canPack(SOCResourceSet, SOCResourceSet)} turns down.
+     */
+    private SOCResSetBuildTimePair calculateRollsOnSets(
+            SOCResourceSet startingResources, SOCResourceSet targetResources,
+            int cutoff, boolean[] ports) throws CutoffExceededException 
     {
         //D.ebugPrintln("calculateRolls");
         //D.ebugPrintln("  start: "+startingResources);
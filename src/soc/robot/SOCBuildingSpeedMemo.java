@@ -0,0 +1,284 @@
+package soc.robot;
+
+import soc.game.SOCBoard;
+import soc.game.SOCPlayerNumbers;
+import soc.game.SOCResourceConstants;
+import soc.game.SOCResourceSet;
+import soc.util.CutoffExceededException;
+
+/**
+ * Gives the same estimates as {@link SOCBuildingSpeedFast}, more cheaply.
+ *<P>
+ * The algorithm is the same: collect resources as the rolls come in, at exactly
+ * the expected rate, and trade with the bank or ports whenever that gets us closer
+ * to the target.  But instead of going roll by roll with {@link SOCResourceSet}s,
+ * this works on ints and jumps straight to the next roll that brings in a resource:
+ * nothing happens on the rolls in between, not even trades.
+ *<P>
+ * Answers can also be remembered in a {@link SOCBuildingSpeedCache}, usually one per brain
+ * so every estimator the brain makes shares it.  The key is the question packed into two longs:
+ * <UL>
+ * <LI> the rolls per resource (6 bits each, 63 meaning the resource isn't collected)
+ *      and the port flags (6 bits)
+ * <LI> the starting and target amounts (6 bits each)
+ * </UL>
+ * Questions which don't fit, or which involve unknown resources, are just worked out.
+ *<P>
+ * {@link #calculateRolls(SOCResourceSet, SOCResourceSet, int, boolean[])} reports
+ * the cutoff without an exception, and doesn't allocate anything.
+ */
+public class SOCBuildingSpeedMemo extends SOCBuildingSpeedEstimate
+{
+    /** Rolls per resource of a resource the player isn't collecting; see {@link #recalculateEstimates(SOCPlayerNumbers)} */
+    private static final int NO_INCOME = 55555;
+
+    /** The shared answers, or null */
+    private final SOCBuildingSpeedCache cache;
+
+    /** Scratch: the amounts while working out an answer, indexed by resource type */
+    private final int[] amounts = new int[SOCResourceConstants.WOOD + 1];
+
+    /** Scratch: the target amounts, indexed by resource type */
+    private final int[] target = new int[SOCResourceConstants.WOOD + 1];
+
+    /** Scratch: packed resources from the cache */
+    private final long[] cached = new long[1];
+
+    /**
+     * @param numbers  the numbers that the player's pieces are touching
+     * @param cache  answers to share with other estimators, or null
+     */
+    public SOCBuildingSpeedMemo(SOCPlayerNumbers numbers, SOCBuildingSpeedCache cache)
+    {
+        super(numbers);
+        this.cache = cache;
+    }
+
+    /**
+     * @param cache  answers to share with other estimators, or null
+     */
+    public SOCBuildingSpeedMemo(SOCBuildingSpeedCache cache)
+    {
+        super();
+        this.cache = cache;
+    }
+
+    @Override
+    public SOCResSetBuildTimePair calculateRollsFast(
+            SOCResourceSet startingResources, SOCResourceSet targetResources,
+            int cutoff, boolean[] ports) throws CutoffExceededException
+    {
+        final int rolls = calculateRolls(startingResources, targetResources, cutoff, ports);
+        if (rolls == CUTOFF_EXCEEDED)
+            throw new CutoffExceededException();
+
+        return new SOCResSetBuildTimePair(new SOCResourceSet
+            (amounts[SOCResourceConstants.CLAY], amounts[SOCResourceConstants.ORE], amounts[SOCResourceConstants.SHEEP],
+             amounts[SOCResourceConstants.WHEAT], amounts[SOCResourceConstants.WOOD],
+             startingResources.getAmount(SOCResourceConstants.UNKNOWN)), rolls);
+    }
+
+    /**
+     * {@inheritDoc}
+     *<P>
+     * Afterwards, unless the cutoff was exceeded, {@link #amounts} holds the resources on reaching the target.
+     */
+    @Override
+    public int calculateRolls(SOCResourceSet startingResources, SOCResourceSet targetResources, int cutoff, boolean[] ports)
+    {
+        final int unknown = startingResources.getAmount(SOCResourceConstants.UNKNOWN),
+            targetUnknown = targetResources.getAmount(SOCResourceConstants.UNKNOWN);
+        if (unknown < targetUnknown)
+            return CUTOFF_EXCEEDED;  // trading and rolls never bring in unknown resources
+
+        for (int rtype = SOCResourceConstants.CLAY; rtype <= SOCResourceConstants.WOOD; rtype++)
+        {
+            amounts[rtype] = startingResources.getAmount(rtype);
+            target[rtype] = targetResources.getAmount(rtype);
+        }
+
+        if ((cache == null) || (unknown != 0) || (targetUnknown != 0))
+            return simulate(cutoff, ports);
+
+        final long k1 = packRatesAndPorts(ports);
+        final long k2 = packAmounts();
+        if ((k1 == -1) || (k2 == -1))
+            return simulate(cutoff, ports);
+
+        final int r = cache.get(k1, k2, cutoff, cached);
+        if (r == CUTOFF_EXCEEDED)
+            return CUTOFF_EXCEEDED;
+        if (r != Integer.MIN_VALUE)
+        {
+            long res = cached[0];
+            for (int rtype = SOCResourceConstants.CLAY; rtype <= SOCResourceConstants.WOOD; rtype++, res >>>= 12)
+                amounts[rtype] = (int) (res & 0xFFF);
+            return r;
+        }
+
+        final int rolls = simulate(cutoff, ports);
+        if (rolls == CUTOFF_EXCEEDED)
+        {
+            if (cutoff >= 0)
+                cache.put(k1, k2, SOCBuildingSpeedCache.EXCEEDED, cutoff);
+        }
+        else
+        {
+            long res = 0;
+            for (int rtype = SOCResourceConstants.WOOD; rtype >= SOCResourceConstants.CLAY; rtype--)
+            {
+                if ((amounts[rtype] < 0) || (amounts[rtype] > 0xFFF))
+                    return rolls;  // too big to remember
+                res = (res << 12) | amounts[rtype];
+            }
+            cache.put(k1, k2, rolls, res);
+        }
+
+        return rolls;
+    }
+
+    /**
+     * @return the rolls per resource and port flags packed for a cache key, or -1 if they don't fit
+     */
+    private long packRatesAndPorts(final boolean[] ports)
+    {
+        long k = 0;
+        for (int rtype = SOCResourceConstants.WOOD; rtype >= SOCResourceConstants.CLAY; rtype--)
+        {
+            final int rpr = rollsPerResource[rtype];
+            final int code;
+            if (rpr == NO_INCOME)
+                code = 63;
+            else if ((rpr >= 0) && (rpr < 63))
+                code = rpr;
+            else
+                return -1;
+            k = (k << 6) | code;
+        }
+        for (int port = SOCBoard.WOOD_PORT; port >= SOCBoard.MISC_PORT; port--)
+            k = (k << 1) | (ports[port] ? 1 : 0);
+
+        return k;
+    }
+
+    /**
+     * @return {@link #amounts} and {@link #target} packed for a cache key, or -1 if they don't fit
+     */
+    private long packAmounts()
+    {
+        long k = 0;
+        for (int rtype = SOCResourceConstants.WOOD; rtype >= SOCResourceConstants.CLAY; rtype--)
+        {
+            final int a = amounts[rtype], t = target[rtype];
+            if ((a < 0) || (a > 63) || (t < 0) || (t > 63))
+                return -1;
+            k = (k << 12) | (a << 6) | t;
+        }
+
+        return k;
+    }
+
+    /**
+     * @return true if {@link #amounts} has at least the {@link #target} of each resource
+     */
+    private boolean reachedTarget()
+    {
+        for (int rtype = SOCResourceConstants.CLAY; rtype <= SOCResourceConstants.WOOD; rtype++)
+            if (amounts[rtype] < target[rtype])
+                return false;
+
+        return true;
+    }
+
+    /**
+     * Work out the rolls from {@link #amounts} to {@link #target}, as {@link SOCBuildingSpeedFast} does,
+     * leaving {@link #amounts} holding the resources on reaching the target.
+     * The caller has checked there are enough unknown resources.
+     *
+     * @return the rolls, or {@link #CUTOFF_EXCEEDED}
+     */
+    private int simulate(final int cutoff, final boolean[] ports)
+    {
+        if (reachedTarget())
+            return 0;
+
+        trade(ports);
+
+        int rolls = 0;
+        while (! reachedTarget())
+        {
+            // skip to the next roll that brings in a resource
+            int next = Integer.MAX_VALUE;
+            for (int rtype = SOCResourceConstants.CLAY; rtype <= SOCResourceConstants.WOOD; rtype++)
+            {
+                final int rpr = Math.abs(rollsPerResource[rtype]);
+                final int at = (rpr == 0) ? (rolls + 1) : ((rolls / rpr) + 1) * rpr;
+                if (at < next)
+                    next = at;
+            }
+
+            if (next > cutoff)
+                return CUTOFF_EXCEEDED;
+            rolls = next;
+
+            for (int rtype = SOCResourceConstants.CLAY; rtype <= SOCResourceConstants.WOOD; rtype++)
+            {
+                final int rpr = rollsPerResource[rtype];
+                if ((rpr == 0) || ((rolls % rpr) == 0))
+                    amounts[rtype]++;
+            }
+
+            if (! reachedTarget())
+                trade(ports);
+        }
+
+        return rolls;
+    }
+
+    /**
+     * Do any possible trading with the bank/ports, for the resources
+     * we still need that take the longest to get.
+     */
+    private void trade(final boolean[] ports)
+    {
+        for (int giveResource = SOCResourceConstants.CLAY;
+                giveResource <= SOCResourceConstants.WOOD;
+                giveResource++)
+        {
+            final int tradeRatio;
+            if (ports[giveResource])
+                tradeRatio = 2;
+            else if (ports[SOCBoard.MISC_PORT])
+                tradeRatio = 3;
+            else
+                tradeRatio = 4;
+
+            final int numTrades = (amounts[giveResource] - target[giveResource]) / tradeRatio;
+            for (int trades = 0; trades < numTrades; trades++)
+            {
+                int mostNeededResource = -1;
+                for (int resource = SOCResourceConstants.CLAY;
+                        resource <= SOCResourceConstants.WOOD;
+                        resource++)
+                {
+                    if ((amounts[resource] < target[resource])
+                        && ((mostNeededResource < 0)
+                            || (rollsPerResource[resource] > rollsPerResource[mostNeededResource])))
+                    {
+                        mostNeededResource = resource;
+                    }
+                }
+
+                if ((mostNeededResource != -1) && (amounts[giveResource] >= tradeRatio))
+                {
+                    amounts[mostNeededResource]++;
+                    amounts[giveResource] -= tradeRatio;
+                }
+
+                if (reachedTarget())
+                    return;
+            }
+        }
+    }
+
+}
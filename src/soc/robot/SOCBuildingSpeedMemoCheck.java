@@ -0,0 +1,146 @@
+package soc.robot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import soc.game.SOCBoard;
+import soc.game.SOCGame;
+import soc.game.SOCResourceConstants;
+import soc.game.SOCResourceSet;
+import soc.util.CutoffExceededException;
+
+/**
+ * Checks that {@link SOCBuildingSpeedMemo} gives the same answers as {@link SOCBuildingSpeedFast}.
+ * Asks both random questions: rolls per resource (including resources never collected and ones
+ * collected every roll), starting and target resources (including the piece costs and unknown resources),
+ * ports, and cutoffs (including negative ones).  Each question is asked of a memo without a cache,
+ * one with a cache big enough to remember everything, and one with a tiny cache that keeps forgetting;
+ * the cached ones are asked again later with a different cutoff, to check remembered answers.
+ *<P>
+ * Prints each difference found and exits with status 1 if there were any.
+ *<P>
+ * Usage: SOCBuildingSpeedMemoCheck [questions] [seed]
+ */
+public class SOCBuildingSpeedMemoCheck
+{
+    /** Rolls per resource to choose from besides random ones: never collected, every roll, and the common ones */
+    private static final int[] RATES = { 55555, 0, 1, 2, 3, 4, 6, 9, 12, 18, 36 };
+
+    /** Targets to choose from besides random ones */
+    private static final SOCResourceSet[] TARGETS =
+        { SOCGame.ROAD_SET, SOCGame.SETTLEMENT_SET, SOCGame.CITY_SET, SOCGame.CARD_SET };
+
+    private final List<String> problems = new ArrayList<String>();
+
+    private int questions, exceeded;
+
+    /**
+     * @return a random resource set with amounts below <tt>max</tt>, and sometimes some unknown resources
+     */
+    private static SOCResourceSet randomSet(Random r, int max)
+    {
+        return new SOCResourceSet(r.nextInt(max), r.nextInt(max), r.nextInt(max), r.nextInt(max), r.nextInt(max),
+            (r.nextInt(10) == 0) ? r.nextInt(3) : 0);
+    }
+
+    /**
+     * Ask <tt>fast</tt> and each memo the same question and record any differences.
+     */
+    private void ask(SOCBuildingSpeedFast fast, SOCBuildingSpeedMemo[] memos,
+        SOCResourceSet start, SOCResourceSet target, int cutoff, boolean[] ports)
+    {
+        ++questions;
+        SOCResSetBuildTimePair expected = null;
+        try
+        {
+            expected = fast.calculateRollsFast(start, target, cutoff, ports);
+        }
+        catch (CutoffExceededException e)
+        {
+            ++exceeded;
+        }
+
+        final String q = "rates " + Arrays.toString(fast.rollsPerResource)
+            + " start " + start + " target " + target + " cutoff " + cutoff + " ports " + Arrays.toString(ports);
+        for (int m = 0; m < memos.length; m++)
+        {
+            final SOCBuildingSpeedMemo memo = memos[m];
+            final int rolls = memo.calculateRolls(start, target, cutoff, ports);
+            final int want = (expected == null) ? SOCBuildingSpeedEstimate.CUTOFF_EXCEEDED : expected.getRolls();
+            if (rolls != want)
+            {
+                problems.add("memo " + m + ": rolls " + rolls + ", expected " + want + ": " + q);
+                continue;
+            }
+
+            SOCResSetBuildTimePair got = null;
+            try
+            {
+                got = memo.calculateRollsFast(start, target, cutoff, ports);
+            }
+            catch (CutoffExceededException e) {}
+            if ((got == null) != (expected == null))
+                problems.add("memo " + m + ": calculateRollsFast " + ((got == null) ? "exceeded" : "didn't exceed") + " the cutoff: " + q);
+            else if ((got != null)
+                     && ((got.getRolls() != expected.getRolls())
+                         || ! got.getResources().contains(expected.getResources())
+                         || ! expected.getResources().contains(got.getResources())))
+                problems.add("memo " + m + ": got " + got.getResources() + " in " + got.getRolls()
+                    + ", expected " + expected.getResources() + " in " + expected.getRolls() + ": " + q);
+        }
+    }
+
+    public static void main(String[] args)
+    {
+        final int numQuestions = (args.length > 0) ? Integer.parseInt(args[0]) : 200000;
+        final long seed = (args.length > 1) ? Long.parseLong(args[1]) : 42;
+
+        SOCBuildingSpeedMemoCheck checker = new SOCBuildingSpeedMemoCheck();
+        final Random r = new Random(seed);
+        final SOCBuildingSpeedCache bigCache = new SOCBuildingSpeedCache(1 << 16),
+            tinyCache = new SOCBuildingSpeedCache(4);
+        final SOCBuildingSpeedFast fast = new SOCBuildingSpeedFast();
+        final SOCBuildingSpeedMemo[] memos =
+            { new SOCBuildingSpeedMemo(null), new SOCBuildingSpeedMemo(bigCache), new SOCBuildingSpeedMemo(tinyCache) };
+
+        // a few players' rates, so the caches see the same rates again
+        final int[][] players = new int[8][SOCResourceConstants.WOOD + 1];
+        for (int[] rates : players)
+            for (int rtype = SOCResourceConstants.CLAY; rtype <= SOCResourceConstants.WOOD; rtype++)
+                rates[rtype] = (r.nextInt(3) == 0) ? (1 + r.nextInt(80)) : RATES[r.nextInt(RATES.length)];
+
+        for (int i = 0; i < numQuestions; i++)
+        {
+            final int[] rates = players[r.nextInt(players.length)];
+            System.arraycopy(rates, 0, fast.rollsPerResource, 0, rates.length);
+            for (SOCBuildingSpeedMemo memo : memos)
+                System.arraycopy(rates, 0, memo.rollsPerResource, 0, rates.length);
+
+            final SOCResourceSet start = (r.nextInt(4) == 0) ? new SOCResourceSet() : randomSet(r, 1 + r.nextInt(8));
+            final SOCResourceSet target = (r.nextInt(2) == 0) ? TARGETS[r.nextInt(TARGETS.length)] : randomSet(r, 1 + r.nextInt(6));
+            final boolean[] ports = new boolean[SOCBoard.WOOD_PORT + 1];
+            for (int port = SOCBoard.MISC_PORT; port <= SOCBoard.WOOD_PORT; port++)
+                ports[port] = (r.nextInt(4) == 0);
+            final int cutoff = (r.nextInt(20) == 0) ? -r.nextInt(3) : r.nextInt(120);
+
+            checker.ask(fast, memos, start, target, cutoff, ports);
+            // again, with the answer or its cutoff remembered
+            checker.ask(fast, memos, start, target, r.nextInt(120), ports);
+        }
+
+        System.out.println(checker.questions + " questions, " + checker.exceeded + " over the cutoff; big cache "
+            + bigCache.getHits() + " hits, " + bigCache.getMisses() + " misses; tiny cache "
+            + tinyCache.getHits() + " hits, " + tinyCache.getMisses() + " misses");
+        for (String p : checker.problems)
+            System.out.println(p);
+        if (! checker.problems.isEmpty())
+        {
+            System.out.println(checker.problems.size() + " problems");
+            System.exit(1);
+        }
+        System.out.println("No problems");
+    }
+
+}
@@ -35,17 +35,20 @@ import soc.game.SOCPlayingPiece;
 import soc.game.SOCRoad;
 import soc.game.SOCSettlement;
 
-import soc.util.CutoffExceededException;
 import soc.util.NodeLenVis;
 import soc.util.Pair;
 import soc.util.Queue;
+import soc.util.SnapshotStore;
 
 import java.io.Serializable;
 import java.text.DecimalFormat;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Stack;
 import java.util.TreeMap;
 import java.util.Vector;
@@ -101,6 +104,29 @@ public class SOCPlayerTracker implements Serializable
      */
     boolean inUse;
 
+    /**
+     * undo log of the trial in progress on this tracker, or null if none;
+     * set by {@link SOCPlayerTrackerUndoLog#begin(HashMap)}
+     */
+    transient SOCPlayerTrackerUndoLog undoLog;
+
+    /**
+     * Scratch space for {@link #recalcWinGameETA()}, kept from call to call so it doesn't
+     * clone the possible piece maps each time: the possible settlements in coordinate order,
+     * their coordinates, and which of them are still open in the plan being estimated.
+     */
+    private transient SOCPossibleSettlement[] etaSets;
+    private transient int[] etaSetCoords;
+    private transient boolean[] etaSetOpen;
+    private transient int numEtaSets, numEtaSetsOpen;
+
+    /**
+     * Scratch space for {@link #recalcWinGameETA()}: the sorted coordinates of
+     * the possible cities in the plan being estimated.
+     */
+    private transient int[] etaCities;
+    private transient int numEtaCities;
+
     /**
      * constructor
      *
@@ -405,6 +431,145 @@ public class SOCPlayerTracker implements Serializable
         return trackersCopy;
     }
 
+    /**
+     * Keeps the list of a robot's player trackers saved for GAMECOPY, one per player in player number order,
+     * as copies made by {@link #copyTrackerList(List, SOCGame)}.  When saving, their possible pieces
+     * are given to the players of a copy of the game, so that later moves in the game don't change them.
+     */
+    public static final SnapshotStore.Codec LIST_CODEC = new SnapshotStore.Codec()
+    {
+        public Object freeze(Object o)
+        {
+            final List trackers = (List) o;
+            final SOCGame ga = ((SOCPlayerTracker) trackers.get(0)).getPlayer().getGame();
+            return copyTrackerList(trackers, ga.copy());
+        }
+
+        public Object thaw(Object frozen)
+        {
+            return copyTrackerList((List) frozen, null);
+        }
+    };
+
+    /**
+     * Copy a list of player trackers, one per player in player number order, as
+     * {@link #copyPlayerTrackers(HashMap)} does, but also keeping each tracker's
+     * win game ETA and whether it needs longest road or largest army, and the
+     * threats to its possible pieces.
+     *
+     * @param trackers  the trackers to copy
+     * @param ga  if not null, the copies and their possible pieces belong to this game's players
+     *     rather than to those of the originals
+     * @return the copies, in the same order
+     */
+    public static ArrayList copyTrackerList(List trackers, SOCGame ga)
+    {
+        HashMap trackersMap = new HashMap(trackers.size());
+        for (int i = 0; i < trackers.size(); i++)
+            trackersMap.put(Integer.valueOf(i), trackers.get(i));
+        HashMap trackersCopy = copyPlayerTrackers(trackersMap);
+
+        ArrayList list = new ArrayList(trackers.size());
+        for (int i = 0; i < trackers.size(); i++)
+        {
+            SOCPlayerTracker pt = (SOCPlayerTracker) trackers.get(i);
+            SOCPlayerTracker copy = (SOCPlayerTracker) trackersCopy.get(Integer.valueOf(pt.getPlayer().getPlayerNumber()));
+            copy.winGameETA = pt.winGameETA;
+            copy.needLR = pt.needLR;
+            copy.needLA = pt.needLA;
+            if (ga != null)
+            {
+                copy.player = ga.getPlayer(copy.player.getPlayerNumber());
+                moveToPlayers(copy.possibleRoads, ga);
+                moveToPlayers(copy.possibleSettlements, ga);
+                moveToPlayers(copy.possibleCities, ga);
+            }
+            list.add(copy);
+        }
+        for (int i = 0; i < trackers.size(); i++)
+        {
+            SOCPlayerTracker pt = (SOCPlayerTracker) trackers.get(i);
+            SOCPlayerTracker copy = (SOCPlayerTracker) list.get(i);
+            copyThreats(pt.possibleRoads, copy.possibleRoads, trackersCopy);
+            copyThreats(pt.possibleSettlements, copy.possibleSettlements, trackersCopy);
+            copyThreats(pt.possibleCities, copy.possibleCities, trackersCopy);
+        }
+        return list;
+    }
+
+    /**
+     * Give the copies of possible pieces the threats and biggest threats of the originals,
+     * as the copies of the threatening pieces.  A threat which isn't in its player's tracker
+     * any more is left out.
+     *
+     * @param possiblePieces  the original pieces
+     * @param possiblePiecesCopy  their copies, by coordinates
+     * @param trackersCopy  the copied trackers, by player number
+     */
+    private static void copyThreats(TreeMap possiblePieces, TreeMap possiblePiecesCopy, HashMap trackersCopy)
+    {
+        Iterator iter = possiblePieces.values().iterator();
+        while (iter.hasNext())
+        {
+            SOCPossiblePiece pp = (SOCPossiblePiece) iter.next();
+            SOCPossiblePiece ppCopy = (SOCPossiblePiece) possiblePiecesCopy.get(Integer.valueOf(pp.getCoordinates()));
+            if (ppCopy == null)
+                continue;
+            Enumeration threatEnum = pp.getThreats().elements();
+            while (threatEnum.hasMoreElements())
+            {
+                SOCPossiblePiece threatCopy = findCopy((SOCPossiblePiece) threatEnum.nextElement(), trackersCopy);
+                if (threatCopy != null)
+                    ppCopy.addThreat(threatCopy);
+            }
+            threatEnum = pp.getBiggestThreats().elements();
+            while (threatEnum.hasMoreElements())
+            {
+                SOCPossiblePiece threatCopy = findCopy((SOCPossiblePiece) threatEnum.nextElement(), trackersCopy);
+                if (threatCopy != null)
+                    ppCopy.addBiggestThreat(threatCopy);
+            }
+            ppCopy.threatUpdatedFlag = pp.threatUpdatedFlag;
+        }
+    }
+
+    /**
+     * @param pp  a possible road, settlement or city
+     * @param trackersCopy  the copied trackers, by player number
+     * @return the copy of <tt>pp</tt> in its player's copied tracker, or null if there isn't one
+     */
+    private static SOCPossiblePiece findCopy(SOCPossiblePiece pp, HashMap trackersCopy)
+    {
+        SOCPlayerTracker trackerCopy = (SOCPlayerTracker) trackersCopy.get(Integer.valueOf(pp.getPlayer().getPlayerNumber()));
+        if (trackerCopy == null)
+            return null;
+        final Integer coord = Integer.valueOf(pp.getCoordinates());
+        switch (pp.getType())
+        {
+        case SOCPossiblePiece.ROAD:
+            return (SOCPossiblePiece) trackerCopy.possibleRoads.get(coord);
+        case SOCPossiblePiece.SETTLEMENT:
+            return (SOCPossiblePiece) trackerCopy.possibleSettlements.get(coord);
+        case SOCPossiblePiece.CITY:
+            return (SOCPossiblePiece) trackerCopy.possibleCities.get(coord);
+        default:
+            return null;
+        }
+    }
+
+    /**
+     * Give each possible piece in a map to the player with the same number in a game.
+     */
+    private static void moveToPlayers(TreeMap possiblePieces, SOCGame ga)
+    {
+        Iterator iter = possiblePieces.values().iterator();
+        while (iter.hasNext())
+        {
+            SOCPossiblePiece pp = (SOCPossiblePiece) iter.next();
+            pp.player = ga.getPlayer(pp.getPlayer().getPlayerNumber());
+        }
+    }
+
     /**
      * take the monitor for this tracker
      */
@@ -433,6 +598,53 @@ public class SOCPlayerTracker implements Serializable
          */
     }
 
+    /**
+     * if a trial is in progress, save the state of a possible piece
+     * before changing it, so the trial can be rolled back
+     *
+     * @param piece  the possible piece about to be changed
+     */
+    protected void saveState(SOCPossiblePiece piece)
+    {
+        if (undoLog != null)
+        {
+            undoLog.savePiece(piece);
+        }
+    }
+
+    /**
+     * put a piece in a possible piece map, logging it if a trial is in progress
+     *
+     * @param map    the possible roads, settlements or cities of this or another tracker
+     * @param key    the piece's coordinates
+     * @param piece  the possible piece
+     */
+    protected void putPossiblePiece(TreeMap map, Integer key, SOCPossiblePiece piece)
+    {
+        Object old = map.put(key, piece);
+
+        if (undoLog != null)
+        {
+            undoLog.mapChanged(map, key, old);
+        }
+    }
+
+    /**
+     * remove a piece from a possible piece map, logging it if a trial is in progress
+     *
+     * @param map    the possible roads, settlements or cities of this or another tracker
+     * @param key    the piece's coordinates
+     */
+    protected void removePossiblePiece(TreeMap map, Integer key)
+    {
+        Object old = map.remove(key);
+
+        if ((old != null) && (undoLog != null))
+        {
+            undoLog.mapChanged(map, key, old);
+        }
+    }
+
     /**
      * @return the robot brain for this tracker
      */
@@ -592,10 +804,32 @@ public class SOCPlayerTracker implements Serializable
     public void addOurNewRoad(SOCRoad road, HashMap trackers, int expandLevel)
     {
         //D.ebugPrintln("$$$ addOurNewRoad : "+road);
+        Iterator prIter;
+
+        if (undoLog != null)
+        {
+            //
+            // a trial sees our possible roads as copyPlayerTrackers
+            // would copy them, with none expanded yet
+            //
+            prIter = possibleRoads.values().iterator();
+
+            while (prIter.hasNext())
+            {
+                SOCPossibleRoad pr = (SOCPossibleRoad) prIter.next();
+
+                if (pr.hasBeenExpanded())
+                {
+                    saveState(pr);
+                    pr.resetExpandedFlag();
+                }
+            }
+        }
+
         //
         // see if the new road was a possible road
         //
-        Iterator prIter = possibleRoads.values().iterator();
+        prIter = possibleRoads.values().iterator();
 
         while (prIter.hasNext())
         {
@@ -612,7 +846,7 @@ public class SOCPlayerTracker implements Serializable
                 // if so, remove it
                 //
                 //D.ebugPrintln("$$$ removing "+Integer.toHexString(road.getCoordinates()));
-                possibleRoads.remove(Integer.valueOf(pr.getCoordinates()));
+                removePossiblePiece(possibleRoads, Integer.valueOf(pr.getCoordinates()));
                 removeFromNecessaryRoads(pr);
 
                 break;
@@ -646,6 +880,7 @@ public class SOCPlayerTracker implements Serializable
                     // if so, clear necessary road list and remove from np lists
                     //
                     //D.ebugPrintln("$$$ found it");
+                    saveState(posSet);
                     removeFromNecessaryRoads(posSet);
                     posSet.getNecessaryRoads().removeAllElements();
                     posSet.setNumberOfNecessaryRoads(0);
@@ -658,7 +893,7 @@ public class SOCPlayerTracker implements Serializable
                     //D.ebugPrintln("$$$ adding new possible settlement at "+Integer.toHexString(adjNode.intValue()));
                     SOCPossibleSettlement newPosSet = new SOCPossibleSettlement(brain, player, adjNode.intValue(), new Vector());
                     newPosSet.setNumberOfNecessaryRoads(0);
-                    possibleSettlements.put(adjNode, newPosSet);
+                    putPossiblePiece(possibleSettlements, adjNode, newPosSet);
                     updateSettlementConflicts(newPosSet, trackers);
                 }
             }
@@ -697,6 +932,8 @@ public class SOCPlayerTracker implements Serializable
                     // if so, clear necessary road list and remove from np lists
                     //
                     //D.ebugPrintln("$$$ pr "+Integer.toHexString(pr.getCoordinates())+" already in list");
+                    saveState(pr);
+
                     if (!pr.getNecessaryRoads().isEmpty())
                     {
                         //D.ebugPrintln("$$$    clearing nr list");
@@ -731,7 +968,7 @@ public class SOCPlayerTracker implements Serializable
         while (newPREnum.hasMoreElements())
         {
             SOCPossibleRoad newPR = (SOCPossibleRoad) newPREnum.nextElement();
-            possibleRoads.put(Integer.valueOf(newPR.getCoordinates()), newPR);
+            putPossiblePiece(possibleRoads, Integer.valueOf(newPR.getCoordinates()), newPR);
         }
 
         //
@@ -763,6 +1000,7 @@ public class SOCPlayerTracker implements Serializable
         //D.ebugPrintln("$$$ expandRoad at "+Integer.toHexString(targetRoad.getCoordinates())+" level="+level);
         SOCBoard board = player.getGame().getBoard();
         SOCRoad dummyRoad = new SOCRoad(dummy, targetRoad.getCoordinates(), board);
+        saveState(targetRoad);  // new possibilities may be added to it
         dummy.putPiece(dummyRoad);
 
         //
@@ -797,6 +1035,7 @@ public class SOCPlayerTracker implements Serializable
                         // add target road to settlement's nr list and this settlement to the road's np list
                         //
                         //D.ebugPrintln("$$$ adding road "+Integer.toHexString(targetRoad.getCoordinates())+" to the settlement "+Integer.toHexString(posSet.getCoordinates()));
+                        saveState(posSet);
                         posSet.getNecessaryRoads().addElement(targetRoad);
                         targetRoad.addNewPossibility(posSet);
 
@@ -820,7 +1059,7 @@ public class SOCPlayerTracker implements Serializable
 
                     SOCPossibleSettlement newPosSet = new SOCPossibleSettlement(brain, player, adjNode.intValue(), nr);
                     newPosSet.setNumberOfNecessaryRoads(targetRoad.getNumberOfNecessaryRoads() + 1);
-                    possibleSettlements.put(adjNode, newPosSet);
+                    putPossiblePiece(possibleSettlements, adjNode, newPosSet);
                     targetRoad.addNewPossibility(newPosSet);
                     updateSettlementConflicts(newPosSet, trackers);
                 }
@@ -862,6 +1101,8 @@ public class SOCPlayerTracker implements Serializable
                         // if so, and it needs 1 or more roads other than this one, 
                         //
                         //D.ebugPrintln("$$$ pr "+Integer.toHexString(pr.getCoordinates())+" already in list");
+                        saveState(pr);
+
                         Vector nr = pr.getNecessaryRoads();
 
                         if (!nr.isEmpty() && (!nr.contains(targetRoad)))
@@ -915,7 +1156,7 @@ public class SOCPlayerTracker implements Serializable
             while (newPREnum.hasMoreElements())
             {
                 SOCPossibleRoad newPR = (SOCPossibleRoad) newPREnum.nextElement();
-                possibleRoads.put(Integer.valueOf(newPR.getCoordinates()), newPR);
+                putPossiblePiece(possibleRoads, Integer.valueOf(newPR.getCoordinates()), newPR);
             }
 
             //
@@ -963,7 +1204,7 @@ public class SOCPlayerTracker implements Serializable
         if (pr != null)
         {
             //D.ebugPrintln("$$$ removing road at "+Integer.toHexString(pr.getCoordinates()));
-            possibleRoads.remove(roadCoordinates);
+            removePossiblePiece(possibleRoads, roadCoordinates);
             removeFromNecessaryRoads(pr);
             removeDependents(pr);
         }
@@ -1002,6 +1243,8 @@ public class SOCPlayerTracker implements Serializable
                 if (posSet != null)
                 {
                     //D.ebugPrintln("$$$ add conflict "+Integer.toHexString(posSet.getCoordinates()));
+                    saveState(ps);
+                    saveState(posSet);
                     ps.addConflict(posSet);
                     posSet.addConflict(ps);
                 }
@@ -1020,6 +1263,8 @@ public class SOCPlayerTracker implements Serializable
                 if (posSet != null)
                 {
                     //D.ebugPrintln("$$$ add conflict "+Integer.toHexString(posSet.getCoordinates()));
+                    saveState(ps);
+                    saveState(posSet);
                     ps.addConflict(posSet);
                     posSet.addConflict(ps);
                 }
@@ -1090,7 +1335,7 @@ public class SOCPlayerTracker implements Serializable
         /**
          * add a new possible city
          */
-        possibleCities.put(settlementCoords, new SOCPossibleCity(brain, player, settlement.getCoordinates()));
+        putPossiblePiece(possibleCities, settlementCoords, new SOCPossibleCity(brain, player, settlement.getCoordinates()));
 
         /**
          * see if the new settlement was a possible settlement in
@@ -1111,7 +1356,7 @@ public class SOCPlayerTracker implements Serializable
              * remove the possible settlement that is now a real settlement
              */
             D.ebugPrintlnINFO("$$$ removing " + Integer.toHexString(settlement.getCoordinates()));
-            possibleSettlements.remove(settlementCoords);
+            removePossiblePiece(possibleSettlements, settlementCoords);
             removeFromNecessaryRoads(ps);
 
             /**
@@ -1129,7 +1374,7 @@ public class SOCPlayerTracker implements Serializable
                 if (tracker != null)
                 {
                     D.ebugPrintlnINFO("$$$ removing " + Integer.toHexString(conflict.getCoordinates()));
-                    tracker.getPossibleSettlements().remove(Integer.valueOf(conflict.getCoordinates()));
+                    removePossiblePiece(tracker.getPossibleSettlements(), Integer.valueOf(conflict.getCoordinates()));
                     removeFromNecessaryRoads(conflict);
 
                     /**
@@ -1141,6 +1386,7 @@ public class SOCPlayerTracker implements Serializable
                     {
                         SOCPossibleSettlement otherConflict = (SOCPossibleSettlement) otherConflictEnum.nextElement();
                         D.ebugPrintlnINFO("$$$ removing conflict " + Integer.toHexString(conflict.getCoordinates()) + " from " + Integer.toHexString(otherConflict.getCoordinates()));
+                        saveState(otherConflict);
                         otherConflict.removeConflict(conflict);
                     }
                 }
@@ -1183,6 +1429,7 @@ public class SOCPlayerTracker implements Serializable
                     {
                         SOCPossibleSettlement conflict = (SOCPossibleSettlement) conflictEnum.nextElement();
                         D.ebugPrintlnINFO("$$$ removing conflict " + Integer.toHexString(posSet.getCoordinates()) + " from " + Integer.toHexString(conflict.getCoordinates()));
+                        saveState(conflict);
                         conflict.removeConflict(posSet);
                     }
                 }
@@ -1212,6 +1459,7 @@ public class SOCPlayerTracker implements Serializable
                         {
                             SOCPossibleSettlement conflict = (SOCPossibleSettlement) conflictEnum.nextElement();
                             D.ebugPrintlnINFO("$$$ removing conflict " + Integer.toHexString(posSet.getCoordinates()) + " from " + Integer.toHexString(conflict.getCoordinates()));
+                            saveState(conflict);
                             conflict.removeConflict(posSet);
                         }
                     }
@@ -1228,7 +1476,7 @@ public class SOCPlayerTracker implements Serializable
                 {
                     SOCPossibleSettlement pset = (SOCPossibleSettlement) trashEnum.nextElement();
                     D.ebugPrintlnINFO("$$$ removing " + Integer.toHexString(pset.getCoordinates()) + " owned by " + pset.getPlayer().getPlayerNumber());
-                    tracker.getPossibleSettlements().remove(Integer.valueOf(pset.getCoordinates()));
+                    removePossiblePiece(tracker.getPossibleSettlements(), Integer.valueOf(pset.getCoordinates()));
                     removeFromNecessaryRoads(pset);
                 }
 
@@ -1289,7 +1537,9 @@ public class SOCPlayerTracker implements Serializable
                     /// other players' potential roads, because point of 'cancel'
                     /// is to change our robot's immediate goal, not other players. 
                     ///
-                    if (! isCancel)
+                    /// A trial ignores threats, as copyPlayerTrackers doesn't copy them.
+                    ///
+                    if ((! isCancel) && (undoLog == null))
                     {
                         Enumeration threatEnum = pr.getThreats().elements();
     
@@ -1342,6 +1592,8 @@ public class SOCPlayerTracker implements Serializable
                         while (nrTrashEnum.hasMoreElements())
                         {
                             SOCPossibleRoad nrTrashRoad = (SOCPossibleRoad) nrTrashEnum.nextElement();
+                            saveState(pr);
+                            saveState(nrTrashRoad);
                             pr.getNecessaryRoads().removeElement(nrTrashRoad);
                             nrTrashRoad.getNewPossibilities().removeElement(pr);
                         }
@@ -1363,7 +1615,7 @@ public class SOCPlayerTracker implements Serializable
             while (prTrashEnum.hasMoreElements())
             {
                 SOCPossibleRoad prt = (SOCPossibleRoad) prTrashEnum.nextElement();
-                possibleRoads.remove(Integer.valueOf(prt.getCoordinates()));
+                removePossiblePiece(possibleRoads, Integer.valueOf(prt.getCoordinates()));
                 removeFromNecessaryRoads(prt);
                 removeDependents(prt);
             }
@@ -1384,6 +1636,7 @@ public class SOCPlayerTracker implements Serializable
          */
 
         //D.ebugPrintln("$$$ removeDependents "+Integer.toHexString(road.getCoordinates()));
+        saveState(road);
         Enumeration newPosEnum = road.getNewPossibilities().elements();
 
         while (newPosEnum.hasMoreElements())
@@ -1404,12 +1657,13 @@ public class SOCPlayerTracker implements Serializable
                 }
                 else
                 {
+                    saveState(newPos);
                     nr.removeElement(road);
 
                     if (nr.isEmpty())
                     {
                         //D.ebugPrintln("$$$ removing this road");
-                        possibleRoads.remove(Integer.valueOf(newPos.getCoordinates()));
+                        removePossiblePiece(possibleRoads, Integer.valueOf(newPos.getCoordinates()));
                         removeFromNecessaryRoads((SOCPossibleRoad) newPos);
                         removeDependents((SOCPossibleRoad) newPos);
                     }
@@ -1446,12 +1700,13 @@ public class SOCPlayerTracker implements Serializable
                 }
                 else
                 {
+                    saveState(newPos);
                     nr.removeElement(road);
 
                     if (nr.isEmpty())
                     {
                         //D.ebugPrintln("$$$ removing this settlement");
-                        possibleSettlements.remove(Integer.valueOf(newPos.getCoordinates()));
+                        removePossiblePiece(possibleSettlements, Integer.valueOf(newPos.getCoordinates()));
                         removeFromNecessaryRoads((SOCPossibleSettlement) newPos);
 
                         /**
@@ -1462,6 +1717,7 @@ public class SOCPlayerTracker implements Serializable
                         while (conflictEnum.hasMoreElements())
                         {
                             SOCPossibleSettlement conflict = (SOCPossibleSettlement) conflictEnum.nextElement();
+                            saveState(conflict);
                             conflict.removeConflict((SOCPossibleSettlement) newPos);
                         }
                     }
@@ -1509,6 +1765,7 @@ public class SOCPlayerTracker implements Serializable
             SOCPossibleRoad nr = (SOCPossibleRoad) nrEnum.nextElement();
 
             //D.ebugPrintln("%%% removing road at "+Integer.toHexString(pr.getCoordinates())+" from road at "+Integer.toHexString(nr.getCoordinates()));
+            saveState(nr);
             nr.getNewPossibilities().removeElement(pr);
         }
     }
@@ -1531,6 +1788,7 @@ public class SOCPlayerTracker implements Serializable
             SOCPossibleRoad nr = (SOCPossibleRoad) nrEnum.nextElement();
 
             //D.ebugPrintln("%%% removing settlement at "+Integer.toHexString(ps.getCoordinates())+" from road at "+Integer.toHexString(nr.getCoordinates()));
+            saveState(nr);
             nr.getNewPossibilities().removeElement(ps);
         }
     }
@@ -1567,7 +1825,7 @@ public class SOCPlayerTracker implements Serializable
         /**
          * remove the possible city from the list
          */
-        possibleCities.remove(Integer.valueOf(city.getCoordinates()));
+        removePossiblePiece(possibleCities, Integer.valueOf(city.getCoordinates()));
     }
 
     /**
@@ -1580,7 +1838,7 @@ public class SOCPlayerTracker implements Serializable
         /**
          * add the possible city to the list
          */
-        possibleCities.put(Integer.valueOf(city.getCoordinates()), city);
+        putPossiblePiece(possibleCities, Integer.valueOf(city.getCoordinates()), city);
     }
 
     /**
@@ -1962,11 +2220,8 @@ public class SOCPlayerTracker implements Serializable
         int roadETA;
         SOCBuildingSpeedEstimate bse = brain.getEstimator(player.getNumbers());
 
-        try
-        {
-            roadETA = bse.calculateRollsFast(SOCGame.EMPTY_RESOURCES, SOCGame.ROAD_SET, 500, player.getPortFlags()).getRolls();
-        }
-        catch (CutoffExceededException e)
+        roadETA = bse.calculateRolls(SOCGame.EMPTY_RESOURCES, SOCGame.ROAD_SET, 500, player.getPortFlags());
+        if (roadETA == SOCBuildingSpeedEstimate.CUTOFF_EXCEEDED)
         {
             roadETA = 500;
         }
@@ -2167,7 +2422,10 @@ public class SOCPlayerTracker implements Serializable
             {
                 if (laPlayer != null)
                 {
-                    D.ebugPrintlnINFO("laPlayer # = " + laPlayer.getPlayerNumber());
+                    if (D.ebugOn)
+                    {
+                        D.ebugPrintlnINFO("laPlayer # = " + laPlayer.getPlayerNumber());
+                    }
                 }
                 else
                 {
@@ -2176,7 +2434,10 @@ public class SOCPlayerTracker implements Serializable
 
                 if (lrPlayer != null)
                 {
-                    D.ebugPrintlnINFO("lrPlayer # = " + lrPlayer.getPlayerNumber());
+                    if (D.ebugOn)
+                    {
+                        D.ebugPrintlnINFO("lrPlayer # = " + lrPlayer.getPlayerNumber());
+                    }
                 }
                 else
                 {
@@ -2194,8 +2455,7 @@ public class SOCPlayerTracker implements Serializable
                 haveLR = true;
             }
 
-            TreeMap posSetsCopy = (TreeMap) possibleSettlements.clone();
-            TreeMap posCitiesCopy = (TreeMap) possibleCities.clone();
+            initEtaScratch();
 
             int points = player.getTotalVP();
             int fastestETA;
@@ -2204,11 +2464,14 @@ public class SOCPlayerTracker implements Serializable
 
             while (points < getBrain().getGame().getVpWinner())  // TODO: Hardcoded 10 to win
             {
-                D.ebugPrintlnINFO("WWW points = " + points);
-                D.ebugPrintlnINFO("WWW settlementPiecesLeft = " + settlementPiecesLeft);
-                D.ebugPrintlnINFO("WWW cityPiecesLeft = " + cityPiecesLeft);
-                D.ebugPrintlnINFO("WWW settlementSpotsLeft = " + posSetsCopy.size());
-                D.ebugPrintlnINFO("WWW citySpotsLeft = " + posCitiesCopy.size());
+                if (D.ebugOn)
+                {
+                    D.ebugPrintlnINFO("WWW points = " + points);
+                    D.ebugPrintlnINFO("WWW settlementPiecesLeft = " + settlementPiecesLeft);
+                    D.ebugPrintlnINFO("WWW cityPiecesLeft = " + cityPiecesLeft);
+                    D.ebugPrintlnINFO("WWW settlementSpotsLeft = " + numEtaSetsOpen);
+                    D.ebugPrintlnINFO("WWW citySpotsLeft = " + numEtaCities);
+                }
 
                 if (D.ebugOn)
                 {
@@ -2223,10 +2486,13 @@ public class SOCPlayerTracker implements Serializable
                     D.ebugPrintlnINFO();
                 }
 
-                D.ebugPrintlnINFO("WWW settlementETA = " + settlementETA);
-                D.ebugPrintlnINFO("WWW cityETA = " + cityETA);
-                D.ebugPrintlnINFO("WWW roadETA = " + roadETA);
-                D.ebugPrintlnINFO("WWW cardETA = " + cardETA);
+                if (D.ebugOn)
+                {
+                    D.ebugPrintlnINFO("WWW settlementETA = " + settlementETA);
+                    D.ebugPrintlnINFO("WWW cityETA = " + cityETA);
+                    D.ebugPrintlnINFO("WWW roadETA = " + roadETA);
+                    D.ebugPrintlnINFO("WWW cardETA = " + cardETA);
+                }
 
                 if (points == (getBrain().getGame().getVpWinner() - 1))
                 {
@@ -2234,13 +2500,13 @@ public class SOCPlayerTracker implements Serializable
 
                     SOCPossibleSettlement chosenSet = null;
 
-                    if ((settlementPiecesLeft > 0) && (!posSetsCopy.isEmpty()))
+                    if ((settlementPiecesLeft > 0) && (numEtaSetsOpen > 0))
                     {
-                        Iterator posSetsIter = posSetsCopy.values().iterator();
-
-                        while (posSetsIter.hasNext())
+                        for (int s = 0; s < numEtaSets; s++)
                         {
-                            SOCPossibleSettlement posSet = (SOCPossibleSettlement) posSetsIter.next();
+                            if (! etaSetOpen[s])
+                                continue;
+                            SOCPossibleSettlement posSet = etaSets[s];
                             int posSetETA = settlementETA + (posSet.getNumberOfNecessaryRoads() * roadETA);
 
                             if (posSetETA < fastestETA)
@@ -2291,10 +2557,13 @@ public class SOCPlayerTracker implements Serializable
                             }
 
                             fastestETA = (settlementETA + (totalNecRoads * roadETA));
-                            D.ebugPrintlnINFO("WWW # necesesary roads = " + totalNecRoads);
-                            D.ebugPrintlnINFO("WWW this settlement eta = " + (settlementETA + (totalNecRoads * roadETA)));
-                            D.ebugPrintlnINFO("WWW settlement is " + chosenSet);
-                            D.ebugPrintlnINFO("WWW settlement eta = " + fastestETA);
+                            if (D.ebugOn)
+                            {
+                                D.ebugPrintlnINFO("WWW # necesesary roads = " + totalNecRoads);
+                                D.ebugPrintlnINFO("WWW this settlement eta = " + (settlementETA + (totalNecRoads * roadETA)));
+                                D.ebugPrintlnINFO("WWW settlement is " + chosenSet);
+                                D.ebugPrintlnINFO("WWW settlement eta = " + fastestETA);
+                            }
                         }
                         else
                         {
@@ -2304,19 +2573,28 @@ public class SOCPlayerTracker implements Serializable
 
                     if ((cityPiecesLeft > 0) && (citySpotsLeft > 0) && (cityETA <= fastestETA))
                     {
-                        D.ebugPrintlnINFO("WWW city eta = " + cityETA);
+                        if (D.ebugOn)
+                        {
+                            D.ebugPrintlnINFO("WWW city eta = " + cityETA);
+                        }
                         fastestETA = cityETA;
                     }
 
                     if (!haveLA && !needLA && (tempLargestArmyETA < fastestETA))
                     {
-                        D.ebugPrintlnINFO("WWW LA eta = " + tempLargestArmyETA);
+                        if (D.ebugOn)
+                        {
+                            D.ebugPrintlnINFO("WWW LA eta = " + tempLargestArmyETA);
+                        }
                         fastestETA = tempLargestArmyETA;
                     }
 
                     if (!haveLR && !needLR && (tempLongestRoadETA < fastestETA))
                     {
-                        D.ebugPrintlnINFO("WWW LR eta = " + tempLongestRoadETA);
+                        if (D.ebugOn)
+                        {
+                            D.ebugPrintlnINFO("WWW LR eta = " + tempLongestRoadETA);
+                        }
                         fastestETA = tempLongestRoadETA;
                     }
 
@@ -2353,7 +2631,10 @@ public class SOCPlayerTracker implements Serializable
                         }
                     }
 
-                    D.ebugPrintlnINFO("WWW Adding " + fastestETA + " to win eta");
+                    if (D.ebugOn)
+                    {
+                        D.ebugPrintlnINFO("WWW Adding " + fastestETA + " to win eta");
+                    }
                     winGameETA += fastestETA;
                     points += 2;
                 }
@@ -2372,11 +2653,11 @@ public class SOCPlayerTracker implements Serializable
 
                     SOCPossibleSettlement[] chosenSet = new SOCPossibleSettlement[2];
                     boolean[][] tempPortFlagsSet = new boolean[2][SOCBoard.WOOD_PORT + 1];
-                    SOCPossibleCity[] chosenCity = new SOCPossibleCity[2];
+                    int[] chosenCity = new int[2];  // node coordinates, or -1
                     chosenSet[0] = null;
                     chosenSet[1] = null;
-                    chosenCity[0] = null;
-                    chosenCity[1] = null;
+                    chosenCity[0] = -1;
+                    chosenCity[1] = -1;
 
                     int twoSettlements = 0;
                     int twoCities = 500;
@@ -2395,16 +2676,14 @@ public class SOCPlayerTracker implements Serializable
                         //
                         twoCities = 500;
 
-                        Iterator posCities0Iter = posCitiesCopy.values().iterator();
-
-                        while (posCities0Iter.hasNext())
+                        for (int c = 0; c < numEtaCities; c++)
                         {
-                            SOCPossibleCity posCity0 = (SOCPossibleCity) posCities0Iter.next();
+                            final int posCity0 = etaCities[c];
 
                             //
                             // update our building speed estimate
                             //
-                            tempPlayerNumbers.updateNumbers(posCity0.getCoordinates(), board);
+                            tempPlayerNumbers.updateNumbers(posCity0, board);
                             tempCityBSE[0].recalculateEstimates(tempPlayerNumbers);
                             chosenCityBuildingSpeed[0] = tempCityBSE[0].getEstimatesFromNothingFast(tempPortFlags);
 
@@ -2419,12 +2698,15 @@ public class SOCPlayerTracker implements Serializable
                                 twoCities = (cityETA + tempCityETA);
                             }
 
-                            tempPlayerNumbers.undoUpdateNumbers(posCity0.getCoordinates(), board);
+                            tempPlayerNumbers.undoUpdateNumbers(posCity0, board);
                         }
 
                         if (twoCities <= fastestETA)
                         {
-                            D.ebugPrintlnINFO("WWW twoCities = " + twoCities);
+                            if (D.ebugOn)
+                            {
+                                D.ebugPrintlnINFO("WWW twoCities = " + twoCities);
+                            }
                             fastestETA = twoCities;
                         }
                     }
@@ -2434,28 +2716,29 @@ public class SOCPlayerTracker implements Serializable
                     ///
                     boolean canBuild2Settlements = false;
 
-                    if ((settlementPiecesLeft > 1) && (posSetsCopy.size() > 1))
+                    if ((settlementPiecesLeft > 1) && (numEtaSetsOpen > 1))
                     {
                         canBuild2Settlements = true;
 
-                        Vector posSetsToPutBack = new Vector();
+                        int numPosSetsToPutBack = 0;  // conflicts closed while choosing; see etaSetOpen
+                        int[] posSetsToPutBack = null;
 
                         for (int i = 0; i < 2; i++)
                         {
                             int fastestSetETA = 500;
                             int bestSpeedupTotal = 0;
 
-                            if (posSetsCopy.isEmpty())
+                            if (numEtaSetsOpen == 0)
                             {
                                 canBuild2Settlements = false;
                             }
                             else
                             {
-                                Iterator posSetsIter = posSetsCopy.values().iterator();
-
-                                while (posSetsIter.hasNext())
+                                for (int s = 0; s < numEtaSets; s++)
                                 {
-                                    SOCPossibleSettlement posSet = (SOCPossibleSettlement) posSetsIter.next();
+                                    if (! etaSetOpen[s])
+                                        continue;
+                                    SOCPossibleSettlement posSet = etaSets[s];
                                     int posSetETA = settlementETA + (posSet.getNumberOfNecessaryRoads() * roadETA);
 
                                     final int posSetCoord = posSet.getCoordinates();
@@ -2603,25 +2886,26 @@ public class SOCPlayerTracker implements Serializable
                                     }
                                 }
 
-                                D.ebugPrintlnINFO("WWW # necesesary roads = " + totalNecRoads);
-                                D.ebugPrintlnINFO("WWW this settlement eta = " + (settlementETA + (totalNecRoads * roadETA)));
+                                if (D.ebugOn)
+                                {
+                                    D.ebugPrintlnINFO("WWW # necesesary roads = " + totalNecRoads);
+                                    D.ebugPrintlnINFO("WWW this settlement eta = " + (settlementETA + (totalNecRoads * roadETA)));
+                                }
 
                                 if ((i == 0) && (chosenSet[0] != null))
                                 {
-                                    posSetsCopy.remove(Integer.valueOf(chosenSet[0].getCoordinates()));
+                                    closeEtaSet(chosenSet[0].getCoordinates());
 
-                                    Enumeration conflicts = chosenSet[0].getConflicts().elements();
+                                    Vector conflicts = chosenSet[0].getConflicts();
+                                    posSetsToPutBack = new int[conflicts.size()];
 
-                                    while (conflicts.hasMoreElements())
+                                    for (int ci = 0; ci < conflicts.size(); ci++)
                                     {
-                                        SOCPossibleSettlement conflict = (SOCPossibleSettlement) conflicts.nextElement();
-                                        Integer conflictInt = Integer.valueOf(conflict.getCoordinates());
-                                        SOCPossibleSettlement possibleConflict = (SOCPossibleSettlement) posSetsCopy.get(conflictInt);
+                                        SOCPossibleSettlement conflict = (SOCPossibleSettlement) conflicts.elementAt(ci);
 
-                                        if (possibleConflict != null)
+                                        if (closeEtaSet(conflict.getCoordinates()))
                                         {
-                                            posSetsToPutBack.add(possibleConflict);
-                                            posSetsCopy.remove(conflictInt);
+                                            posSetsToPutBack[numPosSetsToPutBack++] = conflict.getCoordinates();
                                         }
                                     }
 
@@ -2641,19 +2925,19 @@ public class SOCPlayerTracker implements Serializable
                             }
                         }
 
-                        posSetsCopy.put(Integer.valueOf(chosenSet[0].getCoordinates()), chosenSet[0]);
+                        openEtaSet(chosenSet[0].getCoordinates());
 
-                        Iterator posSetsToPutBackIter = posSetsToPutBack.iterator();
-
-                        while (posSetsToPutBackIter.hasNext())
+                        for (int ci = 0; ci < numPosSetsToPutBack; ci++)
                         {
-                            SOCPossibleSettlement tmpPosSet = (SOCPossibleSettlement) posSetsToPutBackIter.next();
-                            posSetsCopy.put(Integer.valueOf(tmpPosSet.getCoordinates()), tmpPosSet);
+                            openEtaSet(posSetsToPutBack[ci]);
                         }
 
                         if (canBuild2Settlements && (twoSettlements <= fastestETA))
                         {
-                            D.ebugPrintlnINFO("WWW 2 * settlement = " + twoSettlements);
+                            if (D.ebugOn)
+                            {
+                                D.ebugPrintlnINFO("WWW 2 * settlement = " + twoSettlements);
+                            }
                             fastestETA = twoSettlements;
                         }
                     }
@@ -2661,20 +2945,19 @@ public class SOCPlayerTracker implements Serializable
                     ///
                     /// one of each
                     ///
-                    if ((cityPiecesLeft > 0) && (((settlementPiecesLeft > 0) && (citySpotsLeft >= 0)) || ((settlementPiecesLeft >= 0) && (citySpotsLeft > 0))) && !posSetsCopy.isEmpty())
+                    if ((cityPiecesLeft > 0) && (((settlementPiecesLeft > 0) && (citySpotsLeft >= 0)) || ((settlementPiecesLeft >= 0) && (citySpotsLeft > 0))) && (numEtaSetsOpen > 0))
                     {
                         //
                         // choose a city to build
                         //
-                        if ((chosenCity[0] == null) && (citySpotsLeft > 0))
+                        if ((chosenCity[0] == -1) && (citySpotsLeft > 0))
                         {
                             int bestCitySpeedupTotal = 0;
-                            Iterator posCities0Iter = posCitiesCopy.values().iterator();
 
-                            while (posCities0Iter.hasNext())
+                            for (int c = 0; c < numEtaCities; c++)
                             {
-                                SOCPossibleCity posCity0 = (SOCPossibleCity) posCities0Iter.next();
-                                tempPlayerNumbers.updateNumbers(posCity0.getCoordinates(), board);
+                                final int posCity0 = etaCities[c];
+                                tempPlayerNumbers.updateNumbers(posCity0, board);
                                 tempBSE.recalculateEstimates(tempPlayerNumbers);
 
                                 int[] tempBuildingSpeed = tempBSE.getEstimatesFromNothingFast(tempPortFlags);
@@ -2709,7 +2992,7 @@ public class SOCPlayerTracker implements Serializable
                                 //		  }
                                 //		  System.out.println();
                                 //		}
-                                tempPlayerNumbers.undoUpdateNumbers(posCity0.getCoordinates(), board);
+                                tempPlayerNumbers.undoUpdateNumbers(posCity0, board);
 
                                 if (tempSpeedupTotal >= bestCitySpeedupTotal)
                                 {
@@ -2734,11 +3017,12 @@ public class SOCPlayerTracker implements Serializable
                         {
                             int fastestSetETA = 500;
                             int bestSpeedupTotal = 0;
-                            Iterator posSetsIter = posSetsCopy.values().iterator();
 
-                            while (posSetsIter.hasNext())
+                            for (int s = 0; s < numEtaSets; s++)
                             {
-                                SOCPossibleSettlement posSet = (SOCPossibleSettlement) posSetsIter.next();
+                                if (! etaSetOpen[s])
+                                    continue;
+                                SOCPossibleSettlement posSet = etaSets[s];
                                 int posSetETA = settlementETA + (posSet.getNumberOfNecessaryRoads() * roadETA);
 
                                 if (posSetETA < fastestSetETA)
@@ -2850,7 +3134,7 @@ public class SOCPlayerTracker implements Serializable
 
                         if (citySpotsLeft == 0)
                         {
-                            chosenCity[0] = new SOCPossibleCity(brain, player, chosenSet[0].getCoordinates());
+                            chosenCity[0] = chosenSet[0].getCoordinates();
                         }
 
                         ///
@@ -2891,8 +3175,11 @@ public class SOCPlayerTracker implements Serializable
                             }
                         }
 
-                        D.ebugPrintlnINFO("WWW # necesesary roads = " + totalNecRoads);
-                        D.ebugPrintlnINFO("WWW this settlement eta = " + (settlementETA + (totalNecRoads * roadETA)));
+                        if (D.ebugOn)
+                        {
+                            D.ebugPrintlnINFO("WWW # necesesary roads = " + totalNecRoads);
+                            D.ebugPrintlnINFO("WWW this settlement eta = " + (settlementETA + (totalNecRoads * roadETA)));
+                        }
 
                         // 
                         // get a more accurate estimate by taking the
@@ -2922,7 +3209,10 @@ public class SOCPlayerTracker implements Serializable
 
                         if (oneOfEach <= fastestETA)
                         {
-                            D.ebugPrintlnINFO("WWW one of each = " + oneOfEach);
+                            if (D.ebugOn)
+                            {
+                                D.ebugPrintlnINFO("WWW one of each = " + oneOfEach);
+                            }
                             fastestETA = oneOfEach;
                         }
                     }
@@ -2978,7 +3268,10 @@ public class SOCPlayerTracker implements Serializable
                             tempLargestArmyETA = 500;
                         }
 
-                        D.ebugPrintlnINFO("WWW LA eta = " + tempLargestArmyETA);
+                        if (D.ebugOn)
+                        {
+                            D.ebugPrintlnINFO("WWW LA eta = " + tempLargestArmyETA);
+                        }
 
                         if (tempLargestArmyETA < fastestETA)
                         {
@@ -2995,7 +3288,10 @@ public class SOCPlayerTracker implements Serializable
                     if (!haveLR && !needLR && (points > 5))
                     {
                         tempLongestRoadETA = roadETA * roadsToGo;
-                        D.ebugPrintlnINFO("WWW LR eta = " + tempLongestRoadETA);
+                        if (D.ebugOn)
+                        {
+                            D.ebugPrintlnINFO("WWW LR eta = " + tempLongestRoadETA);
+                        }
 
                         if (tempLongestRoadETA < fastestETA)
                         {
@@ -3006,19 +3302,23 @@ public class SOCPlayerTracker implements Serializable
                     ///
                     /// implement the fastest scenario
                     ///
-                    D.ebugPrintlnINFO("WWW Adding " + fastestETA + " to win eta");
+                    if (D.ebugOn)
+                    {
+                        D.ebugPrintlnINFO("WWW Adding " + fastestETA + " to win eta");
+                    }
                     points += 2;
                     winGameETA += fastestETA;
-                    D.ebugPrintlnINFO("WWW WGETA SO FAR FOR PLAYER " + player.getPlayerNumber() + " = " + winGameETA);
+                    if (D.ebugOn)
+                    {
+                        D.ebugPrintlnINFO("WWW WGETA SO FAR FOR PLAYER " + player.getPlayerNumber() + " = " + winGameETA);
+                    }
 
-                    if ((settlementPiecesLeft > 1) && (posSetsCopy.size() > 1) && (canBuild2Settlements) && (fastestETA == twoSettlements))
+                    if ((settlementPiecesLeft > 1) && (numEtaSetsOpen > 1) && (canBuild2Settlements) && (fastestETA == twoSettlements))
                     {
-                        Integer chosenSet0Int = Integer.valueOf(chosenSet[0].getCoordinates());
-                        Integer chosenSet1Int = Integer.valueOf(chosenSet[1].getCoordinates());
-                        posSetsCopy.remove(chosenSet0Int);
-                        posSetsCopy.remove(chosenSet1Int);
-                        posCitiesCopy.put(chosenSet0Int, new SOCPossibleCity(brain, player, chosenSet[0].getCoordinates()));
-                        posCitiesCopy.put(chosenSet1Int, new SOCPossibleCity(brain, player, chosenSet[1].getCoordinates()));
+                        closeEtaSet(chosenSet[0].getCoordinates());
+                        closeEtaSet(chosenSet[1].getCoordinates());
+                        addEtaCity(chosenSet[0].getCoordinates());
+                        addEtaCity(chosenSet[1].getCoordinates());
 
                         //
                         // remove possible settlements that are conflicts
@@ -3028,8 +3328,7 @@ public class SOCPlayerTracker implements Serializable
                         while (conflicts.hasMoreElements())
                         {
                             SOCPossibleSettlement conflict = (SOCPossibleSettlement) conflicts.nextElement();
-                            Integer conflictInt = Integer.valueOf(conflict.getCoordinates());
-                            posSetsCopy.remove(conflictInt);
+                            closeEtaSet(conflict.getCoordinates());
                         }
 
                         conflicts = chosenSet[1].getConflicts().elements();
@@ -3037,8 +3336,7 @@ public class SOCPlayerTracker implements Serializable
                         while (conflicts.hasMoreElements())
                         {
                             SOCPossibleSettlement conflict = (SOCPossibleSettlement) conflicts.nextElement();
-                            Integer conflictInt = Integer.valueOf(conflict.getCoordinates());
-                            posSetsCopy.remove(conflictInt);
+                            closeEtaSet(conflict.getCoordinates());
                         }
 
                         settlementPiecesLeft -= 2;
@@ -3064,25 +3362,27 @@ public class SOCPlayerTracker implements Serializable
                         cityETA = ourBuildingSpeed[SOCBuildingSpeedEstimate.CITY];
                         cardETA = ourBuildingSpeed[SOCBuildingSpeedEstimate.CARD];
                         D.ebugPrintlnINFO("WWW  * build two settlements");
-                        D.ebugPrintlnINFO("WWW    settlement 1: " + board.nodeCoordToString(chosenSet[0].getCoordinates()));
-                        D.ebugPrintlnINFO("WWW    settlement 2: " + board.nodeCoordToString(chosenSet[1].getCoordinates()));
+                        if (D.ebugOn)
+                        {
+                            D.ebugPrintlnINFO("WWW    settlement 1: " + board.nodeCoordToString(chosenSet[0].getCoordinates()));
+                            D.ebugPrintlnINFO("WWW    settlement 2: " + board.nodeCoordToString(chosenSet[1].getCoordinates()));
+                        }
 
                         if (brain.getDRecorder().isOn())
                         {
                             brain.getDRecorder().record(fastestETA + ": Stlmt at " + board.nodeCoordToString(chosenSet[0].getCoordinates()) + "; Stlmt at " + board.nodeCoordToString(chosenSet[1].getCoordinates()));
                         }
                     }
-                    else if (((cityPiecesLeft > 0) && (((settlementPiecesLeft > 0) && (citySpotsLeft >= 0)) || ((settlementPiecesLeft >= 0) && (citySpotsLeft > 0))) && !posSetsCopy.isEmpty()) && (fastestETA == oneOfEach))
+                    else if (((cityPiecesLeft > 0) && (((settlementPiecesLeft > 0) && (citySpotsLeft >= 0)) || ((settlementPiecesLeft >= 0) && (citySpotsLeft > 0))) && (numEtaSetsOpen > 0)) && (fastestETA == oneOfEach))
                     {
-                        Integer chosenSet0Int = Integer.valueOf(chosenSet[0].getCoordinates());
-                        posSetsCopy.remove(chosenSet0Int);
+                        closeEtaSet(chosenSet[0].getCoordinates());
 
-                        if (chosenSet[0].getCoordinates() != chosenCity[0].getCoordinates())
+                        if (chosenSet[0].getCoordinates() != chosenCity[0])
                         {
-                            posCitiesCopy.put(chosenSet0Int, new SOCPossibleCity(brain, player, chosenSet[0].getCoordinates()));
+                            addEtaCity(chosenSet[0].getCoordinates());
                         }
 
-                        posCitiesCopy.remove(Integer.valueOf(chosenCity[0].getCoordinates()));
+                        removeEtaCity(chosenCity[0]);
                         cityPiecesLeft -= 1;
 
                         //
@@ -3093,8 +3393,7 @@ public class SOCPlayerTracker implements Serializable
                         while (conflicts.hasMoreElements())
                         {
                             SOCPossibleSettlement conflict = (SOCPossibleSettlement) conflicts.nextElement();
-                            Integer conflictInt = Integer.valueOf(conflict.getCoordinates());
-                            posSetsCopy.remove(conflictInt);
+                            closeEtaSet(conflict.getCoordinates());
                         }
 
                         //
@@ -3106,7 +3405,7 @@ public class SOCPlayerTracker implements Serializable
                         if (portType != -1)
                             tempPortFlags[portType] = true;
 
-                        tempPlayerNumbers.updateNumbers(chosenCity[0].getCoordinates(), board);
+                        tempPlayerNumbers.updateNumbers(chosenCity[0], board);
                         ourBSE.recalculateEstimates(tempPlayerNumbers);
                         ourBuildingSpeed = ourBSE.getEstimatesFromNothingFast(tempPortFlags);
                         settlementETA = ourBuildingSpeed[SOCBuildingSpeedEstimate.SETTLEMENT];
@@ -3114,41 +3413,46 @@ public class SOCPlayerTracker implements Serializable
                         cityETA = ourBuildingSpeed[SOCBuildingSpeedEstimate.CITY];
                         cardETA = ourBuildingSpeed[SOCBuildingSpeedEstimate.CARD];
                         D.ebugPrintlnINFO("WWW  * build a settlement and a city");
-                        D.ebugPrintlnINFO("WWW    settlement at " + board.nodeCoordToString(chosenSet[0].getCoordinates()));
-                        D.ebugPrintlnINFO("WWW    city at " + board.nodeCoordToString(chosenCity[0].getCoordinates()));
+                        if (D.ebugOn)
+                        {
+                            D.ebugPrintlnINFO("WWW    settlement at " + board.nodeCoordToString(chosenSet[0].getCoordinates()));
+                            D.ebugPrintlnINFO("WWW    city at " + board.nodeCoordToString(chosenCity[0]));
+                        }
 
                         if (brain.getDRecorder().isOn())
                         {
                             if (fastestETA == settlementBeforeCity)
                             {
-                                brain.getDRecorder().record(fastestETA + ": Stlmt at " + board.nodeCoordToString(chosenSet[0].getCoordinates()) + "; City at " + board.nodeCoordToString(chosenCity[0].getCoordinates()));
+                                brain.getDRecorder().record(fastestETA + ": Stlmt at " + board.nodeCoordToString(chosenSet[0].getCoordinates()) + "; City at " + board.nodeCoordToString(chosenCity[0]));
                             }
                             else
                             {
-                                brain.getDRecorder().record(fastestETA + ": City at " + board.nodeCoordToString(chosenCity[0].getCoordinates()) + "; Stlmt at " + board.nodeCoordToString(chosenSet[0].getCoordinates()));
+                                brain.getDRecorder().record(fastestETA + ": City at " + board.nodeCoordToString(chosenCity[0]) + "; Stlmt at " + board.nodeCoordToString(chosenSet[0].getCoordinates()));
                             }
                         }
                     }
                     else if ((cityPiecesLeft > 1) && (citySpotsLeft > 1) && (fastestETA == twoCities))
                     {
-                        posCitiesCopy.remove(Integer.valueOf(chosenCity[0].getCoordinates()));
+                        removeEtaCity(chosenCity[0]);
 
                         //
                         // update our building speed estimate
                         //
-                        tempPlayerNumbers.updateNumbers(chosenCity[0].getCoordinates(), board);
+                        tempPlayerNumbers.updateNumbers(chosenCity[0], board);
 
                         //
                         // pick the second city to build
                         //
                         int bestCitySpeedupTotal = 0;
-                        Iterator posCities1Iter = posCitiesCopy.values().iterator();
 
-                        while (posCities1Iter.hasNext())
+                        for (int c = 0; c < numEtaCities; c++)
                         {
-                            SOCPossibleCity posCity1 = (SOCPossibleCity) posCities1Iter.next();
-                            tempPlayerNumbers.updateNumbers(posCity1.getCoordinates(), board);
-                            D.ebugPrintlnINFO("tempPlayerNumbers = " + tempPlayerNumbers);
+                            final int posCity1 = etaCities[c];
+                            tempPlayerNumbers.updateNumbers(posCity1, board);
+                            if (D.ebugOn)
+                            {
+                                D.ebugPrintlnINFO("tempPlayerNumbers = " + tempPlayerNumbers);
+                            }
                             tempBSE.recalculateEstimates(tempPlayerNumbers);
 
                             int[] tempBuildingSpeed = tempBSE.getEstimatesFromNothingFast(tempPortFlags);
@@ -3159,8 +3463,11 @@ public class SOCPlayerTracker implements Serializable
                                     buildingType < SOCBuildingSpeedEstimate.MAXPLUSONE;
                                     buildingType++)
                             {
-                                D.ebugPrintlnINFO("ourBuildingSpeed[" + buildingType + "] = " + ourBuildingSpeed[buildingType]);
-                                D.ebugPrintlnINFO("tempBuildingSpeed[" + buildingType + "] = " + tempBuildingSpeed[buildingType]);
+                                if (D.ebugOn)
+                                {
+                                    D.ebugPrintlnINFO("ourBuildingSpeed[" + buildingType + "] = " + ourBuildingSpeed[buildingType]);
+                                    D.ebugPrintlnINFO("tempBuildingSpeed[" + buildingType + "] = " + tempBuildingSpeed[buildingType]);
+                                }
 
                                 if ((ourBuildingSpeed[buildingType] - tempBuildingSpeed[buildingType]) >= 0)
                                 {
@@ -3186,9 +3493,12 @@ public class SOCPlayerTracker implements Serializable
                             //	}
                             //	System.out.println();
                             //      }
-                            tempPlayerNumbers.undoUpdateNumbers(posCity1.getCoordinates(), board);
-                            D.ebugPrintlnINFO("tempPlayerNumbers = " + tempPlayerNumbers);
-                            D.ebugPrintlnINFO("WWW City at " + board.nodeCoordToString(posCity1.getCoordinates()) + " has tempSpeedupTotal = " + tempSpeedupTotal);
+                            tempPlayerNumbers.undoUpdateNumbers(posCity1, board);
+                            if (D.ebugOn)
+                            {
+                                D.ebugPrintlnINFO("tempPlayerNumbers = " + tempPlayerNumbers);
+                                D.ebugPrintlnINFO("WWW City at " + board.nodeCoordToString(posCity1) + " has tempSpeedupTotal = " + tempSpeedupTotal);
+                            }
 
                             if (tempSpeedupTotal >= bestCitySpeedupTotal)
                             {
@@ -3197,20 +3507,20 @@ public class SOCPlayerTracker implements Serializable
                             }
                         }
 
-                        if (chosenCity[1] == null)
+                        if (chosenCity[1] == -1)
                         {
                             System.err.println("OOPS!!!");
                         }
                         else
                         {
-                            posCitiesCopy.remove(Integer.valueOf(chosenCity[1].getCoordinates()));
+                            removeEtaCity(chosenCity[1]);
                         }
 
                         settlementPiecesLeft += 2;
                         cityPiecesLeft -= 2;
                         citySpotsLeft -= 2;
 
-                        tempPlayerNumbers.updateNumbers(chosenCity[1].getCoordinates(), board);
+                        tempPlayerNumbers.updateNumbers(chosenCity[1], board);
                         ourBSE.recalculateEstimates(tempPlayerNumbers);
                         ourBuildingSpeed = ourBSE.getEstimatesFromNothingFast(tempPortFlags);
                         settlementETA = ourBuildingSpeed[SOCBuildingSpeedEstimate.SETTLEMENT];
@@ -3218,12 +3528,15 @@ public class SOCPlayerTracker implements Serializable
                         cityETA = ourBuildingSpeed[SOCBuildingSpeedEstimate.CITY];
                         cardETA = ourBuildingSpeed[SOCBuildingSpeedEstimate.CARD];
                         D.ebugPrintlnINFO("WWW  * build 2 cities");
-                        D.ebugPrintlnINFO("WWW    city 1: " + board.nodeCoordToString(chosenCity[0].getCoordinates()));
-                        D.ebugPrintlnINFO("WWW    city 2: " + board.nodeCoordToString(chosenCity[1].getCoordinates()));
+                        if (D.ebugOn)
+                        {
+                            D.ebugPrintlnINFO("WWW    city 1: " + board.nodeCoordToString(chosenCity[0]));
+                            D.ebugPrintlnINFO("WWW    city 2: " + board.nodeCoordToString(chosenCity[1]));
+                        }
 
                         if (brain.getDRecorder().isOn())
                         {
-                            brain.getDRecorder().record(fastestETA + ": City at " + board.nodeCoordToString(chosenCity[0].getCoordinates()) + "; City at " + board.nodeCoordToString(chosenCity[1].getCoordinates()));
+                            brain.getDRecorder().record(fastestETA + ": City at " + board.nodeCoordToString(chosenCity[0]) + "; City at " + board.nodeCoordToString(chosenCity[1]));
                         }
                     }
                     else if (!haveLR && !needLR && (points > 5) && (fastestETA == tempLongestRoadETA))
@@ -3249,7 +3562,10 @@ public class SOCPlayerTracker implements Serializable
                 }
             }
 
-            D.ebugPrintlnINFO("WWW TOTAL WGETA FOR PLAYER " + player.getPlayerNumber() + " = " + winGameETA);
+            if (D.ebugOn)
+            {
+                D.ebugPrintlnINFO("WWW TOTAL WGETA FOR PLAYER " + player.getPlayerNumber() + " = " + winGameETA);
+            }
 
             if (brain.getDRecorder().isOn())
             {
@@ -3267,6 +3583,118 @@ public class SOCPlayerTracker implements Serializable
         //System.out.println("good = "+good+" bad = "+bad);
         //System.out.println();
     }
+
+    /**
+     * Fill {@link #recalcWinGameETA()}'s scratch space from the current possible settlements and cities,
+     * with all of them open; grows the arrays if needed.
+     */
+    private void initEtaScratch()
+    {
+        final int nSets = possibleSettlements.size();
+        if ((etaSets == null) || (etaSets.length < nSets))
+        {
+            final int len = Math.max(nSets, 16);
+            etaSets = new SOCPossibleSettlement[len];
+            etaSetCoords = new int[len];
+            etaSetOpen = new boolean[len];
+        }
+        else if (nSets < numEtaSets)
+        {
+            Arrays.fill(etaSets, nSets, numEtaSets, null);
+        }
+
+        int i = 0;
+        Iterator posSetsIter = possibleSettlements.values().iterator();
+        while (posSetsIter.hasNext())
+        {
+            SOCPossibleSettlement posSet = (SOCPossibleSettlement) posSetsIter.next();
+            etaSets[i] = posSet;
+            etaSetCoords[i] = posSet.getCoordinates();
+            etaSetOpen[i] = true;
+            i++;
+        }
+        numEtaSets = nSets;
+        numEtaSetsOpen = nSets;
+
+        // room for a city on each possible settlement too
+        final int maxCities = possibleCities.size() + nSets;
+        if ((etaCities == null) || (etaCities.length < maxCities))
+        {
+            etaCities = new int[Math.max(maxCities, 16)];
+        }
+
+        i = 0;
+        Iterator posCitiesIter = possibleCities.keySet().iterator();
+        while (posCitiesIter.hasNext())
+        {
+            etaCities[i++] = ((Integer) posCitiesIter.next()).intValue();
+        }
+        numEtaCities = i;
+    }
+
+    /**
+     * Take a possible settlement out of {@link #recalcWinGameETA()}'s plan.
+     *
+     * @param coord  the settlement's node coordinate
+     * @return true if it was open, false if already closed or not a possible settlement
+     */
+    private boolean closeEtaSet(final int coord)
+    {
+        final int i = Arrays.binarySearch(etaSetCoords, 0, numEtaSets, coord);
+        if ((i < 0) || ! etaSetOpen[i])
+            return false;
+
+        etaSetOpen[i] = false;
+        numEtaSetsOpen--;
+        return true;
+    }
+
+    /**
+     * Put a possible settlement closed by {@link #closeEtaSet(int)} back into {@link #recalcWinGameETA()}'s plan.
+     *
+     * @param coord  the settlement's node coordinate
+     */
+    private void openEtaSet(final int coord)
+    {
+        final int i = Arrays.binarySearch(etaSetCoords, 0, numEtaSets, coord);
+        if ((i < 0) || etaSetOpen[i])
+            return;
+
+        etaSetOpen[i] = true;
+        numEtaSetsOpen++;
+    }
+
+    /**
+     * Add a possible city to {@link #recalcWinGameETA()}'s plan, keeping them sorted.
+     *
+     * @param coord  the city's node coordinate; nothing happens if it's already there
+     */
+    private void addEtaCity(final int coord)
+    {
+        int i = Arrays.binarySearch(etaCities, 0, numEtaCities, coord);
+        if (i >= 0)
+            return;
+
+        i = -(i + 1);
+        System.arraycopy(etaCities, i, etaCities, i + 1, numEtaCities - i);
+        etaCities[i] = coord;
+        numEtaCities++;
+    }
+
+    /**
+     * Take a possible city out of {@link #recalcWinGameETA()}'s plan.
+     *
+     * @param coord  the city's node coordinate; nothing happens if it isn't there
+     */
+    private void removeEtaCity(final int coord)
+    {
+        final int i = Arrays.binarySearch(etaCities, 0, numEtaCities, coord);
+        if (i < 0)
+            return;
+
+        numEtaCities--;
+        System.arraycopy(etaCities, i + 1, etaCities, i, numEtaCities - i);
+    }
     
     /**
      * See how building a piece impacts the game
@@ -3370,6 +3798,36 @@ public class SOCPlayerTracker implements Serializable
         }
     }
 
+    /**
+     * same as tryPutPiece, but instead of copying the player trackers
+     * we change them in place, logging the changes to undo with
+     * {@link #undoTryPutPiece(SOCPlayingPiece, SOCGame, SOCPlayerTrackerUndoLog)}
+     *
+     * @param piece      the piece to build
+     * @param game       the game
+     * @param trackers   the player trackers
+     * @param undoLog    the undo log, not already in use
+     */
+    public static void tryPutPiece(SOCPlayingPiece piece, SOCGame game, HashMap trackers, SOCPlayerTrackerUndoLog undoLog)
+    {
+        undoLog.begin(trackers);
+        tryPutPieceNoCopy(piece, game, trackers);
+    }
+
+    /**
+     * Reset the player trackers and the game back to before
+     * {@link #tryPutPiece(SOCPlayingPiece, SOCGame, HashMap, SOCPlayerTrackerUndoLog)}
+     *
+     * @param piece      the piece to remove
+     * @param game       the game
+     * @param undoLog    the undo log given to tryPutPiece
+     */
+    public static void undoTryPutPiece(SOCPlayingPiece piece, SOCGame game, SOCPlayerTrackerUndoLog undoLog)
+    {
+        undoLog.rollback();
+        undoTryPutPiece(piece, game);
+    }
+
     /**
      * debug output for player trackers
      *
@@ -0,0 +1,268 @@
+package soc.robot;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.TreeMap;
+import java.util.Vector;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Records the changes made to a set of player trackers while trying out a piece,
+ * so they can be undone afterwards instead of trying the piece on copies of the trackers.
+ *<P>
+ * Between {@link #begin(HashMap)} and {@link #rollback()} the trackers change in place:
+ * {@link SOCPlayerTracker} saves the state of each possible piece the first time the trial
+ * changes it, and logs each change to its possible piece maps.
+ * {@link #rollback()} puts everything back, including the trackers' ETAs.
+ * Pieces created during the trial are simply dropped.
+ *<P>
+ * The trial sees the trackers as {@link SOCPlayerTracker#copyPlayerTrackers(HashMap)} would copy them:
+ * possible roads start out not expanded, and threats are ignored.
+ *<P>
+ * One log is meant to be reused for every trial by its owner, usually a decision maker;
+ * its arrays only grow, so a trial allocates nothing here once they are big enough.
+ * Only one trial at a time: trials can't be nested.
+ */
+public class SOCPlayerTrackerUndoLog
+{
+    /** Gives each trial its own serial number, so pieces know if they've been saved yet */
+    private static final AtomicInteger serials = new AtomicInteger();
+
+    /** Serial number of the trial in progress, or 0 if none */
+    private int serial;
+
+    /** The trackers of the trial in progress */
+    private SOCPlayerTracker[] trackers = new SOCPlayerTracker[4];
+    private int numTrackers;
+
+    /**
+     * Each tracker's ETAs at the start of the trial:
+     * longestRoadETA, roadsToGo, largestArmyETA, knightsToBuy, winGameETA, needLR, needLA
+     */
+    private int[] trackerState = new int[4 * 7];
+
+    /** Saved pieces, in the order they were saved; state for each is in {@link #pieceState} */
+    private SOCPossiblePiece[] pieces = new SOCPossiblePiece[64];
+    private int numPieces;
+
+    /**
+     * For each saved piece: numberOfNecessaryRoads, hasBeenExpanded,
+     * and the sizes of its two vectors, whose contents are in {@link #elements}
+     */
+    private int[] pieceState = new int[64 * 4];
+
+    /** Contents of the saved pieces' vectors, one after another */
+    private Object[] elements = new Object[256];
+    private int numElements;
+
+    /** Map changes, 3 entries each: the map, the key, and the old value or null if the key was absent */
+    private Object[] mapChanges = new Object[3 * 32];
+    private int numMapChanges;
+
+    /**
+     * @return true between {@link #begin(HashMap)} and {@link #rollback()}
+     */
+    public boolean isActive()
+    {
+        return serial != 0;
+    }
+
+    /**
+     * Start a trial on these trackers: from now on their changes are logged.
+     *
+     * @param trackers  the player trackers, all of which may change during the trial
+     * @throws IllegalStateException if a trial is already in progress
+     */
+    public void begin(HashMap trackers)
+    {
+        if (serial != 0)
+            throw new IllegalStateException("trial already in progress");
+
+        int s;
+        do
+        {
+            s = serials.incrementAndGet();
+        } while (s == 0);
+        serial = s;
+
+        if (this.trackers.length < trackers.size())
+        {
+            this.trackers = new SOCPlayerTracker[trackers.size()];
+            trackerState = new int[trackers.size() * 7];
+        }
+        numTrackers = 0;
+        Iterator trackersIter = trackers.values().iterator();
+
+        while (trackersIter.hasNext())
+        {
+            SOCPlayerTracker tracker = (SOCPlayerTracker) trackersIter.next();
+            final int i = numTrackers * 7;
+            trackerState[i] = tracker.longestRoadETA;
+            trackerState[i + 1] = tracker.roadsToGo;
+            trackerState[i + 2] = tracker.largestArmyETA;
+            trackerState[i + 3] = tracker.knightsToBuy;
+            trackerState[i + 4] = tracker.winGameETA;
+            trackerState[i + 5] = tracker.needLR ? 1 : 0;
+            trackerState[i + 6] = tracker.needLA ? 1 : 0;
+            tracker.undoLog = this;
+            this.trackers[numTrackers++] = tracker;
+        }
+    }
+
+    /**
+     * Save a piece's state before the trial first changes it; later calls in the same trial do nothing.
+     *
+     * @param piece  a possible road or settlement
+     */
+    void savePiece(SOCPossiblePiece piece)
+    {
+        if (piece.undoSerial == serial)
+            return;
+        piece.undoSerial = serial;
+
+        Vector v1, v2;
+        int numNecRoads;
+        switch (piece.getType())
+        {
+        case SOCPossiblePiece.ROAD:
+            SOCPossibleRoad pr = (SOCPossibleRoad) piece;
+            v1 = pr.getNecessaryRoads();
+            v2 = pr.getNewPossibilities();
+            numNecRoads = pr.getNumberOfNecessaryRoads();
+            break;
+
+        case SOCPossiblePiece.SETTLEMENT:
+            SOCPossibleSettlement ps = (SOCPossibleSettlement) piece;
+            v1 = ps.getNecessaryRoads();
+            v2 = ps.getConflicts();
+            numNecRoads = ps.getNumberOfNecessaryRoads();
+            break;
+
+        default:
+            return;  // trials don't change any other kind of piece
+        }
+
+        if (numPieces == pieces.length)
+        {
+            SOCPossiblePiece[] p = new SOCPossiblePiece[numPieces * 2];
+            System.arraycopy(pieces, 0, p, 0, numPieces);
+            pieces = p;
+            int[] st = new int[numPieces * 2 * 4];
+            System.arraycopy(pieceState, 0, st, 0, numPieces * 4);
+            pieceState = st;
+        }
+        final int n1 = v1.size(), n2 = v2.size();
+        if (numElements + n1 + n2 > elements.length)
+        {
+            Object[] e = new Object[Math.max(elements.length * 2, numElements + n1 + n2)];
+            System.arraycopy(elements, 0, e, 0, numElements);
+            elements = e;
+        }
+
+        final int i = numPieces * 4;
+        pieceState[i] = numNecRoads;
+        pieceState[i + 1] = piece.hasBeenExpanded ? 1 : 0;
+        pieceState[i + 2] = n1;
+        pieceState[i + 3] = n2;
+        pieces[numPieces++] = piece;
+        for (int j = 0; j < n1; j++)
+            elements[numElements++] = v1.elementAt(j);
+        for (int j = 0; j < n2; j++)
+            elements[numElements++] = v2.elementAt(j);
+    }
+
+    /**
+     * Log a change to one of the trackers' possible piece maps.
+     *
+     * @param map  the map
+     * @param key  the key put or removed
+     * @param oldValue  the key's value before the change, or null if it wasn't in the map
+     */
+    void mapChanged(TreeMap map, Object key, Object oldValue)
+    {
+        if (numMapChanges + 3 > mapChanges.length)
+        {
+            Object[] m = new Object[mapChanges.length * 2];
+            System.arraycopy(mapChanges, 0, m, 0, numMapChanges);
+            mapChanges = m;
+        }
+        mapChanges[numMapChanges++] = map;
+        mapChanges[numMapChanges++] = key;
+        mapChanges[numMapChanges++] = oldValue;
+    }
+
+    /**
+     * End the trial and undo all of its changes to the trackers.
+     *
+     * @throws IllegalStateException if no trial is in progress
+     */
+    public void rollback()
+    {
+        if (serial == 0)
+            throw new IllegalStateException("no trial in progress");
+
+        // map changes, latest first
+        for (int i = numMapChanges - 3; i >= 0; i -= 3)
+        {
+            TreeMap map = (TreeMap) mapChanges[i];
+            if (mapChanges[i + 2] == null)
+                map.remove(mapChanges[i + 1]);
+            else
+                map.put(mapChanges[i + 1], mapChanges[i + 2]);
+        }
+        Arrays.fill(mapChanges, 0, numMapChanges, null);
+        numMapChanges = 0;
+
+        int e = 0;
+        for (int p = 0; p < numPieces; p++)
+        {
+            final SOCPossiblePiece piece = pieces[p];
+            final int i = p * 4;
+            Vector v1, v2;
+            if (piece.getType() == SOCPossiblePiece.ROAD)
+            {
+                SOCPossibleRoad pr = (SOCPossibleRoad) piece;
+                pr.setNumberOfNecessaryRoads(pieceState[i]);
+                v1 = pr.getNecessaryRoads();
+                v2 = pr.getNewPossibilities();
+            }
+            else
+            {
+                SOCPossibleSettlement ps = (SOCPossibleSettlement) piece;
+                ps.setNumberOfNecessaryRoads(pieceState[i]);
+                v1 = ps.getNecessaryRoads();
+                v2 = ps.getConflicts();
+            }
+            piece.hasBeenExpanded = (pieceState[i + 1] != 0);
+            v1.removeAllElements();
+            for (int j = pieceState[i + 2]; j > 0; j--)
+                v1.addElement(elements[e++]);
+            v2.removeAllElements();
+            for (int j = pieceState[i + 3]; j > 0; j--)
+                v2.addElement(elements[e++]);
+            pieces[p] = null;
+        }
+        Arrays.fill(elements, 0, numElements, null);
+        numElements = 0;
+        numPieces = 0;
+
+        for (int t = 0; t < numTrackers; t++)
+        {
+            SOCPlayerTracker tracker = trackers[t];
+            final int i = t * 7;
+            tracker.longestRoadETA = trackerState[i];
+            tracker.roadsToGo = trackerState[i + 1];
+            tracker.largestArmyETA = trackerState[i + 2];
+            tracker.knightsToBuy = trackerState[i + 3];
+            tracker.winGameETA = trackerState[i + 4];
+            tracker.needLR = (trackerState[i + 5] != 0);
+            tracker.needLA = (trackerState[i + 6] != 0);
+            tracker.undoLog = null;
+            trackers[t] = null;
+        }
+        numTrackers = 0;
+        serial = 0;
+    }
+
+}
@@ -97,6 +97,12 @@ public abstract class SOCPossiblePiece implements Serializable
      */
     protected boolean hasBeenExpanded;
 
+    /**
+     * serial number of the {@link SOCPlayerTrackerUndoLog} trial
+     * which last saved this piece's state, so it's saved only once per trial
+     */
+    transient int undoSerial;
+
     /**
      * @return  the type of piece
      */
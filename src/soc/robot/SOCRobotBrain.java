@@ -162,6 +162,12 @@ public abstract class SOCRobotBrain<DM extends SOCRobotDM<BP>, N extends SOCRobo
      */
     protected HashMap<Integer, SOCPlayerTracker> playerTrackers;
 
+    /**
+     * answers remembered by this brain's building speed estimators,
+     * which keep asking the same questions; see {@link SOCBuildingSpeedMemo}
+     */
+    protected final SOCBuildingSpeedCache estimateCache = new SOCBuildingSpeedCache();
+
     /**
      * This is our current building plan, a stack of {@link SOCPossiblePiece}.
      */
@@ -1072,28 +1078,7 @@ public abstract class SOCRobotBrain<DM extends SOCRobotDM<BP>, N extends SOCRobo
                         break;
 
                     case SOCMessage.RESOURCECOUNT:
-                        {
-                        SOCPlayer pl = game.getPlayer(((SOCResourceCount) mes).getPlayerNumber());
-
-                        if (((SOCResourceCount) mes).getCount() != pl.getResources().getTotal())
-                        {
-                            SOCResourceSet rsrcs = pl.getResources();
-
-                            if (D.ebugOn)
-                            {
-                                client.sendText(game, ">>> RESOURCE COUNT ERROR FOR PLAYER " + pl.getPlayerNumber() + ": " + ((SOCResourceCount) mes).getCount() + " != " + rsrcs.getTotal());
-                            }
-
-                            //
-                            //  fix it
-                            //
-                            if (pl.getPlayerNumber() != ourPN)
-                            {
-                                rsrcs.clear();
-                                rsrcs.setAmount(((SOCResourceCount) mes).getCount(), SOCResourceConstants.UNKNOWN);
-                            }
-                        }
-                        }
+                        handleRESOURCECOUNT((SOCResourceCount) mes);
                         break;
 
                     case SOCMessage.DICERESULT:
@@ -1730,6 +1715,34 @@ public abstract class SOCRobotBrain<DM extends SOCRobotDM<BP>, N extends SOCRobo
 		
 	}
 	/**
+     * We need this method to override it in children classes.
+     * If the server's count of a player's resources differs from ours, the opponent's hand is replaced by that many unknown resources.
+     * @param mes
+     */
+    protected void handleRESOURCECOUNT(SOCResourceCount mes)
+    {
+        SOCPlayer pl = game.getPlayer(mes.getPlayerNumber());
+
+        if (mes.getCount() != pl.getResources().getTotal())
+        {
+            SOCResourceSet rsrcs = pl.getResources();
+
+            if (D.ebugOn)
+            {
+                client.sendText(game, ">>> RESOURCE COUNT ERROR FOR PLAYER " + pl.getPlayerNumber() + ": " + mes.getCount() + " != " + rsrcs.getTotal());
+            }
+
+            //
+            //  fix it
+            //
+            if (pl.getPlayerNumber() != ourPlayerData.getPlayerNumber())
+            {
+                rsrcs.clear();
+                rsrcs.setAmount(mes.getCount(), SOCResourceConstants.UNKNOWN);
+            }
+        }
+    }
+	/**
      * We need this method to override it in children classes. 
      * All it does is to move the robber on the board inside the game object and to reset the moveRobberOnSeven flag.
      * @param mes
@@ -4205,6 +4218,14 @@ public abstract class SOCRobotBrain<DM extends SOCRobotDM<BP>, N extends SOCRobo
     {
         return ourPlayerTracker;
     }	
+
+    /**
+     * @return the answers remembered by this brain's building speed estimators
+     */
+    public SOCBuildingSpeedCache getEstimateCache()
+    {
+        return estimateCache;
+    }
 	
     // Functions which must be defined by an instantiating subclass
     
@@ -4434,7 +4455,7 @@ public abstract class SOCRobotBrain<DM extends SOCRobotDM<BP>, N extends SOCRobo
             boolean[] portFlags = p.getPortFlags();
             
 			//in here calculate the etb's/etw's for the player and include in the egsr (all etb's are from nothing; maybe I should also measure from now?)
-	        SOCBuildingSpeedEstimate estimator = new SOCBuildingSpeedFast();//always use the fast estimator;
+	        SOCBuildingSpeedEstimate estimator = new SOCBuildingSpeedMemo(estimateCache);//always use the fast estimator;
 	        estimator.recalculateEstimates(playerNumbers);
 	        int[] speeds = estimator.getEstimatesFromNothingFast(portFlags);
 		    int avg = 0;
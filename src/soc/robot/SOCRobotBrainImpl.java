@@ -72,12 +72,12 @@ public class SOCRobotBrainImpl extends SOCRobotBrain<SOCRobotDMImpl, SOCRobotNeg
 
 	@Override
     public SOCBuildingSpeedEstimate getEstimator() {
-        return new SOCBuildingSpeedFast();
+        return new SOCBuildingSpeedMemo(estimateCache);
     }
     
 	@Override
     public SOCBuildingSpeedEstimate getEstimator(SOCPlayerNumbers numbers) {
-        return new SOCBuildingSpeedFast(numbers);
+        return new SOCBuildingSpeedMemo(numbers, estimateCache);
     }
 	
 	@Override
@@ -110,7 +110,7 @@ import soc.server.genericServer.LocalStringServerSocket;
 import soc.server.genericServer.Server;
 import soc.util.CappedQueue;
 import soc.util.CutoffExceededException;
-import soc.util.DeepCopy;
+import soc.util.SnapshotStore;
 import soc.util.SOCRobotParameters;
 import soc.util.Version;
 import supervised.main.BayesianSupervisedLearner;
@@ -365,6 +365,7 @@ public class SOCRobotClient extends SOCDisplaylessPlayerClient
             else
             {
                 sLocal = LocalStringServerSocket.connectTo(strSocketName);
+                sLocal.setAcceptsObjects(true);
             }               
             connected = true;
             reader = new Thread(this);
@@ -407,6 +408,7 @@ public class SOCRobotClient extends SOCDisplaylessPlayerClient
             {
                 sLocal.disconnect();
                 sLocal = LocalStringServerSocket.connectTo(strSocketName);
+                sLocal.setAcceptsObjects(true);
             }
             connected = true;
             reader = new Thread(this);
@@ -921,10 +923,27 @@ public class SOCRobotClient extends SOCDisplaylessPlayerClient
 		player.setRobotFlagUnsafe(mes.getFlag());
     }
     
+    /**
+     * Keeps a robot's belief model saved for GAMECOPY as a copy.
+     */
+    private static final SnapshotStore.Codec BELIEF_CODEC = new SnapshotStore.Codec()
+    {
+        public Object freeze(Object o)
+        {
+            return ((CatanFactoredBelief) o).copy();
+        }
+
+        public Object thaw(Object frozen)
+        {
+            return ((CatanFactoredBelief) frozen).copy();
+        }
+    };
+
     /**
      * Loads a previous game.
      * Reads the saved game and robot states (i.e. {@link SOCGame}, {@link SOCPlayer},an array of {@link SOCPlayerTracker}, 
-     * {@link StacRobotDeclarativeMemory} and{@link StacRobotBrainInfo}). Then it follows through these steps(in this order):
+     * {@link StacRobotDeclarativeMemory} and{@link StacRobotBrainInfo}) from the {@link SnapshotStore},
+     * or from the files of an earlier run. Then it follows through these steps(in this order):
      * <ul>
      * 	<li>Suspends the brain;
      * 	<li>Updates the new game obj with the old game name and old player names;
@@ -949,7 +968,7 @@ public class SOCRobotClient extends SOCDisplaylessPlayerClient
      */
     private void handleLOADGAME(SOCLoadGame mes) {
         //get some required info from old state
-        String prefix = mes.getFolder() + "/"; //the reason for doing this here is that when calling getDirectory the "/" is not added
+        String folder = mes.getFolder();
     	String brainType = this.robotBrains.get(mes.getGame()).getClass().getName(); //get the brain type
     	SOCRobotBrain rb = (SOCRobotBrain) this.robotBrains.get(mes.getGame()); //get a reference to the brain
     	SOCGame originalGame = (SOCGame) games.get(mes.getGame()); //get a reference to the old game obj in order to get the right player names
@@ -977,8 +996,7 @@ public class SOCRobotClient extends SOCDisplaylessPlayerClient
 			}
         }
     	
-    	String fileName = prefix + pn + "_" + SOCGame.class.getName();
-    	SOCGame gameClone = (SOCGame) DeepCopy.readFromFile(fileName); //read the SOCGame object
+    	SOCGame gameClone = (SOCGame) SnapshotStore.restore(folder, "" + pn, SOCGame.class, SnapshotStore.GAME); //read the SOCGame object
     	gameClone.setName(originalGame.getName()); //keep the old name for safety reasons
     	gameClone.updatePlayerNames(originalGame.getPlayerNames()); //keep the old player names
     	gameClone.resetTimes();
@@ -996,12 +1014,10 @@ public class SOCRobotClient extends SOCDisplaylessPlayerClient
     	this.games.remove(originalGame.getName());
 		this.games.put(gameClone.getName(), gameClone);
 		
-    	fileName = prefix + pn + "_" + ArrayList.class.getName();
-    	ArrayList trackersList = (ArrayList) DeepCopy.readFromFile(fileName);  //read the SOCPlayerTrackers for this player
+    	ArrayList trackersList = (ArrayList) SnapshotStore.restore(folder, "" + pn, ArrayList.class, SOCPlayerTracker.LIST_CODEC);  //read the SOCPlayerTrackers for this player
     	if (trackersList == null){//logic for handling the case one human player is replaced by a robot
     		for(int i=0; i < gameClone.maxPlayers; i++){
-    			fileName = prefix + i + "_" + ArrayList.class.getName();
-    			trackersList = (ArrayList) DeepCopy.readFromFile(fileName);
+    			trackersList = (ArrayList) SnapshotStore.restore(folder, "" + i, ArrayList.class, SOCPlayerTracker.LIST_CODEC);
     			if(trackersList != null)
     				break;
     		}
@@ -1077,8 +1093,7 @@ public class SOCRobotClient extends SOCDisplaylessPlayerClient
     		}
     	}
 		rb.game = gameClone; //for SOCRobotBrain we need to reference to the correct game object inside the brain
-    	fileName = prefix + pn + "_" + StacRobotBrainInfo.class.getName();
-    	StacRobotBrainInfo brainInfoClone = (StacRobotBrainInfo) DeepCopy.readFromFile(fileName); //read the brain info bytes
+    	StacRobotBrainInfo brainInfoClone = (StacRobotBrainInfo) SnapshotStore.restore(folder, "" + pn, StacRobotBrainInfo.class, SnapshotStore.SERIALIZED); //read the brain info bytes
     	if(brainInfoClone != null){ //by ignoring this step I expect this loading mechanism to work only in a fraction of cases for now;
     		brainInfoClone.waitingForGameState = false; //there is absolutely no way we were waiting for the game state when saving  (how could this happen??)
     	}else{
@@ -1090,16 +1105,14 @@ public class SOCRobotClient extends SOCDisplaylessPlayerClient
     	//update dialogue mgr and declarative memory only if it is a Stac or a StacRandom brain type
     	if(brainType.equals(StacRobotBrain.class.getName()) || brainType.equals(StacRobotBrainRandom.class.getName())
     			|| brainType.equals(StacRobotBrainFlatMCTS.class.getName()) || brainType.equals(MCTSRobotBrain.class.getName())){
-			fileName = prefix + pn + "_" + StacRobotDeclarativeMemory.class.getName();
-	    	StacRobotDeclarativeMemory memoryClone = (StacRobotDeclarativeMemory) DeepCopy.readFromFile(fileName);  //read the DeclarativeMemory object
+	    	StacRobotDeclarativeMemory memoryClone = (StacRobotDeclarativeMemory) SnapshotStore.restore(folder, "" + pn, StacRobotDeclarativeMemory.class, SnapshotStore.SERIALIZED);  //read the DeclarativeMemory object
 	    	if(memoryClone != null)
 	    		((StacRobotBrain) rb).getMemory().partialUpdateFromMemory(memoryClone);//update the memory's info
 	    	else{
 	    		((StacRobotBrain) rb).getMemory().reinitMemory();//try and reinit the memory
 	    	}
 	    	if(brainType.equals(MCTSRobotBrain.class.getName())) {
-	    		fileName = prefix + pn + "_" + CatanFactoredBelief.class.getName();
-	    		CatanFactoredBelief beliefClone = (CatanFactoredBelief) DeepCopy.readFromFile(fileName);
+	    		CatanFactoredBelief beliefClone = (CatanFactoredBelief) SnapshotStore.restore(folder, "" + pn, CatanFactoredBelief.class, BELIEF_CODEC);
 		    	if(beliefClone != null)
 		    		((MCTSRobotBrain) rb).setBelief(beliefClone);//update the memory's info
 		    	else
@@ -1194,7 +1207,8 @@ public class SOCRobotClient extends SOCDisplaylessPlayerClient
 //		System.out.println("Robot Client " + pn + ": received gameCopy request"); //for quick debugging
 	}
 	/**
-	 * Contains the actual logic for handling the game saving, but without the check for the player number and without suspending the brain
+	 * Contains the actual logic for handling the game saving, but without the check for the player number and without suspending the brain.
+	 * The state is kept in the {@link SnapshotStore}; a save asked for by a player's client (player number -1) is also written to files.
 	 * @param mes the information regarding the folder locations
 	 */
 	public void unsynckedGameCopy(SOCGameCopy mes){
@@ -1213,27 +1227,29 @@ public class SOCRobotClient extends SOCDisplaylessPlayerClient
 			pt.recalcLargestArmyETA();pt.recalcLongestRoadETA();pt.recalcWinGameETA(); //for storing the ETAs for the special loading case
 			list.add(pt);
 		}
-		DeepCopy.copyToFile(list, "" + pn, mes.getFolder()); //write the object to file
+		final String folder = mes.getFolder();
+		final boolean toDisk = mes.getPlayerNumber() < 0;
+		SnapshotStore.save(folder, "" + pn, list, SOCPlayerTracker.LIST_CODEC, toDisk); //keep a copy of the object
 		//if stac brain type clone both the brainInfo container and the declarative memory
 		if(brainType.equals(StacRobotBrain.class.getName()) || brainType.equals(StacRobotBrainRandom.class.getName())
 				|| brainType.equals(StacRobotBrainFlatMCTS.class.getName()) || brainType.equals(MCTSRobotBrain.class.getName())){
 			StacRobotBrainInfo brainInfo = rb.getInfo();
-			DeepCopy.copyToFile(brainInfo, "" + pn, mes.getFolder());
+			SnapshotStore.save(folder, "" + pn, brainInfo, SnapshotStore.SERIALIZED, toDisk);
 			StacRobotDeclarativeMemory memory = ((StacRobotBrain) rb).getMemory();
-			DeepCopy.copyToFile(memory, "" + pn, mes.getFolder());
+			SnapshotStore.save(folder, "" + pn, memory, SnapshotStore.SERIALIZED, toDisk);
 			if(brainType.equals(MCTSRobotBrain.class.getName())) {
 				CatanFactoredBelief belief = ((MCTSRobotBrain) rb).getBelief();
 				if(belief != null)
-					DeepCopy.copyToFile(belief, "" + pn, mes.getFolder());
+					SnapshotStore.save(folder, "" + pn, belief, BELIEF_CODEC, toDisk);
 			}
 		}
 		else{
 			//else just the brainInfo container
 			StacRobotBrainInfo brainInfo = rb.getInfo();
-			DeepCopy.copyToFile(brainInfo, "" + pn, mes.getFolder());
+			SnapshotStore.save(folder, "" + pn, brainInfo, SnapshotStore.SERIALIZED, toDisk);
 		}
 		//clone the SOCGame object last so we can check that the saving procedure is finished
-		DeepCopy.copyToFile(game, "" + pn, mes.getFolder()); //write the game object to file
+		SnapshotStore.save(folder, "" + pn, game, SnapshotStore.GAME, toDisk); //keep a copy of the game object
 	} 
 	
 	//---MD end of handling methods for Save/Load function
@@ -101,6 +101,11 @@ public abstract class SOCRobotDM<BP extends SOCBuildPlan> {
     protected SOCPossibleCity favoriteCity;
     protected SOCPossibleCard possibleCard;
     protected int strategy;
+
+    /*
+     * used for trying out pieces on the player trackers in place, instead of on copies
+     */
+    protected SOCPlayerTrackerUndoLog undoLog = new SOCPlayerTrackerUndoLog();
     
     /*
      * used for describing the depth of the search (i.e. fast is 1-ply search, smart is 2-ply)
@@ -0,0 +1,211 @@
+package soc.robot;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import soc.game.SOCBoard;
+import soc.game.SOCCity;
+import soc.game.SOCGame;
+import soc.game.SOCPlayer;
+import soc.game.SOCPlayingPiece;
+import soc.game.SOCResourceConstants;
+import soc.game.SOCRoad;
+import soc.game.SOCSettlement;
+import soc.message.SOCPutPiece;
+import soc.robot.stac.StacRobotDummyBrain;
+import soc.util.CappedQueue;
+import soc.util.SOCRobotParameters;
+
+/**
+ * Measures one full {@link SOCRobotDMImpl#planStuff()} pass with the smart strategy,
+ * which tries each of our possible pieces on the player trackers to see how it changes
+ * everyone's win game ETA.
+ * The positions are random games of 4 players: the initial placement and then
+ * a number of roads, settlements and cities, tracked as a robot brain would.
+ *<P>
+ * Reports passes per second and, if the JVM can measure it, bytes allocated per pass.
+ *<P>
+ * Usage: SOCRobotDMBenchmark [positions] [passesPerRound] [rounds] [seed]
+ */
+public class SOCRobotDMBenchmark
+{
+    /** Pieces placed after the initial placement, over all players */
+    private static final int EXTRA_PIECES = 28;
+
+    /** Don't let anyone get closer than this to winning, so the random game doesn't end */
+    private static final int MAX_VP = 7;
+
+    /**
+     * @return the bytes allocated so far by the current thread, or -1 if the JVM can't tell
+     */
+    private static long allocatedBytes()
+    {
+        final ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+        if (! (mx instanceof com.sun.management.ThreadMXBean))
+            return -1;
+        return ((com.sun.management.ThreadMXBean) mx).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Put a piece in the game and run it through the brain's player trackers.
+     */
+    private static void putPiece(SOCGame ga, StacRobotDummyBrain brain, SOCPlayingPiece pp)
+    {
+        ga.putPiece(pp);
+        brain.handlePUTPIECE_updateTrackers
+            (new SOCPutPiece(ga.getName(), pp.getPlayer().getPlayerNumber(), pp.getType(), pp.getCoordinates()));
+    }
+
+    /**
+     * @param city  if true, pick a potential city instead of a potential settlement
+     * @return a random potential settlement or city node for <tt>pl</tt>, or -1 if none
+     */
+    private static int pickNode(SOCPlayer pl, SOCBoard board, Random r, boolean city)
+    {
+        List<Integer> nodes = new ArrayList<Integer>();
+        for (int node = board.getMinNode(); node <= SOCBoard.MAXNODE; node++)
+            if (city ? pl.isPotentialCity(node) : pl.isPotentialSettlement(node))
+                nodes.add(Integer.valueOf(node));
+        return nodes.isEmpty() ? -1 : nodes.get(r.nextInt(nodes.size())).intValue();
+    }
+
+    /**
+     * @return a random potential road edge for <tt>pl</tt>, or -1 if none
+     */
+    private static int pickEdge(SOCPlayer pl, SOCBoard board, Random r)
+    {
+        List<Integer> edges = new ArrayList<Integer>();
+        for (int edge = board.getMinEdge(); edge <= SOCBoard.MAXEDGE_V1; edge++)
+            if (pl.isPotentialRoad(edge))
+                edges.add(Integer.valueOf(edge));
+        return edges.isEmpty() ? -1 : edges.get(r.nextInt(edges.size())).intValue();
+    }
+
+    /**
+     * Make a random position for player 0 to plan in: a 4-player game after the initial placement
+     * and {@link #EXTRA_PIECES} more pieces, with player 0 to move and holding a few resources.
+     *
+     * @param name  the game name
+     * @param r  chooses the pieces
+     * @return a smart strategy decision maker for player 0, with its brain's player trackers up to date
+     */
+    static SOCRobotDMImpl newPosition(String name, Random r)
+    {
+        SOCGame ga = new SOCGame(name);
+        for (int pn = 0; pn < 4; pn++)
+            ga.addPlayer("player" + pn, pn);
+        ga.startGame(r.nextInt(4), false);
+
+        // parameters as in SOCServer.ROBOT_PARAMS_SMARTER
+        StacRobotDummyBrain brain = new StacRobotDummyBrain
+            (new SOCRobotClient(null, "bench", "player0", "", null),
+             new SOCRobotParameters(120, 35, 0.13f, 1.0f, 1.0f, 3.0f, 1.0f, SOCRobotDM.SMART_STRATEGY, 1),
+             ga, new CappedQueue(), 0);
+
+        final SOCBoard board = ga.getBoard();
+        while (ga.getGameState() < SOCGame.PLAY)
+        {
+            final SOCPlayer pl = ga.getPlayer(ga.getCurrentPlayerNumber());
+            if ((ga.getGameState() == SOCGame.START1A) || (ga.getGameState() == SOCGame.START2A))
+                putPiece(ga, brain, new SOCSettlement(pl, pickNode(pl, board, r, false), board));
+            else
+                putPiece(ga, brain, new SOCRoad(pl, pickEdge(pl, board, r), board));
+        }
+
+        ga.setGameState(SOCGame.PLAY1);
+        for (int i = 0; i < EXTRA_PIECES; i++)
+        {
+            final SOCPlayer pl = ga.getPlayer(r.nextInt(4));
+            final int n = r.nextInt(10);
+            if ((n < 2) && (pl.getTotalVP() < MAX_VP) && (pl.getNumPieces(SOCPlayingPiece.CITY) > 0))
+            {
+                final int node = pickNode(pl, board, r, true);
+                if (node != -1)
+                {
+                    putPiece(ga, brain, new SOCCity(pl, node, board));
+                    continue;
+                }
+            }
+            if ((n < 5) && (pl.getTotalVP() < MAX_VP) && (pl.getNumPieces(SOCPlayingPiece.SETTLEMENT) > 0))
+            {
+                final int node = pickNode(pl, board, r, false);
+                if (node != -1)
+                {
+                    putPiece(ga, brain, new SOCSettlement(pl, node, board));
+                    continue;
+                }
+            }
+            final int edge = pickEdge(pl, board, r);
+            if ((edge != -1) && (pl.getNumPieces(SOCPlayingPiece.ROAD) > 0))
+                putPiece(ga, brain, new SOCRoad(pl, edge, board));
+        }
+
+        ga.setCurrentPlayerNumber(0);
+        final SOCPlayer ourPlayer = ga.getPlayer(0);
+        for (int rtype = SOCResourceConstants.CLAY; rtype <= SOCResourceConstants.WOOD; rtype++)
+            ourPlayer.getResources().add(r.nextInt(3), rtype);
+
+        // the dummy brain's own tracker isn't updated, so plan with player 0's from the tracker map
+        final HashMap<Integer, SOCPlayerTracker> trackers = brain.getPlayerTrackers();
+        return new SOCRobotDMImpl(brain.getRobotParameters(), trackers, trackers.get(Integer.valueOf(0)),
+            ourPlayer, new SOCBuildPlanStack(), SOCRobotDM.SMART_STRATEGY);
+    }
+
+    /**
+     * Plan in each of the positions in turn, <tt>passes</tt> times in all.
+     *
+     * @param stats  set to { passes per second, bytes allocated per pass or -1 }
+     * @return the number of pieces in all the plans made, which is reported so that planning can't be optimised away
+     */
+    private static int measure(final List<SOCRobotDMImpl> positions, final int passes, double[] stats)
+    {
+        int sum = 0;
+        final long bytes = allocatedBytes();
+        final long start = System.nanoTime();
+        for (int i = 0; i < passes; i++)
+        {
+            final SOCRobotDMImpl dm = positions.get(i % positions.size());
+            dm.buildingPlan.clear();
+            dm.planStuff();
+            sum += dm.buildingPlan.size();
+        }
+        final long elapsed = System.nanoTime() - start;
+
+        stats[0] = passes / (elapsed / 1e9);
+        stats[1] = (bytes == -1) ? -1 : ((double) (allocatedBytes() - bytes)) / passes;
+        return sum;
+    }
+
+    public static void main(String[] args)
+    {
+        final int numPositions = (args.length > 0) ? Integer.parseInt(args[0]) : 20;
+        final int passes = (args.length > 1) ? Integer.parseInt(args[1]) : 200;
+        final int rounds = (args.length > 2) ? Integer.parseInt(args[2]) : 5;
+        final long seed = (args.length > 3) ? Long.parseLong(args[3]) : 42;
+
+        final Random r = new Random(seed);
+        List<SOCRobotDMImpl> positions = new ArrayList<SOCRobotDMImpl>();
+        for (int i = 0; i < numPositions; i++)
+            positions.add(newPosition("dmbench~" + i, r));
+
+        System.out.println("Positions: " + numPositions + ", planStuff passes per round: " + passes);
+        final double[] stats = new double[2];
+        // the first round warms up the JIT and is not reported
+        for (int rnd = 0; rnd <= rounds; rnd++)
+        {
+            final int planned = measure(positions, passes, stats);
+            if (rnd == 0)
+                continue;
+            StringBuilder sb = new StringBuilder(String.format("Round %d: %.1f passes/s", rnd, stats[0]));
+            if (stats[1] >= 0)
+                sb.append(String.format(", %.0f KB allocated per pass", stats[1] / 1024));
+            sb.append(", ").append(planned).append(" pieces planned");
+            System.out.println(sb);
+        }
+    }
+
+}
@@ -268,22 +268,27 @@ public class SOCRobotDMImpl extends SOCRobotDM<SOCBuildPlanStack> {
                 //
                 SOCRoad tmpRoad = new SOCRoad(player, favoriteRoad.getCoordinates(), null);
 
-                HashMap trackersCopy = SOCPlayerTracker.tryPutPiece(tmpRoad, game, playerTrackers);
-                SOCPlayerTracker.updateWinGameETAs(trackersCopy);
+                SOCPlayerTracker.tryPutPiece(tmpRoad, game, playerTrackers, undoLog);
+                try {
+                    SOCPlayerTracker.updateWinGameETAs(playerTrackers);
 
-                SOCPlayerTracker ourPlayerTrackerCopy = (SOCPlayerTracker)trackersCopy.get(Integer.valueOf(player.getPlayerNumber()));
+                    SOCPlayerTracker ourPlayerTrackerAfter = (SOCPlayerTracker)playerTrackers.get(Integer.valueOf(player.getPlayerNumber()));
 
-                int ourCurrentWGETACopy = ourPlayerTrackerCopy.getWinGameETA();
-                D.ebugPrintlnINFO("ourCurrentWGETACopy = "+ourCurrentWGETACopy);
+                    int ourCurrentWGETACopy = ourPlayerTrackerAfter.getWinGameETA();
+                    D.ebugPrintlnINFO("ourCurrentWGETACopy = "+ourCurrentWGETACopy);
 
-                int leadersCurrentWGETACopy = ourCurrentWGETACopy;
-                Iterator trackersCopyIter = trackersCopy.values().iterator();
-                while (trackersCopyIter.hasNext()) {
-                    SOCPlayerTracker tracker = (SOCPlayerTracker)trackersCopyIter.next();
-                    int wgeta = tracker.getWinGameETA();
-                    if (wgeta < leadersCurrentWGETACopy) {
-                        leadersCurrentWGETACopy = wgeta;
+                    int leadersCurrentWGETACopy = ourCurrentWGETACopy;
+                    Iterator trackersAfterIter = playerTrackers.values().iterator();
+                    while (trackersAfterIter.hasNext()) {
+                        SOCPlayerTracker tracker = (SOCPlayerTracker)trackersAfterIter.next();
+                        int wgeta = tracker.getWinGameETA();
+                        if (wgeta < leadersCurrentWGETACopy) {
+                            leadersCurrentWGETACopy = wgeta;
+                        }
                     }
+                } finally {
+                    // done with the trial: scoring the new possibilities needs the trackers as they were
+                    SOCPlayerTracker.undoTryPutPiece(tmpRoad, game, undoLog);
                 }
 
                 Enumeration newPosEnum = favoriteRoad.getNewPossibilities().elements();
@@ -354,8 +359,6 @@ public class SOCRobotDMImpl extends SOCRobotDM<SOCBuildPlanStack> {
                     }
                 }
 
-                SOCPlayerTracker.undoTryPutPiece(tmpRoad, game);
-
                 if (!buildingPlan.empty()) {
                     SOCPossiblePiece planPeek = (SOCPossiblePiece)buildingPlan.peek();
                     if ((planPeek == null) ||
@@ -1303,65 +1306,60 @@ public class SOCRobotDMImpl extends SOCRobotDM<SOCBuildPlanStack> {
         /// pick a city that can be built now
         ///
         if (player.getNumPieces(SOCPlayingPiece.CITY) > 0) {
-            HashMap trackersCopy = SOCPlayerTracker.copyPlayerTrackers(playerTrackers);
-            SOCPlayerTracker ourTrackerCopy = (SOCPlayerTracker)trackersCopy.get(Integer.valueOf(player.getPlayerNumber()));
+            SOCPlayerTracker ourTrackerAfter = (SOCPlayerTracker)playerTrackers.get(Integer.valueOf(player.getPlayerNumber()));
             int originalWGETAs[] = new int[game.maxPlayers];	 
-            int WGETAdiffs[] = new int[game.maxPlayers];	 
-            Vector leaders = new Vector();
-            int bestWGETA = 1000;
             // int bonus = 0;
 
-            Iterator posCitiesIter = ourPlayerTracker.getPossibleCities().values().iterator();
-            while (posCitiesIter.hasNext()) {
-                SOCPossibleCity posCity = (SOCPossibleCity)posCitiesIter.next();
+            //
+            // the win game ETAs before placing a city are the same for each city,
+            // so work them out just once
+            //
+            if ((brain != null) && (brain.getDRecorder().isOn())) {
+                brain.getDRecorder().suspend();
+            }
+            Vector leaders;
+            undoLog.begin(playerTrackers);
+            try {
+                SOCPlayerTracker.updateWinGameETAs(playerTrackers);
+                leaders = findLeaders(playerTrackers, originalWGETAs);
+            } finally {
+                undoLog.rollback();
+            }
+            if ((brain != null) && (brain.getDRecorder().isOn())) {
+                brain.getDRecorder().resume();
+            }
+
+            // the trials change the possible cities, so go through a snapshot of them
+            Object[] posCities = ourPlayerTracker.getPossibleCities().values().toArray();
+            for (int i = 0; i < posCities.length; i++) {
+                SOCPossibleCity posCity = (SOCPossibleCity)posCities[i];
                 if ((brain != null) && (brain.getDRecorder().isOn())) {
                     brain.getDRecorder().startRecording("CITY"+posCity.getCoordinates());
                     brain.getDRecorder().record("Estimate value of city at "+game.getBoard().nodeCoordToString(posCity.getCoordinates()));
                 } 
 
                 //
-                // see how building this piece impacts our winETA
-                //
-                leaders.clear();
-                if ((brain != null) && (brain.getDRecorder().isOn())) {
-                    brain.getDRecorder().suspend();
-                }
-                SOCPlayerTracker.updateWinGameETAs(trackersCopy);
-                Iterator trackersBeforeIter = trackersCopy.values().iterator();
-                while (trackersBeforeIter.hasNext()) {
-                    SOCPlayerTracker trackerBefore = (SOCPlayerTracker)trackersBeforeIter.next();
-                    D.ebugPrintlnINFO("$$$ win game ETA for player "+trackerBefore.getPlayer().getPlayerNumber()+" = "+trackerBefore.getWinGameETA());
-                    originalWGETAs[trackerBefore.getPlayer().getPlayerNumber()] = trackerBefore.getWinGameETA();
-                    WGETAdiffs[trackerBefore.getPlayer().getPlayerNumber()] = trackerBefore.getWinGameETA();
-                    if (trackerBefore.getWinGameETA() < bestWGETA) {
-                        bestWGETA = trackerBefore.getWinGameETA();
-                        leaders.removeAllElements();
-                        leaders.addElement(trackerBefore);
-                    } else if (trackerBefore.getWinGameETA() == bestWGETA) {
-                        leaders.addElement(trackerBefore);
-                    }
-                }		
-                D.ebugPrintlnINFO("^^^^ bestWGETA = "+bestWGETA);
-                if ((brain != null) && (brain.getDRecorder().isOn())) {
-                    brain.getDRecorder().resume();
-                }
-                //
+                // see how building this piece impacts our winETA:
                 // place the city
                 //
                 SOCCity tmpCity = new SOCCity(player, posCity.getCoordinates(), null);
-                game.putTempPiece(tmpCity);
-
-                ourTrackerCopy.addOurNewCity(tmpCity);
+                float wgetaScore;
+                undoLog.begin(playerTrackers);
+                try {
+                    game.putTempPiece(tmpCity);
 
-                SOCPlayerTracker.updateWinGameETAs(trackersCopy);
+                    ourTrackerAfter.addOurNewCity(tmpCity);
 
-                float wgetaScore = calcWGETABonusAux(originalWGETAs, trackersCopy, leaders);
+                    SOCPlayerTracker.updateWinGameETAs(playerTrackers);
 
-                //
-                // remove the city
-                //
-                ourTrackerCopy.undoAddOurNewCity(posCity);
-                game.undoPutTempPiece(tmpCity);
+                    wgetaScore = calcWGETABonusAux(originalWGETAs, playerTrackers, leaders);
+                } finally {
+                    //
+                    // remove the city
+                    //
+                    undoLog.rollback();
+                    game.undoPutTempPiece(tmpCity);
+                }
 
                 D.ebugPrintlnINFO("*** ETA for city = "+buildingETAs[SOCBuildingSpeedEstimate.CITY]);
                 if ((brain != null) && (brain.getDRecorder().isOn())) {
@@ -1514,9 +1512,10 @@ public class SOCRobotDMImpl extends SOCRobotDM<SOCBuildPlanStack> {
 	    }
          */
 
-        Iterator posSetsIter = ourPlayerTracker.getPossibleSettlements().values().iterator();
-        while (posSetsIter.hasNext()) {
-            SOCPossibleSettlement posSet = (SOCPossibleSettlement)posSetsIter.next();
+        // the trials change the possible settlements, so go through a snapshot of them
+        Object[] posSets = ourPlayerTracker.getPossibleSettlements().values().toArray();
+        for (int i = 0; i < posSets.length; i++) {
+            SOCPossibleSettlement posSet = (SOCPossibleSettlement)posSets[i];
             D.ebugPrintlnINFO("*** scoring possible settlement at "+Integer.toHexString(posSet.getCoordinates()));
             if (!threatenedSettlements.contains(posSet)) {
                 threatenedSettlements.addElement(posSet);
@@ -1542,29 +1541,33 @@ public class SOCRobotDMImpl extends SOCRobotDM<SOCBuildPlanStack> {
                     brain.getDRecorder().record("Estimate value of settlement at "+board.nodeCoordToString(posSet.getCoordinates()));
                 } 
 
-                HashMap trackersCopy = SOCPlayerTracker.tryPutPiece(tmpSet, game, playerTrackers);
-                SOCPlayerTracker.updateWinGameETAs(trackersCopy);
-                float wgetaScore = calcWGETABonus(playerTrackers, trackersCopy);
-                D.ebugPrintlnINFO("***  wgetaScore = "+wgetaScore);
-
-                D.ebugPrintlnINFO("*** ETA for settlement = "+settlementETA);
-                if ((brain != null) && (brain.getDRecorder().isOn())) {
-                    brain.getDRecorder().record("ETA = "+settlementETA);
-                } 
+                int originalWGETAs[] = new int[game.maxPlayers];
+                Vector leaders = findLeaders(playerTrackers, originalWGETAs);
+                SOCPlayerTracker.tryPutPiece(tmpSet, game, playerTrackers, undoLog);
+                try {
+                    SOCPlayerTracker.updateWinGameETAs(playerTrackers);
+                    float wgetaScore = calcWGETABonusAux(originalWGETAs, playerTrackers, leaders);
+                    D.ebugPrintlnINFO("***  wgetaScore = "+wgetaScore);
 
-                float etaBonus = getETABonus(settlementETA, leadersCurrentWGETA, wgetaScore);
-                D.ebugPrintlnINFO("etaBonus = "+etaBonus);
+                    D.ebugPrintlnINFO("*** ETA for settlement = "+settlementETA);
+                    if ((brain != null) && (brain.getDRecorder().isOn())) {
+                        brain.getDRecorder().record("ETA = "+settlementETA);
+                    } 
 
-                //posSet.addToScore(wgetaScore);
-                posSet.addToScore(etaBonus);
+                    float etaBonus = getETABonus(settlementETA, leadersCurrentWGETA, wgetaScore);
+                    D.ebugPrintlnINFO("etaBonus = "+etaBonus);
 
-                if ((brain != null) && (brain.getDRecorder().isOn())) {
-                    brain.getDRecorder().record("WGETA score = "+df1.format(wgetaScore));
-                    brain.getDRecorder().record("Total settlement score = "+df1.format(etaBonus));
-                    brain.getDRecorder().stopRecording();
-                } 
+                    //posSet.addToScore(wgetaScore);
+                    posSet.addToScore(etaBonus);
 
-                SOCPlayerTracker.undoTryPutPiece(tmpSet, game);
+                    if ((brain != null) && (brain.getDRecorder().isOn())) {
+                        brain.getDRecorder().record("WGETA score = "+df1.format(wgetaScore));
+                        brain.getDRecorder().record("Total settlement score = "+df1.format(etaBonus));
+                        brain.getDRecorder().stopRecording();
+                    } 
+                } finally {
+                    SOCPlayerTracker.undoTryPutPiece(tmpSet, game, undoLog);
+                }
             }
         }
     } 
@@ -1585,7 +1588,6 @@ public class SOCRobotDMImpl extends SOCRobotDM<SOCBuildPlanStack> {
         D.ebugPrintlnINFO("ourCurrentWGETA = "+ourCurrentWGETA);
 
 
-        HashMap trackersCopy = null;
         SOCRoad tmpRoad1 = null;
 
         D.ebugPrintlnINFO("--- before [start] ---");
@@ -1601,55 +1603,59 @@ public class SOCRobotDMImpl extends SOCRobotDM<SOCBuildPlanStack> {
             D.ebugPrintlnINFO("crap in getWinGameETABonusForRoad - "+e);
         }
         tmpRoad1 = new SOCRoad(player, posRoad.getCoordinates(), null);
-        trackersCopy = SOCPlayerTracker.tryPutPiece(tmpRoad1, game, playerTrackers);
-        SOCPlayerTracker.updateWinGameETAs(trackersCopy);
-        float score = calcWGETABonus(playerTrackers, trackersCopy);
+        int originalWGETAs[] = new int[game.maxPlayers];
+        Vector leaders = findLeaders(playerTrackers, originalWGETAs);
+        float etaBonus;
+        SOCPlayerTracker.tryPutPiece(tmpRoad1, game, playerTrackers, undoLog);
+        try {
+            SOCPlayerTracker.updateWinGameETAs(playerTrackers);
+            float score = calcWGETABonusAux(originalWGETAs, playerTrackers, leaders);
 
-        if (!posRoad.getThreats().isEmpty()) {
-            score *= threatMultiplier;
-            D.ebugPrintlnINFO("***  (THREAT MULTIPLIER) score * "+threatMultiplier+" = "+score);
-        }
-        D.ebugPrintlnINFO("*** ETA for road = "+roadETA);
-        float etaBonus = getETABonus(roadETA, leadersCurrentWGETA, score);
-        D.ebugPrintlnINFO("$$$ score = "+score);
-        D.ebugPrintlnINFO("etaBonus = "+etaBonus);
-        posRoad.addToScore(etaBonus);
+            if (!posRoad.getThreats().isEmpty()) {
+                score *= threatMultiplier;
+                D.ebugPrintlnINFO("***  (THREAT MULTIPLIER) score * "+threatMultiplier+" = "+score);
+            }
+            D.ebugPrintlnINFO("*** ETA for road = "+roadETA);
+            etaBonus = getETABonus(roadETA, leadersCurrentWGETA, score);
+            D.ebugPrintlnINFO("$$$ score = "+score);
+            D.ebugPrintlnINFO("etaBonus = "+etaBonus);
+            posRoad.addToScore(etaBonus);
 
-        if ((brain != null) && (brain.getDRecorder().isOn())) {
-            brain.getDRecorder().record("ETA = "+roadETA);
-            brain.getDRecorder().record("WGETA Score = "+df1.format(score));
-            brain.getDRecorder().record("Total road score = "+df1.format(etaBonus));
-        } 
+            if ((brain != null) && (brain.getDRecorder().isOn())) {
+                brain.getDRecorder().record("ETA = "+roadETA);
+                brain.getDRecorder().record("WGETA Score = "+df1.format(score));
+                brain.getDRecorder().record("Total road score = "+df1.format(etaBonus));
+            } 
 
-        D.ebugPrintlnINFO("--- after [end] ---");
-        SOCPlayerTracker.undoTryPutPiece(tmpRoad1, game);
-        player.getResources().clear();
-        player.getResources().add(originalResources);
+            D.ebugPrintlnINFO("--- after [end] ---");
+        } finally {
+            SOCPlayerTracker.undoTryPutPiece(tmpRoad1, game, undoLog);
+            player.getResources().clear();
+            player.getResources().add(originalResources);
+        }
         D.ebugPrintlnINFO("--- cleanup done ---");
 
         return etaBonus;
     }
 
     /**
-     * calc the win game eta bonus
+     * get the win game ETAs before a move, to calc the win game eta bonus
+     * with {@link #calcWGETABonusAux(int[], HashMap, Vector)} once the move is tried
      *
      * @param  trackersBefore   list of player trackers before move
-     * @param  trackersAfter    list of player trackers after move
+     * @param  originalWGETAs   filled with the win game ETAs before move, indexed by player number
+     * @return the leaders: the trackers with the lowest win game ETA
      */
-    private float calcWGETABonus(HashMap trackersBefore, HashMap trackersAfter) {
-        D.ebugPrintlnINFO("^^^^^ calcWGETABonus");
-        int originalWGETAs[] = new int[game.maxPlayers];	 
-        int WGETAdiffs[] = new int[game.maxPlayers];	 
+    private Vector findLeaders(HashMap trackersBefore, int[] originalWGETAs) {
+        D.ebugPrintlnINFO("^^^^^ findLeaders");
         Vector leaders = new Vector();
         int bestWGETA = 1000;
-        float bonus = 0;
 
         Iterator trackersBeforeIter = trackersBefore.values().iterator();
         while (trackersBeforeIter.hasNext()) {
             SOCPlayerTracker trackerBefore = (SOCPlayerTracker)trackersBeforeIter.next();
             D.ebugPrintlnINFO("$$$ win game ETA for player "+trackerBefore.getPlayer().getPlayerNumber()+" = "+trackerBefore.getWinGameETA());
             originalWGETAs[trackerBefore.getPlayer().getPlayerNumber()] = trackerBefore.getWinGameETA();
-            WGETAdiffs[trackerBefore.getPlayer().getPlayerNumber()] = trackerBefore.getWinGameETA();
 
             if (trackerBefore.getWinGameETA() < bestWGETA) {
                 bestWGETA = trackerBefore.getWinGameETA();
@@ -1662,11 +1668,7 @@ public class SOCRobotDMImpl extends SOCRobotDM<SOCBuildPlanStack> {
 
         D.ebugPrintlnINFO("^^^^ bestWGETA = "+bestWGETA);
 
-        bonus = calcWGETABonusAux(originalWGETAs, trackersAfter, leaders);
-
-        D.ebugPrintlnINFO("^^^^ final bonus = "+bonus);
-
-        return bonus;
+        return leaders;
     }
 
     /**
@@ -3358,7 +3360,7 @@ public class SOCRobotDMImpl extends SOCRobotDM<SOCBuildPlanStack> {
             return brain.getEstimator(numbers);
         }
         else {
-            return new SOCBuildingSpeedFast(numbers);
+            return new SOCBuildingSpeedMemo(numbers, null);
         }
     }
     
@@ -3376,7 +3378,7 @@ public class SOCRobotDMImpl extends SOCRobotDM<SOCBuildPlanStack> {
             return brain.getEstimator();
         }
         else {
-            return new SOCBuildingSpeedFast();
+            return new SOCBuildingSpeedMemo(null);
         }
     }
 
@@ -11,7 +11,6 @@ import soc.game.SOCPlayingPiece;
 import soc.game.SOCResourceConstants;
 import soc.game.SOCResourceSet;
 import soc.game.SOCTradeOffer;
-import soc.util.CutoffExceededException;
 
 /**
  * Default implementation of negotiator decisions.  Refactored from
@@ -1778,14 +1777,10 @@ public class SOCRobotNegotiatorImpl extends SOCRobotNegotiator<SOCBuildPlanStack
 
         int offerBuildingTime = 1000;
 
-        try
+        final int rolls = estimate.calculateRolls(ourResourcesCopy, targetResources, 1000, player.getPortFlags());
+        if (rolls != SOCBuildingSpeedEstimate.CUTOFF_EXCEEDED)
         {
-            SOCResSetBuildTimePair offerBuildingTimePair = estimate.calculateRollsFast(ourResourcesCopy, targetResources, 1000, player.getPortFlags());
-            offerBuildingTime = offerBuildingTimePair.getRolls();
-        }
-        catch (CutoffExceededException e)
-        {
-            ;
+            offerBuildingTime = rolls;
         }
 
         D.ebugPrintlnINFO("*** offerBuildingTime = " + offerBuildingTime);
@@ -0,0 +1,291 @@
+package soc.robot.stac;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Vector;
+
+import mcts.game.catan.Board;
+import mcts.game.catan.Catan;
+import mcts.game.catan.GameStateConstants;
+import mcts.game.catan.HexTypeConstants;
+import soc.game.SOCBoard;
+
+/**
+ * The lightweight Catan board for a JSettlers board layout, together with the tables translating vertices, edges and hexes
+ * between the two representations. A context is never modified once built, so it is shared by all the robots in a game and
+ * cached for later games on the same layout.
+ * <p>
+ * {@link Catan} (and {@link mcts.game.GameFactory}) read the board from the static {@link Catan#board} while listing and
+ * performing actions, so anything that uses them must run between {@link #enter()} and {@link #exit()}. Searches on the
+ * same layout run together, while a search on a different layout waits until they are finished. Searches are let in in the
+ * order they arrive, so once a different layout is waiting, later searches on the installed one queue behind it.
+ */
+public final class CatanBoardContext implements GameStateConstants, HexTypeConstants {
+	/**
+	 * How many layouts are remembered
+	 */
+	private static final int CACHE_SIZE = 16;
+
+	private static final Map<String, CatanBoardContext> cache = new LinkedHashMap<String, CatanBoardContext>(CACHE_SIZE, 0.75f, true) {
+		protected boolean removeEldestEntry(Map.Entry<String, CatanBoardContext> eldest) {
+			return size() > CACHE_SIZE;
+		}
+	};
+
+	/**
+	 * The context whose board is currently in {@link Catan#board}
+	 */
+	private static CatanBoardContext installed;
+	/**
+	 * Number of searches running inside {@link #installed}
+	 */
+	private static int searches = 0;
+	/**
+	 * The next ticket handed out by {@link #enter()}
+	 */
+	private static long nextTicket = 0;
+	/**
+	 * The ticket of the search let in next
+	 */
+	private static long nextAdmitted = 0;
+
+	/**
+	 * The board in the lightweight Catan representation; read-only
+	 */
+	public final Board board;
+
+	private final int[] vertexToSS = new int[SOCBoard.MAXNODE + 1];
+	private final int[] edgeToSS = new int[SOCBoard.MAXEDGE_V1 + 1];
+	private final int[] vertexToJS = new int[N_VERTICES];
+	private final int[] edgeToJS = new int[N_EDGES];
+
+	/**
+	 * @param bo a board with its hex and number layouts set
+	 * @return the context for this layout, built the first time it is seen
+	 */
+	public static CatanBoardContext forBoard(SOCBoard bo) {
+		String key = Arrays.toString(bo.getHexLayout()) + Arrays.toString(bo.getNumberLayout());
+		synchronized (cache) {
+			CatanBoardContext ctx = cache.get(key);
+			if (ctx == null) {
+				ctx = new CatanBoardContext(bo);
+				cache.put(key, ctx);
+			}
+			return ctx;
+		}
+	}
+
+	/**
+	 * Translates the board layout and initialises all the translation tables
+	 */
+	private CatanBoardContext(SOCBoard bo) {
+		Board bl = new Board();
+		bl.InitBoard();
+		int xo, yo;
+		int xn, yn;
+		int indn;
+		int coordo;
+		int to, tn;
+
+		for (xn = 0; xn < Board.MAXX; xn++)
+			for (yn = 0; yn < Board.MAXY; yn++) {
+				if ((xn + yn < 3) || (xn + yn > 9))
+					continue;
+				indn = bl.hexatcoord[xn][yn];
+
+				xo = 2 * xn + 1;
+				yo = 2 * (xn + yn) - 5;
+				coordo = 16 * xo + yo;
+				to = bo.getHexTypeFromCoord(coordo);
+
+				if ((to >= 0) && (to <= 5)) {
+					switch (to) {
+					case 0:
+						tn = LAND_DESERT;
+						break;
+					case 1:
+						tn = LAND_CLAY;
+						break;
+					case 2:
+						tn = LAND_STONE;
+						break;
+					case 3:
+						tn = LAND_SHEEP;
+						break;
+					case 4:
+						tn = LAND_WHEAT;
+						break;
+					case 5:
+						tn = LAND_WOOD;
+						break;
+					default:
+						tn = -1; // should cause error
+					}
+					bl.hextiles[indn].subtype = tn;
+					bl.hextiles[indn].type = TYPE_LAND;
+					bl.hextiles[indn].productionNumber = bo.getNumberOnHexFromCoord(coordo);
+
+				} else if ((to >= 7) && (to <= 12)) {
+					switch (to) {
+					case SOCBoard.MISC_PORT_HEX:
+						tn = PORT_MISC;
+						break;
+					case SOCBoard.CLAY_PORT_HEX:
+						tn = PORT_CLAY;
+						break;
+					case SOCBoard.ORE_PORT_HEX:
+						tn = PORT_STONE;
+						break;
+					case SOCBoard.SHEEP_PORT_HEX:
+						tn = PORT_SHEEP;
+						break;
+					case SOCBoard.WHEAT_PORT_HEX:
+						tn = PORT_WHEAT;
+						break;
+					case SOCBoard.WOOD_PORT_HEX:
+						tn = PORT_WOOD;
+						break;
+					default:
+						tn = PORT_MISC;
+					}
+					bl.hextiles[indn].subtype = tn;
+					bl.hextiles[indn].type = TYPE_PORT;
+				} else {
+					bl.hextiles[indn].type = TYPE_SEA;
+					bl.hextiles[indn].subtype = SEA;
+					bl.hextiles[indn].orientation = -1;
+				}
+			}
+		board = bl;
+		initTranslationTables(bo);
+	}
+
+	private void initTranslationTables(SOCBoard bo) {
+		int vo, vn;
+		int eo, en;
+		int ho, hn, j;
+
+        int[] numToHexID =
+        {
+            0x17, 0x39, 0x5B, 0x7D,
+            0x15, 0x37, 0x59, 0x7B, 0x9D,
+            0x13, 0x35, 0x57, 0x79, 0x9B, 0xBD,
+            0x11, 0x33, 0x55, 0x77, 0x99, 0xBB, 0xDD,
+            0x31, 0x53, 0x75, 0x97, 0xB9, 0xDB,
+            0x51, 0x73, 0x95, 0xB7, 0xD9,
+            0x71, 0x93, 0xB5, 0xD7
+        };
+
+		for (j = 0; j < numToHexID.length; j++)
+		{
+			ho = numToHexID[j];
+			if (bo.getHexTypeFromCoord(ho) >= SOCBoard.WATER_HEX)
+				continue;
+			hn = translateHexToSmartSettlers(ho);
+			int i = 0;
+			Vector vlist = SOCBoard.getAdjacentNodesToHex(ho);
+			Vector elist = SOCBoard.getAdjacentEdgesToHex(ho);
+			for (i = 0; i < 6; i++) {
+				vo = (Integer) vlist.get(i);
+				vn = board.neighborHexVertex[hn][i];
+				vertexToSS[vo] = vn;
+				vertexToJS[vn] = vo;
+				eo = (Integer) elist.get(i);
+				en = board.neighborHexEdge[hn][i];
+				edgeToSS[eo] = en;
+				edgeToJS[en] = eo;
+			}
+		}
+	}
+
+	/**
+	 * Puts this board in {@link Catan#board}, waiting for the searches that arrived earlier to be let in and for any
+	 * searches on another layout to finish first. Every call must be followed by a call to {@link #exit()}.
+	 */
+	public void enter() {
+		synchronized (CatanBoardContext.class) {
+			boolean interrupted = false;
+			final long ticket = nextTicket++;
+			while (ticket != nextAdmitted || (installed != this && searches > 0)) {
+				try {
+					CatanBoardContext.class.wait();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if (installed != this) {
+				Catan.board = board;
+				installed = this;
+			}
+			searches++;
+			nextAdmitted++;
+			//the next in line may be on the same layout
+			CatanBoardContext.class.notifyAll();
+			if (interrupted)
+				Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Lets searches on other layouts go ahead once the last one using this board has finished.
+	 */
+	public void exit() {
+		synchronized (CatanBoardContext.class) {
+			searches--;
+			if (searches == 0)
+				CatanBoardContext.class.notifyAll();
+		}
+	}
+
+	/**
+	 * Leaves this board in {@link Catan#board} for code that uses it outside a search, e.g. the offline tools that go through
+	 * one game at a time. It stays there until a search on another layout enters.
+	 */
+	public void install() {
+		enter();
+		exit();
+	}
+
+	public int translateHexToSmartSettlers(int indo) {
+		if (indo == -1)
+			return -1;
+		int xo = indo / 16;
+		int yo = indo % 16;
+
+		int xn = (xo - 1) / 2;
+		int yn = (yo + 5) / 2 - xn;
+
+		return board.hexatcoord[xn][yn];
+	}
+
+	public int translateHexToJSettlers(int indn) {
+		if (indn == -1)
+			return -1;
+
+		int xn = (int) board.hextiles[indn].pos.x;
+		int yn = (int) board.hextiles[indn].pos.y;
+
+		int xo = 2 * xn + 1;
+		int yo = 2 * (xn + yn) - 5;
+
+		return xo * 16 + yo;
+	}
+
+	public int translateVertexToSmartSettlers(int indo) {
+		return vertexToSS[indo];
+	}
+
+	public int translateEdgeToSmartSettlers(int indo) {
+		return edgeToSS[indo];
+	}
+
+	public int translateVertexToJSettlers(int indo) {
+		return vertexToJS[indo];
+	}
+
+	public int translateEdgeToJSettlers(int indo) {
+		return edgeToJS[indo];
+	}
+
+}
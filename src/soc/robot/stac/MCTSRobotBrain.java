@@ -19,8 +19,6 @@ import mcts.MCTS;
 import mcts.MCTSConfig;
 import mcts.game.Game;
 import mcts.game.GameFactory;
-import mcts.game.catan.Board;
-import mcts.game.catan.Catan;
 import mcts.game.catan.CatanConfig;
 import mcts.game.catan.GameStateConstants;
 import mcts.game.catan.HexTypeConstants;
@@ -37,7 +35,6 @@ import mcts.tree.selection.RAVE;
 import mcts.tree.selection.UCTAction;
 import mcts.tree.update.ActionUpdater;
 import mcts.tree.update.StateUpdater;
-import mcts.utils.Timer;
 import soc.debug.D;
 import soc.dialogue.StacTradeMessage;
 import soc.game.SOCBoard;
@@ -53,11 +50,14 @@ import soc.game.SOCRoad;
 import soc.game.SOCSettlement;
 import soc.game.SOCTradeOffer;
 import soc.game.StacTradeOffer;
+import soc.message.SOCCancelBuildRequest;
 import soc.message.SOCDevCard;
 import soc.message.SOCGameState;
 import soc.message.SOCGameTextMsg;
+import soc.message.SOCMoveRobber;
 import soc.message.SOCPlayerElement;
 import soc.message.SOCPutPiece;
+import soc.message.SOCResourceCount;
 import soc.message.SOCRobotFlag;
 import soc.robot.SOCBuildPlanStack;
 import soc.robot.SOCPlayerTracker;
@@ -114,6 +114,19 @@ public class MCTSRobotBrain extends StacRobotBrain implements GameStateConstants
 	 * Indicating we are currently in a monopoly phase such that the belief update is correct
 	 */
 	boolean monopolyPhase = false;
+	/**
+	 * The game in SmartSettlers format, kept up to date from the messages so a decision only needs to clone it.
+	 * Null until the first decision.
+	 */
+	private int[] stateMirror;
+	/**
+	 * Set when the board is (re)generated or a piece is taken back, so the mirror is rebuilt from scratch at the next decision
+	 */
+	private volatile boolean stateMirrorStale = true;
+	/**
+	 * The board of this game in the lightweight Catan format, shared with the other robots in the game
+	 */
+	private volatile CatanBoardContext boardContext;
     
 //	////// some static fields for storing information about the imperfect information games /////
 //	////// Note: there should be a single brain of this type in order for this to work fine
@@ -560,11 +573,7 @@ public class MCTSRobotBrain extends StacRobotBrain implements GameStateConstants
 	    	        				}
 	    	        			}
 	    	        			
-		        		        Game g = generateGame(S_NEGOTIATIONS,act);
-		        				mcts.newTree(g);
-		        				SearchListener listener = mcts.search();
-		        				listener.waitForFinish();
-		        				int[] action = g.listPossiblities(false).getOptions().get(mcts.getNextActionIndex());
+		        				int[] action = planAction(S_NEGOTIATIONS,act);
 	    	        			
 		        				if(action[0]==A_ACCEPT){
 		        					getMemory().setMyNegotiatedOffer(tm.getOffer());
@@ -785,12 +794,7 @@ public class MCTSRobotBrain extends StacRobotBrain implements GameStateConstants
 		// make the server believe we are a human player so we won't get
 		// interrupted by the force end turn thread
 		client.put(SOCRobotFlag.toCmd(getGame().getName(), false, getPlayerNumber()));
-		Game g = generateGame(state,null);
-		mcts.newTree(g);
-		Timer t = new Timer();
-		SearchListener listener = mcts.search();
-    	listener.waitForFinish();
-    	int[] action = g.listPossiblities(false).getOptions().get(mcts.getNextActionIndex());
+    	int[] action = planAction(state,null);
     	
 		String s = String.format("Player " + getPlayerNumber() + " chose initial settlement action: [%d %d %d %d %d]", action[0], action[1], action[2],
 				action[3], action[4]);
@@ -821,11 +825,7 @@ public class MCTSRobotBrain extends StacRobotBrain implements GameStateConstants
 		// make the server believe we are a human player so we won't get
 		// interrupted by the force end turn thread
 		client.put(SOCRobotFlag.toCmd(getGame().getName(), false, getPlayerNumber()));
-		Game g = generateGame(state,null);
-		mcts.newTree(g);
-		SearchListener listener = mcts.search();
-		listener.waitForFinish();
-		int[] action = g.listPossiblities(false).getOptions().get(mcts.getNextActionIndex());
+		int[] action = planAction(state,null);
 		String s = String.format("Player " + getPlayerNumber() + " chose first road action: [%d %d %d %d %d]", action[0], action[1], action[2], action[3],
 				action[4]);
 		D.ebugPrintlnINFO(s);
@@ -860,11 +860,7 @@ public class MCTSRobotBrain extends StacRobotBrain implements GameStateConstants
 		int[] action = null;
 		while (illegal) {
 			illegal = false;
-			Game g = generateGame(S_ROBBERAT7,null);
-			mcts.newTree(g);
-			SearchListener listener = mcts.search();
-			listener.waitForFinish();
-			action = g.listPossiblities(false).getOptions().get(mcts.getNextActionIndex());
+			action = planAction(S_ROBBERAT7,null);
 
 			String s = String.format("Player " + getPlayerNumber() + " chose robber action: [%d %d %d %d %d]", action[0], action[1], action[2], action[3],
 					action[4]);
@@ -873,7 +869,7 @@ public class MCTSRobotBrain extends StacRobotBrain implements GameStateConstants
 			// Check if it is legal; the only illegal actions are if the robber
 			// is moved outside of the land or on the same location or no plan
 			// was made
-			int tempHex = translateHexToJSettlers(action[1], Catan.board);
+			int tempHex = boardContext.translateHexToJSettlers(action[1]);
 			if (tempHex == -1) {
 				illegal = true;
 				D.ebugERROR("Illegal attempt to place the robber - no plan; Player " + getPlayerNumber());
@@ -887,12 +883,12 @@ public class MCTSRobotBrain extends StacRobotBrain implements GameStateConstants
 			}
 		}
 
-		int robberHex = translateHexToJSettlers(action[1], Catan.board);
+		int robberHex = boardContext.translateHexToJSettlers(action[1]);
 		robberVictim = action[2];
 		D.ebugPrintlnINFO("Player " + getPlayerNumber() + " MOVING ROBBER ");
 		client.moveRobber(game, ourPlayerData, robberHex);
-		int xn = (int) Catan.board.hextiles[action[1]].pos.x;
-		int yn = (int) Catan.board.hextiles[action[1]].pos.y;
+		int xn = (int) boardContext.board.hextiles[action[1]].pos.x;
+		int yn = (int) boardContext.board.hextiles[action[1]].pos.y;
 
 		D.ebugPrintlnINFO("Player " + getPlayerNumber() + " MOVE robber to hex " + robberHex + "( hex " + action[1] + ", coord: " + xn + "," + yn
 				+ "), steal from" + robberVictim);
@@ -930,11 +926,7 @@ public class MCTSRobotBrain extends StacRobotBrain implements GameStateConstants
         		
     			illegal = false;
     	        pause(1);
-    	        Game g = generateGame(S_PAYTAX,null);
-    			mcts.newTree(g);
-    			SearchListener listener = mcts.search();
-    			listener.waitForFinish();
-    			int[] action = g.listPossiblities(false).getOptions().get(mcts.getNextActionIndex());
+    			int[] action = planAction(S_PAYTAX,null);
     	        String s = String.format("Player " + getPlayerNumber() + " chose discard action: [%d %d %d %d %d %d]", action[0], action[1], action[2], action[3], action[4], action[5]);
     	        D.ebugPrintlnINFO(s);      
     	        
@@ -989,11 +981,7 @@ public class MCTSRobotBrain extends StacRobotBrain implements GameStateConstants
 	    	}
 	    	else{
 	    		D.ebugPrintlnINFO("Player " + getPlayerNumber() + " planning normal task");
-		        Game g = generateGame(S_NORMAL,null);
-				mcts.newTree(g);
-				SearchListener listener = mcts.search();
-				listener.waitForFinish();
-				action = g.listPossiblities(false).getOptions().get(mcts.getNextActionIndex());
+				action = planAction(S_NORMAL,null);
 	    	}		        
 		    
 	        int coord;
@@ -1273,6 +1261,36 @@ public class MCTSRobotBrain extends StacRobotBrain implements GameStateConstants
 	
 	        }
     	}
+    	if (isStateMirrorLive())
+    		writePlayerState(stateMirror, mes.getPlayerNumber());
+    }
+    
+    @Override
+    protected void handlePLAYERELEMENT(SOCPlayerElement mes) {
+    	super.handlePLAYERELEMENT(mes);
+    	if (isStateMirrorLive())
+    		writePlayerState(stateMirror, mes.getPlayerNumber());
+    }
+    
+    @Override
+    protected void handleRESOURCECOUNT(SOCResourceCount mes) {
+    	super.handleRESOURCECOUNT(mes);
+    	if (isStateMirrorLive())
+    		writePlayerState(stateMirror, mes.getPlayerNumber());
+    }
+    
+    @Override
+    protected void handleMOVEROBBER(SOCMoveRobber mes) {
+    	super.handleMOVEROBBER(mes);
+    	if (isStateMirrorLive())
+    		stateMirror[OFS_ROBBERPLACE] = boardContext.translateHexToSmartSettlers(game.getBoard().getRobberHex());
+    }
+    
+    @Override
+    protected void handleCANCELBUILDREQUEST(SOCCancelBuildRequest mes) {
+    	super.handleCANCELBUILDREQUEST(mes);
+    	//an initial settlement may have been taken off the board
+    	stateMirrorStale = true;
     }
     
     protected void handleGAMESTATE(SOCGameState mes) {
@@ -1395,7 +1413,13 @@ public class MCTSRobotBrain extends StacRobotBrain implements GameStateConstants
 	            beliefModel.updateResourceBelief(socToSSRssSet(rs), mes.getPlayerNumber() , SOCPlayerElement.GAIN);
 	        }
         }
-    
+    	
+    	if (isStateMirrorLive()) {
+    		writePiece(stateMirror, mes.getPlayerNumber(), mes.getPieceType(), mes.getCoordinates());
+    		//ports, pieces left and the longest roads of all players may have changed
+    		for (int pl = 0; pl < NPLAYERS; pl++)
+    			writePlayerState(stateMirror, pl);
+    	}
     }
     
 ////////////////////////////SMARTSETTLERS METHODS/////////////////////
@@ -1418,11 +1442,7 @@ public class MCTSRobotBrain extends StacRobotBrain implements GameStateConstants
 		// make the server believe we are a human player so we won't get
 		// interrupted by the force end turn thread
 		client.put(SOCRobotFlag.toCmd(getGame().getName(), false, getPlayerNumber()));
-		Game g = generateGame(S_BEFOREDICE,null);
-		mcts.newTree(g);
-		SearchListener listener = mcts.search();
-		listener.waitForFinish();
-		int[] action = g.listPossiblities(false).getOptions().get(mcts.getNextActionIndex());
+		int[] action = planAction(S_BEFOREDICE,null);
 		String s = String.format("Player " + getPlayerNumber() + " chose action: [%d %d %d %d %d]", action[0], action[1], action[2],
 				action[3], action[4]);
 		D.ebugPrintlnINFO(s);
@@ -1431,7 +1451,7 @@ public class MCTSRobotBrain extends StacRobotBrain implements GameStateConstants
 		case A_PLAYCARD_KNIGHT:
 			// remember where we want to play the robber and who to steal from,
 			// otherwise JSettlers will ask us again
-			robberHexFromKnight = translateHexToJSettlers(action[1],Catan.board);
+			robberHexFromKnight = boardContext.translateHexToJSettlers(action[1]);
 			robberVictim = action[2];
 
 			expectPLACING_ROBBER = true;
@@ -1471,11 +1491,7 @@ public class MCTSRobotBrain extends StacRobotBrain implements GameStateConstants
 		boolean illegal = true;
 		while (illegal) {
 			illegal = false;
-			Game g = generateGame(st,null);
-			mcts.newTree(g);
-			SearchListener listener = mcts.search();
-			listener.waitForFinish();
-			int[] action = g.listPossiblities(false).getOptions().get(mcts.getNextActionIndex());
+			int[] action = planAction(st,null);
 
 			String s = String.format("Player " + getPlayerNumber() + " chose action: [%d %d %d %d %d]", action[0], action[1], action[2], action[3],
 					action[4]);
@@ -1505,7 +1521,14 @@ public class MCTSRobotBrain extends StacRobotBrain implements GameStateConstants
 	 * Fills the list of acceptable trades including the last non-trade action.
 	 */
 	private void listAcceptableTrades(){
-		ArrayList<int[]> actions = mcts.getOrderedActionList();
+		ArrayList<int[]> actions;
+		CatanBoardContext ctx = boardContext;
+		ctx.enter();
+		try {
+			actions = mcts.getOrderedActionList();
+		} finally {
+			ctx.exit();
+		}
 		acceptableTrades.clear();
 		int counter = 0;
 		for(int[] a : actions){
@@ -1648,8 +1671,28 @@ public class MCTSRobotBrain extends StacRobotBrain implements GameStateConstants
 	}
 	
     ///////////////////TRANSLATION METHODS FROM SSCLIENT//////////////
-    //TODO: some of these are duplicated in StacDBToCatanInterface, try to eliminate this duplication when there is time
     
+	/**
+	 * Searches from the current state and returns the action chosen. The lightweight Catan reads the board from a static field,
+	 * so the search runs inside this game's board context.
+	 * @param GAMESTATE the current state
+	 * @param currentOffer the offer made to us by another player
+	 * @return the action in SmartSettlers format
+	 */
+	private int[] planAction(int GAMESTATE, int[] currentOffer) {
+		CatanBoardContext ctx = boardContext;
+		ctx.enter();
+		try {
+			Game g = generateGame(GAMESTATE, currentOffer);
+			mcts.newTree(g);
+			SearchListener listener = mcts.search();
+			listener.waitForFinish();
+			return g.listPossiblities(false).getOptions().get(mcts.getNextActionIndex());
+		} finally {
+			ctx.exit();
+		}
+	}
+	
 	 /**
      * @param GAMESTATE the current state
      * @param currentOffer the offer made to us by another player
@@ -1808,29 +1851,69 @@ public class MCTSRobotBrain extends StacRobotBrain implements GameStateConstants
     	
     	
     	D.ebugPrintlnINFO("Player " + getPlayerNumber() + " generating Catan game representation ");
+    	if (stateMirror == null || stateMirrorStale)
+    		rebuildStateMirror();
+        int[] st = stateMirror.clone();
+        writeDecisionState(st, GAMESTATE, currentOffer);
+        if (D.ebugIsEnabled() && D.ebug_level() == D.INFO)
+        {
+        	//check the mirror against the representation built from scratch
+        	int[] full = new int[STATESIZE];
+        	writeBoardState(full);
+        	for (int pl=0; pl<NPLAYERS; pl++)
+        		writePlayerState(full, pl);
+        	writeDecisionState(full, GAMESTATE, currentOffer);
+        	if (!Arrays.equals(st, full))
+        	{
+        		StringBuilder sb = new StringBuilder();
+        		for (int i=0; i<STATESIZE; i++)
+        			if (st[i] != full[i])
+        				sb.append(" ").append(i).append(":").append(st[i]).append("!=").append(full[i]);
+        		D.ebugERROR("Player " + getPlayerNumber() + " Catan game representation out of date at" + sb);
+        		rebuildStateMirror();
+        		st = full;
+        	}
+        }
+        D.ebugPrintlnINFO("Player " + getPlayerNumber() + " Catan game representation is: \n " + Arrays.toString(st));
+        Game g = gameFactory.getGame(st);
+        return g;
+    }
+    
+    /**
+     * Builds the mirror of the game in SmartSettlers format from scratch. It is then kept up to date from the board and player
+     * messages and only cloned when a decision is made.
+     */
+    private void rebuildStateMirror()
+    {
+        //cleared first, so a board generated while building marks it stale again
+        stateMirrorStale = false;
         int[] st = new int[STATESIZE];
-        int val, fsmlevel;
+        writeBoardState(st);
+        for (int pl=0; pl<NPLAYERS; pl++)
+            writePlayerState(st, pl);
+        stateMirror = st;
+    }
+    
+    /**
+     * @return true if the mirror exists and is not waiting to be rebuilt, so messages should update it
+     */
+    private boolean isStateMirrorLive()
+    {
+        return stateMirror != null && !stateMirrorStale;
+    }
+    
+    /**
+     * Writes the robber and the pieces on the board
+     * @param st the state in SmartSettlers format
+     */
+    private void writeBoardState(int[] st)
+    {
+        int val, indn;
         Vector v;
         Enumeration pEnum;
-        int indo, indn;
         
-        st[OFS_OUR_PLAYER] = getPlayerNumber();//always this player's perspective as we are using this player's belief when planning
-        st[OFS_NUMBER_OF_OFFERS] = offers_made;
-        st[OFS_TURN] = game.getTurnCount();
-    	st[OFS_STARTING_PLAYER] = game.getFirstPlayer();
         val = game.getBoard().getRobberHex();
-        st[OFS_ROBBERPLACE] = translateHexToSmartSettlers(val,Catan.board);
-        if (lastSettlement !=-1)
-        {
-            st[OFS_LASTVERTEX] = translateVertexToSmartSettlers(lastSettlement);
-        }
-        
-        val = game.getCurrentDice(); 
-		if (val == -1) {
-			st[OFS_DICE] = 0;
-		} else {
-			st[OFS_DICE] = val;
-		}
+        st[OFS_ROBBERPLACE] = boardContext.translateHexToSmartSettlers(val);
         
         v = game.getBoard().getSettlements();
         pEnum = v.elements();
@@ -1860,7 +1943,7 @@ public class MCTSRobotBrain extends StacRobotBrain implements GameStateConstants
                 continue;
             for (j=0; j<6; j++)
             {
-                indn = Catan.board.neighborVertexVertex[i][j];
+                indn = boardContext.board.neighborVertexVertex[i][j];
                 if ((indn!=-1) && (st[OFS_VERTICES + indn] >= VERTEX_HASSETTLEMENT))
                 {
                     islegal = false;
@@ -1881,7 +1964,138 @@ public class MCTSRobotBrain extends StacRobotBrain implements GameStateConstants
             val = p.getPlayer().getPlayerNumber();
             st[OFS_EDGES+indn] = EDGE_OCCUPIED + val;
         }
+    }
+    
+    /**
+     * Writes a newly placed piece, same as {@link #writeBoardState(int[])} would.
+     * @param st the state in SmartSettlers format
+     * @param pn the owner
+     * @param pieceType the type of piece as in {@link SOCPlayingPiece}
+     * @param coord the JSettlers coordinates of the piece
+     */
+    private void writePiece(int[] st, int pn, int pieceType, int coord)
+    {
+        int indn;
+        switch (pieceType)
+        {
+        case SOCPlayingPiece.ROAD:
+            st[OFS_EDGES + translateEdgeToSmartSettlers(coord)] = EDGE_OCCUPIED + pn;
+            break;
+        case SOCPlayingPiece.SETTLEMENT:
+            indn = translateVertexToSmartSettlers(coord);
+            st[OFS_VERTICES + indn] = VERTEX_HASSETTLEMENT + pn;
+            for (int j=0; j<6; j++)
+            {
+                int nb = boardContext.board.neighborVertexVertex[indn][j];
+                if ((nb!=-1) && (st[OFS_VERTICES + nb] < VERTEX_HASSETTLEMENT))
+                    st[OFS_VERTICES + nb] = VERTEX_TOOCLOSE;
+            }
+            break;
+        case SOCPlayingPiece.CITY:
+            st[OFS_VERTICES + translateVertexToSmartSettlers(coord)] = VERTEX_HASCITY + pn;
+            break;
+        }
+    }
+    
+    /**
+     * Writes what the messages tell us about a player: pieces left, ports, played cards, development cards and resources.
+     * Development cards are written as if they were all old, as for any player that is not the current one; the beliefs
+     * are left to {@link #writeDecisionState(int[], int, int[])}.
+     * @param st the state in SmartSettlers format
+     * @param pl the player number
+     */
+    private void writePlayerState(int[] st, int pl)
+    {
+    	SOCPlayer p = game.getPlayer(pl);
+    	boolean hasports[] = p.getPortFlags();
+    	
+        st[OFS_PLAYERDATA[pl] + OFS_NSETTLEMENTS] = 5-p.getNumPieces(SOCPlayingPiece.SETTLEMENT);
+        st[OFS_PLAYERDATA[pl] + OFS_NCITIES] = 4-p.getNumPieces(SOCPlayingPiece.CITY);
+        st[OFS_PLAYERDATA[pl] + OFS_NROADS] = 15-p.getNumPieces(SOCPlayingPiece.ROAD);
+        st[OFS_PLAYERDATA[pl] + OFS_PLAYERSLONGESTROAD] = p.getLongestRoadLength();
+        
+        st[OFS_PLAYERDATA[pl] + OFS_ACCESSTOPORT + PORT_CLAY-1] = hasports[SOCBoard.CLAY_PORT] ?1:0;
+        st[OFS_PLAYERDATA[pl] + OFS_ACCESSTOPORT + PORT_WOOD-1] = hasports[SOCBoard.WOOD_PORT] ?1:0;
+        st[OFS_PLAYERDATA[pl] + OFS_ACCESSTOPORT + PORT_STONE-1]= hasports[SOCBoard.ORE_PORT] ?1:0;
+        st[OFS_PLAYERDATA[pl] + OFS_ACCESSTOPORT + PORT_SHEEP-1]= hasports[SOCBoard.SHEEP_PORT] ?1:0;
+        st[OFS_PLAYERDATA[pl] + OFS_ACCESSTOPORT + PORT_WHEAT-1] = hasports[SOCBoard.WHEAT_PORT] ?1:0;
+        st[OFS_PLAYERDATA[pl] + OFS_ACCESSTOPORT + PORT_MISC-1] = hasports[SOCBoard.MISC_PORT] ?1:0;
+        
+        st[OFS_PLAYERDATA[pl] + OFS_USEDCARDS + CARD_KNIGHT] = p.getNumKnights();
+        st[OFS_PLAYERDATA[pl] + OFS_USEDCARDS + CARD_FREERESOURCE] = p.numDISCCards;
+        st[OFS_PLAYERDATA[pl] + OFS_USEDCARDS + CARD_FREEROAD] = p.numRBCards;
+        st[OFS_PLAYERDATA[pl] + OFS_USEDCARDS + CARD_MONOPOLY] = p.numMONOCards;
+        st[OFS_PLAYERDATA[pl] + OFS_USEDCARDS + CARD_ONEPOINT] = 0;//these are never played
+        
+        writeDevCards(st, pl, true);
+        
+        if(!isRobotType(MCTSRobotType.MCTS_FACTORED_BELIEF)) {
+        	SOCResourceSet rs = p.getResources();
+            st[OFS_PLAYERDATA[pl] + OFS_RESOURCES + RES_CLAY ] = rs.getAmount(SOCResourceConstants.CLAY);
+            st[OFS_PLAYERDATA[pl] + OFS_RESOURCES + RES_WOOD ] = rs.getAmount(SOCResourceConstants.WOOD);
+            st[OFS_PLAYERDATA[pl] + OFS_RESOURCES + RES_STONE] = rs.getAmount(SOCResourceConstants.ORE);
+            st[OFS_PLAYERDATA[pl] + OFS_RESOURCES + RES_SHEEP] = rs.getAmount(SOCResourceConstants.SHEEP);
+            st[OFS_PLAYERDATA[pl] + OFS_RESOURCES + RES_WHEAT] = rs.getAmount(SOCResourceConstants.WHEAT);
+        }
+    }
+    
+    /**
+     * Writes a player's development cards.
+     * JSettlers updates new cards at beginning of a player's turn, Catan/CatanWithBelief updates these at end of turn, so new
+     * cards are counted as old for all players except the current one.
+     * @param st the state in SmartSettlers format
+     * @param pl the player number
+     * @param newAsOld if new cards should be counted as old
+     */
+    private void writeDevCards(int[] st, int pl, boolean newAsOld)
+    {
+    	SOCDevCardSet ds = game.getPlayer(pl).getDevCards();
+    	int[] types = {CARD_KNIGHT, CARD_FREEROAD, CARD_FREERESOURCE, CARD_MONOPOLY};
+    	int[] socTypes = {SOCDevCardConstants.KNIGHT, SOCDevCardConstants.ROADS, SOCDevCardConstants.DISC, SOCDevCardConstants.MONO};
+    	for (int i=0; i<types.length; i++)
+    	{
+    		int nNew = ds.getAmount(SOCDevCardSet.NEW, socTypes[i]);
+    		int nOld = ds.getAmount(SOCDevCardSet.OLD, socTypes[i]);
+    		st[OFS_PLAYERDATA[pl] + OFS_NEWCARDS + types[i]] = newAsOld ? 0 : nNew;
+    		st[OFS_PLAYERDATA[pl] + OFS_OLDCARDS + types[i]] = newAsOld ? nOld + nNew : nOld;
+    	}
+        st[OFS_PLAYERDATA[pl] + OFS_NEWCARDS + CARD_ONEPOINT] = 0;
+        st[OFS_PLAYERDATA[pl] + OFS_OLDCARDS + CARD_ONEPOINT] = ds.getNumVPCards();
+        if(isRobotType(MCTSRobotType.MCTS_FACTORED_BELIEF)) {
+        	//the totals contain the unknowns
+        	int nNew = ds.getNumNewCards();
+        	int nOld = ds.getNumOldCards();
+            st[OFS_PLAYERDATA[pl] + OFS_NEWCARDS + N_DEVCARDTYPES] = newAsOld ? 0 : nNew;
+            st[OFS_PLAYERDATA[pl] + OFS_OLDCARDS + N_DEVCARDTYPES] = newAsOld ? nOld + nNew : nOld;
+        }
+    }
+    
+    /**
+     * Writes what is only known at the time of the decision: the turn, the dice, the current player's cards, the beliefs
+     * and the state, level and player for the fsm.
+     * @param st the state in SmartSettlers format
+     * @param GAMESTATE the current state
+     * @param currentOffer the offer made to us by another player
+     */
+    private void writeDecisionState(int[] st, int GAMESTATE, int[] currentOffer)
+    {
+        int val, fsmlevel, i;
+        
+        st[OFS_OUR_PLAYER] = getPlayerNumber();//always this player's perspective as we are using this player's belief when planning
+        st[OFS_NUMBER_OF_OFFERS] = offers_made;
+        st[OFS_TURN] = game.getTurnCount();
+    	st[OFS_STARTING_PLAYER] = game.getFirstPlayer();
+        if (lastSettlement !=-1)
+        {
+            st[OFS_LASTVERTEX] = translateVertexToSmartSettlers(lastSettlement);
+        }
         
+        val = game.getCurrentDice(); 
+		if (val == -1) {
+			st[OFS_DICE] = 0;
+		} else {
+			st[OFS_DICE] = val;
+		}
         
         if (game.getPlayerWithLargestArmy() == null)
             val = -1;
@@ -1894,101 +2108,26 @@ public class MCTSRobotBrain extends StacRobotBrain implements GameStateConstants
             val = game.getPlayerWithLongestRoad().getPlayerNumber();
         st[OFS_LONGESTROAD_AT] = val;
         st[OFS_NCARDSGONE] = NCARDS-game.getNumDevCards();
-        int pl;        
         
-        for (pl=0; pl<NPLAYERS; pl++)
+        int cpn = game.getCurrentPlayerNumber();
+        if (cpn >= 0)
         {
-        	SOCPlayer p = game.getPlayer(pl);
-        	SOCDevCardSet ds = new SOCDevCardSet(p.getDevCards());
-        	//JSettlers updates new cards at beginning of a player's turn, Catan/CatanWithBelief updates these at end of turn. Update them for all players except the current one
-        	if(pl != game.getCurrentPlayerNumber())
-        		ds.newToOld();
-        	SOCResourceSet rs = p.getResources();
-        	boolean hasports[] = p.getPortFlags();
-        	
-            st[OFS_PLAYERDATA[pl] + OFS_NSETTLEMENTS] = 5-p.getNumPieces(SOCPlayingPiece.SETTLEMENT);
-            st[OFS_PLAYERDATA[pl] + OFS_NCITIES] = 4-p.getNumPieces(SOCPlayingPiece.CITY);
-            st[OFS_PLAYERDATA[pl] + OFS_NROADS] = 15-p.getNumPieces(SOCPlayingPiece.ROAD);
-            st[OFS_PLAYERDATA[pl] + OFS_PLAYERSLONGESTROAD] = p.getLongestRoadLength();
-            if(pl == game.getCurrentPlayerNumber())
-            	st[OFS_PLAYERDATA[pl] + OFS_HASPLAYEDCARD] = p.hasPlayedDevCard() ?1:0;
-            
-            st[OFS_PLAYERDATA[pl] + OFS_ACCESSTOPORT + PORT_CLAY-1] = hasports[SOCBoard.CLAY_PORT] ?1:0;
-            st[OFS_PLAYERDATA[pl] + OFS_ACCESSTOPORT + PORT_WOOD-1] = hasports[SOCBoard.WOOD_PORT] ?1:0;
-            st[OFS_PLAYERDATA[pl] + OFS_ACCESSTOPORT + PORT_STONE-1]= hasports[SOCBoard.ORE_PORT] ?1:0;
-            st[OFS_PLAYERDATA[pl] + OFS_ACCESSTOPORT + PORT_SHEEP-1]= hasports[SOCBoard.SHEEP_PORT] ?1:0;
-            st[OFS_PLAYERDATA[pl] + OFS_ACCESSTOPORT + PORT_WHEAT-1] = hasports[SOCBoard.WHEAT_PORT] ?1:0;
-            st[OFS_PLAYERDATA[pl] + OFS_ACCESSTOPORT + PORT_MISC-1] = hasports[SOCBoard.MISC_PORT] ?1:0;
-            
-            st[OFS_PLAYERDATA[pl] + OFS_USEDCARDS + CARD_KNIGHT] = p.getNumKnights();
-            st[OFS_PLAYERDATA[pl] + OFS_USEDCARDS + CARD_FREERESOURCE] = p.numDISCCards;
-            st[OFS_PLAYERDATA[pl] + OFS_USEDCARDS + CARD_FREEROAD] = p.numRBCards;
-            st[OFS_PLAYERDATA[pl] + OFS_USEDCARDS + CARD_MONOPOLY] = p.numMONOCards;
-            st[OFS_PLAYERDATA[pl] + OFS_USEDCARDS + CARD_ONEPOINT] = 0;//these are never played
-            
-            if(isRobotType(MCTSRobotType.MCTS_FACTORED_BELIEF)) {
-            	PlayerResourceModel phm = beliefModel.getPlayerHandsModel()[pl];
-            	//the following are not always known, hence the min is used. The min matches the real one when the hand is known
-                st[OFS_PLAYERDATA[pl] + OFS_RESOURCES + RES_CLAY ] = phm.rssAbs[PlayerResourceModel.MIN + RES_CLAY];
-                st[OFS_PLAYERDATA[pl] + OFS_RESOURCES + RES_WOOD ] = phm.rssAbs[PlayerResourceModel.MIN + RES_WOOD];
-                st[OFS_PLAYERDATA[pl] + OFS_RESOURCES + RES_STONE] = phm.rssAbs[PlayerResourceModel.MIN + RES_STONE];
-                st[OFS_PLAYERDATA[pl] + OFS_RESOURCES + RES_SHEEP] = phm.rssAbs[PlayerResourceModel.MIN + RES_SHEEP];
-                st[OFS_PLAYERDATA[pl] + OFS_RESOURCES + RES_WHEAT] = phm.rssAbs[PlayerResourceModel.MIN + RES_WHEAT];
-                st[OFS_PLAYERDATA[pl] + OFS_RESOURCES + NRESOURCES] = phm.getTotalResources();
-                
-                //the following should be set to 0 if the player in question is not this one, apart from the total that contains the unknowns
-                st[OFS_PLAYERDATA[pl] + OFS_NEWCARDS + CARD_KNIGHT] = 
-                        ds.getAmount(SOCDevCardSet.NEW, SOCDevCardConstants.KNIGHT);
-                st[OFS_PLAYERDATA[pl] + OFS_NEWCARDS + CARD_FREEROAD] = 
-                        ds.getAmount(SOCDevCardSet.NEW, SOCDevCardConstants.ROADS);
-                st[OFS_PLAYERDATA[pl] + OFS_NEWCARDS + CARD_FREERESOURCE] = 
-                        ds.getAmount(SOCDevCardSet.NEW, SOCDevCardConstants.DISC);
-                st[OFS_PLAYERDATA[pl] + OFS_NEWCARDS + CARD_MONOPOLY] = 
-                        ds.getAmount(SOCDevCardSet.NEW, SOCDevCardConstants.MONO);
-                st[OFS_PLAYERDATA[pl] + OFS_NEWCARDS + CARD_ONEPOINT] = 0;
-                st[OFS_PLAYERDATA[pl] + OFS_NEWCARDS + N_DEVCARDTYPES] = ds.getNumNewCards();
-
-                //the following should be set to 0 if the player in question is not this one, apart from the total that contains the unknowns
-                st[OFS_PLAYERDATA[pl] + OFS_OLDCARDS + CARD_KNIGHT] = 
-                        ds.getAmount(SOCDevCardSet.OLD, SOCDevCardConstants.KNIGHT);
-                st[OFS_PLAYERDATA[pl] + OFS_OLDCARDS + CARD_FREEROAD] = 
-                        ds.getAmount(SOCDevCardSet.OLD, SOCDevCardConstants.ROADS);
-                st[OFS_PLAYERDATA[pl] + OFS_OLDCARDS + CARD_FREERESOURCE] = 
-                        ds.getAmount(SOCDevCardSet.OLD, SOCDevCardConstants.DISC);
-                st[OFS_PLAYERDATA[pl] + OFS_OLDCARDS + CARD_MONOPOLY] = 
-                        ds.getAmount(SOCDevCardSet.OLD, SOCDevCardConstants.MONO);
-                st[OFS_PLAYERDATA[pl] + OFS_OLDCARDS + CARD_ONEPOINT] = ds.getNumVPCards();
-                st[OFS_PLAYERDATA[pl] + OFS_OLDCARDS + N_DEVCARDTYPES] = ds.getNumOldCards();
-                
-            }else {
-	            st[OFS_PLAYERDATA[pl] + OFS_RESOURCES + RES_CLAY ] = rs.getAmount(SOCResourceConstants.CLAY);
-	            st[OFS_PLAYERDATA[pl] + OFS_RESOURCES + RES_WOOD ] = rs.getAmount(SOCResourceConstants.WOOD);
-	            st[OFS_PLAYERDATA[pl] + OFS_RESOURCES + RES_STONE] = rs.getAmount(SOCResourceConstants.ORE);
-	            st[OFS_PLAYERDATA[pl] + OFS_RESOURCES + RES_SHEEP] = rs.getAmount(SOCResourceConstants.SHEEP);
-	            st[OFS_PLAYERDATA[pl] + OFS_RESOURCES + RES_WHEAT] = rs.getAmount(SOCResourceConstants.WHEAT);
-	            
-	            st[OFS_PLAYERDATA[pl] + OFS_NEWCARDS + CARD_KNIGHT] = 
-	                    ds.getAmount(SOCDevCardSet.NEW, SOCDevCardConstants.KNIGHT);
-	            st[OFS_PLAYERDATA[pl] + OFS_NEWCARDS + CARD_FREEROAD] = 
-	                    ds.getAmount(SOCDevCardSet.NEW, SOCDevCardConstants.ROADS);
-	            st[OFS_PLAYERDATA[pl] + OFS_NEWCARDS + CARD_FREERESOURCE] = 
-	                    ds.getAmount(SOCDevCardSet.NEW, SOCDevCardConstants.DISC);
-	            st[OFS_PLAYERDATA[pl] + OFS_NEWCARDS + CARD_MONOPOLY] = 
-	                    ds.getAmount(SOCDevCardSet.NEW, SOCDevCardConstants.MONO);
-	            st[OFS_PLAYERDATA[pl] + OFS_NEWCARDS + CARD_ONEPOINT] = 0;
-	
-	            st[OFS_PLAYERDATA[pl] + OFS_OLDCARDS + CARD_KNIGHT] = 
-	                    ds.getAmount(SOCDevCardSet.OLD, SOCDevCardConstants.KNIGHT);
-	            st[OFS_PLAYERDATA[pl] + OFS_OLDCARDS + CARD_FREEROAD] = 
-	                    ds.getAmount(SOCDevCardSet.OLD, SOCDevCardConstants.ROADS);
-	            st[OFS_PLAYERDATA[pl] + OFS_OLDCARDS + CARD_FREERESOURCE] = 
-	                    ds.getAmount(SOCDevCardSet.OLD, SOCDevCardConstants.DISC);
-	            st[OFS_PLAYERDATA[pl] + OFS_OLDCARDS + CARD_MONOPOLY] = 
-	                    ds.getAmount(SOCDevCardSet.OLD, SOCDevCardConstants.MONO);
-	            st[OFS_PLAYERDATA[pl] + OFS_OLDCARDS + CARD_ONEPOINT] = ds.getNumVPCards();
-            }
-            
-            
+        	st[OFS_PLAYERDATA[cpn] + OFS_HASPLAYEDCARD] = game.getPlayer(cpn).hasPlayedDevCard() ?1:0;
+        	writeDevCards(st, cpn, false);
+        }
+        
+        if(isRobotType(MCTSRobotType.MCTS_FACTORED_BELIEF)) {
+        	for (int pl=0; pl<NPLAYERS; pl++)
+        	{
+	        	PlayerResourceModel phm = beliefModel.getPlayerHandsModel()[pl];
+	        	//the following are not always known, hence the min is used. The min matches the real one when the hand is known
+	            st[OFS_PLAYERDATA[pl] + OFS_RESOURCES + RES_CLAY ] = phm.rssAbs[PlayerResourceModel.MIN + RES_CLAY];
+	            st[OFS_PLAYERDATA[pl] + OFS_RESOURCES + RES_WOOD ] = phm.rssAbs[PlayerResourceModel.MIN + RES_WOOD];
+	            st[OFS_PLAYERDATA[pl] + OFS_RESOURCES + RES_STONE] = phm.rssAbs[PlayerResourceModel.MIN + RES_STONE];
+	            st[OFS_PLAYERDATA[pl] + OFS_RESOURCES + RES_SHEEP] = phm.rssAbs[PlayerResourceModel.MIN + RES_SHEEP];
+	            st[OFS_PLAYERDATA[pl] + OFS_RESOURCES + RES_WHEAT] = phm.rssAbs[PlayerResourceModel.MIN + RES_WHEAT];
+	            st[OFS_PLAYERDATA[pl] + OFS_RESOURCES + NRESOURCES] = phm.getTotalResources();
+        	}
         }
         
         //finally set the correct state, level and player for the fsm
@@ -2021,147 +2160,32 @@ public class MCTSRobotBrain extends StacRobotBrain implements GameStateConstants
 	        st[OFS_FSMLEVEL] = fsmlevel;
 	        st[OFS_FSMSTATE + fsmlevel] = GAMESTATE;
         }
-        D.ebugPrintlnINFO("Player " + getPlayerNumber() + " Catan game representation is: \n " + Arrays.toString(st));
-        Game g = gameFactory.getGame(st);
-        return g;
     }
 	
 	/**
-	 * Sending the board layout and initialising all translation stuff NOTE: the
-	 * board layout will be sent across by each robot possibly at the same time,
-	 * therefore there is no need to be synchronised. It would be more efficient to update it
-	 * only once, but JSettlers architecture makes it difficult to do this.
+	 * Resolves the board context for this game's layout, shared with the other robots in the game and with any earlier game on the
+	 * same layout.
 	 */
 	public void generateBoard() {
 		D.ebugPrintlnINFO("Player " + getPlayerNumber() + " generating Catan board representation ");
-		Board bl = new Board();
-		bl.InitBoard();
-		int xo, yo;
-		int xn, yn;
-		int indo, indn;
-		int coordo;
-		int to, tn;
-
-		SOCBoard bo = game.getBoard();
-		for (xn = 0; xn < Board.MAXX; xn++)
-			for (yn = 0; yn < Board.MAXY; yn++) {
-				if ((xn + yn < 3) || (xn + yn > 9))
-					continue;
-				indn = bl.hexatcoord[xn][yn];
-
-				xo = 2 * xn + 1;
-				yo = 2 * (xn + yn) - 5;
-				coordo = 16 * xo + yo;
-				to = bo.getHexTypeFromCoord(coordo);
-
-				if ((to >= 0) && (to <= 5)) {
-					switch (to) {
-					case 0:
-						tn = LAND_DESERT;
-						break;
-					case 1:
-						tn = LAND_CLAY;
-						break;
-					case 2:
-						tn = LAND_STONE;
-						break;
-					case 3:
-						tn = LAND_SHEEP;
-						break;
-					case 4:
-						tn = LAND_WHEAT;
-						break;
-					case 5:
-						tn = LAND_WOOD;
-						break;
-					default:
-						tn = -1; // should cause error
-					}
-					bl.hextiles[indn].subtype = tn;
-					bl.hextiles[indn].type = TYPE_LAND;
-					bl.hextiles[indn].productionNumber = bo.getNumberOnHexFromCoord(coordo);
-
-				} else if ((to >= 7) && (to <= 12)) {
-					switch (to) {
-					case SOCBoard.MISC_PORT_HEX:
-						tn = PORT_MISC;
-						break;
-					case SOCBoard.CLAY_PORT_HEX:
-						tn = PORT_CLAY;
-						break;
-					case SOCBoard.ORE_PORT_HEX:
-						tn = PORT_STONE;
-						break;
-					case SOCBoard.SHEEP_PORT_HEX:
-						tn = PORT_SHEEP;
-						break;
-					case SOCBoard.WHEAT_PORT_HEX:
-						tn = PORT_WHEAT;
-						break;
-					case SOCBoard.WOOD_PORT_HEX:
-						tn = PORT_WOOD;
-						break;
-					default:
-						tn = PORT_MISC;
-					}
-					bl.hextiles[indn].subtype = tn;
-					bl.hextiles[indn].type = TYPE_PORT;
-				} else {
-					bl.hextiles[indn].type = TYPE_SEA;
-					bl.hextiles[indn].subtype = SEA;
-					bl.hextiles[indn].orientation = -1;
-				}
-			}
-		initTranslationTables(bl);
-		Catan.board = bl;
+		boardContext = CatanBoardContext.forBoard(game.getBoard());
+		stateMirrorStale = true;
 	}
-    
-	private int translateHexToSmartSettlers(int indo, Board bl) {
-		if (indo == -1)
-			return -1;
-		int xo = indo / 16;
-		int yo = indo % 16;
-
-		int xn = (xo - 1) / 2;
-		int yn = (yo + 5) / 2 - xn;
-
-		return bl.hexatcoord[xn][yn];
-	}
-    
-	private int translateHexToJSettlers(int indn, Board bl) {
-		if (indn == -1)
-			return -1;
-
-		int xn = (int) bl.hextiles[indn].pos.x;
-		int yn = (int) bl.hextiles[indn].pos.y;
-
-		int xo = 2 * xn + 1;
-		int yo = 2 * (xn + yn) - 5;
-
-		return xo * 16 + yo;
-	}
-
-	private int[] vertexToSS;
-	private int[] edgeToSS;
-	private int[] vertexToJS;
-	private int[] edgeToJS;
 
 	private int translateVertexToSmartSettlers(int indo) {
-		if (vertexToSS == null)
-			return 0;
-		return vertexToSS[indo];
+		return boardContext.translateVertexToSmartSettlers(indo);
 	}
 
 	private int translateEdgeToSmartSettlers(int indo) {
-		return edgeToSS[indo];
+		return boardContext.translateEdgeToSmartSettlers(indo);
 	}
 
 	private int translateVertexToJSettlers(int indo) {
-		return vertexToJS[indo];
+		return boardContext.translateVertexToJSettlers(indo);
 	}
 
 	private int translateEdgeToJSettlers(int indo) {
-		return edgeToJS[indo];
+		return boardContext.translateEdgeToJSettlers(indo);
 	}
     
 	private int translateResToJSettlers(int ind) {
@@ -2198,49 +2222,6 @@ public class MCTSRobotBrain extends StacRobotBrain implements GameStateConstants
 		}
 	}
     
-	private void initTranslationTables(Board bl) {
-		SOCBoard bo = game.getBoard();
-		int vo, vn;
-		int eo, en;
-		int ho, hn, j;
-		vertexToSS = new int[SOCBoard.MAXNODE + 1];
-		edgeToSS = new int[SOCBoard.MAXEDGE_V1 + 1];
-		vertexToJS = new int[N_VERTICES];
-		edgeToJS = new int[N_EDGES];
-
-        int[] numToHexID = 
-        {
-            0x17, 0x39, 0x5B, 0x7D,
-            0x15, 0x37, 0x59, 0x7B, 0x9D,
-            0x13, 0x35, 0x57, 0x79, 0x9B, 0xBD,
-            0x11, 0x33, 0x55, 0x77, 0x99, 0xBB, 0xDD,
-            0x31, 0x53, 0x75, 0x97, 0xB9, 0xDB,
-            0x51, 0x73, 0x95, 0xB7, 0xD9,
-            0x71, 0x93, 0xB5, 0xD7
-        };
-
-		for (j = 0; j < numToHexID.length; j++)
-		{
-			ho = numToHexID[j];
-			if (bo.getHexTypeFromCoord(ho) >= SOCBoard.WATER_HEX)
-				continue;
-			hn = translateHexToSmartSettlers(ho, bl);
-			int i = 0;
-			Vector vlist = SOCBoard.getAdjacentNodesToHex(ho);
-			Vector elist = SOCBoard.getAdjacentEdgesToHex(ho);
-			for (i = 0; i < 6; i++) {
-				vo = (Integer) vlist.get(i);
-				vn = bl.neighborHexVertex[hn][i];
-				vertexToSS[vo] = vn;
-				vertexToJS[vn] = vo;
-				eo = (Integer) elist.get(i);
-				en = bl.neighborHexEdge[hn][i];
-				edgeToSS[eo] = en;
-				edgeToJS[en] = eo;
-			}
-		}
-	}
-	
 	/**
 	 * Note: there is no direct translation! Make sure the SOCResource set doesn't contain any unknowns, otherwise these are ignored
 	 * @param set
@@ -72,7 +72,7 @@ import soc.message.SOCPlayerElement;
 import soc.message.SOCPutPiece;
 import soc.robot.SOCBuildPlanStack;
 import soc.robot.SOCBuildingSpeedEstimate;
-import soc.robot.SOCBuildingSpeedFast;
+import soc.robot.SOCBuildingSpeedMemo;
 import soc.robot.SOCBuildingSpeedFastFractional;
 import soc.robot.SOCBuildingSpeedProbabilistic;
 import soc.robot.SOCPlayerTracker;
@@ -92,7 +92,9 @@ import soc.server.database.stac.ExtGameStateRow;
 import soc.server.database.stac.ObsGameStateRow;
 import soc.server.database.stac.StacDBHelper;
 import soc.util.CappedQueue;
+import soc.util.DeepCopy;
 import soc.util.SOCRobotParameters;
+import soc.util.SnapshotStore;
 
 
 /**
@@ -123,6 +125,16 @@ public class StacRobotBrain extends SOCRobotBrain<StacRobotDM, PersuasionStacRob
         chatNegotiation = c;
     }
     
+    /**
+     * The folder a robot saves a game to before searching from it, as given to GAMECOPY.
+     * Each game has its own, so that games played at the same time don't overwrite or forget each other's saves.
+     * @param gameName the name of the game being saved
+     * @return the folder's path inside {@link DeepCopy#SAVES_DIR}, e.g. "robot/game1"
+     */
+    public static String getSaveFolder(String gameName) {
+        return "robot/" + gameName;
+    }
+    
     /**
      * Our declarative memory that holds all declarative knowledge.
      */
@@ -792,7 +804,7 @@ public class StacRobotBrain extends SOCRobotBrain<StacRobotDM, PersuasionStacRob
             return new StacBuildingSpeedFastUsingBeliefs(numbers, this);
         }
         else {
-            return new SOCBuildingSpeedFast(numbers);
+            return new SOCBuildingSpeedMemo(numbers, estimateCache);
         }
     }
     
@@ -805,7 +817,7 @@ public class StacRobotBrain extends SOCRobotBrain<StacRobotDM, PersuasionStacRob
             return new SOCBuildingSpeedFastFractional();
         }
         else {
-            return new SOCBuildingSpeedFast();
+            return new SOCBuildingSpeedMemo(estimateCache);
         }
     }
     
@@ -1099,39 +1111,27 @@ public class StacRobotBrain extends SOCRobotBrain<StacRobotDM, PersuasionStacRob
 
     /**
      * Method for initiating a save by this robot. Should be called in the main run loop, only when this robot is the current player.
-     * Use {@link StacRobotBrain#saved} flag in SOCRobotBrain to control the number of saves and avoid overwriting files in the saves/robot folder.
+     * Use {@link StacRobotBrain#saved} flag in SOCRobotBrain to control the number of saves and avoid overwriting files in the game's folder, see {@link #getSaveFolder(String)}.
      * Example of where and how to call this method can be found in commented out blocks of code inside the run loop, just add conditions.
+     * The save is kept in the {@link SnapshotStore}; to also have it in the game's folder for a later run, persist the snapshots to disk.
      */
     @Override
     public void saveGame(){
     	SOCRobotClient cl = getClient();
+    	final String saveFolder = getSaveFolder(getGame().getName());
+    	final String folder = DeepCopy.SAVES_DIR + saveFolder;
     	//send the request 
-    	cl.put(SOCGameCopy.toCmd(getGame().getName(), "robot", getPlayerNumber()));
+    	cl.put(SOCGameCopy.toCmd(getGame().getName(), saveFolder, getPlayerNumber()));
     	//create necessary directories
-    	File dir = new File("saves/robot");
-    	if(!dir.exists())
+    	File dir = new File(folder);
+    	if(SnapshotStore.isPersistToDisk() && !dir.exists())
     		dir.mkdirs();
     	//execute the saving procedure for this robot
-    	cl.unsynckedGameCopy(new SOCGameCopy(getGame().getName(), "saves/robot", -1));
+    	cl.unsynckedGameCopy(new SOCGameCopy(getGame().getName(), folder, getPlayerNumber()));
     	
-    	//check that all save procedures have been finished by checking that the files containing SOCGame exist as these are the last to be created 
-    	String name = "soc.game.SOCGame.dat";
-    	String prefix = "saves/robot/";
-    	File file;
-    	boolean finished = false;
-    	while(!finished){
-    		finished = true;
-    		for(int i = 0; i < 4; i++){
-    			file = new File(prefix + i + "_" + name);
-    			if(!file.exists()){
-    				finished = false; //need to loop for a little while longer
-    			}
-    		}
-        	try {
-				Thread.sleep(10);
-			} catch (InterruptedException e) {
-			}
-    	}
+    	//check that all save procedures have been finished by checking that each robot's SOCGame is saved as these are the last to be saved 
+    	if(!SnapshotStore.awaitAll(folder, 4, SOCGame.class, SnapshotStore.AWAIT_TIMEOUT))
+    		D.ebugERROR("Player " + getPlayerNumber() + " gave up waiting for the other robots to save the game; is " + SnapshotStore.PROP_SNAPSHOTS_DISK + " set in every process?");
     	
     }
 
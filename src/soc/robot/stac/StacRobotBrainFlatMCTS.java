@@ -23,7 +23,9 @@ import soc.robot.stac.flatmcts.FlatMCTS;
 import soc.robot.stac.flatmcts.FlatMctsType;
 import soc.util.CappedQueue;
 import soc.util.CutoffExceededException;
+import soc.util.DeepCopy;
 import soc.util.SOCRobotParameters;
+import soc.util.SnapshotStore;
 /**
  * The brain of the robot taking decisions using flat MCTS with domain knowledge extracted from the corpus or from the original JSettlers logic.
  * This class contains the definition of the flat MCTS algorithm used with all the options set here. It also works as the main branching point of
@@ -60,6 +62,12 @@ public class StacRobotBrainFlatMCTS extends StacRobotBrain {
         //also decide on the seeder type (corpus, Jsettlers, later could be both or none)
         mType.addType(FlatMctsType.SEED_METHOD, "JSETTLERS");
         mType.addType(FlatMctsType.CLUSTERING_TYPE, "" + CorpusSeeder.NO_CLUSTERING);
+        //play the rollouts on the simulation server with the robots' decision makers; HEADLESS plays them in this thread
+        //with a greedy policy and no trades between players, which is faster but a different estimator, so it isn't the default
+        mType.addType(FlatMctsType.ROLLOUT_ENGINE, "SERVER");
+        //with the HEADLESS engine, more than one worker plays rollouts at the same time, on copies of the tree (ROOT) or on the same tree (TREE)
+        mType.addType(FlatMctsType.WORKERS, "1");
+        mType.addType(FlatMctsType.PARALLEL_MODE, "ROOT");
         this.mcts = new FlatMCTS(log, mType, this); //here we create the MCTS instance
 //        mcts.initialize(); //we will want to initialize just here but there is a bug with the controlling queue preventing us from doing this
     }
@@ -204,50 +212,45 @@ public class StacRobotBrainFlatMCTS extends StacRobotBrain {
         /**
          * This method takes care of saving the game and running the MCTS search. In the meantime it forces the server not to end its turn
          * by telling it its not a robot and resets the flag after the search. It also suspends the debug and cleans after itself by deleting the saved info.
+         * The saved game is kept in the {@link SnapshotStore}, and only written to the game's folder if it persists to disk,
+         * see {@link StacRobotBrain#getSaveFolder(String)}.
          */
         private void saveAndSearch(){
         	SOCRobotClient cl = brain.getClient();
+        	final String saveFolder = StacRobotBrain.getSaveFolder(brain.getGame().getName());
+        	final String folder = DeepCopy.SAVES_DIR + saveFolder;
         	//lie to the server that we are not a robot so it won't end my turn
         	cl.put(SOCRobotFlag.toCmd(brain.getGame().getName(), false, brain.getPlayerNumber()));
         	//send the request 
-        	cl.put(SOCGameCopy.toCmd(brain.getGame().getName(), "robot", brain.getPlayerNumber()));
+        	cl.put(SOCGameCopy.toCmd(brain.getGame().getName(), saveFolder, brain.getPlayerNumber()));
         	//create necessary directories
-        	File dir = new File("saves/robot");
-        	if(!dir.exists())
+        	File dir = new File(folder);
+        	if(SnapshotStore.isPersistToDisk() && !dir.exists())
         		dir.mkdirs();
         	//execute the saving procedure for this robot
-        	cl.unsynckedGameCopy(new SOCGameCopy(brain.getGame().getName(), "saves/robot", -1));
+        	cl.unsynckedGameCopy(new SOCGameCopy(brain.getGame().getName(), folder, brain.getPlayerNumber()));
         	
-        	//check that all save procedures have been finished by checking that the files containing SOCGame exist as these are the last to be created 
-        	String name = "soc.game.SOCGame.dat";
-        	String prefix = "saves/robot/";
-        	File file;
-        	boolean finished = false;
-        	while(!finished){
-        		finished = true;
-        		for(int i = 0; i < 4; i++){
-        			file = new File(prefix + i + "_" + name);
-        			if(!file.exists()){
-        				finished = false; //need to loop for a little while longer
-        			}
-        		}
-            	try {
-    				Thread.sleep(10);
-    			} catch (InterruptedException e) {
-    			}
+        	//check that all save procedures have been finished by checking that each robot's SOCGame is saved as these are the last to be saved 
+        	if(SnapshotStore.awaitAll(folder, 4, SOCGame.class, SnapshotStore.AWAIT_TIMEOUT)){
+	        	final boolean debug = D.ebugIsEnabled();
+	        	if(debug)
+	        		D.ebug_disable();
+	        	mcts.run(depth, noSimulations);//run a search
+	        	if(debug)
+	        		D.ebug_enable();//enable it back only if needed
+        	}else{
+        		System.err.println("Player " + brain.getPlayerNumber() + " gave up waiting for the other robots to save the game; is "
+        				+ SnapshotStore.PROP_SNAPSHOTS_DISK + " set in every process?");
+        		mcts.skip();//fall back on the parent decision logic
         	}
-        	
-        	final boolean debug = D.ebugIsEnabled();
-        	if(debug)
-        		D.ebug_disable();
-        	mcts.run(depth, noSimulations);//run a search
-        	if(debug)
-        		D.ebug_enable();//enable it back only if needed
 
-        	//delete contents of robot folder without folder
+        	//forget the saved game and delete its folder with its contents
+        	SnapshotStore.remove(folder);
         	File[] files = dir.listFiles();
-        	for(File f : files)
-        		f.delete();
+        	if(files != null)
+        		for(File f : files)
+        			f.delete();
+        	dir.delete();
         	
         	//remind the server that we are a robot so the game won't get stuck later //this doesn't always seem to work
         	cl.put(SOCRobotFlag.toCmd(brain.getGame().getName(), true, brain.getPlayerNumber()));
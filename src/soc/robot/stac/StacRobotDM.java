@@ -345,22 +345,27 @@ public class StacRobotDM extends SOCRobotDM<SOCBuildPlanStack> {
                 //
                 SOCRoad tmpRoad = new SOCRoad(player, favoriteRoad.getCoordinates(), null);
 
-                HashMap trackersCopy = SOCPlayerTracker.tryPutPiece(tmpRoad, brain.getGame(), playerTrackers);
-                SOCPlayerTracker.updateWinGameETAs(trackersCopy);
+                SOCPlayerTracker.tryPutPiece(tmpRoad, brain.getGame(), playerTrackers, undoLog);
+                try {
+                    SOCPlayerTracker.updateWinGameETAs(playerTrackers);
 
-                SOCPlayerTracker ourPlayerTrackerCopy = (SOCPlayerTracker)trackersCopy.get(Integer.valueOf(player.getPlayerNumber()));
+                    SOCPlayerTracker ourPlayerTrackerAfter = (SOCPlayerTracker)playerTrackers.get(Integer.valueOf(player.getPlayerNumber()));
 
-                int ourCurrentWGETACopy = ourPlayerTrackerCopy.getWinGameETA();
-                D.ebugPrintlnINFO("ourCurrentWGETACopy = "+ourCurrentWGETACopy);
+                    int ourCurrentWGETACopy = ourPlayerTrackerAfter.getWinGameETA();
+                    D.ebugPrintlnINFO("ourCurrentWGETACopy = "+ourCurrentWGETACopy);
 
-                int leadersCurrentWGETACopy = ourCurrentWGETACopy;
-                Iterator trackersCopyIter = trackersCopy.values().iterator();
-                while (trackersCopyIter.hasNext()) {
-                    SOCPlayerTracker tracker = (SOCPlayerTracker)trackersCopyIter.next();
-                    int wgeta = tracker.getWinGameETA();
-                    if (wgeta < leadersCurrentWGETACopy) {
-                        leadersCurrentWGETACopy = wgeta;
+                    int leadersCurrentWGETACopy = ourCurrentWGETACopy;
+                    Iterator trackersAfterIter = playerTrackers.values().iterator();
+                    while (trackersAfterIter.hasNext()) {
+                        SOCPlayerTracker tracker = (SOCPlayerTracker)trackersAfterIter.next();
+                        int wgeta = tracker.getWinGameETA();
+                        if (wgeta < leadersCurrentWGETACopy) {
+                            leadersCurrentWGETACopy = wgeta;
+                        }
                     }
+                } finally {
+                    // done with the trial: scoring the new possibilities needs the trackers as they were
+                    SOCPlayerTracker.undoTryPutPiece(tmpRoad, brain.getGame(), undoLog);
                 }
 
                 Enumeration newPosEnum = favoriteRoad.getNewPossibilities().elements();
@@ -431,8 +436,6 @@ public class StacRobotDM extends SOCRobotDM<SOCBuildPlanStack> {
                     }
                 }
 
-                SOCPlayerTracker.undoTryPutPiece(tmpRoad, brain.getGame());
-
                 if (!buildingPlan.empty()) {
                     SOCPossiblePiece planPeek = (SOCPossiblePiece)buildingPlan.peek();
                     if ((planPeek == null) ||
@@ -539,9 +542,10 @@ public class StacRobotDM extends SOCRobotDM<SOCBuildPlanStack> {
         // CITIES
         // Check that there are still city pieces available
         if (player.getNumPieces(SOCPlayingPiece.CITY) > 0) {
-            Iterator possibleCitiesIter = ourPlayerTracker.getPossibleCities().values().iterator();
-            while (possibleCitiesIter.hasNext()) {
-                SOCPossibleCity posCity = (SOCPossibleCity)possibleCitiesIter.next();
+            // trying the cities changes the possible cities, so go through a snapshot of them
+            Object[] possibleCities = ourPlayerTracker.getPossibleCities().values().toArray();
+            for (int i = 0; i < possibleCities.length; i++) {
+                SOCPossibleCity posCity = (SOCPossibleCity)possibleCities[i];
 
                 // Compute the time it takes to build this city
                 int buildingSpeedEstimate = buildingETAs[SOCBuildingSpeedEstimate.CITY]; // ETA is not set for cities ... posCity.getETA();
@@ -563,14 +567,17 @@ public class StacRobotDM extends SOCRobotDM<SOCBuildPlanStack> {
                 int deltaWGETA = 0;
                 if (generateDeltaWinGameETAs) {
                     SOCCity tmpCity = new SOCCity(player, posCity.getCoordinates(), board);
-                    HashMap trackersCopy = SOCPlayerTracker.tryPutPiece(tmpCity, brain.getGame(), playerTrackers);
-                    //doing this instead of just updating it for our own player tracker (ourPlayerTrackerCopy.recalcWinGameETA();) 
-                    //is computationally costly but give slightly different values (should be slightly more accurate)
-                    SOCPlayerTracker.updateWinGameETAs(trackersCopy); 
-                    SOCPlayerTracker ourPlayerTrackerCopy = (SOCPlayerTracker)trackersCopy.get(Integer.valueOf(player.getPlayerNumber()));
-                    int ourCurrentWGETACopy = ourPlayerTrackerCopy.getWinGameETA();
-                    SOCPlayerTracker.undoTryPutPiece(tmpCity, brain.getGame());
-                    deltaWGETA = ourCurrentWGETA - ourCurrentWGETACopy;
+                    SOCPlayerTracker.tryPutPiece(tmpCity, brain.getGame(), playerTrackers, undoLog);
+                    try {
+                        //doing this instead of just updating it for our own player tracker (ourPlayerTrackerAfter.recalcWinGameETA();) 
+                        //is computationally costly but give slightly different values (should be slightly more accurate)
+                        SOCPlayerTracker.updateWinGameETAs(playerTrackers); 
+                        SOCPlayerTracker ourPlayerTrackerAfter = (SOCPlayerTracker)playerTrackers.get(Integer.valueOf(player.getPlayerNumber()));
+                        int ourCurrentWGETACopy = ourPlayerTrackerAfter.getWinGameETA();
+                        deltaWGETA = ourCurrentWGETA - ourCurrentWGETACopy;
+                    } finally {
+                        SOCPlayerTracker.undoTryPutPiece(tmpCity, brain.getGame(), undoLog);
+                    }
                 }
                 
                 // Create and store the build plan
@@ -587,9 +594,10 @@ public class StacRobotDM extends SOCRobotDM<SOCBuildPlanStack> {
             scoreSettlementsForDumb(buildingETAs[SOCBuildingSpeedEstimate.SETTLEMENT], ourBSE);
 
             // Generate the build plans for settlements
-            Iterator possibleSettlementsIter = ourPlayerTracker.getPossibleSettlements().values().iterator();
-            while (possibleSettlementsIter.hasNext()) {
-                SOCPossibleSettlement posSettlement = (SOCPossibleSettlement)possibleSettlementsIter.next();
+            // trying the settlements changes the possible settlements, so go through a snapshot of them
+            Object[] possibleSettlements = ourPlayerTracker.getPossibleSettlements().values().toArray();
+            for (int i = 0; i < possibleSettlements.length; i++) {
+                SOCPossibleSettlement posSettlement = (SOCPossibleSettlement)possibleSettlements[i];
 
                 // Get the estimated building speed
                 int buildingSpeedEstimate = posSettlement.getETA(); // buildingETAs[SOCBuildingSpeedEstimate.SETTLEMENT];
@@ -611,14 +619,17 @@ public class StacRobotDM extends SOCRobotDM<SOCBuildPlanStack> {
                 int deltaWGETA = 0;
                 if (generateDeltaWinGameETAs) {
                     SOCSettlement tmpSettlement = new SOCSettlement(player, posSettlement.getCoordinates(), board);
-                    HashMap trackersCopy = SOCPlayerTracker.tryPutPiece(tmpSettlement, brain.getGame(), playerTrackers);
-                    SOCPlayerTracker ourPlayerTrackerCopy = (SOCPlayerTracker)trackersCopy.get(Integer.valueOf(player.getPlayerNumber()));
-                    //doing this instead of just updating it for our own player tracker (ourPlayerTrackerCopy.recalcWinGameETA();) 
-                    //is computationally costly but give slightly different values (should be slightly more accurate)
-                    SOCPlayerTracker.updateWinGameETAs(trackersCopy);
-                    int ourCurrentWGETACopy = ourPlayerTrackerCopy.getWinGameETA();
-                    SOCPlayerTracker.undoTryPutPiece(tmpSettlement, brain.getGame());
-                    deltaWGETA = ourCurrentWGETA - ourCurrentWGETACopy;
+                    SOCPlayerTracker.tryPutPiece(tmpSettlement, brain.getGame(), playerTrackers, undoLog);
+                    try {
+                        //doing this instead of just updating it for our own player tracker (ourPlayerTrackerAfter.recalcWinGameETA();) 
+                        //is computationally costly but give slightly different values (should be slightly more accurate)
+                        SOCPlayerTracker.updateWinGameETAs(playerTrackers);
+                        SOCPlayerTracker ourPlayerTrackerAfter = (SOCPlayerTracker)playerTrackers.get(Integer.valueOf(player.getPlayerNumber()));
+                        int ourCurrentWGETACopy = ourPlayerTrackerAfter.getWinGameETA();
+                        deltaWGETA = ourCurrentWGETA - ourCurrentWGETACopy;
+                    } finally {
+                        SOCPlayerTracker.undoTryPutPiece(tmpSettlement, brain.getGame(), undoLog);
+                    }
                 }
 
                 // Generate the build plan, including needed roads, and store it
@@ -663,36 +674,44 @@ public class StacRobotDM extends SOCRobotDM<SOCBuildPlanStack> {
             // Calculate the deltaWinGameETA
             int deltaWinGameETA = 0;
             if (generateDeltaWinGameETAs) {
-                HashMap trackersCopy = SOCPlayerTracker.copyPlayerTrackers(playerTrackers);
-                SOCPlayerTracker ourPlayerTrackerCopy = (SOCPlayerTracker)trackersCopy.get(Integer.valueOf(player.getPlayerNumber()));
-                SOCPlayer playerCopy = new SOCPlayer(ourPlayerTrackerCopy.getPlayer());
+                // try the cards on our player tracker, with a copy of our player, and put it back afterwards
+                SOCPlayerTracker ourPlayerTrackerCopy = (SOCPlayerTracker)playerTrackers.get(Integer.valueOf(player.getPlayerNumber()));
+                SOCPlayer ourPlayer = ourPlayerTrackerCopy.getPlayer();
 
                 // There are 5 types of cards: 14 Knight, 2 Road Building, 2 Monopoly, 2 Year of Plenty, 5 VP cards
                 int[] deltaWinGameETAs = new int[5]; // array with the EP for the different dev card types
                 
-                //KNIGHTS
-                // assume we got a knight card
-                playerCopy.setNumKnights(playerCopy.getNumKnights()+1);
-                ourPlayerTrackerCopy.setPlayer(playerCopy);
-                ourPlayerTrackerCopy.recalcLargestArmyETA();
-                ourPlayerTrackerCopy.recalcWinGameETA();
-                // compute the EP and store it in the array
-                int ourCurrentWGETACopy = ourPlayerTrackerCopy.getWinGameETA();
-                deltaWinGameETA = ourCurrentWGETA - ourCurrentWGETACopy;
-                deltaWinGameETAs[0] = deltaWinGameETA;
-                // 'put back' the knight card
-                playerCopy.setNumKnights(playerCopy.getNumKnights()-1);
-
-                //PROGRESS CARDS & ONE VP CARD
-                // we already did knights, so we're doing the others now
-                SOCDevCardSet dc = playerCopy.getDevCards();
-                for (int c = SOCDevCardConstants.ROADS; c <= SOCDevCardConstants.CAP; c++) {
-                    dc.setAmount(dc.getAmount(SOCDevCardSet.NEW, c)+1, SOCDevCardSet.NEW, c);
-                    ourPlayerTrackerCopy.recalculateAllEtas();
-                    ourCurrentWGETACopy = ourPlayerTrackerCopy.getWinGameETA();
-                    int deltaWinGameETA_Progress = ourCurrentWGETA - ourCurrentWGETACopy;
-                    deltaWinGameETAs[c] = deltaWinGameETA_Progress;
-                    dc.setAmount(dc.getAmount(SOCDevCardSet.NEW, c)-1, SOCDevCardSet.NEW, c);
+                undoLog.begin(playerTrackers);
+                try {
+                    SOCPlayer playerCopy = new SOCPlayer(ourPlayer);
+
+                    //KNIGHTS
+                    // assume we got a knight card
+                    playerCopy.setNumKnights(playerCopy.getNumKnights()+1);
+                    ourPlayerTrackerCopy.setPlayer(playerCopy);
+                    ourPlayerTrackerCopy.recalcLargestArmyETA();
+                    ourPlayerTrackerCopy.recalcWinGameETA();
+                    // compute the EP and store it in the array
+                    int ourCurrentWGETACopy = ourPlayerTrackerCopy.getWinGameETA();
+                    deltaWinGameETA = ourCurrentWGETA - ourCurrentWGETACopy;
+                    deltaWinGameETAs[0] = deltaWinGameETA;
+                    // 'put back' the knight card
+                    playerCopy.setNumKnights(playerCopy.getNumKnights()-1);
+
+                    //PROGRESS CARDS & ONE VP CARD
+                    // we already did knights, so we're doing the others now
+                    SOCDevCardSet dc = playerCopy.getDevCards();
+                    for (int c = SOCDevCardConstants.ROADS; c <= SOCDevCardConstants.CAP; c++) {
+                        dc.setAmount(dc.getAmount(SOCDevCardSet.NEW, c)+1, SOCDevCardSet.NEW, c);
+                        ourPlayerTrackerCopy.recalculateAllEtas();
+                        ourCurrentWGETACopy = ourPlayerTrackerCopy.getWinGameETA();
+                        int deltaWinGameETA_Progress = ourCurrentWGETA - ourCurrentWGETACopy;
+                        deltaWinGameETAs[c] = deltaWinGameETA_Progress;
+                        dc.setAmount(dc.getAmount(SOCDevCardSet.NEW, c)-1, SOCDevCardSet.NEW, c);
+                    }
+                } finally {
+                    ourPlayerTrackerCopy.setPlayer(ourPlayer);
+                    undoLog.rollback();
                 }
 
 //                D.ebugPrintlnINFO(brain.getPlayerName() + " EP(Knights)=" + deltaWinGameETAs[0] + 
@@ -799,20 +818,28 @@ public class StacRobotDM extends SOCRobotDM<SOCBuildPlanStack> {
                 // Compute the deltaWinGameETA
                 int deltaWinGameETA = 0;
                 if (generateDeltaWinGameETAs && laBuildPlan.size() > 0) {
-                    HashMap trackersCopy = SOCPlayerTracker.copyPlayerTrackers(playerTrackers);
-                    SOCPlayerTracker ourPlayerTrackerCopy = (SOCPlayerTracker)trackersCopy.get(Integer.valueOf(player.getPlayerNumber()));
-                    SOCPlayer playerCopy = new SOCPlayer(ourPlayerTrackerCopy.getPlayer());
-                    playerCopy.setNumKnights(playerCopy.getNumKnights()+knightsToBuy);
-
-                    //ALTERNATIVE
-                    //SOCPlayer playerWithLargestArmy = brain.getGame().getPlayerWithLargestArmy();
-                    //brain.getGame().setPlayerWithLargestArmy(ourPlayerTracker.getPlayer());
-                    ourPlayerTrackerCopy.setPlayer(playerCopy);
-                    
-                    ourPlayerTrackerCopy.recalcLargestArmyETA();
-                    ourPlayerTrackerCopy.recalcWinGameETA();
-                    int ourCurrentWGETACopy = ourPlayerTrackerCopy.getWinGameETA();
-                    deltaWinGameETA = ourCurrentWGETA - ourCurrentWGETACopy;
+                    // try it on our player tracker, with a copy of our player, and put it back afterwards
+                    SOCPlayerTracker ourPlayerTrackerCopy = (SOCPlayerTracker)playerTrackers.get(Integer.valueOf(player.getPlayerNumber()));
+                    SOCPlayer ourPlayer = ourPlayerTrackerCopy.getPlayer();
+                    int ourCurrentWGETACopy;
+                    undoLog.begin(playerTrackers);
+                    try {
+                        SOCPlayer playerCopy = new SOCPlayer(ourPlayer);
+                        playerCopy.setNumKnights(playerCopy.getNumKnights()+knightsToBuy);
+
+                        //ALTERNATIVE
+                        //SOCPlayer playerWithLargestArmy = brain.getGame().getPlayerWithLargestArmy();
+                        //brain.getGame().setPlayerWithLargestArmy(ourPlayerTracker.getPlayer());
+                        ourPlayerTrackerCopy.setPlayer(playerCopy);
+                        
+                        ourPlayerTrackerCopy.recalcLargestArmyETA();
+                        ourPlayerTrackerCopy.recalcWinGameETA();
+                        ourCurrentWGETACopy = ourPlayerTrackerCopy.getWinGameETA();
+                        deltaWinGameETA = ourCurrentWGETA - ourCurrentWGETACopy;
+                    } finally {
+                        ourPlayerTrackerCopy.setPlayer(ourPlayer);
+                        undoLog.rollback();
+                    }
                     
                     //FOR ALTERNATIVE - set game back to original state
                     //brain.getGame().setPlayerWithLargestArmy(playerWithLargestArmy);
@@ -908,35 +935,44 @@ public class StacRobotDM extends SOCRobotDM<SOCBuildPlanStack> {
                 // and put the pieces on the board temporarily to calculate the deltaWinGameETA
                 SOCBuildPlanStack lrBuildPlan = new SOCBuildPlanStack();
                 int deltaWGETA = 0;
-                HashMap trackersCopy = SOCPlayerTracker.copyPlayerTrackers(playerTrackers);
-                SOCPlayerTracker ourPlayerTrackerCopy = (SOCPlayerTracker)trackersCopy.get(Integer.valueOf(player.getPlayerNumber()));
-
-                if (bestLRPath != null) {
-                    while (!bestLRPath.empty()) {
-                        SOCPossibleRoad pr = (SOCPossibleRoad)bestLRPath.pop();
-                        D.ebugPrintlnINFO("LR road at "+brain.getGame().getBoard().edgeCoordToString(pr.getCoordinates()));
-                        lrBuildPlan.push(pr);
+                // the roads go on our player tracker, and are taken off again by the undo log
+                SOCPlayerTracker ourPlayerTrackerCopy = (SOCPlayerTracker)playerTrackers.get(Integer.valueOf(player.getPlayerNumber()));
+                if (generateDeltaWinGameETAs) {
+                    undoLog.begin(playerTrackers);
+                }
+                try {
+
+                    if (bestLRPath != null) {
+                        while (!bestLRPath.empty()) {
+                            SOCPossibleRoad pr = (SOCPossibleRoad)bestLRPath.pop();
+                            D.ebugPrintlnINFO("LR road at "+brain.getGame().getBoard().edgeCoordToString(pr.getCoordinates()));
+                            lrBuildPlan.push(pr);
                         
-                        // If we're computing the deltaWinGameETA, put the piece on the board
-                        // we're just doing this in our copy of the player tracker (we're not using tryPutPiece()), so no need to pick it up again
-                        if (generateDeltaWinGameETAs) {
-                            int coordinates = pr.getCoordinates();
-                            SOCRoad tmpRoad = new SOCRoad(player, coordinates, board);
-                            ourPlayerTrackerCopy.addOurNewRoad(tmpRoad, trackersCopy, 0);//addNewRoad(tmpRoad, trackersCopy);
+                            // If we're computing the deltaWinGameETA, put the piece on the board
+                            // we're just doing this in our player tracker (we're not using tryPutPiece()), so no need to pick it up again
+                            if (generateDeltaWinGameETAs) {
+                                int coordinates = pr.getCoordinates();
+                                SOCRoad tmpRoad = new SOCRoad(player, coordinates, board);
+                                ourPlayerTrackerCopy.addOurNewRoad(tmpRoad, playerTrackers, 0);//addNewRoad(tmpRoad, trackersCopy);
+                            }
                         }
                     }
-                }
 
-                // Calculate the deltaWinGameETA
-                if (generateDeltaWinGameETAs && lrBuildPlan.size() > 0) {
-                    ourPlayerTrackerCopy.recalcLongestRoadETA();
-                    ourPlayerTrackerCopy.recalcWinGameETA();
-                    int ourCurrentWGETACopy = ourPlayerTrackerCopy.getWinGameETA();
-                    deltaWGETA = ourCurrentWGETA - ourCurrentWGETACopy;
-                    D.ebugPrintlnINFO(brain.getPlayerName() + " EP(LR) " + ourCurrentWGETA + " - " + ourCurrentWGETACopy + " = " + deltaWGETA);
+                    // Calculate the deltaWinGameETA
+                    if (generateDeltaWinGameETAs && lrBuildPlan.size() > 0) {
+                        ourPlayerTrackerCopy.recalcLongestRoadETA();
+                        ourPlayerTrackerCopy.recalcWinGameETA();
+                        int ourCurrentWGETACopy = ourPlayerTrackerCopy.getWinGameETA();
+                        deltaWGETA = ourCurrentWGETA - ourCurrentWGETACopy;
+                        D.ebugPrintlnINFO(brain.getPlayerName() + " EP(LR) " + ourCurrentWGETA + " - " + ourCurrentWGETACopy + " = " + deltaWGETA);
 
-                    // ALTERNATIVE: While this just a stupid hack, it should be close to the actual value
-                    //deltaWGETA = lrBuildPlan.size() * 8;
+                        // ALTERNATIVE: While this just a stupid hack, it should be close to the actual value
+                        //deltaWGETA = lrBuildPlan.size() * 8;
+                    }
+                } finally {
+                    if (generateDeltaWinGameETAs) {
+                        undoLog.rollback();
+                    }
                 }
                 
                 // Add build plan to the declarative memeory
@@ -2151,65 +2187,60 @@ public class StacRobotDM extends SOCRobotDM<SOCBuildPlanStack> {
         /// pick a city that can be built now
         ///
         if (player.getNumPieces(SOCPlayingPiece.CITY) > 0) {
-            HashMap trackersCopy = SOCPlayerTracker.copyPlayerTrackers(playerTrackers);
-            SOCPlayerTracker ourTrackerCopy = (SOCPlayerTracker)trackersCopy.get(Integer.valueOf(player.getPlayerNumber()));
+            SOCPlayerTracker ourTrackerAfter = (SOCPlayerTracker)playerTrackers.get(Integer.valueOf(player.getPlayerNumber()));
             int originalWGETAs[] = new int[brain.getGame().maxPlayers];	 
-            int WGETAdiffs[] = new int[brain.getGame().maxPlayers];	 
-            Vector leaders = new Vector();
-            int bestWGETA = 1000;
             // int bonus = 0;
 
-            Iterator posCitiesIter = ourPlayerTracker.getPossibleCities().values().iterator();
-            while (posCitiesIter.hasNext()) {
-                SOCPossibleCity posCity = (SOCPossibleCity)posCitiesIter.next();
+            //
+            // the win game ETAs before placing a city are the same for each city,
+            // so work them out just once
+            //
+            if ((brain != null) && (brain.getDRecorder().isOn())) {
+                brain.getDRecorder().suspend();
+            }
+            Vector leaders;
+            undoLog.begin(playerTrackers);
+            try {
+                SOCPlayerTracker.updateWinGameETAs(playerTrackers);
+                leaders = findLeaders(playerTrackers, originalWGETAs);
+            } finally {
+                undoLog.rollback();
+            }
+            if ((brain != null) && (brain.getDRecorder().isOn())) {
+                brain.getDRecorder().resume();
+            }
+
+            // the trials change the possible cities, so go through a snapshot of them
+            Object[] posCities = ourPlayerTracker.getPossibleCities().values().toArray();
+            for (int i = 0; i < posCities.length; i++) {
+                SOCPossibleCity posCity = (SOCPossibleCity)posCities[i];
                 if ((brain != null) && (brain.getDRecorder().isOn())) {
                     brain.getDRecorder().startRecording("CITY"+posCity.getCoordinates());
                     brain.getDRecorder().record("Estimate value of city at "+brain.getGame().getBoard().nodeCoordToString(posCity.getCoordinates()));
                 } 
 
                 //
-                // see how building this piece impacts our winETA
-                //
-                leaders.clear();
-                if ((brain != null) && (brain.getDRecorder().isOn())) {
-                    brain.getDRecorder().suspend();
-                }
-                SOCPlayerTracker.updateWinGameETAs(trackersCopy);
-                Iterator trackersBeforeIter = trackersCopy.values().iterator();
-                while (trackersBeforeIter.hasNext()) {
-                    SOCPlayerTracker trackerBefore = (SOCPlayerTracker)trackersBeforeIter.next();
-                    D.ebugPrintlnINFO("$$$ win game ETA for player "+trackerBefore.getPlayer().getPlayerNumber()+" = "+trackerBefore.getWinGameETA());
-                    originalWGETAs[trackerBefore.getPlayer().getPlayerNumber()] = trackerBefore.getWinGameETA();
-                    WGETAdiffs[trackerBefore.getPlayer().getPlayerNumber()] = trackerBefore.getWinGameETA();
-                    if (trackerBefore.getWinGameETA() < bestWGETA) {
-                        bestWGETA = trackerBefore.getWinGameETA();
-                        leaders.removeAllElements();
-                        leaders.addElement(trackerBefore);
-                    } else if (trackerBefore.getWinGameETA() == bestWGETA) {
-                        leaders.addElement(trackerBefore);
-                    }
-                }		
-                D.ebugPrintlnINFO("^^^^ bestWGETA = "+bestWGETA);
-                if ((brain != null) && (brain.getDRecorder().isOn())) {
-                    brain.getDRecorder().resume();
-                }
-                //
+                // see how building this piece impacts our winETA:
                 // place the city
                 //
                 SOCCity tmpCity = new SOCCity(player, posCity.getCoordinates(), null);
-                brain.getGame().putTempPiece(tmpCity);
-
-                ourTrackerCopy.addOurNewCity(tmpCity);
+                float wgetaScore;
+                undoLog.begin(playerTrackers);
+                try {
+                    brain.getGame().putTempPiece(tmpCity);
 
-                SOCPlayerTracker.updateWinGameETAs(trackersCopy);
+                    ourTrackerAfter.addOurNewCity(tmpCity);
 
-                float wgetaScore = calcWGETABonusAux(originalWGETAs, trackersCopy, leaders);
+                    SOCPlayerTracker.updateWinGameETAs(playerTrackers);
 
-                //
-                // remove the city
-                //
-                ourTrackerCopy.undoAddOurNewCity(posCity);
-                brain.getGame().undoPutTempPiece(tmpCity);
+                    wgetaScore = calcWGETABonusAux(originalWGETAs, playerTrackers, leaders);
+                } finally {
+                    //
+                    // remove the city
+                    //
+                    undoLog.rollback();
+                    brain.getGame().undoPutTempPiece(tmpCity);
+                }
 
                 D.ebugPrintlnINFO("*** ETA for city = "+buildingETAs[SOCBuildingSpeedEstimate.CITY]);
                 if ((brain != null) && (brain.getDRecorder().isOn())) {
@@ -2362,9 +2393,10 @@ public class StacRobotDM extends SOCRobotDM<SOCBuildPlanStack> {
 	    }
          */
 
-        Iterator posSetsIter = ourPlayerTracker.getPossibleSettlements().values().iterator();
-        while (posSetsIter.hasNext()) {
-            SOCPossibleSettlement posSet = (SOCPossibleSettlement)posSetsIter.next();
+        // the trials change the possible settlements, so go through a snapshot of them
+        Object[] posSets = ourPlayerTracker.getPossibleSettlements().values().toArray();
+        for (int i = 0; i < posSets.length; i++) {
+            SOCPossibleSettlement posSet = (SOCPossibleSettlement)posSets[i];
             D.ebugPrintlnINFO("*** scoring possible settlement at "+Integer.toHexString(posSet.getCoordinates()));
             if (!threatenedSettlements.contains(posSet)) {
                 threatenedSettlements.addElement(posSet);
@@ -2390,29 +2422,33 @@ public class StacRobotDM extends SOCRobotDM<SOCBuildPlanStack> {
                     brain.getDRecorder().record("Estimate value of settlement at "+board.nodeCoordToString(posSet.getCoordinates()));
                 } 
 
-                HashMap trackersCopy = SOCPlayerTracker.tryPutPiece(tmpSet, brain.getGame(), playerTrackers);
-                SOCPlayerTracker.updateWinGameETAs(trackersCopy);
-                float wgetaScore = calcWGETABonus(playerTrackers, trackersCopy);
-                D.ebugPrintlnINFO("***  wgetaScore = "+wgetaScore);
+                int originalWGETAs[] = new int[brain.getGame().maxPlayers];
+                Vector leaders = findLeaders(playerTrackers, originalWGETAs);
+                SOCPlayerTracker.tryPutPiece(tmpSet, brain.getGame(), playerTrackers, undoLog);
+                try {
+                    SOCPlayerTracker.updateWinGameETAs(playerTrackers);
+                    float wgetaScore = calcWGETABonusAux(originalWGETAs, playerTrackers, leaders);
+                    D.ebugPrintlnINFO("***  wgetaScore = "+wgetaScore);
 
-                D.ebugPrintlnINFO("*** ETA for settlement = "+settlementETA);
-                if ((brain != null) && (brain.getDRecorder().isOn())) {
-                    brain.getDRecorder().record("ETA = "+settlementETA);
-                } 
+                    D.ebugPrintlnINFO("*** ETA for settlement = "+settlementETA);
+                    if ((brain != null) && (brain.getDRecorder().isOn())) {
+                        brain.getDRecorder().record("ETA = "+settlementETA);
+                    } 
 
-                float etaBonus = getETABonus(settlementETA, leadersCurrentWGETA, wgetaScore);
-                D.ebugPrintlnINFO("etaBonus = "+etaBonus);
+                    float etaBonus = getETABonus(settlementETA, leadersCurrentWGETA, wgetaScore);
+                    D.ebugPrintlnINFO("etaBonus = "+etaBonus);
 
-                //posSet.addToScore(wgetaScore);
-                posSet.addToScore(etaBonus);
+                    //posSet.addToScore(wgetaScore);
+                    posSet.addToScore(etaBonus);
 
-                if ((brain != null) && (brain.getDRecorder().isOn())) {
-                    brain.getDRecorder().record("WGETA score = "+df1.format(wgetaScore));
-                    brain.getDRecorder().record("Total settlement score = "+df1.format(etaBonus));
-                    brain.getDRecorder().stopRecording();
-                } 
-
-                SOCPlayerTracker.undoTryPutPiece(tmpSet, brain.getGame());
+                    if ((brain != null) && (brain.getDRecorder().isOn())) {
+                        brain.getDRecorder().record("WGETA score = "+df1.format(wgetaScore));
+                        brain.getDRecorder().record("Total settlement score = "+df1.format(etaBonus));
+                        brain.getDRecorder().stopRecording();
+                    } 
+                } finally {
+                    SOCPlayerTracker.undoTryPutPiece(tmpSet, brain.getGame(), undoLog);
+                }
             }
         }
     } 
@@ -2433,7 +2469,6 @@ public class StacRobotDM extends SOCRobotDM<SOCBuildPlanStack> {
         D.ebugPrintlnINFO("ourCurrentWGETA = "+ourCurrentWGETA);
 
 
-        HashMap trackersCopy = null;
         SOCRoad tmpRoad1 = null;
 
         D.ebugPrintlnINFO("--- before [start] ---");
@@ -2449,55 +2484,59 @@ public class StacRobotDM extends SOCRobotDM<SOCBuildPlanStack> {
             D.ebugPrintlnINFO("crap in getWinGameETABonusForRoad - "+e);
         }
         tmpRoad1 = new SOCRoad(player, posRoad.getCoordinates(), null);
-        trackersCopy = SOCPlayerTracker.tryPutPiece(tmpRoad1, brain.getGame(), playerTrackers);
-        SOCPlayerTracker.updateWinGameETAs(trackersCopy);
-        float score = calcWGETABonus(playerTrackers, trackersCopy);
+        int originalWGETAs[] = new int[brain.getGame().maxPlayers];
+        Vector leaders = findLeaders(playerTrackers, originalWGETAs);
+        float etaBonus;
+        SOCPlayerTracker.tryPutPiece(tmpRoad1, brain.getGame(), playerTrackers, undoLog);
+        try {
+            SOCPlayerTracker.updateWinGameETAs(playerTrackers);
+            float score = calcWGETABonusAux(originalWGETAs, playerTrackers, leaders);
 
-        if (!posRoad.getThreats().isEmpty()) {
-            score *= threatMultiplier;
-            D.ebugPrintlnINFO("***  (THREAT MULTIPLIER) score * "+threatMultiplier+" = "+score);
-        }
-        D.ebugPrintlnINFO("*** ETA for road = "+roadETA);
-        float etaBonus = getETABonus(roadETA, leadersCurrentWGETA, score);
-        D.ebugPrintlnINFO("$$$ score = "+score);
-        D.ebugPrintlnINFO("etaBonus = "+etaBonus);
-        posRoad.addToScore(etaBonus);
+            if (!posRoad.getThreats().isEmpty()) {
+                score *= threatMultiplier;
+                D.ebugPrintlnINFO("***  (THREAT MULTIPLIER) score * "+threatMultiplier+" = "+score);
+            }
+            D.ebugPrintlnINFO("*** ETA for road = "+roadETA);
+            etaBonus = getETABonus(roadETA, leadersCurrentWGETA, score);
+            D.ebugPrintlnINFO("$$$ score = "+score);
+            D.ebugPrintlnINFO("etaBonus = "+etaBonus);
+            posRoad.addToScore(etaBonus);
 
-        if ((brain != null) && (brain.getDRecorder().isOn())) {
-            brain.getDRecorder().record("ETA = "+roadETA);
-            brain.getDRecorder().record("WGETA Score = "+df1.format(score));
-            brain.getDRecorder().record("Total road score = "+df1.format(etaBonus));
-        } 
+            if ((brain != null) && (brain.getDRecorder().isOn())) {
+                brain.getDRecorder().record("ETA = "+roadETA);
+                brain.getDRecorder().record("WGETA Score = "+df1.format(score));
+                brain.getDRecorder().record("Total road score = "+df1.format(etaBonus));
+            } 
 
-        D.ebugPrintlnINFO("--- after [end] ---");
-        SOCPlayerTracker.undoTryPutPiece(tmpRoad1, brain.getGame());
-        player.getResources().clear();
-        player.getResources().add(originalResources);
+            D.ebugPrintlnINFO("--- after [end] ---");
+        } finally {
+            SOCPlayerTracker.undoTryPutPiece(tmpRoad1, brain.getGame(), undoLog);
+            player.getResources().clear();
+            player.getResources().add(originalResources);
+        }
         D.ebugPrintlnINFO("--- cleanup done ---");
 
         return etaBonus;
     }
 
     /**
-     * calc the win game eta bonus
+     * get the win game ETAs before a move, to calc the win game eta bonus
+     * with {@link #calcWGETABonusAux(int[], HashMap, Vector)} once the move is tried
      *
      * @param  trackersBefore   list of player trackers before move
-     * @param  trackersAfter    list of player trackers after move
+     * @param  originalWGETAs   filled with the win game ETAs before move, indexed by player number
+     * @return the leaders: the trackers with the lowest win game ETA
      */
-    private float calcWGETABonus(HashMap trackersBefore, HashMap trackersAfter) {
-        D.ebugPrintlnINFO("^^^^^ calcWGETABonus");
-        int originalWGETAs[] = new int[brain.getGame().maxPlayers];	 
-        int WGETAdiffs[] = new int[brain.getGame().maxPlayers];	 
+    private Vector findLeaders(HashMap trackersBefore, int[] originalWGETAs) {
+        D.ebugPrintlnINFO("^^^^^ findLeaders");
         Vector leaders = new Vector();
         int bestWGETA = 1000;
-        float bonus = 0;
 
         Iterator trackersBeforeIter = trackersBefore.values().iterator();
         while (trackersBeforeIter.hasNext()) {
             SOCPlayerTracker trackerBefore = (SOCPlayerTracker)trackersBeforeIter.next();
             D.ebugPrintlnINFO("$$$ win game ETA for player "+trackerBefore.getPlayer().getPlayerNumber()+" = "+trackerBefore.getWinGameETA());
             originalWGETAs[trackerBefore.getPlayer().getPlayerNumber()] = trackerBefore.getWinGameETA();
-            WGETAdiffs[trackerBefore.getPlayer().getPlayerNumber()] = trackerBefore.getWinGameETA();
 
             if (trackerBefore.getWinGameETA() < bestWGETA) {
                 bestWGETA = trackerBefore.getWinGameETA();
@@ -2510,11 +2549,7 @@ public class StacRobotDM extends SOCRobotDM<SOCBuildPlanStack> {
 
         D.ebugPrintlnINFO("^^^^ bestWGETA = "+bestWGETA);
 
-        bonus = calcWGETABonusAux(originalWGETAs, trackersAfter, leaders);
-
-        D.ebugPrintlnINFO("^^^^ final bonus = "+bonus);
-
-        return bonus;
+        return leaders;
     }
 
     /**
@@ -12,7 +12,7 @@ import soc.game.SOCSettlement;
 import soc.message.SOCPutPiece;
 import soc.robot.SOCBuildPlanStack;
 import soc.robot.SOCBuildingSpeedEstimate;
-import soc.robot.SOCBuildingSpeedFast;
+import soc.robot.SOCBuildingSpeedMemo;
 import soc.robot.SOCBuildingSpeedFastFractional;
 import soc.robot.SOCBuildingSpeedProbabilistic;
 import soc.robot.SOCPlayerTracker;
@@ -58,10 +58,17 @@ public class StacRobotDummyBrain extends SOCRobotBrainImpl{
 	 */
 	public void handlePUTPIECE_updateTrackers(SOCPutPiece mes)
     {
-        final int pn = mes.getPlayerNumber();
-        final int coord = mes.getCoordinates();
-        final int pieceType = mes.getPieceType();
+        trackNewPiece(mes.getPlayerNumber(), mes.getPieceType(), mes.getCoordinates());
+    }
 
+	/**
+	 * Run a piece which has just been placed in the game through the trackers, without a message.
+	 * @param pn the player who placed it
+	 * @param pieceType its type, as in {@link SOCPlayingPiece}
+	 * @param coord its coordinates
+	 */
+	public void trackNewPiece(int pn, int pieceType, int coord)
+    {
         switch (pieceType)
         {
         case SOCPlayingPiece.ROAD:
@@ -107,7 +114,7 @@ public class StacRobotDummyBrain extends SOCRobotBrainImpl{
 	
 	@Override
     public SOCBuildingSpeedEstimate getEstimator() {
-		return new SOCBuildingSpeedFast();//always fast
+		return new SOCBuildingSpeedMemo(estimateCache);//always fast
     }
 
 	/**
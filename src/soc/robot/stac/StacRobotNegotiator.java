@@ -24,6 +24,7 @@ import soc.debug.D;
 import soc.dialogue.StacTradeMessage;
 import soc.game.SOCBoard;
 import soc.game.SOCGame;
+import soc.game.SOCPackedResources;
 import soc.game.SOCPlayer;
 import soc.game.SOCPlayingPiece;
 import soc.game.SOCResourceConstants;
@@ -36,7 +37,6 @@ import soc.robot.SOCBuildingSpeedEstimate;
 import soc.robot.SOCPlayerTracker;
 import soc.robot.SOCPossiblePiece;
 import soc.robot.SOCPossibleSettlement;
-import soc.robot.SOCResSetBuildTimePair;
 import soc.robot.SOCRobotDM;
 import soc.robot.SOCRobotDMImpl;
 import soc.robot.SOCRobotNegotiator;
@@ -47,7 +47,7 @@ import soc.robot.stac.StacRobotType;
 import soc.robot.stac.negotiationlearning.LearningNegotiator;
 import soc.robot.stac.negotiationlearning.BoardGameState;
 import soc.robot.stac.negotiationlearning.RewardFunction;
-import soc.util.CutoffExceededException;
+import soc.util.LineServiceClient;
 import weka.core.logging.Logger;
 
 public class StacRobotNegotiator extends SOCRobotNegotiator<SOCBuildPlanStack> {
@@ -628,16 +628,19 @@ public class StacRobotNegotiator extends SOCRobotNegotiator<SOCBuildPlanStack> {
 					// DRL agent as server
 					String state = BoardGameState.getBoardRepresentation(ourPlayerData, game, null, buildPlan);
 					String lastDeepTrade = getTradeFromServer("agent=0|state="+state+"|actions="+actions); 
-					classOffer = brain.rewards.offerList.get(lastDeepTrade);
-
-					// sanity check
-					if (classOffer == null) { 
-						System.out.println("WARNING: selectedOffer is NULL actions="+actions + " rewards.offerList="+brain.rewards.offerList.keySet().toString() + " lastDeepTrade="+lastDeepTrade);
-						System.out.println("trades="+trades.toString());
-						System.exit(0);
-
-					} else {
-						return classOffer;
+					// null if the agent timed out, which getTradeFromServer has reported: go on with our own choice
+					if (lastDeepTrade != null) {
+						classOffer = brain.rewards.offerList.get(lastDeepTrade);
+
+						// sanity check
+						if (classOffer == null) { 
+							System.out.println("WARNING: selectedOffer is NULL actions="+actions + " rewards.offerList="+brain.rewards.offerList.keySet().toString() + " lastDeepTrade="+lastDeepTrade);
+							System.out.println("trades="+trades.toString());
+							System.exit(0);
+
+						} else {
+							return classOffer;
+						}
 					}
 				}
 			}
@@ -658,25 +661,27 @@ public class StacRobotNegotiator extends SOCRobotNegotiator<SOCBuildPlanStack> {
 		return selectedOffer;
 	}
 
+	/**
+	 * Ask the DRL agent for a trade, through the client to it shared by all the robots of the process.
+	 * @param message the state and the allowed actions
+	 * @return the agent's choice, an empty string if it couldn't be reached (as before there was a timeout),
+	 *         or null if it didn't answer within {@link LineServiceClient#DEFAULT_TIMEOUT} ms
+	 */
 	private String getTradeFromServer(String message) {
 		String host = "localhost";
 		int port = 7777;
-		String inputLine = "";
-
+		String inputLine;
 		try {
-			Socket clientSocket = new Socket(host, port);
-			PrintWriter writer = new PrintWriter(clientSocket.getOutputStream(), true);
-			writer.println(message);
-
-			BufferedReader reader = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
-			while((inputLine = reader.readLine()) != null) break;
-			clientSocket.close();
-
-		} catch(IOException e) {
+			inputLine = LineServiceClient.get(host, port).requestOrTimeout(message);
+		} catch (SocketTimeoutException e) {
+			System.err.println("StacRobotNegotiator: no trade from " + host + " on port " + port + " within "
+					+ LineServiceClient.DEFAULT_TIMEOUT + " ms; making our own offer instead: " + e.getMessage());
+			return null;
+		}
+		if (inputLine == null) {
 			System.out.println("StacRobotNegotiator: Couldn't communicate with " + host + " on port: " + port);
-			e.printStackTrace();
+			inputLine = "";
 		}
-
 		return inputLine;
 	}
 
@@ -800,9 +805,8 @@ public class StacRobotNegotiator extends SOCRobotNegotiator<SOCBuildPlanStack> {
 
 	private StacTradeOffer selectOfferFromClassifier( List<TradeOfferWithStats> trades ) {
 
-		StacTradeOffer bestOffer = null;
+		ArrayList<TradeOfferWithStats> candidates = new ArrayList<TradeOfferWithStats>();
 		Iterator<TradeOfferWithStats> i = trades.iterator();
-		double bestScore = 0;
 		while (i.hasNext()) {
 			TradeOfferWithStats t = i.next();
 			int opn = ourPlayerData.getPlayerNumber();
@@ -810,24 +814,30 @@ public class StacRobotNegotiator extends SOCRobotNegotiator<SOCBuildPlanStack> {
 			StacTradeOffer offerToCheck = new StacTradeOffer( game.toString(), opn, offeredTo, t.give, false, t.get, false );
 
 			if ( !brain.getMemory().pastTradeOfferExists(offerToCheck) ) {
-				String numKnights = ""+ourPlayerData.getNumKnights();
-				String numDevCards = ""+ourPlayerData.getDevCards().getTotal();
-				String numRoads = ""+ourPlayerData.getRoads().size();
-				String numSettlements = ""+ourPlayerData.getSettlements().size();
-				String numCities = ""+ourPlayerData.getCities().size();
-				String buildups = "knights="+numKnights + "|devcards="+numDevCards + "|roads="+numRoads + "|settlements="+numSettlements + "|cities="+numCities;
-				//System.out.println("buildups=>"+buildups);
-				String resources = ourPlayerData.getResources().toString();
-				double score = sltrader.getScoredOffer(resources, buildups, t.give.toString(), t.get.toString(), brain.tradePreferences);
-				if (score > bestScore) {
-					bestOffer = t.getOffer();
-					bestScore = score;
-				}
-				//int randomIndex = (int) Math.floor(Math.random() * trades.size());
-				//selectedOffer = trades.get(randomIndex).getOffer();
-				//System.out.println("offer="+t.toString() + " resources=" + resources + " score="+score);// + " give="+selectedOffer.getGiveSet());
-				//System.out.println("HAS:"+resources + " GIV:"+t.give.toString()+ " GET:"+t.get.toString() + " score="+score);// + " give="+selectedOffer.getGiveSet());
+				candidates.add(t);
+			}
+		}
+
+		// our resources and buildups are the same for every offer, so they are encoded once and the offers scored together
+		BayesianSupervisedLearner.OfferContext context = new BayesianSupervisedLearner.OfferContext(
+				resourceAmounts(ourPlayerData.getResources()), ourPlayerData.getNumKnights(), ourPlayerData.getDevCards().getTotal(),
+				ourPlayerData.getRoads().size(), ourPlayerData.getSettlements().size(), ourPlayerData.getCities().size() );
+		int[][] gives = new int[candidates.size()][];
+		int[][] gets = new int[candidates.size()][];
+		for (int c = 0; c < candidates.size(); c++) {
+			gives[c] = resourceAmounts(candidates.get(c).give);
+			gets[c] = resourceAmounts(candidates.get(c).get);
+		}
+		double[] scores = sltrader.getScoredOffers(context, gives, gets, brain.tradePreferences);
+
+		StacTradeOffer bestOffer = null;
+		double bestScore = 0;
+		for (int c = 0; c < candidates.size(); c++) {
+			if (scores[c] > bestScore) {
+				bestOffer = candidates.get(c).getOffer();
+				bestScore = scores[c];
 			}
+			//System.out.println("HAS:"+context.getResources() + " GIV:"+candidates.get(c).give.toString()+ " GET:"+candidates.get(c).get.toString() + " score="+scores[c]);
 		}
 
 		//System.out.printf( "Selected legal offer after data-driven re-ranking: %s\n", (bestOffer==null?"null":bestOffer.toString()) );
@@ -835,6 +845,17 @@ public class StacRobotNegotiator extends SOCRobotNegotiator<SOCBuildPlanStack> {
 
 	}
 
+	/**
+	 * @return the amounts of clay, ore, sheep, wheat and wood in the set
+	 */
+	private static int[] resourceAmounts( SOCResourceSet set ) {
+		int[] amounts = new int[SOCResourceConstants.WOOD - SOCResourceConstants.CLAY + 1];
+		for (int r = 0; r < amounts.length; r++) {
+			amounts[r] = set.getAmount(SOCResourceConstants.CLAY + r);
+		}
+		return amounts;
+	}
+
 	/*private void recordInfo_TradeOffers( List<TradeOfferWithStats> trades ) {
 
 		rewards = new RewardFunction();
@@ -1671,49 +1692,23 @@ public class StacRobotNegotiator extends SOCRobotNegotiator<SOCBuildPlanStack> {
 			return legalOffers;
 		}        
 
-		// Iterate through giveable (quickest filter) 
+		// Go through the catalogue of offer shapes, which lists them in the order they used to be built in here.
+		// Each offer gets its own resource sets, since callers may change an offer's sets
 		int ourPn = ourPlayerData.getPlayerNumber();
-		for (int give = SOCResourceConstants.CLAY; give<=SOCResourceConstants.WOOD; give++) {
-			if (current.getAmount(give)>0) {
-				SOCResourceSet rsGive = new SOCResourceSet();
-				rsGive.add(1, give);
-
-				// Iterate through gettable (everything but giving)
-				for (int get = SOCResourceConstants.CLAY; get<=SOCResourceConstants.WOOD; get++) {
-					if (give != get) {
-						// Add the one-for-one
-						SOCResourceSet rsGet = new SOCResourceSet();
-						rsGet.add(1, get);
-						legalOffers.add(new TradeOfferWithStats(rsGive, false, rsGet, false, ourPn, to));
-
-						// Imbalanced trades
-						// consider giving 2 resources
-						if (twoForOne) {
-							for (int give2 = give; give2<=SOCResourceConstants.WOOD; give2++) { //otherwise we're looking at the options twice
-								if (give2 != get) {
-									SOCResourceSet rsGive2 = rsGive.copy();
-									rsGive2.add(1, give2);
-									if (current.contains(rsGive2)) {
-										legalOffers.add(new TradeOfferWithStats(rsGive2, false, rsGet, false, ourPn, to));
-									}
-								}
-							}
-						}
-
-						// consider asking for 2 resources
-						if (oneForTwo) {
-							for (int get2 = get; get2<=SOCResourceConstants.WOOD; get2++) {
-								if (get2 != give) {
-									SOCResourceSet rsGet2 = rsGet.copy();
-									rsGet2.add(1, get2);
-									if (current.contains(rsGive)) {
-										legalOffers.add(new TradeOfferWithStats(rsGive, false, rsGet2, false, ourPn, to));
-									}
-								}
-							}
-						}
-					}
+		boolean packed = SOCPackedResources.canPack(current);
+		long currentPacked = packed ? SOCPackedResources.pack(current) : SOCPackedResources.EMPTY;
+		for (int shape = 0; shape < TradeOfferShapes.size(); shape++) {
+			int kind = TradeOfferShapes.getKind(shape);
+			if ((kind == TradeOfferShapes.TWO_FOR_ONE && !twoForOne) || (kind == TradeOfferShapes.ONE_FOR_TWO && !oneForTwo)) {
+				continue;
+			}
+			SOCResourceSet give = packed ? null : TradeOfferShapes.toResourceSet(TradeOfferShapes.getGiveIndex(shape));
+			if (packed ? SOCPackedResources.contains(currentPacked, TradeOfferShapes.getGive(shape)) : current.contains(give)) {
+				if (give == null) {
+					give = TradeOfferShapes.toResourceSet(TradeOfferShapes.getGiveIndex(shape));
 				}
+				SOCResourceSet get = TradeOfferShapes.toResourceSet(TradeOfferShapes.getGetIndex(shape));
+				legalOffers.add(new TradeOfferWithStats(give, false, get, false, ourPn, to));
 			}
 		}
 
@@ -1989,11 +1984,15 @@ public class StacRobotNegotiator extends SOCRobotNegotiator<SOCBuildPlanStack> {
 		// See what resources we have extra, i.e. which resources we can spare (the subtract method takes care that no value is < 0)
 		SOCResourceSet extraResources = currentResources.copy();
 		extraResources.subtract(resourcesNeededForBBP);
+		boolean packed = SOCPackedResources.canPack(extraResources);
+		long extraPacked = packed ? SOCPackedResources.pack(extraResources) : SOCPackedResources.EMPTY;
 
 		// Now get all the trade offers where we give away too much
 		for (TradeOfferWithStats offer : trades) {
-			SOCResourceSet giveSet = offer.getOffer().getGiveSet();
-			if (!extraResources.contains(giveSet)) {
+			SOCResourceSet giveSet = offer.give;
+			boolean spare = (packed && SOCPackedResources.canPack(giveSet))
+					? SOCPackedResources.contains(extraPacked, SOCPackedResources.pack(giveSet)) : extraResources.contains(giveSet);
+			if (!spare) {
 				remove.add(offer);
 			}
 		}
@@ -4159,13 +4158,10 @@ public class StacRobotNegotiator extends SOCRobotNegotiator<SOCBuildPlanStack> {
 
 		int offerBuildingTime = 1000;
 
-		try
-		{
-			SOCResSetBuildTimePair offerBuildingTimePair = estimate.calculateRollsFast(ourResourcesCopy, targetResources, 1000, player.getPortFlags());
-			offerBuildingTime = offerBuildingTimePair.getRolls();
-		}
-		catch (CutoffExceededException e)
+		final int rolls = estimate.calculateRolls(ourResourcesCopy, targetResources, 1000, player.getPortFlags());
+		if (rolls != SOCBuildingSpeedEstimate.CUTOFF_EXCEEDED)
 		{
+			offerBuildingTime = rolls;
 		}
 
 		D.ebugPrintlnINFO("*** offerBuildingTime = " + offerBuildingTime);
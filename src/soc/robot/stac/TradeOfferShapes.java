@@ -0,0 +1,119 @@
+package soc.robot.stac;
+
+import java.util.ArrayList;
+
+import soc.game.SOCPackedResources;
+import soc.game.SOCResourceConstants;
+import soc.game.SOCResourceSet;
+
+/**
+ * The catalogue of the offers the negotiator makes up by itself: every way of giving one resource for one other,
+ * two for one and one for two, as packed sets (see {@link SOCPackedResources}), worked out once.
+ * The shapes are in the order {@link StacRobotNegotiator#getLegalOffers(boolean[], boolean, boolean)} has always
+ * listed them: by the resource given, then the resource received, each one-for-one followed by the two-for-ones and
+ * the one-for-twos built on it.
+ * <p>
+ * Each side of a shape is one of a few {@link #getNumSets() sets}, kept packed; {@link #toResourceSet(int)}
+ * makes a new resource set from one for each offer, since offers may be changed once handed out.
+ */
+public final class TradeOfferShapes {
+
+	/** Kinds of shape */
+	public static final int ONE_FOR_ONE = 0, TWO_FOR_ONE = 1, ONE_FOR_TWO = 2;
+
+	/** The distinct sides: one of a resource, two of a resource, one each of two resources */
+	private static final long[] SETS;
+
+	/** For each shape, its kind and the index among {@link #SETS} of what is given and of what is received */
+	private static final int[] KIND, GIVE, GET;
+
+	static {
+		ArrayList<Long> sets = new ArrayList<Long>();
+		ArrayList<int[]> shapes = new ArrayList<int[]>();
+		for (int give = SOCResourceConstants.CLAY; give <= SOCResourceConstants.WOOD; give++) {
+			long rsGive = SOCPackedResources.of(1, give);
+			for (int get = SOCResourceConstants.CLAY; get <= SOCResourceConstants.WOOD; get++) {
+				if (give != get) {
+					long rsGet = SOCPackedResources.of(1, get);
+					shapes.add(new int[] { ONE_FOR_ONE, indexOf(sets, rsGive), indexOf(sets, rsGet) });
+					for (int give2 = give; give2 <= SOCResourceConstants.WOOD; give2++) {
+						if (give2 != get) {
+							long rsGive2 = SOCPackedResources.add(rsGive, 1, give2);
+							shapes.add(new int[] { TWO_FOR_ONE, indexOf(sets, rsGive2), indexOf(sets, rsGet) });
+						}
+					}
+					for (int get2 = get; get2 <= SOCResourceConstants.WOOD; get2++) {
+						if (get2 != give) {
+							long rsGet2 = SOCPackedResources.add(rsGet, 1, get2);
+							shapes.add(new int[] { ONE_FOR_TWO, indexOf(sets, rsGive), indexOf(sets, rsGet2) });
+						}
+					}
+				}
+			}
+		}
+		SETS = new long[sets.size()];
+		for (int i = 0; i < SETS.length; i++)
+			SETS[i] = sets.get(i);
+		KIND = new int[shapes.size()];
+		GIVE = new int[shapes.size()];
+		GET = new int[shapes.size()];
+		for (int i = 0; i < shapes.size(); i++) {
+			KIND[i] = shapes.get(i)[0];
+			GIVE[i] = shapes.get(i)[1];
+			GET[i] = shapes.get(i)[2];
+		}
+	}
+
+	private TradeOfferShapes() {}
+
+	/** @return the index of the set, adding it if it isn't there yet */
+	private static int indexOf(ArrayList<Long> sets, long set) {
+		int i = sets.indexOf(set);
+		if (i < 0) {
+			i = sets.size();
+			sets.add(set);
+		}
+		return i;
+	}
+
+	/** @return the number of shapes */
+	public static int size() {
+		return KIND.length;
+	}
+
+	/** @return the shape's kind: {@link #ONE_FOR_ONE}, {@link #TWO_FOR_ONE} or {@link #ONE_FOR_TWO} */
+	public static int getKind(int shape) {
+		return KIND[shape];
+	}
+
+	/** @return what the shape gives, packed */
+	public static long getGive(int shape) {
+		return SETS[GIVE[shape]];
+	}
+
+	/** @return what the shape receives, packed */
+	public static long getGet(int shape) {
+		return SETS[GET[shape]];
+	}
+
+	/** @return the number of distinct sides of the shapes */
+	public static int getNumSets() {
+		return SETS.length;
+	}
+
+	/** @return the index of what the shape gives among the distinct sides */
+	public static int getGiveIndex(int shape) {
+		return GIVE[shape];
+	}
+
+	/** @return the index of what the shape receives among the distinct sides */
+	public static int getGetIndex(int shape) {
+		return GET[shape];
+	}
+
+	/** @return a new resource set holding one of the distinct sides */
+	public static SOCResourceSet toResourceSet(int set) {
+		return SOCPackedResources.toResourceSet(SETS[set]);
+	}
+
+}
@@ -6,6 +6,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
 
 import representation.NumericalFVGenerator;
 import representation.SimilarityCalculator;
@@ -23,6 +24,7 @@ import soc.robot.SOCRobotClient;
 import soc.robot.SOCRobotDMImpl;
 import soc.robot.stac.SettlementNode;
 import soc.robot.stac.StacRobotDummyBrain;
+import soc.server.database.stac.CorpusIndex;
 import soc.server.database.stac.ExtGameStateRow;
 import soc.server.database.stac.GameActionRow;
 import soc.server.database.stac.ObsGameStateRow;
@@ -75,6 +77,16 @@ public class CorpusSeeder implements Seeder{
 	 */
 	private int clusterType;
 	
+	/**
+	 * How many of the most similar corpus states to use as particles, or 0 for all of them
+	 */
+	private int neighbours = 0;
+	
+	/**
+	 * The corpus states of each kind, built on first use and shared by all the seeders
+	 */
+	private static final ConcurrentHashMap<Integer, CorpusIndex<int[]>> corpusIndex = new ConcurrentHashMap<Integer, CorpusIndex<int[]>>();
+	
 	/**
 	 * Constructor
 	 * @param b the brain using the MCTS which is using this seeder(acts only as a container for the game/player trackers and data)
@@ -126,8 +138,6 @@ public class CorpusSeeder implements Seeder{
 	 * @param root the parent node of the nodes to be seeded
 	 */
 	private void seedForInitialPlacement(TreeNode root) {
-		dbh.connect();
-		D.ebugPrintlnINFO("Connected");
 		//current state
 		ObsGameStateRow targetOGSR = brain.getGame().turnCurrentStateIntoOGSR();
 		ExtGameStateRow targetEGSR = brain.turnStateIntoEGSR();
@@ -165,91 +175,56 @@ public class CorpusSeeder implements Seeder{
     	}
     	D.ebugPrintlnINFO("Finished calculating features for all legal actions");
     	
-		//containers for the info from the corpus
-		Map<ObsGameStateRow, GameActionRow> stateAction = new HashMap<ObsGameStateRow, GameActionRow>();	
-		Map<ObsGameStateRow, int[]> stateFeature = new HashMap<ObsGameStateRow, int[]>();
-		Map<GameActionRow, int[]> actionFeature = new HashMap<GameActionRow,int[]>();
-		Map<ObsGameStateRow, Double> stateRelevance = new HashMap<ObsGameStateRow, Double>();
-		
-		//current game state for getting all states of the same kind
+		//the corpus states of this kind, each with the features of the action taken from it
 		int gameState = brain.getGame().getGameState();
+		CorpusIndex<int[]> index = getCorpusIndex(gameState, dbh, sfs);
+		if(index == null)
+			return;
+		D.ebugPrintlnINFO("Got all of a kind from the corpus");
 		
-		//get all similar states and actions from the corpus
-		for(int gameID = 1; gameID < 51; gameID ++){
-			ObsGameStateRow[] states = dbh.getAllObsStatesOfAKind(gameID, gameState);
-		
-			//as end turn action does not really exists inside the initial placement, we need to keep only the states after the virtual end turn action :(
-			Vector beforeStates = new Vector<ObsGameStateRow>();
-			for(ObsGameStateRow ogsr : states){
-				GameActionRow gar = dbh.selectGAR(gameID, ogsr.getID());
-				if(gar.getType() == GameActionRow.ENDTURN)
-					beforeStates.add(ogsr);
-			}
-			//and what a suprise we need to do something about the first second settlement placement action as that is another special case...
-			if(gameState ==10){
-				int i = 1;
-				while(true){
-					ObsGameStateRow og = dbh.selectOGSR(gameID, i);
-					if(og.getGameState() == gameState){
-						beforeStates.add(og);
-						break;
-					}
-					i++;
-				}
-			}
-
-			for(Object ogsr : beforeStates){
-				GameActionRow gar = dbh.selectGAR(gameID, ((ObsGameStateRow)ogsr).getID() + 1); //get the action taken from the state
-				ExtGameStateRow beforeEGSR = dbh.selectEGSR(gameID, ((ObsGameStateRow)ogsr).getID());
-				ObsGameStateRow afterOGSR = dbh.selectOGSR(gameID, gar.getID());//because garID is equal to the after state
-				ExtGameStateRow afterEgsr = dbh.selectEGSR(gameID, gar.getID());
-			
-				int[] bStateFeatures = sfs.calculateVector1((ObsGameStateRow)ogsr, beforeEGSR);
-				int[] actionFeatures = calc.vectorDifference(bStateFeatures, sfs.calculateVector1(afterOGSR,afterEgsr)); //here do the vector difference
-				
-				stateAction.put((ObsGameStateRow)ogsr, gar);
-				actionFeature.put(gar, actionFeatures);
-				stateFeature.put((ObsGameStateRow)ogsr, bStateFeatures);
-			
-				//also once we pass a state and action to compare with we will assess the relevance in here correctly
-				stateRelevance.put((ObsGameStateRow) ogsr, (Double)calc.cosineSimilarity(bStateFeatures, targetStateFeatures));
-			
-			}
+		//the particles are all the states of the kind, or only the most similar ones if so chosen
+		int[] particles;
+		if(neighbours > 0){
+			particles = index.nearest(targetStateFeatures, neighbours);
+		}else{
+			particles = new int[index.size()];
+			for(int i = 0; i < particles.length; i++)
+				particles[i] = i;
 		}
-		D.ebugPrintlnINFO("Finished gathering all of a kind from the db");
-		Map<ObsGameStateRow, Object> highClass = new HashMap<ObsGameStateRow, Object>();
-		Map<ObsGameStateRow, Object> lowClass = new HashMap<ObsGameStateRow, Object>();
+		double[] stateRelevance = index.similarities(targetStateFeatures);
+		
+		boolean[] highClass = new boolean[index.size()];
+		boolean[] lowClass = new boolean[index.size()];
 		//in here perform the clustering if needed
 		if(clusterType != NO_CLUSTERING){
 			//we want to remove the low similarity
 			if(clusterType == STATE_RELEVANCE_CLUSTERING){
 				System.out.println("state only clustering");
-				for(ObsGameStateRow ogsr : stateAction.keySet()){
-					double stateRel = stateRelevance.get(ogsr).doubleValue();
+				for(int p : particles){
+					double stateRel = stateRelevance[p];
 					if(stateRel < 0.75){
-						lowClass.put(ogsr,null);//keep track of the lowest class
+						lowClass[p] = true;//keep track of the lowest class
 					}else if(stateRel > 0.9){
-						highClass.put(ogsr, null);//keep track of the highest relevance
+						highClass[p] = true;//keep track of the highest relevance
 					}
 				}
 			}else if(clusterType == STATE_AND_ACTION_RELEVANCE_CLUSTERING){
 				D.ebugPrintlnINFO("state and action clustering");
-				for(ObsGameStateRow ogsr : stateAction.keySet()){
-					double stateRel = stateRelevance.get(ogsr).doubleValue();
+				for(int p : particles){
+					double stateRel = stateRelevance[p];
 					//get action relevance
-					GameActionRow gar = stateAction.get(ogsr);
 					double actionRel = Double.NEGATIVE_INFINITY;//smallest possible value 
 					//find the highest relevance
 					for(Integer action : legalActions){
-						double rel = calc.cosineSimilarity(actionFeature.get(gar), legalActionsFeatures.get(action));
+						double rel = calc.cosineSimilarity(index.getValue(p), legalActionsFeatures.get(action));
 						if(rel > actionRel){
 							actionRel = rel;
 						}
 					}
 					if((stateRel + actionRel)/2 < 0.75){
-						lowClass.put(ogsr,null);//keep track of the lowest class
+						lowClass[p] = true;//keep track of the lowest class
 					}else if((stateRel + actionRel)/2 > 0.9){
-						highClass.put(ogsr, null);//keep track of the highest relevance
+						highClass[p] = true;//keep track of the highest relevance
 					}
 				}
 			}//else there must have been a mistake so we treat as if no clustering type defined
@@ -258,13 +233,12 @@ public class CorpusSeeder implements Seeder{
 			D.ebugPrintlnINFO("no clustering");
 		D.ebugPrintlnINFO("finished the clustering");
 		//assign values and visits for each legal action following the corpus (the particle filter)
-		for(ObsGameStateRow ogsr : stateAction.keySet()){
-			GameActionRow gar = stateAction.get(ogsr);
+		for(int p : particles){
 			double actionRel = Double.NEGATIVE_INFINITY;//smallest possible value 
 			Integer mostRelAction = new Integer(-1);//absurd coordinate
 			//find the most relevant legal action by calculating the similarity to each of the legal actions
 			for(Integer action : legalActions){
-				double rel = calc.cosineSimilarity(actionFeature.get(gar), legalActionsFeatures.get(action));
+				double rel = calc.cosineSimilarity(index.getValue(p), legalActionsFeatures.get(action));
 				if(rel > actionRel){
 					mostRelAction = action;
 					actionRel = rel;
@@ -276,12 +250,12 @@ public class CorpusSeeder implements Seeder{
 				
 			//and add the weights average(state and action relevance) to the value
 			double value = legalActionsValues.get(mostRelAction);
-			double stateRel = stateRelevance.get(ogsr);
+			double stateRel = stateRelevance[p];
 			if(clusterType != NO_CLUSTERING){
-				if(highClass.keySet().contains(ogsr)){
+				if(highClass[p]){
 //					D.ebugPrintlnINFO("high sim");
 					legalActionsValues.put(mostRelAction,  new Double(value + 1));//we ignore the weights for this group
-				}else if(!lowClass.keySet().contains(ogsr)){
+				}else if(!lowClass[p]){
 //					D.ebugPrintlnINFO("med sim");
 					legalActionsValues.put(mostRelAction,  new Double(value + ((actionRel + stateRel)/2))); //for medium do the usual particle filter
 				}//low similarities will be ignored in this approach 
@@ -310,8 +284,75 @@ public class CorpusSeeder implements Seeder{
 				}
 			}
 		}
+	}
+	
+	/**
+	 * Gets the corpus states of a kind, reading them from the database and computing their features the first time only.
+	 * The index is shared by all the seeders and never changed.
+	 * @param gameState the kind of state
+	 * @param dbh the database to read the corpus from
+	 * @param sfs the feature generator
+	 * @return the index of the state features, each with the features of the action taken from it; null if the database can't be read
+	 */
+	private static synchronized CorpusIndex<int[]> getCorpusIndex(int gameState, StacDBHelper dbh, NumericalFVGenerator sfs){
+		CorpusIndex<int[]> index = corpusIndex.get(gameState);
+		if(index != null)
+			return index;
+		dbh.connect();
+		if(!dbh.isConnected()){
+			System.err.println("Cannot connect to the database to seed from the corpus");
+			return null;
+		}
+		D.ebugPrintlnINFO("Connected");
+		ArrayList<int[]> stateFeatures = new ArrayList<int[]>();
+		ArrayList<int[]> actionFeatures = new ArrayList<int[]>();
+		//get all similar states and actions from the corpus
+		for(int gameID = 1; gameID < 51; gameID ++){
+			ObsGameStateRow[] states = dbh.getAllObsStatesOfAKind(gameID, gameState);
+		
+			//as end turn action does not really exists inside the initial placement, we need to keep only the states after the virtual end turn action :(
+			Vector beforeStates = new Vector<ObsGameStateRow>();
+			for(ObsGameStateRow ogsr : states){
+				GameActionRow gar = dbh.selectGAR(gameID, ogsr.getID());
+				if(gar.getType() == GameActionRow.ENDTURN)
+					beforeStates.add(ogsr);
+			}
+			//and what a suprise we need to do something about the first second settlement placement action as that is another special case...
+			if(gameState ==10){
+				int i = 1;
+				while(true){
+					ObsGameStateRow og = dbh.selectOGSR(gameID, i);
+					if(og.getGameState() == gameState){
+						beforeStates.add(og);
+						break;
+					}
+					i++;
+				}
+			}
+
+			for(Object ogsr : beforeStates){
+				GameActionRow gar = dbh.selectGAR(gameID, ((ObsGameStateRow)ogsr).getID() + 1); //get the action taken from the state
+				ExtGameStateRow beforeEGSR = dbh.selectEGSR(gameID, ((ObsGameStateRow)ogsr).getID());
+				ObsGameStateRow afterOGSR = dbh.selectOGSR(gameID, gar.getID());//because garID is equal to the after state
+				ExtGameStateRow afterEgsr = dbh.selectEGSR(gameID, gar.getID());
+			
+				int[] bStateFeatures = sfs.calculateVector1((ObsGameStateRow)ogsr, beforeEGSR);
+				stateFeatures.add(bStateFeatures);
+				actionFeatures.add(SimilarityCalculator.vectorDifference(bStateFeatures, sfs.calculateVector1(afterOGSR,afterEgsr))); //here do the vector difference
+			}
+		}
 		dbh.disconnect();
 		D.ebugPrintlnINFO("Disconnected");
+		index = new CorpusIndex<int[]>(stateFeatures, actionFeatures);
+		corpusIndex.put(gameState, index);
+		return index;
+	}
+	
+	/**
+	 * @param k how many of the most similar corpus states to use as particles; 0 for all of them, which is the default
+	 */
+	public void setNeighbours(int k){
+		neighbours = k;
 	}
 	
 	/**
@@ -322,7 +363,7 @@ public class CorpusSeeder implements Seeder{
 	private SOCRobotBrain copyBrainInfo(SOCRobotBrain br){
 		SOCRobotBrain copy = new StacRobotDummyBrain(new SOCRobotClient(null, "inexistent", "dummyAgent", "", null),
 				new SOCRobotParameters(300, 500, 0f, 0f, 0f, 0f, 0f, SOCRobotDMImpl.FAST_STRATEGY, 0),
-				(SOCGame)DeepCopy.copy(br.getGame()),new CappedQueue(), br.getOurPlayerData().getPlayerNumber());
+				br.getGame().copy(),new CappedQueue(), br.getOurPlayerData().getPlayerNumber());
 		//update trackers
         HashMap<Integer, SOCPlayerTracker> playerTrackers = new HashMap<>();
         HashMap<Integer, SOCPlayerTracker> original = br.getPlayerTrackers();
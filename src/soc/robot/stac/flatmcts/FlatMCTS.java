@@ -11,6 +11,10 @@ import java.util.Map;
 import java.util.Random;
 import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import soc.client.SOCPlayerClient.GameOptionServerSet;
 import soc.disableDebug.D;
@@ -53,6 +57,7 @@ import soc.server.logger.SOCNullLogger;
 import soc.util.CappedQueue;
 import soc.util.CutoffExceededException;
 import soc.util.DeepCopy;
+import soc.util.SnapshotStore;
 import soc.util.SOCRobotParameters;
 import soc.util.Timer;
 
@@ -67,6 +72,8 @@ import soc.util.Timer;
  * 	<li> The action type in order to perform the correct expansion step.
  * </ul> 
  * The search can be done either by a playing robot using {@link StacRobotBrainFlatMCTS} brain type or by a human player using the normal game interface 
+ * With the HEADLESS rollout engine, several workers can play the rollouts at the same time; see {@link FlatMctsType#WORKERS} and {@link FlatMctsType#PARALLEL_MODE}.
+ * That engine plays the rollouts with its own greedy policy rather than the robots' decision makers, so it gives different values; see {@link FlatMctsType#ROLLOUT_ENGINE}.
  * NOTE: Currently only a flat Monte Carlo method (no tree expansion further than 1-2 moves)
  * @author MD
  *
@@ -77,6 +84,10 @@ public class FlatMCTS {
 	 * This value is equal to 10 mins. Its used to stop the algorithm in case it gets stuck.
 	 */
 	private static long maxSimulationTime = 600000;
+	/**
+	 * The maximum time in milliseconds a single rollout game may take before it is considered stuck and destroyed.
+	 */
+	private static long maxRolloutTime = 60000;
 	/**
 	 * only for 4 player games
 	 */
@@ -97,6 +108,10 @@ public class FlatMCTS {
 	 * Name of game to differentiate in the logs.
 	 */
     private static String testName = "Simulation";
+    /**
+     * Number of rollouts played on the server so far, which tells each rollout's game apart from the ones before it
+     */
+    private long rollouts = 0;
     /**
      * The root node. Will always be null in terms of messages/actions but will contain the list of children, thus forming
      * a tree-like structure.
@@ -167,7 +182,19 @@ public class FlatMCTS {
      * which at its turn could have been caused by a failed game save. It happens very rare, but when it does, 
      * the best approach is to execute the parent's logic instead of follow the decision made by the search algorithm.
      */
-    private boolean failedSimulations = false;
+    private volatile boolean failedSimulations = false;
+    /**
+     * Plays the rollouts without a server if the {@link FlatMctsType#ROLLOUT_ENGINE} is HEADLESS, one for each worker, else null and they are played on the server.
+     */
+    private HeadlessRollout[] headless;
+    /**
+     * The number of rollouts the workers have still to play.
+     */
+    private final AtomicInteger remaining = new AtomicInteger();
+    /**
+     * The folder the game searched from was saved to, which is the snapshot the rollouts are started from; see {@link StacRobotBrain#getSaveFolder(String)}.
+     */
+    private String saveFolder;
     
     /**
      * Constructor
@@ -226,11 +253,13 @@ public class FlatMCTS {
         //allow the special case of running simulations manually
         ourPlayerNumber = pn;
         
+        saveFolder = DeepCopy.SAVES_DIR + StacRobotBrain.getSaveFolder(ga.getName());
+        
         //read game object and array of trackers from file
-        SOCGame game = (SOCGame) DeepCopy.copy(ga); //readFromFile(DeepCopy.SAVES_DIR + "robot/server_soc.game.SOCGame");
+        SOCGame game = ga.copy(); //readFromFile(saveFolder + "/server_soc.game.SOCGame");
         
         HashMap<Integer, SOCPlayerTracker> playerTrackers = new HashMap<>();
-     	ArrayList trackersList = (ArrayList) DeepCopy.readFromFile(DeepCopy.SAVES_DIR + "robot/" + 1 + "_" + ArrayList.class.getName()); //when manual testing we will always be player 0 so 1 is just fine (assume a 4 player game always)
+     	ArrayList trackersList = (ArrayList) SnapshotStore.restore(saveFolder, "" + 1, ArrayList.class, SOCPlayerTracker.LIST_CODEC); //when manual testing we will always be player 0 so 1 is just fine (assume a 4 player game always)
 	    Object[] pt =  trackersList.toArray();
 	    for(int i = 0; i< 4; i++){
 	      	 playerTrackers.put(i, (SOCPlayerTracker) pt[i]);
@@ -287,6 +316,24 @@ public class FlatMCTS {
         }  
     }
     
+    /**
+     * Constructor for searches without a brain, like {@link FlatMctsParallelBenchmark}'s. There is no seeder, so the SEED_METHOD must be NONE
+     * and the GAME_ACTION one whose expansion needs none (MOVE_ROBBER); the rollouts must be played by the HEADLESS engine.
+     * @param mType the type of the mcts algorithm
+     * @param pn our player number
+     * @param gameName the name of the game searched from, which was saved as a robot saves it
+     */
+    FlatMCTS(FlatMctsType mType, int pn, String gameName) {
+    	logger = new NullDBLogger();
+    	gameLogger = new SOCNullLogger();
+    	queue = new CappedQueue();
+    	results = new FlatMctsRewards();
+    	factories = new ArrayList<FactoryDescr>();
+    	type = mType;
+    	ourPlayerNumber = pn;
+    	saveFolder = DeepCopy.SAVES_DIR + StacRobotBrain.getSaveFolder(gameName);
+    }
+    
 	/**
 	 * Starts server and logger, connects to server and also sets up the 4 robots that will play the game.
 	 */
@@ -354,6 +401,13 @@ public class FlatMCTS {
             server.setupLocalRobots(f.factory, f.name, f.count);
         }
 	}
+	/**
+	 * @param time the maximum time in milliseconds a rollout game may take before it is destroyed
+	 */
+	public static void setMaxRolloutTime(long time){
+		maxRolloutTime = time;
+	}
+
 	/**
 	 * Caution: the simulation policy type cannot be modified as it is fixed when we initially setup the robots;
 	 * Neither can the seeding method.
@@ -373,32 +427,23 @@ public class FlatMCTS {
 	 * @return  a double value which is the reward/utility value
 	 */
 	private double rollOut(TreeNode tn) throws Exception {
+		//each rollout has its own game, so a rollout that was given up on and finishes late can't be taken for this one
+		final String gameName = testName + "_" + (++rollouts);
 		logger.resetGamesDone();//just to make sure we start from 0 ;)
-		prCli.put(SOCNewGameWithOptionsRequest.toCmd("simulation-master", "", "localhost", testName, gOpts.optionSet));
+		logger.expectGame(gameName);
+		prCli.put(SOCNewGameWithOptionsRequest.toCmd("simulation-master", "", "localhost", gameName, gOpts.optionSet));
 		//we want the robots' order not to get shuffled and load from the saved state when starting; pass the simdepth to stop the game earlier; don't care about loading a saved board
-        prCli.put(SOCStartGame.toCmd(testName,true,true, "saves/robot", simulationDepth, -1, false, StacRobotBrain.isChatNegotiation(), false, false)); 
-        //hack for waiting for the game to stop
-        int counter = 0; //1 min = 60000 ms, so maxCounter = 60000/20 = 3000
-        while(logger.getNumGamesDone() == 0 && counter <= 3000){//sometimes games get stuck and never finish so only allow a min max per game (this may be too much)
-        	Thread.sleep(20);  // Wait a little bit until we see if the game is finished;
-        	counter++;
-        }
+        prCli.put(SOCStartGame.toCmd(gameName,true,true, saveFolder, simulationDepth, -1, false, StacRobotBrain.isChatNegotiation(), false, false)); 
+        //sometimes games get stuck and never finish so only allow a max time per game
+        if(!logger.waitForGame(gameName, maxRolloutTime))
+        	D.ebugWARNING("Rollout did not finish in " + maxRolloutTime + " ms, destroying it");
         logger.resetGamesDone();
         // destroy the last game - it's finished or has failed
-        server.destroyGame(testName, false);
+        server.destroyGame(gameName, false);
         // Clean out contents of prCli
         while (prCli.isInputAvailable()) {
             prCli.readNext();
         }
-        return reward();
-        
-    }
-	/**
-	 * It contains the logic for rewarding at a terminal state based on the reward type selected.
-	 * @return a double value in the range [0,1] if normalised, else a double value
-	 */
-	private double reward(){
-        String rewardType = (String) type.getTypeParam(FlatMctsType.REWARD_FUNCTION);
         /*
          * This is a horrible thing to do, but I have no other option. When the game finishes, the final stats are not communicated to every player
          * so our brain won't have access to the true final VP's when it is trying to collect them in handleGameStats method (as it is expected).
@@ -409,21 +454,38 @@ public class FlatMCTS {
         	results.getEndVPs()[i] = logger.getStats(agentName + "_" + i).getVictoryPoints();
         	logger.clearVictoryPoints(agentName + "_" + i);
         }
-        if(rewardType.equals("0_1_END")){ // returns a 0 or a 1 depending on vp >=10 using DBLogger (no need to use the rewards class) 
-        	/**
-        	 * NOTE: If you are planning to use just this rewarding method comment the above for loop
-        	 */
-        	int vp = logger.getStats(agentName + "_" + (ourPlayerNumber)).getVictoryPoints();
-	      	 for(int j = 0; j < numPlayers; j++){
-	        		logger.clearVictoryPoints(agentName + "_" + (j));
-	        	 }
+        return reward(results);
+        
+    }
+	
+	/**
+	 * Plays a rollout from the saved state in the calling thread.
+	 * @param rollout the worker's rollout engine
+	 * @param q the actions to play first
+	 * @param res the container for the stats, which should have been cleared
+	 * @return the reward
+	 */
+	private double headlessRollOut(HeadlessRollout rollout, CappedQueue q, FlatMctsRewards res) {
+		rollout.play(q, simulationDepth, res);
+		return reward(res);
+	}
+	
+	/**
+	 * It contains the logic for rewarding at a terminal state based on the reward type selected.
+	 * @param res the stats of the rollout
+	 * @return a double value in the range [0,1] if normalised, else a double value
+	 */
+	private double reward(FlatMctsRewards res){
+        String rewardType = (String) type.getTypeParam(FlatMctsType.REWARD_FUNCTION);
+        if(rewardType.equals("0_1_END")){ // returns a 0 or a 1 depending on vp >=10 (no need to use the rewards class) 
+        	int vp = res.getEndVPs()[ourPlayerNumber];
 	        if(vp  >= 10){
 	        	return 1;
 	        }else
 	        	return 0;
         	
         }else
-        	return results.getReward(rewardType, ourPlayerNumber, simulationDepth);
+        	return res.getReward(rewardType, ourPlayerNumber, simulationDepth);
 	}
 	
 	/**
@@ -435,7 +497,9 @@ public class FlatMCTS {
         robotPause = SOCRobotBrain.getDelayTime();
 		SOCRobotBrain.setDelayTime(0);
 		Timer t = new Timer();
-		for (int i=0; i<noSimulations; i++) {
+		if(headless != null && headless.length > 1)
+			executeParallel(noSimulations, t);
+		else for (int i=0; i<noSimulations; i++) {
 			queue.clear();  //empty queue of messages before adding new actions
 			results.clearStats();//also clear the results in preparation for the next rollout
 			List<TreeNode> visited = new LinkedList<TreeNode>(); //list for keeping track of the visited nodes for backpropagation
@@ -447,7 +511,7 @@ public class FlatMCTS {
 	        }
 	        double value = 0;
 	        try {
-				value = rollOut(cur);
+				value = (headless != null) ? headlessRollOut(headless[0], queue, results) : rollOut(cur);
 			} catch (Exception e) {
 				e.printStackTrace();
 			}	
@@ -466,6 +530,58 @@ public class FlatMCTS {
 		queue.clear();// clear the queue
 		SOCRobotBrain.setDelayTime(robotPause);//set the delay back to the original value;
 	}
+	
+	/**
+	 * Plays the rollouts with one worker thread per rollout engine in {@link #headless}, and waits for them to finish.
+	 * With the ROOT {@link FlatMctsType#PARALLEL_MODE} each worker searches its own copy of the tree, and what the copies gained is added to the tree at the end;
+	 * with TREE they all search the tree itself.
+	 * @param noSimulations number of total roll-outs.
+	 * @param t started when the search was
+	 */
+	private void executeParallel(int noSimulations, Timer t) {
+		boolean shared = "TREE".equals(type.getTypeParam(FlatMctsType.PARALLEL_MODE));
+		TreeNode[] trees = new TreeNode[headless.length];
+		remaining.set(noSimulations);
+		ExecutorService pool = Executors.newFixedThreadPool(headless.length);
+		for (int i = 0; i < headless.length; i++) {
+			trees[i] = shared ? root : root.copy();
+			pool.execute(new Worker(headless[i], trees[i], shared, t));
+		}
+		pool.shutdown();
+		boolean interrupted = false;
+		while (!pool.isTerminated()) {
+			try {
+				pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				interrupted = true;
+				failedSimulations = true; //stop the workers after their current rollout
+			}
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+		if (!shared)
+			merge(root, trees);
+	}
+	
+	/**
+	 * Adds to a node and its subtree what the workers' copies of them gained while searching.
+	 * @param n the node, unchanged since it was copied
+	 * @param copies the workers' copies of the node
+	 */
+	private static void merge(TreeNode n, TreeNode[] copies) {
+		double visits = n.nVisits;
+		double value = n.totValue;
+		for (TreeNode c : copies) {
+			n.addVisits(c.nVisits - visits);
+			n.addValue(c.totValue - value);
+		}
+		for (int i = 0; i < n.arity(); i++) {
+			TreeNode[] childCopies = new TreeNode[copies.length];
+			for (int j = 0; j < copies.length; j++)
+				childCopies[j] = copies[j].children[i];
+			merge(n.children[i], childCopies);
+		}
+	}
 	  
     /**
      * Selects next(best) action using UCT (UCB for trees so this is actually just UCB);
@@ -473,22 +589,35 @@ public class FlatMCTS {
      * @return the child node that gives promising results or needs exploring
      */
     private TreeNode selectUCT(TreeNode current) {
+    	return selectUCT(current, queue, r);
+    }
+    
+    /**
+     * Selects next(best) action using UCT, for a worker.
+     * @param current the node to choose a child of
+     * @param q the queue the action of the child is added to
+     * @param rand breaks ties
+     * @return the child node that gives promising results or needs exploring
+     */
+    private TreeNode selectUCT(TreeNode current, CappedQueue q, Random rand) {
         TreeNode selected = null;
         double bestValue = Double.MIN_VALUE;
         TreeNode[] children = current.children;
+        double parentVisits = current.nVisits;
         
         for (TreeNode c : children) {
+            double visits = c.nVisits;
             double uctValue =
-                    c.totValue / (c.nVisits + epsilon) + 
-                            Math.sqrt(Math.log(current.nVisits+1) / (c.nVisits + epsilon)) +
-                            r.nextDouble() * epsilon;
+                    c.totValue / (visits + epsilon) + 
+                            Math.sqrt(Math.log(parentVisits+1) / (visits + epsilon)) +
+                            rand.nextDouble() * epsilon;
             if (uctValue > bestValue) {
                 selected = c;
                 bestValue = uctValue;
             }
         }
     	try {
-			queue.put(selected.message); //add action to the queue
+			q.put(selected.message); //add action to the queue
 		} catch (CutoffExceededException e) {
 			D.ebugFATAL(e, "Cannot add action to the controlling queue");
 //			e.printStackTrace(); 
@@ -602,7 +731,7 @@ public class FlatMCTS {
      */
     private void expandForRobberAction(TreeNode n) {
 //    	SOCGame game = (SOCGame) DeepCopy.copy(brain.getGame()); 
-    	SOCGame game = (SOCGame) DeepCopy.readFromFile(DeepCopy.SAVES_DIR + "robot/server_soc.game.SOCGame"); // it doesn't affect its decision and we always need this to avoid a nullpointer when we follow the planned decision in the real game
+    	SOCGame game = (SOCGame) SnapshotStore.restore(saveFolder, "server", SOCGame.class, SnapshotStore.GAME); // it doesn't affect its decision and we always need this to avoid a nullpointer when we follow the planned decision in the real game
     	int[] hexes = game.getBoard().getHexLandCoords();
     	int robberHex = game.getBoard().getRobberHex();
     	
@@ -623,7 +752,7 @@ public class FlatMCTS {
         //this will be the second expansion based on whom we can steal from; REMEMBER: this needs to be done on the new game state
         for(TreeNode c : n.children){
         	//create a clone of the game
-        	SOCGame temp = (SOCGame) DeepCopy.copy(game);
+        	SOCGame temp = game.copy();
         	//play the action described to get in the child node
         	temp.moveRobber(ourPlayerNumber, ((SOCMoveRobber) c.message).getCoordinates());
 	        Vector pl = temp.getPossibleVictims();//get victims from the temp game
@@ -709,6 +838,14 @@ public class FlatMCTS {
     	return failedSimulations;
     }
     
+    /**
+     * Marks the search as failed without running it, e.g. when the game to simulate from couldn't be saved,
+     * so the robot falls back on its own decision logic.
+     */
+    public void skip(){
+    	failedSimulations = true;
+    }
+    
     /**
      * Gives access to the queue.
      * @return the queue containing the messages for the next actions.
@@ -721,6 +858,13 @@ public class FlatMCTS {
     	return seeder;
     }
     
+    /**
+     * @return the tree of the last search
+     */
+    TreeNode getRoot(){
+    	return root;
+    }
+    
     /**
 	 * The method to be called on when wanting to execute the search. It takes care of all the initialisation and cleaning up.
 	 * It doesn't return a result(best choice). In order to achieve that, call selectPlay()
@@ -731,13 +875,15 @@ public class FlatMCTS {
 	 * @param noSimulations how many rollouts in total
 	 */
 	public void run(int depth, int noSimulations){
-		if(ourPlayerNumber == -1)//only if the brain is real and not a dummy
+		if(ourPlayerNumber == -1){//only if the brain is real and not a dummy
 			ourPlayerNumber = ((StacRobotBrainFlatMCTS) brain).getPlayerNumber();
+			saveFolder = DeepCopy.SAVES_DIR + StacRobotBrain.getSaveFolder(brain.getGame().getName());
+		}
 		root = new TreeNode(); //create a new tree by creating a new root
 		simulationDepth = depth; //the number of turns for each simulation
 		failedSimulations = false; //before running simulations we want to reset this flag
 		//no need to start/stop a new server if we are not running simulations
-		if(noSimulations > 0)
+		if(noSimulations > 0 && !startHeadless())
 			initialize();
 	    
 		expand(root);							//as we are learning one or two actions max, we perform the full expansion of the tree just before executing MCTS 
@@ -745,10 +891,36 @@ public class FlatMCTS {
 	    	seed(root);							//use JSettlers strategy, the corpus or both to seed 
 	    execute(noSimulations);					//run MCTS (Flat case, i.e. no further expansions)
 	    
-	    if(noSimulations > 0)
+	    if(headless != null)
+	    	headless = null;
+	    else if(noSimulations > 0)
 	    	tearDown();								
 	}
 	
+	/**
+	 * Prepares to play the rollouts in this thread if the rollout engine is HEADLESS.
+	 * @return true if it did, false if the rollouts should be played on the server
+	 */
+	private boolean startHeadless(){
+		int workers = (type.getTypeParam(FlatMctsType.WORKERS) != null) ? (Integer) type.getTypeParam(FlatMctsType.WORKERS) : 1;
+		if(!"HEADLESS".equals(type.getTypeParam(FlatMctsType.ROLLOUT_ENGINE))){
+			if(workers > 1)
+				D.ebugWARNING("Only the HEADLESS rollout engine has workers; playing the rollouts one at a time on the server");
+			return false;
+		}
+		int randomPercentage = (Integer) type.getTypeParam(FlatMctsType.SIMULATION_RANDOMNESS_PERCENTAGE);
+		headless = new HeadlessRollout[Math.max(1, workers)];
+		for(int i = 0; i < headless.length; i++){
+			headless[i] = new HeadlessRollout(ourPlayerNumber, new RandomRolloutPolicy(randomPercentage, new Random()), new Random());
+			if(!headless[i].load(saveFolder)){
+				D.ebugERROR("No saved game to play the rollouts from; playing them on the server");
+				headless = null;
+				return false;
+			}
+		}
+		return true;
+	}
+	
 	/**
 	 * Calls the seeding mechanism on the children of a node.
 	 * @param n the parent node
@@ -776,6 +948,63 @@ public class FlatMCTS {
         tv.showTree("Game Tree");
     }
      
+	/**
+	 * Plays rollouts in its own thread, with its own rollout engine, queue and stats, until the search has played them all or has run out of time.
+	 */
+	private class Worker implements Runnable {
+		private final HeadlessRollout rollout;
+		/**
+		 * The tree searched: the search's own if shared with the other workers, else a copy
+		 */
+		private final TreeNode tree;
+		private final boolean shared;
+		private final Timer timer;
+		private final CappedQueue workerQueue = new CappedQueue();
+		private final FlatMctsRewards workerResults = new FlatMctsRewards();
+		private final Random rand = new Random();
+		
+		Worker(HeadlessRollout rollout, TreeNode tree, boolean shared, Timer timer) {
+			this.rollout = rollout;
+			this.tree = tree;
+			this.shared = shared;
+			this.timer = timer;
+		}
+		
+		public void run() {
+			while (!failedSimulations && remaining.getAndDecrement() > 0) {
+				workerQueue.clear();
+				workerResults.clearStats();
+				List<TreeNode> visited = new ArrayList<TreeNode>();
+				TreeNode cur = tree;
+				if (shared)
+					cur.addVirtualLoss();
+				visited.add(cur);
+				while (!cur.isLeaf()) {
+					cur = selectUCT(cur, workerQueue, rand);
+					if (shared)
+						cur.addVirtualLoss(); //steer the other workers elsewhere until this rollout is done
+					visited.add(cur);
+				}
+				double value = 0;
+				try {
+					value = headlessRollOut(rollout, workerQueue, workerResults);
+				} catch (Exception e) {
+					e.printStackTrace();
+				}
+				for (TreeNode node : visited) {
+					if (shared)
+						node.resolveVirtualLoss(value);
+					else
+						node.updateStats(value);
+				}
+				if (timer.elapsed() > maxSimulationTime) {
+					failedSimulations = true;
+					Simulation.failedMctsSimulation = true;
+				}
+			}
+		}
+	}
+     
 	private static class FactoryDescr {
 	    int count;
 	    String name;
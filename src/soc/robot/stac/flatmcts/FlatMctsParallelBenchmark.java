@@ -0,0 +1,87 @@
+package soc.robot.stac.flatmcts;
+
+import java.util.Random;
+
+import soc.game.SOCGame;
+import soc.game.SOCGameCopyCheck;
+import soc.robot.stac.StacRobotBrain;
+import soc.util.DeepCopy;
+import soc.util.SnapshotStore;
+
+/**
+ * Measures how many rollouts per second {@link FlatMCTS} plays with the HEADLESS rollout engine as the number of workers grows,
+ * in both parallel modes. It searches where to move the robber in a game played with random moves by {@link SOCGameCopyCheck}
+ * until someone has to, saved in memory as a robot saves it before its search.
+ * The speeds aren't comparable with SERVER rollouts, which play differently; see {@link FlatMctsType#ROLLOUT_ENGINE}.
+ * <p>
+ * Each search is checked to have counted every rollout at the root.
+ * <p>
+ * Usage: FlatMctsParallelBenchmark [rollouts] [maxWorkers] [depth]
+ */
+public class FlatMctsParallelBenchmark {
+
+	private static final String GAME = "rolloutbench";
+
+	private static final String FOLDER = DeepCopy.SAVES_DIR + StacRobotBrain.getSaveFolder(GAME);
+
+	/**
+	 * Search once.
+	 * @return rollouts per second
+	 */
+	private static double measure(int pn, int workers, String mode, int depth, int rollouts) {
+		FlatMctsType type = new FlatMctsType();
+		type.addType(FlatMctsType.REWARD_FUNCTION, "OBSERVABLE");
+		type.addType(FlatMctsType.SIMULATION_RANDOMNESS_PERCENTAGE, "20");
+		type.addType(FlatMctsType.ACTION_SELECTION_POLICY, "MAX_AVERAGE");
+		type.addType(FlatMctsType.SEED_METHOD, "NONE");
+		type.addType(FlatMctsType.GAME_ACTION, "MOVE_ROBBER");
+		type.addType(FlatMctsType.ROLLOUT_ENGINE, "HEADLESS");
+		type.addType(FlatMctsType.WORKERS, "" + workers);
+		type.addType(FlatMctsType.PARALLEL_MODE, mode);
+		FlatMCTS mcts = new FlatMCTS(type, pn, GAME);
+
+		long start = System.nanoTime();
+		mcts.run(depth, rollouts);
+		long elapsed = System.nanoTime() - start;
+
+		if ((int) Math.round(mcts.getRoot().nVisits) != rollouts)
+			System.out.println("  " + mode + " with " + workers + " workers counted " + mcts.getRoot().nVisits + " of " + rollouts + " rollouts");
+		return rollouts / (elapsed / 1e9);
+	}
+
+	public static void main(String[] args) {
+		int rollouts = (args.length > 0) ? Integer.parseInt(args[0]) : 400;
+		int maxWorkers = (args.length > 1) ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		int depth = (args.length > 2) ? Integer.parseInt(args[2]) : 0;
+
+		Random r = new Random(42);
+		SOCGame ga;
+		do {
+			// start again if the random game ends before the robber is moved
+			ga = SOCGameCopyCheck.newGame(GAME, r);
+			while (ga.getGameState() != SOCGame.PLACING_ROBBER)
+				if (!SOCGameCopyCheck.playStep(ga, r))
+					break;
+		} while (ga.getGameState() != SOCGame.PLACING_ROBBER);
+		int pn = ga.getCurrentPlayerNumber();
+		SnapshotStore.save(FOLDER, "server", ga, SnapshotStore.GAME, false);
+
+		System.out.println("Rollouts per search: " + rollouts + ", depth: " + (depth == 0 ? "to the end" : depth + " turns")
+			+ ", processors: " + Runtime.getRuntime().availableProcessors());
+		// warm up the JIT; not reported
+		for (int i = 0; i < 3; i++)
+			measure(pn, 1, "ROOT", depth, rollouts);
+		double single = measure(pn, 1, "ROOT", depth, rollouts);
+		System.out.println(String.format("1 worker: %.0f rollouts/s", single));
+		for (int workers = 2; workers <= maxWorkers; workers *= 2) {
+			StringBuilder sb = new StringBuilder(workers + " workers:");
+			for (String mode : new String[] { "ROOT", "TREE" }) {
+				double rate = measure(pn, workers, mode, depth, rollouts);
+				sb.append(String.format(" %s %.0f rollouts/s (x%.1f),", mode, rate, rate / single));
+			}
+			System.out.println(sb);
+		}
+		SnapshotStore.remove(FOLDER);
+	}
+
+}
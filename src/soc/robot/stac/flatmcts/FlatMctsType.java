@@ -31,6 +31,23 @@ public class FlatMctsType extends StacRobotType{
 	 * If we are seeding from corpus, than do we want to cluster and the type of clustering. Options: 1 (NO_CLUSTERING), 2(STATE_RELEVANCE_CLUSTERING), 3(STATE_AND_ACTION_RELEVANCE_CLUSTERING)
 	 */
 	public static final String CLUSTERING_TYPE;
+	/**
+	 * Where the rollouts are played. Options: SERVER (default; robots playing on a simulation server), HEADLESS (see {@link HeadlessRollout}).
+	 * The two don't estimate the same thing: SERVER rollouts are played by the robots' decision makers, trades between players included,
+	 * while HEADLESS ones are played by the greedy {@link RandomRolloutPolicy}, which only trades with the bank and ports.
+	 * HEADLESS is much faster, but its action values aren't comparable with SERVER ones and it shouldn't replace SERVER where
+	 * the results are compared with earlier experiments.
+	 */
+	public static final String ROLLOUT_ENGINE;
+	/**
+	 * The number of threads playing rollouts at the same time, each with its own {@link HeadlessRollout}. Values over 1 need the HEADLESS rollout engine.
+	 */
+	public static final String WORKERS;
+	/**
+	 * How the workers share the search. Options: ROOT (each searches its own copy of the tree and the statistics are added up at the end),
+	 * TREE (all search the same tree, with virtual loss to spread them over the actions)
+	 */
+	public static final String PARALLEL_MODE;
 	
 	static {
 		SIMULATION_RANDOMNESS_PERCENTAGE = p("SIMULATION_RANDOMNESS_PERCENTAGE", Integer.class);
@@ -39,6 +56,9 @@ public class FlatMctsType extends StacRobotType{
 		GAME_ACTION = p("GAME_ACTION", String.class);
 		SEED_METHOD = p("SEED_METHOD", String.class);
 		CLUSTERING_TYPE = p("CLUSTERING_TYPE", Integer.class);
+		ROLLOUT_ENGINE = p("ROLLOUT_ENGINE", String.class);
+		WORKERS = p("WORKERS", Integer.class);
+		PARALLEL_MODE = p("PARALLEL_MODE", String.class);
 	}
 	
 }
@@ -0,0 +1,502 @@
+package soc.robot.stac.flatmcts;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Random;
+
+import soc.disableDebug.D;
+import soc.game.SOCBoard;
+import soc.game.SOCCity;
+import soc.game.SOCDevCardConstants;
+import soc.game.SOCGame;
+import soc.game.SOCPlayer;
+import soc.game.SOCPlayingPiece;
+import soc.game.SOCResourceConstants;
+import soc.game.SOCResourceSet;
+import soc.game.SOCRoad;
+import soc.game.SOCSettlement;
+import soc.message.SOCChoosePlayer;
+import soc.message.SOCMoveRobber;
+import soc.message.SOCPutPiece;
+import soc.robot.SOCBuildingSpeedEstimate;
+import soc.robot.SOCPlayerTracker;
+import soc.robot.SOCPossibleCity;
+import soc.robot.SOCPossiblePiece;
+import soc.robot.SOCPossibleSettlement;
+import soc.robot.SOCRobotClient;
+import soc.robot.SOCRobotDMImpl;
+import soc.robot.stac.StacRobotDummyBrain;
+import soc.util.CappedQueue;
+import soc.util.SOCRobotParameters;
+import soc.util.SnapshotStore;
+
+/**
+ * Plays the rollouts of {@link FlatMCTS} on copies of the saved game, in the calling thread, instead of as games on a simulation
+ * server played by robot clients: there is no server, no connection, no message and no robot thread, so a rollout costs about
+ * as much as the moves in it. Every player's moves are chosen by a {@link RolloutPolicy}, except the actions of the tree the search
+ * puts in its queue, which our player plays first as the {@link soc.robot.stac.StacRobotBrainRandom} robot controlled by the search does.
+ * Players trade only with the bank and ports, not with each other.
+ * <p>
+ * So this is a different estimator from the server rollouts, not a faster way of getting the same values:
+ * the robots on the server use the JSettlers decision maker and negotiate trades, and the {@link RandomRolloutPolicy} does neither.
+ * That's why {@link FlatMctsType#ROLLOUT_ENGINE} defaults to SERVER.
+ * <p>
+ * The stats in {@link FlatMctsRewards} are gathered at the same moments and in the same way as that robot gathers them
+ * (when loading, on each dice roll, on the first robber move and at the end, using the trackers of our player),
+ * with the final VPs taken from the game rather than from the server's logger, so the rewards are computed as they are from a server rollout.
+ * <p>
+ * An instance isn't thread safe; use one per thread.
+ */
+public class HeadlessRollout {
+
+	/**
+	 * Limit on the moves in one rollout, in case a policy keeps the game from ending.
+	 */
+	private static final int MAX_MOVES = 20000;
+	/**
+	 * Name of the game and robot holding the trackers, as in {@link FlatMCTS}.
+	 */
+	private static final String NAME = "Simulation";
+
+	private final int ourPlayerNumber;
+	private final RolloutPolicy policy;
+	private final Random rand;
+	/**
+	 * The game every rollout starts from, and our player's trackers for it
+	 */
+	private SOCGame savedGame;
+	private ArrayList savedTrackers;
+	/**
+	 * Stats of the saved game, the same for every rollout
+	 */
+	private final int[] initialVPs = new int[4], initialETBs = new int[4], initialETWs = new int[4];
+	private int maxTotalRssBlocked;
+	/**
+	 * The brain holding the trackers of the game being played, which keeps them up to date as pieces are placed
+	 */
+	private StacRobotDummyBrain brain;
+	/**
+	 * For each player, what it has decided to build next as in {@link SOCPossiblePiece}, or -1
+	 */
+	private final int[] plans = new int[4];
+	/**
+	 * Whether the current player has been asked about playing a card since rolling the dice
+	 */
+	private boolean askedAfterRoll;
+
+	/**
+	 * @param ourPlayerNumber the player doing the search, whose trackers are used and who plays the actions in the queue
+	 * @param policy chooses the moves
+	 * @param rand seeds the dice of each rollout
+	 */
+	public HeadlessRollout(int ourPlayerNumber, RolloutPolicy policy, Random rand) {
+		this.ourPlayerNumber = ourPlayerNumber;
+		this.policy = policy;
+		this.rand = rand;
+	}
+
+	/**
+	 * Load the state to play from, saved as for {@link soc.message.SOCLoadGame}: the server's game and our player's trackers,
+	 * or if our player saved none, those of another robot, or if none did, trackers rebuilt from the game as
+	 * {@link SOCRobotClient} does. Also works out the stats of the saved state the rewards compare against.
+	 * @param folder where the state was saved, like "saves/robot/game1"
+	 * @return false if no game was saved there
+	 */
+	public boolean load(String folder) {
+		SOCGame game = (SOCGame) SnapshotStore.restore(folder, "server", SOCGame.class, SnapshotStore.GAME);
+		if (game == null)
+			return false;
+		brain = new StacRobotDummyBrain(new SOCRobotClient(null, NAME, "Stac0-best", "", null), new SOCRobotParameters(300, 500, 0f, 0f, 0f, 0f, 0f, SOCRobotDMImpl.FAST_STRATEGY, 0), game, new CappedQueue(), ourPlayerNumber);
+		ArrayList trackers = (ArrayList) SnapshotStore.restore(folder, "" + ourPlayerNumber, ArrayList.class, SOCPlayerTracker.LIST_CODEC);
+		for (int i = 0; trackers == null && i < game.maxPlayers; i++)
+			trackers = (ArrayList) SnapshotStore.restore(folder, "" + i, ArrayList.class, SOCPlayerTracker.LIST_CODEC);
+		if (trackers != null) {
+			trackers = SOCPlayerTracker.copyTrackerList(trackers, game);
+			useTrackers(game, trackers);
+		} else { //only humans were playing, so track every piece in the game from scratch
+			trackers = new ArrayList();
+			for (int i = 0; i < game.maxPlayers; i++)
+				trackers.add(brain.getPlayerTrackers().get(i));
+			useTrackers(game, trackers);
+			for (Object o : game.getBoard().getSettlements())
+				brain.trackNewPiece(((SOCSettlement) o).getPlayer().getPlayerNumber(), SOCPlayingPiece.SETTLEMENT, ((SOCSettlement) o).getCoordinates());
+			for (Object o : game.getBoard().getRoads())
+				brain.trackNewPiece(((SOCRoad) o).getPlayer().getPlayerNumber(), SOCPlayingPiece.ROAD, ((SOCRoad) o).getCoordinates());
+			for (Object o : game.getBoard().getCities())
+				brain.trackNewPiece(((SOCCity) o).getPlayer().getPlayerNumber(), SOCPlayingPiece.CITY, ((SOCCity) o).getCoordinates());
+			for (Object t : trackers)
+				((SOCPlayerTracker) t).recalculateAllEtas();
+		}
+		savedGame = game;
+		savedTrackers = trackers;
+
+		//the stats the robot controlled by the search works out when it loads the game
+		for (int i = 0; i < 4; i++) {
+			initialVPs[i] = game.getPlayer(i).getPublicVP();
+			initialETBs[i] = totalSpeed(game.getPlayer(i), -1);
+			SOCPlayerTracker tracker = (SOCPlayerTracker) trackers.get(i);
+			tracker.recalcWinGameETA();
+			initialETWs[i] = tracker.getWinGameETA();
+		}
+		maxTotalRssBlocked = game.getTotalPossibleBlockedRss();
+		return true;
+	}
+
+	/**
+	 * Give the trackers and their possible pieces to the brain, and the brain the game.
+	 * @param game the game the trackers' players belong to
+	 * @param trackers one per player, in player number order
+	 */
+	private void useTrackers(SOCGame game, ArrayList trackers) {
+		HashMap<Integer, SOCPlayerTracker> playerTrackers = new HashMap<Integer, SOCPlayerTracker>();
+		for (int i = 0; i < trackers.size(); i++) {
+			SOCPlayerTracker pti = (SOCPlayerTracker) trackers.get(i);
+			pti.setBrain(brain);
+			Iterator posCitiesIter = pti.getPossibleCities().values().iterator();
+			while (posCitiesIter.hasNext())
+				((SOCPossibleCity) posCitiesIter.next()).setBrain(brain);
+			Iterator posSettlIter = pti.getPossibleSettlements().values().iterator();
+			while (posSettlIter.hasNext())
+				((SOCPossibleSettlement) posSettlIter.next()).setBrain(brain);
+			playerTrackers.put(i, pti);
+		}
+		brain.setPlayerTrackers(playerTrackers);
+		brain.setGame(game);
+		brain.setOurPlayerTracker(playerTrackers.get(ourPlayerNumber));
+	}
+
+	/**
+	 * @param robberHex the robber's hex, or -1 to ignore the robber
+	 * @return the sum of the player's estimated times to build each piece from nothing
+	 */
+	private int totalSpeed(SOCPlayer pl, int robberHex) {
+		SOCBuildingSpeedEstimate estimator = brain.getEstimator();
+		if (robberHex == -1)
+			estimator.recalculateEstimates(pl.getNumbers());
+		else
+			estimator.recalculateEstimates(pl.getNumbers(), robberHex);
+		int[] speeds = estimator.getEstimatesFromNothingFast(pl.getPortFlags());
+		int totalSpeed = 0;
+		for (int j = SOCBuildingSpeedEstimate.MIN; j < SOCBuildingSpeedEstimate.MAXPLUSONE; j++)
+			totalSpeed += speeds[j];
+		return totalSpeed;
+	}
+
+	/**
+	 * Play one rollout from the loaded state, until the game is over or has gone on for <tt>depth</tt> turns.
+	 * @param queue the actions our player takes first, as {@link SOCPutPiece}, {@link SOCMoveRobber} and {@link SOCChoosePlayer}
+	 *     messages, in the order they are needed; they are taken from the queue as they are played
+	 * @param depth the number of turns to play, or 0 to play to the end
+	 * @param results where to put the stats; it should have been cleared
+	 */
+	public void play(CappedQueue queue, int depth, FlatMctsRewards results) {
+		SOCGame game = savedGame.copy();
+		game.resetRandom(rand.nextLong()); //each rollout rolls its own dice
+		if (depth != 0)
+			game.setFinishTurn(game.getTurnCount() + depth);
+		useTrackers(game, SOCPlayerTracker.copyTrackerList(savedTrackers, game));
+
+		System.arraycopy(initialVPs, 0, results.getInitialVPs(), 0, 4);
+		System.arraycopy(initialETBs, 0, results.getInitialETBs(), 0, 4);
+		System.arraycopy(initialETWs, 0, results.getInitialETWs(), 0, 4);
+		results.setMaxTotalRssBlocked(maxTotalRssBlocked);
+
+		Arrays.fill(plans, -1);
+		askedAfterRoll = false;
+		int moves = 0;
+		while (game.getGameState() < SOCGame.OVER) {
+			if (++moves > MAX_MOVES || ! step(game, queue, results)) {
+				D.ebugWARNING("Rollout stopped in state " + game.getGameState() + " after " + moves + " moves");
+				break;
+			}
+		}
+
+		//the stats the robot gathers from the end of game stats
+		for (int i = 0; i < 4; i++) {
+			SOCPlayerTracker tracker = brain.getPlayerTrackers().get(i);
+			tracker.recalcWinGameETA();
+			results.getEndETWs()[i] = tracker.getWinGameETA();
+			results.getEndVPs()[i] = game.getPlayer(i).getTotalVP();
+		}
+	}
+
+	/**
+	 * @return the next action in the queue if it is our player's turn to act and the action is of the given type, otherwise null
+	 */
+	private Object controlled(CappedQueue queue, int pn, Class type) {
+		if (pn != ourPlayerNumber || queue.empty())
+			return null;
+		Object action = queue.get();
+		return type.isInstance(action) ? action : null;
+	}
+
+	/**
+	 * Make the next move, for whoever has to act.
+	 * @return false if no move could be made
+	 */
+	private boolean step(SOCGame game, CappedQueue queue, FlatMctsRewards results) {
+		final int pn = game.getCurrentPlayerNumber();
+		final SOCPlayer pl = game.getPlayer(pn);
+		final SOCBoard board = game.getBoard();
+
+		switch (game.getGameState()) {
+		case SOCGame.START1A:
+		case SOCGame.START2A: {
+			SOCPutPiece action = (SOCPutPiece) controlled(queue, pn, SOCPutPiece.class);
+			int node = (action != null) ? action.getCoordinates() : -1;
+			if (node == -1 || ! pl.isPotentialSettlement(node))
+				node = policy.chooseSettlement(game, pn);
+			if (node == -1)
+				return false;
+			place(game, new SOCSettlement(pl, node, board));
+			return true;
+		}
+
+		case SOCGame.START1B:
+		case SOCGame.START2B: {
+			final int edge = policy.chooseInitialRoad(game, pn, pl.getLastSettlementCoord());
+			if (edge == -1)
+				return false;
+			place(game, new SOCRoad(pl, edge, board));
+			return true;
+		}
+
+		case SOCGame.PLAY:
+			if (! pl.hasPlayedDevCard() && playDevCard(game, pn, policy.chooseDevCard(game, pn, true)))
+				return true;
+			game.rollDice();
+			askedAfterRoll = false;
+			//as the robot does on each dice result, once the robber is on the board
+			if (results.countRss && board.getRobberHex() != -1) {
+				results.setRssBlocked(game.getResourcesBlocked(game.getCurrentDice(), results.getRssBlocked()));
+				results.setMaxTotalRssBlocked(game.getTotalPossibleBlockedRss());
+				results.setMaxRssBlocked(game.getPossibleBlockedRss());
+			}
+			return true;
+
+		case SOCGame.WAITING_FOR_DISCARDS:
+			for (int i = 0; i < game.maxPlayers; i++) {
+				if (game.getPlayer(i).getNeedToDiscard()) {
+					SOCResourceSet rs = policy.chooseDiscard(game, i, game.getPlayer(i).getResources().getTotal() / 2);
+					if (! game.canDiscard(i, rs))
+						return false;
+					game.discard(i, rs);
+					return true;
+				}
+			}
+			return false;
+
+		case SOCGame.PLACING_ROBBER: {
+			SOCMoveRobber action = (SOCMoveRobber) controlled(queue, pn, SOCMoveRobber.class);
+			int hex = (action != null) ? action.getCoordinates() : -1;
+			if (hex == -1 || ! game.canMoveRobber(pn, hex))
+				hex = policy.chooseRobberHex(game, pn);
+			if (! game.canMoveRobber(pn, hex))
+				return false;
+			game.moveRobber(pn, hex);
+			//as the robot does on the first robber move
+			if (results.immediateRewardMoveRobber) {
+				for (int i = 0; i < 4; i++)
+					results.getImmediateETBs()[i] = totalSpeed(game.getPlayer(i), hex);
+				results.immediateRewardMoveRobber = false;
+			}
+			return true;
+		}
+
+		case SOCGame.WAITING_FOR_CHOICE: {
+			SOCChoosePlayer action = (SOCChoosePlayer) controlled(queue, pn, SOCChoosePlayer.class);
+			int victim = (action != null) ? action.getChoice() : -1;
+			if (victim == -1 || ! game.canChoosePlayer(victim))
+				victim = policy.chooseVictim(game, pn, game.getPossibleVictims());
+			if (! game.canChoosePlayer(victim))
+				return false;
+			game.stealFromPlayer(victim);
+			return true;
+		}
+
+		case SOCGame.PLAY1:
+			if (! askedAfterRoll) {
+				askedAfterRoll = true;
+				if (! pl.hasPlayedDevCard() && playDevCard(game, pn, policy.chooseDevCard(game, pn, false)))
+					return true;
+			}
+			if (plans[pn] == -1)
+				plans[pn] = policy.chooseBuild(game, pn);
+			if (plans[pn] != -1) {
+				if (build(game, pn, plans[pn])) {
+					plans[pn] = -1;
+					return true;
+				}
+				if (tradeFor(game, pn, cost(plans[pn])))
+					return true;
+			}
+			if (! game.canEndTurn(pn))
+				return false;
+			game.endTurn();
+			return true;
+
+		case SOCGame.PLACING_FREE_ROAD1:
+		case SOCGame.PLACING_FREE_ROAD2: {
+			final int edge = policy.chooseRoad(game, pn);
+			if (edge == -1)
+				return false;
+			place(game, new SOCRoad(pl, edge, board));
+			return true;
+		}
+
+		case SOCGame.WAITING_FOR_DISCOVERY: {
+			SOCResourceSet pick = policy.chooseDiscovery(game, pn);
+			if (! game.canDoDiscoveryAction(pick))
+				return false;
+			game.doDiscoveryAction(pick);
+			return true;
+		}
+
+		case SOCGame.WAITING_FOR_MONOPOLY:
+			game.doMonopolyAction(policy.chooseMonopoly(game, pn));
+			return true;
+
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * Put a piece in the game and run it through the trackers.
+	 */
+	private void place(SOCGame game, SOCPlayingPiece piece) {
+		game.putPiece(piece);
+		brain.trackNewPiece(piece.getPlayer().getPlayerNumber(), piece.getType(), piece.getCoordinates());
+	}
+
+	/**
+	 * Play a development card, if the player can.
+	 * @param card the card type, or -1
+	 * @return true if it was played
+	 */
+	private boolean playDevCard(SOCGame game, int pn, int card) {
+		switch (card) {
+		case SOCDevCardConstants.KNIGHT:
+			if (! game.canPlayKnight(pn))
+				return false;
+			game.playKnight();
+			return true;
+		case SOCDevCardConstants.ROADS:
+			if (! game.canPlayRoadBuilding(pn))
+				return false;
+			game.playRoadBuilding();
+			return true;
+		case SOCDevCardConstants.DISC:
+			if (! game.canPlayDiscovery(pn))
+				return false;
+			game.playDiscovery();
+			return true;
+		case SOCDevCardConstants.MONO:
+			if (! game.canPlayMonopoly(pn))
+				return false;
+			game.playMonopoly();
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * Build a piece or buy a card, if the player can afford it and there is somewhere to put it.
+	 * @param type the piece type as in {@link SOCPossiblePiece}
+	 * @return true if it was built
+	 */
+	private boolean build(SOCGame game, int pn, int type) {
+		final SOCPlayer pl = game.getPlayer(pn);
+		final SOCBoard board = game.getBoard();
+		switch (type) {
+		case SOCPossiblePiece.CITY:
+			if (game.couldBuildCity(pn)) {
+				final int node = policy.chooseCity(game, pn);
+				if (node != -1) {
+					game.buyCity(pn);
+					place(game, new SOCCity(pl, node, board));
+					return true;
+				}
+			}
+			return false;
+		case SOCPossiblePiece.SETTLEMENT:
+			if (game.couldBuildSettlement(pn)) {
+				final int node = policy.chooseSettlement(game, pn);
+				if (node != -1) {
+					game.buySettlement(pn);
+					place(game, new SOCSettlement(pl, node, board));
+					return true;
+				}
+			}
+			return false;
+		case SOCPossiblePiece.ROAD:
+			if (game.couldBuildRoad(pn)) {
+				final int edge = policy.chooseRoad(game, pn);
+				if (edge != -1) {
+					game.buyRoad(pn);
+					place(game, new SOCRoad(pl, edge, board));
+					return true;
+				}
+			}
+			return false;
+		case SOCPossiblePiece.CARD:
+			if (game.couldBuyDevCard(pn)) {
+				game.buyDevCard();
+				return true;
+			}
+			return false;
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * @return what a piece type as in {@link SOCPossiblePiece} costs
+	 */
+	private static SOCResourceSet cost(int type) {
+		switch (type) {
+		case SOCPossiblePiece.CITY:
+			return SOCGame.CITY_SET;
+		case SOCPossiblePiece.SETTLEMENT:
+			return SOCGame.SETTLEMENT_SET;
+		case SOCPossiblePiece.ROAD:
+			return SOCGame.ROAD_SET;
+		default:
+			return SOCGame.CARD_SET;
+		}
+	}
+
+	/**
+	 * Make one bank or port trade bringing the current player closer to affording something, giving only resources it doesn't need for it.
+	 * @param cost what the player wants to afford
+	 * @return true if a trade was made
+	 */
+	private boolean tradeFor(SOCGame game, int pn, SOCResourceSet cost) {
+		final SOCPlayer pl = game.getPlayer(pn);
+		final SOCResourceSet have = pl.getResources();
+		for (int get = SOCResourceConstants.CLAY; get <= SOCResourceConstants.WOOD; get++) {
+			if (have.getAmount(get) >= cost.getAmount(get))
+				continue;
+			for (int give = SOCResourceConstants.CLAY; give <= SOCResourceConstants.WOOD; give++) {
+				if (give == get)
+					continue;
+				final int ratio = pl.getPortFlag(give) ? 2 : (pl.getPortFlag(SOCBoard.MISC_PORT) ? 3 : 4);
+				if (have.getAmount(give) - cost.getAmount(give) < ratio)
+					continue;
+				SOCResourceSet giveSet = new SOCResourceSet();
+				giveSet.add(ratio, give);
+				SOCResourceSet getSet = new SOCResourceSet();
+				getSet.add(1, get);
+				if (game.canMakeBankTrade(giveSet, getSet)) {
+					game.makeBankTrade(giveSet, getSet);
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+}
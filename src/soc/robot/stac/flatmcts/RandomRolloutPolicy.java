@@ -0,0 +1,293 @@
+package soc.robot.stac.flatmcts;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Vector;
+
+import soc.game.SOCBoard;
+import soc.game.SOCDevCardConstants;
+import soc.game.SOCGame;
+import soc.game.SOCPlayer;
+import soc.game.SOCPlayingPiece;
+import soc.game.SOCResourceConstants;
+import soc.game.SOCResourceSet;
+import soc.game.SOCSettlement;
+import soc.robot.SOCPossiblePiece;
+
+/**
+ * The policy of the rollouts played by {@link HeadlessRollout}, standing in for the {@link soc.robot.stac.StacRobotBrainRandom} robots
+ * which play them on the simulation server. As those robots do, it makes each decision at random for a given percentage of the time:
+ * a random legal build among a city, a settlement needing no more roads, a development card and a road, or a random location.
+ * The rest of the time, where the robots fall back on the JSettlers decision maker, which needs a whole robot brain,
+ * it uses a simple greedy rule instead: settle and rob where the dice numbers are best, build cities before settlements before roads
+ * before cards, and so on. It never offers or accepts a trade with another player.
+ * Rollouts played by it are therefore not the same as the robots' and their values differ; see {@link FlatMctsType#ROLLOUT_ENGINE}.
+ */
+public class RandomRolloutPolicy implements RolloutPolicy {
+
+	/**
+	 * Percent of the decisions made at random; if 0 or less, none are, if 100 or more, all are.
+	 */
+	private final int randomPercentage;
+	private final Random rand;
+
+	/**
+	 * @param randomPercentage percent of the decisions made at random, as {@link FlatMctsType#SIMULATION_RANDOMNESS_PERCENTAGE}
+	 * @param rand the source of the random decisions
+	 */
+	public RandomRolloutPolicy(int randomPercentage, Random rand) {
+		this.randomPercentage = randomPercentage;
+		this.rand = rand;
+	}
+
+	/**
+	 * @return true if the next decision should be random
+	 */
+	private boolean random() {
+		return randomPercentage > 0 && rand.nextInt(100) < randomPercentage;
+	}
+
+	/**
+	 * @return the number of ways of rolling the number, or 0 for no number
+	 */
+	private static int dots(int number) {
+		return (number < 2 || number > 12) ? 0 : 6 - Math.abs(7 - number);
+	}
+
+	/**
+	 * @return the chances of the node producing something on a roll, as the sum of the dots of the hexes around it
+	 */
+	private static int nodeValue(SOCBoard board, int node) {
+		int value = 0;
+		for (Object hex : SOCBoard.getAdjacentHexesToNode(node))
+			value += dots(board.getNumberOnHexFromCoord(((Integer) hex).intValue()));
+		return value;
+	}
+
+	/**
+	 * @return the best of the coordinates by their values, or a random one if the decision is random; -1 if there are none
+	 */
+	private int pick(List<Integer> coords, int[] values) {
+		if (coords.isEmpty())
+			return -1;
+		if (random())
+			return coords.get(rand.nextInt(coords.size())).intValue();
+		int best = 0;
+		for (int i = 1; i < values.length; i++)
+			if (values[i] > values[best])
+				best = i;
+		return coords.get(best).intValue();
+	}
+
+	/**
+	 * @return the edges where the player could put a road now
+	 */
+	private static List<Integer> potentialRoads(SOCPlayer pl, SOCBoard board) {
+		List<Integer> edges = new ArrayList<Integer>();
+		for (int edge = board.getMinEdge(); edge <= SOCBoard.MAXEDGE_V1; edge++)
+			if (pl.isPotentialRoad(edge))
+				edges.add(Integer.valueOf(edge));
+		return edges;
+	}
+
+	public int chooseSettlement(SOCGame game, int pn) {
+		final SOCPlayer pl = game.getPlayer(pn);
+		final SOCBoard board = game.getBoard();
+		List<Integer> nodes = new ArrayList<Integer>();
+		for (int node = board.getMinNode(); node <= SOCBoard.MAXNODE; node++)
+			if (pl.isPotentialSettlement(node))
+				nodes.add(Integer.valueOf(node));
+		int[] values = new int[nodes.size()];
+		for (int i = 0; i < values.length; i++)
+			values[i] = nodeValue(board, nodes.get(i).intValue());
+		return pick(nodes, values);
+	}
+
+	public int chooseInitialRoad(SOCGame game, int pn, int settlement) {
+		final SOCPlayer pl = game.getPlayer(pn);
+		final SOCBoard board = game.getBoard();
+		List<Integer> edges = new ArrayList<Integer>();
+		for (int edge : board.getAdjacentEdgesToNode_arr(settlement))
+			if (edge != -9 && pl.isPotentialRoad(edge))
+				edges.add(Integer.valueOf(edge));
+		//lead towards the better of the nodes at the other end
+		int[] values = new int[edges.size()];
+		for (int i = 0; i < values.length; i++) {
+			int[] ends = SOCBoard.getAdjacentNodesToEdge_arr(edges.get(i).intValue());
+			values[i] = nodeValue(board, ends[0] == settlement ? ends[1] : ends[0]);
+		}
+		return pick(edges, values);
+	}
+
+	public int chooseRoad(SOCGame game, int pn) {
+		final SOCPlayer pl = game.getPlayer(pn);
+		final SOCBoard board = game.getBoard();
+		List<Integer> edges = potentialRoads(pl, board);
+		//lead towards the best node a settlement could still go on
+		int[] values = new int[edges.size()];
+		for (int i = 0; i < values.length; i++) {
+			for (int node : SOCBoard.getAdjacentNodesToEdge_arr(edges.get(i).intValue())) {
+				if (node >= 0 && node <= SOCBoard.MAXNODE && pl.isLegalSettlement(node))
+					values[i] = Math.max(values[i], nodeValue(board, node));
+			}
+		}
+		return pick(edges, values);
+	}
+
+	public int chooseCity(SOCGame game, int pn) {
+		final SOCPlayer pl = game.getPlayer(pn);
+		List<Integer> nodes = new ArrayList<Integer>();
+		for (Object s : pl.getSettlements()) {
+			int node = ((SOCSettlement) s).getCoordinates();
+			if (pl.isPotentialCity(node))
+				nodes.add(Integer.valueOf(node));
+		}
+		int[] values = new int[nodes.size()];
+		for (int i = 0; i < values.length; i++)
+			values[i] = nodeValue(game.getBoard(), nodes.get(i).intValue());
+		return pick(nodes, values);
+	}
+
+	public int chooseBuild(SOCGame game, int pn) {
+		final SOCPlayer pl = game.getPlayer(pn);
+		//the legal options, in the order the greedy rule prefers them
+		List<Integer> options = new ArrayList<Integer>();
+		if (pl.getNumPieces(SOCPlayingPiece.CITY) > 0 && pl.hasPotentialCity())
+			options.add(Integer.valueOf(SOCPossiblePiece.CITY));
+		if (pl.getNumPieces(SOCPlayingPiece.SETTLEMENT) > 0 && pl.hasPotentialSettlement())
+			options.add(Integer.valueOf(SOCPossiblePiece.SETTLEMENT));
+		//roads come before cards only while there are settlements left to put at their end
+		final boolean road = pl.getNumPieces(SOCPlayingPiece.ROAD) > 0 && pl.hasPotentialRoad();
+		final boolean roadFirst = pl.getNumPieces(SOCPlayingPiece.SETTLEMENT) > 0;
+		if (road && roadFirst)
+			options.add(Integer.valueOf(SOCPossiblePiece.ROAD));
+		if (game.getNumDevCards() > 0)
+			options.add(Integer.valueOf(SOCPossiblePiece.CARD));
+		if (road && ! roadFirst)
+			options.add(Integer.valueOf(SOCPossiblePiece.ROAD));
+		if (options.isEmpty())
+			return -1;
+		if (random())
+			return options.get(rand.nextInt(options.size())).intValue();
+		return options.get(0).intValue();
+	}
+
+	public int chooseDevCard(SOCGame game, int pn, boolean beforeRoll) {
+		final SOCPlayer pl = game.getPlayer(pn);
+		List<Integer> playable = new ArrayList<Integer>();
+		if (game.canPlayKnight(pn))
+			playable.add(Integer.valueOf(SOCDevCardConstants.KNIGHT));
+		if (! beforeRoll) {
+			if (game.canPlayRoadBuilding(pn) && pl.hasPotentialRoad())
+				playable.add(Integer.valueOf(SOCDevCardConstants.ROADS));
+			if (game.canPlayDiscovery(pn))
+				playable.add(Integer.valueOf(SOCDevCardConstants.DISC));
+			if (game.canPlayMonopoly(pn))
+				playable.add(Integer.valueOf(SOCDevCardConstants.MONO));
+		}
+		if (playable.isEmpty())
+			return -1;
+		if (random())
+			return rand.nextBoolean() ? playable.get(rand.nextInt(playable.size())).intValue() : -1;
+		if (beforeRoll) //get the robber off our own hexes before they are rolled
+			return game.getPlayersOnHex(game.getBoard().getRobberHex()).contains(pl) ? SOCDevCardConstants.KNIGHT : -1;
+		//monopoly, discovery, road building, and the knight only if there is nothing else
+		return playable.get(playable.size() - 1).intValue();
+	}
+
+	public int chooseRobberHex(SOCGame game, int pn) {
+		final SOCBoard board = game.getBoard();
+		List<Integer> hexes = new ArrayList<Integer>();
+		for (int hex : board.getHexLandCoords())
+			if (game.canMoveRobber(pn, hex))
+				hexes.add(Integer.valueOf(hex));
+		//block the most production of the others, and none of ours
+		int[] values = new int[hexes.size()];
+		for (int i = 0; i < values.length; i++) {
+			final int hex = hexes.get(i).intValue();
+			final int dots = dots(board.getNumberOnHexFromCoord(hex));
+			for (Object node : SOCBoard.getAdjacentNodesToHex(hex)) {
+				SOCPlayingPiece piece = board.settlementAtNode(((Integer) node).intValue());
+				if (piece == null)
+					continue;
+				int blocked = (piece.getType() == SOCPlayingPiece.CITY) ? 2 * dots : dots;
+				values[i] += (piece.getPlayer().getPlayerNumber() == pn) ? -100 : blocked;
+			}
+		}
+		return pick(hexes, values);
+	}
+
+	public int chooseVictim(SOCGame game, int pn, Vector victims) {
+		List<Integer> players = new ArrayList<Integer>();
+		int[] values = new int[victims.size()];
+		for (int i = 0; i < values.length; i++) {
+			SOCPlayer victim = (SOCPlayer) victims.get(i);
+			players.add(Integer.valueOf(victim.getPlayerNumber()));
+			//rob the leader, and of the leaders the one with the most to steal
+			values[i] = victim.getTotalVP() * 100 + victim.getResources().getTotal();
+		}
+		return pick(players, values);
+	}
+
+	public SOCResourceSet chooseDiscard(SOCGame game, int pn, int count) {
+		SOCResourceSet hand = game.getPlayer(pn).getResources().copy();
+		SOCResourceSet discard = new SOCResourceSet();
+		final boolean random = random();
+		for (int n = count; n > 0; n--) {
+			int rtype;
+			if (random) {
+				do
+					rtype = SOCResourceConstants.CLAY + rand.nextInt(5);
+				while (hand.getAmount(rtype) == 0);
+			} else { //keep the hand balanced
+				rtype = SOCResourceConstants.CLAY;
+				for (int r = SOCResourceConstants.ORE; r <= SOCResourceConstants.WOOD; r++)
+					if (hand.getAmount(r) > hand.getAmount(rtype))
+						rtype = r;
+			}
+			hand.subtract(1, rtype);
+			discard.add(1, rtype);
+		}
+		return discard;
+	}
+
+	public SOCResourceSet chooseDiscovery(SOCGame game, int pn) {
+		SOCResourceSet hand = game.getPlayer(pn).getResources().copy();
+		SOCResourceSet pick = new SOCResourceSet();
+		final boolean random = random();
+		for (int n = 0; n < 2; n++) {
+			int rtype;
+			if (random) {
+				rtype = SOCResourceConstants.CLAY + rand.nextInt(5);
+			} else { //take what we have least of
+				rtype = SOCResourceConstants.CLAY;
+				for (int r = SOCResourceConstants.ORE; r <= SOCResourceConstants.WOOD; r++)
+					if (hand.getAmount(r) < hand.getAmount(rtype))
+						rtype = r;
+			}
+			hand.add(1, rtype);
+			pick.add(1, rtype);
+		}
+		return pick;
+	}
+
+	public int chooseMonopoly(SOCGame game, int pn) {
+		if (random())
+			return SOCResourceConstants.CLAY + rand.nextInt(5);
+		//take what the others have most of
+		int best = SOCResourceConstants.CLAY, bestAmount = -1;
+		for (int r = SOCResourceConstants.CLAY; r <= SOCResourceConstants.WOOD; r++) {
+			int amount = 0;
+			for (int i = 0; i < game.maxPlayers; i++)
+				if (i != pn)
+					amount += game.getPlayer(i).getResources().getAmount(r);
+			if (amount > bestAmount) {
+				best = r;
+				bestAmount = amount;
+			}
+		}
+		return best;
+	}
+
+}
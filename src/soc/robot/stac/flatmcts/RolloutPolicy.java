@@ -0,0 +1,97 @@
+package soc.robot.stac.flatmcts;
+
+import java.util.Vector;
+
+import soc.game.SOCGame;
+import soc.game.SOCResourceSet;
+
+/**
+ * Chooses the moves of every player during a rollout played by {@link HeadlessRollout}, in place of the robots' decision makers.
+ * Each method is asked only when there is a choice to make for the player <tt>pn</tt>, and must return a legal move in the game as it is;
+ * the rollout checks it and plays it, so the policy never changes the game itself.
+ */
+public interface RolloutPolicy {
+
+	/**
+	 * @param game the game, in state {@link SOCGame#START1A} or {@link SOCGame#START2A}, or placing a settlement during play
+	 * @param pn the player
+	 * @return a node where the player may put a settlement, or -1 if there isn't one
+	 */
+	public int chooseSettlement(SOCGame game, int pn);
+
+	/**
+	 * @param game the game, in state {@link SOCGame#START1B} or {@link SOCGame#START2B}
+	 * @param pn the player
+	 * @param settlement the settlement just placed, which the road must touch
+	 * @return the edge of the initial road, or -1 if there isn't one
+	 */
+	public int chooseInitialRoad(SOCGame game, int pn, int settlement);
+
+	/**
+	 * @param game the game
+	 * @param pn the player
+	 * @return an edge where the player may put a road, or -1 if there isn't one
+	 */
+	public int chooseRoad(SOCGame game, int pn);
+
+	/**
+	 * @param game the game
+	 * @param pn the player
+	 * @return a settlement of the player which may become a city, or -1 if there isn't one
+	 */
+	public int chooseCity(SOCGame game, int pn);
+
+	/**
+	 * Decide what the player will build next; the rollout keeps to it, trading with the bank for it if needed, until it is built or can't be.
+	 * @param game the game, in state {@link SOCGame#PLAY1}
+	 * @param pn the player, who is the current player
+	 * @return the piece type as in {@link soc.robot.SOCPossiblePiece}, or -1 to build nothing this turn
+	 */
+	public int chooseBuild(SOCGame game, int pn);
+
+	/**
+	 * @param game the game, in state {@link SOCGame#PLAY} or {@link SOCGame#PLAY1}
+	 * @param pn the player, who is the current player and hasn't played a card this turn
+	 * @param beforeRoll true if the dice haven't been rolled yet
+	 * @return a card type from {@link soc.game.SOCDevCardConstants} which the player can play, or -1 to play none
+	 */
+	public int chooseDevCard(SOCGame game, int pn, boolean beforeRoll);
+
+	/**
+	 * @param game the game, in state {@link SOCGame#PLACING_ROBBER}
+	 * @param pn the player moving the robber
+	 * @return a hex the robber can be moved to
+	 */
+	public int chooseRobberHex(SOCGame game, int pn);
+
+	/**
+	 * @param game the game, in state {@link SOCGame#WAITING_FOR_CHOICE}
+	 * @param pn the player robbing
+	 * @param victims the players who can be robbed, as {@link soc.game.SOCPlayer}s
+	 * @return the number of the player to rob
+	 */
+	public int chooseVictim(SOCGame game, int pn, Vector victims);
+
+	/**
+	 * @param game the game, in state {@link SOCGame#WAITING_FOR_DISCARDS}
+	 * @param pn the player discarding
+	 * @param count the number of resources to discard
+	 * @return the resources to discard, which the player has
+	 */
+	public SOCResourceSet chooseDiscard(SOCGame game, int pn, int count);
+
+	/**
+	 * @param game the game, in state {@link SOCGame#WAITING_FOR_DISCOVERY}
+	 * @param pn the player
+	 * @return the two resources to take
+	 */
+	public SOCResourceSet chooseDiscovery(SOCGame game, int pn);
+
+	/**
+	 * @param game the game, in state {@link SOCGame#WAITING_FOR_MONOPOLY}
+	 * @param pn the player
+	 * @return the resource type to take, as in {@link soc.game.SOCResourceConstants}
+	 */
+	public int chooseMonopoly(SOCGame game, int pn);
+
+}
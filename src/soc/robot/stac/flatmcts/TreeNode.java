@@ -10,6 +10,7 @@ import soc.message.SOCMessageForGame;
 /**
  * This is the class that implements the nodes inside the tree for MCTS. It acts as a simple container storing
  * the list of its children, the value and number of visits and the action that resulted in this state. 
+ * The statistics are updated atomically, so several workers can search the same tree; see {@link #addVirtualLoss()}.
  * @author MD
  */
 public class TreeNode {
@@ -20,11 +21,11 @@ public class TreeNode {
     /**
      * number of time we visited this node (or pulled this lever to use bandit terms).
      */
-    public double nVisits = 0.0;
+    public volatile double nVisits = 0.0;
     /**
      * The total reward as a sum of the rewards for each visit.
      */
-    public double totValue = 0.0;
+    public volatile double totValue = 0.0;
     /**
      * The action which got us in this state as a SOCMessage,
      * so it can be passed to the brain as the next action it needs to take.
@@ -40,27 +41,60 @@ public class TreeNode {
      * Updates the total value and increments the number of visits
      * @param value the value propagated from the result node/state.
      */
-    public void updateStats(double value) {
+    public synchronized void updateStats(double value) {
         nVisits++;
         totValue += value;
     }
     
-    public void setValue(double val){
+    /**
+     * Counts a visit with no reward while a rollout through this node is still being played, so other workers
+     * searching the same tree are steered towards other nodes until its result is known.
+     * The rollout's result must then be given to {@link #resolveVirtualLoss(double)} instead of {@link #updateStats(double)}.
+     */
+    public synchronized void addVirtualLoss() {
+        nVisits++;
+    }
+    
+    /**
+     * Adds the value of a rollout whose visit was already counted by {@link #addVirtualLoss()}.
+     * @param value the value propagated from the result node/state.
+     */
+    public synchronized void resolveVirtualLoss(double value) {
+        totValue += value;
+    }
+    
+    public synchronized void setValue(double val){
     	totValue = val;
     }
     
-    public void setVisits(double bestScore){
+    public synchronized void setVisits(double bestScore){
     	nVisits = bestScore;
     }
     
-    public void addValue(double val){
+    public synchronized void addValue(double val){
     	totValue = totValue + val;
     }
     
-    public void addVisits(double vis){
+    public synchronized void addVisits(double vis){
     	nVisits = nVisits + vis;
     }
     
+    /**
+     * @return a copy of this node and its subtree, with the same statistics and actions
+     */
+    public TreeNode copy() {
+    	TreeNode n = new TreeNode();
+    	n.nVisits = nVisits;
+    	n.totValue = totValue;
+    	n.message = message; //actions are never changed once the tree is built
+    	if (children != null) {
+    		n.children = new TreeNode[children.length];
+    		for (int i = 0; i < children.length; i++)
+    			n.children[i] = children[i].copy();
+    	}
+    	return n;
+    }
+    
     /**
      * @return number of possible actions from this node
      */
@@ -1,11 +1,11 @@
 package soc.robot.stac.negotiationlearning;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.URL;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -14,7 +14,6 @@ import java.util.Properties;
 import java.util.logging.FileHandler;
 import java.util.logging.Level;
 
-import resources.Resources;
 import soc.dialogue.StacTradeMessage;
 import soc.game.SOCPlayer;
 import soc.game.SOCPlayingPiece;
@@ -26,6 +25,7 @@ import soc.message.SOCPutPiece;
 import soc.robot.SOCBuildPlanStack;
 import soc.robot.SOCPossiblePiece;
 import soc.robot.stac.StacRobotNegotiator;
+import supervised.util.ModelRegistry;
 import uk.ac.hw.mdps.MDP;
 import uk.ac.hw.mdps.Policy;
 
@@ -303,8 +303,7 @@ public class LearningNegotiator {
 			logger.logf( Level.INFO, "Loading offer selection policy from file %s\n", off_sel_pol_fname );
 			//off_sel_mdp.loadPolicy( off_sel_pol_fname, USE_POLICY_OBJECTS );
 			try {
-		    	URL url = Resources.class.getResource( off_sel_pol_fname );
-		    	InputStream pol_is = url.openStream();
+		    	InputStream pol_is = openShared( off_sel_pol_fname );
 				off_sel_mdp.loadPolicy( pol_is );
 			} catch ( IOException ioe ) {
 				logger.logf( Level.SEVERE, "Could not load offer selection policy %s\n", off_sel_pol_fname );
@@ -330,8 +329,7 @@ public class LearningNegotiator {
 			logger.logf( Level.INFO, "Loading offer response policy from file %s\n", off_resp_pol_fname );
 			//off_resp_mdp.loadPolicy( off_resp_pol_fname, USE_POLICY_OBJECTS );
 			try {
-		    	URL url = Resources.class.getResource( off_resp_pol_fname );
-		    	InputStream pol_is = url.openStream();
+		    	InputStream pol_is = openShared( off_resp_pol_fname );
 				off_sel_mdp.loadPolicy( pol_is );
 			} catch ( IOException ioe ) {
 				logger.logf( Level.SEVERE, "Could not load response policy %s\n", off_resp_pol_fname );
@@ -385,8 +383,7 @@ public class LearningNegotiator {
 			logger.logf( Level.INFO, "Loading offer selection policy from file %s\n", off_sel_pol_fname );
 			//off_sel_mdp.loadPolicy( off_sel_pol_fname, USE_POLICY_OBJECTS );
 			try {
-		    	URL url = Resources.class.getResource( off_sel_pol_fname );
-		    	InputStream pol_is = url.openStream();
+		    	InputStream pol_is = openShared( off_sel_pol_fname );
 				off_sel_mdp.loadPolicy( pol_is );
 			} catch ( IOException ioe ) {
 				logger.logf( Level.SEVERE, "Could not load offer selection policy %s\n", off_sel_pol_fname );
@@ -411,8 +408,7 @@ public class LearningNegotiator {
 			logger.logf( Level.INFO, "Loading offer response policy from file %s\n", off_resp_pol_fname );
 			//off_resp_mdp.loadPolicy( off_resp_pol_fname, USE_POLICY_OBJECTS );
 			try {
-		    	URL url = Resources.class.getResource( off_resp_pol_fname );
-		    	InputStream pol_is = url.openStream();
+		    	InputStream pol_is = openShared( off_resp_pol_fname );
 		    	off_resp_mdp.loadPolicy( pol_is );
 			} catch ( IOException ioe ) {
 				logger.logf( Level.SEVERE, "Could not load offer response policy %s\n", off_resp_pol_fname );
@@ -1017,10 +1013,9 @@ public class LearningNegotiator {
 		}
 		// set up learning settings
         //String filename = "resources/config/learning_settings.cfg"; //TODO read filename from jsettlers config file?
-    	URL config_url = Resources.class.getResource( learning_config_fname );
         try {
             //InputStream config_is = new FileInputStream( new File(filename) );
-            InputStream config_is = config_url.openStream();
+            InputStream config_is = openShared( learning_config_fname );
             config = new Properties();
             config.load( config_is );
             
@@ -1087,6 +1082,19 @@ public class LearningNegotiator {
         
 	}
 	
+	/**
+	 * Opens a file among the resources, read only once in this process however many negotiators load it
+	 * (see {@link ModelRegistry}); each caller parses its own copy of the policy, as learning changes it.
+	 * @param fname the name of the file, relative to the resources
+	 * @throws FileNotFoundException if there is no such file
+	 */
+	private static InputStream openShared( String fname ) throws FileNotFoundException {
+		byte[] contents = ModelRegistry.getResource( fname );
+		if ( contents == null )
+			throw new FileNotFoundException( fname );
+		return new ByteArrayInputStream( contents );
+	}
+	
 	private void loadRewardFunction() {
 		String rs = config.getProperty( "TRADE_SUCCESS" );
 		if ( rs != null ) TRADE_SUCCESS = Float.parseFloat( rs );
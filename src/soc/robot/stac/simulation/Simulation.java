@@ -2,6 +2,7 @@ package soc.robot.stac.simulation;
 
 import java.awt.Toolkit;
 import java.io.BufferedReader;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileReader;
 import java.io.InputStream;
@@ -12,7 +13,9 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import mcts.listeners.TimedIterationListener;
 import representation.FVGeneratorFactory;
@@ -41,6 +44,7 @@ import soc.server.database.stac.StateValueRow;
 import soc.server.genericServer.LocalStringConnection;
 import soc.server.genericServer.LocalStringServerSocket;
 import soc.server.genericServer.Server;
+import soc.server.logger.SOCBinaryLogger;
 import soc.server.logger.SOCConditionalLogger;
 import soc.server.logger.SOCFileLogger;
 import soc.server.logger.SOCLogger;
@@ -103,11 +107,20 @@ public class Simulation {
 	 * Flag for deciding if drawing victory point cards is observable or not.
 	 */
 	private boolean observableVP = false;
+	/**
+	 * The number of games kept in progress at the same time on the practice server. A new game is started as soon as one finishes.
+	 * The robots are shared by all the games in progress, i.e. each game is played by one set of robots created from the factories list.
+	 */
+	private int parallelGames = 1;
+	/**
+	 * The maximum time in milliseconds a game may take before it is considered stuck, destroyed and replaced by a new game.
+	 * 0 means the games are never timed out.
+	 */
+	private long gameTimeout = 0;
 	
 	//for collection of linear function approximation of the agent's value function
 	public static int collectionID = -1;//the table id in the database, also acts as a flag
 	public static StacDBHelper dbh; 
-	public static Object lock = new Object();
     private SOCServer practiceServer;
     private LearningLogger resultsLogger = new LearningLogger();
     private SOCFileLogger fileLogger = new SOCFileLogger(SOCServer.LOG_DIR);
@@ -228,6 +241,14 @@ public class Simulation {
                     gameLogger = fileLogger;
                 }
             }
+            else if (nextLine.startsWith("BinaryLog")) {
+                // true or compressed: log to binary files, to be converted to text with SOCBinaryLogConverter
+                String p[] = nextLine.split("=");
+                boolean compressed = "compressed".equalsIgnoreCase(p[1]);
+                if (compressed || Boolean.parseBoolean(p[1])) {
+                    gameLogger = new SOCBinaryLogger(SOCServer.LOG_DIR, compressed);
+                }
+            }
             else if (nextLine.startsWith("ChatNeg")) {
                 String p[] = nextLine.split("=");
                 boolean chatNegotiation = Boolean.parseBoolean(p[1]);
@@ -305,6 +326,20 @@ public class Simulation {
                     fullyObservable = c;
                 }
             }
+            else if (nextLine.startsWith("ParallelGames")) {
+                String p[] = nextLine.split("=");
+                int c = Integer.parseInt(p[1]);
+                if (c > 0) {
+                    parallelGames = c;
+                }
+            }
+            else if (nextLine.startsWith("GameTimeout")) {
+                String p[] = nextLine.split("=");
+                long c = Long.parseLong(p[1]);
+                if (c >= 0) {
+                    gameTimeout = c * 1000; //given in seconds
+                }
+            }
             else if (nextLine.startsWith("ObservableVP")) {
                 String p[] = nextLine.split("=");
                 boolean c = Boolean.parseBoolean(p[1]);
@@ -321,6 +356,7 @@ public class Simulation {
                 collectionID = c;
                 if(dbh.isConnected() && !dbh.tableExists(StacDBHelper.VALUETABLE + collectionID)){
                 	dbh.createValueTable(collectionID);
+                	dbh.startWriteBehind(StacDBHelper.DEFAULT_BATCH_SIZE, StacDBHelper.DEFAULT_FLUSH_MILLIS);
                 	 SOCServer.COLLECT_VALUE_FUNCTION_APPROX = true;//server should send msgs only if everything is ok
                 }else{
                 	System.out.println("table exists or no connection; if former, closing connection to avoid overwrites");//debugging
@@ -582,7 +618,11 @@ public class Simulation {
         if(SOCServer.COLLECT_FULL_GAMEPLAY){
         	practiceServer.dbh.initialize();
         	practiceServer.dbh.connect();
+        	practiceServer.dbh.startWriteBehind(StacDBHelper.DEFAULT_BATCH_SIZE, StacDBHelper.DEFAULT_FLUSH_MILLIS);
         }
+        int parallel = getNumberOfParallelGames();
+        if (parallel > 1 && !practiceServer.isUp())
+            practiceServer.setGameLanes(parallel); //treat the commands of the games in progress in parallel
         practiceServer.setPriority(5);  
         practiceServer.start();
         GameOptionServerSet gOpts =  new GameOptionServerSet();  
@@ -599,45 +639,12 @@ public class Simulation {
             // Create a connection to communicate with the server
         LocalStringConnection prCli = LocalStringServerSocket.connectTo(SOCServer.PRACTICE_STRINGPORT);
 
-        int i=0;
-        // Try to run 10k games.
-        while (i<runNumGames[j] + 1) {        	 
-             // Hack: Look up how many games have been completed in the "database" to see if our current game is finished.
-             // TODO: Add logic to track game creation time and kill any games that take longer than a reasonable allowance.  Errors
-             //   may lead to a game never finishing.
-             //  See robot assert failed... note
-             if (resultsLogger.getTotalNumGames()==i) {
-                 if (i>0) {
-                     // destroy the last game - it's finished
-                     practiceServer.destroyGame(runName[j] + "_" + (i-1), false);        			 
-
-                     // Clean out contents of prCli
-                     while (prCli.isInputAvailable()) {
-                         prCli.readNext();
-                     }
-                 }
-                 if(failedMctsSimulation)
-                    runNumGames[j]++; //add 1 to the number of games to run; it will keep the logs, but won't gather stats or write results
-
-
-                 // Create a new game with robots only and start it
-                 if (i<runNumGames[j]) {
-                     failedMctsSimulation = false; //reset the flag; it is set to true only in StacMCTS if simulations fail
-                     String gameName = runName[j] + "_" + i;
-                     prCli.put(SOCNewGameWithOptionsRequest.toCmd("simulation-master", "", "localhost", gameName, gOpts.optionSet));
-                     prCli.put(SOCStartGame.toCmd(gameName, dontShufflePlayers, load, folderName, noTurns, playerToStart, loadBoard, chatNegotiations, fullyObservable, observableVP));
-                 }
-                 i++;
-             }
-             //System.out.println("i="+i + " out of "+(runNumGames[j] + 1));
-
-             // Wait a little bit before we see if the game is finished
-             Thread.sleep(100);        
+        if (parallel > 1) {
+            runGamesInParallel(prCli, gOpts, runName[j], runNumGames[j], parallel);
+        }
+        else {
+            runGamesSequentially(prCli, gOpts, runName[j], runNumGames[j]);
         }
-        System.out.println("done!");
-
-        //destroy the last game
-        practiceServer.destroyGame(testName + "_" + (i), false);        			 
         
         //clean out contents of prCli
         while (prCli.isInputAvailable()) {
@@ -706,16 +713,141 @@ public class Simulation {
     }
     
     /**
-     * Writes the Value function to the database
-     * @param vector the vector representing the state
+     * Asks the practice server to create a new game with robots only and to start it.
+     * @param prCli the connection to the practice server
+     * @param gOpts the game options
+     * @param gameName the name of the new game
+     */
+    private void startGame(LocalStringConnection prCli, GameOptionServerSet gOpts, String gameName) {
+        prCli.put(SOCNewGameWithOptionsRequest.toCmd("simulation-master", "", "localhost", gameName, gOpts.optionSet));
+        prCli.put(SOCStartGame.toCmd(gameName, dontShufflePlayers, load, folderName, noTurns, playerToStart, loadBoard, chatNegotiations, fullyObservable, observableVP));
+    }
+
+    /**
+     * Plays the games one after the other, starting the next game as soon as the results logger reports the current one as finished.
+     * @param prCli the connection to the practice server
+     * @param gOpts the game options
+     * @param runName the name of the run, used as the prefix of the game names
+     * @param numGames the number of games to play
+     * @throws InterruptedException
+     */
+    private void runGamesSequentially(LocalStringConnection prCli, GameOptionServerSet gOpts, String runName, int numGames) throws InterruptedException {
+        for (int i = 0; i < numGames; i++) {
+            failedMctsSimulation = false; //reset the flag; it is set to true only in StacMCTS if simulations fail
+            String gameName = runName + "_" + i;
+            startGame(prCli, gOpts, gameName);
+            if (!resultsLogger.waitForGame(gameName, gameTimeout)) {
+                discardStuckGame(gameName);
+                numGames++; //replace the game that got stuck
+            }
+            // destroy the game - it's finished
+            practiceServer.destroyGame(gameName, false);
+            clearInput(prCli);
+            if (failedMctsSimulation)
+                numGames++; //add 1 to the number of games to run; it will keep the logs, but won't gather stats or write results
+        }
+        System.out.println("done!");
+    }
+
+    /**
+     * Keeps up to <code>parallel</code> games in progress on the practice server until <code>numGames</code> games have finished.
+     * Each finished game is destroyed and replaced by a new one straight away.
+     * @param prCli the connection to the practice server
+     * @param gOpts the game options
+     * @param runName the name of the run, used as the prefix of the game names
+     * @param numGames the number of games to play
+     * @param parallel the maximum number of games in progress at the same time
+     * @throws InterruptedException
+     */
+    private void runGamesInParallel(LocalStringConnection prCli, GameOptionServerSet gOpts, String runName, int numGames, int parallel) throws InterruptedException {
+        // the games in progress mapped to the time they were started, in the order they were started
+        Map<String, Long> inProgress = new LinkedHashMap<String, Long>();
+        int started = 0;
+        int finished = 0;
+        while (finished < numGames) {
+            while (inProgress.size() < parallel && started < numGames) {
+                String gameName = runName + "_" + started;
+                startGame(prCli, gOpts, gameName);
+                inProgress.put(gameName, System.currentTimeMillis());
+                started++;
+            }
+            long timeout = 0;
+            if (gameTimeout > 0) {
+                // the oldest game is the first one to time out
+                long oldestStart = inProgress.values().iterator().next();
+                timeout = Math.max(1, oldestStart + gameTimeout - System.currentTimeMillis());
+            }
+            String gameName = resultsLogger.waitForAnyGame(inProgress.keySet(), timeout);
+            if (gameName == null) {
+                gameName = inProgress.keySet().iterator().next();
+                discardStuckGame(gameName);
+                numGames++; //replace the game that got stuck
+            }
+            practiceServer.destroyGame(gameName, false);
+            inProgress.remove(gameName);
+            finished++;
+            clearInput(prCli);
+        }
+        System.out.println("done!");
+    }
+
+    /**
+     * Clean out contents of prCli; nothing more will come once the connection has been closed.
+     * @param prCli the connection to the practice server
+     */
+    private void clearInput(LocalStringConnection prCli) {
+        try {
+            while (prCli.isInputAvailable()) {
+                prCli.readNext();
+            }
+        } catch (EOFException e) {
+            // the server closed the connection; there is nothing left to read
+        }
+    }
+
+    /**
+     * Throws away a game that has been running for longer than {@link #gameTimeout}.
+     * @param gameName the name of the game
+     */
+    private void discardStuckGame(String gameName) {
+        System.err.println("Game " + gameName + " did not finish in " + (gameTimeout / 1000) + " seconds; discarding it and starting a new one.");
+        resultsLogger.discardGame(gameName);
+    }
+
+    /**
+     * Some agents and collection modes keep per-game state in static fields or rely on games finishing in order,
+     * so these fall back to playing one game at a time.
+     * @return the number of games to keep in progress at the same time
+     */
+    private int getNumberOfParallelGames() {
+        if (parallelGames <= 1)
+            return 1;
+        String reason = null;
+        if (learnGames > 0)
+            reason = "learning runs switch learning on and off between games";
+        else if (SOCServer.COLLECT_FULL_GAMEPLAY)
+            reason = "the gameplay collection uses a single state id counter";
+        else {
+            for (FactoryDescr f : factories) {
+                if (f.factory instanceof StacRobotBrainFlatMCTS.StacRobotFlatMCTSFactory)
+                    reason = "FlatMCTS agents run their rollouts on a single simulation server";
+            }
+        }
+        if (reason != null) {
+            System.err.println("ParallelGames=" + parallelGames + " ignored, playing one game at a time: " + reason);
+            return 1;
+        }
+        return parallelGames;
+    }
+
+    /**
+     * Writes the Value function to the database.
+     * Safe to call from several brains at once: the row ids are handed out atomically and the rows queued for the write-behind.
+     * @param vector the vector representing the state, which must not be changed afterwards
      * @param value the value of the state
      */
     public static void writeToDb(int[] vector, double value){
-    	//avoid writing to the db at the same time and also incrementing the id counter
-    	synchronized (lock) {
-    		StateValueRow svr = new StateValueRow(vector, value);
-    		dbh.insertStateValue(collectionID, svr);
-    	}
+    	dbh.insertStateValue(collectionID, new StateValueRow(vector, value));
     }
 
     public SOCServer getPracticeServer() {
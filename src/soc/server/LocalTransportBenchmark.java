@@ -0,0 +1,185 @@
+package soc.server;
+
+import java.io.EOFException;
+
+import soc.game.SOCGame;
+import soc.game.SOCPlayingPiece;
+import soc.message.SOCDiceResult;
+import soc.message.SOCGameState;
+import soc.message.SOCGameTextMsg;
+import soc.message.SOCMessage;
+import soc.message.SOCPlayerElement;
+import soc.message.SOCPutPiece;
+import soc.message.SOCTurn;
+import soc.server.genericServer.LocalStringConnection;
+
+/**
+ * Compares the two ways the server can send game messages to local robots:
+ * encoding each message with {@link SOCMessage#toCmd()} for every member of the game and
+ * parsing it again with {@link SOCMessage#toMsg(String)} at each robot, or handing over
+ * the message object itself through {@link LocalStringConnection#putObject(Object)}.
+ *<P>
+ * Each game has one sender thread, standing in for the server, and 4 reader threads,
+ * standing in for the robot clients.  The sender broadcasts a typical mix of game messages
+ * to every reader. Reports the messages per second per game for each mode.
+ *<P>
+ * Usage: LocalTransportBenchmark [messagesPerGame] [games] [rounds]
+ */
+public class LocalTransportBenchmark
+{
+    /** Number of robots receiving each game message */
+    private static final int MEMBERS = 4;
+
+    /**
+     * One simulated game: a sender broadcasting to {@link #MEMBERS} connected readers.
+     */
+    private static class Game implements Runnable
+    {
+        private final String name;
+        private final int numMessages;
+        private final boolean objects;
+        private final LocalStringConnection[] serverSide = new LocalStringConnection[MEMBERS];
+        private final Thread[] readers = new Thread[MEMBERS];
+
+        Game(String name, int numMessages, boolean objects) throws EOFException
+        {
+            this.name = name;
+            this.numMessages = numMessages;
+            this.objects = objects;
+            for (int i = 0; i < MEMBERS; i++)
+            {
+                final LocalStringConnection robotSide = new LocalStringConnection();
+                serverSide[i] = new LocalStringConnection(robotSide);
+                robotSide.setAccepted();
+                serverSide[i].setAccepted();
+                robotSide.setAcceptsObjects(objects);
+                readers[i] = new Thread(new Reader(robotSide, numMessages), name + "-robot-" + i);
+            }
+        }
+
+        /**
+         * Build message number <tt>i</tt> of the game, cycling through common game message types.
+         */
+        private SOCMessage message(int i)
+        {
+            final int pn = i % MEMBERS;
+            switch (i % 6)
+            {
+            case 0:
+                return new SOCTurn(name, pn);
+            case 1:
+                return new SOCDiceResult(name, 2 + (i % 11));
+            case 2:
+                return new SOCPlayerElement(name, pn, SOCPlayerElement.GAIN, SOCPlayerElement.CLAY, 1);
+            case 3:
+                return new SOCGameState(name, SOCGame.PLAY1);
+            case 4:
+                return new SOCPutPiece(name, pn, SOCPlayingPiece.ROAD, 0x23 + (i % 64));
+            default:
+                return new SOCGameTextMsg(name, SOCServer.SERVERNAME, "Player " + pn + " rolled the dice.");
+            }
+        }
+
+        public void run()
+        {
+            for (int i = 0; i < MEMBERS; i++)
+                readers[i].start();
+
+            for (int i = 0; i < numMessages; i++)
+            {
+                final SOCMessage mes = message(i);
+                for (int m = 0; m < MEMBERS; m++)
+                {
+                    if (objects)
+                        serverSide[m].putObject(mes);
+                    else
+                        serverSide[m].put(mes.toCmd());
+                }
+            }
+
+            try
+            {
+                for (int i = 0; i < MEMBERS; i++)
+                    readers[i].join();
+            }
+            catch (InterruptedException e) {}
+        }
+    }
+
+    /**
+     * Robot side of a connection: reads and decodes the expected number of messages.
+     */
+    private static class Reader implements Runnable
+    {
+        private final LocalStringConnection conn;
+        private final int numMessages;
+
+        Reader(LocalStringConnection conn, int numMessages)
+        {
+            this.conn = conn;
+            this.numMessages = numMessages;
+        }
+
+        public void run()
+        {
+            try
+            {
+                for (int i = 0; i < numMessages; i++)
+                {
+                    Object obj = conn.readNextObject();
+                    SOCMessage mes;
+                    if (obj instanceof SOCMessage)
+                        mes = (SOCMessage) obj;
+                    else
+                        mes = SOCMessage.toMsg((String) obj);
+                    if (mes == null)
+                        throw new IllegalStateException("Could not parse " + obj);
+                }
+            }
+            catch (EOFException e)
+            {
+                System.err.println("Unexpected EOF in " + Thread.currentThread().getName());
+            }
+        }
+    }
+
+    /**
+     * Play <tt>games</tt> games at the same time and return the messages per second per game.
+     */
+    private static double measure(int numMessages, int games, boolean objects)
+        throws EOFException, InterruptedException
+    {
+        Thread[] threads = new Thread[games];
+        for (int g = 0; g < games; g++)
+            threads[g] = new Thread(new Game("bench~" + g, numMessages, objects), "bench-server-" + g);
+
+        final long start = System.nanoTime();
+        for (int g = 0; g < games; g++)
+            threads[g].start();
+        for (int g = 0; g < games; g++)
+            threads[g].join();
+        final long elapsed = System.nanoTime() - start;
+
+        return numMessages / (elapsed / 1e9);
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        final int numMessages = (args.length > 0) ? Integer.parseInt(args[0]) : 200000;
+        final int games = (args.length > 1) ? Integer.parseInt(args[1]) : 1;
+        final int rounds = (args.length > 2) ? Integer.parseInt(args[2]) : 5;
+
+        System.out.println("Messages per game: " + numMessages + ", games: " + games + ", robots per game: " + MEMBERS);
+        // the first round of each mode warms up the JIT and is not reported
+        for (int r = 0; r <= rounds; r++)
+        {
+            final double str = measure(numMessages, games, false);
+            final double obj = measure(numMessages, games, true);
+            if (r == 0)
+                continue;
+            System.out.println(String.format("Round %d: toCmd/toMsg %.0f msg/s per game, objects %.0f msg/s per game (x%.2f)",
+                r, str, obj, obj / str));
+        }
+    }
+
+}
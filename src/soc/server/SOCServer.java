@@ -33,8 +33,9 @@ import java.sql.SQLException;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import org.zeromq.ZMQ;
 
 import representation.FVGenerator;
 import representation.FVGeneratorFactory;
@@ -188,11 +189,13 @@ import soc.server.logger.SOCFileLogger;
 import soc.server.logger.SOCLogger;
 import soc.util.CappedQueue;
 import soc.util.DeepCopy;
+import soc.util.SnapshotStore;
 import soc.util.IntPair;
 import soc.util.SOCGameBoardReset;
 import soc.util.SOCGameList;
 import soc.util.SOCRobotParameters;
 import soc.util.Version;
+import soc.util.ZMQServiceClient;
 // JM
 // used in javadoc
 //---MG
@@ -248,19 +251,25 @@ public class SOCServer extends Server
 {	
 	///fields for collecting gameplay in the database, to be used as traces during the offline learning procedure
 	public static boolean COLLECT_FULL_GAMEPLAY = false; //default value do not attempt any collection
-	private StacRobotDummyBrain dummy;
 	public StacDBHelper dbh = new StacDBHelper();
-	private int idCounter = 0; //this is equal to t in the episode
 	
 	/**
-	 * map for linking a game name to its parameters required for loading or starting with a specific configuration
+	 * The episode collected for each game in progress, when {@link #COLLECT_FULL_GAMEPLAY} is set.
+	 * One per game, since games are treated on different lanes at the same time.
 	 */
-	private Map<String, StacGameParameters> gamesParams = new HashMap<String, StacGameParameters>();
+	private Map<String, CollectedEpisode> collectedEpisodes = new ConcurrentHashMap<String, CollectedEpisode>();
+	
+	/**
+	 * map for linking a game name to its parameters required for loading or starting with a specific configuration.
+	 * Concurrent, since games are treated on different lanes at the same time.
+	 */
+	private Map<String, StacGameParameters> gamesParams = new ConcurrentHashMap<String, StacGameParameters>();
 	
 	/**
 	 * map for keeping track of negotiations made via the chat for each game.
+	 * Concurrent, since games are treated on different lanes at the same time.
 	 */
-	private Map<String, StacTradeMessage[]> tradeResponses = new HashMap<String, StacTradeMessage[]>();
+	private Map<String, StacTradeMessage[]> tradeResponses = new ConcurrentHashMap<String, StacTradeMessage[]>();
 	
 	private final DBHelper db;
 	
@@ -312,6 +321,14 @@ public class SOCServer extends Server
      * @since 1.1.09
      */
     public static final String PROP_STAC_ROBOTS = "stac.robots";
+
+    /**
+     * Property <tt>stac.snapshots.disk</tt> to write every game saved for the robots' simulations
+     * to files in {@link DeepCopy#SAVES_DIR}, as well as keeping it in memory; see {@link SnapshotStore}.
+     * Needed if robots run in a different process from the server; those robot processes must be given the
+     * system property {@link SnapshotStore#PROP_SNAPSHOTS_DISK} too. (The default is N, or the system property if set.)
+     */
+    public static final String PROP_STAC_SNAPSHOTS_DISK = SnapshotStore.PROP_SNAPSHOTS_DISK;
     
     /**
      * Property <tt>jsettlers.client.maxcreategames</tt> to limit the amount of
@@ -344,6 +361,7 @@ public class SOCServer extends Server
         PROP_JSETTLERS_CONNECTIONS,   "Maximum connection count, including robots",
         PROP_JSETTLERS_STARTROBOTS,   "Number of robots to create at startup",
         PROP_STAC_ROBOTS,   "Number of Stac robots to create at startup",
+        PROP_STAC_SNAPSHOTS_DISK,   "Write games saved for simulations to files (Y or N)",
         PROP_JSETTLERS_CLI_MAXCREATECHANNELS,   "Maximum simultaneous channels that a client can create",
         PROP_JSETTLERS_CLI_MAXCREATEGAMES,      "Maximum simultaneous games that a client can create",
         SOCDBHelper.PROP_JSETTLERS_DB_USER,     "DB username",
@@ -641,12 +659,12 @@ public class SOCServer extends Server
     /**
      * the total number of games that have been started
      */
-    protected int numberOfGamesStarted;
+    protected final AtomicInteger numberOfGamesStarted = new AtomicInteger();
 
     /**
      * the total number of games finished
      */
-    protected int numberOfGamesFinished;
+    protected final AtomicInteger numberOfGamesFinished = new AtomicInteger();
 
     /**
      * total number of users
@@ -727,6 +745,8 @@ public class SOCServer extends Server
         maxConnections = init_getIntProperty(props, PROP_JSETTLERS_CONNECTIONS, 15);
         CLIENT_MAX_CREATE_GAMES = init_getIntProperty(props, PROP_JSETTLERS_CLI_MAXCREATEGAMES, CLIENT_MAX_CREATE_GAMES);
         CLIENT_MAX_CREATE_CHANNELS = init_getIntProperty(props, PROP_JSETTLERS_CLI_MAXCREATECHANNELS, CLIENT_MAX_CREATE_CHANNELS);
+        if (props.getProperty(PROP_STAC_SNAPSHOTS_DISK, "N").toUpperCase().startsWith("Y"))
+            SnapshotStore.setPersistToDisk(true);
         this.db = db;
         String dbuser = props.getProperty(SOCDBHelper.PROP_JSETTLERS_DB_USER, "dbuser");
         String dbpass = props.getProperty(SOCDBHelper.PROP_JSETTLERS_DB_PASS, "dbpass");
@@ -852,11 +872,11 @@ public class SOCServer extends Server
 	        }
 
         startTime = System.currentTimeMillis();
-        numberOfGamesStarted = 0;
-        numberOfGamesFinished = 0;
+        numberOfGamesStarted.set(0);
+        numberOfGamesFinished.set(0);
         numberOfUsers = 0;
         
-        pendingTrades = new HashMap<>();
+        pendingTrades = new ConcurrentHashMap<String, HashMap>();
         
         serverRobotPinger = new SOCServerRobotPinger(robots); // no need to pass a reference to this server
         serverRobotPinger.start();
@@ -2105,7 +2125,7 @@ public class SOCServer extends Server
         {
             if (cg.getGameState() == SOCGame.OVER)
             {
-                numberOfGamesFinished++;
+                numberOfGamesFinished.incrementAndGet();
             }
 
             ///
@@ -2162,6 +2182,8 @@ public class SOCServer extends Server
             }
             
             gamesParams.remove(gm);//once we destroyed the game we also want to remove the game parameters
+            lastTradeOffers.remove(gm);
+            collectedEpisodes.remove(gm);
         }
     }
 
@@ -2427,13 +2449,41 @@ public class SOCServer extends Server
         if ((c != null) && (mes != null))
         {
             //currentGameEventRecord.addMessageOut(new SOCMessageRecord(mes, "SERVER", c.getData()));
-            c.put(mes.toCmd());
+            putMessage(c, mes, null);
         }
         
         //---MG
         logServerMessage(c.getData().toString(), mes);
     }
 
+    /**
+     * Send a message over one connection.
+     * Local robot connections which accept objects (see {@link LocalStringConnection#setAcceptsObjects(boolean)})
+     * are handed the message itself if it's {@link SOCMessage#isShareable() shareable},
+     * so neither side has to encode or parse it.  Other connections are sent <tt>cmd</tt>.
+     *
+     * @param c   the connection
+     * @param mes the message to send
+     * @param cmd <tt>mes.toCmd()</tt>, or null if not encoded yet
+     * @return <tt>mes.toCmd()</tt> if it was needed to send to <tt>c</tt>, otherwise <tt>cmd</tt>;
+     *     when sending to several connections, pass this into the next call so the message is encoded at most once
+     */
+    private String putMessage(StringConnection c, SOCMessage mes, String cmd)
+    {
+        if ((c instanceof LocalStringConnection)
+            && ((LocalStringConnection) c).peerAcceptsObjects()
+            && mes.isShareable())
+        {
+            ((LocalStringConnection) c).putObject(mes);
+            return cmd;
+        }
+
+        if (cmd == null)
+            cmd = mes.toCmd();
+        c.put(cmd);
+        return cmd;
+    }
+
     /**
      * Send a {@link SOCGameTextMsg} game text message to a player.
      * Equivalent to: messageToPlayer(conn, new {@link SOCGameTextMsg}(ga, {@link #SERVERNAME}, txt));
@@ -2477,6 +2527,7 @@ public class SOCServer extends Server
             {
                 //D.ebugPrintln("M2G - "+mes);
                 Enumeration menum = v.elements();
+                String cmd = null;
 
                 while (menum.hasMoreElements())
                 {
@@ -2486,7 +2537,7 @@ public class SOCServer extends Server
                     {
                         //currentGameEventRecord.addMessageOut(new SOCMessageRecord(mes, "SERVER", c.getData()));
 //                        System.err.println("Server - Message to game for host " + c.host() + ":" + mes.toCmd());
-                        c.put(mes.toCmd());
+                        cmd = putMessage(c, mes, cmd);
                     }
                 }
             }
@@ -2571,6 +2622,7 @@ public class SOCServer extends Server
         {
             //D.ebugPrintln("M2G - "+mes);
             Enumeration menum = v.elements();
+            String cmd = null;
 
             while (menum.hasMoreElements())
             {
@@ -2579,7 +2631,7 @@ public class SOCServer extends Server
                 if (c != null)
                 {
                     //currentGameEventRecord.addMessageOut(new SOCMessageRecord(mes, "SERVER", c.getData()));
-                    c.put(mes.toCmd());
+                    cmd = putMessage(c, mes, cmd);
                 }
             }
         }
@@ -2612,6 +2664,7 @@ public class SOCServer extends Server
             {
                 //D.ebugPrintln("M2GE - "+mes);
                 Enumeration menum = v.elements();
+                String cmd = null;
 
                 while (menum.hasMoreElements())
                 {
@@ -2620,7 +2673,7 @@ public class SOCServer extends Server
                     if ((con != null) && (!ex.contains(con)))
                     {
                         //currentGameEventRecord.addMessageOut(new SOCMessageRecord(mes, "SERVER", con.getData()));
-                        con.put(mes.toCmd());
+                        cmd = putMessage(con, mes, cmd);
                         recipients += con.getData() + ",";
                     }
                 }
@@ -2662,6 +2715,7 @@ public class SOCServer extends Server
             {
                 //D.ebugPrintln("M2GE - "+mes);
                 Enumeration menum = v.elements();
+                String cmd = null;
 
                 while (menum.hasMoreElements())
                 {
@@ -2669,7 +2723,7 @@ public class SOCServer extends Server
                     if ((con != null) && (con != ex))
                     {
                         //currentGameEventRecord.addMessageOut(new SOCMessageRecord(mes, "SERVER", con.getData()));
-                        con.put(mes.toCmd());
+                        cmd = putMessage(con, mes, cmd);
                         recipients += con.getData() + ",";
                     }
                 }
@@ -3323,8 +3377,9 @@ public class SOCServer extends Server
      */
     public static String formattedDate() {    	
     	Date date = new Date();
-    	String formattedDate = LOG_DATE_FORMAT.format(date);
-    	return formattedDate;
+    	synchronized (LOG_DATE_FORMAT) { // SimpleDateFormat isn't thread-safe
+    		return LOG_DATE_FORMAT.format(date);
+    	}
     }
     
     /**
@@ -3334,14 +3389,56 @@ public class SOCServer extends Server
      */
     public static String formattedDateShort() {    	
     	Date date = new Date();
-    	String formattedDate = DATE_FORMAT_SHORT.format(date);
-    	return formattedDate;
+    	synchronized (DATE_FORMAT_SHORT) {
+    		return DATE_FORMAT_SHORT.format(date);
+    	}
     }
-    
+
+    /**
+     * Commands for a game go to that game's lane, when {@link #setGameLanes(int)} is used;
+     * other commands go to the main treater.
+     * Parses the command, and keeps it in {@link Server.Command#parsed} for {@link #processCommand(Server.Command)}.
+     */
+    @Override
+    protected String getCommandLane(Command cmd)
+    {
+        SOCMessage mes = SOCMessage.toMsg(cmd.str);
+        cmd.parsed = mes;
+        if (mes instanceof SOCMessageForGame)
+            return ((SOCMessageForGame) mes).getGame();
+        return null;
+    }
+
+    /**
+     * Treat a command, using the message parsed by {@link #getCommandLane(Server.Command)} if there is one.
+     */
+    @Override
+    protected void processCommand(Command cmd)
+    {
+        if (cmd.parsed != null)
+            processCommand((SOCMessage) cmd.parsed, cmd.str, cmd.con);
+        else
+            processCommand(cmd.str, cmd.con);
+    }
+
+    /**
+     * Treat the incoming messages.  Messages of unknown type are ignored.
+     * Parses <tt>s</tt> and calls {@link #processCommand(SOCMessage, String, StringConnection)}.
+     *
+     * @param s    Contents of message from the client
+     * @param c    Connection (client) sending this message
+     */
+    public void processCommand(String s, StringConnection c)
+    {
+        processCommand(SOCMessage.toMsg(s), s, c);
+    }
+
     /**
      * Treat the incoming messages.  Messages of unknown type are ignored.
      *<P>
-     * Called from the single 'treater' thread.
+     * Called from the single 'treater' thread, or when {@link #setGameLanes(int)} is used,
+     * from the treater of the message's game lane: Commands for different games may then
+     * be treated at the same time, but each game's commands are still treated one at a time.
      * <em>Do not block or sleep</em> because this is single-threaded.
      *<P>
      * The first message from a client is treated by
@@ -3355,14 +3452,14 @@ public class SOCServer extends Server
      *       messages making players do things they didn't want
      *       to do.
      *
+     * @param message  the parsed message
      * @param s    Contents of message from the client
      * @param c    Connection (client) sending this message
      */
-    public void processCommand(String s, StringConnection c)
+    public void processCommand(SOCMessage message, String s, StringConnection c)
     {
     	//---MG
     	//Do my own little treatment of messages this server receives
-        SOCMessage message = (SOCMessage) SOCMessage.toMsg(s);
         
     	int messageType = message.getType(); //type of the message
     	String sender = (String) c.getData(); //ID of player who sent the message
@@ -3372,15 +3469,15 @@ public class SOCServer extends Server
     		
     		switch (messageType) {
     			case SOCMessage.BCASTTEXTMSG:
-    				SOCBCastTextMsg bCastTextMessage = (SOCBCastTextMsg) SOCMessage.toMsg(s);
+    				SOCBCastTextMsg bCastTextMessage = (SOCBCastTextMsg) message;
     				//System.err.println("BROADCAST TEXT MESSAGE -- TEXT: " + bCastTextMessage.getText());
     				break;
     			case SOCMessage.TEXTMSG: 
-    				SOCTextMsg textMessage = (SOCTextMsg) SOCMessage.toMsg(s);
+    				SOCTextMsg textMessage = (SOCTextMsg) message;
     				//System.err.println("TEXT MESSAGE -- CHANNEL: " + textMessage.getChannel() + "TEXT: " + textMessage.getText());
     				break;
     			case SOCMessage.GAMETEXTMSG: 
-    				SOCGameTextMsg gameTextMessage = (SOCGameTextMsg) SOCMessage.toMsg(s);
+    				SOCGameTextMsg gameTextMessage = (SOCGameTextMsg) message;
     				SOCGame game = gameList.getGameData(gameTextMessage.getGame()); //game object
     				// Note that in simulations, agents may attempt to send messages after the game has been completed, but before they have 
                     //  realized this.  If the game is not found, ignore the message
@@ -3462,7 +3559,7 @@ public class SOCServer extends Server
     	
         try
         {
-            SOCMessage mes = (SOCMessage) SOCMessage.toMsg(s);
+            SOCMessage mes = message;
 
             // D.ebugPrintln(c.getData()+" - "+mes);
             if (mes != null)
@@ -4098,7 +4195,7 @@ public class SOCServer extends Server
     	//disconnect if needed and deallocate
         if(COLLECT_FULL_GAMEPLAY)
         	dbh.disconnect();
-    	dummy = null;
+    	collectedEpisodes.clear();
     	dbh = null;
         stopServer(">>> The game server is shutting down. <<<");
     }
@@ -4721,15 +4818,11 @@ public class SOCServer extends Server
     }
     
     /**
-     * Keep track of whether the last trade offer was forced for logging purposes. (So we can say whether a forced offer was accepted or not.)
+     * The last trade offer made via the chat in each game, to keep track of whether it was forced and of its persuasion move
+     * for logging purposes. (So we can say whether a forced offer was accepted or not.)
+     * Kept for each game, since games are treated on different lanes at the same time.
      */
-    private boolean lastTradeOfferWasForceAccept = false;
-
-    
-    /** 
-     * Equivalent use to {@link lastTradeOfferWasForceAccept} Used to maintain the previous persuasion move
-     */
-    private Persuasion lastTradeOfferPersuasion = new Persuasion();
+    private final Map<String, StacTradeMessage> lastTradeOffers = new ConcurrentHashMap<String, StacTradeMessage>();
     
     /**
      * Set if using persuasion (When set false then it will use force accept)
@@ -4739,8 +4832,9 @@ public class SOCServer extends Server
     /**
      * The pending trade for each game to keep track of the confirmation panel.
      * The stored HashMap for each game contains: "players" (ListArray of String), "offeringPlayer" (int), "acceptingPlayer" (int)
+     * Concurrent, since games are treated on different lanes at the same time.
      */
-    private HashMap<String, HashMap> pendingTrades;
+    private Map<String, HashMap> pendingTrades;
     
     /**
      * Handle game text messages, including debug commands.
@@ -4807,8 +4901,8 @@ public class SOCServer extends Server
             messageToPlayer(c, gaName, "> Total connections: " + numberOfConnections);
             messageToPlayer(c, gaName, "> Current connections: " + connectionCount());
             messageToPlayer(c, gaName, "> Total Users: " + numberOfUsers);
-            messageToPlayer(c, gaName, "> Games started: " + numberOfGamesStarted);
-            messageToPlayer(c, gaName, "> Games finished: " + numberOfGamesFinished);
+            messageToPlayer(c, gaName, "> Games started: " + numberOfGamesStarted.get());
+            messageToPlayer(c, gaName, "> Games finished: " + numberOfGamesFinished.get());
             messageToPlayer(c, gaName, "> Total Memory: " + rt.totalMemory());
             messageToPlayer(c, gaName, "> Free Memory: " + rt.freeMemory());
             messageToPlayer(c, gaName, "> Version: "
@@ -4912,8 +5006,7 @@ public class SOCServer extends Server
                     else{
                     	db.logChatTradeOffer(player, tr, ga.getCurrentPlayerNumber(), false, tr.getPersuasiveMove(), player.getGame().getRoundCount());
                     }
-                    lastTradeOfferWasForceAccept = tr.isForced();
-                    lastTradeOfferPersuasion = tr.getPersuasiveMove();
+                    lastTradeOffers.put(ga.getName(), tr);
 
                     //add it to the corresponding position in the tradeResponse array for tracking purposes
                     String sender = Integer.toString(offer.getFrom());
@@ -4923,11 +5016,11 @@ public class SOCServer extends Server
 //                        System.err.println("--- Server: clearing trade response for all players (1)");
 //                    	tradeResponses.put(ga.getName(),new StacTradeMessage[ga.maxPlayers]);
                     	StacTradeMessage[] responses = tradeResponses.get(ga.getName());
-                    	responses[player.getPlayerNumber()] = new StacTradeMessage(sender, receivers, offer, tr.isForced(), lastTradeOfferPersuasion, tr.getNLChatString());
+                    	responses[player.getPlayerNumber()] = new StacTradeMessage(sender, receivers, offer, tr.isForced(), tr.getPersuasiveMove(), tr.getNLChatString());
                         D.ebugPrintlnINFO("--- Server: Updated trade response (1); Player " + player.getName() + tradeResponsesString(gaName));
                     }else if(offer.getTo()[ga.getCurrentPlayerNumber()]){
                     	StacTradeMessage[] responses = tradeResponses.get(ga.getName());
-                    	responses[player.getPlayerNumber()] = new StacTradeMessage(sender, receivers, offer, tr.isForced(), lastTradeOfferPersuasion, tr.getNLChatString());
+                    	responses[player.getPlayerNumber()] = new StacTradeMessage(sender, receivers, offer, tr.isForced(), tr.getPersuasiveMove(), tr.getNLChatString());
                         D.ebugPrintlnINFO("--- Server: Updated trade response (2); Player " + player.getName() + tradeResponsesString(gaName));
                     }else{
                     	D.ebugERROR("Offer not from or to the current player");
@@ -4935,11 +5028,11 @@ public class SOCServer extends Server
                 }
                 else if (tr.isBlock()) {
                     String playerName = (String) c.getData();
-                    db.logBlockingAction(playerName, DBHelper.BLOCK);                    
+                    db.logBlockingAction(gaName, playerName, DBHelper.BLOCK);                    
                 }
                 else if (tr.isBlockComply()) {
                     String playerName = (String) c.getData();
-                    db.logBlockingAction(playerName, DBHelper.BLOCK_COMPLY);                    
+                    db.logBlockingAction(gaName, playerName, DBHelper.BLOCK_COMPLY);                    
                 }
                 else{
                     //accept/rejects/no-responses
@@ -5153,7 +5246,7 @@ public class SOCServer extends Server
                 if (p[1].equals("BUILD_PLAN")) {
                     String t[] = p[2].split("=");
                     int type = Integer.parseInt(t[1]);
-                    db.logBuildPlan(player, type);
+                    db.logBuildPlan(ga.getName(), player, type);
                 }
             }
             else if (cmdText.startsWith(StacRobotDialogueManager.EMBARGO)) {
@@ -5162,17 +5255,17 @@ public class SOCServer extends Server
                 if (p[2].equals(StacRobotDialogueManager.EMBARGO_PROPOSE)) {
 //                    System.err.println(ga.getTurnCount() + " - observing pr opose embargo: " + cmdText);
                     String playerName = (String) c.getData();
-                    db.logEmbargoAction(playerName, DBHelper.EMBARGO_PROPOSE);
+                    db.logEmbargoAction(ga.getName(), playerName, DBHelper.EMBARGO_PROPOSE);
                 }
                 else if (p[2].equals(StacRobotDialogueManager.EMBARGO_COMPLY)) {
 //                    System.err.println(ga.getTurnCount() + " - observing comply with embargo: " + cmdText);
                     String playerName = (String) c.getData();
-                    db.logEmbargoAction(playerName, DBHelper.EMBARGO_COMPLY);                    
+                    db.logEmbargoAction(ga.getName(), playerName, DBHelper.EMBARGO_COMPLY);                    
                 }
                 else if (p[2].equals(StacRobotDialogueManager.EMBARGO_LIFT)) {
 //                    System.err.println(ga.getTurnCount() + " - observing lift embargo: " + cmdText);
 //                    String playerName = (String) c.getData();
-//                    db.logEmbargoAction(playerName, DBHelper.EMBARGO_LIFT);
+//                    db.logEmbargoAction(ga.getName(), playerName, DBHelper.EMBARGO_LIFT);
                 }
 
                 // pass on the message
@@ -6000,7 +6093,7 @@ public class SOCServer extends Server
                             ga.putPiece(rd);  // Changes state and sometimes player (initial placement)
                             SOCPlayer newLRPlayer = ga.getPlayerWithLongestRoad();
                             if (oldLRPlayer != newLRPlayer) {
-                                db.logLA_LRPlayerChanged(newLRPlayer.getName(), "LR");
+                                db.logLA_LRPlayerChanged(ga.getName(), newLRPlayer.getName(), "LR");
                             }
 
                             /*
@@ -6023,10 +6116,8 @@ public class SOCServer extends Server
                             boolean toldRoll = sendGameState(ga, false);
                             broadcastGameStats(ga);
 
-                        	if(COLLECT_FULL_GAMEPLAY){
-                        		dummy.setGame((SOCGame)DeepCopy.copy(ga));
-                        		dummy.handlePUTPIECE_updateTrackers((SOCPutPiece)mes);
-                        	}
+                        	if(COLLECT_FULL_GAMEPLAY)
+                        		trackCollectedPiece(ga, (SOCPutPiece)mes);
                             writeToDB(ga, GameActionRow.BUILDROAD);
                             if(COLLECT_VALUE_FUNCTION_APPROX)
                             	messageToGame(ga.getName(), new SOCCollectData(ga.getName(), player.getPlayerNumber()));
@@ -6076,10 +6167,8 @@ public class SOCServer extends Server
                             broadcastGameStats(ga);
                             sendGameState(ga);
 
-                        	if(COLLECT_FULL_GAMEPLAY){
-                        		dummy.setGame((SOCGame)DeepCopy.copy(ga));
-                        		dummy.handlePUTPIECE_updateTrackers((SOCPutPiece)mes);
-                        	}
+                        	if(COLLECT_FULL_GAMEPLAY)
+                        		trackCollectedPiece(ga, (SOCPutPiece)mes);
                             writeToDB(ga, GameActionRow.BUILDSETT);
                             if(COLLECT_VALUE_FUNCTION_APPROX)
                             	messageToGame(ga.getName(), new SOCCollectData(ga.getName(), player.getPlayerNumber()));
@@ -6120,10 +6209,8 @@ public class SOCServer extends Server
                             broadcastGameStats(ga);
                             sendGameState(ga);
 
-                        	if(COLLECT_FULL_GAMEPLAY){
-                        		dummy.setGame((SOCGame)DeepCopy.copy(ga));
-                        		dummy.handlePUTPIECE_updateTrackers((SOCPutPiece)mes);
-                        	}
+                        	if(COLLECT_FULL_GAMEPLAY)
+                        		trackCollectedPiece(ga, (SOCPutPiece)mes);
                             writeToDB(ga, GameActionRow.BUILDCITY);
                             if(COLLECT_VALUE_FUNCTION_APPROX)
                             	messageToGame(ga.getName(), new SOCCollectData(ga.getName(), player.getPlayerNumber()));
@@ -7385,18 +7472,19 @@ public class SOCServer extends Server
                         reportTrade(ga, offeringNumber, acceptingNumber);
 
                         recordGameEvent(mes.getGame(), mes.toCmd());
+                        final StacTradeMessage lastTradeOffer = lastTradeOffers.get(ga.getName());
                         if(!usingPersuasion){
-                            db.logTradeEvent(player, ga.getPlayer(offeringNumber), mes, ga.getCurrentPlayerNumber(), lastTradeOfferWasForceAccept);
+                            db.logTradeEvent(player, ga.getPlayer(offeringNumber), mes, ga.getCurrentPlayerNumber(), (lastTradeOffer != null) && lastTradeOffer.isForced());
                         }
                         else{
-                            db.logTradeEvent(player, ga.getPlayer(offeringNumber), mes, ga.getCurrentPlayerNumber(), lastTradeOfferPersuasion);                        	
+                            db.logTradeEvent(player, ga.getPlayer(offeringNumber), mes, ga.getCurrentPlayerNumber(), (lastTradeOffer != null) ? lastTradeOffer.getPersuasiveMove() : new Persuasion());                        	
                         }
                         
                         String accepter = player.getName();
                         String offerer = ga.getPlayer(mes.getOfferingNumber()).getName();
                         SOCTradeOffer currentOffer = ga.getPlayer(mes.getOfferingNumber()).getCurrentOffer();
-                        db.logResourcesReceivedByTrading(offerer, currentOffer.getGetSet());
-                        db.logResourcesReceivedByTrading(accepter, currentOffer.getGiveSet());
+                        db.logResourcesReceivedByTrading(ga.getName(), offerer, currentOffer.getGetSet());
+                        db.logResourcesReceivedByTrading(ga.getName(), accepter, currentOffer.getGiveSet());
                         
 // newProt                       /**
 //                         * clear all offers
@@ -7578,7 +7666,7 @@ public class SOCServer extends Server
                         if (ga.couldBuildRoad(pn))
                         {
                             ga.buyRoad(pn);
-                            db.logBuildAction(ga.getPlayer(pn).getName(), SOCPossiblePiece.ROAD);
+                            db.logBuildAction(ga.getName(), ga.getPlayer(pn).getName(), SOCPossiblePiece.ROAD);
                             messageToGame(gaName, new SOCPlayerElement(gaName, pn, SOCPlayerElement.LOSE, SOCPlayerElement.CLAY, 1));
                             messageToGame(gaName, new SOCPlayerElement(gaName, pn, SOCPlayerElement.LOSE, SOCPlayerElement.WOOD, 1));
                             sendGameState(ga);
@@ -7596,7 +7684,7 @@ public class SOCServer extends Server
                         if (ga.couldBuildSettlement(pn))
                         {
                             ga.buySettlement(pn);
-                            db.logBuildAction(ga.getPlayer(pn).getName(), SOCPossiblePiece.SETTLEMENT);
+                            db.logBuildAction(ga.getName(), ga.getPlayer(pn).getName(), SOCPossiblePiece.SETTLEMENT);
                             gameList.takeMonitorForGame(gaName);
                             messageToGameWithMon(gaName, new SOCPlayerElement(gaName, pn, SOCPlayerElement.LOSE, SOCPlayerElement.CLAY, 1));
                             messageToGameWithMon(gaName, new SOCPlayerElement(gaName, pn, SOCPlayerElement.LOSE, SOCPlayerElement.SHEEP, 1));
@@ -7618,7 +7706,7 @@ public class SOCServer extends Server
                         if (ga.couldBuildCity(pn))
                         {
                             ga.buyCity(pn);
-                            db.logBuildAction(ga.getPlayer(pn).getName(), SOCPossiblePiece.CITY);
+                            db.logBuildAction(ga.getName(), ga.getPlayer(pn).getName(), SOCPossiblePiece.CITY);
                             messageToGame(ga.getName(), new SOCPlayerElement(ga.getName(), pn, SOCPlayerElement.LOSE, SOCPlayerElement.ORE, 3));
                             messageToGame(ga.getName(), new SOCPlayerElement(ga.getName(), pn, SOCPlayerElement.LOSE, SOCPlayerElement.WHEAT, 2));
                             sendGameState(ga);
@@ -7819,7 +7907,7 @@ public class SOCServer extends Server
                     && (ga.couldBuyDevCard(pn)))
                 {
                     int card = ga.buyDevCard();
-                    db.logBuildAction(ga.getPlayer(pn).getName(), SOCPossiblePiece.CARD);
+                    db.logBuildAction(ga.getName(), ga.getPlayer(pn).getName(), SOCPossiblePiece.CARD);
                     gameList.takeMonitorForGame(gaName);
                     messageToGameWithMon(gaName, new SOCPlayerElement(gaName, pn, SOCPlayerElement.LOSE, SOCPlayerElement.ORE, 1));
                     messageToGameWithMon(gaName, new SOCPlayerElement(gaName, pn, SOCPlayerElement.LOSE, SOCPlayerElement.SHEEP, 1));
@@ -7932,7 +8020,7 @@ public class SOCServer extends Server
                                 ga.playKnight();
                                 SOCPlayer newLAPlayer = ga.getPlayerWithLargestArmy();
                                 if (oldLAPlayer != newLAPlayer) {
-                                    db.logLA_LRPlayerChanged(newLAPlayer.getName(), "LA");
+                                    db.logLA_LRPlayerChanged(ga.getName(), newLAPlayer.getName(), "LA");
                                 }
                                 gameList.takeMonitorForGame(gaName);
                                 messageToGameWithMon(gaName, new SOCGameTextMsg(gaName, SERVERNAME, player.getName() + " played a Soldier card."));
@@ -8051,6 +8139,8 @@ public class SOCServer extends Server
     /**
      * Deep copies the game information required for restarting from the current game state and
      * communicates the request to the participating players.
+     * The copy is kept in the {@link SnapshotStore}; a save asked for by a player's client
+     * (player number -1) is also written to files, so it can be loaded in a later run.
      * 
      * @param c the StringConnection for sending messages back to the client (not needed)
      * @param mes the message 
@@ -8064,11 +8154,14 @@ public class SOCServer extends Server
             String ds = "_" + date.toString().replace(':','_').replace(' ','_');
             folderName = folderName + mes.getGame() + ds;
     	}
-        File dir = new File(folderName);  
-        if(!dir.exists())
-        	dir.mkdirs();
+    	final boolean toDisk = (mes.getPlayerNumber() < 0) || SnapshotStore.isPersistToDisk();
+    	if(toDisk){
+	        File dir = new File(folderName);  
+	        if(!dir.exists())
+	        	dir.mkdirs();
+    	}
     	
-    	DeepCopy.copyToFile(gameList.getGameData(mes.getGame()), "server" , folderName); 	//clone it
+    	SnapshotStore.save(folderName, "server", gameList.getGameData(mes.getGame()), SnapshotStore.GAME, toDisk); 	//clone it
     	messageToGame(mes.getGame(), new SOCGameCopy(mes.getGame(),folderName,mes.getPlayerNumber())); //we need a new message to keep the new folder name
 //    	System.out.println("Server: received copy request, sending copy request back"); //-- for quick debugging
 	}
@@ -8094,10 +8187,9 @@ public class SOCServer extends Server
      * @param mes the load game msg
      */
     private void loadGame(SOCLoadGame mes){
-		String prefix = mes.getFolder() + "/"; //add the slash missed by the getDirectory
 		gameList.takeMonitorForGame(mes.getGame());
 		SOCGame originalGame = gameList.getGameData(mes.getGame()); //in order to get the right player names
-		SOCGame cloneGame = (SOCGame) DeepCopy.readFromFile(prefix + "server_soc.game.SOCGame");
+		SOCGame cloneGame = (SOCGame) SnapshotStore.restore(mes.getFolder(), "server", SOCGame.class, SnapshotStore.GAME);
 		cloneGame.setName(originalGame.getName());//keep the current game name
 		cloneGame.resetTimes();
 		//without the correct player names in the game, the server will "lose" the connection to the client 
@@ -10035,11 +10127,10 @@ public class SOCServer extends Server
         if (ga != null)
         {
         	if(COLLECT_FULL_GAMEPLAY) {
-                dummy = new StacRobotDummyBrain(new SOCRobotClient(null, "replay", "replayAgent", "", null),
+                StacRobotDummyBrain dummy = new StacRobotDummyBrain(new SOCRobotClient(null, "replay", "replayAgent", "", null),
                                 new SOCRobotParameters(300, 500, 0f, 0f, 0f, 0f, 0f, SOCRobotDMImpl.FAST_STRATEGY, 0),
-                                (SOCGame)DeepCopy.copy(ga),new CappedQueue(),0);
-	        	
-                idCounter = 0;//reset t
+                                ga.copy(),new CappedQueue(),0);
+                collectedEpisodes.put(ga.getName(), new CollectedEpisode(dummy)); //t starts from 0
                 int gameID;
                 gameID = StacDBHelper.SIMGAMESSTARTID + Integer.parseInt(ga.getName().split("_")[1]);
                 //create tables also
@@ -10052,7 +10143,7 @@ public class SOCServer extends Server
             }
             final String gaName = ga.getName();
 
-            numberOfGamesStarted++;
+            numberOfGamesStarted.incrementAndGet();
             StacGameParameters gp = gamesParams.get(gaName);
             //need to set the end of game moment if this exists
             ga.setFinishTurn(gp.simulationDepth);
@@ -10414,6 +10505,10 @@ public class SOCServer extends Server
                     scores[2] = ga.getPlayer(2).getTotalVP();
                     scores[3] = ga.getPlayer(3).getTotalVP();
                     dbh.insertSimGameOverview(ga.getName(), scores);
+                    //the game's rows are all queued by now, so get them written before the next game starts
+                    final int dropped = dbh.flush();
+                    if (dropped > 0)
+                        System.err.println("Lost " + dropped + " rows of gameplay while writing game " + ga.getName());
         	}
         	
             //D.ebugPrintln("allOriginalPlayers for "+ga.getName()+" : "+ga.allOriginalPlayers());
@@ -10843,11 +10938,11 @@ public class SOCServer extends Server
     /**
      * Strings for accumulating a string to be sent to the parser.
      * There's one string for each game running on the server.
-     * Game name is the key of the HashMap.
+     * Game name is the key of the Hashtable; synchronized, since games may be treated in parallel.
      */
 //    static String parserIncrementString = "";
-    static HashMap<String, String> parserIncrementStrings = new HashMap();
-    static HashMap<String, String> parserIncrementXMLStrings = new HashMap();
+    static Hashtable<String, String> parserIncrementStrings = new Hashtable<String, String>();
+    static Hashtable<String, String> parserIncrementXMLStrings = new Hashtable<String, String>();
     
     /**
      * Add a new line to the "parser increment string", i.e. the string built up by the server to be sent to the parser (at some point in the future).
@@ -10881,7 +10976,7 @@ public class SOCServer extends Server
      * @param message 
      */
     private void sendMessageToParser(SOCMessageForGame message) {
-        String data = message.toString();
+        String data = ((SOCMessage) message).toLogString();
         String dateStr = SOCServer.formattedDate();
         addToParserString(message.getGame(), dateStr + ":" + data + "\n");
 
@@ -10901,27 +10996,22 @@ public class SOCServer extends Server
     }
 
     /**
-     * The actual interaction with the parser via ZMQ. Sends the incrementally built up parser string, waits for the parser output and clears the parser string.
+     * The actual interaction with the parser via ZMQ, through the sockets kept by {@link ZMQServiceClient}.
+     * Sends the incrementally built up parser string, waits for the parser output and clears the parser string.
      * @param gaName the game's name
      */
     private void sendIncrementStringToParser(String gaName) {
 //        System.err.println("Sending string to parser:\n" + parserIncrementStrings.get(gaName));
         String address = "tcp://localhost:7777";
-        final ZMQ.Context context = ZMQ.context(1);
-        try (ZMQ.Socket requester = context.socket(ZMQ.REQ)) {
-            requester.connect(address);
-            requester.send(parserIncrementStrings.get(gaName), 0);
-            byte[] reply = requester.recv(0);
-            
-            String replyString = new String(reply);
+        String replyString = ZMQServiceClient.get(address).request(parserIncrementStrings.get(gaName));
+        if (replyString != null) {
 //            System.out.println(replyString);
             
             //forward the result of the parse to the clients playing this game
             sendParseResultToClients(gaName, replyString);
-        } catch (Exception e) {
-            System.err.println("Exception in ZMQ interaction: " + e.toString());
-        };
-        context.term();
+        } else {
+            System.err.println("No reply from the parser at " + address);
+        }
         parserIncrementStrings.put(gaName, "");
     }
 
@@ -11455,12 +11545,15 @@ public class SOCServer extends Server
      */
     private void writeToDB(SOCGame ga, double actionType) {
         if (COLLECT_FULL_GAMEPLAY) {
+            CollectedEpisode episode = collectedEpisodes.get(ga.getName());
+            if (episode == null)
+                return; //not started while collecting
             int gameID;
             gameID = StacDBHelper.SIMGAMESSTARTID + Integer.parseInt(ga.getName().split("_")[1]);
-            idCounter++;
+            final int idCounter = ++episode.idCounter;
             ObsGameStateRow ogsr = ga.turnCurrentStateIntoOGSR();
             GameActionRow gar = new GameActionRow(idCounter, actionType, idCounter - 1, idCounter);
-            ExtGameStateRow egsr = dummy.turnStateIntoEGSR();
+            ExtGameStateRow egsr = episode.dummy.turnStateIntoEGSR();
             egsr.setID(idCounter);
             ogsr.setID(idCounter);
 
@@ -11474,4 +11567,32 @@ public class SOCServer extends Server
         }
     }
 
+    /**
+     * Updates the trackers of the brain collecting a game's features after a piece was placed.
+     * @param ga the game object in which the piece was placed
+     * @param mes the message placing it
+     */
+    private void trackCollectedPiece(SOCGame ga, SOCPutPiece mes) {
+        CollectedEpisode episode = collectedEpisodes.get(ga.getName());
+        if (episode != null) {
+            episode.dummy.setGame(ga.copy());
+            episode.dummy.handlePUTPIECE_updateTrackers(mes);
+        }
+    }
+
+    /**
+     * A game's episode being collected in the database when {@link #COLLECT_FULL_GAMEPLAY} is set.
+     * Only used by the game's lane.
+     */
+    private static class CollectedEpisode {
+        /** The brain tracking the game, for extracting the features of its states */
+        final StacRobotDummyBrain dummy;
+        /** this is equal to t in the episode */
+        int idCounter = 0;
+
+        CollectedEpisode(StacRobotDummyBrain dummy) {
+            this.dummy = dummy;
+        }
+    }
+
 }
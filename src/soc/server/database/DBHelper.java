@@ -73,27 +73,27 @@ public interface DBHelper {
     public void logHasResourcesPrediction(SOCPlayer p, boolean beliefCorrect, boolean observedCorrect, boolean subsetCorrect, boolean afterRollOfSeven);
 
     // Log a player's build plan
-    public void logBuildPlan(String player, int bpType);
+    public void logBuildPlan(String gameName, String player, int bpType);
 
     // Log that a player has build/bought something
-    public void logBuildAction(String player, int piece);
+    public void logBuildAction(String gameName, String player, int piece);
 
     // Log that the player holding a badge (LR/LA) has changed
-    public void logLA_LRPlayerChanged(String player, String badge);
+    public void logLA_LRPlayerChanged(String gameName, String player, String badge);
 
     /** Log that a player has received resources */
-    public void logResourcesReceivedByTrading(String player, SOCResourceSet resources);// int clay, int ore, int sheep, int wheat, int wood);
+    public void logResourcesReceivedByTrading(String gameName, String player, SOCResourceSet resources);// int clay, int ore, int sheep, int wheat, int wood);
 
     public int EMBARGO_PROPOSE = 0;
     public int EMBARGO_COMPLY = 1;
     public int EMBARGO_LIFT = 2;
 
     /** Log a change in an embargo for the specified player */
-    public void logEmbargoAction(String player, int action);
+    public void logEmbargoAction(String gameName, String player, int action);
     
     public int BLOCK = 0;
     public int BLOCK_COMPLY = 1;
     
     /** Log an action related to blocking trades for the specified player */
-    public void logBlockingAction(String player, int action);
+    public void logBlockingAction(String gameName, String player, int action);
 }
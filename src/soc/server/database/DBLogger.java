@@ -5,11 +5,14 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 import java.util.UUID;
 
 import soc.dialogue.StacTradeMessage;
@@ -41,7 +44,6 @@ public class DBLogger implements DBHelper {
 
     protected int numGamesDone = 0;
     private int numTurnsInSimulation = 0; //overall number of turns (in the simulation)
-    private boolean offerHasBeenMadeInThisTurn = false;
     
     protected int numGamesDiscarded = 0;
     
@@ -80,7 +82,17 @@ public class DBLogger implements DBHelper {
     private final Map<String, int[]> hasResPredStats = new HashMap<String, int[]>();
     private boolean hasResPredictUsed = false;
 
-    private String curPlayerTurn;
+    /**
+     * Stats of the games that are still being played, keyed by game name. Several games can be in
+     * progress at the same time on one server, so each one records into its own {@link GameRecord}
+     * which is merged into the cumulative {@link #stats} when the game ends.
+     */
+    private final Map<String, GameRecord> gameRecords = new HashMap<String, GameRecord>();
+
+    /**
+     * Names of the games that have been finished (either saved or discarded) since the last {@link #resetGamesDone()}.
+     */
+    private final Set<String> finishedGames = new HashSet<String>();
 
     private static final boolean OUTPUT_OFFER_DISTRIB = false;
 
@@ -88,10 +100,12 @@ public class DBLogger implements DBHelper {
 
     protected String dirName;
 
-    public void resetGamesDone() {
+    public synchronized void resetGamesDone() {
         numGamesDone = 0;
+        numGamesDiscarded = 0;
         numTurnsInSimulation = 0;
-        offerHasBeenMadeInThisTurn = false;
+        gameRecords.clear();
+        finishedGames.clear();
         stats.clear();
         offerStats.clear();
         buildPlanPredStats.clear();
@@ -101,26 +115,110 @@ public class DBLogger implements DBHelper {
     }
 
     @Override
-    public int getNumGamesDone() {
+    public synchronized int getNumGamesDone() {
         return numGamesDone;
     }
 
-    public int getNumGamesDiscarded() {
+    public synchronized int getNumGamesDiscarded() {
         return numGamesDiscarded;
     }
     /**
 	 * Number of games done plus the number of games discarded
      * @return total number of games
 	 */
-    public int getTotalNumGames(){
+    public synchronized int getTotalNumGames(){
     	return numGamesDone + numGamesDiscarded;
     }
+
+    /**
+     * @param gameName the name of the game
+     * @return true if the scores of this game have been saved or the game has been discarded since the last {@link #resetGamesDone()}
+     */
+    public synchronized boolean isGameFinished(String gameName) {
+        return finishedGames.contains(gameName);
+    }
+
+    /**
+     * Records that a game has finished and wakes up any thread waiting for it.
+     * @param gameName the name of the game
+     */
+    protected synchronized void gameFinished(String gameName) {
+        finishedGames.add(gameName);
+        notifyAll();
+    }
+
+    /**
+     * Forgets the finished games, so that a game name can be reused (e.g. by the MCTS rollouts).
+     */
+    protected synchronized void clearFinishedGames() {
+        finishedGames.clear();
+    }
+
+    /**
+     * Blocks until the scores of the game have been saved or the game has been discarded.
+     * @param gameName the name of the game
+     * @param timeout the maximum time to wait in milliseconds, or 0 to wait for as long as it takes
+     * @return true if the game has finished, false if the timeout expired first
+     * @throws InterruptedException
+     */
+    public synchronized boolean waitForGame(String gameName, long timeout) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeout;
+        while (!finishedGames.contains(gameName)) {
+            if (timeout > 0) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0)
+                    return false;
+                wait(remaining);
+            } else {
+                wait();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Blocks until any of the games has finished.
+     * @param gameNames the names of the games in progress
+     * @param timeout the maximum time to wait in milliseconds, or 0 to wait for as long as it takes
+     * @return the name of a finished game, or null if the timeout expired before any of the games finished
+     * @throws InterruptedException
+     */
+    public synchronized String waitForAnyGame(Collection<String> gameNames, long timeout) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeout;
+        while (true) {
+            for (String gameName : gameNames) {
+                if (finishedGames.contains(gameName))
+                    return gameName;
+            }
+            if (timeout > 0) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0)
+                    return null;
+                wait(remaining);
+            } else {
+                wait();
+            }
+        }
+    }
+
+    /**
+     * Throws away a game that did not finish, e.g. because it got stuck and had to be destroyed.
+     * Nothing logged for it is added to the stats and a late attempt to save its scores is ignored.
+     * @param gameName the name of the game
+     */
+    public synchronized void discardGame(String gameName) {
+        if (finishedGames.contains(gameName))
+            return;
+        removeGameRecord(gameName);
+        numGamesDiscarded++;
+        gameFinished(gameName);
+    }
     
     @Override
     public void initialize(String user, String pswd, Properties props) throws SQLException {
     }
 
-    public void startRun(String gameName, List<String> config) {
+    public synchronized void startRun(String gameName, List<String> config) {
         runStartDate = new Date();
         String ds = "_" + runStartDate.toString().replace(':','_').replace(' ','_');
         ds = ds + "_" + UUID.randomUUID();
@@ -244,8 +342,11 @@ public class DBLogger implements DBHelper {
      * @throws SQLException
      */
     @Override
-    public boolean saveGameScores(SOCGame ga) throws SQLException {
+    public synchronized boolean saveGameScores(SOCGame ga) throws SQLException {
 
+        if (finishedGames.contains(ga.getName()))
+            return true; // already discarded
+        GameRecord record = removeGameRecord(ga.getName());
         try {
         	int roundCount = ga.getRoundCount();
             String gameName = ga.getName();
@@ -273,13 +374,14 @@ public class DBLogger implements DBHelper {
 
             // Make sure all players have had stats objects created - prior to the first call of this method, stats will only have been generated if they have participated in a trade
             //add the number of resources by dice at the same time
-            getStats(player1).setNumResourcesReceivedByDice(resources[0]);
-            getStats(player2).setNumResourcesReceivedByDice(resources[1]);
-            getStats(player3).setNumResourcesReceivedByDice(resources[2]);
-            getStats(player4).setNumResourcesReceivedByDice(resources[3]);
+            record.getStats(player1).setNumResourcesReceivedByDice(resources[0]);
+            record.getStats(player2).setNumResourcesReceivedByDice(resources[1]);
+            record.getStats(player3).setNumResourcesReceivedByDice(resources[2]);
+            record.getStats(player4).setNumResourcesReceivedByDice(resources[3]);
 
             if(!Simulation.failedMctsSimulation){ //do not gather stats if the game is thrown away due to a failed simulation
 	            synchronized (output) {
+	                mergeGameRecord(record);
 	                output.write(gameName + DELIM + startTime.toString() + DELIM);
 	                for (String name : stats.keySet()) {
 	                    // ugh...
@@ -293,7 +395,7 @@ public class DBLogger implements DBHelper {
 	                    } else {
 	                        score = score4;
 	                    }
-	                    printStats(gameName, name, score);
+	                    printStats(record, name, score);
 	                }
 	                output.newLine();                        
 	                output.flush();
@@ -318,15 +420,17 @@ public class DBLogger implements DBHelper {
 	            }
             }else
             	numGamesDiscarded++;
+            gameFinished(gameName);
         }
         catch (IOException ex) {
             ex.printStackTrace();
+            gameFinished(ga.getName());
             return false;
         }
         return true;
     }
 
-    public SOCPlayerStats getStats(String player) {
+    public synchronized SOCPlayerStats getStats(String player) {
         SOCPlayerStats s = stats.get(player);
         if (s==null) {
             s=new SOCPlayerStats();
@@ -345,6 +449,45 @@ public class DBLogger implements DBHelper {
         return s;
     }
 
+    /**
+     * @param gameName the name of the game
+     * @return the record of the game in progress, created if this is the first event logged for the game
+     */
+    private GameRecord getGameRecord(String gameName) {
+        GameRecord r = gameRecords.get(gameName);
+        if (r == null) {
+            r = new GameRecord();
+            gameRecords.put(gameName, r);
+        }
+        return r;
+    }
+
+    /**
+     * Removes the record of a game that has ended, so that a new game with the same name starts with empty stats.
+     * @param gameName the name of the game
+     * @return the removed record, or a new empty one if nothing was logged for this game
+     */
+    protected synchronized GameRecord removeGameRecord(String gameName) {
+        GameRecord r = gameRecords.remove(gameName);
+        return r != null ? r : new GameRecord();
+    }
+
+    /**
+     * Adds the stats gathered during one game to the cumulative stats of each player.
+     * @param record the stats of the game that has just ended
+     */
+    private void mergeGameRecord(GameRecord record) {
+        // close the last turn of the game so it is included in the offer distribution
+        if (record.curPlayerTurn != null)
+            record.getOfferStats(record.curPlayerTurn).endTurn();
+        for (Map.Entry<String, SOCPlayerStats> e : record.stats.entrySet()) {
+            getStats(e.getKey()).merge(e.getValue());
+        }
+        for (Map.Entry<String, SOCPlayerOfferStats> e : record.offerStats.entrySet()) {
+            getOfferStats(e.getKey()).merge(e.getValue());
+        }
+    }
+
     protected void updateStats(String player, int victoryPoints)  {
         getStats(player).addGame(victoryPoints);
     }
@@ -553,9 +696,9 @@ public class DBLogger implements DBHelper {
         output.newLine();
     }
     
-    private void printStats(String gameName, String player, int victoryPoints) throws IOException {
+    private void printStats(GameRecord record, String player, int victoryPoints) throws IOException {
         output.write(player + DELIM + (victoryPoints>=10 ? "1" : "0") + DELIM + victoryPoints + DELIM);			
-        SOCPlayerStats s = stats.get(player);
+        SOCPlayerStats s = record.getStats(player);
         output.write(s.getNumOffersCurrent() + DELIM + s.getNumSuccessfulOffersCurrent() + DELIM + s.getNumTradesCurrent() + DELIM
                 + s.getNumResourcesReceivedByTradingCurrent() + DELIM
                 + s.getNumResourcesReceivedByDiceCurrent() + DELIM
@@ -570,7 +713,7 @@ public class DBLogger implements DBHelper {
     @Override
     public void cleanup() throws SQLException {	}
 
-    public void endRun() {
+    public synchronized void endRun() {
         try {
             output.close();
             //summaryOut.close();
@@ -592,17 +735,18 @@ public class DBLogger implements DBHelper {
      * @param isInitial     is this an initial trade offer?
      */
     @Override
-    public void logChatTradeOffer(SOCPlayer p, StacTradeMessage tm, int turn, boolean isInitial) {
+    public synchronized void logChatTradeOffer(SOCPlayer p, StacTradeMessage tm, int turn, boolean isInitial) {
+        GameRecord record = getGameRecord(p.getGame().getName());
         StacTradeOffer offer = tm.getOffer();
-        if (!offerHasBeenMadeInThisTurn)
-            getOfferStats(p.getName()).recordTurnInitialOffer(offer);
-        offerHasBeenMadeInThisTurn = true;
+        if (!record.offerHasBeenMadeInThisTurn)
+            record.getOfferStats(p.getName()).recordTurnInitialOffer(offer);
+        record.offerHasBeenMadeInThisTurn = true;
         
-        getStats(p.getName()).incOffers(turn == p.getPlayerNumber(), isInitial);	
+        record.getStats(p.getName()).incOffers(turn == p.getPlayerNumber(), isInitial);	
         if (isInitial)
-            getOfferStats(p.getName()).addOffer();
+            record.getOfferStats(p.getName()).addOffer();
         
-        SOCPlayerStats playerStats = getStats(p.getName());
+        SOCPlayerStats playerStats = record.getStats(p.getName());
         if (tm.isForced())
             playerStats.incNumForceAcceptsMade();
         if (offer.hasDisjunctiveGiveSet())
@@ -616,11 +760,11 @@ public class DBLogger implements DBHelper {
     }
     
     @Override
-    public void logChatTradeOffer(SOCPlayer p, StacTradeMessage tm, int turn, boolean isInitial, Persuasion persuasionMove, int roundNo) {
+    public synchronized void logChatTradeOffer(SOCPlayer p, StacTradeMessage tm, int turn, boolean isInitial, Persuasion persuasionMove, int roundNo) {
         logChatTradeOffer(p, tm, turn, isInitial);
         
         if (persuasionMove.getIdentifier() != Persuasion.PersuasionIdentifiers.NullPersuasion)
-            getStats(p.getName()).incNumPersuasionsMade(persuasionMove, roundNo);
+            getGameRecord(p.getGame().getName()).getStats(p.getName()).incNumPersuasionsMade(persuasionMove, roundNo);
     }
 
 
@@ -628,69 +772,73 @@ public class DBLogger implements DBHelper {
     //This method should be called only
     //* to log an SOCMakeOffer trade event
     //* if the game does not use chat trading
-    public void logTradeEvent(SOCPlayer p, SOCMakeOffer offer, int turn, boolean isInitial, boolean isForced) {
+    public synchronized void logTradeEvent(SOCPlayer p, SOCMakeOffer offer, int turn, boolean isInitial, boolean isForced) {
         //--MG
-        if (!offerHasBeenMadeInThisTurn) {
-            getOfferStats(p.getName()).recordTurnInitialOffer(offer.getOffer());
+        GameRecord record = getGameRecord(p.getGame().getName());
+        if (!record.offerHasBeenMadeInThisTurn) {
+            record.getOfferStats(p.getName()).recordTurnInitialOffer(offer.getOffer());
         }
-        offerHasBeenMadeInThisTurn = true;
+        record.offerHasBeenMadeInThisTurn = true;
         
-        getStats(p.getName()).incOffers(turn == p.getPlayerNumber(), isInitial);	
+        record.getStats(p.getName()).incOffers(turn == p.getPlayerNumber(), isInitial);	
         if (isInitial) {
-            getOfferStats(p.getName()).addOffer();
+            record.getOfferStats(p.getName()).addOffer();
         }
         
         if (isForced) {
-            getStats(p.getName()).incNumForceAcceptsMade();
+            record.getStats(p.getName()).incNumForceAcceptsMade();
         }
     }
 
     @Override
     //--MG this one should be called when a trade offer is accepted (from SCOServer.executeTrade)
-    public void logTradeEvent(SOCPlayer accepter, SOCPlayer offerer, SOCAcceptOffer offer, int turn, boolean isForced) {
-        getStats(accepter.getName()).incTradesMadeAccept(turn == accepter.getPlayerNumber());
-        getStats(offerer.getName()).incTradesMadeOffer(turn == offerer.getPlayerNumber());
+    public synchronized void logTradeEvent(SOCPlayer accepter, SOCPlayer offerer, SOCAcceptOffer offer, int turn, boolean isForced) {
+        GameRecord record = getGameRecord(accepter.getGame().getName());
+        record.getStats(accepter.getName()).incTradesMadeAccept(turn == accepter.getPlayerNumber());
+        record.getStats(offerer.getName()).incTradesMadeOffer(turn == offerer.getPlayerNumber());
 
         SOCTradeOffer offerToBeAccepted = offerer.getCurrentOffer();
-        getOfferStats(offerer.getName()).evaluateAcceptedOffer(offerToBeAccepted);
+        record.getOfferStats(offerer.getName()).evaluateAcceptedOffer(offerToBeAccepted);
         
         if (isForced) {
-            getStats(accepter.getName()).incNumForceAcceptsCompliedWith();
+            record.getStats(accepter.getName()).incNumForceAcceptsCompliedWith();
         }
     }
     
     //When a trade offer is made and it has a persuasion attached - record success
     //MG: This is Connor's version, I guess
     @Override
-    public void logTradeEvent(SOCPlayer p, SOCMakeOffer offer, int turn, boolean isInitial, Persuasion persuasionMove, int roundNo) {
+    public synchronized void logTradeEvent(SOCPlayer p, SOCMakeOffer offer, int turn, boolean isInitial, Persuasion persuasionMove, int roundNo) {
         //--MG
-        if (!offerHasBeenMadeInThisTurn) {
-            getOfferStats(p.getName()).recordTurnInitialOffer(offer.getOffer());
+        GameRecord record = getGameRecord(p.getGame().getName());
+        if (!record.offerHasBeenMadeInThisTurn) {
+            record.getOfferStats(p.getName()).recordTurnInitialOffer(offer.getOffer());
         }
-        offerHasBeenMadeInThisTurn = true;
+        record.offerHasBeenMadeInThisTurn = true;
         
-        getStats(p.getName()).incOffers(turn == p.getPlayerNumber(), isInitial);	
+        record.getStats(p.getName()).incOffers(turn == p.getPlayerNumber(), isInitial);	
         if (isInitial) {
-            getOfferStats(p.getName()).addOffer();
+            record.getOfferStats(p.getName()).addOffer();
         }
         
         if (persuasionMove.getIdentifier()!=Persuasion.PersuasionIdentifiers.NullPersuasion) {
-            getStats(p.getName()).incNumPersuasionsMade(persuasionMove, roundNo);
+            record.getStats(p.getName()).incNumPersuasionsMade(persuasionMove, roundNo);
         }
     }
 
     //When a trade offer is accepted and it has a persuasion attached - record success
     //MG: This is Connor's version, I guess
     @Override
-    public void logTradeEvent(SOCPlayer accepter, SOCPlayer offerer, SOCAcceptOffer offer, int turn, Persuasion persuasionMove) {
-        getStats(accepter.getName()).incTradesMadeAccept(turn == accepter.getPlayerNumber());
-        getStats(offerer.getName()).incTradesMadeOffer(turn == offerer.getPlayerNumber());
+    public synchronized void logTradeEvent(SOCPlayer accepter, SOCPlayer offerer, SOCAcceptOffer offer, int turn, Persuasion persuasionMove) {
+        GameRecord record = getGameRecord(accepter.getGame().getName());
+        record.getStats(accepter.getName()).incTradesMadeAccept(turn == accepter.getPlayerNumber());
+        record.getStats(offerer.getName()).incTradesMadeOffer(turn == offerer.getPlayerNumber());
 
         SOCTradeOffer offerToBeAccepted = offerer.getCurrentOffer();
-        getOfferStats(offerer.getName()).evaluateAcceptedOffer(offerToBeAccepted);
+        record.getOfferStats(offerer.getName()).evaluateAcceptedOffer(offerToBeAccepted);
         
         if (persuasionMove.getIdentifier()!=Persuasion.PersuasionIdentifiers.NullPersuasion) {
-            getStats(accepter.getName()).incNumPersuasionsCompliedWith(persuasionMove);
+            record.getStats(accepter.getName()).incNumPersuasionsCompliedWith(persuasionMove);
         }
     }
 
@@ -700,8 +848,8 @@ public class DBLogger implements DBHelper {
      * @param mes 
      */
     @Override
-    public void logBankTradeEvent(SOCPlayer player, SOCBankTrade mes) {
-        getOfferStats(player.getName()).evaluateBankTrade(mes.getGetSet(), mes.getGiveSet());
+    public synchronized void logBankTradeEvent(SOCPlayer player, SOCBankTrade mes) {
+        getGameRecord(player.getGame().getName()).getOfferStats(player.getName()).evaluateBankTrade(mes.getGetSet(), mes.getGiveSet());
     }
 
     @Override
@@ -713,18 +861,21 @@ public class DBLogger implements DBHelper {
     /** 
      * Notification that a turn has ended.  This updates the ending player's offer distribution,
      *  and prepares the starting player's offer distribution object for the coming turn.
-     * GameName is currently ignored, as we assume each player being tracked is only in a single game at any given time
-     * Call with a dummy player name when a game ends to ensure the last turn is included in results (may want to move
-     * that call from server into the saveStats method, which we already know is called at the end of each game)
+     * The offer distribution is tracked per game, so the same player may be in several games at the same time.
+     * The last turn of a game is closed when its scores are saved, so notifications for games that are already 
+     * finished (e.g. the dummy player sent by the server once the game is over) are ignored.
      */
-    public void newTurn(String gameName, String playerName) {
+    public synchronized void newTurn(String gameName, String playerName) {
+        if (finishedGames.contains(gameName))
+            return;
         numTurnsInSimulation++;
         D.ebugPrintlnINFO("***\nTURN " + numTurnsInSimulation + " - " + playerName);
-        offerHasBeenMadeInThisTurn = false;
+        GameRecord record = getGameRecord(gameName);
+        record.offerHasBeenMadeInThisTurn = false;
         
-        getOfferStats(curPlayerTurn).endTurn();
-        getOfferStats(playerName).startTurn();
-        curPlayerTurn = playerName;
+        record.getOfferStats(record.curPlayerTurn).endTurn();
+        record.getOfferStats(playerName).startTurn();
+        record.curPlayerTurn = playerName;
     }
 
     private int[] getBPPredStats(String player) {
@@ -737,7 +888,7 @@ public class DBLogger implements DBHelper {
     }
     
     @Override
-    public void logBPPrediction(SOCPlayer p, boolean nullEquiv, boolean correctType, boolean fullEquality) {
+    public synchronized void logBPPrediction(SOCPlayer p, boolean nullEquiv, boolean correctType, boolean fullEquality) {
         bppUsed = true;
         int[] stats = getBPPredStats(p.getName());
         stats[0]++;
@@ -756,7 +907,7 @@ public class DBLogger implements DBHelper {
     }
     
     @Override
-    public void logHasResourcesPrediction(SOCPlayer p, boolean beliefCorrect, boolean observedCorrect, boolean subsetCorrect, boolean afterRollOfSeven) {
+    public synchronized void logHasResourcesPrediction(SOCPlayer p, boolean beliefCorrect, boolean observedCorrect, boolean subsetCorrect, boolean afterRollOfSeven) {
         hasResPredictUsed = true;
         int[] stats = getHasResPredictStats(p.getName());
         stats[0]++;
@@ -771,56 +922,36 @@ public class DBLogger implements DBHelper {
     }
     
     @Override
-    public void logBuildPlan(String player, int bpType) {
-        SOCPlayerStats s = stats.get(player);
-        if (s==null) {
-            s = new SOCPlayerStats();
-            stats.put(player, s);
-        }
+    public synchronized void logBuildPlan(String gameName, String player, int bpType) {
+        SOCPlayerStats s = getGameRecord(gameName).getStats(player);
         s.incBuildPlans(bpType);
     }
 
     @Override
-    public void logBuildAction(String player, int piece) {
+    public synchronized void logBuildAction(String gameName, String player, int piece) {
         D.ebugPrintlnINFO("BUILD " + piece );
-        SOCPlayerStats s = stats.get(player);
-        if (s==null) {
-            s = new SOCPlayerStats();
-            stats.put(player, s);
-        }
+        SOCPlayerStats s = getGameRecord(gameName).getStats(player);
         s.incBuildPiece(piece);        
     }
 
     @Override
-    public void logLA_LRPlayerChanged(String player, String badge) {
+    public synchronized void logLA_LRPlayerChanged(String gameName, String player, String badge) {
         D.ebugPrintlnINFO("BADGE CHANGED " + badge);
-        SOCPlayerStats s = stats.get(player);
-        if (s==null) {
-            s = new SOCPlayerStats();
-            stats.put(player, s);
-        }
+        SOCPlayerStats s = getGameRecord(gameName).getStats(player);
         s.incLA_LRPlayerChanged(badge);
     }
 
     @Override
-    public void logResourcesReceivedByTrading(String player, SOCResourceSet resources) { //int clay, int ore, int sheep, int wheat, int wood) {
+    public synchronized void logResourcesReceivedByTrading(String gameName, String player, SOCResourceSet resources) { //int clay, int ore, int sheep, int wheat, int wood) {
 //        D.ebugPrintln("Resources received: " + clay + "," + ore + "," + sheep + "," + wheat + "," + wood);
         D.ebugPrintlnINFO("Resources received: " + resources.getTotal());
-        SOCPlayerStats s = stats.get(player);
-        if (s==null) {
-            s = new SOCPlayerStats();
-            stats.put(player, s);
-        }
+        SOCPlayerStats s = getGameRecord(gameName).getStats(player);
         s.incRescourcesReceivedByTrading(resources); //clay, ore, sheep, wheat, wood);
     }
     
     @Override
-    public void logEmbargoAction(String player, int action) {
-        SOCPlayerStats s = stats.get(player);
-        if (s == null) {
-            s = new SOCPlayerStats();
-            stats.put(player, s);
-        }
+    public synchronized void logEmbargoAction(String gameName, String player, int action) {
+        SOCPlayerStats s = getGameRecord(gameName).getStats(player);
 
         switch (action) {
             case EMBARGO_PROPOSE: {
@@ -835,12 +966,8 @@ public class DBLogger implements DBHelper {
     
     @Override
     /** Log an action related to blocking trades for the specified player */
-    public void logBlockingAction(String player, int action) {
-        SOCPlayerStats s = stats.get(player);
-        if (s == null) {
-            s = new SOCPlayerStats();
-            stats.put(player, s);
-        }
+    public synchronized void logBlockingAction(String gameName, String player, int action) {
+        SOCPlayerStats s = getGameRecord(gameName).getStats(player);
 
         switch (action) {
             case BLOCK: {
@@ -853,4 +980,32 @@ public class DBLogger implements DBHelper {
         }
     }
 
+    /**
+     * The stats and the offer tracking state of a single game in progress.
+     */
+    protected static class GameRecord {
+        private final Map<String, SOCPlayerStats> stats = new HashMap<String, SOCPlayerStats>();
+        private final Map<String, SOCPlayerOfferStats> offerStats = new HashMap<String, SOCPlayerOfferStats>();
+        private boolean offerHasBeenMadeInThisTurn = false;
+        private String curPlayerTurn;
+
+        private SOCPlayerStats getStats(String player) {
+            SOCPlayerStats s = stats.get(player);
+            if (s == null) {
+                s = new SOCPlayerStats();
+                stats.put(player, s);
+            }
+            return s;
+        }
+
+        private SOCPlayerOfferStats getOfferStats(String player) {
+            SOCPlayerOfferStats s = offerStats.get(player);
+            if (s == null) {
+                s = new SOCPlayerOfferStats();
+                offerStats.put(player, s);
+            }
+            return s;
+        }
+    }
+
 }
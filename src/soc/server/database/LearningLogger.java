@@ -55,7 +55,7 @@ public class LearningLogger extends DBLogger {
 
     public LearningLogger() {}	
 	
-	public void startRun(String gameName, List<String> config) {
+	public synchronized void startRun(String gameName, List<String> config) {
 	    super.startRun(gameName, config);    	
 	    this.gameName = gameName;
 	    gamesInIteration = 0;
@@ -67,7 +67,7 @@ public class LearningLogger extends DBLogger {
 	}
 
 	@Override
-	public boolean saveGameScores(SOCGame ga) throws SQLException {
+	public synchronized boolean saveGameScores(SOCGame ga) throws SQLException {
 		
             boolean ret = super.saveGameScores(ga);
             
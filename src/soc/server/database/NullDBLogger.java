@@ -16,6 +16,11 @@ public class NullDBLogger extends DBLogger{
 	
 	private String gameName;
 	
+	/**
+	 * The only game whose scores are kept, or null to keep every game's
+	 */
+	private String expectedGame;
+	
 	public NullDBLogger() {}
 	 
 	public void startRun(String gameName) {
@@ -23,12 +28,24 @@ public class NullDBLogger extends DBLogger{
 		this.gameName = gameName;
 	}
 	
+	/**
+	 * Keep only the scores of this game from now on; any other game finishing late, e.g. a rollout
+	 * that was given up on, is ignored and doesn't wake up {@link #waitForGame(String, long)}.
+	 * @param gameName the name of the game, or null to keep every game's scores
+	 */
+	public synchronized void expectGame(String gameName) {
+		expectedGame = gameName;
+	}
+	
 	/**
 	 * keep track of the stats but do not print anything out
 	 */
     @Override
-    public boolean saveGameScores(SOCGame ga) throws SQLException {
+    public synchronized boolean saveGameScores(SOCGame ga) throws SQLException {
         
+        removeGameRecord(ga.getName()); //nothing else is logged for the rollouts, so drop anything logged during this one
+        if (expectedGame != null && !expectedGame.equals(ga.getName()))
+            return true; //a stale game, which must not change the victory points of the one being waited for
         String player1 = ga.getPlayer(0).getName();
         String player2 = ga.getPlayer(1).getName();
         String player3 = ga.getPlayer(2).getName();
@@ -50,11 +67,13 @@ public class NullDBLogger extends DBLogger{
         updateStats(player4, score4);
 
         numGamesDone++;
+        gameFinished(ga.getName());
     	return true; //always true as no exception could be thrown here
     }
     
-    public void resetGamesDone(){
+    public synchronized void resetGamesDone(){
     	numGamesDone=0;
+    	clearFinishedGames();
     }
     
     /**
@@ -898,32 +898,32 @@ public class SOCDBHelper implements DBHelper
     }
 
     @Override
-    public void logBuildPlan(String player, int bpType) {
+    public void logBuildPlan(String gameName, String player, int bpType) {
         // Unsupported logging function - do nothing
     }
     
     @Override
-    public void logLA_LRPlayerChanged(String player, String badge) {
+    public void logLA_LRPlayerChanged(String gameName, String player, String badge) {
         // Unsupported logging function - do nothing
     }
 
     @Override
-    public void logBuildAction(String player, int piece) {
+    public void logBuildAction(String gameName, String player, int piece) {
         // Unsupported logging function - do nothing
     }
 
     @Override
-    public void logResourcesReceivedByTrading(String player, SOCResourceSet resources) { //int clay, int ore, int sheep, int wheat, int wood) {
+    public void logResourcesReceivedByTrading(String gameName, String player, SOCResourceSet resources) { //int clay, int ore, int sheep, int wheat, int wood) {
         // Unsupported logging function - do nothing
     }
     
     @Override
-    public void logEmbargoAction(String player, int action) {
+    public void logEmbargoAction(String gameName, String player, int action) {
         // Unsupported logging function - do nothing
     }
 
     @Override
-    public void logBlockingAction(String player, int action) {
+    public void logBlockingAction(String gameName, String player, int action) {
         // Unsupported logging function - do nothing
     }
 }
@@ -195,6 +195,25 @@ public class SOCPlayerOfferStats {
         }
     }
     
+    /**
+     * Adds the distribution recorded during a single game to this one.  The state of the turn in progress is not merged.
+     * @param game the offer stats gathered for this player during one game
+     */
+    public void merge(SOCPlayerOfferStats game) {
+        for (int i = 0; i < numTurnsWithTrades.length; i++) {
+            numTurnsWithTrades[i] += game.numTurnsWithTrades[i];
+        }
+        numTurns += game.numTurns;
+        numTurnInitialOffers += game.numTurnInitialOffers;
+        numTradesMatchingTurnInitialOffer += game.numTradesMatchingTurnInitialOffer;
+        numTradesNotMatchingTurnInitialOffer += game.numTradesNotMatchingTurnInitialOffer;
+        numTradesWithoutTurnInitialOffer += game.numTradesWithoutTurnInitialOffer;
+        numTradesWithBankAfterTurnInitialOffer += game.numTradesWithBankAfterTurnInitialOffer;
+        numTradesWithPortAfterTurnInitialOffer += game.numTradesWithPortAfterTurnInitialOffer;
+        numTradesWithBankWithoutTurnInitialOffer += game.numTradesWithBankWithoutTurnInitialOffer;
+        numTradesWithPortWithoutTurnInitialOffer += game.numTradesWithPortWithoutTurnInitialOffer;
+    }
+
     public void evaluateBankTrade(SOCResourceSet getSet, SOCResourceSet giveSet) {
         final int giveTotal = giveSet.getTotal();
         final int getTotal = getSet.getTotal();
@@ -351,6 +351,68 @@ public class SOCPlayerStats {
     
     // TODO: public void incCounterOffers() { numCounterOffers++; }
 
+    /**
+     * Adds the counters recorded during a single game to these stats. The game results (VPs, wins and losses)
+     * are not part of the merge and should still be recorded via {@link #addGame(int, int)}.
+     * @param game the stats gathered for this player during one game
+     */
+    public void merge(SOCPlayerStats game) {
+        numOffers += game.numOffers;
+        numTradesMadeAccepter += game.numTradesMadeAccepter;
+        numTradesMadeOfferer += game.numTradesMadeOfferer;
+        numCounterOffers += game.numCounterOffers;
+        numInitialOffers += game.numInitialOffers;
+        numOffersOurTurn += game.numOffersOurTurn;
+        numAccepterOurTurn += game.numAccepterOurTurn;
+        numOffererOurTurn += game.numOffererOurTurn;
+
+        numOffersCurrent += game.numOffersCurrent;
+        numSuccessfulOffersCurrent += game.numSuccessfulOffersCurrent;
+        numTradesCurrent += game.numTradesCurrent;
+        numResourcesReceivedByTradingCurrent += game.numResourcesReceivedByTradingCurrent;
+        numResourcesReceivedByDiceCurrent += game.numResourcesReceivedByDiceCurrent;
+
+        numBuildPlans += game.numBuildPlans;
+        numBuildPlansRoad += game.numBuildPlansRoad;
+        numBuildPlansSettlement += game.numBuildPlansSettlement;
+        numBuildPlansCity += game.numBuildPlansCity;
+        numBuildPlansCard += game.numBuildPlansCard;
+        numBuildPlansLA += game.numBuildPlansLA;
+        numBuildPlansLR += game.numBuildPlansLR;
+
+        numPiecesBuiltTotal += game.numPiecesBuiltTotal;
+        numRoadsBuilt += game.numRoadsBuilt;
+        numSettlementsBuilt += game.numSettlementsBuilt;
+        numCitiesBuilt += game.numCitiesBuilt;
+        numDevCardsBought += game.numDevCardsBought;
+
+        numLAGained += game.numLAGained;
+        numLRGained += game.numLRGained;
+
+        numRescourcesReceivedByTrading += game.numRescourcesReceivedByTrading;
+        numRescourcesReceivedByDice += game.numRescourcesReceivedByDice;
+
+        numForceAcceptsMade += game.numForceAcceptsMade;
+        numForceAcceptsCompliedWith += game.numForceAcceptsCompliedWith;
+
+        numDisjunctiveGive += game.numDisjunctiveGive;
+        numDisjunctiveGet += game.numDisjunctiveGet;
+        numPartialGiveEmpty += game.numPartialGiveEmpty;
+        numPartialGetEmpty += game.numPartialGetEmpty;
+
+        for (String s : stringPersuasions) {
+            persuasionsMadeStatisticsCounters.put(s, persuasionsMadeStatisticsCounters.get(s) + game.persuasionsMadeStatisticsCounters.get(s));
+            persuasionsAcceptedStatisticsCounters.put(s, persuasionsAcceptedStatisticsCounters.get(s) + game.persuasionsAcceptedStatisticsCounters.get(s));
+            persuasionsMadeStatisticsTimer.get(s).addAll(game.persuasionsMadeStatisticsTimer.get(s));
+            persuasionsMadeStatisticsTimerPercentage.get(s).addAll(game.persuasionsMadeStatisticsTimerPercentage.get(s));
+        }
+
+        numEmbargoesProposed += game.numEmbargoesProposed;
+        numEmbargoesCompliedWith += game.numEmbargoesCompliedWith;
+        numBlocksProposed += game.numBlocksProposed;
+        numBlocksCompliedWith += game.numBlocksCompliedWith;
+    }
+
     public void addGame(int victoryPoints) {
         gamesPlayed++;
         D.ebugPrintlnINFO("GAME " + gamesPlayed);
@@ -0,0 +1,551 @@
+package soc.server.database.stac;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Gameplay store kept in files instead of the per-game database tables, so {@link DBGameParser} and {@link Corpus}
+ * can run without a database server. Each game is one segment file, <tt>game_{gameID}.stacseg</tt>, which is
+ * memory-mapped when first read and holds the game's three tables as fixed-width int columns sorted by row ID,
+ * so a row is found by its ID without a query and a column (such as the game states) can be scanned on its own.
+ * The arrays of a row are kept one after the other in a heap at the end of the file, found by an offset column.
+ * <p>
+ * Format, in big-endian ints: {@link #MAGIC}, {@link #VERSION}, the number of raw states, extracted states and actions,
+ * the length of the game's name and its chars. Then the raw states' columns (ID, robber hex, game state,
+ * dev cards left, dice result, starting player, current player, played dev card, heap offset), the extracted states'
+ * (ID, heap offset) and the actions' (ID, the type's double bits as two ints, before state, after state, value),
+ * each column holding one int per row; then the heap. An array in the heap is its length followed by its elements,
+ * each an array in turn for the nested ones; a null array is {@link #NULL_ARRAY} and a null element {@link #NULL_INT}.
+ * <p>
+ * Segments are made by {@link #writeGame(File, int, String, ObsGameStateRow[], ExtGameStateRow[], GameActionRow[])},
+ * or exported from the database: ColumnarGameplayStore directory firstGameID lastGameID
+ */
+public class ColumnarGameplayStore implements GameplayStore {
+
+	/** The start of every segment: "STAC" */
+	public static final int MAGIC = 0x53544143;
+	public static final int VERSION = 1;
+	/** The extension of the segment files */
+	public static final String EXTENSION = ".stacseg";
+	/** Stands for a null array in the heap */
+	private static final int NULL_ARRAY = -1;
+	/** Stands for a null element of an array in the heap */
+	private static final int NULL_INT = Integer.MIN_VALUE;
+
+	/** ints before the name: magic, version, the rows of each table and the name's length */
+	private static final int HEADER = 6;
+	//the columns of each table
+	private static final int OGSR_ID = 0, OGSR_ROBBERHEX = 1, OGSR_GAMESTATE = 2, OGSR_DEVCARDSLEFT = 3, OGSR_DICERESULT = 4,
+			OGSR_STARTINGPLAYER = 5, OGSR_CURRENTPLAYER = 6, OGSR_PLAYEDDEVCARD = 7, OGSR_HEAP = 8, OGSR_COLUMNS = 9;
+	private static final int EGSR_ID = 0, EGSR_HEAP = 1, EGSR_COLUMNS = 2;
+	private static final int GAR_ID = 0, GAR_TYPEHI = 1, GAR_TYPELO = 2, GAR_BEFORESTATE = 3, GAR_AFTERSTATE = 4,
+			GAR_VALUE = 5, GAR_COLUMNS = 6;
+
+	/**
+	 * A game's mapped file. A table's column c of n rows starts at base + c * n.
+	 */
+	private static final class Segment {
+		final IntBuffer ints;
+		final String gameName;
+		final int ogsrs, egsrs, gars;
+		final int ogsrBase, egsrBase, garBase, heapBase;
+
+		Segment(IntBuffer ints) throws IOException {
+			if (ints.limit() < HEADER || ints.get(0) != MAGIC || ints.get(1) != VERSION)
+				throw new IOException("not a gameplay segment of version " + VERSION);
+			this.ints = ints;
+			ogsrs = ints.get(2);
+			egsrs = ints.get(3);
+			gars = ints.get(4);
+			final int nameLength = ints.get(5);
+			char[] name = new char[nameLength];
+			for (int i = 0; i < nameLength; i++)
+				name[i] = (char) ints.get(HEADER + i);
+			gameName = new String(name);
+			ogsrBase = HEADER + nameLength;
+			egsrBase = ogsrBase + OGSR_COLUMNS * ogsrs;
+			garBase = egsrBase + EGSR_COLUMNS * egsrs;
+			heapBase = garBase + GAR_COLUMNS * gars;
+			if (heapBase > ints.limit())
+				throw new IOException("gameplay segment is cut short");
+		}
+
+		int get(int base, int rows, int column, int row) {
+			return ints.get(base + column * rows + row);
+		}
+
+		/**
+		 * @return the row with the ID in a table, or -1
+		 */
+		int find(int base, int rows, int id) {
+			if (rows == 0)
+				return -1;
+			//the IDs are usually consecutive
+			final int guess = id - ints.get(base);
+			if (guess >= 0 && guess < rows && ints.get(base + guess) == id)
+				return guess;
+			int lo = 0, hi = rows - 1;
+			while (lo <= hi) {
+				final int mid = (lo + hi) >>> 1;
+				final int v = ints.get(base + mid);
+				if (v < id)
+					lo = mid + 1;
+				else if (v > id)
+					hi = mid - 1;
+				else
+					return mid;
+			}
+			return -1;
+		}
+	}
+
+	private final File dir;
+	private final ConcurrentHashMap<Integer, Segment> segments = new ConcurrentHashMap<Integer, Segment>();
+	private volatile boolean connected = false;
+
+	/**
+	 * @param dir the directory of the segment files
+	 */
+	public ColumnarGameplayStore(File dir) {
+		this.dir = dir;
+	}
+
+	public static File segmentFile(File dir, int gameID) {
+		return new File(dir, "game_" + gameID + EXTENSION);
+	}
+
+	public void connect() {
+		connected = dir.isDirectory();
+		if (!connected)
+			System.err.println("Cannot find the gameplay store " + dir);
+	}
+
+	/**
+	 * Forgets the mapped segments; they are unmapped once garbage collected.
+	 */
+	public void disconnect() {
+		segments.clear();
+		connected = false;
+	}
+
+	public boolean isConnected() {
+		return connected;
+	}
+
+	/**
+	 * @return the game's segment, or null if there isn't one or it can't be read
+	 */
+	private Segment segment(int gameID) {
+		Segment s = segments.get(gameID);
+		if (s != null)
+			return s;
+		File f = segmentFile(dir, gameID);
+		if (!f.isFile())
+			return null;
+		try {
+			RandomAccessFile raf = new RandomAccessFile(f, "r");
+			try {
+				FileChannel ch = raf.getChannel();
+				s = new Segment(ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()).asIntBuffer());
+			} finally {
+				raf.close();  // the mapping stays valid
+			}
+		} catch (IOException e) {
+			System.err.println("Cannot read " + f + ": " + e.getMessage());
+			return null;
+		}
+		Segment old = segments.putIfAbsent(gameID, s);
+		return (old != null) ? old : s;
+	}
+
+	public ObsGameStateRow selectOGSR(int gameID, int ogsrID) {
+		Segment s = segment(gameID);
+		if (s == null)
+			return null;
+		final int row = s.find(s.ogsrBase, s.ogsrs, ogsrID);
+		if (row < 0)
+			return new ObsGameStateRow(ogsrID, "");
+		return readOGSR(s, row);
+	}
+
+	public ExtGameStateRow selectEGSR(int gameID, int egsrID) {
+		Segment s = segment(gameID);
+		if (s == null)
+			return null;
+		final int row = s.find(s.egsrBase, s.egsrs, egsrID);
+		if (row < 0)
+			return new ExtGameStateRow(egsrID, "");
+		return readEGSR(s, row);
+	}
+
+	public GameActionRow selectGAR(int gameID, int garID) {
+		Segment s = segment(gameID);
+		if (s == null)
+			return null;
+		final int row = s.find(s.garBase, s.gars, garID);
+		if (row < 0)
+			return new GameActionRow(garID);
+		return readGAR(s, row);
+	}
+
+	public ObsGameStateRow[] getAllObsStatesOfAKind(int gameID, int gameState) {
+		Segment s = segment(gameID);
+		if (s == null)
+			return null;
+		ArrayList<ObsGameStateRow> ogsrs = new ArrayList<ObsGameStateRow>();
+		final int column = s.ogsrBase + OGSR_GAMESTATE * s.ogsrs;
+		for (int row = 0; row < s.ogsrs; row++)
+			if (s.ints.get(column + row) == gameState)
+				ogsrs.add(readOGSR(s, row));
+		return ogsrs.toArray(new ObsGameStateRow[ogsrs.size()]);
+	}
+
+	public int getTableSize(String tableName) {
+		int[] table = GameTables.parseTableName(tableName);
+		if (table == null)
+			return -1;
+		Segment s = segment(table[1]);
+		if (s == null)
+			return -1;
+		return (table[0] == GameTables.OBS) ? s.ogsrs : (table[0] == GameTables.EXT) ? s.egsrs : s.gars;
+	}
+
+	/**
+	 * Decodes the whole segment of the game.
+	 */
+	public GameTables selectGame(int gameID) {
+		Segment s = segment(gameID);
+		if (s == null)
+			return null;
+		ObsGameStateRow[] ogsrs = new ObsGameStateRow[s.ogsrs];
+		for (int row = 0; row < ogsrs.length; row++)
+			ogsrs[row] = readOGSR(s, row);
+		ExtGameStateRow[] egsrs = new ExtGameStateRow[s.egsrs];
+		for (int row = 0; row < egsrs.length; row++)
+			egsrs[row] = readEGSR(s, row);
+		GameActionRow[] gars = new GameActionRow[s.gars];
+		for (int row = 0; row < gars.length; row++)
+			gars[row] = readGAR(s, row);
+		return new GameTables(gameID, ogsrs, egsrs, gars);
+	}
+
+	private static ExtGameStateRow readEGSR(Segment s, int row) {
+		ExtGameStateRow egsr = new ExtGameStateRow(s.get(s.egsrBase, s.egsrs, EGSR_ID, row), s.gameName);
+		final int[] at = { s.heapBase + s.get(s.egsrBase, s.egsrs, EGSR_HEAP, row) };
+		egsr.setPastTrades(readArray2(s.ints, at));
+		egsr.setFutureTrades(readArray2(s.ints, at));
+		egsr.setPastPBPs(readArray2(s.ints, at));
+		egsr.setFuturePBPs(readArray2(s.ints, at));
+		egsr.setETWs(readArray(s.ints, at));
+		egsr.setAvgETBs(readArray2(s.ints, at));
+		egsr.setSettETBs(readArray2(s.ints, at));
+		egsr.setRoadETBs(readArray2(s.ints, at));
+		egsr.setCityETBs(readArray2(s.ints, at));
+		egsr.setDevETBs(readArray2(s.ints, at));
+		egsr.setTerritoryConnected(readArray(s.ints, at));
+		egsr.setTerritoryIsolated(readArray(s.ints, at));
+		egsr.setLongestRoads(readArray(s.ints, at));
+		egsr.setLongestPossibleRoads(readArray(s.ints, at));
+		egsr.setDistanceToOpponents(readArray(s.ints, at));
+		egsr.setDistanceToPort(readArray(s.ints, at));
+		egsr.setDistanceToNextLegalLoc(readArray(s.ints, at));
+		egsr.setRssTypeAndNumber(readArray2(s.ints, at));
+		return egsr;
+	}
+
+	private static GameActionRow readGAR(Segment s, int row) {
+		GameActionRow gar = new GameActionRow(s.get(s.garBase, s.gars, GAR_ID, row));
+		final long typeBits = ((long) s.get(s.garBase, s.gars, GAR_TYPEHI, row) << 32)
+				| (s.get(s.garBase, s.gars, GAR_TYPELO, row) & 0xFFFFFFFFL);
+		gar.setType(Double.longBitsToDouble(typeBits));
+		gar.setBeforeState(s.get(s.garBase, s.gars, GAR_BEFORESTATE, row));
+		gar.setAfterState(s.get(s.garBase, s.gars, GAR_AFTERSTATE, row));
+		gar.setValue(s.get(s.garBase, s.gars, GAR_VALUE, row));
+		return gar;
+	}
+
+	private static ObsGameStateRow readOGSR(Segment s, int row) {
+		final int base = s.ogsrBase, n = s.ogsrs;
+		ObsGameStateRow ogsr = new ObsGameStateRow(s.get(base, n, OGSR_ID, row), s.gameName);
+		ogsr.setRobberHex(s.get(base, n, OGSR_ROBBERHEX, row));
+		ogsr.setGameState(s.get(base, n, OGSR_GAMESTATE, row));
+		ogsr.setDevCardsLeft(s.get(base, n, OGSR_DEVCARDSLEFT, row));
+		ogsr.setDiceResult(s.get(base, n, OGSR_DICERESULT, row));
+		ogsr.setStartingPlayer(s.get(base, n, OGSR_STARTINGPLAYER, row));
+		ogsr.setCurrentPlayer(s.get(base, n, OGSR_CURRENTPLAYER, row));
+		ogsr.setPlayedDevCard(s.get(base, n, OGSR_PLAYEDDEVCARD, row) != 0);
+		final int[] at = { s.heapBase + s.get(base, n, OGSR_HEAP, row) };
+		ogsr.setHexLayout(readArray(s.ints, at));
+		ogsr.setNumberLayout(readArray(s.ints, at));
+		ogsr.setPiecesOnBoard(readArray2(s.ints, at));
+		ogsr.setPlayers(readArray2(s.ints, at));
+		ogsr.setTouchingNumbers(readArray3(s.ints, at));
+		return ogsr;
+	}
+
+	/**
+	 * Reads an array from the heap.
+	 * @param at the position to read from, moved past the array
+	 */
+	private static Integer[] readArray(IntBuffer ints, int[] at) {
+		final int n = ints.get(at[0]++);
+		if (n == NULL_ARRAY)
+			return null;
+		Integer[] a = new Integer[n];
+		for (int i = 0; i < n; i++) {
+			final int v = ints.get(at[0]++);
+			a[i] = (v == NULL_INT) ? null : Integer.valueOf(v);
+		}
+		return a;
+	}
+
+	private static Integer[][] readArray2(IntBuffer ints, int[] at) {
+		final int n = ints.get(at[0]++);
+		if (n == NULL_ARRAY)
+			return null;
+		Integer[][] a = new Integer[n][];
+		for (int i = 0; i < n; i++)
+			a[i] = readArray(ints, at);
+		return a;
+	}
+
+	private static Integer[][][] readArray3(IntBuffer ints, int[] at) {
+		final int n = ints.get(at[0]++);
+		if (n == NULL_ARRAY)
+			return null;
+		Integer[][][] a = new Integer[n][][];
+		for (int i = 0; i < n; i++)
+			a[i] = readArray2(ints, at);
+		return a;
+	}
+
+	/** A growing list of ints */
+	private static final class IntList {
+		int[] a = new int[1024];
+		int size;
+
+		void add(int v) {
+			if (size == a.length)
+				a = Arrays.copyOf(a, 2 * size);
+			a[size++] = v;
+		}
+
+		void add(Integer[] arr) {
+			if (arr == null) {
+				add(NULL_ARRAY);
+				return;
+			}
+			add(arr.length);
+			for (Integer v : arr)
+				add((v == null) ? NULL_INT : v.intValue());
+		}
+
+		void add(Integer[][] arr) {
+			if (arr == null) {
+				add(NULL_ARRAY);
+				return;
+			}
+			add(arr.length);
+			for (Integer[] v : arr)
+				add(v);
+		}
+
+		void add(Integer[][][] arr) {
+			if (arr == null) {
+				add(NULL_ARRAY);
+				return;
+			}
+			add(arr.length);
+			for (Integer[][] v : arr)
+				add(v);
+		}
+	}
+
+	/**
+	 * Writes a game's segment, replacing any it had. The rows needn't be in order, but their IDs must be unique in each table.
+	 * The file is written under a temporary name first, so a segment is never seen half written.
+	 * @param dir the directory of the store
+	 * @param gameID the game's ID
+	 * @param gameName the name to give the rows read back
+	 * @param ogsrs the raw states
+	 * @param egsrs the extracted states; may be empty
+	 * @param gars the actions
+	 * @throws IOException if the file can't be written
+	 */
+	public static void writeGame(File dir, int gameID, String gameName, ObsGameStateRow[] ogsrs, ExtGameStateRow[] egsrs,
+			GameActionRow[] gars) throws IOException {
+		ogsrs = ogsrs.clone();
+		Arrays.sort(ogsrs, new Comparator<ObsGameStateRow>() {
+			public int compare(ObsGameStateRow a, ObsGameStateRow b) {
+				return Integer.compare(a.getID(), b.getID());
+			}
+		});
+		egsrs = egsrs.clone();
+		Arrays.sort(egsrs, new Comparator<ExtGameStateRow>() {
+			public int compare(ExtGameStateRow a, ExtGameStateRow b) {
+				return Integer.compare(a.getID(), b.getID());
+			}
+		});
+		gars = gars.clone();
+		Arrays.sort(gars, new Comparator<GameActionRow>() {
+			public int compare(GameActionRow a, GameActionRow b) {
+				return Integer.compare(a.getID(), b.getID());
+			}
+		});
+
+		final int no = ogsrs.length, ne = egsrs.length, ng = gars.length;
+		final int[] ogsrColumns = new int[OGSR_COLUMNS * no];
+		final int[] egsrColumns = new int[EGSR_COLUMNS * ne];
+		final int[] garColumns = new int[GAR_COLUMNS * ng];
+		IntList heap = new IntList();
+		for (int row = 0; row < no; row++) {
+			ObsGameStateRow ogsr = ogsrs[row];
+			ogsrColumns[OGSR_ID * no + row] = ogsr.getID();
+			ogsrColumns[OGSR_ROBBERHEX * no + row] = ogsr.getRobberHex();
+			ogsrColumns[OGSR_GAMESTATE * no + row] = ogsr.getGameState();
+			ogsrColumns[OGSR_DEVCARDSLEFT * no + row] = ogsr.getDevCardsLeft();
+			ogsrColumns[OGSR_DICERESULT * no + row] = ogsr.getDiceResult();
+			ogsrColumns[OGSR_STARTINGPLAYER * no + row] = ogsr.getStartingPlayer();
+			ogsrColumns[OGSR_CURRENTPLAYER * no + row] = ogsr.getCurrentPlayer();
+			ogsrColumns[OGSR_PLAYEDDEVCARD * no + row] = ogsr.hasPlayedDevCard() ? 1 : 0;
+			ogsrColumns[OGSR_HEAP * no + row] = heap.size;
+			heap.add(ogsr.getHexLayout());
+			heap.add(ogsr.getNumberLayout());
+			heap.add(ogsr.getPiecesOnBoard());
+			heap.add(ogsr.getPlayers());
+			heap.add(ogsr.getTouchingNumbers());
+		}
+		for (int row = 0; row < ne; row++) {
+			ExtGameStateRow egsr = egsrs[row];
+			egsrColumns[EGSR_ID * ne + row] = egsr.getID();
+			egsrColumns[EGSR_HEAP * ne + row] = heap.size;
+			heap.add(egsr.getPastTrades());
+			heap.add(egsr.getFutureTrades());
+			heap.add(egsr.getPastPBPs());
+			heap.add(egsr.getFuturePBPs());
+			heap.add(egsr.getETWs());
+			heap.add(egsr.getAvgETBs());
+			heap.add(egsr.getSettETBs());
+			heap.add(egsr.getRoadETBs());
+			heap.add(egsr.getCityETBs());
+			heap.add(egsr.getDevETBs());
+			heap.add(egsr.getTerritoryConnected());
+			heap.add(egsr.getTerritoryIsolated());
+			heap.add(egsr.getLongestRoads());
+			heap.add(egsr.getLongestPossibleRoads());
+			heap.add(egsr.getDistanceToOpponents());
+			heap.add(egsr.getDistanceToPort());
+			heap.add(egsr.getDistanceToNextLegalLoc());
+			heap.add(egsr.getRssTypeAndNumber());
+		}
+		for (int row = 0; row < ng; row++) {
+			GameActionRow gar = gars[row];
+			final long typeBits = Double.doubleToLongBits(gar.getType());
+			garColumns[GAR_ID * ng + row] = gar.getID();
+			garColumns[GAR_TYPEHI * ng + row] = (int) (typeBits >>> 32);
+			garColumns[GAR_TYPELO * ng + row] = (int) typeBits;
+			garColumns[GAR_BEFORESTATE * ng + row] = gar.getBeforeState();
+			garColumns[GAR_AFTERSTATE * ng + row] = gar.getAfterState();
+			garColumns[GAR_VALUE * ng + row] = gar.getValue();
+		}
+
+		final String name = (gameName != null) ? gameName : "";
+		final int total = HEADER + name.length() + ogsrColumns.length + egsrColumns.length + garColumns.length + heap.size;
+		ByteBuffer bytes = ByteBuffer.allocate(4 * total);
+		IntBuffer ints = bytes.asIntBuffer();
+		ints.put(MAGIC).put(VERSION).put(no).put(ne).put(ng).put(name.length());
+		for (int i = 0; i < name.length(); i++)
+			ints.put(name.charAt(i));
+		ints.put(ogsrColumns).put(egsrColumns).put(garColumns).put(heap.a, 0, heap.size);
+
+		File f = segmentFile(dir, gameID);
+		File tmp = new File(dir, f.getName() + ".tmp");
+		RandomAccessFile raf = new RandomAccessFile(tmp, "rw");
+		try {
+			raf.setLength(0);
+			FileChannel ch = raf.getChannel();
+			while (bytes.hasRemaining())
+				ch.write(bytes);
+		} finally {
+			raf.close();
+		}
+		if ((f.exists() && !f.delete()) || !tmp.renameTo(f))
+			throw new IOException("Cannot replace " + f);
+	}
+
+	/**
+	 * Copies a game's tables from the database to a segment.
+	 * @return false if the game has no raw states table or its tables can't be read
+	 * @throws IOException if the segment can't be written
+	 */
+	public static boolean export(StacDBHelper dbh, File dir, int gameID) throws IOException {
+		if (!dbh.tableExists(StacDBHelper.OBSFEATURESTABLE + gameID))
+			return false;
+		int[] ids = dbh.selectIDs(StacDBHelper.OBSFEATURESTABLE + gameID);
+		if (ids == null)
+			return false;
+		ObsGameStateRow[] ogsrs = new ObsGameStateRow[ids.length];
+		for (int i = 0; i < ids.length; i++)
+			ogsrs[i] = dbh.selectOGSR(gameID, ids[i]);
+
+		ExtGameStateRow[] egsrs = new ExtGameStateRow[0];
+		if (dbh.tableExists(StacDBHelper.EXTFEATURESTABLE + gameID)) {
+			ids = dbh.selectIDs(StacDBHelper.EXTFEATURESTABLE + gameID);
+			if (ids == null)
+				return false;
+			egsrs = new ExtGameStateRow[ids.length];
+			for (int i = 0; i < ids.length; i++)
+				egsrs[i] = dbh.selectEGSR(gameID, ids[i]);
+		}
+
+		GameActionRow[] gars = new GameActionRow[0];
+		if (dbh.tableExists(StacDBHelper.ACTIONSTABLE + gameID)) {
+			ids = dbh.selectIDs(StacDBHelper.ACTIONSTABLE + gameID);
+			if (ids == null)
+				return false;
+			gars = new GameActionRow[ids.length];
+			for (int i = 0; i < ids.length; i++)
+				gars[i] = dbh.selectGAR(gameID, ids[i]);
+		}
+
+		final String gameName = (ogsrs.length > 0) ? ogsrs[0].getGameName() : "";
+		writeGame(dir, gameID, gameName, ogsrs, egsrs, gars);
+		return true;
+	}
+
+	/**
+	 * Exports the games in a range of IDs from the database in db.config.txt.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 3) {
+			System.err.println("Usage: ColumnarGameplayStore directory firstGameID lastGameID");
+			System.exit(1);
+		}
+		File dir = new File(args[0]);
+		dir.mkdirs();
+		final int first = Integer.parseInt(args[1]);
+		final int last = Integer.parseInt(args[2]);
+
+		StacDBHelper dbh = new StacDBHelper();
+		dbh.initialize();
+		dbh.connect();
+		if (!dbh.isConnected())
+			System.exit(1);
+		int n = 0;
+		for (int gameID = first; gameID <= last; gameID++) {
+			if (export(dbh, dir, gameID))
+				n++;
+		}
+		dbh.disconnect();
+		System.out.println("Exported " + n + " games to " + dir);
+	}
+
+}
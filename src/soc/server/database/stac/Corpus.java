@@ -1,7 +1,7 @@
 package soc.server.database.stac;
 
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Vector;
 import java.util.concurrent.ConcurrentHashMap;
@@ -25,39 +25,51 @@ public class Corpus{
 	public static boolean initialised = false;
 	
 	/**
-	 * The container for the actual corpus information, stored as a mapping from game states to list of state-action pairs feature vectors;
+	 * The container for the actual corpus information, stored as a mapping from game states to an index of the state feature vectors,
+	 * each with the action feature vector taken from it; built once and only read afterwards, so it is shared by all the robots
 	 */
-	public static ConcurrentHashMap<Integer,HashMap<int[],int[]>> corpus;
+	public static ConcurrentHashMap<Integer,CorpusIndex<int[]>> corpus;
 	
 	/**
 	 * Connects to the database and performs all the required pre-computations
 	 */
 	public static void init(){
+		if(!initialised)
+			dbh.initialize();
+		init(dbh);
+	}
+	
+	/**
+	 * Performs all the required pre-computations from the games in a store, e.g. a {@link ColumnarGameplayStore}
+	 * when there is no database server.
+	 * @param store the store to read the games from; it is connected and disconnected here
+	 */
+	public static synchronized void init(GameplayStore store){
 		System.out.println("Initialising corpus");
 		if(initialised)
 			return;
-		dbh.initialize();
-		dbh.connect();
-		if(dbh.isConnected()){
+		store.connect();
+		if(store.isConnected()){
 			//do the actual initialisation here
-			corpus = new ConcurrentHashMap<Integer,HashMap<int[],int[]>>(100);
+			corpus = new ConcurrentHashMap<Integer,CorpusIndex<int[]>>(100);
 			//here we will loop over all states in the list, but for now only for the first two
 			int gameState;
 			NumericalFVGenerator sfs = new NumericalFVGenerator();
 			
 			for(int i = 1; i<3; i++){
 				gameState = 5*i; //this only works for initial state, but this is all we care about in this method for now
-				HashMap<int[], int[]> stateAction = new HashMap<>(10000);//a sufficiently large map for each possible state
+				ArrayList<int[]> stateFeatures = new ArrayList<int[]>(10000);
+				ArrayList<int[]> actions = new ArrayList<int[]>(10000);
 				//loop over all 60 games in the db;
 				for(int gameID = 1; gameID < 61; gameID ++){
-					ObsGameStateRow[] states = dbh.getAllObsStatesOfAKind(gameID, gameState);
+					ObsGameStateRow[] states = store.getAllObsStatesOfAKind(gameID, gameState);
 					Vector beforeStates = new Vector<ObsGameStateRow>();
 					
 					//special treatment of the initial placement states
 					if(gameState == SOCGame.START1A || gameState == SOCGame.START2A){
 						//then add only the ones after the virtual end turn used by JSettlers logic
 						for(ObsGameStateRow ogsr : states){
-							GameActionRow gar = dbh.selectGAR(gameID, ogsr.getID());
+							GameActionRow gar = store.selectGAR(gameID, ogsr.getID());
 							if(gar.getType() == GameActionRow.ENDTURN)
 								beforeStates.add(ogsr);
 						}
@@ -67,7 +79,7 @@ public class Corpus{
 					if(gameState == SOCGame.START2A){
 						int j = 1;
 						while(true){
-							ObsGameStateRow og = dbh.selectOGSR(gameID, j);
+							ObsGameStateRow og = store.selectOGSR(gameID, j);
 							if(og.getGameState() == gameState){
 								beforeStates.add(og);
 								break;
@@ -82,21 +94,22 @@ public class Corpus{
 					
 					//finally add to the map the state and the action taken from it
 					for(Object ogsr : beforeStates){
-						GameActionRow gar = dbh.selectGAR(gameID, ((ObsGameStateRow)ogsr).getID() + 1); //get the action taken from the state
-						ExtGameStateRow beforeEGSR = dbh.selectEGSR(gameID, ((ObsGameStateRow)ogsr).getID());
-						ObsGameStateRow afterOGSR = dbh.selectOGSR(gameID, gar.getID());//because garID is equal to the after state
-						ExtGameStateRow afterEgsr = dbh.selectEGSR(gameID, gar.getID());
+						GameActionRow gar = store.selectGAR(gameID, ((ObsGameStateRow)ogsr).getID() + 1); //get the action taken from the state
+						ExtGameStateRow beforeEGSR = store.selectEGSR(gameID, ((ObsGameStateRow)ogsr).getID());
+						ObsGameStateRow afterOGSR = store.selectOGSR(gameID, gar.getID());//because garID is equal to the after state
+						ExtGameStateRow afterEgsr = store.selectEGSR(gameID, gar.getID());
 					
 						int[] bStateFeatures = sfs.calculateStateVectorJS((ObsGameStateRow)ogsr, beforeEGSR);
 						int[] actionFeatures = SimilarityCalculator.vectorDifference(sfs.calculateStateVectorJS(afterOGSR,afterEgsr),bStateFeatures); //here do the vector difference
 						
-						stateAction.put(bStateFeatures, actionFeatures);
+						stateFeatures.add(bStateFeatures);
+						actions.add(actionFeatures);
 					}
 				}
-				corpus.put(gameState, stateAction);
+				corpus.put(gameState, new CorpusIndex<int[]>(stateFeatures, actions));
 			}
 			
-			dbh.disconnect();
+			store.disconnect();
 			initialised = true;
 		}else{
 			System.err.println("Initialisation failed. Cannot connect to the database");
@@ -105,25 +118,53 @@ public class Corpus{
 		
 	}
 	
-	public static HashMap<int[], int[]> getPreviousPlay(Integer stateType){
+	public static CorpusIndex<int[]> getPreviousPlay(Integer stateType){
 		//later a little bit of logic will be required here to handle specific states and following actions
 		return corpus.get(stateType);
 	}
 	
+	/**
+	 * @param stateType the game state
+	 * @param state the state feature vector, as computed by {@link NumericalFVGenerator#calculateStateVectorJS(ObsGameStateRow, ExtGameStateRow)}
+	 * @return the actions taken from states equal to this one in the corpus; empty if there are none
+	 */
+	public static List<int[]> getPreviousPlay(Integer stateType, int[] state){
+		CorpusIndex<int[]> index = corpus.get(stateType);
+		if(index == null)
+			return new ArrayList<int[]>();
+		return index.lookup(state);
+	}
+	
+	/**
+	 * @param stateType the game state
+	 * @param state the state feature vector, as computed by {@link NumericalFVGenerator#calculateStateVectorJS(ObsGameStateRow, ExtGameStateRow)}
+	 * @param k how many to return
+	 * @return the actions taken from the k states most similar to this one in the corpus, the most similar first
+	 */
+	public static List<int[]> getSimilarPlay(Integer stateType, int[] state, int k){
+		List<int[]> actions = new ArrayList<int[]>();
+		CorpusIndex<int[]> index = corpus.get(stateType);
+		if(index == null)
+			return actions;
+		for(int entry : index.nearest(state, k))
+			actions.add(index.getValue(entry));
+		return actions;
+	}
+	
 	public static void main(String[] args) {
 		Corpus.init();
-		HashMap<int[], int[]> prevPlay = Corpus.getPreviousPlay(SOCGame.START1A);
+		CorpusIndex<int[]> prevPlay = Corpus.getPreviousPlay(SOCGame.START1A);
 		System.out.println("For Start1A; Size:"+prevPlay.size());
-		for(int[] state : prevPlay.keySet()){
-			System.out.println("Size:" + state.length + " State:" + Arrays.toString(state));
-			System.out.println("Size: "+ prevPlay.get(state).length+ " Action:" + Arrays.toString(prevPlay.get(state)));
+		for(int i = 0; i < prevPlay.size(); i++){
+			System.out.println("Size:" + prevPlay.getState(i).length + " State:" + Arrays.toString(prevPlay.getState(i)));
+			System.out.println("Size: "+ prevPlay.getValue(i).length+ " Action:" + Arrays.toString(prevPlay.getValue(i)));
 		}
 		
 		prevPlay = Corpus.getPreviousPlay(SOCGame.START2A);
 		System.out.println("For Start2A; Size:"+prevPlay.size());
-		for(int[] state : prevPlay.keySet()){
-			System.out.println("Size:" + state.length + " State:" + Arrays.toString(state));
-			System.out.println("Size: "+ prevPlay.get(state).length+ " Action:" + Arrays.toString(prevPlay.get(state)));
+		for(int i = 0; i < prevPlay.size(); i++){
+			System.out.println("Size:" + prevPlay.getState(i).length + " State:" + Arrays.toString(prevPlay.getState(i)));
+			System.out.println("Size: "+ prevPlay.getValue(i).length+ " Action:" + Arrays.toString(prevPlay.getValue(i)));
 		}
 	}
 	
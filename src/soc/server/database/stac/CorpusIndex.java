@@ -0,0 +1,275 @@
+package soc.server.database.stac;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import representation.SimilarityCalculator;
+
+/**
+ * An index over the state vectors of a corpus, each with a value such as the action taken from the state.
+ * Equal vectors are found by their contents through {@link StateKey}s; similar ones by the cosine similarity of
+ * {@link SimilarityCalculator}, through a vantage point tree over the angular distance (the arccos of the similarity),
+ * which unlike 1 - similarity is a metric. It is built once and never changed afterwards, so it can be shared by any
+ * number of threads.
+ */
+public class CorpusIndex<T> {
+
+	/** Slack for the rounding of the distances, so that pruning never drops an entry that belongs in the answer */
+	private static final double SLACK = 1e-9;
+
+	private final int[][] states;
+	private final Object[] values;
+	private final double[] norms;
+	private final int dimension;
+	private final HashMap<StateKey, int[]> exact = new HashMap<StateKey, int[]>();
+
+	/** The tree, laid out in place: the node at position p has the vantage point items[p], the entries within
+	 * radius[p] of it at positions p + 1 to split[p] - 1, and the others from split[p] up to the end of the node */
+	private final int[] items;
+	private final double[] radius;
+	private final int[] split;
+
+	/**
+	 * @param states the state vectors, all of the same length
+	 * @param values the value of each state
+	 */
+	public CorpusIndex(List<int[]> states, List<T> values) {
+		if (states.size() != values.size())
+			throw new IllegalArgumentException("There are " + states.size() + " states but " + values.size() + " values");
+		final int n = states.size();
+		this.states = new int[n][];
+		this.values = values.toArray();
+		norms = new double[n];
+		dimension = (n > 0) ? states.get(0).length : 0;
+
+		HashMap<StateKey, ArrayList<Integer>> keys = new HashMap<StateKey, ArrayList<Integer>>();
+		for (int i = 0; i < n; i++) {
+			int[] s = states.get(i);
+			if (s.length != dimension)
+				throw new IllegalArgumentException("State " + i + " has length " + s.length + " instead of " + dimension);
+			this.states[i] = s.clone();
+			norms[i] = magnitude(s);
+			StateKey key = new StateKey(s);
+			ArrayList<Integer> same = keys.get(key);
+			if (same == null) {
+				same = new ArrayList<Integer>(1);
+				keys.put(key, same);
+			}
+			same.add(i);
+		}
+		for (StateKey key : keys.keySet()) {
+			ArrayList<Integer> same = keys.get(key);
+			int[] entries = new int[same.size()];
+			for (int i = 0; i < entries.length; i++)
+				entries[i] = same.get(i);
+			exact.put(key, entries);
+		}
+
+		items = new int[n];
+		for (int i = 0; i < n; i++)
+			items[i] = i;
+		radius = new double[n];
+		split = new int[n];
+		build(0, n, new double[n], new Random(n));
+	}
+
+	public int size() {
+		return states.length;
+	}
+
+	/**
+	 * @return the entry's state vector, which mustn't be changed
+	 */
+	public int[] getState(int entry) {
+		return states[entry];
+	}
+
+	@SuppressWarnings("unchecked")
+	public T getValue(int entry) {
+		return (T) values[entry];
+	}
+
+	/**
+	 * @param state a state vector
+	 * @return the values stored under a vector equal to it, in the order they were given; empty if there are none
+	 */
+	public List<T> lookup(int[] state) {
+		int[] entries = exact.get(new StateKey(state));
+		if (entries == null)
+			return Collections.emptyList();
+		List<T> answer = new ArrayList<T>(entries.length);
+		for (int e : entries)
+			answer.add(getValue(e));
+		return answer;
+	}
+
+	/**
+	 * Computes the similarity of every entry to the state, as {@link SimilarityCalculator#cosineSimilarity(int[], int[])}
+	 * would, but with the lengths of the stored vectors computed once.
+	 * @return the similarities, by entry
+	 */
+	public double[] similarities(int[] state) {
+		double[] sim = new double[states.length];
+		final double norm = magnitude(state);
+		for (int i = 0; i < states.length; i++)
+			sim[i] = similarity(i, state, norm);
+		return sim;
+	}
+
+	/**
+	 * @param state a state vector
+	 * @param k the number of entries wanted
+	 * @return the k entries most similar to the state, the most similar first; fewer if there aren't k
+	 */
+	public int[] nearest(int[] state, int k) {
+		if (k <= 0 || state.length != dimension || states.length == 0)
+			return new int[0];
+		final double norm = magnitude(state);
+		//the furthest of the best so far at the top
+		PriorityQueue<double[]> best = new PriorityQueue<double[]>(k, new Comparator<double[]>() {
+			public int compare(double[] a, double[] b) {
+				return Double.compare(b[0], a[0]);
+			}
+		});
+		nearest(state, norm, k, 0, states.length, best);
+		int[] answer = new int[best.size()];
+		for (int i = answer.length - 1; i >= 0; i--)
+			answer[i] = (int) best.poll()[1];
+		return answer;
+	}
+
+	/**
+	 * @param state a state vector
+	 * @param minSimilarity the lowest similarity wanted
+	 * @return the entries at least that similar to the state, in no particular order
+	 */
+	public int[] within(int[] state, double minSimilarity) {
+		if (state.length != dimension || states.length == 0)
+			return new int[0];
+		final double norm = magnitude(state);
+		final double tau = Math.acos(Math.max(-1, Math.min(1, minSimilarity))) / Math.PI + SLACK;
+		ArrayList<Integer> found = new ArrayList<Integer>();
+		within(state, norm, tau, 0, states.length, found);
+		int[] answer = new int[found.size()];
+		int n = 0;
+		for (int e : found)
+			if (similarity(e, state, norm) >= minSimilarity)
+				answer[n++] = e;
+		return Arrays.copyOf(answer, n);
+	}
+
+	/**
+	 * @param d room for the distances of the entries to the vantage point
+	 */
+	private void build(int lo, int hi, final double[] d, Random rnd) {
+		if (lo >= hi)
+			return;
+		//a random vantage point avoids the worst case of vectors stored in order
+		swap(lo, lo + rnd.nextInt(hi - lo));
+		split[lo] = hi;
+		if (hi - lo == 1)
+			return;
+		final int vp = items[lo];
+		for (int p = lo + 1; p < hi; p++)
+			d[items[p]] = distance(states[items[p]], norms[items[p]], vp);
+		Integer[] rest = new Integer[hi - lo - 1];
+		for (int p = lo + 1; p < hi; p++)
+			rest[p - lo - 1] = items[p];
+		Arrays.sort(rest, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				return Double.compare(d[a], d[b]);
+			}
+		});
+		for (int p = lo + 1; p < hi; p++)
+			items[p] = rest[p - lo - 1];
+		final int mid = lo + 1 + (hi - lo - 1) / 2;
+		radius[lo] = d[items[mid]];
+		split[lo] = mid;
+		build(lo + 1, mid, d, rnd);
+		build(mid, hi, d, rnd);
+	}
+
+	private void nearest(int[] state, double norm, int k, int lo, int hi, PriorityQueue<double[]> best) {
+		if (lo >= hi)
+			return;
+		final int vp = items[lo];
+		final double d = distance(state, norm, vp);
+		if (best.size() < k)
+			best.add(new double[] { d, vp });
+		else if (d < best.peek()[0]) {
+			best.poll();
+			best.add(new double[] { d, vp });
+		}
+		if (hi - lo == 1)
+			return;
+		final int mid = split[lo];
+		if (d < radius[lo]) {
+			nearest(state, norm, k, lo + 1, mid, best);
+			if (best.size() < k || d + best.peek()[0] + SLACK >= radius[lo])
+				nearest(state, norm, k, mid, hi, best);
+		} else {
+			nearest(state, norm, k, mid, hi, best);
+			if (best.size() < k || d - best.peek()[0] - SLACK <= radius[lo])
+				nearest(state, norm, k, lo + 1, mid, best);
+		}
+	}
+
+	private void within(int[] state, double norm, double tau, int lo, int hi, List<Integer> found) {
+		if (lo >= hi)
+			return;
+		final int vp = items[lo];
+		final double d = distance(state, norm, vp);
+		if (d <= tau)
+			found.add(vp);
+		if (hi - lo == 1)
+			return;
+		if (d - tau <= radius[lo])
+			within(state, norm, tau, lo + 1, split[lo], found);
+		if (d + tau >= radius[lo])
+			within(state, norm, tau, split[lo], hi, found);
+	}
+
+	private void swap(int p, int q) {
+		int t = items[p];
+		items[p] = items[q];
+		items[q] = t;
+	}
+
+	/**
+	 * Same as {@link SimilarityCalculator#cosineSimilarity(int[], int[])} with the entry as the first vector.
+	 */
+	private double similarity(int entry, int[] state, double norm) {
+		final int[] s = states[entry];
+		if (s.length != state.length)
+			return -10;
+		double dot = 0;
+		for (int i = 0; i < s.length; i++)
+			dot = dot + (s[i] * state[i]);
+		return dot / (norms[entry] * norm);
+	}
+
+	/**
+	 * @return the angle between the vectors, as a fraction of a half turn; a zero vector is a right angle away from
+	 * any other vector and at no distance from another zero vector, which keeps the triangle inequality
+	 */
+	private double distance(int[] state, double norm, int entry) {
+		if (norm == 0 || norms[entry] == 0)
+			return (norm == 0 && norms[entry] == 0) ? 0 : 0.5;
+		final double cos = similarity(entry, state, norm);
+		return Math.acos(Math.max(-1, Math.min(1, cos))) / Math.PI;
+	}
+
+	private static double magnitude(int[] a) {
+		double ans = 0;
+		for (int i = 0; i < a.length; i++)
+			ans = ans + (a[i] * a[i]);
+		return Math.sqrt(ans);
+	}
+
+}
@@ -35,13 +35,24 @@ public class DBGameParser implements NumericalFeatureVectorOffsets,GameStateCons
 	/** to overcome issue with double precision when checking for equality */
 	private static final double EPSILON = 0.00001;
 	
-	StacDBHelper dbh;
+	GameplayStore dbh;
 	FVGenerator gen;
 	
 	public DBGameParser() {
-		dbh = new StacDBHelper();
+		StacDBHelper db = new StacDBHelper();
+		db.initialize();
+		dbh = db;
+		gen = FVGeneratorFactory.getGenerator();
+		dbh.connect();
+	}
+	
+	/**
+	 * Parses the games in another store, e.g. a {@link ColumnarGameplayStore} when there is no database server.
+	 * @param store the store to read the games from; it is connected here and disconnected by {@link #close()}
+	 */
+	public DBGameParser(GameplayStore store) {
+		dbh = store;
 		gen = FVGeneratorFactory.getGenerator();
-		dbh.initialize();
 		dbh.connect();
 	}
 	
@@ -82,6 +93,44 @@ public class DBGameParser implements NumericalFeatureVectorOffsets,GameStateCons
 		}
 	}
 	
+	/**
+	 * Loads the game's tables at once and selects the samples of every task from them, instead of querying the store
+	 * row by row for each task in turn.
+	 * @param gameID
+	 * @return the samples, indexed by task from {@link #ROAD_BUILDING} to {@link #MOVE_ROBBER}
+	 */
+	public ArrayList<Sample>[] selectAllSamples(int gameID){
+		GameTables game = dbh.selectGame(gameID);
+		if(game == null){
+			System.err.println("Cannot load game " + gameID);
+			return selectAllSamples(new GameTables(gameID, new ObsGameStateRow[0], new ExtGameStateRow[0], new GameActionRow[0]));
+		}
+		return selectAllSamples(game);
+	}
+	
+	/**
+	 * Selects the samples of every task from a game already loaded, e.g. by another thread.
+	 * @param game the game's tables
+	 * @return the samples, indexed by task from {@link #ROAD_BUILDING} to {@link #MOVE_ROBBER}
+	 */
+	@SuppressWarnings("unchecked")
+	public ArrayList<Sample>[] selectAllSamples(GameTables game){
+		ArrayList<Sample>[] samples = new ArrayList[MOVE_ROBBER + 1];
+		GameplayStore store = dbh;
+		dbh = game;
+		try{
+			for(int task = ROAD_BUILDING; task <= MOVE_ROBBER; task++){
+				if(game.getOGSRs().length == 0)
+					samples[task] = new ArrayList<Sample>();
+				else
+					samples[task] = selectSamples(game.getGameID(), task);
+			}
+		}finally{
+			dbh = store;
+		}
+		return samples;
+	}
+	
 	
 	/**
 	 * For selecting all the state action pairs from the initial placement phase; i.e. the two free initial settlements placements.
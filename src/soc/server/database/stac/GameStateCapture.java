@@ -0,0 +1,288 @@
+package soc.server.database.stac;
+
+import soc.game.SOCGame;
+import soc.game.SOCPlayer;
+import soc.game.SOCPlayingPiece;
+import soc.robot.stac.StacRobotDummyBrain;
+
+/**
+ * The rules for capturing a game's states and actions from its log, shared by the replay client
+ * ({@code SOCReplayClient.FileToQueue}) and {@link StacLogIngester}: which logged messages mark the end of an action,
+ * and the counters of build plans and trades which go with each captured state.
+ * The callers feed the game's messages through their own client and ask for a {@link #capture(SOCGame, StacRobotDummyBrain, double[])}
+ * when one of the triggers here says so.
+ * <p>
+ * One instance per game; not thread-safe.
+ */
+public class GameStateCapture {
+
+	/**
+	 * An action found in the log: what to call it in the augmented log and its possible action types
+	 * (see {@link GameActionRow}); when there are several, {@link GameStateCapture#capture(SOCGame, StacRobotDummyBrain, double[])}
+	 * works out which from the game.
+	 */
+	public static final class Trigger {
+		public final String label;
+		public final double[] actionTypes;
+
+		private Trigger(String label, double... actionTypes) {
+			this.label = label;
+			this.actionTypes = actionTypes;
+		}
+	}
+
+	private static final Trigger TRADE = new Trigger("Game State after Trade Action: ", GameActionRow.TRADE);
+	private static final Trigger ROLL = new Trigger("Game State after Roll Dice action: ", GameActionRow.ROLL);
+	private static final Trigger BEFORE_ROBBER = new Trigger("Game State after Discard or Roll Dice or Play Soldier actions (exclusive or): ",
+			GameActionRow.ROLL, GameActionRow.DISCARD, GameActionRow.PLAYKNIGHT);
+	private static final Trigger CHOOSEPLAYER = new Trigger("Game State after both Move Robber and Choose Player actions (or just Choose Player): ",
+			GameActionRow.CHOOSEPLAYER);
+	private static final Trigger PLAYMONO = new Trigger("Game State after Play Monopoly Action: ", GameActionRow.PLAYMONO);
+	private static final Trigger PLAYDISC = new Trigger("Game State after Play Discovery Action: ", GameActionRow.PLAYDISC);
+	private static final Trigger BUYDEVCARD = new Trigger("Game State after Buy Dev Card Action: ", GameActionRow.BUYDEVCARD);
+	private static final Trigger WIN = new Trigger("Final game state: ", GameActionRow.WIN);
+	private static final Trigger ROLL_SEVEN = new Trigger("Game State only after Rolling a 7(roll Dice) Action: ", GameActionRow.ROLL);
+	private static final Trigger PLAYROAD = new Trigger("Game State only after Play Road Building Card Action: ", GameActionRow.PLAYROAD);
+	private static final Trigger MOVEROBBER = new Trigger("Game State only after Moving The Robber Action: ", GameActionRow.MOVEROBBER);
+	private static final Trigger BUILDROAD = new Trigger("Game State after Put Piece Action: ", GameActionRow.BUILDROAD);
+	private static final Trigger BUILDSETT = new Trigger("Game State after Put Piece Action: ", GameActionRow.BUILDSETT);
+	private static final Trigger BUILDCITY = new Trigger("Game State after Put Piece Action: ", GameActionRow.BUILDCITY);
+	/** A new turn, which ends the last one */
+	public static final Trigger ENDTURN = new Trigger("Game State after End Turn Action: ", GameActionRow.ENDTURN);
+
+	/**
+	 * The rows of one captured state.
+	 */
+	public static final class Rows {
+		public final ObsGameStateRow ogsr;
+		public final GameActionRow gar;
+		public final ExtGameStateRow egsr;
+		/** the action which led to the state, or 0 if none was given */
+		public final double actionType;
+
+		private Rows(ObsGameStateRow ogsr, GameActionRow gar, ExtGameStateRow egsr, double actionType) {
+			this.ogsr = ogsr;
+			this.gar = gar;
+			this.egsr = egsr;
+			this.actionType = actionType;
+		}
+	}
+
+	private int idCounter = 0; //states and actions IDs
+	private final int[][] tradesCounter = new int[4][4];
+	private final int[][] tempTradesCounter = new int[4][4]; //the trades before the last one, which are passed to the egsr
+	private final int[][] pbpCounter = new int[4][6];
+	//the game's totals from the games table, if collected
+	private Integer[][] totalPbps;
+	private Integer[][] totalTrades;
+
+	/**
+	 * Gives the game's total build plans and trades, from the games table, from which the future ones are worked out.
+	 * Without them, the future ones are left as the past ones.
+	 */
+	public void setTotals(Integer[][] totalPbps, Integer[][] totalTrades) {
+		this.totalPbps = totalPbps;
+		this.totalTrades = totalTrades;
+	}
+
+	/**
+	 * @return whether the totals have been given, so the extracted states can be worked out
+	 */
+	public boolean canExtract() {
+		return totalPbps != null;
+	}
+
+	/** @return the ID of the last state captured; 0 is the state before the game starts */
+	public int getLastID() {
+		return idCounter;
+	}
+
+	/** @return the build plans counted so far, per player in the order of StacPossibleBuildPlan */
+	public int[][] getPbpCounter() {
+		return pbpCounter;
+	}
+
+	/** @return the trades counted so far, by player and partner; a player's trades with itself are those with the bank or a port */
+	public int[][] getTradesCounter() {
+		return tradesCounter;
+	}
+
+	/**
+	 * Looks at a text from the server and counts it if it reports a trade.
+	 * @param ga the game, as it is before the text
+	 * @param text the text of the server's message
+	 * @return the action it ends, or null if it doesn't end one
+	 */
+	public Trigger onServerText(SOCGame ga, String text) {
+		if (text.contains("traded")) {
+			final int cpn = ga.getCurrentPlayerNumber();
+			//keep a reference to the old trade numbers
+			for (int i = 0; i < 4; i++)
+				System.arraycopy(tradesCounter[i], 0, tempTradesCounter[i], 0, tradesCounter[i].length);
+			if (text.contains("from the bank") || text.contains("from a port")) {
+				tradesCounter[cpn][cpn]++;
+			} else {
+				String partner = text.split("from ")[1];
+				partner = partner.substring(0, partner.length() - 1); //remove the "."
+				tradesCounter[cpn][ga.getPlayer(partner).getPlayerNumber()]++;
+			}
+			return TRADE;
+		} else if (text.contains("gets")) {
+			return ROLL;
+		} else if (text.contains("will move the robber")) {
+			return BEFORE_ROBBER;
+		} else if (text.contains("stole a resource")) {
+			return CHOOSEPLAYER;
+		} else if (text.contains("You monopolized")) {
+			return PLAYMONO;
+		} else if (text.contains("received")) {
+			return PLAYDISC;
+		} else if (text.contains("bought a development card")) {
+			return BUYDEVCARD;
+		} else if (text.contains("has won the game")) {
+			return WIN;
+		}
+		return null;
+	}
+
+	/**
+	 * @param state a game state the server has announced
+	 * @return the action which the state shows has ended, or null if none
+	 */
+	public static Trigger onGameState(int state) {
+		switch (state) {
+		case SOCGame.WAITING_FOR_DISCARDS:
+			return ROLL_SEVEN;
+		case SOCGame.PLACING_FREE_ROAD1:
+			return PLAYROAD;
+		case SOCGame.WAITING_FOR_CHOICE:
+			return MOVEROBBER;
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * @param pieceType the type of a piece put on the board, from {@link SOCPlayingPiece}
+	 * @return the building action
+	 */
+	public static Trigger onPutPiece(int pieceType) {
+		if (pieceType == SOCPlayingPiece.ROAD)
+			return BUILDROAD;
+		else if (pieceType == SOCPlayingPiece.SETTLEMENT)
+			return BUILDSETT;
+		else
+			return BUILDCITY;
+	}
+
+	/**
+	 * Captures the state after an action, and counts the action.
+	 * The players' IDs in the raw state are left for the caller; see {@link #setPlayerIDs(ObsGameStateRow, SOCGame, int[], String[])}.
+	 * @param ga the game after the action
+	 * @param dummy the brain following the game, for the extracted state
+	 * @param actionTypes the trigger's action types
+	 * @return the rows of the new state
+	 */
+	public Rows capture(SOCGame ga, StacRobotDummyBrain dummy, double[] actionTypes) {
+		//id=0 is the state before starting the game
+		idCounter++;
+		ObsGameStateRow ogsr = ga.turnCurrentStateIntoOGSR();
+		ogsr.setID(idCounter);
+		GameActionRow gar = new GameActionRow(idCounter);
+		ExtGameStateRow egsr = dummy.turnStateIntoEGSR();
+		egsr.setID(idCounter);
+
+		double actionType = 0;
+		if (actionTypes.length == 1) {
+			actionType = actionTypes[0];
+		} else if (actionTypes.length > 1) { //just before moving the robber the previous action has to be worked out
+			if (ga.getOldGameState() == SOCGame.PLAY)
+				actionType = (ga.getCurrentDice() == 7) ? GameActionRow.ROLL : GameActionRow.PLAYKNIGHT;
+			else if (ga.getOldGameState() == SOCGame.WAITING_FOR_DISCARDS)
+				actionType = GameActionRow.DISCARD;
+			else if (ga.getOldGameState() == SOCGame.PLAY1)
+				actionType = GameActionRow.PLAYKNIGHT;
+		}
+
+		//the past build plans and trades, before counting this action
+		egsr.setPastPBPs(StacDBHelper.transformToIntegerArr2(pbpCounter));
+		egsr.setPastTrades(StacDBHelper.transformToIntegerArr2(tempTradesCounter));
+		if (canExtract()) {
+			int[][] tempBpp = new int[4][6];
+			for (int i = 0; i < 4; i++)
+				for (int j = 0; j < 6; j++)
+					tempBpp[i][j] = totalPbps[i][j] - pbpCounter[i][j];
+			egsr.setFuturePBPs(StacDBHelper.transformToIntegerArr2(tempBpp));
+			int[][] tempTrades = new int[4][4];
+			for (int i = 0; i < 4; i++)
+				for (int j = 0; j < 4; j++)
+					tempTrades[i][j] = totalTrades[i][j] - tempTradesCounter[i][j];
+			egsr.setFutureTrades(StacDBHelper.transformToIntegerArr2(tempTrades));
+		} else {
+			//to avoid a nullpointer when printing out
+			egsr.setFuturePBPs(StacDBHelper.transformToIntegerArr2(pbpCounter));
+			egsr.setFutureTrades(StacDBHelper.transformToIntegerArr2(tempTradesCounter));
+		}
+
+		//the order is the same as in StacPossibleBuildPlan
+		final int cpn = ga.getCurrentPlayerNumber();
+		if (actionType == GameActionRow.BUILDROAD) {
+			pbpCounter[cpn][0]++;
+			pbpCounter[cpn][4]++; //building a road counts as going for the longest road
+		} else if (actionType == GameActionRow.BUILDSETT) {
+			pbpCounter[cpn][1]++;
+		} else if (actionType == GameActionRow.BUILDCITY) {
+			pbpCounter[cpn][2]++;
+		} else if (actionType == GameActionRow.BUYDEVCARD) {
+			pbpCounter[cpn][3]++;
+		} else if (actionType == GameActionRow.PLAYKNIGHT) {
+			pbpCounter[cpn][5]++; //playing a knight counts as going for the largest army
+		}
+
+		gar.setType(actionType);
+		gar.setAfterState(idCounter);
+		gar.setBeforeState(idCounter - 1);
+		return new Rows(ogsr, gar, egsr, actionType);
+	}
+
+	/**
+	 * Sets the players' IDs in a raw state: the ID from the players table if the player seated is the one recorded,
+	 * 0 for the "Dummy" placeholder of players of only 1 game, and -1 for an empty seat or an inconsistency,
+	 * which will stand out.
+	 * @param playersIDs the players' IDs in the games table, by player number
+	 * @param playersNames the names of those players in the players table
+	 */
+	public static void setPlayerIDs(ObsGameStateRow ogsr, SOCGame ga, int[] playersIDs, String[] playersNames) {
+		for (SOCPlayer p : ga.getPlayers()) {
+			final String pName = p.getName();
+			final int pn = p.getPlayerNumber();
+			if (pName == null)
+				ogsr.setPlayerID(pn, -1);
+			else if (pName.equals(playersNames[pn]))
+				ogsr.setPlayerID(pn, playersIDs[pn]);
+			else if ("Dummy".equals(playersNames[pn]))
+				ogsr.setPlayerID(pn, 0);
+			else
+				ogsr.setPlayerID(pn, -1);
+		}
+	}
+
+	/**
+	 * Inserts a captured state's rows: the raw state and action, or only the extracted state if
+	 * <tt>extractOnly</tt>, and neither until the totals are given. The game's final state also
+	 * updates its totals in the games table.
+	 */
+	public void store(StacDBHelper dbh, int gameID, Rows rows, boolean extractOnly) {
+		if (canExtract() && !extractOnly) {
+			dbh.insertRawState(gameID, rows.ogsr);
+			dbh.insertAction(gameID, rows.gar);
+		} else if (canExtract() && extractOnly) {
+			dbh.insertExtractedState(gameID, rows.egsr);
+		}
+		if (rows.actionType == GameActionRow.WIN) {
+			dbh.updateTotalPBP(gameID, pbpCounter);
+			dbh.updateTotalTrades(gameID, tradesCounter);
+		}
+	}
+
+}
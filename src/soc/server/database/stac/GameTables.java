@@ -0,0 +1,216 @@
+package soc.server.database.stac;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * All the rows of one game's tables held in memory, as loaded by {@link GameplayStore#selectGame(int)}.
+ * It is a store of its own, of that one game, so a {@link DBGameParser} can extract samples from it without any more queries.
+ * As with a database, the rows selected are copies, which the caller may change.
+ */
+public class GameTables implements GameplayStore {
+
+	/** Kinds of table, as returned by {@link #parseTableName(String)} */
+	static final int OBS = 0, EXT = 1, ACTIONS = 2;
+
+	private final int gameID;
+	private final ObsGameStateRow[] ogsrs;
+	private final ExtGameStateRow[] egsrs;
+	private final GameActionRow[] gars;
+	private final int[] ogsrIDs, egsrIDs, garIDs;
+
+	/**
+	 * @param gameID the game's id
+	 * @param ogsrs the raw states, in order of their IDs
+	 * @param egsrs the extracted states, in order of their IDs
+	 * @param gars the actions, in order of their IDs
+	 */
+	public GameTables(int gameID, ObsGameStateRow[] ogsrs, ExtGameStateRow[] egsrs, GameActionRow[] gars) {
+		this.gameID = gameID;
+		this.ogsrs = ogsrs;
+		this.egsrs = egsrs;
+		this.gars = gars;
+		ogsrIDs = new int[ogsrs.length];
+		for (int i = 0; i < ogsrs.length; i++)
+			ogsrIDs[i] = ogsrs[i].getID();
+		egsrIDs = new int[egsrs.length];
+		for (int i = 0; i < egsrs.length; i++)
+			egsrIDs[i] = egsrs[i].getID();
+		garIDs = new int[gars.length];
+		for (int i = 0; i < gars.length; i++)
+			garIDs[i] = gars[i].getID();
+	}
+
+	public int getGameID() {
+		return gameID;
+	}
+
+	public ObsGameStateRow[] getOGSRs() {
+		return ogsrs;
+	}
+
+	public ExtGameStateRow[] getEGSRs() {
+		return egsrs;
+	}
+
+	public GameActionRow[] getGARs() {
+		return gars;
+	}
+
+	/**
+	 * @param tableName the name of one of a game's tables, such as {@link StacDBHelper#ACTIONSTABLE} + gameID, in any case
+	 * @return {kind of table, gameID}, or null if it isn't the name of a game's table
+	 */
+	static int[] parseTableName(String tableName) {
+		final String name = tableName.toLowerCase();
+		final String[] prefixes = { StacDBHelper.OBSFEATURESTABLE, StacDBHelper.EXTFEATURESTABLE, StacDBHelper.ACTIONSTABLE };
+		for (int t = 0; t < prefixes.length; t++) {
+			if (name.startsWith(prefixes[t])) {
+				try {
+					return new int[] { t, Integer.parseInt(name.substring(prefixes[t].length())) };
+				} catch (NumberFormatException e) {
+					return null;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return the index of the ID, or -1; the IDs are usually consecutive, so the index is guessed first
+	 */
+	private static int find(int[] ids, int id) {
+		if (ids.length == 0)
+			return -1;
+		final int guess = id - ids[0];
+		if (guess >= 0 && guess < ids.length && ids[guess] == id)
+			return guess;
+		final int i = Arrays.binarySearch(ids, id);
+		return (i >= 0) ? i : -1;
+	}
+
+	private static Integer[] copy(Integer[] a) {
+		return (a == null) ? null : a.clone();
+	}
+
+	private static Integer[][] copy(Integer[][] a) {
+		if (a == null)
+			return null;
+		Integer[][] c = new Integer[a.length][];
+		for (int i = 0; i < a.length; i++)
+			c[i] = copy(a[i]);
+		return c;
+	}
+
+	private static Integer[][][] copy(Integer[][][] a) {
+		if (a == null)
+			return null;
+		Integer[][][] c = new Integer[a.length][][];
+		for (int i = 0; i < a.length; i++)
+			c[i] = copy(a[i]);
+		return c;
+	}
+
+	public void connect() {}
+
+	public void disconnect() {}
+
+	public boolean isConnected() {
+		return true;
+	}
+
+	public GameTables selectGame(int gameID) {
+		return (gameID == this.gameID) ? this : null;
+	}
+
+	/**
+	 * @return a copy of the row, which the caller may change, as it may one read from the database
+	 */
+	public ObsGameStateRow selectOGSR(int gameID, int ogsrID) {
+		if (gameID != this.gameID)
+			return null;
+		final int i = find(ogsrIDs, ogsrID);
+		return (i >= 0) ? copy(ogsrs[i]) : new ObsGameStateRow(ogsrID, "");
+	}
+
+	public ExtGameStateRow selectEGSR(int gameID, int egsrID) {
+		if (gameID != this.gameID)
+			return null;
+		final int i = find(egsrIDs, egsrID);
+		return (i >= 0) ? copy(egsrs[i]) : new ExtGameStateRow(egsrID, "");
+	}
+
+	public GameActionRow selectGAR(int gameID, int garID) {
+		if (gameID != this.gameID)
+			return null;
+		final int i = find(garIDs, garID);
+		if (i < 0)
+			return new GameActionRow(garID);
+		GameActionRow gar = new GameActionRow(garID, gars[i].getType(), gars[i].getBeforeState(), gars[i].getAfterState());
+		gar.setValue(gars[i].getValue());
+		return gar;
+	}
+
+	public ObsGameStateRow[] getAllObsStatesOfAKind(int gameID, int gameState) {
+		if (gameID != this.gameID)
+			return null;
+		ArrayList<ObsGameStateRow> answer = new ArrayList<ObsGameStateRow>();
+		for (ObsGameStateRow ogsr : ogsrs)
+			if (ogsr.getGameState() == gameState)
+				answer.add(copy(ogsr));
+		return answer.toArray(new ObsGameStateRow[answer.size()]);
+	}
+
+	private static ObsGameStateRow copy(ObsGameStateRow ogsr) {
+		ObsGameStateRow c = new ObsGameStateRow(ogsr.getID(), ogsr.getGameName());
+		c.setHexLayout(copy(ogsr.getHexLayout()));
+		c.setNumberLayout(copy(ogsr.getNumberLayout()));
+		c.setRobberHex(ogsr.getRobberHex());
+		c.setGameState(ogsr.getGameState());
+		c.setDevCardsLeft(ogsr.getDevCardsLeft());
+		c.setDiceResult(ogsr.getDiceResult());
+		c.setStartingPlayer(ogsr.getStartingPlayer());
+		c.setCurrentPlayer(ogsr.getCurrentPlayer());
+		c.setPlayedDevCard(ogsr.hasPlayedDevCard());
+		c.setPiecesOnBoard(copy(ogsr.getPiecesOnBoard()));
+		c.setPlayers(copy(ogsr.getPlayers()));
+		c.setTouchingNumbers(copy(ogsr.getTouchingNumbers()));
+		return c;
+	}
+
+	private static ExtGameStateRow copy(ExtGameStateRow egsr) {
+		ExtGameStateRow c = new ExtGameStateRow(egsr.getID(), egsr.getGameName());
+		c.setPastTrades(copy(egsr.getPastTrades()));
+		c.setFutureTrades(copy(egsr.getFutureTrades()));
+		c.setPastPBPs(copy(egsr.getPastPBPs()));
+		c.setFuturePBPs(copy(egsr.getFuturePBPs()));
+		c.setETWs(copy(egsr.getETWs()));
+		c.setAvgETBs(copy(egsr.getAvgETBs()));
+		c.setSettETBs(copy(egsr.getSettETBs()));
+		c.setRoadETBs(copy(egsr.getRoadETBs()));
+		c.setCityETBs(copy(egsr.getCityETBs()));
+		c.setDevETBs(copy(egsr.getDevETBs()));
+		c.setTerritoryConnected(copy(egsr.getTerritoryConnected()));
+		c.setTerritoryIsolated(copy(egsr.getTerritoryIsolated()));
+		c.setLongestRoads(copy(egsr.getLongestRoads()));
+		c.setLongestPossibleRoads(copy(egsr.getLongestPossibleRoads()));
+		c.setDistanceToOpponents(copy(egsr.getDistanceToOpponents()));
+		c.setDistanceToPort(copy(egsr.getDistanceToPort()));
+		c.setDistanceToNextLegalLoc(copy(egsr.getDistanceToNextLegalLoc()));
+		c.setRssTypeAndNumber(copy(egsr.getRssTypeAndNumber()));
+		return c;
+	}
+
+	public int getTableSize(String tableName) {
+		int[] table = parseTableName(tableName);
+		if (table == null || table[1] != gameID)
+			return -1;
+		return (table[0] == OBS) ? ogsrs.length : (table[0] == EXT) ? egsrs.length : gars.length;
+	}
+
+	public String toString() {
+		return "GameTables[" + gameID + ": " + ogsrs.length + " raw states, " + egsrs.length + " extracted states, "
+				+ gars.length + " actions]";
+	}
+
+}
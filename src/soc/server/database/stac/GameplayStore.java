@@ -0,0 +1,60 @@
+package soc.server.database.stac;
+
+/**
+ * Read access to the gameplay collected per game: the raw states (obsgamestates_{gameID}), the extracted states
+ * (extgamestates_{gameID}) and the actions (gameactions_{gameID}), each row identified by its game and its ID.
+ * {@link StacDBHelper} reads them from the database; {@link ColumnarGameplayStore} from files exported from it.
+ */
+public interface GameplayStore {
+
+	/**
+	 * Opens the store; check {@link #isConnected()} afterwards.
+	 */
+	public void connect();
+
+	public void disconnect();
+
+	public boolean isConnected();
+
+	/**
+	 * @param gameID the id of the game
+	 * @param ogsrID the id of the row
+	 * @return the row, with nothing but its ID set if there isn't one; null if the game's table can't be read
+	 */
+	public ObsGameStateRow selectOGSR(int gameID, int ogsrID);
+
+	/**
+	 * @param gameID the id of the game
+	 * @param egsrID the id of the row
+	 * @return the row, with nothing but its ID set if there isn't one; null if the game's table can't be read
+	 */
+	public ExtGameStateRow selectEGSR(int gameID, int egsrID);
+
+	/**
+	 * @param gameID the id of the game
+	 * @param garID the id of the row
+	 * @return the row, with nothing but its ID set if there isn't one; null if the game's table can't be read
+	 */
+	public GameActionRow selectGAR(int gameID, int garID);
+
+	/**
+	 * @param gameID the id of the game
+	 * @param gameState the gameState value we are looking for
+	 * @return the raw states with that game state; null if the game's table can't be read
+	 */
+	public ObsGameStateRow[] getAllObsStatesOfAKind(int gameID, int gameState);
+
+	/**
+	 * @param tableName the name of one of a game's tables, e.g. {@link StacDBHelper#OBSFEATURESTABLE} + gameID
+	 * @return the number of rows, or -1 if it fails
+	 */
+	public int getTableSize(String tableName);
+
+	/**
+	 * Reads all three of a game's tables at once, rather than a row at a time.
+	 * @param gameID the id of the game
+	 * @return the game's rows, or null if its tables can't be read
+	 */
+	public GameTables selectGame(int gameID);
+
+}
@@ -1,24 +1,49 @@
 package soc.server.database.stac;
 
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPOutputStream;
 
 
 /**
  * 
  * Processor for turning the data from the STAC postgres database into a usable format for learning. 
+ * <p>
+ * Without arguments every task is done in turn, reading the games row by row for each. With
+ * {@code -bulk [-store dir] [-threads n] [-seed s] [-out dir] [-part k/n]} each game's tables are loaded at once, by a pool
+ * of loaders, and the samples of all the tasks are extracted from them in one pass and written to a gzipped file per task
+ * and split (e.g. train-2.csv.gz). The samples of each chunk of games are shuffled with a seed derived from -seed, so the
+ * output doesn't depend on timing or on the number of threads. The extraction itself stays on one thread, as the MCTS Catan
+ * board it uses is static; run several processes with -part k/n (k from 0) for more, each doing every n-th chunk into its
+ * own files (e.g. train-2.part-0.csv.gz).
  * @author MD
  *
  */
 public class PreProcessDataFromDB {
 
 	static final String dirPath = "./data/synth";
+	/** Number of games shuffled together */
+	static final int CHUNK = 100;
 	
 	public static void main(String[] args) {
+		if(args.length > 0){
+			bulk(args);
+			return;
+		}
 		//iterate over each task and repeat the below for each
 		for(int taskId = DBGameParser.ROAD_BUILDING; taskId <= DBGameParser.MOVE_ROBBER; taskId++ ){
 //			//avoid doing anything else for now as these have already been done
@@ -159,5 +184,167 @@ public class PreProcessDataFromDB {
 		}
 		
 	}
+	
+	private static void bulk(String[] args){
+		String storeDir = null;
+		String outDir = dirPath;
+		int nThreads = Runtime.getRuntime().availableProcessors();
+		long seed = 0;
+		int part = 0, nParts = 1;
+		for(int i = 0; i < args.length; i++){
+			if(args[i].equals("-bulk"))
+				continue;
+			else if(args[i].equals("-store") && i + 1 < args.length)
+				storeDir = args[++i];
+			else if(args[i].equals("-threads") && i + 1 < args.length)
+				nThreads = Integer.parseInt(args[++i]);
+			else if(args[i].equals("-seed") && i + 1 < args.length)
+				seed = Long.parseLong(args[++i]);
+			else if(args[i].equals("-out") && i + 1 < args.length)
+				outDir = args[++i];
+			else if(args[i].equals("-part") && i + 1 < args.length){
+				String[] kn = args[++i].split("/");
+				part = Integer.parseInt(kn[0]);
+				nParts = Integer.parseInt(kn[1]);
+			}else{
+				System.err.println("Usage: PreProcessDataFromDB [-bulk [-store dir] [-threads n] [-seed s] [-out dir] [-part k/n]]");
+				return;
+			}
+		}
+		if(part < 0 || part >= nParts){
+			System.err.println("The part must be between 0 and " + (nParts - 1));
+			return;
+		}
+		
+		final ArrayList<StacDBHelper> helpers = new ArrayList<StacDBHelper>();
+		final GameplayStore shared;
+		final DBGameParser parser;
+		if(storeDir != null){
+			shared = new ColumnarGameplayStore(new File(storeDir));
+			parser = new DBGameParser(shared);
+			if(!shared.isConnected())
+				return;
+		}else{
+			shared = null;
+			parser = new DBGameParser();
+		}
+		//the database connections aren't shared, so each loader has its own
+		final ThreadLocal<GameplayStore> stores = new ThreadLocal<GameplayStore>(){
+			protected GameplayStore initialValue() {
+				if(shared != null)
+					return shared;
+				StacDBHelper dbh = new StacDBHelper();
+				dbh.initialize();
+				dbh.connect();
+				synchronized (helpers) {
+					helpers.add(dbh);
+				}
+				return dbh;
+			}
+		};
+		ExecutorService loaders = Executors.newFixedThreadPool(Math.max(1, nThreads));
+		String suffix = (nParts > 1) ? ".part-" + part : "";
+		try{
+			extract(parser, loaders, stores, "train", StacDBHelper.SIMGAMESSTARTID, 5000, seed, part, nParts, outDir, suffix);
+			extract(parser, loaders, stores, "test", StacDBHelper.SIMGAMESSTARTID + 5000, 1000, seed, part, nParts, outDir, suffix);
+		}catch (IOException e) {
+			e.printStackTrace();
+		}finally{
+			loaders.shutdown();
+			parser.close();
+			for(StacDBHelper dbh : helpers)
+				dbh.disconnect();
+		}
+	}
+	
+	/**
+	 * Extracts the samples of all the tasks from a range of games, while the loaders read the next chunk of games.
+	 */
+	@SuppressWarnings("unchecked")
+	private static void extract(DBGameParser parser, ExecutorService loaders, ThreadLocal<GameplayStore> stores, String split,
+			int firstGame, int totalGames, long seed, int part, int nParts, String outDir, String suffix) throws IOException{
+		final int nTasks = DBGameParser.MOVE_ROBBER + 1;
+		Writer[] writers = new Writer[nTasks];
+		int[] maxSize = new int[nTasks];
+		Arrays.fill(maxSize, Integer.MIN_VALUE);
+		try{
+			for(int task = 0; task < nTasks; task++)
+				writers[task] = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(
+						new FileOutputStream(new File(outDir, split + "-" + task + suffix + ".csv.gz")), 1 << 16), "UTF-8"), 1 << 16);
+			
+			ArrayList<Future<GameTables>> next = load(loaders, stores, firstGame + part * CHUNK, firstGame + totalGames);
+			for(int chunk = part * CHUNK; chunk < totalGames; chunk += nParts * CHUNK){
+				ArrayList<Future<GameTables>> games = next;
+				next = load(loaders, stores, firstGame + chunk + nParts * CHUNK, firstGame + totalGames);
+				
+				ArrayList<Sample>[] samples = new ArrayList[nTasks];
+				for(int task = 0; task < nTasks; task++)
+					samples[task] = new ArrayList<Sample>();
+				for(int g = 0; g < games.size(); g++){
+					ArrayList<Sample>[] gameSamples;
+					try{
+						gameSamples = parser.selectAllSamples(games.get(g).get());
+					}catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						return;
+					}catch (ExecutionException e) {
+						System.err.println("Cannot load game " + (firstGame + chunk + g) + ": " + e.getCause());
+						continue;
+					}
+					for(int task = 0; task < nTasks; task++)
+						samples[task].addAll(gameSamples[task]);
+				}
+				
+				for(int task = 0; task < nTasks; task++){
+					//the same seed for a chunk and task, whichever part or process it is done by
+					Collections.shuffle(samples[task], new Random(seed * 1000003L + (firstGame + chunk) * 31L + task));
+					for(Sample s: samples[task]){
+						String txt= Arrays.toString(s.getRecord());
+						if(s.getTotalLegalActions() > maxSize[task])
+							maxSize[task] = s.getTotalLegalActions();
+						writers[task].write(txt.substring(1, txt.length()-1).replace(" ", ""));
+						writers[task].write("\n");
+					}
+				}
+				System.out.println(split + ": games " + (firstGame + chunk) + " to " + (firstGame + chunk + games.size() - 1) + " done");
+			}
+		}finally{
+			for(Writer w : writers)
+				if(w != null)
+					w.close();
+		}
+		
+		for(int task = 0; task < nTasks; task++){
+			FileWriter fileWriter = new FileWriter(new File(outDir, split + "-" + task + suffix + "-metadata.txt"));
+			fileWriter.append("State:" + (DBGameParser.STATE_VECTOR_SIZE));
+			fileWriter.append("\n");
+			fileWriter.append("Action:" + (DBGameParser.ACTION_VECTOR_SIZE));
+			fileWriter.append("\n");
+			fileWriter.append("Largest set of actions:" + maxSize[task]);
+			fileWriter.append("\n");
+			fileWriter.close();
+		}
+	}
+	
+	/**
+	 * Starts loading the chunk of games beginning with the given one.
+	 * @return the games in order, none if the chunk is past the last game
+	 */
+	private static ArrayList<Future<GameTables>> load(ExecutorService loaders, final ThreadLocal<GameplayStore> stores,
+			int firstGame, int endGame){
+		ArrayList<Future<GameTables>> games = new ArrayList<Future<GameTables>>();
+		for(int gameID = firstGame; gameID < Math.min(firstGame + CHUNK, endGame); gameID++){
+			final int id = gameID;
+			games.add(loaders.submit(new Callable<GameTables>() {
+				public GameTables call() throws Exception {
+					GameTables game = stores.get().selectGame(id);
+					if(game == null)
+						throw new IOException("no tables for game " + id);
+					return game;
+				}
+			}));
+		}
+		return games;
+	}
 
 }
@@ -29,10 +29,13 @@ import resources.Resources;
  * Can only use a Postgresql db, so it needs to be different to DBHelper and SOCDBHelper.
  * Implements the interface necessary for collecting, extracting and storing all the information from the saved SOC leagues logs. 
  * Also contains some utilities used by both ogsr and egsr instances.
+ * <p>
+ * The methods the server uses while collecting gameplay (creating a game's tables, checking they exist and inserting rows)
+ * are synchronized, as the server's game lanes may call them at the same time and they share the connection and statement.
  * @author MD
  *
  */
-public class StacDBHelper{
+public class StacDBHelper implements GameplayStore{
 	//private fields for supporting localhost dbs or other server locations/users/pswd etc 
 	private Connection conn = null;
 	private String dbURL = null;
@@ -44,6 +47,12 @@ public class StacDBHelper{
 	private boolean connected = false;
 	//sql commands/statements
 	Statement stmt = null;
+	//write-behind for the inserts, over its own connection; null if inserting directly
+	private volatile StacDBWriter writer = null;
+	/** Default most rows of one table written in one batch by {@link #startWriteBehind(int, long)} */
+	public static final int DEFAULT_BATCH_SIZE = 500;
+	/** Default longest time in ms a row waits to be written by {@link #startWriteBehind(int, long)} */
+	public static final long DEFAULT_FLUSH_MILLIS = 1000;
     //table names;
     public static final String OBSFEATURESTABLE = "obsgamestates_";
     public static final String EXTFEATURESTABLE = "extgamestates_";
@@ -111,6 +120,18 @@ public class StacDBHelper{
 		}
 	}
 	
+	/**
+	 * Initialise the connection details directly instead of from db.config.txt, e.g. for an embedded database.
+	 * @param dbURL the JDBC URL of the database
+	 * @param dbUser the user name
+	 * @param dbPass the password
+	 */
+	public void initialize(String dbURL, String dbUser, String dbPass){
+		this.dbURL = dbURL;
+		this.dbUser = dbUser;
+		this.dbPass = dbPass;
+	}
+	
 	/**
 	 * Connect to the DB.
 	 */
@@ -125,7 +146,8 @@ public class StacDBHelper{
 			System.err.println("DB password was not provided");
 		}
 	    try {
-	        Class.forName(driver);
+	    	if(dbURL == null || dbURL.startsWith("jdbc:postgresql"))
+	    		Class.forName(driver); //other drivers, such as an embedded database's for testing, register themselves
 	        conn = DriverManager.getConnection(dbURL,dbUser,dbPass);
 	        conn.setAutoCommit(true);
 	        connected = true;
@@ -136,9 +158,10 @@ public class StacDBHelper{
 	}
 	
 	/**
-	 * Disconnect.
+	 * Disconnect, after writing any rows still queued by the write-behind.
 	 */
 	public void disconnect(){
+		stopWriteBehind();
 		try {
 			conn.close();
 			connected = false;
@@ -151,11 +174,75 @@ public class StacDBHelper{
 		return connected;
 	}
 	
+	/**
+	 * From now on the insert methods ({@link #insertRawState(int, ObsGameStateRow)}, {@link #insertExtractedState(int, ExtGameStateRow)},
+	 * {@link #insertAction(int, GameActionRow)} and {@link #insertStateValue(int, StateValueRow)}) only queue their rows, which
+	 * a background thread writes in batches over a second connection; see {@link StacDBWriter}. The rows must not be changed
+	 * after inserting them. Call {@link #flush()} at the end of each game and before reading back what was inserted;
+	 * {@link #disconnect()} writes anything left.
+	 * @param batchSize the most rows of one table to write in one batch, e.g. {@link #DEFAULT_BATCH_SIZE}
+	 * @param flushMillis the longest time in ms a row waits to be written, e.g. {@link #DEFAULT_FLUSH_MILLIS}
+	 * @return true if started or already running, false if the second connection could not be made, in which case rows are still inserted directly
+	 */
+	public boolean startWriteBehind(int batchSize, long flushMillis){
+		if(writer != null)
+			return true;
+		try {
+			Connection wconn = DriverManager.getConnection(dbURL,dbUser,dbPass);
+			writer = new StacDBWriter(wconn, "StacDBWriter", batchSize, flushMillis);
+			return true;
+		} catch (SQLException e) {
+			System.err.println("Cannot start the write-behind, inserting directly: " + e);
+			return false;
+		}
+	}
+	
+	/**
+	 * Writes any rows still queued by the write-behind and stops it; inserts are direct again afterwards.
+	 */
+	public void stopWriteBehind(){
+		if(writer == null)
+			return;
+		StacDBWriter w = writer;
+		writer = null;
+		w.close();
+		System.out.println("Write-behind stopped: " + w);
+	}
+	
+	/**
+	 * Waits until every row inserted before this call has been written to the database.
+	 * Does nothing if the rows are inserted directly.
+	 * @return the number of rows the write-behind dropped since the last flush because their batch failed
+	 *         (or that weren't written when interrupted); 0 if none, or if the rows are inserted directly
+	 */
+	public int flush(){
+		StacDBWriter w = writer;
+		if(w != null)
+			return w.flush();
+		return 0;
+	}
+	
+	/**
+	 * @return the number of rows the write-behind has dropped because their batch failed, since it was started;
+	 *         0 if the rows are inserted directly
+	 */
+	public long getRowsFailed(){
+		StacDBWriter w = writer;
+		return (w != null) ? w.getRowsFailed() : 0;
+	}
+	
+	/**
+	 * @return true if the inserts are queued for the write-behind
+	 */
+	public boolean isWriteBehind(){
+		return writer != null;
+	}
+	
 	/**
 	 * Creates the table containing the raw features collected from the logs. The table can be found in the db by the name: ObsGameStates_{gameID}.
 	 * @param gameID the ID of the game from the games table in the DB.
 	 */
-	public void createRawStateTable(int gameID){
+	public synchronized void createRawStateTable(int gameID){
 		try {
 			stmt = conn.createStatement();
         String sql = "CREATE TABLE ObsGameStates_" + gameID +
@@ -186,7 +273,7 @@ public class StacDBHelper{
 	 * to the ones in the raw state table. The table can be found in the db by the name: ExtGameStates_{gameID}.
 	 * @param gameID the ID of the game from the games table in the DB. 
 	 */
-	public void createExtractedStateTable(int gameID){
+	public synchronized void createExtractedStateTable(int gameID){
 		try {
 			stmt = conn.createStatement();
         String sql = "CREATE TABLE ExtGameStates_" + gameID +
@@ -225,7 +312,7 @@ public class StacDBHelper{
 	 * The table can be found in the db by the name: GameActions_{gameID}.
 	 * @param gameID the ID of the game from the games table in the DB.
 	 */
-	public void createActionTable(int gameID){
+	public synchronized void createActionTable(int gameID){
 		try {
 			stmt = conn.createStatement();
         String sql = "CREATE TABLE GameActions_" + gameID +
@@ -267,10 +354,41 @@ public class StacDBHelper{
 	 * @param ogsr the row to insert
 	 */
 	public void insertRawState(int gameID, ObsGameStateRow ogsr){
-		String sqlString = "INSERT INTO ObsGameStates_" + gameID + " (ID,NAME,HEXLAYOUT,NUMBERLAYOUT,ROBBERHEX,GAMESTATE,DEVCARDSLEFT,DICERESULT," +
-				"STARTINGPLAYER,CURRENTPLAYER,PLAYEDDEVCARD,PIECESONBOARD,PLAYERS,TOUCHINGNUMBERS) "
-				+ "VALUES (?,?,?,?,?,?,?,?,?,?,?,?,?,?);";
-		try(PreparedStatement ps = conn.prepareStatement(sqlString)) {
+		insert("ObsGameStates_" + gameID, RAWSTATE_INSERT, ogsr);
+//		System.out.println("Raw state row created successfully");
+	}
+	
+	/**
+	 * Inserts a row, or queues it for the write-behind if that has been started.
+	 * @param table the name of the table
+	 * @param insert the kind of insert
+	 * @param row the row to insert
+	 */
+	private void insert(String table, StacDBWriter.Insert insert, Object row){
+		StacDBWriter w = writer;
+		if(w != null){
+			w.add(table, insert, row);
+			return;
+		}
+		synchronized (this) {
+			try(PreparedStatement ps = conn.prepareStatement(insert.sql(table))) {
+				insert.bind(conn, ps, row);
+				ps.execute();
+			} catch (SQLException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+	
+	private static final StacDBWriter.Insert RAWSTATE_INSERT = new StacDBWriter.Insert() {
+		String sql(String table) {
+			return "INSERT INTO " + table + " (ID,NAME,HEXLAYOUT,NUMBERLAYOUT,ROBBERHEX,GAMESTATE,DEVCARDSLEFT,DICERESULT," +
+					"STARTINGPLAYER,CURRENTPLAYER,PLAYEDDEVCARD,PIECESONBOARD,PLAYERS,TOUCHINGNUMBERS) "
+					+ "VALUES (?,?,?,?,?,?,?,?,?,?,?,?,?,?);";
+		}
+		
+		void bind(Connection conn, PreparedStatement ps, Object row) throws SQLException {
+			ObsGameStateRow ogsr = (ObsGameStateRow) row;
 			ps.setInt(1, ogsr.getID());
 			ps.setString(2, ogsr.getGameName());
 			ps.setArray(3, conn.createArrayOf("integer", ogsr.getHexLayout()));
@@ -285,19 +403,15 @@ public class StacDBHelper{
 			ps.setArray(12, conn.createArrayOf("integer", ogsr.getPiecesOnBoard()));
 			ps.setArray(13, conn.createArrayOf("integer", ogsr.getPlayers()));
 			ps.setArray(14, conn.createArrayOf("integer", ogsr.getTouchingNumbers()));
-			ps.execute();
-		} catch (SQLException e) {
-			e.printStackTrace();
 		}
-//		System.out.println("Raw state row created successfully");
-	}
+	};
 	
 	/**
 	 * Inserts a row into the simulation_games table. 
 	 * @param gaName the name of the game
 	 * @param vp the array with the players' final victory points
 	 */
-	public void insertSimGameOverview(String gaName, int[] vp){
+	public synchronized void insertSimGameOverview(String gaName, int[] vp){
 		int gameID = SIMGAMESSTARTID + Integer.parseInt(gaName.split("_")[1]);
 		try {
 			String sqlString = "INSERT INTO " + SIMGAMESTABLE + " (ID,NAME,PLAYER1,SCORE1,PLAYER2,SCORE2,PLAYER3,SCORE3,PLAYER4,SCORE4) "
@@ -329,10 +443,19 @@ public class StacDBHelper{
 	 * @param egsr the row to insert
 	 */
 	public void insertExtractedState(int gameID, ExtGameStateRow egsr){
-		String sqlString = "INSERT INTO ExtGameStates_" + gameID + " (ID,NAME,PASTTRADES,FUTURETRADES,PASTPBP,FUTUREPBP,ETW,AVGETB,SETTLEMENTETB," +
-				"ROADETB,CITYETB,DEVCARDETB,CONNTERR,NOTISOTERR,LONGESTROADS,LONGESTPOSROADS,DISTTOOPP,DISTTOPORT,DISTTOLEGAL,RSSTYPEANDNO)"
-				+ "VALUES (?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?);";
-		try(PreparedStatement ps = conn.prepareStatement(sqlString)) {
+		insert("ExtGameStates_" + gameID, EXTSTATE_INSERT, egsr);
+//		System.out.println("Extracted state row created successfully");
+	}
+	
+	private static final StacDBWriter.Insert EXTSTATE_INSERT = new StacDBWriter.Insert() {
+		String sql(String table) {
+			return "INSERT INTO " + table + " (ID,NAME,PASTTRADES,FUTURETRADES,PASTPBP,FUTUREPBP,ETW,AVGETB,SETTLEMENTETB," +
+					"ROADETB,CITYETB,DEVCARDETB,CONNTERR,NOTISOTERR,LONGESTROADS,LONGESTPOSROADS,DISTTOOPP,DISTTOPORT,DISTTOLEGAL,RSSTYPEANDNO)"
+					+ "VALUES (?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?);";
+		}
+		
+		void bind(Connection conn, PreparedStatement ps, Object row) throws SQLException {
+			ExtGameStateRow egsr = (ExtGameStateRow) row;
 			ps.setInt(1, egsr.getID());
 			ps.setString(2, egsr.getGameName());
 			ps.setArray(3, conn.createArrayOf("integer", egsr.getPastTrades()));
@@ -353,12 +476,8 @@ public class StacDBHelper{
 			ps.setArray(18, conn.createArrayOf("integer", egsr.getDistanceToPort()));
 			ps.setArray(19, conn.createArrayOf("integer", egsr.getDistanceToNextLegalLoc()));
 			ps.setArray(20, conn.createArrayOf("integer", egsr.getRssTypeAndNumber()));
-			ps.execute();
-		} catch (SQLException e) {
-			e.printStackTrace();
 		}
-//		System.out.println("Extracted state row created successfully");
-	}
+	};
 	
 	/**
 	 * Inserts a row into the actions table.
@@ -366,20 +485,25 @@ public class StacDBHelper{
 	 * @param gar the row to insert
 	 */
 	public void insertAction(int gameID, GameActionRow gar){
-		String sqlString = "INSERT INTO GameActions_" + gameID + " (ID,TYPE,BEFORESTATE,AFTERSTATE,VALUE)"
-				+ "VALUES (?,?,?,?,?);";
-		try(PreparedStatement ps = conn.prepareStatement(sqlString)) {
+		insert("GameActions_" + gameID, ACTION_INSERT, gar);
+//		System.out.println("Action row created successfully");
+	}
+	
+	private static final StacDBWriter.Insert ACTION_INSERT = new StacDBWriter.Insert() {
+		String sql(String table) {
+			return "INSERT INTO " + table + " (ID,TYPE,BEFORESTATE,AFTERSTATE,VALUE)"
+					+ "VALUES (?,?,?,?,?);";
+		}
+		
+		void bind(Connection conn, PreparedStatement ps, Object row) throws SQLException {
+			GameActionRow gar = (GameActionRow) row;
 			ps.setInt(1, gar.getID());
 			ps.setDouble(2, gar.getType());
 			ps.setInt(3,gar.getBeforeState());
 			ps.setInt(4,gar.getAfterState());
 			ps.setInt(5,gar.getValue());
-			ps.execute();
-		} catch (SQLException e) {
-			e.printStackTrace();
 		}
-//		System.out.println("Action row created successfully");
-	}
+	};
 	
 	/**
 	 * Inserts a row into the value function table.
@@ -387,23 +511,24 @@ public class StacDBHelper{
 	 * @param row the row to insert
 	 */
 	public void insertStateValue(int id, StateValueRow row){
-		
-		try {
-			String sqlString = "INSERT INTO StateValue_" + id + " (ID,STATE,VALUE)"
-					   + "VALUES (?,?,?);";
-			PreparedStatement ps = conn.prepareStatement(sqlString);
-			ps.setLong(1, row.getId());
-			ps.setArray(2, conn.createArrayOf("integer", StacDBHelper.transformToIntegerArr(row.getState())));
-			ps.setDouble(3, row.getValue());
-			ps.execute();
-			ps.close();
-			
-		} catch (SQLException e) {
-			e.printStackTrace();
-		}
+		insert("StateValue_" + id, STATEVALUE_INSERT, row);
 //		System.out.println("Value row created successfully");
 	}
 	
+	private static final StacDBWriter.Insert STATEVALUE_INSERT = new StacDBWriter.Insert() {
+		String sql(String table) {
+			return "INSERT INTO " + table + " (ID,STATE,VALUE)"
+					   + "VALUES (?,?,?);";
+		}
+		
+		void bind(Connection conn, PreparedStatement ps, Object row) throws SQLException {
+			StateValueRow svr = (StateValueRow) row;
+			ps.setLong(1, svr.getId());
+			ps.setArray(2, conn.createArrayOf("integer", StacDBHelper.transformToIntegerArr(svr.getState())));
+			ps.setDouble(3, svr.getValue());
+		}
+	};
+	
 	/**
 	 * Drops a table.
 	 * @param tableName the name of the table to drop
@@ -454,25 +579,7 @@ public class StacDBHelper{
 		    ResultSet rs = stmt.executeQuery( "SELECT * FROM extgamestates_" + gameID + " WHERE ID=" + egsrID +";");
 		    while ( rs.next() ) {
 		    	//should only be one as ID is a unique primary key;
-		    	egsr.setGameName(rs.getString("name"));
-		    	egsr.setPastTrades((Integer[][]) rs.getArray("pasttrades").getArray());
-		    	egsr.setFutureTrades((Integer[][]) rs.getArray("futuretrades").getArray());
-		    	egsr.setPastPBPs((Integer[][]) rs.getArray("pastpbp").getArray());
-		    	egsr.setFuturePBPs((Integer[][]) rs.getArray("futurepbp").getArray());
-		    	egsr.setETWs((Integer[]) rs.getArray("etw").getArray());
-		    	egsr.setAvgETBs((Integer[][]) rs.getArray("avgetb").getArray());
-		    	egsr.setSettETBs((Integer[][]) rs.getArray("settlementetb").getArray());
-		    	egsr.setRoadETBs((Integer[][]) rs.getArray("roadetb").getArray());
-		    	egsr.setCityETBs((Integer[][]) rs.getArray("cityetb").getArray());
-		    	egsr.setDevETBs((Integer[][]) rs.getArray("devcardetb").getArray());
-		    	egsr.setTerritoryConnected((Integer[]) rs.getArray("connterr").getArray());
-		    	egsr.setTerritoryIsolated((Integer[]) rs.getArray("notisoterr").getArray());
-		    	egsr.setLongestRoads((Integer[]) rs.getArray("longestroads").getArray());
-		    	egsr.setLongestPossibleRoads((Integer[]) rs.getArray("longestposroads").getArray());
-		    	egsr.setDistanceToOpponents((Integer[]) rs.getArray("disttoopp").getArray());
-		    	egsr.setDistanceToPort((Integer[]) rs.getArray("disttoport").getArray());
-		    	egsr.setDistanceToNextLegalLoc((Integer[]) rs.getArray("disttolegal").getArray());
-		    	egsr.setRssTypeAndNumber((Integer[][]) rs.getArray("rsstypeandno").getArray());
+		    	egsr = readEGSR(rs);
 		    }
 		    rs.close();
 		    stmt.close();
@@ -496,27 +603,7 @@ public class StacDBHelper{
 		    ResultSet rs = stmt.executeQuery( "SELECT * FROM obsgamestates_" + gameID + " WHERE ID=" + ogsrID +";");
 		    while ( rs.next() ) {
 		    	//should only be one as ID is a unique primary key;
-		    	ogsr.setGameName(rs.getString("name"));
-		    	ogsr.setHexLayout((Integer[]) rs.getArray("hexlayout").getArray());
-		    	ogsr.setNumberLayout((Integer[]) rs.getArray("numberlayout").getArray());
-		    	ogsr.setRobberHex(rs.getInt("robberhex"));
-		    	ogsr.setGameState(rs.getInt("gamestate"));
-		    	ogsr.setDevCardsLeft(rs.getInt("devcardsleft"));
-		    	ogsr.setDiceResult(rs.getInt("diceresult"));
-		    	ogsr.setStartingPlayer(rs.getInt("startingplayer"));
-		    	ogsr.setCurrentPlayer(rs.getInt("currentplayer"));
-		    	ogsr.setPlayedDevCard(rs.getBoolean("playeddevcard"));
-		    	try {
-		    		ogsr.setPiecesOnBoard((Integer[][]) rs.getArray("piecesonboard").getArray());
-				} catch (Exception e) {
-					// if this is empty we might get cast exception as it tries to cast from single array to multi dimensional one... interesting
-					Integer[][] decoy = new Integer[1][3];
-					decoy[0] = new Integer[]{-1,-1,-1}; //decoy just so the toString method will not fail (remember to check for this when replacing during replay)
-					ogsr.setPiecesOnBoard(decoy);
-				}
-		    	
-		    	ogsr.setPlayers((Integer[][]) rs.getArray("players").getArray());
-		    	ogsr.setTouchingNumbers((Integer[][][]) rs.getArray("touchingnumbers").getArray());
+		    	ogsr = readOGSR(rs);
 		    }
 		    rs.close();
 		    stmt.close();
@@ -540,10 +627,7 @@ public class StacDBHelper{
 		    ResultSet rs = stmt.executeQuery( "SELECT * FROM gameactions_" + gameID + " WHERE ID=" + garID +";");
 		    while ( rs.next() ) {
 		    	//should only be one as ID is a unique primary key;
-		    	gar.setBeforeState(rs.getInt("beforestate"));
-		    	gar.setAfterState(rs.getInt("afterstate"));
-		    	gar.setType(rs.getDouble("type"));
-		    	gar.setValue(rs.getInt("value"));
+		    	gar = readGAR(rs);
 		    }
 		    rs.close();
 		    stmt.close();
@@ -554,6 +638,100 @@ public class StacDBHelper{
 		return gar;
 	}
 	
+	/**
+	 * Reads all the rows of a game's tables, with one query for each table, e.g. to extract samples from a whole game at once.
+	 * The extracted states are left empty if the game has no extgamestates_{gameID} table.
+	 * @param gameID the id of the game
+	 * @return the game's rows, or null if its raw states or actions can't be read
+	 */
+	public GameTables selectGame(int gameID){
+		ArrayList<ObsGameStateRow> ogsrs = new ArrayList<ObsGameStateRow>();
+		ArrayList<ExtGameStateRow> egsrs = new ArrayList<ExtGameStateRow>();
+		ArrayList<GameActionRow> gars = new ArrayList<GameActionRow>();
+		try {
+			Statement st = conn.createStatement();
+		    ResultSet rs = st.executeQuery( "SELECT * FROM obsgamestates_" + gameID + " ORDER BY ID;");
+		    while ( rs.next() ) {
+		    	ogsrs.add(readOGSR(rs));
+		    }
+		    rs.close();
+		    rs = st.executeQuery( "SELECT * FROM gameactions_" + gameID + " ORDER BY ID;");
+		    while ( rs.next() ) {
+		    	gars.add(readGAR(rs));
+		    }
+		    rs.close();
+		    if(tableExists(EXTFEATURESTABLE + gameID)){
+			    rs = st.executeQuery( "SELECT * FROM extgamestates_" + gameID + " ORDER BY ID;");
+			    while ( rs.next() ) {
+			    	egsrs.add(readEGSR(rs));
+			    }
+			    rs.close();
+		    }
+		    st.close();
+		} catch (SQLException e) {
+			e.printStackTrace();
+			return null;
+		}
+		return new GameTables(gameID, ogsrs.toArray(new ObsGameStateRow[ogsrs.size()]),
+				egsrs.toArray(new ExtGameStateRow[egsrs.size()]), gars.toArray(new GameActionRow[gars.size()]));
+	}
+	
+	private static ObsGameStateRow readOGSR(ResultSet rs) throws SQLException{
+		ObsGameStateRow ogsr = new ObsGameStateRow(rs.getInt("ID"), rs.getString("name"));
+		ogsr.setHexLayout((Integer[]) rs.getArray("hexlayout").getArray());
+		ogsr.setNumberLayout((Integer[]) rs.getArray("numberlayout").getArray());
+		ogsr.setRobberHex(rs.getInt("robberhex"));
+		ogsr.setGameState(rs.getInt("gamestate"));
+		ogsr.setDevCardsLeft(rs.getInt("devcardsleft"));
+		ogsr.setDiceResult(rs.getInt("diceresult"));
+		ogsr.setStartingPlayer(rs.getInt("startingplayer"));
+		ogsr.setCurrentPlayer(rs.getInt("currentplayer"));
+		ogsr.setPlayedDevCard(rs.getBoolean("playeddevcard"));
+		try {
+			ogsr.setPiecesOnBoard((Integer[][]) rs.getArray("piecesonboard").getArray());
+		} catch (Exception e) {
+			// if this is empty we might get cast exception as it tries to cast from single array to multi dimensional one... interesting
+			Integer[][] decoy = new Integer[1][3];
+			decoy[0] = new Integer[]{-1,-1,-1}; //decoy just so the toString method will not fail (remember to check for this when replacing during replay)
+			ogsr.setPiecesOnBoard(decoy);
+		}
+		ogsr.setPlayers((Integer[][]) rs.getArray("players").getArray());
+		ogsr.setTouchingNumbers((Integer[][][]) rs.getArray("touchingnumbers").getArray());
+		return ogsr;
+	}
+	
+	private static ExtGameStateRow readEGSR(ResultSet rs) throws SQLException{
+		ExtGameStateRow egsr = new ExtGameStateRow(rs.getInt("ID"), rs.getString("name"));
+		egsr.setPastTrades((Integer[][]) rs.getArray("pasttrades").getArray());
+		egsr.setFutureTrades((Integer[][]) rs.getArray("futuretrades").getArray());
+		egsr.setPastPBPs((Integer[][]) rs.getArray("pastpbp").getArray());
+		egsr.setFuturePBPs((Integer[][]) rs.getArray("futurepbp").getArray());
+		egsr.setETWs((Integer[]) rs.getArray("etw").getArray());
+		egsr.setAvgETBs((Integer[][]) rs.getArray("avgetb").getArray());
+		egsr.setSettETBs((Integer[][]) rs.getArray("settlementetb").getArray());
+		egsr.setRoadETBs((Integer[][]) rs.getArray("roadetb").getArray());
+		egsr.setCityETBs((Integer[][]) rs.getArray("cityetb").getArray());
+		egsr.setDevETBs((Integer[][]) rs.getArray("devcardetb").getArray());
+		egsr.setTerritoryConnected((Integer[]) rs.getArray("connterr").getArray());
+		egsr.setTerritoryIsolated((Integer[]) rs.getArray("notisoterr").getArray());
+		egsr.setLongestRoads((Integer[]) rs.getArray("longestroads").getArray());
+		egsr.setLongestPossibleRoads((Integer[]) rs.getArray("longestposroads").getArray());
+		egsr.setDistanceToOpponents((Integer[]) rs.getArray("disttoopp").getArray());
+		egsr.setDistanceToPort((Integer[]) rs.getArray("disttoport").getArray());
+		egsr.setDistanceToNextLegalLoc((Integer[]) rs.getArray("disttolegal").getArray());
+		egsr.setRssTypeAndNumber((Integer[][]) rs.getArray("rsstypeandno").getArray());
+		return egsr;
+	}
+	
+	private static GameActionRow readGAR(ResultSet rs) throws SQLException{
+		GameActionRow gar = new GameActionRow(rs.getInt("ID"));
+		gar.setBeforeState(rs.getInt("beforestate"));
+		gar.setAfterState(rs.getInt("afterstate"));
+		gar.setType(rs.getDouble("type"));
+		gar.setValue(rs.getInt("value"));
+		return gar;
+	}
+	
 	/**
 	 * Selects the row from the StateValue_{id} table with the ID = {svrID}
 	 * @param id the id of the table
@@ -801,7 +979,7 @@ public class StacDBHelper{
 	 * @param tableName one of the static final strings of this class
 	 * @return
 	 */
-	public boolean tableExists(String tableName){
+	public synchronized boolean tableExists(String tableName){
 		try {
 			DatabaseMetaData dbm = conn.getMetaData();
 			ResultSet tables = dbm.getTables(null, null, tableName , null);
@@ -839,6 +1017,30 @@ public class StacDBHelper{
 		return index;
 	}
 	
+	/**
+	 * @param tableName the name of the table
+	 * @return the IDs of its rows in ascending order, or null if it fails
+	 */
+	public int[] selectIDs(String tableName){
+		ArrayList<Integer> ids = new ArrayList<Integer>();
+		try {
+			stmt = conn.createStatement();
+		    ResultSet rs = stmt.executeQuery( "SELECT ID FROM " + tableName +" ORDER BY ID;");
+		    while ( rs.next() ) {
+		    	ids.add(rs.getInt(1));
+		    }
+		    rs.close();
+		    stmt.close();
+		} catch (SQLException e) {
+			e.printStackTrace();
+			return null;
+		}
+		int[] answer = new int[ids.size()];
+		for(int i = 0; i < answer.length; i++)
+			answer[i] = ids.get(i);
+		return answer;
+	}
+	
 	/**
 	 * 
 	 * @param gameID the game's id
@@ -978,28 +1180,7 @@ public class StacDBHelper{
 			stmt = conn.createStatement();
 		    ResultSet rs = stmt.executeQuery( "SELECT * FROM obsgamestates_" + gameID + " WHERE GAMESTATE=" + gameState +";");
 		    while ( rs.next() ) {
-		    	ObsGameStateRow ogsr = new ObsGameStateRow(0, ""); //ID will be reset later
-		    	ogsr.setID(rs.getInt("ID"));
-		    	ogsr.setGameName(rs.getString("name"));
-		    	ogsr.setHexLayout((Integer[]) rs.getArray("hexlayout").getArray());
-		    	ogsr.setNumberLayout((Integer[]) rs.getArray("numberlayout").getArray());
-		    	ogsr.setRobberHex(rs.getInt("robberhex"));
-		    	ogsr.setGameState(rs.getInt("gamestate"));
-		    	ogsr.setDevCardsLeft(rs.getInt("devcardsleft"));
-		    	ogsr.setDiceResult(rs.getInt("diceresult"));
-		    	ogsr.setStartingPlayer(rs.getInt("startingplayer"));
-		    	ogsr.setCurrentPlayer(rs.getInt("currentplayer"));
-		    	ogsr.setPlayedDevCard(rs.getBoolean("playeddevcard"));
-		    	try {
-		    		ogsr.setPiecesOnBoard((Integer[][]) rs.getArray("piecesonboard").getArray());
-				} catch (Exception e) {
-					// if this is empty we might get cast exception as it tries to cast from single array to multi dimensional one... interesting
-					Integer[][] decoy = new Integer[1][3];
-					decoy[0] = new Integer[]{-1,-1,-1}; //decoy just so the toString method will not fail (remember to check for this when replacing during replay)
-					ogsr.setPiecesOnBoard(decoy);
-				}
-		    	ogsr.setPlayers((Integer[][]) rs.getArray("players").getArray());
-		    	ogsr.setTouchingNumbers((Integer[][][]) rs.getArray("touchingnumbers").getArray());
+		    	ObsGameStateRow ogsr = readOGSR(rs);
 		    	ogsrs.add(ogsr);
 		    }
 		    rs.close();
@@ -3,9 +3,7 @@ package soc.server.database.stac;
 import java.util.HashSet;
 import java.util.Random;
 import java.util.Set;
-import java.util.Vector;
 
-import mcts.game.catan.Board;
 import mcts.game.catan.Catan;
 import mcts.game.catan.CatanConfig;
 import mcts.game.catan.GameStateConstants;
@@ -14,6 +12,7 @@ import soc.game.SOCDevCardConstants;
 import soc.game.SOCGame;
 import soc.game.SOCPlayingPiece;
 import soc.game.SOCResourceConstants;
+import soc.robot.stac.CatanBoardContext;
 
 /**
  * Utility to translate between the lightweight Catan and JSettlers state and action types. Also provides a method to turn a db state into a
@@ -188,11 +187,6 @@ public class StacDBToCatanInterface implements GameStateConstants {
     
     ///// Utilities to turn the db representation into a lightweight board representation ////
     
-    private static int[] vertexToSS;
-    private static int[] edgeToSS;
-    private static int[] vertexToJS;
-    private static int[] edgeToJS;
-	
 	/**
 	 * 
 	 * @param ogsr
@@ -206,185 +200,19 @@ public class StacDBToCatanInterface implements GameStateConstants {
 		board.setHexLayout(StacDBHelper.transformToIntArr(ogsr.getHexLayout()));
 		board.setNumberLayout(StacDBHelper.transformToIntArr(ogsr.getNumberLayout()));
 		
-		generateBoard(board);
+		CatanBoardContext ctx = CatanBoardContext.forBoard(board);
+		ctx.install();
 		
-		return generateGame(GAMESTATE, ogsr, egsr);
+		return generateGame(GAMESTATE, ogsr, egsr, ctx);
 	}
 
-	  /**
-     * Sending the board layout and initialising all translation stuff
-     */
-    private static void generateBoard(SOCBoard bo)
-    {
-    	Board bl = new Board();
-    	bl.InitBoard();
-        int xo, yo;
-        int xn, yn;
-        int indn;
-        int coordo;
-        int to, tn;
-        
-        for (xn=0; xn<Board.MAXX; xn++)
-            for (yn=0; yn<Board.MAXY; yn++)
-            {
-                if ((xn+yn<3) || (xn+yn>9))
-                    continue;
-                indn = bl.hexatcoord[xn][yn];
-                
-                xo = 2*xn+1;
-                yo = 2*(xn+yn)-5;
-                coordo = 16*xo + yo;
-                to = bo.getHexTypeFromCoord(coordo);
-
-                if ((to>=0) && (to<=5))
-                {
-                    switch (to)
-                    {
-                        case 0:
-                            tn = LAND_DESERT;
-                            break;                            
-                        case 1:
-                            tn = LAND_CLAY;
-                            break;                            
-                        case 2:
-                            tn = LAND_STONE;
-                            break;                            
-                        case 3:
-                            tn = LAND_SHEEP;
-                            break;                            
-                        case 4:
-                            tn = LAND_WHEAT;
-                            break;                            
-                        case 5:
-                            tn = LAND_WOOD;
-                            break;     
-                        default:
-                            tn = -1; // should cause error
-                    }
-                    bl.hextiles[indn].subtype = tn;
-                    bl.hextiles[indn].type = TYPE_LAND;
-                    bl.hextiles[indn].productionNumber = bo.getNumberOnHexFromCoord(coordo);
-                    
-                }
-                else if ((to >= 7) && (to <= 12))
-                {
-                    switch (to)
-                    {
-                        case SOCBoard.MISC_PORT_HEX:
-                            tn = PORT_MISC;
-                            break;
-                        case SOCBoard.CLAY_PORT_HEX:
-                            tn = PORT_CLAY;
-                            break;
-                        case SOCBoard.ORE_PORT_HEX:
-                            tn = PORT_STONE;
-                            break;
-                        case SOCBoard.SHEEP_PORT_HEX:
-                            tn = PORT_SHEEP;
-                            break;
-                        case SOCBoard.WHEAT_PORT_HEX:
-                            tn = PORT_WHEAT;
-                            break;
-                        case SOCBoard.WOOD_PORT_HEX:
-                            tn = PORT_WOOD;
-                            break;
-                        default:
-                            tn = PORT_MISC;
-                    }
-                    bl.hextiles[indn].subtype = tn;
-                    bl.hextiles[indn].type = TYPE_PORT;
-                }
-                else 
-                {
-                    bl.hextiles[indn].type = TYPE_SEA;
-                    bl.hextiles[indn].subtype = SEA;
-                    bl.hextiles[indn].orientation = -1;
-                }
-            }
-        initTranslationTables(bo, bl);
-
-        Catan.board = bl;
-    }
-    
-    private static int translateHexToSmartSettlers(int indo, Board b)
-    {
-        if (indo==-1)
-            return -1;
-        int xo = indo/16;
-        int yo = indo%16;
-        
-        int xn = (xo-1)/2;
-        int yn = (yo+5)/2-xn;
-        
-        //System.out.printf("%d  (%d,%d) -> (%d,%d) \n", indo, xo,yo, xn, yn);
-        return b.hexatcoord[xn][yn];
-    }
-    
-    private static int translateVertexToSmartSettlers(int indo)
-    {
-        if (vertexToSS == null)
-            return 0;
-        return vertexToSS[indo];
-    }
-
-    private static int translateEdgeToSmartSettlers(int indo)
-    {
-        return edgeToSS[indo];
-    }
-    
-    
-    private static void initTranslationTables(SOCBoard bo, Board bl)
-    {
-        int vo, vn;
-        int eo, en;
-        int ho, hn, j;
-        vertexToSS = new int[SOCBoard.MAXNODE+1];
-        edgeToSS = new int[SOCBoard.MAXEDGE_V1+1];
-        vertexToJS = new int[N_VERTICES];        
-        edgeToJS = new int[N_EDGES];
-
-        int[] numToHexID = 
-        {
-            0x17, 0x39, 0x5B, 0x7D,
-            0x15, 0x37, 0x59, 0x7B, 0x9D,
-            0x13, 0x35, 0x57, 0x79, 0x9B, 0xBD,
-            0x11, 0x33, 0x55, 0x77, 0x99, 0xBB, 0xDD,
-            0x31, 0x53, 0x75, 0x97, 0xB9, 0xDB,
-            0x51, 0x73, 0x95, 0xB7, 0xD9,
-            0x71, 0x93, 0xB5, 0xD7
-        };
-        
-        for (j=0; j<numToHexID.length; j++)
-        //for (ho = SOCBoard.MINHEX; ho<=SOCBoard.MAXHEX; ho++)
-        {
-            ho = numToHexID[j];
-            if (bo.getHexTypeFromCoord(ho) >= SOCBoard.WATER_HEX)
-                continue;
-            hn = translateHexToSmartSettlers(ho, bl);
-            int i = 0;
-            Vector vlist = SOCBoard.getAdjacentNodesToHex(ho);
-            Vector elist = SOCBoard.getAdjacentEdgesToHex(ho);
-            for (i = 0; i<6; i++)
-            {
-            	vo = (Integer) vlist.get(i);
-                vn = bl.neighborHexVertex[hn][i];
-                vertexToSS[vo] = vn;
-                vertexToJS[vn] = vo;
-                eo = (Integer) elist.get(i);
-                en = bl.neighborHexEdge[hn][i];
-                edgeToSS[eo] = en;
-                edgeToJS[en] = eo;
-            }
-        }
-        
-    }
-
     /**
      * Translates and sends everything to the SmartSettlers model
      * @param GAMESTATE the current state
+     * @param ctx the board the db game was played on
      * @return the game state as an array that can be understood by SS
      */
-    private static Catan generateGame(int GAMESTATE, ObsGameStateRow ogsr, ExtGameStateRow egsr)
+    private static Catan generateGame(int GAMESTATE, ObsGameStateRow ogsr, ExtGameStateRow egsr, CatanBoardContext ctx)
     {
         int[] st = new int[STATESIZE];
         int val, fsmlevel;
@@ -409,7 +237,7 @@ public class StacDBToCatanInterface implements GameStateConstants {
     	st[OFS_FSMSTATE + fsmlevel] = GAMESTATE;
     	
         val = ogsr.getRobberHex();
-        st[OFS_ROBBERPLACE] = translateHexToSmartSettlers(val,Catan.board);
+        st[OFS_ROBBERPLACE] = ctx.translateHexToSmartSettlers(val);
         
         val = ogsr.getDiceResult();
 
@@ -427,15 +255,15 @@ public class StacDBToCatanInterface implements GameStateConstants {
 		for(Integer[] p : pob){
         	if(p[0] == SOCPlayingPiece.ROAD){
         		val = p[2];
-        		indn = translateEdgeToSmartSettlers(p[1]);
+        		indn = ctx.translateEdgeToSmartSettlers(p[1]);
                 st[OFS_EDGES+indn] = EDGE_OCCUPIED + val;
         	}else if(p[0] == SOCPlayingPiece.SETTLEMENT){
         		val = p[2];
-        		indn = translateVertexToSmartSettlers(p[1]);
+        		indn = ctx.translateVertexToSmartSettlers(p[1]);
         		st[OFS_VERTICES+indn] = VERTEX_HASSETTLEMENT + val;
         	}else if(p[0] == SOCPlayingPiece.CITY){
         		val = p[2];
-        		indn = translateVertexToSmartSettlers(p[1]);
+        		indn = ctx.translateVertexToSmartSettlers(p[1]);
         		st[OFS_VERTICES+indn] = VERTEX_HASCITY + val;
         	}//otherwise we ignore (we shouldn't get here!)
         }
@@ -449,7 +277,7 @@ public class StacDBToCatanInterface implements GameStateConstants {
                 continue;
             for (j=0; j<6; j++)
             {
-                indn = Catan.board.neighborVertexVertex[i][j];
+                indn = ctx.board.neighborVertexVertex[i][j];
                 if ((indn!=-1) && (st[OFS_VERTICES + indn] >= VERTEX_HASSETTLEMENT))
                 {
                     islegal = false;
@@ -563,7 +391,7 @@ public class StacDBToCatanInterface implements GameStateConstants {
 	        }
 	        
 	        for(Object o : settCoords)//should be only one
-	        	st[OFS_LASTVERTEX] = translateVertexToSmartSettlers((int) o);
+	        	st[OFS_LASTVERTEX] = ctx.translateVertexToSmartSettlers((int) o);
 	        
 		}else if(GAMESTATE == S_ROAD2){
 			pob = ogsr.getPiecesOnBoard();
@@ -586,7 +414,7 @@ public class StacDBToCatanInterface implements GameStateConstants {
 	        }
 	        if(!settCoords.isEmpty())
 	        	for(Object o : settCoords)//should be only one
-	        		st[OFS_LASTVERTEX] = translateVertexToSmartSettlers((int) o);
+	        		st[OFS_LASTVERTEX] = ctx.translateVertexToSmartSettlers((int) o);
 	        
 		}
 		//trades are stored as a single action in the database
@@ -0,0 +1,291 @@
+package soc.server.database.stac;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Write-behind for the insert methods of {@link StacDBHelper}: callers queue their rows and return at once,
+ * and a background thread writes them in batches over its own connection.
+ * Each table has its own queue and its own prepared statement, which is reused for every batch.
+ * A table's rows are written with addBatch/executeBatch and committed together, once
+ * {@link #getBatchSize()} of them are waiting, or when the flush interval has passed, whichever is first.
+ * <p>
+ * Rows must not be changed once queued. Rows of one table are written in the order they were queued.
+ * A batch that fails is rolled back and its rows are dropped, after printing the exception; the rows dropped are
+ * counted ({@link #getRowsFailed()}) and reported by the next {@link #flush()}.
+ * <p>
+ * {@link #flush()} waits until every row queued before the call has been written; call it at the end of a game,
+ * before reading the game's tables back. {@link #close()} flushes and closes the connection.
+ */
+class StacDBWriter implements Runnable {
+
+	/**
+	 * An insert into one kind of table: makes its SQL and binds its rows.
+	 */
+	static abstract class Insert {
+		/**
+		 * @param table the name of the table to insert into
+		 * @return the SQL of the insert, with a parameter for each column
+		 */
+		abstract String sql(String table);
+
+		/**
+		 * Sets the insert's parameters from a row.
+		 * @param conn the connection the statement belongs to, for making arrays
+		 * @param ps the prepared insert
+		 * @param row the row to write
+		 */
+		abstract void bind(Connection conn, PreparedStatement ps, Object row) throws SQLException;
+	}
+
+	/**
+	 * One table's queue and statement. The statement is only used by the writer thread.
+	 */
+	private static final class Table {
+		final String name;
+		final Insert insert;
+		final ConcurrentLinkedQueue<Object> rows = new ConcurrentLinkedQueue<Object>();
+		final AtomicInteger pending = new AtomicInteger();
+		PreparedStatement ps;
+		/** when the statement was last used, to close it once the table has gone quiet */
+		long lastUsed;
+
+		Table(String name, Insert insert) {
+			this.name = name;
+			this.insert = insert;
+		}
+	}
+
+	/** Close the statements of tables that haven't had a row for this long, as tables are made per game */
+	private static final long IDLE_CLOSE_MILLIS = 60000;
+
+	private final Connection conn;
+	private final int batchSize;
+	private final long flushMillis;
+	private final ConcurrentHashMap<String, Table> tables = new ConcurrentHashMap<String, Table>();
+	private final Thread thread;
+	private volatile boolean running = true;
+
+	/** rows queued so far */
+	private final AtomicLong added = new AtomicLong();
+	/** rows written or dropped so far; only changed by the writer thread, under {@link #flushLock} */
+	private long done;
+	/** {@link #rowsFailed} as last reported by {@link #flush()}; under {@link #flushLock} */
+	private long failedReported;
+	private final Object flushLock = new Object();
+
+	//statistics, only changed by the writer thread
+	private volatile long rowsWritten;
+	private volatile long rowsFailed;
+	private volatile long batches;
+
+	/**
+	 * Starts the writer thread.
+	 * @param conn the connection to write over, not used by anything else; its auto-commit is turned off
+	 * @param name the name of the writer thread
+	 * @param batchSize the most rows of one table to write in one batch; reaching it wakes the writer
+	 * @param flushMillis the longest a queued row waits before being written
+	 * @throws SQLException if auto-commit can't be turned off
+	 */
+	StacDBWriter(Connection conn, String name, int batchSize, long flushMillis) throws SQLException {
+		this.conn = conn;
+		this.batchSize = Math.max(1, batchSize);
+		this.flushMillis = Math.max(1, flushMillis);
+		conn.setAutoCommit(false);
+		thread = new Thread(this, name);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Queues a row to be written.
+	 * @param table the name of the table
+	 * @param insert the kind of insert, the same each time for a table
+	 * @param row the row, which must not change afterwards
+	 */
+	void add(String table, Insert insert, Object row) {
+		Table t = tables.get(table);
+		if (t == null) {
+			Table nt = new Table(table, insert);
+			t = tables.putIfAbsent(table, nt);
+			if (t == null)
+				t = nt;
+		}
+		added.incrementAndGet();  //before queueing, so a flush never finishes ahead of a row it counted
+		t.rows.add(row);
+		if (t.pending.incrementAndGet() == batchSize)
+			LockSupport.unpark(thread);
+	}
+
+	/**
+	 * Waits until every row queued before this call has been written (or dropped, if its batch failed).
+	 * Returns at once if the writer has been closed.
+	 * @return the number of rows dropped since the last flush, counting the rows queued before this call
+	 *         which still weren't written when it returned (if interrupted or closed); 0 if nothing was lost
+	 */
+	int flush() {
+		final long target = added.get();
+		synchronized (flushLock) {
+			while (done < target && thread.isAlive()) {
+				LockSupport.unpark(thread);
+				try {
+					flushLock.wait(100);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					break;
+				}
+			}
+			final long failed = rowsFailed;
+			final long dropped = failed - failedReported + Math.max(0, target - done);
+			failedReported = failed;
+			return (int) Math.min(dropped, Integer.MAX_VALUE);
+		}
+	}
+
+	/**
+	 * Writes everything still queued, stops the writer thread and closes the connection.
+	 */
+	void close() {
+		running = false;
+		LockSupport.unpark(thread);
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		try {
+			conn.close();
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+	}
+
+	public void run() {
+		final long flushNanos = flushMillis * 1000000L;
+		boolean last = false;
+		while (!last) {
+			last = !running;  //read before writing, so the last pass sees every row queued before close
+			final long now = System.currentTimeMillis();
+			boolean moreWaiting = false;
+			for (Table t : tables.values()) {
+				if (write(t, now))
+					moreWaiting = true;
+			}
+			if (!moreWaiting && !last)
+				LockSupport.parkNanos(this, flushNanos);
+		}
+		for (Table t : tables.values())
+			closeStatement(t);
+	}
+
+	/**
+	 * Writes one table's queued rows, a batch at a time.
+	 * @return true if another full batch was queued while writing
+	 */
+	private boolean write(Table t, long now) {
+		int n = 0;
+		Object row;
+		while ((row = t.rows.poll()) != null) {
+			try {
+				if (t.ps == null)
+					t.ps = conn.prepareStatement(t.insert.sql(t.name));
+				t.insert.bind(conn, t.ps, row);
+				t.ps.addBatch();
+				n++;
+			} catch (SQLException e) {
+				e.printStackTrace();
+				rowsFailed++;
+				finished(t, 1);
+			}
+			if (n == batchSize) {
+				execute(t, n);
+				n = 0;
+			}
+		}
+		if (n > 0)
+			execute(t, n);
+
+		if (t.ps != null && t.pending.get() == 0 && now - t.lastUsed > IDLE_CLOSE_MILLIS)
+			closeStatement(t);
+		return t.pending.get() >= batchSize;
+	}
+
+	/**
+	 * Executes and commits the rows batched on a table's statement.
+	 */
+	private void execute(Table t, int n) {
+		try {
+			t.ps.executeBatch();
+			conn.commit();
+			rowsWritten += n;
+			batches++;
+		} catch (SQLException e) {
+			e.printStackTrace();
+			rowsFailed += n;
+			try {
+				t.ps.clearBatch();
+				conn.rollback();
+			} catch (SQLException e2) {
+				e2.printStackTrace();
+			}
+		}
+		t.lastUsed = System.currentTimeMillis();
+		finished(t, n);
+	}
+
+	private void finished(Table t, int n) {
+		t.pending.addAndGet(-n);
+		synchronized (flushLock) {
+			done += n;
+			flushLock.notifyAll();
+		}
+	}
+
+	private void closeStatement(Table t) {
+		if (t.ps == null)
+			return;
+		try {
+			t.ps.close();
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+		t.ps = null;
+	}
+
+	/**
+	 * @return the most rows of one table written in one batch
+	 */
+	int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * @return the rows dropped so far because their batch failed
+	 */
+	long getRowsFailed() {
+		return rowsFailed;
+	}
+
+	/**
+	 * @return the rows queued so far and not yet written or dropped
+	 */
+	long getQueued() {
+		synchronized (flushLock) {
+			return added.get() - done;
+		}
+	}
+
+	/**
+	 * @return a summary of what has been written so far
+	 */
+	public String toString() {
+		return "rows written=" + rowsWritten + "|failed=" + rowsFailed + "|batches=" + batches + "|queued=" + getQueued();
+	}
+
+}
@@ -0,0 +1,159 @@
+package soc.server.database.stac;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Random;
+
+import soc.game.SOCGame;
+
+/**
+ * Measures how fast {@link StacDBHelper} stores gameplay, inserting directly and through the write-behind
+ * ({@link StacDBHelper#startWriteBehind(int, long)}). Each of a number of threads plays the part of a game being collected,
+ * inserting a raw state and an action for every step into its own game's tables, as {@code SOCServer.writeToDB} does.
+ * The write-behind time includes the final {@link StacDBHelper#flush()}, and the rows are counted afterwards.
+ * <p>
+ * By default it runs against an in-memory H2 database, whose driver is a runtime dependency
+ * (e.g. mvn exec:java -Dexec.mainClass=soc.server.database.stac.StacDBWriterBenchmark);
+ * any other JDBC URL works too, e.g. a scratch PostgreSQL database. The tables are made as
+ * gameIDs from {@link #FIRST_GAME_ID} on and are dropped at the end.
+ * <p>
+ * Usage: StacDBWriterBenchmark [jdbcURL] [user] [password] [games] [steps] [batchSize]
+ */
+public class StacDBWriterBenchmark {
+
+	/** Default database: in-memory H2, with VALUE allowed as a column name as in PostgreSQL */
+	public static final String DEFAULT_URL = "jdbc:h2:mem:stacdbbench;DB_CLOSE_DELAY=-1;NON_KEYWORDS=VALUE";
+
+	/** The benchmark's tables are for games from this ID on, well clear of real ones */
+	public static final int FIRST_GAME_ID = 900000;
+
+	/**
+	 * Makes the tables for a game. PostgreSQL gets the tables {@link StacDBHelper} makes;
+	 * other databases get the same columns with standard SQL arrays.
+	 */
+	private static void createTables(StacDBHelper dbh, Connection conn, boolean postgres, int gameID) throws SQLException {
+		if (postgres) {
+			dbh.createRawStateTable(gameID);
+			dbh.createActionTable(gameID);
+			return;
+		}
+		Statement st = conn.createStatement();
+		st.executeUpdate("CREATE TABLE ObsGameStates_" + gameID +
+				" (ID INT PRIMARY KEY NOT NULL, NAME VARCHAR NOT NULL, HEXLAYOUT INT ARRAY NOT NULL, NUMBERLAYOUT INT ARRAY NOT NULL," +
+				" ROBBERHEX INT NOT NULL, GAMESTATE INT NOT NULL, DEVCARDSLEFT INT NOT NULL, DICERESULT INT NOT NULL," +
+				" STARTINGPLAYER INT NOT NULL, CURRENTPLAYER INT NOT NULL, PLAYEDDEVCARD BOOLEAN NOT NULL," +
+				" PIECESONBOARD INT ARRAY ARRAY NOT NULL, PLAYERS INT ARRAY ARRAY NOT NULL, TOUCHINGNUMBERS INT ARRAY ARRAY ARRAY NOT NULL)");
+		st.executeUpdate("CREATE TABLE GameActions_" + gameID +
+				" (ID INT PRIMARY KEY NOT NULL, TYPE DOUBLE PRECISION NOT NULL, BEFORESTATE INT NOT NULL, AFTERSTATE INT NOT NULL, VALUE INT)");
+		st.close();
+	}
+
+	private static int count(Connection conn, String table) throws SQLException {
+		Statement st = conn.createStatement();
+		ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM " + table);
+		rs.next();
+		int n = rs.getInt(1);
+		rs.close();
+		st.close();
+		return n;
+	}
+
+	/**
+	 * @return a game after its initial placement, whose state is inserted over and over
+	 */
+	private static SOCGame newGame(Random r) {
+		SOCGame ga = new SOCGame("dbbench");
+		for (int pn = 0; pn < 4; pn++)
+			ga.addPlayer("player" + pn, pn);
+		ga.startGame(r.nextInt(4), false);
+		return ga;
+	}
+
+	/**
+	 * Each of <tt>games</tt> threads inserts <tt>steps</tt> states and actions into its own tables.
+	 * @return the time taken in ns
+	 */
+	private static long run(final StacDBHelper dbh, final SOCGame ga, final int firstGameID, final int games, final int steps)
+			throws InterruptedException {
+		Thread[] threads = new Thread[games];
+		final long start = System.nanoTime();
+		for (int g = 0; g < games; g++) {
+			final int gameID = firstGameID + g;
+			threads[g] = new Thread("dbbench-" + g) {
+				public void run() {
+					for (int i = 1; i <= steps; i++) {
+						ObsGameStateRow ogsr = ga.turnCurrentStateIntoOGSR();
+						ogsr.setID(i);
+						dbh.insertRawState(gameID, ogsr);
+						dbh.insertAction(gameID, new GameActionRow(i, GameActionRow.TRADE, i - 1, i));
+					}
+				}
+			};
+			threads[g].start();
+		}
+		for (Thread t : threads)
+			t.join();
+		dbh.flush();
+		return System.nanoTime() - start;
+	}
+
+	public static void main(String[] args) throws Exception {
+		final String url = (args.length > 0) ? args[0] : DEFAULT_URL;
+		final String user = (args.length > 1) ? args[1] : "sa";
+		final String pass = (args.length > 2) ? args[2] : "";
+		final int games = (args.length > 3) ? Integer.parseInt(args[3]) : 4;
+		final int steps = (args.length > 4) ? Integer.parseInt(args[4]) : 2000;
+		final int batchSize = (args.length > 5) ? Integer.parseInt(args[5]) : StacDBHelper.DEFAULT_BATCH_SIZE;
+		final boolean postgres = url.startsWith("jdbc:postgresql");
+
+		StacDBHelper dbh = new StacDBHelper();
+		dbh.initialize(url, user, pass);
+		dbh.connect();
+		if (!dbh.isConnected())
+			System.exit(1);
+		Connection conn = DriverManager.getConnection(url, user, pass);
+		for (int g = 0; g < 2 * games; g++)
+			createTables(dbh, conn, postgres, FIRST_GAME_ID + g);
+
+		final SOCGame ga = newGame(new Random(42));
+		final long rows = 2L * games * steps;
+		System.out.println(url + ": " + games + " games of " + steps + " steps, " + rows + " rows each way");
+
+		final long direct = run(dbh, ga, FIRST_GAME_ID, games, steps);
+		System.out.println(String.format("Direct:       %.0f rows/s", rows / (direct / 1e9)));
+
+		if (!dbh.startWriteBehind(batchSize, StacDBHelper.DEFAULT_FLUSH_MILLIS))
+			System.exit(1);
+		final long behind = run(dbh, ga, FIRST_GAME_ID + games, games, steps);
+		System.out.println(String.format("Write-behind: %.0f rows/s, batches of up to %d (%.1fx)",
+				rows / (behind / 1e9), batchSize, ((double) direct) / behind));
+
+		boolean ok = true;
+		for (int g = 0; g < 2 * games; g++) {
+			final int gameID = FIRST_GAME_ID + g;
+			for (String table : new String[] { "ObsGameStates_", "GameActions_" }) {
+				final int n = count(conn, table + gameID);
+				if (n != steps) {
+					System.out.println(table + gameID + ": " + n + " rows, expected " + steps);
+					ok = false;
+				}
+			}
+		}
+
+		dbh.disconnect();
+		for (int g = 0; g < 2 * games; g++) {
+			Statement st = conn.createStatement();
+			st.executeUpdate("DROP TABLE ObsGameStates_" + (FIRST_GAME_ID + g));
+			st.executeUpdate("DROP TABLE GameActions_" + (FIRST_GAME_ID + g));
+			st.close();
+		}
+		conn.close();
+		if (!ok)
+			System.exit(1);
+		System.out.println("All rows written");
+	}
+
+}
@@ -0,0 +1,435 @@
+package soc.server.database.stac;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import soc.client.SOCDisplaylessPlayerClient;
+import soc.game.SOCDevCardConstants;
+import soc.game.SOCGame;
+import soc.message.SOCBoardLayout;
+import soc.message.SOCClearGameHistory;
+import soc.message.SOCDevCard;
+import soc.message.SOCGameState;
+import soc.message.SOCGameTextMsg;
+import soc.message.SOCJoinGameAuth;
+import soc.message.SOCLeaveGame;
+import soc.message.SOCMessage;
+import soc.message.SOCMessageForGame;
+import soc.message.SOCMoveRobber;
+import soc.message.SOCPlayerElement;
+import soc.message.SOCPutPiece;
+import soc.message.SOCTurn;
+import soc.robot.SOCRobotClient;
+import soc.robot.SOCRobotDMImpl;
+import soc.robot.stac.StacRobotDummyBrain;
+import soc.util.CappedQueue;
+import soc.util.LogParser;
+import soc.util.SOCRobotParameters;
+
+/**
+ * Collects the gameplay of a directory of league logs into the database without any UI: each <tt>.soclog</tt> is
+ * replayed on a {@link SOCDisplaylessPlayerClient}, and the raw states, actions and extracted states are captured
+ * by the same rules as the replay client ({@code SOCReplayClient.FileToQueue}) and inserted through the
+ * write-behind ({@link StacDBHelper#startWriteBehind(int, long)}).
+ * <p>
+ * The logs are shared out between a pool of workers, each with its own connection. Once all of a game's rows are
+ * written its log is added to the manifest, a text file of one log per line (relative to the directory),
+ * and logs already in the manifest are skipped; so an interrupted run is resumed by running it again.
+ * Collecting the raw states and extracting the features are separate passes over the same logs, so each has
+ * its own manifest.
+ * A game whose rows couldn't all be written is left out of the manifest too. A game which isn't in the manifest
+ * has the tables it is about to fill made afresh, dropping any rows left by the interrupted or failed run.
+ * As in the replay client, a game is only collected once its total build plans and trades are in the games table; otherwise only those totals are collected, and the game is left out of the manifest
+ * to be ingested again.
+ * <p>
+ * Usage: StacLogIngester [-eo] [-t threads] [-m manifest] [-db url user password] logDir
+ * <br>-eo only extracts the features (extgamestates_ tables), as the replay client's option does;
+ * the database is that in db.config.txt unless given; the manifest defaults to {@link #MANIFEST}
+ * (or {@link #MANIFEST_EXTRACT_ONLY} with -eo) in logDir.
+ */
+public class StacLogIngester {
+
+	/** Default name of the manifest, in the log directory */
+	public static final String MANIFEST = "ingested.txt";
+	/** Default name of the manifest of the -eo pass, in the log directory */
+	public static final String MANIFEST_EXTRACT_ONLY = "ingested-eo.txt";
+
+	private final File logDir;
+	private final File manifest;
+	private final int threads;
+	private final boolean extractOnly;
+	private final String dbURL, dbUser, dbPass;
+
+	/** Logs in the manifest, relative to {@link #logDir} */
+	private final Set<String> done = Collections.synchronizedSet(new HashSet<String>());
+	private PrintWriter manifestOut;
+
+	private final AtomicInteger ingested = new AtomicInteger();
+	private final AtomicInteger failed = new AtomicInteger();
+	private final AtomicLong states = new AtomicLong();
+
+	/**
+	 * @param logDir the directory to search for logs
+	 * @param manifest the list of logs ingested, which must not be shared with a run of the other mode;
+	 *        null for {@link #MANIFEST} or {@link #MANIFEST_EXTRACT_ONLY} in logDir
+	 * @param threads the number of workers
+	 * @param extractOnly whether to only insert the extracted states, the raw ones having been collected already
+	 * @param dbURL the JDBC URL of the database, or null to read db.config.txt
+	 */
+	public StacLogIngester(File logDir, File manifest, int threads, boolean extractOnly, String dbURL, String dbUser, String dbPass) {
+		this.logDir = logDir;
+		this.manifest = (manifest != null) ? manifest : new File(logDir, extractOnly ? MANIFEST_EXTRACT_ONLY : MANIFEST);
+		this.threads = threads;
+		this.extractOnly = extractOnly;
+		this.dbURL = dbURL;
+		this.dbUser = dbUser;
+		this.dbPass = dbPass;
+	}
+
+	/**
+	 * Ingests the logs which aren't in the manifest yet.
+	 * @return the number of logs which failed
+	 * @throws IOException if the manifest can't be read or written
+	 */
+	public int run() throws IOException, InterruptedException {
+		readManifest();
+		final ConcurrentLinkedQueue<String> todo = new ConcurrentLinkedQueue<String>();
+		List<String> logs = new ArrayList<String>();
+		findLogs(logDir, "", logs);
+		Collections.sort(logs);
+		for (String log : logs)
+			if (!done.contains(log))
+				todo.add(log);
+		System.out.println(logs.size() + " logs, " + (logs.size() - todo.size()) + " already ingested, " + todo.size() + " to do on " + threads + " workers");
+
+		manifestOut = new PrintWriter(new FileWriter(manifest, true));
+		final long start = System.currentTimeMillis();
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		for (int i = 0; i < threads; i++) {
+			pool.execute(new Runnable() {
+				public void run() {
+					work(todo);
+				}
+			});
+		}
+		pool.shutdown();
+		pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		manifestOut.close();
+
+		System.out.println("Ingested " + ingested + " logs (" + states + " states) in " + (System.currentTimeMillis() - start) / 1000 + "s, " + failed + " failed");
+		return failed.get();
+	}
+
+	private void readManifest() throws IOException {
+		if (!manifest.exists())
+			return;
+		BufferedReader br = new BufferedReader(new FileReader(manifest));
+		try {
+			String line;
+			while ((line = br.readLine()) != null) {
+				if (line.trim().length() > 0)
+					done.add(line.trim());
+			}
+		} finally {
+			br.close();
+		}
+	}
+
+	/**
+	 * Collects the game logs under a directory: the .soclog files, but not the Server_ and Client_ ones.
+	 */
+	private static void findLogs(File dir, String prefix, List<String> logs) {
+		File[] files = dir.listFiles();
+		if (files == null)
+			return;
+		for (File f : files) {
+			final String name = f.getName();
+			if (f.isDirectory())
+				findLogs(f, prefix + name + "/", logs);
+			else if (name.endsWith(".soclog") && !name.startsWith("Server_") && !name.startsWith("Client_"))
+				logs.add(prefix + name);
+		}
+	}
+
+	/**
+	 * One worker: ingests logs off the queue over its own connection until the queue is empty.
+	 */
+	private void work(ConcurrentLinkedQueue<String> todo) {
+		StacDBHelper dbh = new StacDBHelper();
+		if (dbURL != null)
+			dbh.initialize(dbURL, dbUser, dbPass);
+		else
+			dbh.initialize();
+		dbh.connect();
+		if (!dbh.isConnected()) {
+			failed.incrementAndGet();
+			return;
+		}
+		dbh.startWriteBehind(StacDBHelper.DEFAULT_BATCH_SIZE, StacDBHelper.DEFAULT_FLUSH_MILLIS);
+		try {
+			String log;
+			while ((log = todo.poll()) != null) {
+				try {
+					Replay replay = new Replay(dbh, extractOnly);
+					final int n = replay.replay(new File(logDir, log));
+					final int dropped = dbh.flush();
+					if (n < 0) {
+						failed.incrementAndGet();
+						continue;
+					}
+					if (dropped > 0) {
+						//left out of the manifest, so the next run makes its tables afresh
+						System.err.println("Could not ingest " + log + ": " + dropped + " rows could not be written");
+						failed.incrementAndGet();
+						continue;
+					}
+					if (!replay.capture.canExtract()) {
+						System.out.println("Collected the totals of " + log + "; run again to collect its states");
+						continue;
+					}
+					synchronized (manifestOut) {
+						manifestOut.println(log);
+						manifestOut.flush();
+					}
+					done.add(log);
+					states.addAndGet(n);
+					System.out.println("Ingested " + log + ": " + n + " states");
+					ingested.incrementAndGet();
+				} catch (Exception e) {
+					System.err.println("Could not ingest " + log + ": " + e);
+					e.printStackTrace();
+					failed.incrementAndGet();
+				}
+			}
+		} finally {
+			dbh.disconnect();
+		}
+	}
+
+	/**
+	 * Rebuilds one game from its log and captures its states, by the rules of {@link GameStateCapture}.
+	 * The filtering of duplicated messages is that of {@code SOCReplayClient.FileToQueue}, without the augmented log.
+	 */
+	private static class Replay extends SOCDisplaylessPlayerClient {
+		private final StacDBHelper dbh;
+		/** whether only the extracted states are inserted; set if the game's totals aren't collected yet, as in the replay client */
+		private boolean extractOnly;
+		private final GameStateCapture capture = new GameStateCapture();
+
+		private int gameID = -1;
+		private int[] playersIDs;
+		/** the names of the players in the players table, looked up once per game */
+		private String[] playersNames;
+
+		//dummy brain to help with extracting some of the information from the raw state
+		private StacRobotDummyBrain dummy;
+		private boolean repeatedDevCardMessage = false;
+
+		Replay(StacDBHelper dbh, boolean extractOnly) {
+			this.dbh = dbh;
+			this.extractOnly = extractOnly;
+		}
+
+		/**
+		 * @return the number of states captured, or -1 if the game isn't in the database or its log has no board
+		 */
+		int replay(File log) {
+			LogParser lp = LogParser.getParser(log.getPath());
+			if (lp == null)
+				return -1;
+			try {
+				// Put piece messages are duplicated; only handle the one after the server's text that something has been built
+				boolean repeatedMsg = false;
+				// Robberies are reported twice; ignore the next 2 resource messages after the robber is placed
+				int ignoreNextN = 0;
+
+				while (!lp.eof()) {
+					SOCMessage m = lp.parseLine();
+					if (m == null)
+						continue;
+					if (m instanceof SOCMessageForGame) {
+						final String gaName = ((SOCMessageForGame) m).getGame();
+						if (gaName != null && !games.containsKey(gaName))
+							handleJOINGAMEAUTH(new SOCJoinGameAuth(gaName, true));
+					}
+
+					if (m instanceof SOCGameTextMsg) {
+						SOCGameTextMsg gtm = (SOCGameTextMsg) m;
+						//player chat doesn't change the state
+						if (gtm.getNickname().equals("Server"))
+							writeGameState(gtm.getGame(), capture.onServerText((SOCGame) games.get(gtm.getGame()), gtm.getText()));
+					} else if (m instanceof SOCGameState) {
+						SOCGameState sm = (SOCGameState) m;
+						if (sm.getState() == SOCGame.PLACING_ROBBER) {
+							ignoreNextN = 2;
+						} else if (sm.getState() == SOCGame.PLAY1) {
+							ignoreNextN = 0; //in case nothing was stolen
+						} else {
+							writeGameState(sm.getGame(), GameStateCapture.onGameState(sm.getState()));
+						}
+					}
+
+					if (m instanceof SOCBoardLayout) {
+						treat(m);
+						if (!startGame(((SOCBoardLayout) m).getGame()))
+							return -1;
+					} else if (m instanceof SOCPutPiece) {
+						if (repeatedMsg) {
+							SOCPutPiece pp = (SOCPutPiece) m;
+							treat(m);
+							if (dummy != null) {
+								dummy.setGame(((SOCGame) games.get(pp.getGame())).copy());
+								dummy.handlePUTPIECE_updateTrackers(pp);
+							}
+							writeGameState(pp.getGame(), GameStateCapture.onPutPiece(pp.getPieceType()));
+						}
+					} else if (m instanceof SOCTurn) {
+						treat(m);
+						writeGameState(((SOCTurn) m).getGame(), GameStateCapture.ENDTURN);
+					} else if (m instanceof SOCPlayerElement) {
+						SOCPlayerElement pe = (SOCPlayerElement) m;
+						// the unknown discard comes with the known ones, which are handled
+						if (pe.getElementType() != SOCPlayerElement.UNKNOWN) {
+							final int action = pe.getAction();
+							if ((action == SOCPlayerElement.GAIN || action == SOCPlayerElement.LOSE) && ignoreNextN > 0)
+								ignoreNextN--;
+							else
+								treat(m);
+						}
+					} else if (!(m instanceof SOCClearGameHistory || m instanceof SOCLeaveGame)) {
+						treat(m);
+					}
+
+					repeatedMsg = (m instanceof SOCMoveRobber)
+						|| (m instanceof SOCGameTextMsg && ((SOCGameTextMsg) m).getNickname().equals("Server")
+							&& ((SOCGameTextMsg) m).getText().contains(" built a "));
+				}
+			} finally {
+				lp.close();
+			}
+			if (dummy == null) {
+				System.err.println(log + " has no board layout");
+				return -1;
+			}
+			return capture.getLastID();
+		}
+
+		/**
+		 * Creates the dummy brain and looks up the game, its players and its totals, and makes the tables to fill.
+		 * @return false if the game isn't in the database
+		 */
+		private boolean startGame(String gaName) {
+			SOCGame ga = (SOCGame) games.get(gaName);
+			dummy = new StacRobotDummyBrain(new SOCRobotClient(null, "replay", "replayAgent", "", null),
+					new SOCRobotParameters(300, 500, 0f, 0f, 0f, 0f, 0f, SOCRobotDMImpl.FAST_STRATEGY, 0),
+					ga.copy(), new CappedQueue(), 0);
+
+			gameID = dbh.getIDfromGameName(gaName);
+			if (gameID == -1) {
+				System.err.println("Cannot find game " + gaName + " inside database");
+				return false;
+			}
+			playersIDs = dbh.getPlayersIDsFromGame(gameID);
+			playersNames = new String[playersIDs.length];
+			for (int pn = 0; pn < playersIDs.length; pn++)
+				playersNames[pn] = dbh.getPlayerNameByID(playersIDs[pn]);
+			if (dbh.areAnyTotalNumbersCollected(gameID)) {
+				capture.setTotals(dbh.getTotalPBPs(gameID), dbh.getTotalTrades(gameID));
+			} else {
+				//only collect the totals until they are there
+				extractOnly = true;
+			}
+
+			//any rows already there are left from an interrupted run
+			final boolean canExtract = capture.canExtract();
+			if (canExtract && !extractOnly) {
+				remakeTable(StacDBHelper.OBSFEATURESTABLE + gameID);
+				dbh.createRawStateTable(gameID);
+				remakeTable(StacDBHelper.ACTIONSTABLE + gameID);
+				dbh.createActionTable(gameID);
+			}
+			if (canExtract && extractOnly) {
+				remakeTable(StacDBHelper.EXTFEATURESTABLE + gameID);
+				dbh.createExtractedStateTable(gameID);
+			}
+			return true;
+		}
+
+		private void remakeTable(String table) {
+			if (dbh.tableExists(table))
+				dbh.dropTable(table);
+		}
+
+		/**
+		 * As in the replay client, the repeated draw message is for the other players, so its card is unknown.
+		 */
+		@Override
+		protected void handleDEVCARD(SOCDevCard mes) {
+			if (repeatedDevCardMessage) {
+				repeatedDevCardMessage = false;
+				mes.setCardType(SOCDevCardConstants.UNKNOWN);
+			} else if (mes.getAction() == SOCDevCard.DRAW) {
+				repeatedDevCardMessage = true;
+			}
+			super.handleDEVCARD(mes);
+		}
+
+		/**
+		 * Captures the state after an action and queues its rows.
+		 * @param trigger the action, or null if the message didn't end one
+		 */
+		private void writeGameState(String gameName, GameStateCapture.Trigger trigger) {
+			if (trigger == null || dummy == null || gameID == -1)
+				return; //before the board is set up
+			SOCGame ga = (SOCGame) games.get(gameName);
+			GameStateCapture.Rows rows = capture.capture(ga, dummy, trigger.actionTypes);
+			GameStateCapture.setPlayerIDs(rows.ogsr, ga, playersIDs, playersNames);
+			capture.store(dbh, gameID, rows, extractOnly);
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		int threads = Runtime.getRuntime().availableProcessors();
+		boolean extractOnly = false;
+		File manifest = null;
+		String url = null, user = null, pass = null;
+		String dir = null;
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-eo"))
+				extractOnly = true;
+			else if (args[i].equals("-t") && i + 1 < args.length)
+				threads = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-m") && i + 1 < args.length)
+				manifest = new File(args[++i]);
+			else if (args[i].equals("-db") && i + 3 < args.length) {
+				url = args[++i];
+				user = args[++i];
+				pass = args[++i];
+			} else
+				dir = args[i];
+		}
+		if (dir == null || !new File(dir).isDirectory()) {
+			System.err.println("Usage: StacLogIngester [-eo] [-t threads] [-m manifest] [-db url user password] logDir");
+			System.exit(1);
+		}
+		StacLogIngester ingester = new StacLogIngester(new File(dir), manifest, threads, extractOnly, url, user, pass);
+		if (ingester.run() > 0)
+			System.exit(1);
+	}
+
+}
@@ -0,0 +1,44 @@
+package soc.server.database.stac;
+
+import java.util.Arrays;
+
+/**
+ * A state vector used as a key, compared and hashed by its contents rather than by the identity of the array,
+ * so a vector computed afresh finds the entries stored under an equal one.
+ * The vector is copied, so later changes to the array don't affect the key.
+ */
+public final class StateKey {
+
+	private final int[] vector;
+	private final int hash;
+
+	public StateKey(int[] vector) {
+		this.vector = vector.clone();
+		hash = Arrays.hashCode(this.vector);
+	}
+
+	/**
+	 * @return a copy of the vector
+	 */
+	public int[] getVector() {
+		return vector.clone();
+	}
+
+	public int hashCode() {
+		return hash;
+	}
+
+	public boolean equals(Object o) {
+		if (this == o)
+			return true;
+		if (!(o instanceof StateKey))
+			return false;
+		StateKey k = (StateKey) o;
+		return hash == k.hash && Arrays.equals(vector, k.vector);
+	}
+
+	public String toString() {
+		return Arrays.toString(vector);
+	}
+
+}
@@ -1,6 +1,7 @@
 package soc.server.database.stac;
 
 import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * The row of a table containing the value of a state.
@@ -8,17 +9,17 @@ import java.util.Arrays;
  */
 public class StateValueRow {
 
-	public static long counter = 0;
+	//hands out the row ids; atomic as several brains may be collecting at once
+	public static final AtomicLong counter = new AtomicLong();
 	
 	private long id;
 	private int[] state;
 	private double value;
 	
 	public StateValueRow(int[] vector, double value) {
-		id = counter;
+		id = counter.getAndIncrement();
 		state = vector;
 		this.value = value;
-		counter++;
 	}
 	
 	public StateValueRow(long id, int[] vector, double value) {
@@ -23,13 +23,15 @@ import java.io.EOFException;
 import java.io.IOException;
 import java.net.ConnectException;
 import java.util.Date;
-import java.util.Vector;
 
 import soc.disableDebug.D;
+import soc.message.SOCMessage;
+import soc.util.ParkingQueue;
 
 /**
  * Symmetric buffered connection sending strings between two local peers.
- * Uses vectors and thread synchronization, no actual network traffic.
+ * Uses lock-free queues, no actual network traffic; a reader waiting for input is parked
+ * until the peer puts something.
  *<P>
  * This class has a run method, but you must start the thread yourself.
  * Constructors will not create or start a thread.
@@ -61,9 +63,9 @@ public class LocalStringConnection
 {
     protected static Object EOF_MARKER = new Object();
 
-    protected Vector in, out;
-    protected boolean in_reachedEOF;
-    protected boolean out_setEOF;
+    protected ParkingQueue<Object> in, out;
+    protected volatile boolean in_reachedEOF;
+    protected volatile boolean out_setEOF;
     /** Active connection, server has called accept, and not disconnected yet */
     protected boolean accepted;
     private LocalStringConnection ourPeer;
@@ -76,6 +78,12 @@ public class LocalStringConnection
     protected boolean remoteVersionTrack;
     protected boolean hideTimeoutMessage = false;
 
+    /**
+     * Does our reader accept objects from {@link #putObject(Object)} as well as strings?
+     * Set by the reading side with {@link #setAcceptsObjects(boolean)}; read by the peer when sending.
+     */
+    protected volatile boolean acceptsObjects = false;
+
     /**
      * the arbitrary key data associated with this connection.
      */
@@ -99,13 +107,13 @@ public class LocalStringConnection
      */
     public LocalStringConnection()
     {
-        in = new Vector();
-        out = new Vector();
+        in = new ParkingQueue<Object>();
+        out = new ParkingQueue<Object>();
         init();
     }
 
     /**
-     * Constructor for an existing peer; we'll share two Vectors for in/out queues.
+     * Constructor for an existing peer; we'll share two queues for in/out.
      *
      * This class has a run method, but you must start the thread yourself.
      * Constructors will not create or start a thread.
@@ -153,14 +161,32 @@ public class LocalStringConnection
     /**
      * Read the next string sent from the remote end,
      * blocking if necessary to wait.
-     *
-     * Synchronized on in-buffer.
+     * If we {@link #setAcceptsObjects(boolean) accept objects} and the peer sent a message object,
+     * it's encoded here with {@link SOCMessage#toCmd()}.
      * 
      * @return Next string in the in-buffer
      * @throws EOFException Our input buffer has reached EOF
      * @throws IllegalStateException Server has not yet accepted our connection
      */
     public String readNext() throws EOFException, IllegalStateException
+    {
+        final Object obj = readNextObject();
+        if (obj instanceof SOCMessage)
+            return ((SOCMessage) obj).toCmd();
+        return (String) obj;
+    }
+
+    /**
+     * Read the next string or object sent from the remote end,
+     * blocking if necessary to wait.
+     * Objects are only sent by the peer if we've called {@link #setAcceptsObjects(boolean)}.
+     *
+     * @return Next string or object in the in-buffer
+     * @throws EOFException Our input buffer has reached EOF
+     * @throws IllegalStateException Server has not yet accepted our connection
+     * @see #readNext()
+     */
+    public Object readNextObject() throws EOFException, IllegalStateException
     {
         if (! accepted)
         {
@@ -175,37 +201,24 @@ public class LocalStringConnection
 
         Object obj;
 
-        synchronized (in)
+        while ((obj = in.poll(100)) == null)//a timeout is required, otherwise this connection will run until notified otherwise and won't check for eof
         {
-            while (in.isEmpty())
-            {
-                if (in_reachedEOF)
-                {
-                    error = new EOFException();
-                    throw (EOFException) error;
-                }
-                else
-                {
-                    try
-                    {
-                        in.wait(100);//a timeout is required, otherwise this connection will run until notified otherwise and won't check for eof
-                    }
-                    catch (InterruptedException e) {}
-                }
-            }
-            obj = in.elementAt(0);
-            in.removeElementAt(0);
-
-            if (obj == EOF_MARKER)
+            if (in_reachedEOF)
             {
-                in_reachedEOF = true;
-                if (ourServer != null)
-                    ourServer.removeConnection(this);
                 error = new EOFException();
                 throw (EOFException) error;
             }
         }
-        return (String) obj;
+
+        if (obj == EOF_MARKER)
+        {
+            in_reachedEOF = true;
+            if (ourServer != null)
+                ourServer.removeConnection(this);
+            error = new EOFException();
+            throw (EOFException) error;
+        }
+        return obj;
     }
 
     /**
@@ -226,11 +239,54 @@ public class LocalStringConnection
         if (out_setEOF)
             return;
         
-        synchronized (out)
+        out.put(dat);  // Wakes another thread which may have been waiting for input
+    }
+
+    /**
+     * Send an object over the connection, without converting it to a string.  Does not block.
+     * Ignored if setEOF() has been called.
+     * Only call this if {@link #peerAcceptsObjects()} is true;
+     * the peer must read it with {@link #readNextObject()}.
+     *
+     * @param obj Object to send; should not be changed by either side afterwards
+     *
+     * @throws IllegalStateException if not yet accepted by server
+     */
+    public void putObject(Object obj) throws IllegalStateException
+    {
+        if (! accepted)
         {
-            out.addElement(dat);
-            out.notifyAll();  // Another thread may have been waiting for input
+            error = new IllegalStateException("Not accepted by server yet");
+            throw (IllegalStateException) error;
         }
+        if (out_setEOF)
+            return;
+
+        out.put(obj);  // Wakes another thread which may have been waiting for input
+    }
+
+    /**
+     * Should our peer send us objects with {@link #putObject(Object)} where possible,
+     * instead of only strings?  If so, read with {@link #readNextObject()}.
+     * Strings may still arrive either way.
+     *
+     * @param accepts true to accept objects, false for strings only
+     */
+    public void setAcceptsObjects(boolean accepts)
+    {
+        acceptsObjects = accepts;
+    }
+
+    /**
+     * Does our peer read objects as well as strings?
+     *
+     * @return true if {@link #putObject(Object)} can be used to send to the peer
+     * @see #setAcceptsObjects(boolean)
+     */
+    public boolean peerAcceptsObjects()
+    {
+        final LocalStringConnection peer = ourPeer;
+        return (peer != null) && peer.acceptsObjects;
     }
 
     /**
@@ -244,14 +300,10 @@ public class LocalStringConnection
 
         D.ebugPrintlnINFO("DISCONNECTING " + data);
         accepted = false;
-        synchronized (out)
-        {
-            // let the remote-end know we're closing
-            out.clear();
-            out.addElement(EOF_MARKER);
-            out_setEOF = true;
-            out.notifyAll();
-        }
+        // let the remote-end know we're closing
+        out_setEOF = true;
+        out.clear();
+        out.put(EOF_MARKER);
         disconnectSoft();  // clear "in", set its EOF
     }
 
@@ -269,13 +321,9 @@ public class LocalStringConnection
         // disconnect(), and it's OK to do this part twice.
 
         D.ebugPrintlnINFO("DISCONNECTING(SOFT) " + data);
-        synchronized (in)
-        {
-            in.clear();
-            in.addElement(EOF_MARKER);
-            in_reachedEOF = true;
-            in.notifyAll();
-        }
+        in.clear();
+        in.put(EOF_MARKER);
+        in_reachedEOF = true;
     }
 
     /**
@@ -340,18 +388,12 @@ public class LocalStringConnection
     /**
      * Signal the end of outbound data.
      * Not the same as closing, because we don't terminate the inbound side.
-     * 
-     * Synchronizes on out-buffer.
      */
     public void setEOF()
     {
-        synchronized (out)
-        {
-            // let the remote-end know we're closing
-            out.addElement(EOF_MARKER);
-            out_setEOF = true;
-            out.notifyAll();
-        }
+        // let the remote-end know we're closing
+        out.put(EOF_MARKER);
+        out_setEOF = true;
     }
 
     /**
@@ -359,10 +401,7 @@ public class LocalStringConnection
      */
     public boolean isInEOF()
     {
-        synchronized (in)
-        {
-            return in_reachedEOF;
-        }
+        return in_reachedEOF;
     }
 
     /**
@@ -372,10 +411,7 @@ public class LocalStringConnection
      */
     public boolean isOutEOF()
     {
-        synchronized (out)
-        {
-            return out_setEOF;            
-        }
+        return out_setEOF;
     }
 
     /**
@@ -586,7 +622,7 @@ public class LocalStringConnection
      */
     public boolean isInputAvailable()
     {
-        return (! in_reachedEOF) && (0 < in.size());
+        return (! in_reachedEOF) && ! in.isEmpty();
     }
 
     /**
@@ -24,6 +24,7 @@ package soc.server.genericServer;
 import soc.debug.D;
 import soc.robot.SOCRobotClient;
 import soc.server.SOCServer;
+import soc.util.ParkingQueue;
 
 import java.io.IOException;
 import java.io.Serializable;
@@ -31,12 +32,14 @@ import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketException;
 import java.net.SocketTimeoutException;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.NoSuchElementException;
@@ -61,6 +64,10 @@ import java.util.WeakHashMap;
  *  the per-client thread enters a while-loop and calls {@link #treat(String, StringConnection)}
  *  to handle messages from the client.  Treat places them in a server-wide {@link #inQueue},
  *  which is processed in a server-wide single thread called the "treater".
+ *  If {@link #setGameLanes(int)} was called before starting the server, commands that
+ *  {@link #getCommandLane(Command)} assigns to a game are instead queued in one of several
+ *  lanes, each with its own treater thread: each game's commands are treated in order,
+ *  while different games are treated in parallel.
  *<P>
  *  To handle inbound messages from the clients, the server-wide "treater" thread
  *  will call {@link #processCommand(String, StringConnection)} for each message.
@@ -176,8 +183,15 @@ public abstract class Server extends Thread implements Serializable, Cloneable
      */
     protected Vector unnamedConns = new Vector();
 
-    /** clients in process of connecting */
-    public Vector inQueue = new Vector();
+    /** commands from clients, waiting for the treater thread */
+    public ParkingQueue<Command> inQueue = new ParkingQueue<Command>();
+
+    /**
+     * Queues of the game lanes, each read by its own treater thread,
+     * or null if all commands go to {@link #inQueue}.
+     * @see #setGameLanes(int)
+     */
+    protected List<ParkingQueue<Command>> laneQueues = null;
 
     /**
      * Versions of currently connected clients, according to
@@ -363,7 +377,7 @@ public abstract class Server extends Thread implements Serializable, Cloneable
     {
     	Thread.currentThread().setName("Server");//for debugging to check whether this thread gets collected or not
     	
-        Treater treater = new Treater();  // inner class - constructor is given "this" server
+        Treater treater = new Treater(inQueue, "treater");  // inner class - constructor is given "this" server
 
         if (error != null)
         {
@@ -372,6 +386,11 @@ public abstract class Server extends Thread implements Serializable, Cloneable
 
         up = true;
         Server.startThread(treater, this);
+        if (laneQueues != null)
+        {
+            for (int i = 0; i < laneQueues.size(); i++)
+                Server.startThread(new Treater(laneQueues.get(i), "treater-lane-" + i), this);
+        }
 //        treater.start(); 
         // No need to track this - this is automatically closed when server stops... startThread(treater);// track it as it won't get cleaned if the server doesn't get cleaned
 
@@ -431,20 +450,86 @@ public abstract class Server extends Thread implements Serializable, Cloneable
         
     }
 
-    /** treat a request from the given connection, by adding to {@link #inQueue} */
+    /**
+     * Treat commands for games in parallel: besides the treater for {@link #inQueue},
+     * which keeps handling the commands that aren't for a particular game,
+     * start <tt>lanes</tt> more treater threads.  Each game is assigned to one lane
+     * by {@link #getCommandLane(Command)}, so its commands are still treated in order.
+     *<P>
+     * Call this before the server is started.  {@link #processCommand(Command)}
+     * must then be safe to call for different games at the same time.
+     *
+     * @param lanes  number of game lanes; 0 to treat everything in the single treater thread
+     * @throws IllegalStateException if the server is already up
+     */
+    public void setGameLanes(int lanes)
+        throws IllegalStateException
+    {
+        if (isUp())
+            throw new IllegalStateException("Server already started");
+
+        if (lanes <= 0)
+        {
+            laneQueues = null;
+            return;
+        }
+        final ArrayList<ParkingQueue<Command>> queues = new ArrayList<ParkingQueue<Command>>(lanes);
+        for (int i = 0; i < lanes; i++)
+            queues.add(new ParkingQueue<Command>());
+        laneQueues = queues;
+    }
+
+    /**
+     * treat a request from the given connection, by adding to {@link #inQueue},
+     * or to its game's lane if {@link #setGameLanes(int)} was called.
+     * Called from the connection's own thread.
+     */
     public void treat(String s, StringConnection c)
     {
         // D.ebugPrintln("IN got: " + s);
-        synchronized (inQueue)
+        final Command cmd = new Command(s, c);
+        final List<ParkingQueue<Command>> lanes = laneQueues;
+        if (lanes == null)
         {
-            inQueue.addElement(new Command(s, c));
-            inQueue.notify();
+            inQueue.put(cmd);  // wakes the treater if it's waiting
+            return;
         }
+
+        final String key = getCommandLane(cmd);
+        if (key == null)
+            inQueue.put(cmd);
+        else
+            lanes.get((key.hashCode() & 0x7FFFFFFF) % lanes.size()).put(cmd);
+    }
+
+    /**
+     * Decide which lane treats a command, when {@link #setGameLanes(int)} is used.
+     * Called from the connection's thread before the command is queued, so it's also
+     * a good place to parse the command once and keep the result in {@link Command#parsed}.
+     * This default implementation returns null.
+     *
+     * @param cmd  the command from the client
+     * @return the lane key, such as a game name, or null for the main treater ({@link #inQueue})
+     */
+    protected String getCommandLane(Command cmd)
+    {
+        return null;
+    }
+
+    /**
+     * Treat a command taken from {@link #inQueue} or a game lane.
+     * This default implementation calls {@link #processCommand(String, StringConnection)}.
+     *
+     * @param cmd  the command from the client
+     */
+    protected void processCommand(Command cmd)
+    {
+        processCommand(cmd.str, cmd.con);
     }
 
     /**
      * Remove a queued incoming message from a client, and treat it.
-     * Called from the single 'treater' thread.
+     * Called from the single 'treater' thread, or from a game lane's treater (see {@link #setGameLanes(int)}).
      * <em>Do not block or sleep</em> because this is single-threaded.
      *
      * @param str Contents of message from the client
@@ -1115,13 +1200,18 @@ public abstract class Server extends Thread implements Serializable, Cloneable
      */
 
     /**
-     * Holds one message from client, for {@link Server#inQueue}.
+     * Holds one message from client, for {@link Server#inQueue} or a game lane.
      */
-    static class Command
+    protected static class Command
     {
         public String str;
         public StringConnection con;
 
+        /**
+         * The parsed message, if {@link Server#getCommandLane(Command)} parsed it; otherwise null.
+         */
+        public Object parsed;
+
         public Command(String s, StringConnection c)
         {
             str = s;
@@ -1130,13 +1220,16 @@ public abstract class Server extends Thread implements Serializable, Cloneable
     }  // Command
 
     /**
-     * Single-threaded reader of {@link Server#inQueue}
+     * Single-threaded reader of {@link Server#inQueue}, or of a game lane's queue
      */
     class Treater extends Thread
     {
-        public Treater()  // Server parameter is also passed in, since this is an inner class
+        private final ParkingQueue<Command> queue;
+
+        public Treater(ParkingQueue<Command> queue, String name)  // Server parameter is also passed in, since this is an inner class
         {
-            setName("treater");  // Thread name for debug
+            this.queue = queue;
+            setName(name);  // Thread name for debug
         }
 
         public void run()
@@ -1146,23 +1239,14 @@ public abstract class Server extends Thread implements Serializable, Cloneable
             	if(Thread.currentThread().isInterrupted())
             		break;
                 //D.ebugPrintln("treater server is up");
-                Command c = null;
-
-                synchronized (inQueue)
-                {
-                    if (inQueue.size() > 0)
-                    {
-                        //D.ebugPrintln("treater getting command");
-                        c = (Command) inQueue.elementAt(0);
-                        inQueue.removeElementAt(0);
-                    }
-                }
+                // wait up to 1 second, then check again that the server is up
+                Command c = queue.poll(1000);
 
                 try
                 {
                     if (c != null)
                     {
-                        processCommand(c.str, c.con);
+                        processCommand(c);
                     }
                 }
                 catch (Exception e)
@@ -1170,24 +1254,6 @@ public abstract class Server extends Thread implements Serializable, Cloneable
                     System.err.println("Exception in treater (processCommand) - " + c.str);
                     e.printStackTrace();
                 }
-
-                yield();
-
-                synchronized (inQueue)
-                {
-                    if (inQueue.size() == 0)
-                    {
-                        try
-                        {
-                            //D.ebugPrintln("treater waiting");
-                            inQueue.wait(1000);
-                        }
-                        catch (Exception ex)
-                        {
-                            ;
-                        }
-                    }
-                }
             }
             // D.ebugPrintln("treater returning; server not up");
         }
@@ -0,0 +1,104 @@
+package soc.server.logger;
+
+import java.io.BufferedWriter;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * Converts logs written by {@link SOCBinaryLogger} to the three text files {@link SOCFileLogger} writes:
+ * <tt>game-date.soclog</tt>, <tt>Server_game-date.soclog</tt> and <tt>Client_game-date.soclog</tt>,
+ * next to the <tt>game-date.soclogb</tt> file, with the dates in the time zone of the server which wrote the log.
+ * A log cut short is converted up to where it ends.
+ * <p>
+ * Usage: SOCBinaryLogConverter file-or-directory... ; directories are searched for <tt>.soclogb</tt> files.
+ */
+public class SOCBinaryLogConverter {
+
+    /**
+     * Converts one binary log.
+     * @param binary the <tt>.soclogb</tt> file
+     * @return the number of records converted
+     * @throws IOException if it can't be read or the text files can't be written
+     */
+    public static int convert(File binary) throws IOException {
+        final String name = binary.getName().substring(0, binary.getName().length() - SOCBinaryLogger.EXTENSION.length());
+        final File dir = binary.getAbsoluteFile().getParentFile();
+        SOCBinaryLogReader reader = new SOCBinaryLogReader(binary);
+        PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(new File(dir, name + ".soclog"))));
+        PrintWriter server = new PrintWriter(new BufferedWriter(new FileWriter(new File(dir, "Server_" + name + ".soclog"))));
+        PrintWriter client = new PrintWriter(new BufferedWriter(new FileWriter(new File(dir, "Client_" + name + ".soclog"))));
+
+        //the same format as SOCServer.LOG_DATE_FORMAT, in the log's time zone
+        DateFormat dateFormat = new SimpleDateFormat("yyyy:MM:dd:HH:mm:ss:SSS:Z");
+        dateFormat.setTimeZone(reader.getTimeZone());
+        long lastTime = Long.MIN_VALUE;
+        String dateStr = null;
+
+        int records = 0;
+        try {
+            while (reader.next()) {
+                records++;
+                final int kind = reader.getKind();
+                if (kind == SOCBinaryLogger.STRING) {
+                    out.println(reader.getText());
+                    continue;
+                }
+                if (reader.getTime() != lastTime) {
+                    lastTime = reader.getTime();
+                    dateStr = dateFormat.format(new Date(lastTime));
+                }
+                out.println(dateStr + ":" + reader.getText());
+                (kind == SOCBinaryLogger.CLIENT ? client : server).println(reader.getParty() + ":" + dateStr + ":" + reader.getText());
+            }
+        } catch (EOFException e) {
+            System.err.println(binary + " is cut short; converted its first " + records + " records");
+        } finally {
+            reader.close();
+            out.close();
+            server.close();
+            client.close();
+        }
+        return records;
+    }
+
+    /**
+     * Converts the file, or the binary logs under the directory.
+     * @return the number of files converted
+     */
+    private static int convertAll(File f) {
+        if (f.isDirectory()) {
+            int n = 0;
+            File[] files = f.listFiles();
+            if (files != null)
+                for (File c : files)
+                    if (c.isDirectory() || c.getName().endsWith(SOCBinaryLogger.EXTENSION))
+                        n += convertAll(c);
+            return n;
+        }
+        try {
+            convert(f);
+            return 1;
+        } catch (IOException e) {
+            System.err.println("Could not convert " + f + ": " + e);
+            return 0;
+        }
+    }
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.err.println("Usage: SOCBinaryLogConverter file-or-directory...");
+            System.exit(1);
+        }
+        int n = 0;
+        for (String arg : args)
+            n += convertAll(new File(arg));
+        System.out.println("Converted " + n + " logs");
+    }
+
+}
@@ -0,0 +1,188 @@
+package soc.server.logger;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads the records of a log written by {@link SOCBinaryLogger}, in order:
+ * <pre>
+ * while (reader.next()) { reader.getKind(), reader.getTime(), reader.getParty(), reader.getText() ... }
+ * </pre>
+ * A file cut short, e.g. by a crash, reads up to its last whole block and then throws an {@link EOFException}.
+ */
+public class SOCBinaryLogReader {
+
+    private final DataInputStream in;
+    private final TimeZone timeZone;
+    private final boolean deflated;
+    private final Inflater inflater;
+    private final List<String> parties = new ArrayList<String>();
+
+    private byte[] block = new byte[SOCBinaryLogger.BLOCK_SIZE + 1024];
+    private byte[] stored = new byte[SOCBinaryLogger.BLOCK_SIZE];
+    private int blockLength, pos;
+
+    private int kind;
+    private long time;
+    private String party, text;
+
+    /**
+     * Opens a log and reads its header.
+     * @param file the <tt>.soclogb</tt> file
+     * @throws IOException if it can't be read or isn't a binary log
+     */
+    public SOCBinaryLogReader(File file) throws IOException {
+        in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            byte[] magic = new byte[SOCBinaryLogger.MAGIC.length];
+            in.readFully(magic);
+            if (!Arrays.equals(magic, SOCBinaryLogger.MAGIC))
+                throw new IOException(file + " is not a binary log");
+            timeZone = TimeZone.getTimeZone(in.readUTF());
+            deflated = (in.readByte() & SOCBinaryLogger.FLAG_DEFLATE) != 0;
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+        inflater = deflated ? new Inflater() : null;
+    }
+
+    /**
+     * @return the time zone of the server which wrote the log
+     */
+    public TimeZone getTimeZone() {
+        return timeZone;
+    }
+
+    /**
+     * Moves to the next record.
+     * @return false at the end of the log
+     * @throws EOFException if the log ends part way through a block
+     * @throws IOException if the log can't be read or is corrupt
+     */
+    public boolean next() throws IOException {
+        if (pos == blockLength && !readBlock())
+            return false;
+
+        kind = block[pos++];
+        if (kind != SOCBinaryLogger.STRING) {
+            final long zigzag = readVarLong();
+            time += (zigzag >>> 1) ^ -(zigzag & 1);
+            final int index = (int) readVarLong();
+            if (index == 0) {
+                party = readString();
+                parties.add(party);
+            } else if (index <= parties.size()) {
+                party = parties.get(index - 1);
+            } else {
+                throw new IOException("Corrupt log: unknown name " + index);
+            }
+        } else {
+            party = null;
+        }
+        text = readString();
+        return true;
+    }
+
+    /**
+     * @return {@link SOCBinaryLogger#STRING}, {@link SOCBinaryLogger#SERVER} or {@link SOCBinaryLogger#CLIENT}
+     */
+    public int getKind() {
+        return kind;
+    }
+
+    /**
+     * @return when the message was logged, in milliseconds; undefined for strings
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * @return the recipients of a server message or the sender of a client message; null for strings
+     */
+    public String getParty() {
+        return party;
+    }
+
+    /**
+     * @return the message, or the string
+     */
+    public String getText() {
+        return text;
+    }
+
+    public void close() throws IOException {
+        in.close();
+        if (inflater != null)
+            inflater.end();
+    }
+
+    /**
+     * @return false at the end of the log
+     */
+    private boolean readBlock() throws IOException {
+        final int first = in.read();
+        if (first < 0)
+            return false;
+        final int length = (first << 24) | (in.readUnsignedByte() << 16) | in.readUnsignedShort();
+        final int storedLength = in.readInt();
+        if (length <= 0 || storedLength < 0 || (!deflated && storedLength != length))
+            throw new IOException("Corrupt log: block of " + length + " bytes stored in " + storedLength);
+        if (block.length < length)
+            block = new byte[length];
+
+        if (deflated) {
+            if (stored.length < storedLength)
+                stored = new byte[storedLength];
+            in.readFully(stored, 0, storedLength);
+            inflater.reset();
+            inflater.setInput(stored, 0, storedLength);
+            try {
+                if (inflater.inflate(block, 0, length) != length || !inflater.finished())
+                    throw new IOException("Corrupt log: block is not " + length + " bytes");
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupt log: " + e.getMessage());
+            }
+        } else {
+            in.readFully(block, 0, length);
+        }
+        blockLength = length;
+        pos = 0;
+        return true;
+    }
+
+    private long readVarLong() throws IOException {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (pos == blockLength)
+                throw new IOException("Corrupt log: record runs past its block");
+            final byte b = block[pos++];
+            v |= (long) (b & 0x7F) << shift;
+            if (b >= 0)
+                return v;
+        }
+        throw new IOException("Corrupt log: varint too long");
+    }
+
+    private String readString() throws IOException {
+        final int length = (int) readVarLong();
+        if (length < 0 || length > blockLength - pos)
+            throw new IOException("Corrupt log: record runs past its block");
+        final String s = new String(block, pos, length, StandardCharsets.UTF_8);
+        pos += length;
+        return s;
+    }
+
+}
@@ -0,0 +1,386 @@
+package soc.server.logger;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Deflater;
+
+import soc.message.SOCMessage;
+import soc.message.SOCMessageForGame;
+import soc.server.SOCServer;
+import soc.util.ParkingQueue;
+
+/**
+ * Logger which writes each game's log to one compact binary file, from a background thread.
+ * The callers only turn the message into text, since messages may refer to game state that changes later,
+ * and queue it with the time; formatting the date, encoding and writing are left to the writer thread.
+ * <p>
+ * The file is <tt>logDir/game-date/game-date.soclogb</tt>, in the same directory {@link SOCFileLogger}
+ * would use. {@link SOCBinaryLogConverter} turns it into the three text <tt>.soclog</tt> files
+ * {@link SOCFileLogger} writes, for {@link soc.util.LogParser} and the replay client.
+ * <p>
+ * Format: the header is {@link #MAGIC}, then the time zone ID (writeUTF) the dates are to be shown in,
+ * then a flags byte ({@link #FLAG_DEFLATE}). Then come blocks, each an int length of its records,
+ * an int length of the bytes stored (the same unless the blocks are deflated) and the bytes.
+ * Each record is a kind byte ({@link #STRING}, {@link #SERVER} or {@link #CLIENT}); then,
+ * except for strings, the time as a varint zigzag difference from the previous record's time
+ * (from 0 at the start of the file) and the recipients or sender as a varint: 0 followed by a new name,
+ * or 1 + the index of a name seen before in the file; then the text as a varint length and UTF-8 bytes.
+ * A block is written once it has {@link #BLOCK_SIZE} bytes of records, when the game's log ends, and when
+ * records have waited {@link #FLUSH_MILLIS}, so a crash loses at most that much.
+ */
+public class SOCBinaryLogger implements SOCLogger {
+
+    /** The start of every binary log file */
+    public static final byte[] MAGIC = { 'S', 'O', 'C', 'L', 'O', 'G', 'B', '1' };
+
+    /** The file extension of binary logs */
+    public static final String EXTENSION = ".soclogb";
+
+    /** Header flag: the blocks are compressed with {@link Deflater} */
+    public static final int FLAG_DEFLATE = 1;
+
+    /** Record kinds: a string from {@link #logString(String, String)}, written to the main log as it is */
+    public static final int STRING = 0;
+    /** Record kinds: a message sent by the server */
+    public static final int SERVER = 1;
+    /** Record kinds: a message sent by a client */
+    public static final int CLIENT = 2;
+    /** Not written: the end of a game's log */
+    private static final int END = 3;
+
+    /** Bytes of records collected before a block is written */
+    public static final int BLOCK_SIZE = 64 * 1024;
+
+    /** The longest records wait before being written */
+    public static final long FLUSH_MILLIS = 1000;
+
+    /**
+     * One game's log file. Only the writer thread uses it after {@link #startLog(String)}.
+     */
+    private static final class GameLog {
+        final String name;
+        final OutputStream out;
+        /** names of recipients and senders seen so far, and their indexes */
+        final HashMap<String, Integer> parties = new HashMap<String, Integer>();
+        byte[] block = new byte[BLOCK_SIZE + 1024];
+        int blockLength;
+        long lastTime;
+        /** when the first record of {@link #block} arrived */
+        long blockStarted;
+        /** whether the log is in the writer's list of open logs yet */
+        boolean listed;
+        /** whether the log has ended; later records are dropped */
+        boolean closed;
+
+        GameLog(String name, OutputStream out) {
+            this.name = name;
+            this.out = out;
+        }
+    }
+
+    /** A record waiting for the writer thread */
+    private static final class Record {
+        final GameLog log;
+        final int kind;
+        final long time;
+        final String party;
+        final String text;
+
+        Record(GameLog log, int kind, long time, String party, String text) {
+            this.log = log;
+            this.kind = kind;
+            this.time = time;
+            this.party = party;
+            this.text = text;
+        }
+    }
+
+    private final String logDir;
+    private final boolean compress;
+    /** Open logs by game name */
+    private final ConcurrentHashMap<String, GameLog> logs = new ConcurrentHashMap<String, GameLog>();
+    private final ParkingQueue<Record> queue = new ParkingQueue<Record>();
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    //only used by the writer thread
+    private final List<GameLog> open = new ArrayList<GameLog>();
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private byte[] deflated = new byte[BLOCK_SIZE];
+
+    /**
+     * Starts the writer thread. Logs still open when the JVM exits are written out and closed.
+     * @param logDir the directory to make the logs' directories in, ending with a separator
+     * @param compress whether to deflate the blocks
+     */
+    public SOCBinaryLogger(String logDir, boolean compress) {
+        File dir = new File(logDir);
+        if (!dir.exists())
+            dir.mkdirs();
+        this.logDir = logDir;
+        this.compress = compress;
+        writer = new Thread("SOCBinaryLogger") {
+            public void run() {
+                write();
+            }
+        };
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            public void run() {
+                close();
+            }
+        });
+    }
+
+    @Override
+    public void startLog(String logName) throws IOException {
+        String logNameAndDateString = logName + "-" + SOCServer.formattedDateShort();
+        File dir = new File(logDir + logNameAndDateString);
+        if (!dir.exists())
+            dir.mkdirs();
+
+        FileOutputStream out = new FileOutputStream(logDir + logNameAndDateString + "/" + logNameAndDateString + EXTENSION);
+        DataOutputStream header = new DataOutputStream(out);
+        header.write(MAGIC);
+        header.writeUTF(TimeZone.getDefault().getID());
+        header.writeByte(compress ? FLAG_DEFLATE : 0);
+        header.flush();
+        GameLog old = logs.put(logName, new GameLog(logName, out));
+        if (old != null)
+            queue.put(new Record(old, END, 0, null, null));
+    }
+
+    @Override
+    public void endLog(String logName) {
+        GameLog log = logs.remove(logName);
+        if (log != null)
+            queue.put(new Record(log, END, 0, null, null));
+    }
+
+    @Override
+    public void logString(String logName, String outputString) {
+        if (outputString == null)
+            outputString = "null";  // as SOCFileLogger prints it
+        GameLog log = logs.get(logName);
+        if (log != null)
+            queue.put(new Record(log, STRING, 0, null, outputString));
+    }
+
+    @Override
+    public void logServerMessage(String recipients, SOCMessage message) {
+        log(SERVER, recipients, message);
+    }
+
+    @Override
+    public void logServerMessage(SOCMessage message) {
+        log(SERVER, "ALL", message);
+    }
+
+    @Override
+    public void logClientMessage(String sender, SOCMessage message) {
+        log(CLIENT, sender, message);
+    }
+
+    private void log(int kind, String party, SOCMessage message) {
+        if (!(message instanceof SOCMessageForGame))
+            return;
+        if (party == null)
+            party = "null";  // as SOCFileLogger prints it
+        GameLog log = logs.get(((SOCMessageForGame) message).getGame());
+        if (log != null)
+            queue.put(new Record(log, kind, System.currentTimeMillis(), party, message.toLogString()));
+    }
+
+    /**
+     * Writes out everything queued so far, closes the logs still open and stops the writer thread.
+     * Anything logged afterwards is dropped.
+     */
+    public void close() {
+        if (!running)
+            return;
+        for (String logName : logs.keySet())
+            endLog(logName);
+        running = false;
+        writer.interrupt();
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The writer thread: takes the records off the queue and adds them to their logs' blocks.
+     */
+    private void write() {
+        long lastCheck = System.currentTimeMillis();
+        while (true) {
+            Record r = queue.poll(FLUSH_MILLIS);
+            if (r != null) {
+                try {
+                    add(r);
+                } catch (RuntimeException e) {
+                    //drop the record rather than the writer thread, which would lose every later record
+                    System.err.println("Error logging to the log of " + r.log.name + ", record dropped: " + e);
+                    e.printStackTrace();
+                }
+            } else if (!running && queue.isEmpty())
+                break;
+
+            final long now = System.currentTimeMillis();
+            if (r == null || now - lastCheck >= FLUSH_MILLIS) {
+                lastCheck = now;
+                for (GameLog log : open) {
+                    if (log.blockLength > 0 && now - log.blockStarted >= FLUSH_MILLIS) {
+                        try {
+                            writeBlock(log, true);
+                        } catch (RuntimeException e) {
+                            System.err.println("Error writing the log of " + log.name + ": " + e);
+                            e.printStackTrace();
+                            log.blockLength = 0;
+                        }
+                    }
+                }
+            }
+        }
+        for (GameLog log : open)
+            end(log);
+        open.clear();
+        deflater.end();
+    }
+
+    /**
+     * Adds a record to its log's block.
+     * @throws IllegalArgumentException if the record lacks its text, or its recipients or sender;
+     *         nothing is added to the block then
+     */
+    private void add(Record r) {
+        final GameLog log = r.log;
+        if (log.closed)
+            return;  // logged while the game's log was ending
+        if (r.kind == END) {
+            end(log);
+            open.remove(log);
+            return;
+        }
+        if (r.text == null || (r.kind != STRING && r.party == null))
+            throw new IllegalArgumentException("record without its " + ((r.text == null) ? "text" : "recipients or sender"));
+        if (!log.listed) {
+            open.add(log);
+            log.listed = true;
+        }
+        if (log.blockLength == 0)
+            log.blockStarted = System.currentTimeMillis();
+
+        final byte[] text = r.text.getBytes(StandardCharsets.UTF_8);
+        ensure(log, 32 + text.length + ((r.party != null) ? 3 * r.party.length() : 0));
+        log.block[log.blockLength++] = (byte) r.kind;
+        if (r.kind != STRING) {
+            final long delta = r.time - log.lastTime;
+            putVarLong(log, (delta << 1) ^ (delta >> 63));
+            log.lastTime = r.time;
+            Integer index = log.parties.get(r.party);
+            if (index != null) {
+                putVarLong(log, index.intValue() + 1);
+            } else {
+                putVarLong(log, 0);
+                putBytes(log, r.party.getBytes(StandardCharsets.UTF_8));
+                log.parties.put(r.party, Integer.valueOf(log.parties.size()));
+            }
+        }
+        putBytes(log, text);
+
+        if (log.blockLength >= BLOCK_SIZE)
+            writeBlock(log, false);
+    }
+
+    private static void ensure(GameLog log, int more) {
+        if (log.blockLength + more > log.block.length) {
+            byte[] b = new byte[Math.max(2 * log.block.length, log.blockLength + more)];
+            System.arraycopy(log.block, 0, b, 0, log.blockLength);
+            log.block = b;
+        }
+    }
+
+    private static void putVarLong(GameLog log, long v) {
+        while ((v & ~0x7FL) != 0) {
+            log.block[log.blockLength++] = (byte) ((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        log.block[log.blockLength++] = (byte) v;
+    }
+
+    private static void putBytes(GameLog log, byte[] b) {
+        ensure(log, 5 + b.length);
+        putVarLong(log, b.length);
+        System.arraycopy(b, 0, log.block, log.blockLength, b.length);
+        log.blockLength += b.length;
+    }
+
+    /**
+     * Writes out a log's block of records, if it has any.
+     * @param flush whether to flush the file afterwards
+     */
+    private void writeBlock(GameLog log, boolean flush) {
+        if (log.blockLength == 0)
+            return;
+        byte[] stored = log.block;
+        int storedLength = log.blockLength;
+        if (compress) {
+            deflater.reset();
+            deflater.setInput(log.block, 0, log.blockLength);
+            deflater.finish();
+            storedLength = 0;
+            while (!deflater.finished()) {
+                if (storedLength == deflated.length) {
+                    byte[] b = new byte[2 * deflated.length];
+                    System.arraycopy(deflated, 0, b, 0, storedLength);
+                    deflated = b;
+                }
+                storedLength += deflater.deflate(deflated, storedLength, deflated.length - storedLength);
+            }
+            stored = deflated;
+        }
+
+        try {
+            final byte[] lengths = new byte[8];
+            putInt(lengths, 0, log.blockLength);
+            putInt(lengths, 4, storedLength);
+            log.out.write(lengths);
+            log.out.write(stored, 0, storedLength);
+            if (flush)
+                log.out.flush();
+        } catch (IOException e) {
+            System.err.println("Error writing the log of " + log.name + ": " + e);
+        }
+        log.blockLength = 0;
+    }
+
+    private static void putInt(byte[] b, int off, int v) {
+        b[off] = (byte) (v >>> 24);
+        b[off + 1] = (byte) (v >>> 16);
+        b[off + 2] = (byte) (v >>> 8);
+        b[off + 3] = (byte) v;
+    }
+
+    private void end(GameLog log) {
+        log.closed = true;
+        writeBlock(log, false);
+        try {
+            log.out.close();
+        } catch (IOException e) {
+            System.err.println("Error closing the log of " + log.name + ": " + e);
+        }
+    }
+
+}
@@ -43,13 +43,13 @@ public class SOCConditionalLogger implements SOCLogger {
     
     private void logMessage(SOCMessage message) {        
         String dateStr = SOCServer.formattedDate();
-        D.ebugPrintlnINFO(dateStr + ":" + message);
+        D.ebugPrintlnINFO(dateStr + ":" + message.toLogString());
         if (message instanceof SOCMessageForGame) {
             String game = ((SOCMessageForGame) message).getGame();
             synchronized(logForGames) {
                 List<String> log = logForGames.get(game);
                 if (log != null) {
-                    log.add(dateStr + ":" + message);                    
+                    log.add(dateStr + ":" + message.toLogString());                    
                 }
             }
         }
@@ -4,7 +4,7 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.util.HashMap;
+import java.util.Hashtable;
 
 import soc.disableDebug.D;
 import soc.message.SOCMessage;
@@ -18,7 +18,8 @@ import soc.server.SOCServer;
  */
 public class SOCFileLogger implements SOCLogger {
     
-    private final HashMap<String, PrintWriter[]> gameOutputStreams;
+    /** Log files of each game; synchronized, since games may be treated in parallel */
+    private final Hashtable<String, PrintWriter[]> gameOutputStreams;
     private final String logDir;
     
     public SOCFileLogger(String logDir) {
@@ -26,7 +27,7 @@ public class SOCFileLogger implements SOCLogger {
     	if(!dir.exists())
         	dir.mkdirs();
     	this.logDir = logDir;
-        gameOutputStreams = new HashMap<String, PrintWriter[]>();
+        gameOutputStreams = new Hashtable<String, PrintWriter[]>();
     }
 
     @Override
@@ -68,13 +69,13 @@ public class SOCFileLogger implements SOCLogger {
     @Override
     public void logServerMessage(String recipients, SOCMessage message) {
         String dateStr = SOCServer.formattedDate();
-        D.ebugPrintlnINFO(dateStr + ":" + message);
+        D.ebugPrintlnINFO(dateStr + ":" + message.toLogString());
         if (message instanceof SOCMessageForGame) {
             String game = ((SOCMessageForGame) message).getGame();
             PrintWriter[] out = gameOutputStreams.get(game);
             if (out != null) {
-                out[0].println(dateStr + ":" + message);
-                out[1].println(recipients + ":" + dateStr + ":" + message);
+                out[0].println(dateStr + ":" + message.toLogString());
+                out[1].println(recipients + ":" + dateStr + ":" + message.toLogString());
             }
         }
         
@@ -83,13 +84,13 @@ public class SOCFileLogger implements SOCLogger {
     @Override
     public void logClientMessage(String sender, SOCMessage message) {
         String dateStr = SOCServer.formattedDate();
-        D.ebugPrintlnINFO(dateStr + ":" + message);
+        D.ebugPrintlnINFO(dateStr + ":" + message.toLogString());
         if (message instanceof SOCMessageForGame) {
             String game = ((SOCMessageForGame) message).getGame();
             PrintWriter[] out = gameOutputStreams.get(game);
             if (out != null) {
-                out[0].println(dateStr + ":" + message);            
-                out[2].println(sender + ":" + dateStr + ":" + message);
+                out[0].println(dateStr + ":" + message.toLogString());            
+                out[2].println(sender + ":" + dateStr + ":" + message.toLogString());
             }
         } 
         
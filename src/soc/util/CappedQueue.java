@@ -20,16 +20,20 @@
 package soc.util;
 
 import java.io.Serializable;
-import java.util.Vector;
 
 
 /**
- * This queue has a size limit
+ * This queue has a size limit.
+ * Putting is lock-free, and a thread in {@link #get()} is parked until an object arrives
+ * (see {@link ParkingQueue}).
  */
 public class CappedQueue implements Serializable
 {
     // Internal storage for the queue'd objects
-    private Vector vec = new Vector();
+    private ParkingQueue<Object> queue = new ParkingQueue<Object>();
+
+    // Stands in for null, which ParkingQueue can't hold; brains are stopped by putting null
+    private static final Object NULL = new NullMarker();
 
     // The max size for this queue
     private int sizeLimit;
@@ -53,76 +57,49 @@ public class CappedQueue implements Serializable
     }
 
     /**
-     * DOCUMENT ME!
+     * Add an object to the queue, waking the thread waiting in {@link #get()}.
+     * The object is added even if the limit is reached.
      *
-     * @param o DOCUMENT ME!
+     * @param o the object
      *
-     * @throws CutoffExceededException DOCUMENT ME!
+     * @throws CutoffExceededException if this put brought the queue to its size limit
      */
-    synchronized public void put(Object o) throws CutoffExceededException
+    public void put(Object o) throws CutoffExceededException
     {
         //D.ebugPrintln(">put-> "+o);
-        // Add the element
-        vec.addElement(o);
-
-        // There might be threads waiting for the new object --
-        // give them a chance to get it
-        notifyAll();
-
-        if (vec.size() == sizeLimit)
+        if (queue.put((o == null) ? NULL : o) == sizeLimit)
         {
             throw new CutoffExceededException("CappedQueue sizeLimit exceeded");
         }
     }
 
     /**
-     * DOCUMENT ME!
+     * Remove the first object from the queue, waiting until there is one.
      *
-     * @return DOCUMENT ME!
+     * @return the first object, or null if the thread was interrupted while waiting
      */
-    synchronized public Object get()
+    public Object get()
     {
-        while (true)
-        {
-            if (vec.size() > 0)
-            {
-                // There's an available object!
-                Object o = vec.elementAt(0);
-
-                //D.ebugPrintln("<-get< "+o); 
-                // Remove it from our internal list, so someone else
-                // doesn't get it.
-                vec.removeElementAt(0);
-
-                // Return the object
-                return o;
-            }
-            else
-            {
-                // There aren't any objects available.  Do a wait(),
-                // and when we wake up, check again to see if there
-                // are any.
-                try
-                {
-                    wait();
-                }
-                catch (InterruptedException ie) {}
-            }
-        }
+        final Object o = queue.take();
+        return (o instanceof NullMarker) ? null : o;
     }
 
     /**
-     * DOCUMENT ME!
-     *
-     * @return DOCUMENT ME!
+     * @return true if the queue has no objects
      */
-    synchronized public boolean empty()
+    public boolean empty()
     {
-        return vec.isEmpty();
+        return queue.isEmpty();
     }
     
-    synchronized public void clear(){
-    	vec.clear();
+    public void clear(){
+    	queue.clear();
+    }
+
+    /** Type of {@link #NULL}, serializable so a copied queue still recognises it */
+    private static final class NullMarker implements Serializable
+    {
+        private static final long serialVersionUID = 1L;
     }
     
 }
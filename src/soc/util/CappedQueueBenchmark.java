@@ -0,0 +1,170 @@
+package soc.util;
+
+import java.util.Vector;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the robot brains' {@link CappedQueue} game event queue pattern:
+ * robot client reader threads put each game's messages into that game's brain queue,
+ * and one brain thread per game takes them out with {@link CappedQueue#get()}.
+ * Compares the lock-free CappedQueue with the synchronized Vector and
+ * <tt>wait()</tt>/<tt>notifyAll()</tt> version it replaced.
+ *<P>
+ * Usage: CappedQueueBenchmark [messagesPerGame] [games] [producers] [rounds]
+ */
+public class CappedQueueBenchmark
+{
+    /**
+     * The queue operations the benchmark needs, so both implementations can be driven the same way.
+     */
+    private interface EventQueue
+    {
+        void put(Object o) throws CutoffExceededException;
+        Object get();
+    }
+
+    /**
+     * The synchronized Vector queue used before {@link ParkingQueue}, for comparison.
+     */
+    private static class VectorQueue implements EventQueue
+    {
+        private Vector<Object> vec = new Vector<Object>();
+        private int sizeLimit = Integer.MAX_VALUE;
+
+        synchronized public void put(Object o) throws CutoffExceededException
+        {
+            vec.addElement(o);
+            notifyAll();
+            if (vec.size() == sizeLimit)
+                throw new CutoffExceededException("CappedQueue sizeLimit exceeded");
+        }
+
+        synchronized public Object get()
+        {
+            while (vec.size() == 0)
+            {
+                try
+                {
+                    wait();
+                }
+                catch (InterruptedException ie) {}
+            }
+            Object o = vec.elementAt(0);
+            vec.removeElementAt(0);
+            return o;
+        }
+    }
+
+    private static class LockFreeQueue implements EventQueue
+    {
+        private final CappedQueue q = new CappedQueue(Integer.MAX_VALUE);
+
+        public void put(Object o) throws CutoffExceededException
+        {
+            q.put(o);
+        }
+
+        public Object get()
+        {
+            return q.get();
+        }
+    }
+
+    /** Message standing in for the end of a game, so the brain thread stops */
+    private static final Object END = new Object();
+
+    /** The brain threads' totals of the messages they took, written so that taking them can't be optimised away */
+    private static final AtomicLong treated = new AtomicLong();
+
+    /**
+     * Run <tt>games</tt> brain threads, fed by <tt>producers</tt> reader threads.
+     * Each producer puts its share of every game's messages, as a robot client does
+     * for all the games it is playing.
+     *
+     * @return total messages taken per second, over all games
+     */
+    private static double measure(final boolean lockFree, final int numMessages, final int games, final int producers)
+        throws InterruptedException
+    {
+        final EventQueue[] queues = new EventQueue[games];
+        final Thread[] brains = new Thread[games];
+        for (int g = 0; g < games; g++)
+        {
+            final EventQueue q = lockFree ? new LockFreeQueue() : new VectorQueue();
+            queues[g] = q;
+            brains[g] = new Thread("bench-brain-" + g)
+            {
+                public void run()
+                {
+                    int ends = 0;
+                    long sum = 0;
+                    while (ends < producers)
+                    {
+                        Object o = q.get();
+                        if (o == END)
+                            ends++;
+                        else
+                            sum += ((Integer) o).intValue();  // stand-in for treating the message
+                    }
+                    treated.addAndGet(sum);
+                }
+            };
+        }
+
+        final int perProducer = numMessages / producers;
+        final Thread[] readers = new Thread[producers];
+        for (int p = 0; p < producers; p++)
+        {
+            readers[p] = new Thread("bench-reader-" + p)
+            {
+                public void run()
+                {
+                    try
+                    {
+                        for (int i = 0; i < perProducer; i++)
+                            for (int g = 0; g < games; g++)
+                                queues[g].put(Integer.valueOf(i & 0xFF));
+                        for (int g = 0; g < games; g++)
+                            queues[g].put(END);
+                    }
+                    catch (CutoffExceededException e)
+                    {
+                        e.printStackTrace();
+                    }
+                }
+            };
+        }
+
+        final long start = System.nanoTime();
+        for (int g = 0; g < games; g++)
+            brains[g].start();
+        for (int p = 0; p < producers; p++)
+            readers[p].start();
+        for (int g = 0; g < games; g++)
+            brains[g].join();
+        final long elapsed = System.nanoTime() - start;
+
+        return ((double) perProducer * producers * games) / (elapsed / 1e9);
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        final int numMessages = (args.length > 0) ? Integer.parseInt(args[0]) : 500000;
+        final int games = (args.length > 1) ? Integer.parseInt(args[1]) : 4;
+        final int producers = (args.length > 2) ? Integer.parseInt(args[2]) : 4;
+        final int rounds = (args.length > 3) ? Integer.parseInt(args[3]) : 5;
+
+        System.out.println("Messages per game: " + numMessages + ", games: " + games + ", reader threads: " + producers);
+        // the first round warms up the JIT and is not reported
+        for (int r = 0; r <= rounds; r++)
+        {
+            final double vec = measure(false, numMessages, games, producers);
+            final double lf = measure(true, numMessages, games, producers);
+            if (r == 0)
+                continue;
+            System.out.println(String.format("Round %d: Vector %.0f msg/s, lock-free %.0f msg/s (x%.2f)",
+                r, vec, lf, lf / vec));
+        }
+    }
+
+}
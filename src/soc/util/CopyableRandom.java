@@ -0,0 +1,102 @@
+package soc.util;
+
+import java.util.Random;
+
+/**
+ * A {@link Random} whose state can be copied directly, so a copied game or board continues
+ * the same sequence as the original without serializing the generator.
+ * Gives the same numbers as {@link Random} for the same seed: it keeps the seed in its own
+ * field and steps it with the same linear congruential formula in {@link #next(int)},
+ * which the other <tt>next</tt> methods are built on.
+ * {@link #nextGaussian()} keeps its own spare value, for the same reason.
+ */
+public class CopyableRandom extends Random
+{
+    private static final long serialVersionUID = 1L;
+
+    private static final long MULTIPLIER = 0x5DEECE66DL;
+    private static final long ADDEND = 0xBL;
+    private static final long MASK = (1L << 48) - 1;
+
+    /*
+     * These fields have no initializers: Random's constructor calls setSeed
+     * before this class's field initializers would run, and they would undo it.
+     */
+
+    /** Current 48-bit seed, as in {@link Random} */
+    private long seed;
+
+    /** Second value from the last {@link #nextGaussian()}, if {@link #haveNextNextGaussian} */
+    private double nextNextGaussian;
+
+    private boolean haveNextNextGaussian;
+
+    /**
+     * Creates a new generator with a seed which is very likely distinct from any other's,
+     * like {@link Random#Random()}.
+     */
+    public CopyableRandom()
+    {
+        super();
+    }
+
+    /**
+     * Creates a new generator, like {@link Random#Random(long)}.
+     * @param seed  the initial seed
+     */
+    public CopyableRandom(long seed)
+    {
+        super(seed);
+    }
+
+    /**
+     * Creates a generator in the same state as another, which will give the same numbers from now on.
+     * @param r  the generator to copy
+     */
+    public CopyableRandom(CopyableRandom r)
+    {
+        super(0L);
+        synchronized (r)
+        {
+            seed = r.seed;
+            nextNextGaussian = r.nextNextGaussian;
+            haveNextNextGaussian = r.haveNextNextGaussian;
+        }
+    }
+
+    @Override
+    public synchronized void setSeed(long seed)
+    {
+        this.seed = (seed ^ MULTIPLIER) & MASK;
+        haveNextNextGaussian = false;
+    }
+
+    @Override
+    protected synchronized int next(int bits)
+    {
+        seed = (seed * MULTIPLIER + ADDEND) & MASK;
+        return (int) (seed >>> (48 - bits));
+    }
+
+    @Override
+    public synchronized double nextGaussian()
+    {
+        if (haveNextNextGaussian)
+        {
+            haveNextNextGaussian = false;
+            return nextNextGaussian;
+        }
+
+        double v1, v2, s;
+        do
+        {
+            v1 = 2 * nextDouble() - 1;
+            v2 = 2 * nextDouble() - 1;
+            s = v1 * v1 + v2 * v2;
+        } while (s >= 1 || s == 0);
+        final double multiplier = StrictMath.sqrt(-2 * StrictMath.log(s) / s);
+        nextNextGaussian = v2 * multiplier;
+        haveNextNextGaussian = true;
+        return v1 * multiplier;
+    }
+}
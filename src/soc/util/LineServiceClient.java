@@ -0,0 +1,155 @@
+package soc.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Client of a service over TCP which answers each line sent to it with a line,
+ * such as the trade policy of the deep reinforcement learning agent (localhost:7777).
+ * Requests and responses are UTF-8, and a request mustn't contain a line break.
+ *<P>
+ * By default a connection is opened for each request and closed once it's answered, which is all the
+ * agent's protocol promises; the client still limits the connections open at once and the requests in flight,
+ * and times out a service which doesn't answer.
+ * A client made with <tt>keepAlive</tt> is for a service which reads the requests of a connection in a loop:
+ * it keeps its connections, and sends a batch as consecutive lines in one write, reading the answers
+ * back in order, so the batch takes one round trip.  If the service answers only one line per connection after all,
+ * it falls back to a connection per request (see {@link ServiceClient}).
+ */
+public class LineServiceClient extends ServiceClient<LineServiceClient.Connection>
+{
+    /** Defaults of the clients made by {@link #get(String, int)}, and batch size for <tt>keepAlive</tt> clients */
+    public static final int DEFAULT_CONNECTIONS = 4, DEFAULT_IN_FLIGHT = 256, DEFAULT_BATCH = 16,
+        DEFAULT_TIMEOUT = 30000;
+
+    private static final ConcurrentHashMap<String, LineServiceClient> clients = new ConcurrentHashMap<String, LineServiceClient>();
+
+    private final String host;
+    private final int port;
+
+    /** A connection to the service */
+    static final class Connection
+    {
+        final Socket socket;
+        final Writer writer;
+        final BufferedReader reader;
+
+        Connection(Socket socket) throws IOException
+        {
+            this.socket = socket;
+            writer = new OutputStreamWriter(socket.getOutputStream(), "UTF-8");
+            reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+        }
+    }
+
+    /**
+     * @param host  the service's host
+     * @param port  the service's port
+     * @param maxConnections  connections open at most
+     * @param maxInFlight  requests waiting or in progress at most
+     * @param maxBatch  lines sent in one write at most, if <tt>keepAlive</tt>
+     * @param timeoutMillis  limit on connecting, on waiting to start a request and on waiting for each answer
+     * @param keepAlive  true if the service answers any number of lines per connection, so connections are kept
+     *     and requests batched; false for a connection per request
+     */
+    public LineServiceClient(String host, int port, int maxConnections, int maxInFlight, int maxBatch, int timeoutMillis,
+        boolean keepAlive)
+    {
+        super("LineServiceClient(" + host + ":" + port + ")", maxConnections, maxInFlight, keepAlive ? maxBatch : 1,
+            timeoutMillis, keepAlive);
+        this.host = host;
+        this.port = port;
+    }
+
+    /**
+     * @return the client of the service shared by the whole process, with the default limits,
+     *     opening a connection per request
+     */
+    public static LineServiceClient get(String host, int port)
+    {
+        final String key = host + ":" + port;
+        LineServiceClient c = clients.get(key);
+        if (c == null)
+        {
+            final LineServiceClient fresh = new LineServiceClient(host, port, DEFAULT_CONNECTIONS, DEFAULT_IN_FLIGHT,
+                DEFAULT_BATCH, DEFAULT_TIMEOUT, false);
+            c = clients.putIfAbsent(key, fresh);
+            if (c == null)
+                c = fresh;
+        }
+        return c;
+    }
+
+    @Override
+    public String requestOrTimeout(String request)
+        throws SocketTimeoutException
+    {
+        if ((request.indexOf('\n') >= 0) || (request.indexOf('\r') >= 0))
+            throw new IllegalArgumentException("A request can't contain a line break");
+        return super.requestOrTimeout(request);
+    }
+
+    @Override
+    protected Connection open() throws IOException
+    {
+        Socket s = new Socket();
+        try
+        {
+            s.connect(new InetSocketAddress(host, port), timeoutMillis);
+            s.setSoTimeout(timeoutMillis);
+            s.setTcpNoDelay(true);
+            return new Connection(s);
+        }
+        catch (IOException e)
+        {
+            s.close();
+            throw e;
+        }
+    }
+
+    @Override
+    protected void close(Connection c)
+    {
+        try
+        {
+            c.socket.close();
+        }
+        catch (IOException e) {}
+    }
+
+    @Override
+    protected int exchange(Connection c, String[] requests, String[] responses) throws IOException
+    {
+        final StringBuilder sb = new StringBuilder();
+        for (String r : requests)
+            sb.append(r).append('\n');
+        c.writer.write(sb.toString());
+        c.writer.flush();
+        int n = 0;
+        try
+        {
+            while (n < requests.length)
+            {
+                final String line = c.reader.readLine();
+                if (line == null)
+                    break;
+                responses[n++] = line;
+            }
+        }
+        catch (IOException e)
+        {
+            // timed out or reset after answering some, which still count
+            if (n == 0)
+                throw e;
+        }
+        return n;
+    }
+
+}
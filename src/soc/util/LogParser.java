@@ -3,18 +3,26 @@ package soc.util;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 
 import soc.message.SOCMessage;
+import soc.message.SOCMessageRegistry;
 
 /**
  * Class to manage parsing of log files.
+ *<P>
+ * {@link #getMappedParser(String, int...)} gives a parser which reads the file memory-mapped
+ * and, if asked for some message types, skips every other line without decoding it.
  * @author kho30
  *
  */
@@ -30,7 +38,31 @@ public class LogParser {
     private SOCMessage lastMsg = null;
     private Date lastDate = null;
     
+    /** The memory-mapped log, or null when reading with {@link #br} */
+    private final ByteBuffer map;
+    /** Position of the next line in {@link #map} */
+    private int mapPos;
+    /** Class names of the message types to decode from {@link #map}, as bytes; null for all of them */
+    private final byte[][] wanted;
+    /** Scratch for the bytes of a line of {@link #map} */
+    private byte[] lineBytes = new byte[1024];
+    /** As read by {@link FileReader} */
+    private static final Charset charset = Charset.defaultCharset();
+
+    /** Synchronize on this when using it; {@link #parseLogTime(String)} is quicker for the dates in logs */
     public static final DateFormat df = new SimpleDateFormat("yyyy:MM:dd:HH:mm:ss:SSS:Z");
+
+    /**
+     * The layout of the date at the start of a logged message, as written by {@link #df}:
+     * d for a digit, s for the sign of the time zone offset, and anything else for itself.
+     * The message follows the last colon.
+     */
+    private static final String DATE_LAYOUT = "dddd:dd:dd:dd:dd:dd:ddd:sdddd:";
+
+    /** Length of the date, without the colon after it */
+    private static final int DATE_LENGTH = DATE_LAYOUT.length() - 1;
+
+    private static final int[] DAYS_IN_MONTH = { 31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31 };
     
     public static LogParser getParser(String fileName) {
         return getParser(fileName, false);
@@ -62,9 +94,60 @@ public class LogParser {
         return null;        
     }
     
+    /**
+     * Get a parser which reads the log memory-mapped. If message types are given, {@link #parseLine()}
+     * skips ahead to the next message of one of those types, without decoding the lines in between,
+     * so {@link #getGameName()} is that of the last message returned.
+     * @param fileName the log, with or without its .soclog extension
+     * @param messageTypes the types of message to decode, such as {@link SOCMessage#DICERESULT}; none for all of them
+     * @return the parser, or null if the log can't be read
+     * @throws IllegalArgumentException if a type isn't one {@link SOCMessage#toMsg(String)} knows
+     */
+    public static LogParser getMappedParser(String fileName, int... messageTypes) {
+        byte[][] wanted = null;
+        if (messageTypes.length > 0) {
+            wanted = new byte[messageTypes.length][];
+            for (int i = 0; i < messageTypes.length; i++) {
+                SOCMessageRegistry.Decoder d = SOCMessageRegistry.forType(messageTypes[i]);
+                if (d == null)
+                    throw new IllegalArgumentException("Unknown message type " + messageTypes[i]);
+                wanted[i] = (d.className + ":").getBytes(charset);
+            }
+        }
+
+        try {
+            File in = new File(fileName);
+            if (!in.isFile())
+                in = new File(fileName + ".soclog");
+            FileInputStream fis = new FileInputStream(in);
+            try {
+                FileChannel ch = fis.getChannel();
+                if (ch.size() > Integer.MAX_VALUE)
+                    throw new IOException(in + " is too big to map");
+                return new LogParser(ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()), wanted);
+            }
+            finally {
+                fis.close();  // the mapping stays valid
+            }
+        }
+        catch (IOException ex) {
+            ex.printStackTrace();
+        }
+        return null;
+    }
+
     private LogParser(BufferedReader br, BufferedWriter augLog) {
         this.br = br;       
         this.augLog = augLog;
+        map = null;
+        wanted = null;
+    }
+
+    private LogParser(ByteBuffer map, byte[][] wanted) {
+        br = null;
+        augLog = null;
+        this.map = map;
+        this.wanted = wanted;
     }
     
     public Date getMsgDate() {
@@ -78,6 +161,8 @@ public class LogParser {
     public SOCMessage parseLine() {
         lastMsg = null;
         lastDate = null;
+        if (map != null)
+            return parseMappedLine();
         try {               
             String msg = br.readLine();        
             
@@ -91,16 +176,7 @@ public class LogParser {
                 augLog.newLine();
             }
             
-            if (msg.length()>30 && msg.startsWith("201")) {
-                lastDate = df.parse( msg.substring(0, 29));                        
-                // Chop off the date 
-                msg = msg.substring(30);
-                // Extract the game name - this should really be provided as part of SOCMessage interface, but isn't
-                String[] pieces = SOCMessage.stripAttribNames(msg).split(SOCMessage.sep2);
-                gameName = pieces[0];
-                // Parse the message
-                lastMsg = SOCMessage.parseMsgStr(msg);
-            }
+            parseMsg(msg);
         }
         catch (Exception ex) {
             ex.printStackTrace();
@@ -109,7 +185,159 @@ public class LogParser {
         }
         return lastMsg;                        
     }
-    
+
+    /**
+     * Parses a line of the log into {@link #lastDate}, {@link #gameName} and {@link #lastMsg}, if it's a message.
+     */
+    private void parseMsg(String msg) throws Exception {
+        if (msg.length() > DATE_LENGTH + 1 && isLogDate(msg)) {
+            long time = parseLogTime(msg);
+            if (time != Long.MIN_VALUE) {
+                lastDate = new Date(time);
+            } else {
+                synchronized (df) {
+                    lastDate = df.parse(msg.substring(0, DATE_LENGTH));
+                }
+            }
+            // Chop off the date
+            msg = msg.substring(DATE_LENGTH + 1);
+            // Extract the game name, the first value after the class name, as SOCMessage.stripAttribNames
+            //  would give it - this should really be provided as part of SOCMessage interface, but isn't
+            int end = msg.indexOf(SOCMessage.sep_char);
+            if (end < 0)
+                end = msg.length();
+            int start = msg.indexOf('=');
+            start = (start >= 0 && start < end) ? start + 1 : 0;
+            int comma = msg.indexOf(SOCMessage.sep2_char, start);
+            gameName = msg.substring(start, (comma >= 0 && comma < end) ? comma : end);
+            // Parse the message
+            int colonIdx = msg.indexOf(':');
+            SOCMessageRegistry.Decoder d = (colonIdx < 0) ? null : SOCMessageRegistry.forClassName(msg.substring(0, colonIdx));
+            if (d != null && d.canDecode())
+                lastMsg = SOCMessage.parseMsgStr(d, msg, msg.substring(colonIdx + 1));
+        }
+    }
+
+    /**
+     * Reads the next line of {@link #map}, or the next one of a wanted type.
+     */
+    private SOCMessage parseMappedLine() {
+        final int limit = map.limit();
+        while (true) {
+            if (mapPos >= limit) {
+                eof = true;
+                return null;
+            }
+            // a line ends with \n, \r or \r\n, as for BufferedReader.readLine
+            final int start = mapPos;
+            int end = start;
+            byte b = 0;
+            while (end < limit && (b = map.get(end)) != '\n' && b != '\r')
+                end++;
+            mapPos = end + 1;
+            if (b == '\r' && mapPos < limit && map.get(mapPos) == '\n')
+                mapPos++;
+
+            if (wanted != null && !isWanted(start, end))
+                continue;
+
+            final int length = end - start;
+            if (lineBytes.length < length)
+                lineBytes = new byte[Math.max(length, 2 * lineBytes.length)];
+            map.position(start);
+            map.get(lineBytes, 0, length);
+            try {
+                parseMsg(new String(lineBytes, 0, length, charset));
+            }
+            catch (Exception ex) {
+                ex.printStackTrace();
+                lastDate = null;
+                lastMsg = null;
+            }
+            return lastMsg;
+        }
+    }
+
+    /**
+     * @return true if the line of {@link #map} from start to end is a message of one of the {@link #wanted} types
+     */
+    private boolean isWanted(int start, int end) {
+        if (end - start <= DATE_LENGTH + 1)
+            return false;
+        for (int i = 0; i < DATE_LAYOUT.length(); i++)
+            if (!fitsLayout((char) map.get(start + i), DATE_LAYOUT.charAt(i)))
+                return false;
+        final int msgStart = start + DATE_LENGTH + 1;
+        for (byte[] name : wanted) {
+            if (end - msgStart < name.length)
+                continue;
+            int i = 0;
+            while (i < name.length && map.get(msgStart + i) == name[i])
+                i++;
+            if (i == name.length)
+                return true;
+        }
+        return false;
+    }
+
+    private static boolean fitsLayout(char c, char layout) {
+        switch (layout) {
+        case 'd':
+            return c >= '0' && c <= '9';
+        case 's':
+            return c == '+' || c == '-';
+        default:
+            return c == layout;
+        }
+    }
+
+    /**
+     * @param line a line of a log
+     * @return true if it starts with a date as written by {@link #df}, and a colon
+     */
+    public static boolean isLogDate(String line) {
+        if (line.length() < DATE_LAYOUT.length())
+            return false;
+        for (int i = 0; i < DATE_LAYOUT.length(); i++)
+            if (!fitsLayout(line.charAt(i), DATE_LAYOUT.charAt(i)))
+                return false;
+        return true;
+    }
+
+    private static int digits(String s, int start, int n) {
+        int v = 0;
+        for (int i = start; i < start + n; i++)
+            v = v * 10 + (s.charAt(i) - '0');
+        return v;
+    }
+
+    /**
+     * Reads the date at the start of a line of a log, as {@link #df} would, but without a calendar.
+     * @param line a line for which {@link #isLogDate(String)} is true
+     * @return the time in milliseconds, or {@link Long#MIN_VALUE} if the date is out of the usual ranges
+     *     (which {@link #df} reads leniently)
+     */
+    public static long parseLogTime(String line) {
+        final int year = digits(line, 0, 4), month = digits(line, 5, 2), day = digits(line, 8, 2),
+            hour = digits(line, 11, 2), minute = digits(line, 14, 2), second = digits(line, 17, 2),
+            millis = digits(line, 20, 3), offsetHours = digits(line, 25, 2), offsetMinutes = digits(line, 27, 2);
+        if (year < 1600 || month < 1 || month > 12 || day < 1 || hour > 23 || minute > 59 || second > 59
+                || offsetHours > 23 || offsetMinutes > 59)
+            return Long.MIN_VALUE;
+        final boolean leap = (year % 4 == 0) && (year % 100 != 0 || year % 400 == 0);
+        if (day > DAYS_IN_MONTH[month - 1] + ((month == 2 && leap) ? 1 : 0))
+            return Long.MIN_VALUE;
+
+        // days since 1970-01-01 of the proleptic Gregorian calendar, counting years from March
+        final int y = (month <= 2) ? year - 1 : year;
+        final int era = y / 400, yearOfEra = y - era * 400;
+        final int dayOfYear = (153 * (month + ((month > 2) ? -3 : 9)) + 2) / 5 + day - 1;
+        final long days = era * 146097L + yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear - 719468;
+
+        final int offset = ((line.charAt(24) == '-') ? -1 : 1) * (offsetHours * 60 + offsetMinutes);
+        return ((days * 24 + hour) * 60 + minute - offset) * 60000L + second * 1000L + millis;
+    }
+
     public boolean eof() {
         return eof;
     }
@@ -120,7 +348,8 @@ public class LogParser {
     
     public void close() {
         try {
-            br.close();
+            if (br != null)
+                br.close();
             if (augLog!=null) {
                 augLog.flush();
                 augLog.close();
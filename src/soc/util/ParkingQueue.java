@@ -0,0 +1,164 @@
+package soc.util;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Unbounded FIFO queue for handing messages between threads without locking.
+ * Any number of threads may {@link #put(Object)}; readers that find the queue empty
+ * are parked until an element arrives, instead of waiting on a monitor the producers must also take.
+ *<P>
+ * Used by {@link CappedQueue} for the robot brains' game event queues,
+ * by {@link soc.server.genericServer.LocalStringConnection} and by the server's treater queue.
+ *
+ * @param <E> the type of the elements
+ */
+public class ParkingQueue<E> implements Serializable
+{
+    private static final long serialVersionUID = 1L;
+
+    private final ConcurrentLinkedQueue<E> items = new ConcurrentLinkedQueue<E>();
+
+    /**
+     * Number of elements, kept separately since {@link ConcurrentLinkedQueue#size()} walks the queue.
+     * May be briefly out of step with {@link #items} while a put or poll is in progress.
+     */
+    private final AtomicInteger size = new AtomicInteger();
+
+    /** Threads parked in {@link #take()} or {@link #poll(long)}, to be woken by the next put */
+    private transient ConcurrentLinkedQueue<Thread> waiters = new ConcurrentLinkedQueue<Thread>();
+
+    /**
+     * Add an element to the end of the queue, and wake any threads waiting for it.  Never blocks.
+     *
+     * @param e the element, not null
+     * @return the size of the queue after adding <tt>e</tt>
+     */
+    public int put(E e)
+    {
+        items.offer(e);
+        final int n = size.incrementAndGet();
+        if (! waiters.isEmpty())
+        {
+            for (Thread t : waiters)
+                LockSupport.unpark(t);
+        }
+        return n;
+    }
+
+    /**
+     * Remove the element at the head of the queue, without waiting.
+     *
+     * @return the head of the queue, or null if empty
+     */
+    public E poll()
+    {
+        final E e = items.poll();
+        if (e != null)
+            size.decrementAndGet();
+        return e;
+    }
+
+    /**
+     * Remove the element at the head of the queue, waiting until one arrives or the thread is interrupted.
+     * The interrupt flag is left set, so the caller can see why it got nothing back.
+     *
+     * @return the head of the queue, or null if the thread was interrupted
+     */
+    public E take()
+    {
+        E e = poll();
+        if (e != null)
+            return e;  // <--- Early return: no need to park ---
+
+        final Thread me = Thread.currentThread();
+        waiters.add(me);
+        try
+        {
+            // check again after adding ourselves, or a put just before could be missed
+            while ((e = poll()) == null)
+            {
+                // park returns at once while the flag is set
+                if (me.isInterrupted())
+                    break;
+                LockSupport.park(this);
+            }
+        }
+        finally
+        {
+            waiters.remove(me);
+        }
+        return e;
+    }
+
+    /**
+     * Remove the element at the head of the queue, waiting up to <tt>timeout</tt> milliseconds for one to arrive.
+     *
+     * @param timeout the longest time to wait, in milliseconds
+     * @return the head of the queue, or null if still empty after <tt>timeout</tt>
+     *     or if the thread was interrupted
+     */
+    public E poll(long timeout)
+    {
+        E e = poll();
+        if ((e != null) || (timeout <= 0))
+            return e;  // <--- Early return: no need to park ---
+
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        final Thread me = Thread.currentThread();
+        waiters.add(me);
+        try
+        {
+            while ((e = poll()) == null)
+            {
+                final long remaining = deadline - System.nanoTime();
+                if ((remaining <= 0) || me.isInterrupted())
+                    break;
+                LockSupport.parkNanos(this, remaining);
+            }
+        }
+        finally
+        {
+            waiters.remove(me);
+        }
+        return e;
+    }
+
+    /**
+     * @return the number of elements in the queue
+     */
+    public int size()
+    {
+        return Math.max(0, size.get());
+    }
+
+    /**
+     * @return true if the queue has no elements
+     */
+    public boolean isEmpty()
+    {
+        return items.isEmpty();
+    }
+
+    /**
+     * Remove all the elements.  Elements put while clearing may or may not be removed.
+     */
+    public void clear()
+    {
+        while (poll() != null)
+            ;
+    }
+
+    private void readObject(ObjectInputStream in)
+        throws IOException, ClassNotFoundException
+    {
+        in.defaultReadObject();
+        waiters = new ConcurrentLinkedQueue<Thread>();
+    }
+
+}
@@ -158,13 +158,13 @@ public class SOCGameList
                 }
                 else
                 {
+                    // take it while still synchronized, so two threads can't both see it free
+                    mutex.setState(true);
                     done = true;
                 }
             }
         }
 
-        mutex.setState(true);
-
         return true;
     }
 
@@ -0,0 +1,536 @@
+package soc.util;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Client of an external request/response service, such as the trade policy of a learning agent
+ * or the dialogue parser, shared by all the robots and games of the process.
+ * Connections are opened as needed, up to a limit, and kept open for later requests,
+ * rather than one being opened and closed for every request.
+ *<P>
+ * Requests wait in a queue.  A thread with a request takes any idle connection and serves the queue with it,
+ * its own request and whatever others are waiting, up to {@link #maxBatch} at a time, in one exchange with the
+ * service; the connection goes back to the pool when the queue is empty.  So concurrent requests are batched
+ * into as many round trips as there are connections, without a thread of its own.
+ *<P>
+ * At most {@link #maxInFlight} requests may be waiting or in progress; one which can't start, or which is still
+ * waiting in the queue, after the timeout fails.  Every exchange is also limited by the timeout, after which the
+ * connection is given up.  A connection the service has closed since its last use (one which answers nothing)
+ * is replaced and the requests sent again, as are the unanswered ones of a service which answers only one
+ * request per connection; from then on requests are sent one at a time.  A client made not to reuse its
+ * connections opens one for each exchange, for a service known to answer one request per connection.
+ *<P>
+ * A failed request gets null from {@link #request(String)}, so that the caller can carry on as it did when it
+ * couldn't reach the service.  {@link #requestOrTimeout(String)} tells a request which ran out of time, because
+ * the service or the other requests were too slow, apart from one which couldn't be sent at all.
+ *
+ * @param <C> the type of a connection
+ */
+public abstract class ServiceClient<C>
+{
+    /** What the service is, for messages */
+    protected final String name;
+
+    /** Requests sent in one exchange at most */
+    protected final int maxBatch;
+
+    /** Limit in milliseconds on waiting to start a request, and on each exchange */
+    protected final int timeoutMillis;
+
+    /** Requests waiting or in progress at most */
+    protected final int maxInFlight;
+
+    private final int maxConnections;
+    private final Semaphore window;
+    private final ConcurrentLinkedQueue<Pending> queue = new ConcurrentLinkedQueue<Pending>();
+    private final ArrayBlockingQueue<Slot<C>> idle;
+    private final AtomicInteger connections = new AtomicInteger();
+    private volatile boolean closed = false;
+
+    /** Requests sent in one exchange at most, which drops to 1 if the service can't take several */
+    private volatile int batchLimit;
+
+    /** Whether connections are kept for later requests; not if the service closes them after answering */
+    private volatile boolean reuse;
+
+    /** Times in a row a connection kept for later was found closed by the service, after which {@link #reuse} is off */
+    private static final int STALE_RUNS = 3;
+
+    /** See {@link #noteFirstAnswer(Slot)}; only a rough count, so not synchronized */
+    private volatile boolean staleSince = false;
+    private volatile int staleRuns = 0;
+
+    private final AtomicLong requests = new AtomicLong(), exchanges = new AtomicLong(), opened = new AtomicLong(),
+        failed = new AtomicLong();
+
+    /** A request and, once it's done, its response */
+    private static final class Pending
+    {
+        final String request;
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile String response;
+        /** If it failed, whether it was because the service took too long to answer */
+        volatile boolean timedOut;
+
+        Pending(String request)
+        {
+            this.request = request;
+        }
+
+        void finish(String response)
+        {
+            this.response = response;
+            done.countDown();
+        }
+
+        void fail(boolean timedOut)
+        {
+            this.timedOut = timedOut;
+            finish(null);
+        }
+    }
+
+    /**
+     * A connection, and how many exchanges it has answered.  The connection is only opened for the first exchange,
+     * so that a service which takes one request per connection never sees one with no request.
+     */
+    private static final class Slot<C>
+    {
+        /** The connection, or null until it's opened */
+        C connection;
+        int exchanges = 0;
+    }
+
+    /**
+     * @param name  what the service is, for messages
+     * @param maxConnections  connections open at most
+     * @param maxInFlight  requests waiting or in progress at most
+     * @param maxBatch  requests sent in one exchange at most; 1 if the service takes one at a time
+     * @param timeoutMillis  limit on waiting to start a request and on each exchange
+     */
+    protected ServiceClient(String name, int maxConnections, int maxInFlight, int maxBatch, int timeoutMillis)
+    {
+        this(name, maxConnections, maxInFlight, maxBatch, timeoutMillis, true);
+    }
+
+    /**
+     * @param name  what the service is, for messages
+     * @param maxConnections  connections open at most
+     * @param maxInFlight  requests waiting or in progress at most
+     * @param maxBatch  requests sent in one exchange at most; 1 if the service takes one at a time
+     * @param timeoutMillis  limit on waiting to start a request and on each exchange
+     * @param reuseConnections  whether to keep connections for later requests; false to open one for each exchange
+     */
+    protected ServiceClient(String name, int maxConnections, int maxInFlight, int maxBatch, int timeoutMillis,
+        boolean reuseConnections)
+    {
+        if ((maxConnections < 1) || (maxInFlight < 1) || (maxBatch < 1) || (timeoutMillis < 1))
+            throw new IllegalArgumentException("Limits of a service client must be positive");
+        this.name = name;
+        this.maxConnections = maxConnections;
+        this.maxInFlight = maxInFlight;
+        this.maxBatch = maxBatch;
+        batchLimit = maxBatch;
+        this.timeoutMillis = timeoutMillis;
+        reuse = reuseConnections;
+        window = new Semaphore(maxInFlight);
+        idle = new ArrayBlockingQueue<Slot<C>>(maxConnections);
+    }
+
+    /**
+     * Open a connection to the service.
+     */
+    protected abstract C open() throws IOException;
+
+    /**
+     * Close a connection, quietly.
+     */
+    protected abstract void close(C connection);
+
+    /**
+     * Send requests over a connection and read their responses, in order.
+     * The service may answer fewer than were sent, if it closes the connection;
+     * the connection is then given up and the rest sent again over a new one.
+     *
+     * @param connection  the connection
+     * @param requests  the requests, at most {@link #maxBatch}
+     * @param responses  filled in with the responses
+     * @return the number of requests answered, from the first
+     * @throws IOException if the connection fails, in which case it is given up
+     */
+    protected abstract int exchange(C connection, String[] requests, String[] responses) throws IOException;
+
+    /**
+     * Send a request and wait for its response.
+     *
+     * @param request  the request
+     * @return the response, or null if the request failed
+     * @see #requestOrTimeout(String)
+     */
+    public String request(String request)
+    {
+        try
+        {
+            return requestOrTimeout(request);
+        }
+        catch (SocketTimeoutException e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Send a request and wait for its response, telling a timeout apart from the other failures.
+     *
+     * @param request  the request
+     * @return the response, or null if the request failed without running out of time: the client was shut down,
+     *     the service couldn't be reached, or it closed the connection without answering
+     * @throws SocketTimeoutException if the request couldn't start, or wasn't answered, within {@link #timeoutMillis}
+     */
+    public String requestOrTimeout(String request)
+        throws SocketTimeoutException
+    {
+        if (closed)
+            return null;
+        requests.incrementAndGet();
+        try
+        {
+            if (! window.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS))
+            {
+                failed.incrementAndGet();
+                final String msg = name + ": more than " + maxInFlight + " requests in flight for " + timeoutMillis + " ms";
+                System.err.println(msg);
+                throw new SocketTimeoutException(msg);
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+
+        try
+        {
+            final Pending p = new Pending(request);
+            queue.add(p);
+            final long deadline = System.currentTimeMillis() + timeoutMillis;
+            while (p.done.getCount() > 0)
+            {
+                Slot<C> c = borrow();
+                if (c != null)
+                {
+                    serve(c);
+                    continue;
+                }
+                // Whoever holds a connection serves the queue until it is empty, then looks again after
+                // giving the connection back, so a request queued meanwhile is never left behind
+                final long left = deadline - System.currentTimeMillis();
+                if (left <= 0)
+                {
+                    if (queue.remove(p))
+                    {
+                        failed.incrementAndGet();
+                        final String msg = name + ": no connection free for " + timeoutMillis + " ms";
+                        System.err.println(msg);
+                        throw new SocketTimeoutException(msg);
+                    }
+                    // already on its way, and the exchange has a timeout of its own
+                    awaitUninterruptibly(p);
+                    break;
+                }
+                try
+                {
+                    p.done.await(left, TimeUnit.MILLISECONDS);
+                }
+                catch (InterruptedException e)
+                {
+                    if (queue.remove(p))
+                    {
+                        Thread.currentThread().interrupt();
+                        return null;
+                    }
+                    // already on its way, so wait for it
+                    Thread.currentThread().interrupt();
+                    awaitUninterruptibly(p);
+                }
+            }
+            if (p.timedOut)
+                throw new SocketTimeoutException(name + ": no answer within " + timeoutMillis + " ms");
+            return p.response;
+        }
+        finally
+        {
+            window.release();
+        }
+    }
+
+    private static void awaitUninterruptibly(Pending p)
+    {
+        while (p.done.getCount() > 0)
+        {
+            try
+            {
+                p.done.await();
+            }
+            catch (InterruptedException e) {}
+        }
+    }
+
+    /**
+     * @return an idle connection, or a new one if there are fewer than the limit, or null
+     */
+    private Slot<C> borrow()
+    {
+        final Slot<C> c = idle.poll();
+        return (c != null) ? c : openSlot();
+    }
+
+    /**
+     * @return a new connection, in place of an idle one if there are as many as the limit, or null
+     */
+    private Slot<C> borrowNew()
+    {
+        Slot<C> c = openSlot();
+        while ((c == null) && ((c = idle.poll()) != null))
+        {
+            discard(c);
+            c = openSlot();
+        }
+        return c;
+    }
+
+    /**
+     * @return a new connection, to be opened by its first exchange, if there are fewer than the limit, or null
+     */
+    private Slot<C> openSlot()
+    {
+        while (true)
+        {
+            final int n = connections.get();
+            if (n >= maxConnections)
+                return null;
+            if (connections.compareAndSet(n, n + 1))
+                return new Slot<C>();
+        }
+    }
+
+    private void giveBack(Slot<C> c)
+    {
+        if (closed || ! reuse || ! idle.offer(c))
+            discard(c);
+    }
+
+    private void discard(Slot<C> c)
+    {
+        connections.decrementAndGet();
+        if (c.connection != null)
+            close(c.connection);
+    }
+
+    /**
+     * @param timedOut  whether the requests failed because the service took too long
+     */
+    private void failQueue(boolean timedOut)
+    {
+        Pending p;
+        while ((p = queue.poll()) != null)
+        {
+            failed.incrementAndGet();
+            p.fail(timedOut);
+        }
+    }
+
+    /**
+     * Serve the queue with the connection until it is empty, then give the connection back.
+     */
+    private void serve(Slot<C> c)
+    {
+        final Pending[] batch = new Pending[maxBatch];
+        while (c != null)
+        {
+            int n = 0;
+            Pending p;
+            while ((n < maxBatch) && ((p = queue.poll()) != null))
+                batch[n++] = p;
+            if (n == 0)
+            {
+                giveBack(c);
+                c = null;
+            }
+            else
+                c = send(c, batch, n);
+            // a request queued after the queue was found empty, by a thread which found no connection
+            if ((c == null) && ! queue.isEmpty())
+                c = borrow();
+        }
+    }
+
+    /**
+     * Send a batch, over new connections if the service stops answering part way.
+     *
+     * @return the connection to go on with, or null if it was given up and no new one could be opened
+     */
+    private Slot<C> send(Slot<C> c, Pending[] batch, int n)
+    {
+        int from = 0;
+        boolean timedOut = false;
+        while (from < n)
+        {
+            if (c.connection == null)
+            {
+                try
+                {
+                    c.connection = open();
+                    opened.incrementAndGet();
+                }
+                catch (IOException e)
+                {
+                    discard(c);
+                    c = null;
+                    System.err.println(name + ": can't connect: " + e);
+                    timedOut = (e instanceof SocketTimeoutException);
+                    // fail what is waiting now, rather than have every request try in turn
+                    failQueue(timedOut);
+                    break;
+                }
+            }
+            final String[] req = new String[Math.min(n - from, batchLimit)];
+            for (int i = 0; i < req.length; i++)
+                req[i] = batch[from + i].request;
+            final String[] resp = new String[req.length];
+            int answered = 0;
+            IOException failure = null;
+            exchanges.incrementAndGet();
+            try
+            {
+                answered = exchange(c.connection, req, resp);
+            }
+            catch (IOException e)
+            {
+                failure = e;
+            }
+            for (int i = 0; i < answered; i++)
+                batch[from + i].finish(resp[i]);
+            from += answered;
+            if (answered > 0)
+            {
+                c.exchanges++;
+                if (c.exchanges == 1)
+                    noteFirstAnswer(c);
+            }
+            if (answered == req.length)
+            {
+                if (! reuse)
+                {
+                    discard(c);
+                    c = (from < n) ? borrowNew() : null;
+                    if ((c == null) && (from < n))
+                        from = requeue(batch, from, n);
+                }
+                continue;
+            }
+
+            // A service too slow to answer within the timeout is not asked again over another connection;
+            // its requests fail as timed out
+            if ((answered == 0) && (failure instanceof SocketTimeoutException))
+            {
+                System.err.println(name + ": no answer within " + timeoutMillis + " ms");
+                discard(c);
+                c = null;
+                timedOut = true;
+                break;
+            }
+
+            // A service which stops short of a batch of several may take only one request per connection,
+            // or lose what is still unread when it closes one; send one at a time from now on
+            if ((req.length > 1) && (batchLimit > 1))
+            {
+                batchLimit = 1;
+                System.err.println(name + ": the service answered " + answered + " of " + req.length
+                    + " requests sent together; sending them one at a time");
+            }
+            // the connection is done with; carry on over a new one, unless a new one has already answered nothing
+            // to a request sent by itself
+            discard(c);
+            if ((answered == 0) && (c.exchanges == 0) && (req.length == 1))
+            {
+                System.err.println(name + ": exchange failed: " + ((failure != null) ? failure.toString() : "no answer"));
+                c = null;
+                break;
+            }
+            if ((answered == 0) && (c.exchanges > 0))
+                staleSince = true;
+            c = borrowNew();
+            if (c == null)
+                from = requeue(batch, from, n);
+        }
+        for (int i = from; i < n; i++)
+        {
+            failed.incrementAndGet();
+            batch[i].fail(timedOut);
+        }
+        return c;
+    }
+
+    /**
+     * Queue the rest of a batch again, for the holders of the other connections, when every connection is busy.
+     *
+     * @return n
+     */
+    private int requeue(Pending[] batch, int from, int n)
+    {
+        for (int i = from; i < n; i++)
+            queue.add(batch[i]);
+        return n;
+    }
+
+    /**
+     * A connection has answered for the first time.  If the one before it was given up because the service
+     * had closed it since its last use, and that keeps happening, the service must close each connection
+     * after answering; stop keeping them then.
+     */
+    private void noteFirstAnswer(Slot<C> c)
+    {
+        if (! staleSince)
+        {
+            staleRuns = 0;
+            return;
+        }
+        staleSince = false;
+        if ((++staleRuns >= STALE_RUNS) && reuse)
+        {
+            reuse = false;
+            System.err.println(name + ": the service closes its connections after answering; opening one per exchange");
+        }
+    }
+
+    /**
+     * Close the idle connections and fail any later requests.
+     */
+    public void shutdown()
+    {
+        closed = true;
+        Slot<C> c;
+        while ((c = idle.poll()) != null)
+            discard(c);
+        failQueue(false);
+    }
+
+    /**
+     * @return counts of the requests, exchanges with the service, connections opened and failed requests
+     */
+    public String getStats()
+    {
+        return name + ": " + requests.get() + " requests in " + exchanges.get() + " exchanges, "
+            + opened.get() + " connections opened, " + failed.get() + " failed";
+    }
+
+}
@@ -0,0 +1,272 @@
+package soc.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.concurrent.ConcurrentHashMap;
+
+import soc.disableDebug.D;
+import soc.game.SOCGame;
+
+/**
+ * Keeps the saved states made for GAMECOPY and read back for LOADGAME in memory, so that
+ * a robot's search can save the game once and start each of its simulations from it
+ * without going through files.  A snapshot is named by the folder a save would go to,
+ * such as "saves/robot/game1", and holds the server's game and each robot's state, each under
+ * its source ("server" or the player number) and class, as the files written by
+ * {@link DeepCopy#copyToFile(Object, String, String)} are named.
+ *<P>
+ * Each object is kept in the form given by its {@link Codec}: for the game and the robots'
+ * trackers, a structural copy taken when saving, from which every restore makes another copy.
+ * The robots' brain info and declarative memory are still kept as Java serialized bytes, by
+ * {@link #SERIALIZED}: they hold build plans of possible pieces, trade offers and dialogue
+ * state which reach into the whole game, and have no copy or compact format of their own yet.
+ *<P>
+ * Snapshots are also written to files if asked for when saving, or for every save after
+ * {@link #setPersistToDisk(boolean) setPersistToDisk(true)}, which is needed when the server and
+ * robots sharing a snapshot are in different processes.  Every process then has to persist, so
+ * the default is taken from the system property {@link #PROP_SNAPSHOTS_DISK}, which a robot
+ * client started on its own can be given as well as the server.  Restoring something which isn't
+ * in memory reads its file, so saves from an earlier run can still be loaded.
+ */
+public class SnapshotStore
+{
+    /**
+     * How an object is kept in a snapshot.
+     */
+    public interface Codec
+    {
+        /**
+         * @param o  the object being saved, which may go on changing afterwards
+         * @return what to keep, which shares nothing changeable with <tt>o</tt>
+         */
+        public Object freeze(Object o);
+
+        /**
+         * @param frozen  what {@link #freeze(Object)} returned; it must not be changed
+         * @return a new object equal to the one saved, for the caller to change as it likes
+         */
+        public Object thaw(Object frozen);
+    }
+
+    /**
+     * Keeps a game as a copy made by {@link SOCGame#copy()}.
+     */
+    public static final Codec GAME = new Codec()
+    {
+        public Object freeze(Object o)
+        {
+            return ((SOCGame) o).copy();
+        }
+
+        public Object thaw(Object frozen)
+        {
+            return ((SOCGame) frozen).copy();
+        }
+    };
+
+    /**
+     * Keeps any serializable object as its Java serialized bytes, for state without a structural copy,
+     * which is slower and larger than a copy.  Used for the robots' brain info and declarative memory.
+     */
+    public static final Codec SERIALIZED = new Codec()
+    {
+        public Object freeze(Object o)
+        {
+            try
+            {
+                ByteArrayOutputStream bout = new ByteArrayOutputStream();
+                ObjectOutputStream out = new ObjectOutputStream(bout);
+                out.writeObject(o);
+                out.close();
+                return bout.toByteArray();
+            }
+            catch (IOException e)
+            {
+                throw new IllegalArgumentException("Can't keep " + o.getClass().getName() + ": " + e);
+            }
+        }
+
+        public Object thaw(Object frozen)
+        {
+            try
+            {
+                ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream((byte[]) frozen));
+                return in.readObject();
+            }
+            catch (Exception e)
+            {
+                // the bytes were written by freeze in this process, so this can't happen
+                throw new IllegalStateException("Can't restore: " + e);
+            }
+        }
+    };
+
+    /**
+     * System property <tt>stac.snapshots.disk</tt>: if Y, every save is written to files from the start.
+     * The server also takes it from its properties file.
+     */
+    public static final String PROP_SNAPSHOTS_DISK = "stac.snapshots.disk";
+
+    /** How long {@link #awaitAll(String, int, Class, long)} usually waits for the other processes' saves, in milliseconds */
+    public static final long AWAIT_TIMEOUT = 30000;
+
+    /** The objects kept in each snapshot, by key; see {@link #key(String, Class)} */
+    private static final ConcurrentHashMap<String, ConcurrentHashMap<String, Object>> snapshots
+        = new ConcurrentHashMap<String, ConcurrentHashMap<String, Object>>();
+
+    /** If true, every save is also written to files */
+    private static volatile boolean persistToDisk
+        = System.getProperty(PROP_SNAPSHOTS_DISK, "N").toUpperCase().startsWith("Y");
+
+    private SnapshotStore() {}
+
+    /**
+     * @param persist  if true, write every save to files as well as keeping it in memory
+     */
+    public static void setPersistToDisk(boolean persist)
+    {
+        persistToDisk = persist;
+    }
+
+    /**
+     * @return true if every save is written to files as well as kept in memory
+     */
+    public static boolean isPersistToDisk()
+    {
+        return persistToDisk;
+    }
+
+    /**
+     * @return the snapshot's name, made the same however its folder is written
+     */
+    private static String id(String folder)
+    {
+        return new File(folder).getAbsolutePath();
+    }
+
+    /**
+     * @return the key of an object in a snapshot, which is also its file's name without the folder and ".dat"
+     */
+    private static String key(String source, Class type)
+    {
+        return source + "_" + type.getName();
+    }
+
+    /**
+     * Save an object to a snapshot, replacing any object of the same class from the same source.
+     *
+     * @param folder  the snapshot's folder
+     * @param source  "server", or the number of the player whose state this is
+     * @param o  the object
+     * @param codec  how to keep it
+     * @param toDisk  if true, also write it to a file in the folder, whether or not
+     *     {@link #isPersistToDisk()}; the folder must exist
+     */
+    public static void save(String folder, String source, Object o, Codec codec, boolean toDisk)
+    {
+        final String id = id(folder);
+        ConcurrentHashMap<String, Object> snapshot = snapshots.get(id);
+        if (snapshot == null)
+        {
+            final ConcurrentHashMap<String, Object> fresh = new ConcurrentHashMap<String, Object>();
+            snapshot = snapshots.putIfAbsent(id, fresh);
+            if (snapshot == null)
+                snapshot = fresh;
+        }
+        snapshot.put(key(source, o.getClass()), codec.freeze(o));
+        if (toDisk || persistToDisk)
+            DeepCopy.copyToFile(o, source, folder);
+    }
+
+    /**
+     * Restore an object saved to a snapshot, or read it from its file if it isn't in memory.
+     *
+     * @param folder  the snapshot's folder
+     * @param source  "server", or the number of the player whose state this is
+     * @param type  the object's class
+     * @param codec  how it was kept, as given to {@link #save(String, String, Object, Codec, boolean)}
+     * @return a new copy of the object, or null if it was never saved
+     */
+    public static Object restore(String folder, String source, Class type, Codec codec)
+    {
+        final ConcurrentHashMap<String, Object> snapshot = snapshots.get(id(folder));
+        final Object frozen = (snapshot != null) ? snapshot.get(key(source, type)) : null;
+        if (frozen != null)
+            return codec.thaw(frozen);
+        if (! new File(folder, key(source, type) + ".dat").exists())
+        {
+            D.ebugPrintlnINFO("SnapshotStore: nothing saved for " + key(source, type) + " in " + folder);
+            return null;
+        }
+        return DeepCopy.readFromFile(folder + "/" + key(source, type));
+    }
+
+    /**
+     * @param folder  the snapshot's folder
+     * @param source  "server", or the number of the player whose state this is
+     * @param type  the object's class
+     * @return true if an object of that class from that source has been saved, in memory or to a file
+     */
+    public static boolean contains(String folder, String source, Class type)
+    {
+        final ConcurrentHashMap<String, Object> snapshot = snapshots.get(id(folder));
+        if ((snapshot != null) && snapshot.containsKey(key(source, type)))
+            return true;
+        return new File(folder, key(source, type) + ".dat").exists();
+    }
+
+    /**
+     * Wait until an object of a class has been saved from each player, as the robots do after asking
+     * for a game copy.  Gives up if the thread is interrupted, leaving the flag set.
+     *
+     * @param folder  the snapshot's folder
+     * @param players  the number of players, whose sources are "0" to <tt>players - 1</tt>
+     * @param type  the object's class
+     * @param timeout  the longest time to wait, in milliseconds
+     * @return true if all were saved, false if still missing after <tt>timeout</tt>
+     */
+    public static boolean awaitAll(String folder, int players, Class type, long timeout)
+    {
+        final long deadline = System.currentTimeMillis() + timeout;
+        while (true)
+        {
+            boolean finished = true;
+            for (int i = 0; i < players; i++)
+            {
+                if (! contains(folder, "" + i, type))
+                {
+                    finished = false;
+                    break;
+                }
+            }
+            if (finished)
+                return true;
+            if (System.currentTimeMillis() >= deadline)
+                return false;
+            try
+            {
+                Thread.sleep(10);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Forget a snapshot kept in memory.  Its files, if any, are left alone.
+     *
+     * @param folder  the snapshot's folder
+     */
+    public static void remove(String folder)
+    {
+        snapshots.remove(id(folder));
+    }
+
+}
@@ -0,0 +1,308 @@
+package soc.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.zeromq.ZMQ;
+
+/**
+ * Stand-in for the external services reached through {@link LineServiceClient} and {@link ZMQServiceClient},
+ * so that robots using them, and the clients themselves, can be run without the real ones.
+ * It answers each request at once, or after a delay, with the request itself, the first of the actions it
+ * lists (so a learning negotiator asking for a trade gets one of those it offered), or a fixed reply.
+ *<P>
+ * Usage: StubServiceServer [-line port | -zmq address] [-echo | -firstaction | -reply text] [-delay ms] [-onceperconnection]
+ *<BR>
+ * or: StubServiceServer -check [threads] [requests per thread], which runs a line stub on a free port and
+ * checks that every request sent through a keep-alive {@link LineServiceClient} by several threads at once gets
+ * its own answer, then does the same with a stub which answers one request per connection, through a keep-alive
+ * client and through one which opens a connection per request.  Last it checks that a stub too slow to answer
+ * makes the request time out.
+ */
+public class StubServiceServer
+{
+    /** How requests are answered */
+    public static final int ECHO = 0, FIRST_ACTION = 1, FIXED = 2;
+
+    private final int mode;
+    private final String reply;
+    private final int delayMillis;
+    private final boolean oncePerConnection;
+    private final AtomicInteger answered = new AtomicInteger();
+
+    /**
+     * @param mode  {@link #ECHO}, {@link #FIRST_ACTION} or {@link #FIXED}
+     * @param reply  the reply, if fixed
+     * @param delayMillis  time to wait before answering
+     * @param oncePerConnection  close a line connection after answering one request, as a simple service might
+     */
+    public StubServiceServer(int mode, String reply, int delayMillis, boolean oncePerConnection)
+    {
+        this.mode = mode;
+        this.reply = reply;
+        this.delayMillis = delayMillis;
+        this.oncePerConnection = oncePerConnection;
+    }
+
+    /**
+     * @return the answer to a request
+     */
+    public String answer(String request)
+    {
+        answered.incrementAndGet();
+        if (delayMillis > 0)
+        {
+            try
+            {
+                Thread.sleep(delayMillis);
+            }
+            catch (InterruptedException e) {}
+        }
+        switch (mode)
+        {
+        case FIRST_ACTION:
+            for (String field : request.split("\\|"))
+            {
+                if (field.startsWith("actions="))
+                    return field.substring("actions=".length()).split(",")[0];
+            }
+            return "";
+        case FIXED:
+            return reply;
+        default:
+            return request;
+        }
+    }
+
+    /**
+     * @return the number of requests answered so far
+     */
+    public int getAnswered()
+    {
+        return answered.get();
+    }
+
+    /**
+     * Serve lines on a port, a thread per connection, until the server socket is closed.
+     *
+     * @param ss  the server socket
+     */
+    public void serveLines(final ServerSocket ss)
+    {
+        while (! ss.isClosed())
+        {
+            final Socket s;
+            try
+            {
+                s = ss.accept();
+            }
+            catch (IOException e)
+            {
+                return;
+            }
+            Thread t = new Thread("StubServiceServer " + s.getRemoteSocketAddress())
+            {
+                public void run()
+                {
+                    try
+                    {
+                        BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), "UTF-8"));
+                        Writer out = new OutputStreamWriter(s.getOutputStream(), "UTF-8");
+                        String line;
+                        while ((line = in.readLine()) != null)
+                        {
+                            out.write(answer(line) + "\n");
+                            out.flush();
+                            if (oncePerConnection)
+                                break;
+                        }
+                    }
+                    catch (IOException e) {}
+                    finally
+                    {
+                        try
+                        {
+                            s.close();
+                        }
+                        catch (IOException e) {}
+                    }
+                }
+            };
+            t.setDaemon(true);
+            t.start();
+        }
+    }
+
+    /**
+     * Serve ZeroMQ requests at an address, forever.
+     *
+     * @param address  the address to bind, like "tcp://*:7777"
+     */
+    public void serveZMQ(String address)
+    {
+        ZMQ.Context context = ZMQ.context(1);
+        ZMQ.Socket rep = context.socket(ZMQ.REP);
+        rep.bind(address);
+        while (! Thread.currentThread().isInterrupted())
+        {
+            byte[] request = rep.recv(0);
+            if (request == null)
+                break;
+            rep.send(answer(new String(request)), 0);
+        }
+        rep.close();
+        context.term();
+    }
+
+    /**
+     * Start a line stub on a free port, on a daemon thread.
+     * @return its server socket
+     */
+    private static ServerSocket startLineStub(final StubServiceServer stub) throws IOException
+    {
+        final ServerSocket ss = new ServerSocket(0);
+        Thread server = new Thread("StubServiceServer")
+        {
+            public void run()
+            {
+                stub.serveLines(ss);
+            }
+        };
+        server.setDaemon(true);
+        server.start();
+        return ss;
+    }
+
+    /**
+     * Send requests through a line client from several threads at once, and check every one gets its own answer.
+     *
+     * @param oncePerConnection  whether the stub answers one request per connection
+     * @param keepAlive  whether the client keeps its connections and batches requests
+     * @return true if they all did
+     */
+    private static boolean check(final int threads, final int perThread, boolean oncePerConnection, boolean keepAlive)
+        throws Exception
+    {
+        final StubServiceServer stub = new StubServiceServer(ECHO, null, 1, oncePerConnection);
+        final ServerSocket ss = startLineStub(stub);
+
+        final LineServiceClient client = new LineServiceClient("localhost", ss.getLocalPort(), 2, 64, 16, 5000, keepAlive);
+        final AtomicInteger wrong = new AtomicInteger();
+        Thread[] senders = new Thread[threads];
+        final long start = System.currentTimeMillis();
+        for (int t = 0; t < threads; t++)
+        {
+            final int id = t;
+            senders[t] = new Thread()
+            {
+                public void run()
+                {
+                    for (int i = 0; i < perThread; i++)
+                    {
+                        String request = "agent=" + id + "|state=" + i + "|actions=a" + id + ",b" + i;
+                        if (! request.equals(client.request(request)))
+                            wrong.incrementAndGet();
+                    }
+                }
+            };
+            senders[t].start();
+        }
+        for (Thread t : senders)
+            t.join();
+        final long millis = System.currentTimeMillis() - start;
+        client.shutdown();
+        ss.close();
+        System.out.println(client.getStats());
+        System.out.println((threads * perThread) + " requests in " + millis + " ms, " + stub.getAnswered()
+            + " answered by the stub, " + wrong.get() + " wrong or missing answers");
+        return wrong.get() == 0;
+    }
+
+    /**
+     * Send a request to a stub slower than the client's timeout, and check it's reported as timed out.
+     * @return true if it was
+     */
+    private static boolean checkTimeout() throws Exception
+    {
+        final ServerSocket ss = startLineStub(new StubServiceServer(ECHO, null, 2000, true));
+        final LineServiceClient client = new LineServiceClient("localhost", ss.getLocalPort(), 1, 4, 1, 200, false);
+        boolean ok;
+        try
+        {
+            client.requestOrTimeout("agent=0|state=0|actions=a");
+            ok = false;
+        }
+        catch (SocketTimeoutException e)
+        {
+            ok = true;
+        }
+        client.shutdown();
+        ss.close();
+        System.out.println("Request to a stub slower than the timeout " + (ok ? "timed out" : "did not time out"));
+        return ok;
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        int port = 7777;
+        String zmqAddress = null;
+        int mode = ECHO;
+        String reply = null;
+        int delay = 0;
+        boolean once = false;
+        for (int i = 0; i < args.length; i++)
+        {
+            if (args[i].equals("-check"))
+            {
+                int threads = (i + 1 < args.length) ? Integer.parseInt(args[i + 1]) : 8;
+                int perThread = (i + 2 < args.length) ? Integer.parseInt(args[i + 2]) : 200;
+                boolean ok = check(threads, perThread, false, true) & check(threads, perThread, true, true)
+                    & check(threads, perThread, true, false) & checkTimeout();
+                System.exit(ok ? 0 : 1);
+            }
+            else if (args[i].equals("-line"))
+                port = Integer.parseInt(args[++i]);
+            else if (args[i].equals("-zmq"))
+                zmqAddress = args[++i];
+            else if (args[i].equals("-echo"))
+                mode = ECHO;
+            else if (args[i].equals("-firstaction"))
+                mode = FIRST_ACTION;
+            else if (args[i].equals("-reply"))
+            {
+                mode = FIXED;
+                reply = args[++i];
+            }
+            else if (args[i].equals("-delay"))
+                delay = Integer.parseInt(args[++i]);
+            else if (args[i].equals("-onceperconnection"))
+                once = true;
+            else
+            {
+                System.err.println("Usage: StubServiceServer [-line port | -zmq address] [-echo | -firstaction | -reply text] [-delay ms] [-onceperconnection]");
+                System.err.println("   or: StubServiceServer -check [threads] [requests per thread]");
+                System.exit(1);
+            }
+        }
+
+        StubServiceServer stub = new StubServiceServer(mode, reply, delay, once);
+        if (zmqAddress != null)
+        {
+            System.out.println("StubServiceServer answering ZeroMQ requests at " + zmqAddress);
+            stub.serveZMQ(zmqAddress);
+        }
+        else
+        {
+            System.out.println("StubServiceServer answering lines on port " + port);
+            stub.serveLines(new ServerSocket(port));
+        }
+    }
+
+}
@@ -0,0 +1,112 @@
+package soc.util;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.zeromq.ZMQ;
+
+/**
+ * Client of a ZeroMQ request/reply service, such as the dialogue parser (tcp://localhost:7777).
+ * All the clients of the process share one {@link ZMQ.Context}, made once and never terminated, and each keeps
+ * a pool of REQ sockets, since a socket can only be used by one thread at a time.  A REQ socket takes one request
+ * at a time, so there is no batching.  A socket whose reply doesn't come within the timeout is closed, as it can't
+ * send again until it has the reply.
+ */
+public class ZMQServiceClient extends ServiceClient<ZMQ.Socket>
+{
+    /** Defaults of the clients made by {@link #get(String)} */
+    public static final int DEFAULT_SOCKETS = 4, DEFAULT_IN_FLIGHT = 256, DEFAULT_TIMEOUT = 30000;
+
+    private static final ConcurrentHashMap<String, ZMQServiceClient> clients = new ConcurrentHashMap<String, ZMQServiceClient>();
+
+    private static ZMQ.Context context;
+
+    private final String address;
+
+    /**
+     * @param address  the service's address, like "tcp://localhost:7777"
+     * @param maxSockets  sockets open at most
+     * @param maxInFlight  requests waiting or in progress at most
+     * @param timeoutMillis  limit on waiting to start a request, and on sending it and waiting for the reply
+     */
+    public ZMQServiceClient(String address, int maxSockets, int maxInFlight, int timeoutMillis)
+    {
+        super("ZMQServiceClient(" + address + ")", maxSockets, maxInFlight, 1, timeoutMillis);
+        this.address = address;
+    }
+
+    /**
+     * @return the client of the service shared by the whole process, with the default limits
+     */
+    public static ZMQServiceClient get(String address)
+    {
+        ZMQServiceClient c = clients.get(address);
+        if (c == null)
+        {
+            final ZMQServiceClient fresh = new ZMQServiceClient(address, DEFAULT_SOCKETS, DEFAULT_IN_FLIGHT, DEFAULT_TIMEOUT);
+            c = clients.putIfAbsent(address, fresh);
+            if (c == null)
+                c = fresh;
+        }
+        return c;
+    }
+
+    /**
+     * @return the context shared by all the sockets of the process
+     */
+    static synchronized ZMQ.Context getContext()
+    {
+        if (context == null)
+            context = ZMQ.context(1);
+        return context;
+    }
+
+    @Override
+    protected ZMQ.Socket open() throws IOException
+    {
+        try
+        {
+            ZMQ.Socket s = getContext().socket(ZMQ.REQ);
+            s.setLinger(0);
+            s.setSendTimeOut(timeoutMillis);
+            s.setReceiveTimeOut(timeoutMillis);
+            s.connect(address);
+            return s;
+        }
+        catch (RuntimeException e)
+        {
+            throw new IOException("can't open a socket to " + address, e);
+        }
+    }
+
+    @Override
+    protected void close(ZMQ.Socket s)
+    {
+        try
+        {
+            s.close();
+        }
+        catch (RuntimeException e) {}
+    }
+
+    @Override
+    protected int exchange(ZMQ.Socket s, String[] requests, String[] responses) throws IOException
+    {
+        try
+        {
+            if (! s.send(requests[0], 0))
+                throw new SocketTimeoutException("request not sent within " + timeoutMillis + " ms");
+            final byte[] reply = s.recv(0);
+            if (reply == null)
+                throw new SocketTimeoutException("no reply within " + timeoutMillis + " ms");
+            responses[0] = new String(reply);
+            return 1;
+        }
+        catch (RuntimeException e)
+        {
+            throw new IOException(e);
+        }
+    }
+
+}
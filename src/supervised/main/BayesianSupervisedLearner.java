@@ -3,12 +3,14 @@ package supervised.main;
 import supervised.util.CharacterUtil;
 import supervised.util.JavaBayesUtil;
 import supervised.util.HashMapUtil;
+import supervised.util.ModelRegistry;
 
 import simpleDS.util.IOUtil;
 import simpleDS.util.StringUtil;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
@@ -37,6 +39,13 @@ public class BayesianSupervisedLearner {
 	public int counter=0;
 	public int counterFullOffers=0;
 	public int counterDishonest=0;
+	private int[] typedAttributes;
+	private boolean typedAttributesChecked = false;
+	/**
+	 * The observations this learner has made on its network, by node. They used to stay set on the network from one
+	 * query to the next; now that the network is shared, they are kept here and set again for each of our queries.
+	 */
+	private final HashMap<String,String> observations = new HashMap<String,String>();
 	private final static int MAX_NUMERIC_VALUE = 7;
 
 	public BayesianSupervisedLearner(String filePath, String execMode, boolean withPreferences) {
@@ -97,20 +106,20 @@ public class BayesianSupervisedLearner {
 				featureList.add("prevDAT");
 				featureList.add("currDAT");
 				String simulationFolder  = filePath;//(withPreferences) ? "simulation2" : "simulation";
-				rf = new RandomForestLearner(simulationFolder+"/combinedOffer");
-				bn = new JavaBayesUtil(simulationFolder, "combinedOffer_readable.bif");
+				rf = getRandomForest(simulationFolder+"/combinedOffer");
+				bn = getBayesNet(simulationFolder, "combinedOffer_readable.bif");
 				//crf = null;//new trader();
 
 			} else if (execMode.equals("trading")) {
 				featureList.add("DAT");
 				bn = null;
-				rf = new RandomForestLearner("simulation/combinedAcceptReject.arff");
+				rf = getRandomForest("simulation/combinedAcceptReject.arff");
 
 			} else if (execMode.equals("counteroffering")) {
 				//featureList.add("legalMove");
 				featureList.add("DAT");
 				bn = null;//new JavaBayesUtil("simulation", "combinedCounterofferReject_readable.bif");	
-				rf = new RandomForestLearner("simulation/combinedCounterofferReject.arff");
+				rf = getRandomForest("simulation/combinedCounterofferReject.arff");
 
 			} else {
 				System.out.println("ERROR: unknown execMode="+execMode);
@@ -127,6 +136,29 @@ public class BayesianSupervisedLearner {
 		}	
 	}
 
+	/**
+	 * return the random forest trained on the given file, shared by all the learners in this process
+	 */
+	private static RandomForestLearner getRandomForest(final String trainingFile) {
+		return ModelRegistry.get("randomforest:" + trainingFile, new ModelRegistry.Loader<RandomForestLearner>() {
+			public RandomForestLearner load() {
+				return new RandomForestLearner(trainingFile);
+			}
+		});
+	}
+
+	/**
+	 * return the Bayesian network in the given file, shared by all the learners in this process;
+	 * the observations made on it are therefore only set while holding its lock
+	 */
+	private static JavaBayesUtil getBayesNet(final String directory, final String fileName) {
+		return ModelRegistry.get("bayesnet:" + directory + "/" + fileName, new ModelRegistry.Loader<JavaBayesUtil>() {
+			public JavaBayesUtil load() {
+				return new JavaBayesUtil(directory, fileName);
+			}
+		});
+	}
+
 	public BayesianSupervisedLearner(String filePath, String outputFileOffer, String outputFileAcceptReject, String outputFileCounterofferReject, String execMode, boolean withPreferences) {
 		this(filePath, execMode, withPreferences);
 		int counter = 0;
@@ -632,29 +664,53 @@ public class BayesianSupervisedLearner {
 
 		if (varValue.equals("null") || varValue.equals("empty")) return 1;
 
-		try {
-			Set<Entry<String, String>> entries = features.entrySet();
-			Iterator<Entry<String, String>> iter = entries.iterator();
-			while (iter.hasNext()) {
-				Map.Entry<String, String> entry = (Map.Entry<String, String>) iter.next();
-				feature = (String) entry.getKey();
-				value = (String) entry.getValue();
-				feature = characterUtil.convertStringToASCII(feature);
-				value = characterUtil.convertStringToASCII(value);
-				bayesNet.setObservedNode(feature, value);
-			}
+		// the network may be shared with other learners, so our observations are set, queried and cleared in one go
+		synchronized (bayesNet) {
+			try {
+				Set<Entry<String, String>> entries = features.entrySet();
+				Iterator<Entry<String, String>> iter = entries.iterator();
+				while (iter.hasNext()) {
+					Map.Entry<String, String> entry = (Map.Entry<String, String>) iter.next();
+					feature = (String) entry.getKey();
+					value = (String) entry.getValue();
+					feature = characterUtil.convertStringToASCII(feature);
+					value = characterUtil.convertStringToASCII(value);
+					observations.put(feature, value);
+				}
+				setObservations(bayesNet);
 
-			score = bayesNet.getProbFromVariableValuePairs(codedRandVar2Query, codedVariableValue, new ArrayList<String>());
+				score = bayesNet.getProbFromVariableValuePairs(codedRandVar2Query, codedVariableValue, new ArrayList<String>());
 
-		} catch (Exception e) {
-			System.out.println("No BayesNet for randVar2Query=[" + randVar2Query + "] varValue=[" + varValue +"]");
-			e.printStackTrace();
-			return 1;
+			} catch (Exception e) {
+				System.out.println("No BayesNet for randVar2Query=[" + randVar2Query + "] varValue=[" + varValue +"]");
+				e.printStackTrace();
+				return 1;
+			} finally {
+				clearObservations(bayesNet);
+			}
 		}
 
 		return score;
 	}
 
+	/**
+	 * set our observations on the network; the caller holds its lock
+	 */
+	private void setObservations(JavaBayesUtil bayesNet) {
+		for (Map.Entry<String, String> entry : observations.entrySet()) {
+			bayesNet.setObservedNode(entry.getKey(), entry.getValue());
+		}
+	}
+
+	/**
+	 * clear our observations from the network, leaving it as other learners expect to find it; the caller holds its lock
+	 */
+	private void clearObservations(JavaBayesUtil bayesNet) {
+		for (String node : observations.keySet()) {
+			bayesNet.clearObservedNode(node);
+		}
+	}
+
 	public double getScoredOffer(String resources, String buildups, String give, String get, HashMap<String,ArrayList<String>> tradePreferences) {
 		HashMap<String,String> evidence = new HashMap<String,String>();
 
@@ -796,6 +852,152 @@ public class BayesianSupervisedLearner {
 		return score;
 	}
 
+	/**
+	 * Our side of the evidence for scoring trade offers, which is the same for every offer considered in a decision
+	 */
+	public static class OfferContext {
+		final int[] resources;
+		final int knights, devCards, roads, settlements, cities;
+
+		/**
+		 * @param resources how much clay, ore, sheep, wheat and wood we have
+		 */
+		public OfferContext(int[] resources, int knights, int devCards, int roads, int settlements, int cities) {
+			this.resources = resources.clone();
+			this.knights = knights;
+			this.devCards = devCards;
+			this.roads = roads;
+			this.settlements = settlements;
+			this.cities = cities;
+		}
+
+		String getResources() {
+			return resourcesToString(resources);
+		}
+
+		String getBuildups() {
+			return "knights="+knights + "|devcards="+devCards + "|roads="+roads + "|settlements="+settlements + "|cities="+cities;
+		}
+	}
+
+	/**
+	 * return the resources in the form of the game's resource sets, as taken by {@link #getScoredOffer}
+	 */
+	private static String resourcesToString(int[] resources) {
+		return "clay="+resources[0] + "|ore="+resources[1] + "|sheep="+resources[2] + "|wheat="+resources[3] + "|wood="+resources[4] + "|unknown=0";
+	}
+
+	/**
+	 * return the index of each attribute of the random forest used by {@link #getScoredOffers}: has{resource} for the five
+	 * resources, hasROADS, hasSETTLEMENTS, hasCITIES, then rec{resource} for the five resources; followed by the index of
+	 * each resource among the class values (-1 if it is not one). Null if the forest has any other attribute, or if the
+	 * score doesn't come from the forest alone, in which case the offers are scored one by one from their descriptions.
+	 */
+	private synchronized int[] getTypedAttributes() {
+		if (!typedAttributesChecked) {
+			typedAttributesChecked = true;
+			if (rf != null && bn != null && !withPreferences) {
+				try {
+					ArrayList<String> names = new ArrayList<String>();
+					for (String resource : mainResources) {
+						names.add("has"+resource.toUpperCase());
+					}
+					names.add("hasROADS");
+					names.add("hasSETTLEMENTS");
+					names.add("hasCITIES");
+					for (String resource : mainResources) {
+						names.add("rec"+resource.toUpperCase());
+					}
+					int[] indices = new int[names.size() + mainResources.size()];
+					boolean[] covered = new boolean[rf.getNumAttributes()-1];
+					for (int i=0; i<names.size(); i++) {
+						indices[i] = rf.getAttributeIndex(names.get(i));
+						if (indices[i] < 0 || indices[i] >= covered.length) {
+							return null;
+						}
+						covered[indices[i]] = true;
+					}
+					for (boolean c : covered) {
+						if (!c) {
+							return null;
+						}
+					}
+					for (int i=0; i<mainResources.size(); i++) {
+						indices[names.size() + i] = rf.getClassValueIndex(mainResources.get(i).toUpperCase());
+					}
+					typedAttributes = indices;
+				} catch (Exception e) {
+					e.printStackTrace();
+				}
+			}
+		}
+		return typedAttributes;
+	}
+
+	/**
+	 * Scores a batch of offers as {@link #getScoredOffer} would score each of them, but without going through strings:
+	 * our side of the evidence is encoded once, the resources received by each offer are filled in by attribute index,
+	 * and the forest is queried once for each distinct set of resources received, since which resources are given only
+	 * selects among the class values.
+	 * @param context our resources and buildups
+	 * @param gives how much clay, ore, sheep, wheat and wood we would give in each offer
+	 * @param gets how much of each we would get in each offer
+	 * @param tradePreferences as for {@link #getScoredOffer}
+	 * @return the score of each offer
+	 */
+	public double[] getScoredOffers(OfferContext context, int[][] gives, int[][] gets, HashMap<String,ArrayList<String>> tradePreferences) {
+		double[] scores = new double[gives.length];
+		int[] attributes = getTypedAttributes();
+		double[][] dists = null;
+		int[] distOfOffer = new int[gives.length];
+		if (attributes != null) {
+			final int nRes = mainResources.size();
+			double[] base = new double[rf.getNumAttributes()-1];
+			for (int r=0; r<nRes; r++) {
+				base[attributes[r]] = rf.encodeValue(attributes[r], Math.min(context.resources[r], MAX_NUMERIC_VALUE));
+			}
+			base[attributes[nRes]] = rf.encodeValue(attributes[nRes], Math.min(context.roads, MAX_NUMERIC_VALUE));
+			base[attributes[nRes+1]] = rf.encodeValue(attributes[nRes+1], Math.min(context.settlements, MAX_NUMERIC_VALUE));
+			base[attributes[nRes+2]] = rf.encodeValue(attributes[nRes+2], Math.min(context.cities, MAX_NUMERIC_VALUE));
+
+			HashMap<String,Integer> rowOfGets = new HashMap<String,Integer>();
+			ArrayList<double[]> rows = new ArrayList<double[]>();
+			for (int i=0; i<gets.length; i++) {
+				String key = Arrays.toString(gets[i]);
+				Integer row = rowOfGets.get(key);
+				if (row == null) {
+					double[] values = base.clone();
+					for (int r=0; r<nRes; r++) {
+						values[attributes[nRes+3+r]] = rf.encodeValue(attributes[nRes+3+r], gets[i][r]);
+					}
+					row = rows.size();
+					rows.add(values);
+					rowOfGets.put(key, row);
+				}
+				distOfOffer[i] = row;
+			}
+			dists = rf.getDistributions(rows.toArray(new double[rows.size()][]));
+		}
+
+		for (int i=0; i<gives.length; i++) {
+			if (dists == null) {
+				scores[i] = getScoredOffer(context.getResources(), context.getBuildups(), resourcesToString(gives[i]), resourcesToString(gets[i]), tradePreferences);
+				continue;
+			}
+			// the best probability among the resources we would give
+			double score = 0;
+			double[] dist = dists[distOfOffer[i]];
+			for (int r=0; r<mainResources.size(); r++) {
+				int classValue = attributes[mainResources.size()+8+r];
+				if (gives[i][r] != 0 && classValue >= 0 && dist[classValue] > score) {
+					score = dist[classValue];
+				}
+			}
+			scores[i] = score;
+		}
+		return scores;
+	}
+
 	public boolean isGivableWantedByOpponents(HashMap<String,ArrayList<String>> tradePreferences, String givable) {		
 		for (String player : tradePreferences.keySet()) {
 			if (player.equals("SUPERVISED_BAYESIAN")) { 
@@ -1008,7 +1210,13 @@ public class BayesianSupervisedLearner {
 	}
 
 	public void getInfo() {
-		String sample = bn.sampleRandomVariable("curr_act");
+		String sample;
+		synchronized (bn) {
+			// sampling starts from our observations and clears every observation on the network, as it always did
+			setObservations(bn);
+			sample = bn.sampleRandomVariable("curr_act");
+			observations.clear();
+		}
 		System.out.println("->sample=" + sample);
 	}
 
@@ -176,6 +176,63 @@ public class RandomForestLearner {
 		return score;
 	}
 
+	/**
+	 * @return the number of attributes, the class included
+	 */
+	public int getNumAttributes() {
+		return instances.numAttributes();
+	}
+
+	/**
+	 * @return the attribute's index, or -1 if there is no such attribute
+	 */
+	public int getAttributeIndex(String name) {
+		Attribute attribute = instances.attribute(name);
+		return (attribute == null) ? -1 : attribute.index();
+	}
+
+	/**
+	 * @return the index of the class's value, as in the distributions, or -1 if there is no such value
+	 */
+	public int getClassValueIndex(String value) {
+		return instances.attribute(instances.numAttributes() - 1).indexOfValue(value);
+	}
+
+	/**
+	 * Encodes an integer value of an attribute as it is stored in an instance: the number itself if the attribute is
+	 * numeric, else the index of the nominal value (missing if there is no such value).
+	 */
+	public double encodeValue(int attributeIndex, int value) {
+		Attribute attribute = instances.attribute(attributeIndex);
+		if (attribute.isNumeric())
+			return value;
+		int index = attribute.indexOfValue("" + value);
+		return (index < 0) ? Double.NaN : index;
+	}
+
+	/**
+	 * Classifies a batch of instances given as encoded values (see {@link #encodeValue(int, int)}), reusing one
+	 * instance rather than copying one and parsing its values for each.
+	 * @param rows the values of every attribute but the class, by attribute index
+	 * @return the distribution over the class values of each row, or null if the forest fails
+	 */
+	public double[][] getDistributions(double[][] rows) {
+		double[][] dists = new double[rows.length][];
+		try {
+			Instance instance = (Instance) instances.firstInstance().copy();
+			for (int r=0; r<rows.length; r++) {
+				for (int i=0; i<instances.numAttributes()-1; i++) {
+					instance.setValue(i, rows[r][i]);
+				}
+				dists[r] = forest.distributionForInstance(instance);
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+			return null;
+		}
+		return dists;
+	}
+
 	public static void main(String[] args) {
 		//new RandomForestLearner("simulation/combinedOffer.arff");
 		new RandomForestLearner("simulation/combinedOffer");
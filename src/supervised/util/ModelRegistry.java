@@ -0,0 +1,136 @@
+package supervised.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+
+import resources.Resources;
+
+/**
+ * @version 0.1 Process-wide registry of the trained models used by the negotiators, so that each one is read once
+ * however many robots and games use it. A model is loaded the first time it is asked for, by a single thread while
+ * any others asking for it wait, and the same instance is handed to everyone afterwards; the models must therefore
+ * not be changed by those using them. The time each took to load and the growth of the heap meanwhile are recorded;
+ * no collection is forced to measure it, so the growth is rough: it counts the garbage made reading the model, and
+ * is 0 if the collector ran during the load.
+ */
+public class ModelRegistry {
+
+	/**
+	 * Reads a model; called at most once for each key.
+	 */
+	public interface Loader<M> {
+		public M load() throws Exception;
+	}
+
+	private static final class Entry {
+		final String key;
+		Object model;
+		boolean loaded = false;
+		long loadMillis;
+		long heapBytes;
+
+		Entry(String key) {
+			this.key = key;
+		}
+	}
+
+	private static final ConcurrentHashMap<String,Entry> entries = new ConcurrentHashMap<String,Entry>();
+
+	/**
+	 * return the model with the given key, loading it if no one has yet
+	 * @param key identifies the model, e.g. the file it is read from
+	 * @param loader reads the model if it isn't loaded
+	 * @return the model, or null if it failed to load (it won't be tried again)
+	 */
+	@SuppressWarnings("unchecked")
+	public static <M> M get(String key, Loader<M> loader) {
+		Entry e = entries.get(key);
+		if (e == null) {
+			Entry fresh = new Entry(key);
+			e = entries.putIfAbsent(key, fresh);
+			if (e == null)
+				e = fresh;
+		}
+		synchronized (e) {
+			if (!e.loaded) {
+				long before = usedHeap();
+				long start = System.nanoTime();
+				try {
+					e.model = loader.load();
+				} catch (Exception ex) {
+					System.err.println("ModelRegistry> Could not load " + key + ": " + ex);
+				}
+				e.loadMillis = (System.nanoTime() - start) / 1000000;
+				e.heapBytes = Math.max(0, usedHeap() - before);
+				e.loaded = true;
+				System.out.println("ModelRegistry> " + describe(e));
+			}
+			return (M) e.model;
+		}
+	}
+
+	/**
+	 * return the contents of a file among the resources (see {@link Resources}), read once; callers read it through
+	 * their own stream and must not change it
+	 * @param name the name of the file, relative to the resources
+	 * @return the bytes, or null if there is no such file
+	 */
+	public static byte[] getResource(final String name) {
+		return get("resource:" + name, new Loader<byte[]>() {
+			public byte[] load() throws IOException {
+				URL url = Resources.class.getResource(name);
+				if (url == null)
+					throw new IOException("no resource " + name);
+				InputStream is = url.openStream();
+				try {
+					ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+					byte[] buf = new byte[8192];
+					int n;
+					while ((n = is.read(buf)) > 0)
+						bytes.write(buf, 0, n);
+					return bytes.toByteArray();
+				} finally {
+					is.close();
+				}
+			}
+		});
+	}
+
+	/**
+	 * return one line per model loaded so far: its key, the time it took to load and how much the heap grew meanwhile
+	 */
+	public static String report() {
+		ArrayList<String> lines = new ArrayList<String>();
+		for (Entry e : entries.values()) {
+			synchronized (e) {
+				if (e.loaded)
+					lines.add(describe(e));
+			}
+		}
+		Collections.sort(lines);
+		StringBuffer sb = new StringBuffer();
+		for (String line : lines)
+			sb.append(line).append('\n');
+		return sb.toString();
+	}
+
+	private static String describe(Entry e) {
+		if (e.model == null)
+			return e.key + " failed to load after " + e.loadMillis + " ms";
+		return e.key + " loaded in " + e.loadMillis + " ms, heap +" + (e.heapBytes / 1024) + " KB";
+	}
+
+	/**
+	 * The heap in use now, garbage included
+	 */
+	private static long usedHeap() {
+		Runtime rt = Runtime.getRuntime();
+		return rt.totalMemory() - rt.freeMemory();
+	}
+
+}